@@ -22,6 +22,7 @@ package org.pentaho.platform.api.email;
 
 import javax.mail.Session;
 import javax.mail.internet.MimeMessage;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The Email Service used in the Pentaho Platform
@@ -62,4 +63,25 @@ public interface IEmailService {
    */
   public void sendEmail( Session session, MimeMessage msg ) throws EmailServiceException;
 
+  /**
+   * Hands a mail off for delivery and returns without waiting for the mail server. Implementations may queue the
+   * message and retry transient failures; the default implementation sends it synchronously.
+   *
+   * @param session
+   *          the java mail session required for SMTP connections
+   * @param msg
+   *          the message to send. It must not be modified after this call
+   * @return a future completed once the message is delivered, or exceptionally once its delivery failed
+   */
+  public default CompletableFuture<Void> sendEmailAsync( Session session, MimeMessage msg ) {
+    CompletableFuture<Void> result = new CompletableFuture<>();
+    try {
+      sendEmail( session, msg );
+      result.complete( null );
+    } catch ( EmailServiceException e ) {
+      result.completeExceptionally( e );
+    }
+    return result;
+  }
+
 }
@@ -22,6 +22,7 @@ package org.pentaho.platform.api.engine.security.userroledao;
 
 import org.pentaho.platform.api.mt.ITenant;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -247,4 +248,74 @@ public interface IUserRoleDao {
    * @throws UncategorizedUserRoleDaoException
    */
   List<IPentahoRole> getUserRoles( ITenant tenant, String userName ) throws UncategorizedUserRoleDaoException;
+
+  /**
+   * Retrieves one page of the user names of a tenant, sorted case-insensitively. If the tenant is null, then it will
+   * list users of the default tenant.
+   * 
+   * @param tenant
+   * @param prefix
+   *          only names starting with this prefix (ignoring case) are returned; null or empty matches every name
+   * @param offset
+   *          number of matching names to skip
+   * @param limit
+   *          maximum number of names to return; negative for no limit
+   * @return user names
+   * @throws UncategorizedUserRoleDaoException
+   */
+  default List<String> getUserNames( ITenant tenant, String prefix, int offset, int limit )
+    throws UncategorizedUserRoleDaoException {
+    List<String> names = new ArrayList<>();
+    for ( IPentahoUser user : getUsers( tenant ) ) {
+      names.add( user.getUsername() );
+    }
+    return UserRoleNames.page( names, prefix, offset, limit );
+  }
+
+  /**
+   * Retrieves one page of the role names of a tenant, sorted case-insensitively. If the tenant is null, then it will
+   * list roles of the default tenant.
+   * 
+   * @param tenant
+   * @param prefix
+   *          only names starting with this prefix (ignoring case) are returned; null or empty matches every name
+   * @param offset
+   *          number of matching names to skip
+   * @param limit
+   *          maximum number of names to return; negative for no limit
+   * @return role names
+   * @throws UncategorizedUserRoleDaoException
+   */
+  default List<String> getRoleNames( ITenant tenant, String prefix, int offset, int limit )
+    throws UncategorizedUserRoleDaoException {
+    List<String> names = new ArrayList<>();
+    for ( IPentahoRole role : getRoles( tenant ) ) {
+      names.add( role.getName() );
+    }
+    return UserRoleNames.page( names, prefix, offset, limit );
+  }
+
+  /**
+   * Retrieves one page of the names of the users associated to a role, sorted case-insensitively. If the tenant is
+   * null, then it will get role members in a default tenant.
+   * 
+   * @param tenant
+   * @param roleName
+   * @param prefix
+   *          only names starting with this prefix (ignoring case) are returned; null or empty matches every name
+   * @param offset
+   *          number of matching names to skip
+   * @param limit
+   *          maximum number of names to return; negative for no limit
+   * @return user names
+   * @throws UncategorizedUserRoleDaoException
+   */
+  default List<String> getRoleMemberNames( ITenant tenant, String roleName, String prefix, int offset, int limit )
+    throws UncategorizedUserRoleDaoException {
+    List<String> names = new ArrayList<>();
+    for ( IPentahoUser user : getRoleMembers( tenant, roleName ) ) {
+      names.add( user.getUsername() );
+    }
+    return UserRoleNames.page( names, prefix, offset, limit );
+  }
 }
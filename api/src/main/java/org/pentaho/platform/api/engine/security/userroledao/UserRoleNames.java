@@ -0,0 +1,93 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.api.engine.security.userroledao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Sorting, prefix filtering and paging of user and role names, shared by the paged listing methods of
+ * {@link IUserRoleDao} and its callers.
+ */
+public final class UserRoleNames {
+
+  /**
+   * Case-insensitive order, ties broken by the natural order so that names differing only in case stay distinct.
+   */
+  public static final Comparator<String> ORDER =
+    String.CASE_INSENSITIVE_ORDER.thenComparing( Comparator.naturalOrder() );
+
+  private UserRoleNames() {
+  }
+
+  /**
+   * @return true if <code>name</code> starts with <code>prefix</code> ignoring case, or if the prefix is empty
+   */
+  public static boolean matches( String name, String prefix ) {
+    return prefix == null || prefix.isEmpty()
+      || name != null && name.regionMatches( true, 0, prefix, 0, prefix.length() );
+  }
+
+  /**
+   * Folds the case of every character the way {@link String#CASE_INSENSITIVE_ORDER} compares them, so that the natural
+   * order of folded names is {@link #ORDER} and a folded prefix matches exactly the names {@link #matches} accepts.
+   * Unlike {@link String#toLowerCase()} this never changes the length of the string nor depends on the locale.
+   */
+  public static String fold( String name ) {
+    char[] chars = name.toCharArray();
+    for ( int i = 0; i < chars.length; i++ ) {
+      chars[ i ] = Character.toLowerCase( Character.toUpperCase( chars[ i ] ) );
+    }
+    return new String( chars );
+  }
+
+  /**
+   * Returns the key under which a name is kept in a sorted index: the {@link #fold folded} name followed by the name
+   * itself, so that keys sort in {@link #ORDER} and all names sharing a prefix (ignoring case) are adjacent.
+   */
+  public static String indexKey( String name ) {
+    return fold( name ) + '\u0000' + name;
+  }
+
+  /**
+   * Sorts the names, keeps the ones matching the prefix and returns the requested page.
+   *
+   * @param limit maximum number of names to return; negative for no limit
+   */
+  public static List<String> page( Collection<String> names, String prefix, int offset, int limit ) {
+    if ( limit == 0 ) {
+      return Collections.emptyList();
+    }
+    List<String> matching = new ArrayList<>();
+    for ( String name : names ) {
+      if ( matches( name, prefix ) ) {
+        matching.add( name );
+      }
+    }
+    matching.sort( ORDER );
+    int from = Math.min( Math.max( offset, 0 ), matching.size() );
+    int to = limit < 0 ? matching.size() : (int) Math.min( (long) from + limit, matching.size() );
+    return new ArrayList<>( matching.subList( from, to ) );
+  }
+}
@@ -525,6 +525,43 @@ public interface IUnifiedRepository {
    */
   void unlockFile( final Serializable fileId );
 
+  /**
+   * Locks several files with the same message. Implementations may lock them in a single repository session.
+   * 
+   * @param fileIds
+   *          file ids
+   * @param message
+   *          lock message
+   */
+  default void lockFiles( final List<Serializable> fileIds, final String message ) {
+    for ( Serializable fileId : fileIds ) {
+      lockFile( fileId, message );
+    }
+  }
+
+  /**
+   * Unlocks several files. Implementations may unlock them in a single repository session.
+   * 
+   * @param fileIds
+   *          file ids
+   */
+  default void unlockFiles( final List<Serializable> fileIds ) {
+    for ( Serializable fileId : fileIds ) {
+      unlockFile( fileId );
+    }
+  }
+
+  /**
+   * Returns the locked files readable by the current user.
+   * 
+   * @param lockOwner
+   *          only return the files locked by this user, all locked files if {@code null}
+   * @return locked files
+   */
+  default List<RepositoryFile> getLockedFiles( final String lockOwner ) {
+    throw new UnsupportedOperationException();
+  }
+
   // ~ Access read/write methods
   // =======================================================================================
 
@@ -21,6 +21,7 @@
 package org.pentaho.platform.api.repository2.unified;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -35,6 +36,17 @@ public class RepositoryRequest {
   private static final Pattern FILES_MEMBERS_EXCLUDE_PATTERN = Pattern.compile( "excludeMembers=(.+)" );
   public static final String PATH_SEPARATOR = "/"; //$NON-NLS-1$
 
+  /**
+   * Name of the member filter preset selecting {@link #COMPACT_MEMBERS}: {@code includeMembers=compact}.
+   */
+  public static final String COMPACT_MEMBERS_PRESET = "compact"; //$NON-NLS-1$
+
+  /**
+   * The members a client browsing the repository needs. The id is always returned.
+   */
+  public static final Set<String> COMPACT_MEMBERS = Collections.unmodifiableSet( new HashSet<String>( Arrays.asList(
+    "name", "path", "title", "folder", "hidden", "versionId" ) ) );
+
   private String path;
   private boolean showHidden = false;
   private boolean includeAcls = false;
@@ -101,6 +113,9 @@ public class RepositoryRequest {
    */
   private void parseOutIncludeExclude() {
     includeMemberSet = parseOutPattern( FILES_MEMBERS_INCLUDE_PATTERN );
+    if ( includeMemberSet != null && includeMemberSet.remove( COMPACT_MEMBERS_PRESET ) ) {
+      includeMemberSet.addAll( COMPACT_MEMBERS );
+    }
     excludeMemberSet = parseOutPattern( FILES_MEMBERS_EXCLUDE_PATTERN );
     if ( ( includeMemberSet != null && !includeMemberSet.isEmpty() )
         && ( excludeMemberSet != null && !excludeMemberSet.isEmpty() ) ) {
@@ -0,0 +1,104 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.apache.jackrabbit.core.security.authorization.acl;
+
+import org.apache.jackrabbit.core.NodeImpl;
+import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.core.id.NodeId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.platform.benchmarks.JcrRepositoryFixture;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ACE collection for files spread over the generated fixture, with and without the per session cache of
+ * {@link CachingPentahoEntryCollector}. Lives in the collector's package because <code>getEntries</code> is
+ * protected.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class PentahoEntryCollectorBenchmark {
+
+  private static final int SAMPLES = 1000;
+
+  @Param( { "10000", "100000", "1000000" } )
+  public int nodeCount;
+
+  private JcrRepositoryFixture fixture;
+  private PentahoEntryCollector collector;
+  private CachingPentahoEntryCollector cachingCollector;
+  private NodeImpl[] nodes;
+  private int next;
+
+  @Setup
+  public void setUp() throws Exception {
+    fixture = JcrRepositoryFixture.open( nodeCount );
+    final SessionImpl session = (SessionImpl) fixture.getSession();
+    final NodeId rootId = ( (NodeImpl) session.getRootNode() ).getNodeId();
+    collector = new PentahoEntryCollector( session, rootId, Collections.emptyMap() );
+    cachingCollector = new CachingPentahoEntryCollector( session, rootId, Collections.emptyMap() );
+
+    final List<Node> samples = fixture.sampleFiles( SAMPLES, 42L );
+    nodes = samples.toArray( new NodeImpl[ 0 ] );
+  }
+
+  @TearDown
+  public void tearDown() {
+    collector.close();
+    cachingCollector.close();
+    fixture.close();
+  }
+
+  @Benchmark
+  public Object uncached() throws RepositoryException {
+    return collector.getEntries( nextNode() );
+  }
+
+  @Benchmark
+  public Object cached() throws RepositoryException {
+    return cachingCollector.getEntries( nextNode() );
+  }
+
+  private NodeImpl nextNode() {
+    final NodeImpl node = nodes[ next ];
+    next = ( next + 1 ) % nodes.length;
+    return node;
+  }
+}
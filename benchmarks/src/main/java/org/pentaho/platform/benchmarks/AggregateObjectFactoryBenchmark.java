@@ -0,0 +1,94 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.engine.ObjectFactoryException;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+import org.pentaho.platform.engine.core.system.objfac.AggregateObjectFactory;
+import org.pentaho.platform.engine.core.system.objfac.StandaloneObjectFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups through {@link AggregateObjectFactory}, which every <code>PentahoSystem.get</code> goes through. The
+ * object asked for is defined in the last of <code>factoryCount</code> factories, like a plugin bean behind the
+ * system and plugin factories.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@Threads( 4 )
+public class AggregateObjectFactoryBenchmark {
+
+  private static final String KEY = "benchmarkObject"; //$NON-NLS-1$
+
+  @Param( { "1", "5", "20" } )
+  public int factoryCount;
+
+  private AggregateObjectFactory objectFactory;
+  private IPentahoSession session;
+
+  @Setup
+  public void setUp() {
+    objectFactory = new AggregateObjectFactory();
+    for ( int i = 0; i < factoryCount; i++ ) {
+      final StandaloneObjectFactory factory = new StandaloneObjectFactory( "factory-" + i ); //$NON-NLS-1$
+      factory.defineInstance( "object-" + i, new Object() ); //$NON-NLS-1$
+      if ( i == factoryCount - 1 ) {
+        factory.defineInstance( KEY, new StringBuilder( KEY ) );
+        factory.defineInstance( CharSequence.class.getSimpleName(), new StringBuilder( KEY ) );
+      }
+      objectFactory.registerObjectFactory( factory );
+    }
+    session = new StandaloneSession( "benchmark" ); //$NON-NLS-1$
+  }
+
+  @Benchmark
+  public CharSequence getByKey() throws ObjectFactoryException {
+    return objectFactory.get( CharSequence.class, KEY, session );
+  }
+
+  @Benchmark
+  public CharSequence getByType() throws ObjectFactoryException {
+    return objectFactory.get( CharSequence.class, session );
+  }
+
+  @Benchmark
+  public boolean objectDefined() {
+    return objectFactory.objectDefined( KEY );
+  }
+}
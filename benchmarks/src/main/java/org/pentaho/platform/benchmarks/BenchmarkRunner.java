@@ -0,0 +1,70 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Main class of the benchmarks jar. Takes the usual JMH command line (a benchmark regex,
+ * <code>-p nodeCount=10000</code>, <code>-f</code>, ...) and, unless <code>-rf</code>/<code>-rff</code> say
+ * otherwise, writes the results as JSON to <code>target/jmh-result.json</code> so that runs can be compared by
+ * tooling.
+ *
+ * <pre>
+ *   java -jar target/pentaho-platform-benchmarks.jar RepositoryTree -p nodeCount=100000
+ * </pre>
+ *
+ * The repository fixtures are generated on first use below <code>java.io.tmpdir/pentaho-benchmarks</code>, see
+ * {@link JcrRepositoryFixture#BASE_DIR_PROPERTY}.
+ */
+public class BenchmarkRunner {
+
+  static final String DEFAULT_RESULT_FILE = "target/jmh-result.json"; //$NON-NLS-1$
+
+  public static void main( String[] args ) throws Exception {
+    final CommandLineOptions cli = new CommandLineOptions( args );
+    if ( cli.shouldHelp() ) {
+      cli.showHelp();
+      return;
+    }
+    if ( cli.shouldList() ) {
+      new Runner( cli ).list();
+      return;
+    }
+
+    final ChainedOptionsBuilder options = new OptionsBuilder().parent( cli );
+    if ( !cli.getResultFormat().hasValue() ) {
+      options.resultFormat( ResultFormatType.JSON );
+    }
+    if ( !cli.getResult().hasValue() ) {
+      final File result = new File( DEFAULT_RESULT_FILE );
+      result.getAbsoluteFile().getParentFile().mkdirs();
+      options.result( result.getPath() );
+    }
+    new Runner( options.build() ).run();
+  }
+}
@@ -0,0 +1,120 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.SimpleMapCacheManager;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+import org.pentaho.platform.plugin.services.cache.ConcurrentCacheManager;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contended reads and writes on the {@link ICacheManager} regions, comparing {@link ConcurrentCacheManager} with
+ * the map based {@link SimpleMapCacheManager}.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@Threads( 8 )
+public class CacheManagerBenchmark {
+
+  private static final String REGION = "benchmark"; //$NON-NLS-1$
+
+  private static final int KEYS = 10000;
+
+  private static final int SESSIONS = 64;
+
+  @Param( { "concurrent", "simple" } )
+  public String cacheManager;
+
+  private ICacheManager manager;
+  private IPentahoSession[] sessions;
+  private String[] keys;
+
+  @Setup( Level.Trial )
+  public void setUp() {
+    manager = "concurrent".equals( cacheManager ) //$NON-NLS-1$
+      ? new ConcurrentCacheManager( new Properties(), null ) : new SimpleMapCacheManager();
+    manager.addCacheRegion( REGION );
+
+    keys = new String[ KEYS ];
+    for ( int i = 0; i < KEYS; i++ ) {
+      keys[ i ] = "key-" + i; //$NON-NLS-1$
+      manager.putInRegionCache( REGION, keys[ i ], i );
+      manager.putInGlobalCache( keys[ i ], i );
+    }
+    sessions = new IPentahoSession[ SESSIONS ];
+    for ( int i = 0; i < SESSIONS; i++ ) {
+      sessions[ i ] = new StandaloneSession( "user-" + i ); //$NON-NLS-1$
+      for ( int k = 0; k < 100; k++ ) {
+        manager.putInSessionCache( sessions[ i ], keys[ k ], k );
+      }
+    }
+  }
+
+  @TearDown( Level.Trial )
+  public void tearDown() {
+    manager.cacheStop();
+  }
+
+  @Benchmark
+  public Object regionGet() {
+    return manager.getFromRegionCache( REGION, keys[ ThreadLocalRandom.current().nextInt( KEYS ) ] );
+  }
+
+  @Benchmark
+  public void regionPut() {
+    final int i = ThreadLocalRandom.current().nextInt( KEYS );
+    manager.putInRegionCache( REGION, keys[ i ], i );
+  }
+
+  @Benchmark
+  public Object globalGet() {
+    return manager.getFromGlobalCache( keys[ ThreadLocalRandom.current().nextInt( KEYS ) ] );
+  }
+
+  @Benchmark
+  public Object sessionGet() {
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    return manager.getFromSessionCache( sessions[ random.nextInt( SESSIONS ) ], keys[ random.nextInt( 100 ) ] );
+  }
+}
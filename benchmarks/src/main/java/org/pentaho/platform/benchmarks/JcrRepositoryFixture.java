@@ -0,0 +1,297 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
+import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+import org.pentaho.platform.repository2.unified.jcr.ITransformer;
+import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryFileAclUtils;
+import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryFileUtils;
+import org.pentaho.platform.repository2.unified.jcr.PentahoJcrConstants;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.NodeTypeDefinitionProvider;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.ntdproviders.FileNtdProvider;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.ntdproviders.FolderNtdProvider;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.ntdproviders.HierarchyNodeNtdProvider;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.ntdproviders.InternalFolderNtdProvider;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.ntdproviders.LocaleNtdProvider;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.ntdproviders.LocalizedStringNtdProvider;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.ntdproviders.LockTokenStorageNtdProvider;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.ntdproviders.VersionableNtdProvider;
+import org.pentaho.platform.repository2.unified.jcr.transform.SimpleRepositoryFileDataTransformer;
+
+import javax.jcr.NamespaceRegistry;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.jcr.nodetype.NodeTypeDefinition;
+import javax.jcr.nodetype.NodeTypeManager;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A Jackrabbit repository in a directory below {@link #getBaseDir()}, registered with the Pentaho node types and
+ * filled with a generated tree of <code>nodeCount</code> folders and files below {@link #ROOT_PATH}.
+ *
+ * <p>The tree is built the way <code>JcrRepositoryFileDao</code> builds it: every folder and file gets its own ACL
+ * with owner metadata, inheriting from the parent. Each folder holds {@link #CHILDREN_PER_FOLDER} children of which
+ * {@link #FOLDERS_PER_FOLDER} are folders, filled breadth first. Generating the large trees takes a while, so a
+ * finished fixture is kept on disk and reused by later runs with the same node count; delete the directory to start
+ * over.
+ */
+public class JcrRepositoryFixture implements Closeable {
+
+  /**
+   * System property overriding the directory the fixtures live in, <code>java.io.tmpdir/pentaho-benchmarks</code>
+   * by default.
+   */
+  public static final String BASE_DIR_PROPERTY = "pentaho.benchmarks.dir"; //$NON-NLS-1$
+
+  public static final String ROOT_PATH = PlatformFixture.TENANT_ID + "/public"; //$NON-NLS-1$
+
+  static final int CHILDREN_PER_FOLDER = 100;
+
+  static final int FOLDERS_PER_FOLDER = 10;
+
+  private static final Log logger = LogFactory.getLog( JcrRepositoryFixture.class );
+
+  private static final String READY_MARKER = "fixture.ready"; //$NON-NLS-1$
+
+  private static final byte[] CONTENT = "benchmark".getBytes( StandardCharsets.UTF_8 ); //$NON-NLS-1$
+
+  private static final Map<String, String> NAMESPACES = new LinkedHashMap<>();
+
+  static {
+    NAMESPACES.put( "pho", "http://www.pentaho.org/jcr/2.0" ); //$NON-NLS-1$ //$NON-NLS-2$
+    NAMESPACES.put( "pho_nt", "http://www.pentaho.org/jcr/nt/2.0" ); //$NON-NLS-1$ //$NON-NLS-2$
+    NAMESPACES.put( "pho_mix", "http://www.pentaho.org/jcr/mix/2.0" ); //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  // order matters, same as the jcrSessionFactory bean in repository.spring.xml
+  private static final List<NodeTypeDefinitionProvider> NODE_TYPES = Arrays.asList(
+    new InternalFolderNtdProvider(),
+    new LocalizedStringNtdProvider(),
+    new HierarchyNodeNtdProvider(),
+    new FileNtdProvider(),
+    new FolderNtdProvider(),
+    new LockTokenStorageNtdProvider(),
+    new VersionableNtdProvider(),
+    new LocaleNtdProvider() );
+
+  @SuppressWarnings( "unchecked" )
+  private static final ITransformer<IRepositoryFileData> TRANSFORMER =
+    (ITransformer<IRepositoryFileData>) (ITransformer<?>) new SimpleRepositoryFileDataTransformer();
+
+  private final int nodeCount;
+  private final RepositoryImpl repository;
+  private final Session session;
+  private PentahoJcrConstants pentahoJcrConstants;
+
+  private JcrRepositoryFixture( final int nodeCount, final RepositoryImpl repository ) throws RepositoryException {
+    this.nodeCount = nodeCount;
+    this.repository = repository;
+    this.session = repository.login( new SimpleCredentials( PlatformFixture.USERNAME, new char[ 0 ] ) );
+  }
+
+  public static File getBaseDir() {
+    final File defaultDir =
+      new File( System.getProperty( "java.io.tmpdir" ), "pentaho-benchmarks" ); //$NON-NLS-1$ //$NON-NLS-2$
+    return new File( System.getProperty( BASE_DIR_PROPERTY, defaultDir.getPath() ) );
+  }
+
+  /**
+   * Opens the fixture with the given number of nodes, generating it first if there is no finished one on disk.
+   * Starts the {@link PlatformFixture} if needed.
+   */
+  public static JcrRepositoryFixture open( final int nodeCount ) throws Exception {
+    final File baseDir = getBaseDir();
+    PlatformFixture.start( baseDir );
+
+    final File home = new File( baseDir, "jcr-" + nodeCount ); //$NON-NLS-1$
+    final File marker = new File( home, READY_MARKER );
+    final boolean ready = marker.exists();
+    if ( !ready ) {
+      FileUtils.deleteDirectory( home );
+      home.mkdirs();
+    }
+
+    final RepositoryImpl repository;
+    try ( InputStream config = JcrRepositoryFixture.class.getResourceAsStream( "repository.xml" ) ) { //$NON-NLS-1$
+      repository = RepositoryImpl.create( RepositoryConfig.create( config, home.getAbsolutePath() ) );
+    }
+    final JcrRepositoryFixture fixture = new JcrRepositoryFixture( nodeCount, repository );
+    try {
+      if ( !ready ) {
+        fixture.registerNodeTypes();
+      }
+      fixture.pentahoJcrConstants = new PentahoJcrConstants( fixture.session );
+      if ( !ready ) {
+        final long start = System.currentTimeMillis();
+        fixture.generate();
+        FileUtils.touch( marker );
+        logger.info( "generated " + nodeCount + " nodes in " + ( System.currentTimeMillis() - start ) + " ms" );
+      }
+    } catch ( Exception e ) {
+      fixture.close();
+      throw e;
+    }
+    return fixture;
+  }
+
+  /**
+   * Generates the fixtures for the node counts given as arguments ahead of a benchmark run.
+   */
+  public static void main( String[] args ) throws Exception {
+    try {
+      for ( String nodeCount : args ) {
+        open( Integer.parseInt( nodeCount ) ).close();
+      }
+    } finally {
+      PlatformFixture.stop();
+    }
+  }
+
+  public Session getSession() {
+    return session;
+  }
+
+  public PentahoJcrConstants getPentahoJcrConstants() {
+    return pentahoJcrConstants;
+  }
+
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  /**
+   * Picks <code>count</code> files by walking down from {@link #ROOT_PATH} through randomly chosen children, so the
+   * samples are spread over all depths of the tree. The same seed gives the same samples.
+   */
+  public List<Node> sampleFiles( final int count, final long seed ) throws RepositoryException {
+    final Random random = new Random( seed );
+    final List<Node> samples = new ArrayList<>( count );
+    // a walk ends in an empty folder when the tree is too small to have files there; give up eventually
+    for ( int attempt = 0; samples.size() < count && attempt < count * 10; attempt++ ) {
+      Node current = session.getNode( ROOT_PATH );
+      while ( current != null && !JcrRepositoryFileUtils.isPentahoFile( pentahoJcrConstants, current ) ) {
+        final List<Node> children = new ArrayList<>();
+        final NodeIterator it = current.getNodes();
+        while ( it.hasNext() ) {
+          final Node child = it.nextNode();
+          if ( JcrRepositoryFileUtils.isPentahoHierarchyNode( session, pentahoJcrConstants, child ) ) {
+            children.add( child );
+          }
+        }
+        current = children.isEmpty() ? null : children.get( random.nextInt( children.size() ) );
+      }
+      if ( current != null ) {
+        samples.add( current );
+      }
+    }
+    return samples;
+  }
+
+  @Override
+  public void close() {
+    session.logout();
+    repository.shutdown();
+  }
+
+  private void registerNodeTypes() throws RepositoryException {
+    final NamespaceRegistry registry = session.getWorkspace().getNamespaceRegistry();
+    for ( Map.Entry<String, String> namespace : NAMESPACES.entrySet() ) {
+      registry.registerNamespace( namespace.getKey(), namespace.getValue() );
+    }
+    final NodeTypeManager ntMgr = session.getWorkspace().getNodeTypeManager();
+    final List<NodeTypeDefinition> ntds = new ArrayList<>();
+    for ( NodeTypeDefinitionProvider provider : NODE_TYPES ) {
+      ntds.add( provider.getNodeTypeDefinition( ntMgr, session.getValueFactory() ) );
+    }
+    ntMgr.registerNodeTypes( ntds.toArray( new NodeTypeDefinition[ 0 ] ), true );
+  }
+
+  private void generate() throws RepositoryException {
+    Serializable parentId = null;
+    for ( String name : ROOT_PATH.substring( 1 ).split( "/" ) ) { //$NON-NLS-1$
+      parentId = createFolder( parentId, name );
+    }
+
+    final Deque<Serializable> folders = new ArrayDeque<>();
+    folders.add( parentId );
+    int created = 0;
+    while ( created < nodeCount ) {
+      final Serializable folderId = folders.poll();
+      for ( int i = 0; i < CHILDREN_PER_FOLDER && created < nodeCount; i++, created++ ) {
+        if ( i < FOLDERS_PER_FOLDER ) {
+          folders.add( createFolder( folderId, "folder-" + created ) ); //$NON-NLS-1$
+        } else {
+          createFile( folderId, "file-" + created + ".txt" ); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+      }
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "generated " + created + " of " + nodeCount + " nodes" );
+      }
+    }
+  }
+
+  private Serializable createFolder( final Serializable parentId, final String name ) throws RepositoryException {
+    final RepositoryFile folder = new RepositoryFile.Builder( name ).folder( true ).build();
+    return createAcl( JcrRepositoryFileUtils.createFolderNode( session, pentahoJcrConstants, parentId, folder ) );
+  }
+
+  private void createFile( final Serializable parentId, final String name ) throws RepositoryException {
+    final RepositoryFile file = new RepositoryFile.Builder( name ).creatorId( PlatformFixture.USERNAME ).build();
+    final SimpleRepositoryFileData data = new SimpleRepositoryFileData( new ByteArrayInputStream( CONTENT ),
+      "UTF-8", "text/plain" ); //$NON-NLS-1$ //$NON-NLS-2$
+    createAcl( JcrRepositoryFileUtils.createFileNode( session, pentahoJcrConstants, parentId, file, data,
+      TRANSFORMER ) );
+  }
+
+  /**
+   * Gives the node an inheriting ACL owned by the benchmark user and saves the session, as the file dao does.
+   */
+  private Serializable createAcl( final Node node ) throws RepositoryException {
+    final Serializable id = node.getIdentifier();
+    JcrRepositoryFileAclUtils.createAcl( session, pentahoJcrConstants, id,
+      new RepositoryFileAcl.Builder( PlatformFixture.USERNAME ).entriesInheriting( true ).build() );
+    return id;
+  }
+}
@@ -0,0 +1,109 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.benchmarks;
+
+import org.pentaho.platform.api.engine.IAuthorizationPolicy;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.engine.PlatformInitializationException;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+import org.pentaho.platform.plugin.services.cache.ConcurrentCacheManager;
+import org.pentaho.platform.repository2.unified.jcr.DefaultLockHelper;
+import org.pentaho.platform.security.userroledao.DefaultTenantedPrincipleNameResolver;
+import org.pentaho.test.platform.engine.core.MicroPlatform;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Boots the smallest PentahoSystem the repository code paths need: the tenanted name resolvers, a permissive
+ * authorization policy, the role binding dao used by the magic ACEs and the cache manager. A session for
+ * {@link #USERNAME} in tenant {@link #TENANT_ID} is bound globally so that the JMH worker threads see it.
+ */
+public final class PlatformFixture {
+
+  public static final String USERNAME = "admin"; //$NON-NLS-1$
+
+  public static final String TENANT_ID = "/pentaho/benchmark"; //$NON-NLS-1$
+
+  private static MicroPlatform platform;
+
+  private PlatformFixture() {
+  }
+
+  /**
+   * Starts the platform unless it is already running. The solution folder is an empty directory below
+   * <code>baseDir</code>.
+   */
+  public static synchronized void start( final File baseDir ) throws PlatformInitializationException {
+    if ( platform != null ) {
+      return;
+    }
+    final File solution = new File( baseDir, "solution" ); //$NON-NLS-1$
+    solution.mkdirs();
+
+    PentahoSessionHolder.setStrategyName( PentahoSessionHolder.MODE_GLOBAL );
+    SecurityContextHolder.setStrategyName( SecurityContextHolder.MODE_GLOBAL );
+
+    final DefaultTenantedPrincipleNameResolver userNameUtils = new DefaultTenantedPrincipleNameResolver();
+    final MicroPlatform mp = new MicroPlatform( solution.getAbsolutePath() );
+    mp.defineInstance( "tenantedUserNameUtils", userNameUtils ); //$NON-NLS-1$
+    mp.defineInstance( "tenantedRoleNameUtils", //$NON-NLS-1$
+      new DefaultTenantedPrincipleNameResolver( DefaultTenantedPrincipleNameResolver.ALTERNATE_DELIMETER ) );
+    mp.defineInstance( "ILockHelper", new DefaultLockHelper( userNameUtils ) ); //$NON-NLS-1$
+    mp.defineInstance( IAuthorizationPolicy.class, new AllowAllAuthorizationPolicy() );
+    mp.defineInstance( "roleAuthorizationPolicyRoleBindingDaoTarget", new StaticRoleBindingDao() ); //$NON-NLS-1$
+    mp.defineInstance( ICacheManager.class, new ConcurrentCacheManager( new Properties(), null ) );
+    mp.start();
+    platform = mp;
+
+    final StandaloneSession session = new StandaloneSession( USERNAME );
+    session.setAuthenticated( TENANT_ID, USERNAME );
+    session.setAttribute( IPentahoSession.TENANT_ID_KEY, TENANT_ID );
+    PentahoSessionHolder.setSession( session );
+  }
+
+  public static synchronized void stop() {
+    if ( platform == null ) {
+      return;
+    }
+    PentahoSessionHolder.removeSession();
+    platform.stop();
+    platform = null;
+  }
+
+  private static class AllowAllAuthorizationPolicy implements IAuthorizationPolicy {
+
+    @Override
+    public boolean isAllowed( final String actionName ) {
+      return true;
+    }
+
+    @Override
+    public List<String> getAllowedActions( final String actionNamespace ) {
+      return Collections.emptyList();
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.repository2.unified.IRepositoryAccessVoter;
+import org.pentaho.platform.api.repository2.unified.IRepositoryAccessVoterManager;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.repository2.unified.jcr.DefaultLockHelper;
+import org.pentaho.platform.repository2.unified.jcr.DefaultPathConversionHelper;
+import org.pentaho.platform.repository2.unified.jcr.ILockHelper;
+import org.pentaho.platform.repository2.unified.jcr.IPathConversionHelper;
+import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryFileUtils;
+import org.pentaho.platform.security.userroledao.DefaultTenantedPrincipleNameResolver;
+
+import javax.jcr.RepositoryException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JcrRepositoryFileUtils#getTree} over the generated fixture: the browse case (two levels below a folder)
+ * and the full tree the repository export and the search index rebuild ask for.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2, time = 5 )
+@Measurement( iterations = 5, time = 5 )
+@Fork( 1 )
+public class RepositoryTreeBenchmark {
+
+  @Param( { "10000", "100000", "1000000" } )
+  public int nodeCount;
+
+  private JcrRepositoryFixture fixture;
+  private IPathConversionHelper pathConversionHelper;
+  private ILockHelper lockHelper;
+  private IRepositoryAccessVoterManager accessVoterManager;
+
+  @Setup
+  public void setUp() throws Exception {
+    fixture = JcrRepositoryFixture.open( nodeCount );
+    pathConversionHelper = new DefaultPathConversionHelper();
+    lockHelper = new DefaultLockHelper( new DefaultTenantedPrincipleNameResolver() );
+    accessVoterManager = new AllowAllAccessVoterManager();
+  }
+
+  @TearDown
+  public void tearDown() {
+    fixture.close();
+  }
+
+  @Benchmark
+  public RepositoryFileTree browseTwoLevels() throws RepositoryException {
+    return getTree( 2 );
+  }
+
+  @Benchmark
+  public RepositoryFileTree fullTree() throws RepositoryException {
+    return getTree( -1 );
+  }
+
+  private RepositoryFileTree getTree( final int depth ) throws RepositoryException {
+    final RepositoryRequest request =
+      new RepositoryRequest( JcrRepositoryFixture.ROOT_PATH, Boolean.FALSE, depth, "*" ); //$NON-NLS-1$
+    return JcrRepositoryFileUtils.getTree( fixture.getSession(), fixture.getPentahoJcrConstants(),
+      pathConversionHelper, lockHelper, JcrRepositoryFixture.ROOT_PATH, request, accessVoterManager );
+  }
+
+  /**
+   * The voters only add constant work per file; the ACL is still read for every node by getTree.
+   */
+  private static class AllowAllAccessVoterManager implements IRepositoryAccessVoterManager {
+
+    @Override
+    public void registerVoter( final IRepositoryAccessVoter voter ) {
+    }
+
+    @Override
+    public boolean hasAccess( final RepositoryFile file, final RepositoryFilePermission operation,
+                              final RepositoryFileAcl repositoryFileAcl, final IPentahoSession session ) {
+      return true;
+    }
+  }
+}
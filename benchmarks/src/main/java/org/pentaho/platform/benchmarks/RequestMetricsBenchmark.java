@@ -0,0 +1,93 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.pentaho.platform.engine.core.metrics.RequestMetrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the request instrumentation: a request of {@link #SPANS} repository calls, each doing a little work, with
+ * {@link RequestMetrics} disabled, enabled, and enabled with every request traced. {@link #uninstrumented()} runs
+ * the same work without any span and is the baseline.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@Threads( 8 )
+public class RequestMetricsBenchmark {
+
+  private static final int SPANS = 10;
+
+  private static final long WORK_TOKENS = 50;
+
+  private static final String REQUEST = "/api/repo/files"; //$NON-NLS-1$
+
+  private static final String CALL = "getFile"; //$NON-NLS-1$
+
+  @Param( { "off", "on", "traced" } )
+  public String instrumentation;
+
+  private RequestMetrics metrics;
+
+  @Setup( Level.Trial )
+  public void setUp() {
+    final boolean enabled = !"off".equals( instrumentation ); //$NON-NLS-1$
+    final double traceSampleRate = "traced".equals( instrumentation ) ? 1 : 0; //$NON-NLS-1$
+    // never slow, so nothing is logged
+    metrics = new RequestMetrics( enabled, traceSampleRate, Long.MAX_VALUE, 50, 200, 500 );
+  }
+
+  @Benchmark
+  public void uninstrumented() {
+    for ( int i = 0; i < SPANS; i++ ) {
+      Blackhole.consumeCPU( WORK_TOKENS );
+    }
+  }
+
+  @Benchmark
+  public void request() {
+    try ( RequestMetrics.Span request = metrics.startRequest( "benchmark", REQUEST ) ) { //$NON-NLS-1$
+      for ( int i = 0; i < SPANS; i++ ) {
+        try ( RequestMetrics.Span span = metrics.start( RequestMetrics.Category.REPOSITORY, CALL ) ) {
+          Blackhole.consumeCPU( WORK_TOKENS );
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.benchmarks;
+
+import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.security.policy.rolebased.IRoleAuthorizationPolicyRoleBindingDao;
+import org.pentaho.platform.security.policy.rolebased.RoleBindingStruct;
+
+import javax.jcr.Session;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Role binding dao with a fixed set of logical roles for every runtime role, so that the magic ACE evaluation does
+ * the same amount of work as on a server where the user is a power user.
+ */
+class StaticRoleBindingDao implements IRoleAuthorizationPolicyRoleBindingDao {
+
+  private static final List<String> LOGICAL_ROLES = Collections.unmodifiableList( Arrays.asList(
+    "org.pentaho.repository.read", //$NON-NLS-1$
+    "org.pentaho.repository.create", //$NON-NLS-1$
+    "org.pentaho.security.publish" ) ); //$NON-NLS-1$
+
+  @Override
+  public RoleBindingStruct getRoleBindingStruct( final String locale ) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public RoleBindingStruct getRoleBindingStruct( final ITenant tenant, final String locale ) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setRoleBindings( final String runtimeRoleName, final List<String> logicalRolesNames ) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setRoleBindings( final ITenant tenant, final String runtimeRoleName,
+                               final List<String> logicalRolesNames ) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public List<String> getBoundLogicalRoleNames( final List<String> runtimeRoleNames ) {
+    return LOGICAL_ROLES;
+  }
+
+  @Override
+  public List<String> getBoundLogicalRoleNames( final ITenant tenant, final List<String> runtimeRoleNames ) {
+    return LOGICAL_ROLES;
+  }
+
+  @Override
+  public List<String> getBoundLogicalRoleNames( final Session session, final List<String> runtimeRoleNames ) {
+    return LOGICAL_ROLES;
+  }
+
+  @Override
+  public List<String> getBoundLogicalRoleNames( final Session session, final ITenant tenant,
+                                                final List<String> runtimeRoleNames ) {
+    return LOGICAL_ROLES;
+  }
+}
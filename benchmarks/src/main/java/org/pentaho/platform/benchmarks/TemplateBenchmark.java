@@ -0,0 +1,141 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.platform.engine.services.runtime.TemplateUtil;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link TemplateUtil#applyTemplate} as the SQL and MDX components call it, from several threads sharing the
+ * compiled template cache, and from a single thread for comparison. {@link #applyPropertiesUncached()} is the
+ * baseline: the template is scanned with the parameter pattern on every call, as before the cache.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@Threads( 4 )
+public class TemplateBenchmark {
+
+  private static final Pattern PARAMETER_PATTERN = Pattern.compile( "\\{([^\\}\\{$^]*)\\}" ); //$NON-NLS-1$
+
+  @Param( { "5", "50", "200" } )
+  public int parameterCount;
+
+  private String template;
+  private Properties inputs;
+
+  @Setup
+  public void setUp() {
+    final StringBuilder sql = new StringBuilder( "select region, sum(amount) from sales where 1 = 1" ); //$NON-NLS-1$
+    inputs = new Properties();
+    for ( int i = 0; i < parameterCount; i++ ) {
+      sql.append( " and column_" ).append( i ).append( " = '{param" ).append( i ).append( "}'" );
+      inputs.put( "param" + i, "value" + i );
+    }
+    sql.append( " group by region" ); //$NON-NLS-1$
+    template = sql.toString();
+  }
+
+  @Benchmark
+  public String applyProperties() {
+    return TemplateUtil.applyTemplate( template, inputs, PARAMETER_PATTERN, null );
+  }
+
+  @Benchmark
+  @Threads( 1 )
+  public String applyPropertiesSingleThread() {
+    return TemplateUtil.applyTemplate( template, inputs, PARAMETER_PATTERN, null );
+  }
+
+  @Benchmark
+  @Threads( 1 )
+  public String applyPropertiesUncached() {
+    return applyTemplateUncached( template, inputs, PARAMETER_PATTERN );
+  }
+
+  @Benchmark
+  public String applySingleValue() {
+    return TemplateUtil.applyTemplate( template, "param0", "value0" ); //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  /**
+   * The scan of {@link TemplateUtil#applyTemplate(String, Properties, Pattern,
+   * org.pentaho.platform.api.engine.IParameterResolver)} before templates were compiled, for plain properties and
+   * without a parameter resolver.
+   */
+  static String applyTemplateUncached( final String template, final Properties inputs,
+      final Pattern parameterPattern ) {
+    StringBuffer results = new StringBuffer();
+    Matcher parameterMatcher = parameterPattern.matcher( template );
+    int copyStart = 0;
+
+    while ( parameterMatcher.find() ) {
+      int start = parameterMatcher.start();
+      String parameter = parameterMatcher.group( 1 );
+      String value = null;
+      boolean hasSpaces = parameter.indexOf( ' ' ) != -1;
+      if ( !hasSpaces && parameter.indexOf( ":col:" ) != -1 ) { //$NON-NLS-1$
+        TemplateUtil.applyTableTemplate( template, inputs, parameterPattern, results );
+        return results.toString();
+      }
+      if ( !hasSpaces && parameter.indexOf( ':' ) == -1 ) {
+        value = inputs.getProperty( parameter );
+      }
+
+      results.append( template.substring( copyStart, start ) );
+      copyStart = parameterMatcher.end();
+      if ( hasSpaces || value == null ) {
+        value = TemplateUtil.matchDateRegex( parameter, inputs );
+      }
+
+      if ( value == null ) {
+        results.append( parameterMatcher.group() );
+      } else {
+        results.append( value );
+      }
+    }
+
+    if ( copyStart < template.length() ) {
+      results.append( template.substring( copyStart ) );
+    }
+
+    return results.toString();
+  }
+}
@@ -0,0 +1,111 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.benchmarks;
+
+import org.dom4j.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.dom4j.DocumentException;
+import org.pentaho.platform.api.util.XmlParseException;
+import org.pentaho.platform.util.xml.XMLParserFactoryProducer;
+import org.pentaho.platform.util.xml.XmlStreamHelper;
+import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing, serializing and xpath lookups through {@link XmlDom4JHelper} on settings sized and action sequence sized
+ * documents. {@link #parseWithNewReader()} is the parse as it was done before the helpers used the pooled readers,
+ * and {@link #streamElementText()} the streaming lookup for documents that are read once.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@Threads( 4 )
+public class XmlDom4JHelperBenchmark {
+
+  @Param( { "10", "1000" } )
+  public int elementCount;
+
+  private String xml;
+  private byte[] xmlBytes;
+  private Document document;
+
+  @Setup
+  public void setUp() throws XmlParseException {
+    final StringBuilder builder = new StringBuilder( "<?xml version=\"1.0\" encoding=\"UTF-8\"?><settings>" );
+    for ( int i = 0; i < elementCount; i++ ) {
+      builder.append( "<setting name=\"setting-" ).append( i ).append( "\"><value>" ).append( i )
+        .append( "</value><description>Setting number " ).append( i ).append( "</description></setting>" );
+    }
+    builder.append( "</settings>" ); //$NON-NLS-1$
+    xml = builder.toString();
+    xmlBytes = xml.getBytes( StandardCharsets.UTF_8 );
+    document = XmlDom4JHelper.getDocFromString( xml, null );
+  }
+
+  @Benchmark
+  public Document parse() throws XmlParseException {
+    return XmlDom4JHelper.getDocFromString( xml, null );
+  }
+
+  @Benchmark
+  public Document parseWithNewReader() throws DocumentException {
+    return XMLParserFactoryProducer.getSAXReader( null ).read( new ByteArrayInputStream( xmlBytes ) );
+  }
+
+  @Benchmark
+  public Map<String, String> streamElementText() throws XMLStreamException {
+    return XmlStreamHelper.getElementTexts( new ByteArrayInputStream( xmlBytes ), "/settings/setting/value" );
+  }
+
+  @Benchmark
+  public byte[] serialize() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream( xml.length() );
+    XmlDom4JHelper.saveDom( document, out, "UTF-8" ); //$NON-NLS-1$
+    return out.toByteArray();
+  }
+
+  @Benchmark
+  public String nodeText() {
+    return XmlDom4JHelper.getNodeText( "/settings/setting[@name='setting-" + ( elementCount - 1 ) + "']/value",
+      document );
+  }
+}
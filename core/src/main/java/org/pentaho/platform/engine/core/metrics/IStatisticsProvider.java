@@ -0,0 +1,35 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.metrics;
+
+import java.util.Map;
+
+/**
+ * A cache, pool or queue whose counters are published by {@link RequestMetrics} once registered with
+ * {@link RequestMetrics#registerStatistics(String, IStatisticsProvider)}.
+ */
+public interface IStatisticsProvider {
+
+  /**
+   * Returns the current counters, keyed by a stable name.
+   */
+  Map<String, Number> getStatistics();
+}
@@ -0,0 +1,160 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free latency histogram with fixed millisecond buckets.
+ *
+ * <p>Recording is two adder increments and a bucket lookup, so timers can stay on in production. Percentiles are
+ * estimated from the bucket bounds; the reported value is the upper bound of the bucket holding the percentile.
+ */
+public class LatencyTimer {
+
+  /**
+   * Upper bounds of the histogram buckets, in milliseconds. A last, unbounded bucket holds everything above.
+   */
+  public static final long[] BUCKET_BOUNDS_MILLIS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+
+  private static final long NANOS_PER_MILLI = 1000000L;
+
+  private final LongAdder[] buckets = new LongAdder[ BUCKET_BOUNDS_MILLIS.length + 1 ];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final LongAccumulator maxNanos = new LongAccumulator( Long::max, 0L );
+
+  public LatencyTimer() {
+    for ( int i = 0; i < buckets.length; i++ ) {
+      buckets[ i ] = new LongAdder();
+    }
+  }
+
+  /**
+   * Records one observation.
+   *
+   * @param nanos elapsed time in nanoseconds, negative values are ignored
+   */
+  public void record( final long nanos ) {
+    if ( nanos < 0 ) {
+      return;
+    }
+    buckets[ bucketIndex( nanos ) ].increment();
+    count.increment();
+    totalNanos.add( nanos );
+    maxNanos.accumulate( nanos );
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getTotalNanos() {
+    return totalNanos.sum();
+  }
+
+  public long getMaxNanos() {
+    return maxNanos.get();
+  }
+
+  /**
+   * Returns the number of observations per bucket, not cumulative. The array has one more element than
+   * {@link #BUCKET_BOUNDS_MILLIS}, the last one counting the observations above the highest bound.
+   */
+  public long[] getBucketCounts() {
+    final long[] result = new long[ buckets.length ];
+    for ( int i = 0; i < buckets.length; i++ ) {
+      result[ i ] = buckets[ i ].sum();
+    }
+    return result;
+  }
+
+  /**
+   * Estimates a percentile from the histogram.
+   *
+   * @param percentile value between 0 and 1
+   * @return the upper bound in milliseconds of the bucket holding the percentile, the maximum observed value for the
+   * unbounded bucket, or 0 when nothing was recorded
+   */
+  public long getPercentileMillis( final double percentile ) {
+    final long[] counts = getBucketCounts();
+    long total = 0;
+    for ( long c : counts ) {
+      total += c;
+    }
+    if ( total == 0 ) {
+      return 0;
+    }
+    final long rank = (long) Math.ceil( percentile * total );
+    long seen = 0;
+    for ( int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++ ) {
+      seen += counts[ i ];
+      if ( seen >= rank ) {
+        return BUCKET_BOUNDS_MILLIS[ i ];
+      }
+    }
+    return getMaxNanos() / NANOS_PER_MILLI;
+  }
+
+  /**
+   * Returns the count, total, mean, max and p50/p95/p99 estimates, times in milliseconds.
+   */
+  public Map<String, Number> getStatistics() {
+    final long observations = getCount();
+    final long total = getTotalNanos();
+    final Map<String, Number> result = new LinkedHashMap<>();
+    result.put( "count", observations );
+    result.put( "totalMillis", total / NANOS_PER_MILLI );
+    result.put( "meanMillis", observations == 0 ? 0.0 : (double) total / observations / NANOS_PER_MILLI );
+    result.put( "maxMillis", getMaxNanos() / NANOS_PER_MILLI );
+    result.put( "p50Millis", getPercentileMillis( 0.50 ) );
+    result.put( "p95Millis", getPercentileMillis( 0.95 ) );
+    result.put( "p99Millis", getPercentileMillis( 0.99 ) );
+    return result;
+  }
+
+  /**
+   * Clears every counter. Observations recorded concurrently may survive the reset.
+   */
+  public void reset() {
+    for ( LongAdder bucket : buckets ) {
+      bucket.reset();
+    }
+    count.reset();
+    totalNanos.reset();
+    maxNanos.reset();
+  }
+
+  static int bucketIndex( final long nanos ) {
+    final long millis = nanos / NANOS_PER_MILLI;
+    for ( int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++ ) {
+      // a bucket is inclusive of its upper bound
+      if ( millis < BUCKET_BOUNDS_MILLIS[ i ]
+        || millis == BUCKET_BOUNDS_MILLIS[ i ] && nanos % NANOS_PER_MILLI == 0 ) {
+        return i;
+      }
+    }
+    return BUCKET_BOUNDS_MILLIS.length;
+  }
+}
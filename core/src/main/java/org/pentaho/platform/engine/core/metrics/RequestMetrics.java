@@ -0,0 +1,644 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.metrics;
+
+import org.apache.commons.lang.math.NumberUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Request level latency instrumentation.
+ *
+ * <p>Every instrumented operation is timed into a {@link LatencyTimer} keyed by its {@link Category} and name (the
+ * REST resource method, content generator, repository method or datasource). Timers are always on; the cost is two
+ * {@link System#nanoTime()} calls and a few adder increments per span.
+ *
+ * <p>A sampled fraction of the requests additionally records a trace: the list of spans opened on the request
+ * thread, correlated by the request id set by the {@code RequestIdFilter}. Requests slower than the slow request
+ * threshold are always logged with their request id, together with their spans when they were sampled. Raise the
+ * sample rate through JMX to capture the breakdown of a slow page load.
+ *
+ * <p>Caches, pools and queues registered with {@link #registerStatistics(String, IStatisticsProvider)} have their
+ * counters published next to the timers, in the Prometheus output and through JMX.
+ *
+ * <p>Configured in pentaho.xml:
+ * <pre>
+ *   &lt;request-metrics&gt;
+ *     &lt;enabled&gt;true&lt;/enabled&gt;
+ *     &lt;trace-sample-rate&gt;0.01&lt;/trace-sample-rate&gt;
+ *     &lt;slow-request-millis&gt;5000&lt;/slow-request-millis&gt;
+ *     &lt;max-traces&gt;50&lt;/max-traces&gt;
+ *     &lt;max-spans-per-trace&gt;200&lt;/max-spans-per-trace&gt;
+ *     &lt;max-names-per-category&gt;500&lt;/max-names-per-category&gt;
+ *     &lt;jmx-enabled&gt;true&lt;/jmx-enabled&gt;
+ *   &lt;/request-metrics&gt;
+ * </pre>
+ */
+public class RequestMetrics implements RequestMetricsMBean {
+
+  /**
+   * Kind of operation a span times.
+   */
+  public enum Category {
+    REQUEST, REST, CONTENT_GENERATOR, REPOSITORY, DATASOURCE, SESSION;
+
+    public String getLabel() {
+      return name().toLowerCase( Locale.ROOT );
+    }
+  }
+
+  public static final String OBJECT_NAME = "org.pentaho.platform:type=RequestMetrics"; //$NON-NLS-1$
+
+  /**
+   * Timer name used once a category holds {@code max-names-per-category} distinct names.
+   */
+  public static final String OVERFLOW_NAME = "other"; //$NON-NLS-1$
+
+  static final String ENABLED_SETTING = "request-metrics/enabled"; //$NON-NLS-1$
+  static final String TRACE_SAMPLE_RATE_SETTING = "request-metrics/trace-sample-rate"; //$NON-NLS-1$
+  static final String SLOW_REQUEST_MILLIS_SETTING = "request-metrics/slow-request-millis"; //$NON-NLS-1$
+  static final String MAX_TRACES_SETTING = "request-metrics/max-traces"; //$NON-NLS-1$
+  static final String MAX_SPANS_PER_TRACE_SETTING = "request-metrics/max-spans-per-trace"; //$NON-NLS-1$
+  static final String MAX_NAMES_PER_CATEGORY_SETTING = "request-metrics/max-names-per-category"; //$NON-NLS-1$
+  static final String JMX_ENABLED_SETTING = "request-metrics/jmx-enabled"; //$NON-NLS-1$
+
+  private static final double DEFAULT_TRACE_SAMPLE_RATE = 0.01;
+  private static final long DEFAULT_SLOW_REQUEST_MILLIS = 5000;
+  private static final int DEFAULT_MAX_TRACES = 50;
+  private static final int DEFAULT_MAX_SPANS_PER_TRACE = 200;
+  private static final int DEFAULT_MAX_NAMES_PER_CATEGORY = 500;
+
+  private static final String METRIC_NAME = "pentaho_latency_seconds"; //$NON-NLS-1$
+  private static final String STATISTIC_METRIC_NAME = "pentaho_statistic"; //$NON-NLS-1$
+
+  private static final Log logger = LogFactory.getLog( RequestMetrics.class );
+
+  private static volatile RequestMetrics instance;
+
+  // held by the class, so that providers can register before the settings are available
+  private static final ConcurrentMap<String, IStatisticsProvider> statisticsProviders = new ConcurrentHashMap<>();
+
+  private final Map<Category, ConcurrentMap<String, LatencyTimer>> timers = new EnumMap<>( Category.class );
+  private final ThreadLocal<RequestSpan> currentRequest = new ThreadLocal<>();
+
+  private final int maxTraces;
+  private final int maxSpansPerTrace;
+  private final int maxNamesPerCategory;
+  private final Deque<RequestTrace> recentTraces = new ConcurrentLinkedDeque<>();
+  private final Deque<RequestTrace> slowRequests = new ConcurrentLinkedDeque<>();
+
+  private volatile boolean enabled;
+  private volatile double traceSampleRate;
+  private volatile long slowRequestMillis;
+
+  public RequestMetrics( boolean enabled, double traceSampleRate, long slowRequestMillis, int maxTraces,
+                         int maxSpansPerTrace, int maxNamesPerCategory ) {
+    this.enabled = enabled;
+    this.traceSampleRate = traceSampleRate;
+    this.slowRequestMillis = slowRequestMillis;
+    this.maxTraces = maxTraces;
+    this.maxSpansPerTrace = maxSpansPerTrace;
+    this.maxNamesPerCategory = maxNamesPerCategory;
+    for ( Category category : Category.values() ) {
+      timers.put( category, new ConcurrentHashMap<String, LatencyTimer>() );
+    }
+  }
+
+  /**
+   * Returns the instance configured through the system settings, registering it with the platform MBean server
+   * the first time.
+   */
+  public static RequestMetrics getInstance() {
+    RequestMetrics metrics = instance;
+    if ( metrics == null ) {
+      synchronized ( RequestMetrics.class ) {
+        metrics = instance;
+        if ( metrics == null ) {
+          metrics = new RequestMetrics(
+            Boolean.parseBoolean( PentahoSystem.getSystemSetting( ENABLED_SETTING, "true" ) ), //$NON-NLS-1$
+            NumberUtils.toDouble( PentahoSystem.getSystemSetting( TRACE_SAMPLE_RATE_SETTING, null ),
+              DEFAULT_TRACE_SAMPLE_RATE ),
+            NumberUtils.toLong( PentahoSystem.getSystemSetting( SLOW_REQUEST_MILLIS_SETTING, null ),
+              DEFAULT_SLOW_REQUEST_MILLIS ),
+            NumberUtils.toInt( PentahoSystem.getSystemSetting( MAX_TRACES_SETTING, null ), DEFAULT_MAX_TRACES ),
+            NumberUtils.toInt( PentahoSystem.getSystemSetting( MAX_SPANS_PER_TRACE_SETTING, null ),
+              DEFAULT_MAX_SPANS_PER_TRACE ),
+            NumberUtils.toInt( PentahoSystem.getSystemSetting( MAX_NAMES_PER_CATEGORY_SETTING, null ),
+              DEFAULT_MAX_NAMES_PER_CATEGORY ) );
+          if ( Boolean.parseBoolean( PentahoSystem.getSystemSetting( JMX_ENABLED_SETTING, "true" ) ) ) { //$NON-NLS-1$
+            metrics.registerMBean();
+          }
+          instance = metrics;
+        }
+      }
+    }
+    return metrics;
+  }
+
+  /**
+   * Publishes the counters of a provider under the given name, replacing the provider registered under it.
+   */
+  public static void registerStatistics( final String name, final IStatisticsProvider provider ) {
+    statisticsProviders.put( name, provider );
+  }
+
+  /**
+   * Stops publishing the counters of a provider, unless another one was registered under its name since.
+   */
+  public static void unregisterStatistics( final String name, final IStatisticsProvider provider ) {
+    statisticsProviders.remove( name, provider );
+  }
+
+  /**
+   * Returns the counters of the provider registered under the given name, or null if there is none.
+   */
+  public static Map<String, Number> getStatistics( final String name ) {
+    final IStatisticsProvider provider = statisticsProviders.get( name );
+    return provider == null ? null : provider.getStatistics();
+  }
+
+  /**
+   * Returns the counters of every registered provider, keyed by provider name.
+   */
+  public static Map<String, Map<String, Number>> getAllStatistics() {
+    final Map<String, Map<String, Number>> result = new TreeMap<>();
+    for ( Map.Entry<String, IStatisticsProvider> entry : statisticsProviders.entrySet() ) {
+      result.put( entry.getKey(), entry.getValue().getStatistics() );
+    }
+    return result;
+  }
+
+  /**
+   * Opens a span timing one operation. Use with try-with-resources; the returned span is a no-op when the
+   * instrumentation is disabled.
+   *
+   * @param category kind of operation
+   * @param name     stable, low cardinality name such as {@code FileResource.doGetChildren}
+   */
+  public Span start( final Category category, final String name ) {
+    if ( !enabled ) {
+      return Span.NOOP;
+    }
+    final RequestSpan request = currentRequest.get();
+    return new Span( category, name, getTimer( category, name ), request == null ? null : request.requestTrace );
+  }
+
+  /**
+   * Opens the top level span of a request on the current thread. Spans opened on this thread until the returned
+   * span is closed are attributed to the request. Nested calls, e.g. for forwarded requests, return a no-op span.
+   *
+   * @param requestId id correlating the request with its log lines
+   * @param name      stable, low cardinality name such as the servlet path
+   */
+  public Span startRequest( final String requestId, final String name ) {
+    if ( !enabled || currentRequest.get() != null ) {
+      return Span.NOOP;
+    }
+    final RequestTrace trace = ThreadLocalRandom.current().nextDouble() < traceSampleRate
+      ? new RequestTrace( requestId, name, System.currentTimeMillis(), maxSpansPerTrace ) : null;
+    final RequestSpan span = new RequestSpan( this, requestId, name, getTimer( Category.REQUEST, name ), trace );
+    currentRequest.set( span );
+    return span;
+  }
+
+  /**
+   * Returns the id of the request running on the current thread, or null.
+   */
+  public String getCurrentRequestId() {
+    final RequestSpan request = currentRequest.get();
+    return request == null ? null : request.requestId;
+  }
+
+  /**
+   * Returns the statistics of every timer, keyed by category label and timer name.
+   */
+  public Map<String, Map<String, Map<String, Number>>> getStatistics() {
+    final Map<String, Map<String, Map<String, Number>>> result = new LinkedHashMap<>();
+    for ( Map.Entry<Category, ConcurrentMap<String, LatencyTimer>> category : timers.entrySet() ) {
+      final Map<String, Map<String, Number>> byName = new TreeMap<>();
+      for ( Map.Entry<String, LatencyTimer> timer : category.getValue().entrySet() ) {
+        byName.put( timer.getKey(), timer.getValue().getStatistics() );
+      }
+      result.put( category.getKey().getLabel(), byName );
+    }
+    return result;
+  }
+
+  /**
+   * Returns the timer for a category and name, or null if nothing was recorded under it.
+   */
+  public LatencyTimer findTimer( final Category category, final String name ) {
+    return timers.get( category ).get( name );
+  }
+
+  public List<RequestTrace> getRecentTraceList() {
+    return new ArrayList<>( recentTraces );
+  }
+
+  public List<RequestTrace> getSlowRequestList() {
+    return new ArrayList<>( slowRequests );
+  }
+
+  /**
+   * Writes every timer as a histogram, and the counters of the registered providers, in the Prometheus text
+   * exposition format.
+   */
+  public void writePrometheus( final Writer out ) throws IOException {
+    out.write( "# HELP " + METRIC_NAME + " Latency of platform requests and the operations they run.\n" );
+    out.write( "# TYPE " + METRIC_NAME + " histogram\n" );
+    for ( Map.Entry<Category, ConcurrentMap<String, LatencyTimer>> category : timers.entrySet() ) {
+      final Map<String, LatencyTimer> sorted = new TreeMap<>( category.getValue() );
+      for ( Map.Entry<String, LatencyTimer> entry : sorted.entrySet() ) {
+        final String labels = "category=\"" + category.getKey().getLabel() + "\",name=\"" //$NON-NLS-1$ //$NON-NLS-2$
+          + escapeLabel( entry.getKey() ) + "\""; //$NON-NLS-1$
+        final LatencyTimer timer = entry.getValue();
+        final long[] counts = timer.getBucketCounts();
+        long cumulative = 0;
+        for ( int i = 0; i < LatencyTimer.BUCKET_BOUNDS_MILLIS.length; i++ ) {
+          cumulative += counts[ i ];
+          out.write( METRIC_NAME + "_bucket{" + labels + ",le=\"" //$NON-NLS-1$ //$NON-NLS-2$
+            + LatencyTimer.BUCKET_BOUNDS_MILLIS[ i ] / 1000.0 + "\"} " + cumulative + "\n" ); //$NON-NLS-1$
+        }
+        cumulative += counts[ counts.length - 1 ];
+        out.write( METRIC_NAME + "_bucket{" + labels + ",le=\"+Inf\"} " + cumulative + "\n" ); //$NON-NLS-1$
+        out.write( METRIC_NAME + "_sum{" + labels + "} " + timer.getTotalNanos() / 1e9 + "\n" ); //$NON-NLS-1$
+        out.write( METRIC_NAME + "_count{" + labels + "} " + cumulative + "\n" ); //$NON-NLS-1$
+      }
+    }
+    final Map<String, Map<String, Number>> statistics = getAllStatistics();
+    if ( statistics.isEmpty() ) {
+      return;
+    }
+    out.write( "# HELP " + STATISTIC_METRIC_NAME + " Counters of the platform caches, pools and queues.\n" );
+    out.write( "# TYPE " + STATISTIC_METRIC_NAME + " untyped\n" );
+    for ( Map.Entry<String, Map<String, Number>> source : statistics.entrySet() ) {
+      for ( Map.Entry<String, Number> entry : new TreeMap<>( source.getValue() ).entrySet() ) {
+        out.write( STATISTIC_METRIC_NAME + "{source=\"" + escapeLabel( source.getKey() ) //$NON-NLS-1$
+          + "\",name=\"" + escapeLabel( entry.getKey() ) + "\"} " + entry.getValue() + "\n" ); //$NON-NLS-1$
+      }
+    }
+  }
+
+  /**
+   * Writes the recent sampled traces and the slow requests, one span per line.
+   */
+  public void writeTraces( final Writer out ) throws IOException {
+    out.write( "# slow requests (> " + slowRequestMillis + " ms)\n" ); //$NON-NLS-1$
+    for ( RequestTrace trace : slowRequests ) {
+      out.write( trace.format() );
+    }
+    out.write( "# sampled requests (rate " + traceSampleRate + ")\n" ); //$NON-NLS-1$
+    for ( RequestTrace trace : recentTraces ) {
+      out.write( trace.format() );
+    }
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @Override
+  public void setEnabled( final boolean enabled ) {
+    this.enabled = enabled;
+  }
+
+  @Override
+  public double getTraceSampleRate() {
+    return traceSampleRate;
+  }
+
+  @Override
+  public void setTraceSampleRate( final double traceSampleRate ) {
+    this.traceSampleRate = traceSampleRate;
+  }
+
+  @Override
+  public long getSlowRequestMillis() {
+    return slowRequestMillis;
+  }
+
+  @Override
+  public void setSlowRequestMillis( final long slowRequestMillis ) {
+    this.slowRequestMillis = slowRequestMillis;
+  }
+
+  @Override
+  public String[] getTimerSummaries() {
+    final List<String> result = new ArrayList<>();
+    for ( Map.Entry<String, Map<String, Map<String, Number>>> category : getStatistics().entrySet() ) {
+      for ( Map.Entry<String, Map<String, Number>> timer : category.getValue().entrySet() ) {
+        result.add( category.getKey() + " " + timer.getKey() + " " + timer.getValue() ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    return result.toArray( new String[ result.size() ] );
+  }
+
+  @Override
+  public String[] getStatisticSummaries() {
+    final List<String> result = new ArrayList<>();
+    for ( Map.Entry<String, Map<String, Number>> source : getAllStatistics().entrySet() ) {
+      result.add( source.getKey() + " " + source.getValue() ); //$NON-NLS-1$
+    }
+    return result.toArray( new String[ result.size() ] );
+  }
+
+  @Override
+  public String[] getRecentTraces() {
+    return formatAll( recentTraces );
+  }
+
+  @Override
+  public String[] getSlowRequests() {
+    return formatAll( slowRequests );
+  }
+
+  @Override
+  public void reset() {
+    for ( ConcurrentMap<String, LatencyTimer> byName : timers.values() ) {
+      byName.clear();
+    }
+    recentTraces.clear();
+    slowRequests.clear();
+  }
+
+  void registerMBean() {
+    try {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      final ObjectName name = new ObjectName( OBJECT_NAME );
+      if ( server.isRegistered( name ) ) {
+        // left over from a previous deployment in the same JVM
+        server.unregisterMBean( name );
+      }
+      server.registerMBean( this, name );
+    } catch ( Exception e ) {
+      logger.warn( "Unable to register " + OBJECT_NAME, e ); //$NON-NLS-1$
+    }
+  }
+
+  private LatencyTimer getTimer( final Category category, final String name ) {
+    final ConcurrentMap<String, LatencyTimer> byName = timers.get( category );
+    LatencyTimer timer = byName.get( name );
+    if ( timer == null ) {
+      // bound the number of series a misbehaving caller can create
+      final String key = byName.size() >= maxNamesPerCategory ? OVERFLOW_NAME : name;
+      timer = byName.computeIfAbsent( key, k -> new LatencyTimer() );
+    }
+    return timer;
+  }
+
+  private void finish( final RequestSpan span, final long elapsedNanos ) {
+    currentRequest.remove();
+    final RequestTrace trace = span.requestTrace;
+    final boolean slow = slowRequestMillis > 0 && elapsedNanos / 1000000L >= slowRequestMillis;
+    if ( trace == null && !slow ) {
+      return;
+    }
+    final RequestTrace finished = trace != null ? trace
+      : new RequestTrace( span.requestId, span.requestName, System.currentTimeMillis() - elapsedNanos / 1000000L, 0 );
+    finished.durationNanos = elapsedNanos;
+    if ( trace != null ) {
+      push( recentTraces, finished );
+    }
+    if ( slow ) {
+      push( slowRequests, finished );
+      logger.warn( "Slow request " + finished.format() ); //$NON-NLS-1$
+    }
+  }
+
+  private void push( final Deque<RequestTrace> traces, final RequestTrace trace ) {
+    traces.addFirst( trace );
+    while ( traces.size() > maxTraces ) {
+      traces.pollLast();
+    }
+  }
+
+  private static String[] formatAll( final Deque<RequestTrace> traces ) {
+    final List<String> result = new ArrayList<>();
+    for ( RequestTrace trace : traces ) {
+      result.add( trace.format() );
+    }
+    return result.toArray( new String[ result.size() ] );
+  }
+
+  private static String escapeLabel( final String value ) {
+    return value.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ).replace( "\n", "\\n" ); //$NON-NLS-1$
+  }
+
+  /**
+   * A timed operation. Closing it records the elapsed time; closing it twice has no effect.
+   */
+  public static class Span implements AutoCloseable {
+
+    static final Span NOOP = new Span( null, null, null, null ) {
+      @Override
+      public void close() {
+        // nothing was started
+      }
+    };
+
+    private final Category category;
+    private final String name;
+    private final LatencyTimer timer;
+    private final RequestTrace trace;
+    private final long startNanos = System.nanoTime();
+    private boolean closed;
+
+    Span( final Category category, final String name, final LatencyTimer timer, final RequestTrace trace ) {
+      this.category = category;
+      this.name = name;
+      this.timer = timer;
+      this.trace = trace;
+    }
+
+    @Override
+    public void close() {
+      if ( closed ) {
+        return;
+      }
+      closed = true;
+      final long elapsed = System.nanoTime() - startNanos;
+      timer.record( elapsed );
+      if ( trace != null ) {
+        trace.add( category, name, startNanos, elapsed );
+      }
+      onClose( elapsed );
+    }
+
+    void onClose( final long elapsedNanos ) {
+    }
+  }
+
+  private static class RequestSpan extends Span {
+
+    private final RequestMetrics metrics;
+    private final String requestId;
+    private final String requestName;
+    private final RequestTrace requestTrace;
+
+    RequestSpan( final RequestMetrics metrics, final String requestId, final String name, final LatencyTimer timer,
+                 final RequestTrace trace ) {
+      // the request span itself is not part of its trace
+      super( Category.REQUEST, name, timer, null );
+      this.metrics = metrics;
+      this.requestId = requestId;
+      this.requestName = name;
+      this.requestTrace = trace;
+    }
+
+    @Override
+    void onClose( final long elapsedNanos ) {
+      metrics.finish( this, elapsedNanos );
+    }
+  }
+
+  /**
+   * The spans recorded while serving one request.
+   */
+  public static class RequestTrace {
+
+    private final String requestId;
+    private final String name;
+    private final long startTimeMillis;
+    private final long startNanos = System.nanoTime();
+    private final int maxSpans;
+    private final List<SpanRecord> spans = Collections.synchronizedList( new ArrayList<SpanRecord>() );
+    private final AtomicInteger droppedSpans = new AtomicInteger();
+    private volatile long durationNanos;
+
+    RequestTrace( final String requestId, final String name, final long startTimeMillis, final int maxSpans ) {
+      this.requestId = requestId;
+      this.name = name;
+      this.startTimeMillis = startTimeMillis;
+      this.maxSpans = maxSpans;
+    }
+
+    public String getRequestId() {
+      return requestId;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getStartTimeMillis() {
+      return startTimeMillis;
+    }
+
+    public long getDurationMillis() {
+      return durationNanos / 1000000L;
+    }
+
+    public List<SpanRecord> getSpans() {
+      synchronized ( spans ) {
+        return new ArrayList<>( spans );
+      }
+    }
+
+    public int getDroppedSpans() {
+      return droppedSpans.get();
+    }
+
+    void add( final Category category, final String spanName, final long spanStartNanos, final long elapsedNanos ) {
+      if ( spans.size() >= maxSpans ) {
+        droppedSpans.incrementAndGet();
+        return;
+      }
+      spans.add( new SpanRecord( category, spanName, spanStartNanos - startNanos, elapsedNanos ) );
+    }
+
+    String format() {
+      final StringBuilder sb = new StringBuilder();
+      sb.append( "requestId=" ).append( requestId ).append( " name=" ).append( name ) //$NON-NLS-1$ //$NON-NLS-2$
+        .append( " start=" ).append( startTimeMillis ) //$NON-NLS-1$
+        .append( " durationMillis=" ).append( getDurationMillis() ).append( '\n' ); //$NON-NLS-1$
+      for ( Iterator<SpanRecord> it = getSpans().iterator(); it.hasNext(); ) {
+        sb.append( "  " ).append( it.next() ).append( '\n' ); //$NON-NLS-1$
+      }
+      if ( droppedSpans.get() > 0 ) {
+        sb.append( "  ... " ).append( droppedSpans.get() ).append( " more spans\n" ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+      return sb.toString();
+    }
+  }
+
+  /**
+   * One span of a {@link RequestTrace}, offsets relative to the start of the request.
+   */
+  public static class SpanRecord {
+
+    private final Category category;
+    private final String name;
+    private final long offsetNanos;
+    private final long durationNanos;
+
+    SpanRecord( final Category category, final String name, final long offsetNanos, final long durationNanos ) {
+      this.category = category;
+      this.name = name;
+      this.offsetNanos = offsetNanos;
+      this.durationNanos = durationNanos;
+    }
+
+    public Category getCategory() {
+      return category;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public double getOffsetMillis() {
+      return offsetNanos / 1e6;
+    }
+
+    public double getDurationMillis() {
+      return durationNanos / 1e6;
+    }
+
+    @Override
+    public String toString() {
+      return String.format( Locale.ROOT, "+%.1fms %s %s %.1fms", getOffsetMillis(), category.getLabel(), name,
+        getDurationMillis() );
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.metrics;
+
+/**
+ * JMX view of {@link RequestMetrics}, registered as {@value RequestMetrics#OBJECT_NAME}.
+ */
+public interface RequestMetricsMBean {
+
+  boolean isEnabled();
+
+  void setEnabled( boolean enabled );
+
+  double getTraceSampleRate();
+
+  void setTraceSampleRate( double traceSampleRate );
+
+  long getSlowRequestMillis();
+
+  void setSlowRequestMillis( long slowRequestMillis );
+
+  /**
+   * One line per timer: category, name, count, mean, max and percentile estimates.
+   */
+  String[] getTimerSummaries();
+
+  /**
+   * One line per registered statistics provider: name and counters.
+   */
+  String[] getStatisticSummaries();
+
+  /**
+   * The most recent sampled request traces, newest first.
+   */
+  String[] getRecentTraces();
+
+  /**
+   * The most recent requests slower than {@link #getSlowRequestMillis()}, newest first.
+   */
+  String[] getSlowRequests();
+
+  void reset();
+}
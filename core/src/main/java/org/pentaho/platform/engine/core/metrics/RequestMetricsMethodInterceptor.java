@@ -0,0 +1,52 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * Spring AOP interceptor timing every call of the proxied bean into {@link RequestMetrics}, one timer per method
+ * name. Used on the unified repository proxy:
+ *
+ * <pre>
+ *   &lt;bean id="unifiedRepositoryMetricsInterceptor"
+ *         class="org.pentaho.platform.engine.core.metrics.RequestMetricsMethodInterceptor"&gt;
+ *     &lt;constructor-arg value="REPOSITORY"/&gt;
+ *   &lt;/bean&gt;
+ * </pre>
+ */
+public class RequestMetricsMethodInterceptor implements MethodInterceptor {
+
+  private final RequestMetrics.Category category;
+
+  public RequestMetricsMethodInterceptor( final RequestMetrics.Category category ) {
+    this.category = category;
+  }
+
+  @Override
+  public Object invoke( final MethodInvocation invocation ) throws Throwable {
+    try ( RequestMetrics.Span span = RequestMetrics.getInstance().start( category,
+      invocation.getMethod().getName() ) ) {
+      return invocation.proceed();
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Registers the statistics providers configured in Spring with {@link RequestMetrics}, and unregisters them on
+ * {@link #unregister()} (the destroy method).
+ */
+public class StatisticsRegistrar {
+
+  private final Map<String, IStatisticsProvider> providers;
+
+  /**
+   * @param providers The providers, keyed by the name they are published under.
+   */
+  public StatisticsRegistrar( Map<String, IStatisticsProvider> providers ) {
+    this.providers = new LinkedHashMap<>( providers );
+    for ( Map.Entry<String, IStatisticsProvider> entry : this.providers.entrySet() ) {
+      RequestMetrics.registerStatistics( entry.getKey(), entry.getValue() );
+    }
+  }
+
+  public void unregister() {
+    for ( Map.Entry<String, IStatisticsProvider> entry : providers.entrySet() ) {
+      RequestMetrics.unregisterStatistics( entry.getKey(), entry.getValue() );
+    }
+  }
+}
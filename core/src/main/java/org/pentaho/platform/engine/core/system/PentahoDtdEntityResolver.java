@@ -20,18 +20,25 @@
 
 package org.pentaho.platform.engine.core.system;
 
+import org.apache.commons.io.FileUtils;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Resolves DTDs from <code>system/dtd</code> of the solution. The content of a DTD is read once and kept until the
+ * file changes, since the same few DTDs are resolved for every settings and action sequence document parsed.
+ */
 public class PentahoDtdEntityResolver implements EntityResolver {
 
+  private static final ConcurrentMap<String, CachedDtd> dtdCache = new ConcurrentHashMap<>();
+
   /*
    * (non-Javadoc)
    * 
@@ -43,11 +50,31 @@ public class PentahoDtdEntityResolver implements EntityResolver {
     String fullPath = PentahoSystem.getApplicationContext().getSolutionPath( "system/dtd/" + dtdName ); //$NON-NLS-1$
     File theFile = new File( fullPath );
     if ( theFile.canRead() ) {
-      InputStream xslIS = new BufferedInputStream( new FileInputStream( theFile ) );
-      InputSource source = new InputSource( xslIS );
-      return source;
+      return new InputSource( new ByteArrayInputStream( getDtd( fullPath, theFile ) ) );
     }
+    dtdCache.remove( fullPath );
     return null;
   }
 
+  private static byte[] getDtd( final String fullPath, final File theFile ) throws IOException {
+    final long lastModified = theFile.lastModified();
+    final long length = theFile.length();
+    CachedDtd dtd = dtdCache.get( fullPath );
+    if ( dtd == null || dtd.lastModified != lastModified || dtd.content.length != length ) {
+      dtd = new CachedDtd( lastModified, FileUtils.readFileToByteArray( theFile ) );
+      dtdCache.put( fullPath, dtd );
+    }
+    return dtd.content;
+  }
+
+  private static class CachedDtd {
+    private final long lastModified;
+    private final byte[] content;
+
+    CachedDtd( final long lastModified, final byte[] content ) {
+      this.lastModified = lastModified;
+      this.content = content;
+    }
+  }
+
 }
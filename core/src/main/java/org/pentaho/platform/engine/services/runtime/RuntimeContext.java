@@ -105,7 +105,6 @@ import org.pentaho.platform.engine.services.solution.PojoComponent;
 import org.pentaho.platform.util.logging.Logger;
 import org.pentaho.platform.util.messages.LocaleHelper;
 import org.pentaho.platform.util.xml.XForm;
-import org.pentaho.platform.util.xml.XMLParserFactoryProducer;
 import org.pentaho.platform.util.xml.XmlHelper;
 import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
 
@@ -1406,9 +1405,8 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
     }
     Document document = null;
     try {
-      org.dom4j.io.SAXReader reader = XMLParserFactoryProducer.getSAXReader( new SolutionURIResolver() );
-      document = reader.read( actionResource.getInputStream(
-        RepositoryFilePermission.READ, LocaleHelper.getLocale() ) );
+      document = XmlDom4JHelper.getDocFromStream( actionResource.getInputStream(
+        RepositoryFilePermission.READ, LocaleHelper.getLocale() ), new SolutionURIResolver() );
     } catch ( Throwable t ) {
       // XML document can't be read. We'll just return a null document.
     }
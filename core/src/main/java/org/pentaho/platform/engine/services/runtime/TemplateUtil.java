@@ -20,6 +20,8 @@
 
 package org.pentaho.platform.engine.services.runtime;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.commons.connection.IPentahoMetaData;
@@ -70,6 +72,17 @@ public class TemplateUtil {
 
   private static final List<String> SystemInputs = new ArrayList<String>();
 
+  /**
+   * Maximum number of template characters held by the compiled template cache.
+   */
+  private static final long TEMPLATE_CACHE_MAX_CHARS = 8L * 1024 * 1024;
+
+  private static final Cache<CompiledTemplate.Key, CompiledTemplate> compiledTemplates =
+      CacheBuilder.newBuilder().maximumWeight( TEMPLATE_CACHE_MAX_CHARS )
+          .<CompiledTemplate.Key, CompiledTemplate>weigher( ( key, value ) -> key.template.length() + 1 ).build();
+
+  private static final Cache<String, Pattern> parameterPatterns = CacheBuilder.newBuilder().maximumSize( 100 ).build();
+
   private static final Log logger = LogFactory.getLog( TemplateUtil.class );
 
   static {
@@ -108,7 +121,11 @@ public class TemplateUtil {
 
   public static String applyTemplate( final String template, final IRuntimeContext context,
       final String parameterPatternStr ) {
-    Pattern pattern = Pattern.compile( parameterPatternStr );
+    Pattern pattern = parameterPatterns.getIfPresent( parameterPatternStr );
+    if ( pattern == null ) {
+      pattern = Pattern.compile( parameterPatternStr );
+      parameterPatterns.put( parameterPatternStr, pattern );
+    }
     return TemplateUtil.applyTemplate( template, new InputProperties( context ), pattern, null );
   }
 
@@ -137,81 +154,7 @@ public class TemplateUtil {
    */
   public static String applyTemplate( final String template, final Properties inputs, final Pattern parameterPattern,
       final IParameterResolver resolver ) {
-    StringBuffer results = new StringBuffer();
-    Matcher parameterMatcher = parameterPattern.matcher( template );
-    int copyStart = 0;
-
-    while ( parameterMatcher.find() ) {
-      int start = parameterMatcher.start();
-      String parameter = parameterMatcher.group( 1 );
-      String value = null;
-      int colonPosition = parameter.indexOf( ':' );
-      boolean hasSpaces = parameter.indexOf( ' ' ) != -1;
-      boolean isTableTemplate = !hasSpaces && parameter.indexOf( ":col:" ) != -1; //$NON-NLS-1$
-      boolean isComponentResoved = !hasSpaces && colonPosition != -1;
-      boolean isNamedParameter = !hasSpaces;
-      boolean isDateParamter = hasSpaces;
-      if ( isTableTemplate ) {
-        TemplateUtil.applyTableTemplate( template, inputs, parameterPattern, results );
-        return results.toString();
-      }
-      if ( isComponentResoved ) {
-        // Allow alternate parameter resolution to be provided by the
-        // component.
-        if ( resolver != null ) {
-          int newCopyStart = resolver.resolveParameter( template, parameter, parameterMatcher, copyStart, results );
-          if ( newCopyStart >= 0 ) {
-            copyStart = newCopyStart;
-            continue;
-          }
-        }
-        StringTokenizer tokenizer = new StringTokenizer( parameter, ":" ); //$NON-NLS-1$
-        if ( tokenizer.countTokens() >= 5 ) {
-          // this looks like a data table key
-          parameter = tokenizer.nextToken();
-          String keyColumn = tokenizer.nextToken();
-          String keyValue = tokenizer.nextToken();
-          String valueColumn = tokenizer.nextToken();
-          StringBuffer defaultValue = new StringBuffer();
-          defaultValue.append( tokenizer.nextToken() );
-          while ( tokenizer.hasMoreTokens() ) {
-            defaultValue.append( ':' ).append( tokenizer.nextToken() );
-          }
-          // see if we can find this in the data
-          if ( inputs instanceof InputProperties ) {
-            value =
-                ( (InputProperties) inputs ).getProperty( parameter, keyColumn, keyValue, valueColumn, defaultValue
-                    .toString() );
-          }
-        }
-      } else if ( isNamedParameter ) {
-        // TODO support type conversion
-        value = inputs.getProperty( parameter );
-        if ( value == null ) {
-          if ( TemplateUtil.logger.isDebugEnabled() ) {
-            TemplateUtil.logger.debug( Messages.getInstance().getString( "TemplateUtil.NOT_FOUND", parameter ) ); //$NON-NLS-1$
-          }
-        }
-      }
-
-      results.append( template.substring( copyStart, start ) );
-      copyStart = parameterMatcher.end();
-      if ( isDateParamter || value == null ) {
-        value = TemplateUtil.matchDateRegex( parameter, inputs );
-      }
-
-      if ( value == null ) {
-        results.append( parameterMatcher.group() );
-      } else {
-        results.append( value );
-      }
-    }
-
-    if ( copyStart < template.length() ) {
-      results.append( template.substring( copyStart ) );
-    }
-
-    return results.toString();
+    return compile( template, parameterPattern ).apply( inputs, resolver );
   }
 
   public static void applyTableTemplate( final String template, final Properties inputs,
@@ -605,6 +548,198 @@ public class TemplateUtil {
     }
   }
 
+  /**
+   * Returns the parsed form of a template, from the cache if it was already parsed with the same pattern.
+   */
+  static CompiledTemplate compile( final String template, final Pattern parameterPattern ) {
+    final CompiledTemplate.Key key = new CompiledTemplate.Key( template, parameterPattern );
+    CompiledTemplate compiled = compiledTemplates.getIfPresent( key );
+    if ( compiled == null ) {
+      // parsing twice on a race is harmless, both results are equivalent
+      compiled = new CompiledTemplate( template, parameterPattern );
+      compiledTemplates.put( key, compiled );
+    }
+    return compiled;
+  }
+
+  /**
+   * A template parsed once into the list of its parameter tokens. Applying it walks the tokens and copies the
+   * literal text between them, without scanning the template again.
+   */
+  static final class CompiledTemplate {
+
+    private final String template;
+    private final Pattern parameterPattern;
+    private final Token[] tokens;
+
+    CompiledTemplate( final String template, final Pattern parameterPattern ) {
+      this.template = template;
+      this.parameterPattern = parameterPattern;
+      List<Token> found = new ArrayList<Token>();
+      Matcher parameterMatcher = parameterPattern.matcher( template );
+      while ( parameterMatcher.find() ) {
+        found.add( new Token( parameterMatcher.start(), parameterMatcher.end(), parameterMatcher.group(),
+            parameterMatcher.group( 1 ) ) );
+      }
+      this.tokens = found.toArray( new Token[found.size()] );
+    }
+
+    String apply( final Properties inputs, final IParameterResolver resolver ) {
+      if ( tokens.length == 0 ) {
+        return template;
+      }
+      StringBuilder results = new StringBuilder( template.length() + 16 * tokens.length );
+      Matcher parameterMatcher = null;
+      int copyStart = 0;
+
+      for ( Token token : tokens ) {
+        String value = null;
+        if ( token.isTableTemplate ) {
+          StringBuffer tableResults = new StringBuffer( results );
+          TemplateUtil.applyTableTemplate( template, inputs, parameterPattern, tableResults );
+          return tableResults.toString();
+        }
+        if ( token.isComponentResolved ) {
+          // Allow alternate parameter resolution to be provided by the
+          // component.
+          if ( resolver != null ) {
+            if ( parameterMatcher == null ) {
+              parameterMatcher = parameterPattern.matcher( template );
+            }
+            // position the matcher on this token, as the resolver expects
+            parameterMatcher.find( token.start );
+            StringBuffer resolved = new StringBuffer();
+            int newCopyStart =
+                resolver.resolveParameter( template, token.parameter, parameterMatcher, copyStart, resolved );
+            if ( newCopyStart >= 0 ) {
+              results.append( resolved );
+              copyStart = newCopyStart;
+              continue;
+            }
+          }
+          if ( token.tableKey != null && inputs instanceof InputProperties ) {
+            // this looks like a data table key
+            value =
+                ( (InputProperties) inputs ).getProperty( token.tableKey[0], token.tableKey[1], token.tableKey[2],
+                    token.tableKey[3], token.tableKey[4] );
+          }
+        } else if ( token.isNamedParameter ) {
+          value = inputs.getProperty( token.parameter );
+          if ( value == null ) {
+            if ( TemplateUtil.logger.isDebugEnabled() ) {
+              TemplateUtil.logger.debug( Messages.getInstance().getString( "TemplateUtil.NOT_FOUND", //$NON-NLS-1$
+                  token.parameter ) );
+            }
+          }
+        }
+
+        results.append( template, copyStart, token.start );
+        copyStart = token.end;
+        if ( ( token.isDateParameter || value == null ) && token.mayBeDate ) {
+          value = TemplateUtil.matchDateRegex( token.dateParameter, inputs );
+        }
+
+        if ( value == null ) {
+          results.append( token.text );
+        } else {
+          results.append( value );
+        }
+      }
+
+      if ( copyStart < template.length() ) {
+        results.append( template, copyStart, template.length() );
+      }
+      return results.toString();
+    }
+
+    /**
+     * A parameter occurrence in the template, classified once.
+     */
+    private static final class Token {
+      private final int start;
+      private final int end;
+      private final String text;
+      private final String parameter;
+      private final boolean isTableTemplate;
+      private final boolean isComponentResolved;
+      private final boolean isNamedParameter;
+      private final boolean isDateParameter;
+      private final boolean mayBeDate;
+      private final String[] tableKey;
+      // a data table key is looked up as a date by its first part only
+      private final String dateParameter;
+
+      Token( final int start, final int end, final String text, final String parameter ) {
+        this.start = start;
+        this.end = end;
+        this.text = text;
+        this.parameter = parameter;
+        boolean hasSpaces = parameter.indexOf( ' ' ) != -1;
+        this.isTableTemplate = !hasSpaces && parameter.indexOf( ":col:" ) != -1; //$NON-NLS-1$
+        this.isComponentResolved = !hasSpaces && parameter.indexOf( ':' ) != -1;
+        this.isNamedParameter = !hasSpaces;
+        this.isDateParameter = hasSpaces;
+        this.tableKey = isComponentResolved ? parseTableKey( parameter ) : null;
+        this.dateParameter = tableKey != null ? tableKey[0] : parameter;
+        // matchDateRegex() can only return a value when one of its patterns matches
+        this.mayBeDate =
+            TemplateUtil.dateExpressionPattern.matcher( dateParameter ).matches()
+                || TemplateUtil.dateMathExpressionPattern.matcher( dateParameter ).matches()
+                || TemplateUtil.dateMathVarPattern.matcher( dateParameter ).matches()
+                || TemplateUtil.datePattern.matcher( dateParameter ).matches();
+      }
+
+      private static String[] parseTableKey( final String parameter ) {
+        StringTokenizer tokenizer = new StringTokenizer( parameter, ":" ); //$NON-NLS-1$
+        if ( tokenizer.countTokens() < 5 ) {
+          return null;
+        }
+        String[] key = new String[5];
+        for ( int i = 0; i < 4; i++ ) {
+          key[i] = tokenizer.nextToken();
+        }
+        StringBuilder defaultValue = new StringBuilder( tokenizer.nextToken() );
+        while ( tokenizer.hasMoreTokens() ) {
+          defaultValue.append( ':' ).append( tokenizer.nextToken() );
+        }
+        key[4] = defaultValue.toString();
+        return key;
+      }
+    }
+
+    /**
+     * Cache key: the template text and the pattern used to find its parameters.
+     */
+    static final class Key {
+      private final String template;
+      private final String pattern;
+      private final int flags;
+
+      Key( final String template, final Pattern parameterPattern ) {
+        this.template = template;
+        this.pattern = parameterPattern.pattern();
+        this.flags = parameterPattern.flags();
+      }
+
+      @Override
+      public boolean equals( final Object o ) {
+        if ( this == o ) {
+          return true;
+        }
+        if ( !( o instanceof Key ) ) {
+          return false;
+        }
+        Key other = (Key) o;
+        return flags == other.flags && pattern.equals( other.pattern ) && template.equals( other.template );
+      }
+
+      @Override
+      public int hashCode() {
+        return 31 * ( 31 * template.hashCode() + pattern.hashCode() ) + flags;
+      }
+    }
+  }
+
   public static Properties parametersToProperties( final IParameterProvider parameterProvider ) {
     Properties properties = new Properties();
     Iterator names = parameterProvider.getParameterNames();
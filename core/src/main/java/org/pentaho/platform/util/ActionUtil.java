@@ -58,6 +58,7 @@ public class ActionUtil {
   public static final String QUARTZ_RESTART_FLAG = "ActionAdapterQuartzJob-Restart"; //$NON-NLS-1$
   public static final String QUARTZ_AUTO_CREATE_UNIQUE_FILENAME = "autoCreateUniqueFilename"; //$NON-NLS-1$
   public static final String QUARTZ_APPEND_DATE_FORMAT = "appendDateFormat"; //$NON-NLS-1$
+  public static final String QUARTZ_PRIORITY = "ActionAdapterQuartzJob-Priority"; //$NON-NLS-1$
 
   public static final String INVOKER_ACTIONPARAMS = "actionParams";
   public static final String INVOKER_ACTIONCLASS = "actionClass"; //$NON-NLS-1$
@@ -413,6 +414,9 @@ public class ActionUtil {
     try {
       // if email is setup and we have tos, then do it
       Emailer emailer = new Emailer();
+      // don't hold the scheduler thread while the mail server is contacted. The email is queued, so a delivery
+      // failure does not fail the job; it is only logged by the email queue and the Emailer
+      emailer.setAsync( true );
       if ( !emailer.setup() ) {
         // email not configured
         return;
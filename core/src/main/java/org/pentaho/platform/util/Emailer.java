@@ -64,6 +64,8 @@ public class Emailer {
 
   private String authMechanism;
 
+  private boolean async;
+
   private static final String MAIL_SMTP_AUTH = "mail.smtp.auth";
 
   IEmailService service;
@@ -187,6 +189,19 @@ public class Emailer {
     this.authMechanism = authMechanism;
   }
 
+  public boolean isAsync() {
+    return async;
+  }
+
+  /**
+   * When set, {@link #send()} hands the message to {@link IEmailService#sendEmailAsync(Session, MimeMessage)} and
+   * returns once it is queued: <code>true</code> then means the message was accepted for delivery, not delivered.
+   * Delivery failures are only logged.
+   */
+  public void setAsync( final boolean async ) {
+    this.async = async;
+  }
+
   public boolean setup() {
     try {
       props.put( "mail.smtp.host", service.getEmailConfig().getSmtpHost() );
@@ -279,7 +294,16 @@ public class Emailer {
       msg.setSentDate( new Date() );
 
 
-      service.sendEmail( session, msg );
+      if ( async ) {
+        final String recipients = to;
+        service.sendEmailAsync( session, msg ).whenComplete( ( result, e ) -> {
+          if ( e != null ) {
+            logger.error( "Email.ERROR_0011_SEND_FAILED - " + recipients, e ); //$NON-NLS-1$
+          }
+        } );
+      } else {
+        service.sendEmail( session, msg );
+      }
 
       return true;
     } catch ( SendFailedException e ) {
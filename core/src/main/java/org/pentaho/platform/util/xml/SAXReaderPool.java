@@ -0,0 +1,183 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.util.xml;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.dom4j.io.SAXReader;
+import org.pentaho.platform.engine.core.metrics.IStatisticsProvider;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of {@link SAXReader}s configured by {@link XMLParserFactoryProducer#getSAXReader(EntityResolver)}.
+ *
+ * <p>Building a reader looks up a SAX parser factory and negotiates the secure processing features on a new
+ * parser, which costs far more than parsing a small settings or action sequence document. Readers are only used
+ * by one thread at a time: a reader is taken from the pool for one parse, and then handed back with the entity
+ * resolver and the handlers of the last parse cleared, so that it does not keep the previous document reachable.
+ * A reader that failed to parse is dropped, as is any reader handed back to a full pool. The pool never blocks;
+ * when it is empty a new reader is created.
+ *
+ * <p>The pool is not configured through the system settings, because the system settings themselves are read
+ * with it. The number of idle readers can be set with the <code>pentaho.xml.readerPool.maxIdle</code> system
+ * property and defaults to twice the number of processors.
+ */
+public class SAXReaderPool implements IStatisticsProvider {
+
+  static final String MAX_IDLE_PROPERTY = "pentaho.xml.readerPool.maxIdle"; //$NON-NLS-1$
+
+  private static final String LEXICAL_HANDLER_PROPERTY = "http://xml.org/sax/properties/lexical-handler"; //$NON-NLS-1$
+
+  private static final Log logger = LogFactory.getLog( SAXReaderPool.class );
+
+  private static volatile SAXReaderPool instance;
+
+  private final BlockingQueue<SAXReader> idle;
+
+  private final AtomicLong created = new AtomicLong();
+  private final AtomicLong reused = new AtomicLong();
+  private final AtomicLong discarded = new AtomicLong();
+
+  public SAXReaderPool( final int maxIdle ) {
+    this.idle = new ArrayBlockingQueue<>( Math.max( 1, maxIdle ) );
+  }
+
+  /**
+   * Returns the shared pool.
+   */
+  public static SAXReaderPool getInstance() {
+    SAXReaderPool pool = instance;
+    if ( pool == null ) {
+      synchronized ( SAXReaderPool.class ) {
+        pool = instance;
+        if ( pool == null ) {
+          pool = instance = new SAXReaderPool( Integer.getInteger( MAX_IDLE_PROPERTY,
+            2 * Runtime.getRuntime().availableProcessors() ) );
+        }
+      }
+    }
+    return pool;
+  }
+
+  /**
+   * Parses a stream with a pooled reader.
+   *
+   * @param inStream the XML to parse, not closed by this method
+   * @param resolver resolver for external entities, may be null
+   */
+  public Document read( final InputStream inStream, final EntityResolver resolver ) throws DocumentException {
+    final SAXReader reader = borrow( resolver );
+    boolean success = false;
+    try {
+      final Document document = reader.read( inStream );
+      success = true;
+      return document;
+    } finally {
+      release( reader, success );
+    }
+  }
+
+  /**
+   * Parses a file with a pooled reader.
+   *
+   * @param file the XML file to parse
+   * @param resolver resolver for external entities, may be null
+   */
+  public Document read( final File file, final EntityResolver resolver ) throws DocumentException {
+    final SAXReader reader = borrow( resolver );
+    boolean success = false;
+    try {
+      final Document document = reader.read( file );
+      success = true;
+      return document;
+    } finally {
+      release( reader, success );
+    }
+  }
+
+  /**
+   * Drops every idle reader.
+   */
+  public void clear() {
+    idle.clear();
+  }
+
+  /**
+   * Returns the reader counters.
+   */
+  @Override
+  public Map<String, Number> getStatistics() {
+    final Map<String, Number> result = new LinkedHashMap<>();
+    result.put( "idle", idle.size() );
+    result.put( "created", created.get() );
+    result.put( "reused", reused.get() );
+    result.put( "discarded", discarded.get() );
+    return result;
+  }
+
+  SAXReader borrow( final EntityResolver resolver ) {
+    SAXReader reader = idle.poll();
+    if ( reader == null ) {
+      reader = XMLParserFactoryProducer.getSAXReader( null );
+      created.incrementAndGet();
+    } else {
+      reused.incrementAndGet();
+    }
+    reader.setEntityResolver( resolver );
+    return reader;
+  }
+
+  void release( final SAXReader reader, final boolean reusable ) {
+    if ( reusable && reset( reader ) && idle.offer( reader ) ) {
+      return;
+    }
+    discarded.incrementAndGet();
+  }
+
+  private boolean reset( final SAXReader reader ) {
+    // a null resolver lets the next read install the default one for its own system id
+    reader.setEntityResolver( null );
+    try {
+      final XMLReader xmlReader = reader.getXMLReader();
+      xmlReader.setEntityResolver( null );
+      xmlReader.setContentHandler( null );
+      xmlReader.setDTDHandler( null );
+      xmlReader.setErrorHandler( null );
+      xmlReader.setProperty( LEXICAL_HANDLER_PROPERTY, null );
+      return true;
+    } catch ( SAXException | RuntimeException e ) {
+      logger.debug( "Unable to reset a pooled SAX reader, discarding it.", e ); //$NON-NLS-1$
+      return false;
+    }
+  }
+}
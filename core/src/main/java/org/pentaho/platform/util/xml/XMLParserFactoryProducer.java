@@ -32,6 +32,7 @@ import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
 
 public class XMLParserFactoryProducer {
 
@@ -77,6 +78,16 @@ public class XMLParserFactoryProducer {
     return factory;
   }
 
+  /**
+   * Creates an instance of {@link XMLInputFactory} with DTD support and external entities disabled.
+   */
+  public static XMLInputFactory createSecureXMLInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+    factory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false );
+    return factory;
+  }
+
   public static SAXReader getSAXReader( final EntityResolver resolver ) {
     SAXReader reader = new SAXReader();
     if ( resolver != null ) {
@@ -0,0 +1,111 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.util.xml;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming (StAX) lookups for documents that are read once, such as files checked during an import. Nothing but
+ * the text of the requested elements is kept in memory, so the cost does not grow with the size of the document
+ * the way building a DOM does.
+ *
+ * <p>Like the secure DOM factories of {@link XMLParserFactoryProducer}, documents declaring a DTD are rejected.
+ */
+public class XmlStreamHelper {
+
+  private static final XMLInputFactory inputFactory = XMLParserFactoryProducer.createSecureXMLInputFactory();
+
+  private XmlStreamHelper() {
+  }
+
+  /**
+   * Returns the text of the first element matching each of the given absolute paths, e.g.
+   * <code>/index/name</code>. The text includes the text of descendant elements, as the string value of the
+   * element would in xpath. Paths without a match are mapped to an empty string. The whole document is read, so
+   * a document that is not well formed is reported even when every path has matched.
+   *
+   * @param inStream the XML to read, not closed by this method
+   * @param paths    absolute element paths, without predicates or wildcards
+   * @throws XMLStreamException if the document is not well formed or declares a DTD
+   */
+  public static Map<String, String> getElementTexts( final InputStream inStream, final String... paths )
+    throws XMLStreamException {
+    final Map<String, StringBuilder> texts = new LinkedHashMap<>();
+    for ( String path : paths ) {
+      texts.put( path, null );
+    }
+    final List<StringBuilder> open = new ArrayList<>();
+    final StringBuilder path = new StringBuilder();
+
+    final XMLStreamReader reader = inputFactory.createXMLStreamReader( inStream );
+    try {
+      while ( reader.hasNext() ) {
+        switch ( reader.next() ) {
+          case XMLStreamConstants.START_ELEMENT: {
+            path.append( '/' ).append( reader.getLocalName() );
+            final String elementPath = path.toString();
+            if ( texts.containsKey( elementPath ) && texts.get( elementPath ) == null ) {
+              final StringBuilder text = new StringBuilder();
+              texts.put( elementPath, text );
+              open.add( text );
+            } else {
+              open.add( null );
+            }
+            break;
+          }
+          case XMLStreamConstants.END_ELEMENT:
+            open.remove( open.size() - 1 );
+            path.setLength( path.lastIndexOf( "/" ) );
+            break;
+          case XMLStreamConstants.CHARACTERS:
+          case XMLStreamConstants.CDATA:
+          case XMLStreamConstants.SPACE:
+            for ( StringBuilder text : open ) {
+              if ( text != null ) {
+                text.append( reader.getText() );
+              }
+            }
+            break;
+          case XMLStreamConstants.DTD:
+            throw new XMLStreamException( "DOCTYPE is not allowed", reader.getLocation() ); //$NON-NLS-1$
+          default:
+            break;
+        }
+      }
+    } finally {
+      reader.close();
+    }
+
+    final Map<String, String> result = new LinkedHashMap<>();
+    for ( Map.Entry<String, StringBuilder> entry : texts.entrySet() ) {
+      result.put( entry.getKey(), entry.getValue() == null ? "" : entry.getValue().toString() );
+    }
+    return result;
+  }
+}
@@ -26,11 +26,10 @@ import org.dom4j.Document;
 import org.dom4j.DocumentException;
 import org.dom4j.Node;
 import org.dom4j.io.OutputFormat;
-import org.dom4j.io.SAXReader;
 import org.dom4j.io.XMLWriter;
 import org.pentaho.platform.api.util.XmlParseException;
 import org.pentaho.platform.util.messages.Messages;
-import org.pentaho.platform.util.xml.XMLParserFactoryProducer;
+import org.pentaho.platform.util.xml.SAXReaderPool;
 import org.xml.sax.EntityResolver;
 
 import javax.xml.transform.Source;
@@ -112,8 +111,7 @@ public class XmlDom4JHelper {
    */
   public static Document getDocFromFile( final File file, final EntityResolver resolver ) throws DocumentException,
     IOException {
-    SAXReader reader = XMLParserFactoryProducer.getSAXReader( resolver );
-    return reader.read( file );
+    return SAXReaderPool.getInstance().read( file, resolver );
   }
 
   /**
@@ -128,8 +126,7 @@ public class XmlDom4JHelper {
   public static Document getDocFromStream( final InputStream inStream, final EntityResolver resolver )
     throws DocumentException, IOException {
 
-    SAXReader reader = XMLParserFactoryProducer.getSAXReader( resolver );
-    return reader.read( inStream );
+    return SAXReaderPool.getInstance().read( inStream, resolver );
   }
 
   /**
@@ -0,0 +1,153 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.metrics;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RequestMetricsTest {
+
+  private static final long MILLI = 1000000L;
+
+  @Test
+  public void testTimerBucketsAndPercentiles() {
+    LatencyTimer timer = new LatencyTimer();
+    for ( int i = 0; i < 98; i++ ) {
+      timer.record( 3 * MILLI );
+    }
+    timer.record( 40 * MILLI );
+    timer.record( 20000 * MILLI );
+
+    assertEquals( 100L, timer.getCount() );
+    assertEquals( 5L, timer.getPercentileMillis( 0.5 ) );
+    assertEquals( 50L, timer.getPercentileMillis( 0.99 ) );
+    assertEquals( 20000L, timer.getPercentileMillis( 1.0 ) );
+    assertEquals( 20000L, timer.getStatistics().get( "maxMillis" ) );
+    assertEquals( 0, LatencyTimer.bucketIndex( MILLI ) );
+    assertEquals( 1, LatencyTimer.bucketIndex( MILLI + 1 ) );
+  }
+
+  @Test
+  public void testSampledRequestRecordsSpans() {
+    RequestMetrics metrics = new RequestMetrics( true, 1.0, 0, 10, 10, 100 );
+    try ( RequestMetrics.Span request = metrics.startRequest( "req-1", "/api" ) ) {
+      assertEquals( "req-1", metrics.getCurrentRequestId() );
+      assertSame( RequestMetrics.Span.NOOP, metrics.startRequest( "req-2", "/api" ) );
+      metrics.start( RequestMetrics.Category.REST, "FileResource.doGetChildren" ).close();
+      metrics.start( RequestMetrics.Category.REPOSITORY, "getChildren" ).close();
+    }
+    assertNull( metrics.getCurrentRequestId() );
+
+    List<RequestMetrics.RequestTrace> traces = metrics.getRecentTraceList();
+    assertEquals( 1, traces.size() );
+    assertEquals( "req-1", traces.get( 0 ).getRequestId() );
+    assertEquals( 2, traces.get( 0 ).getSpans().size() );
+    assertEquals( "getChildren", traces.get( 0 ).getSpans().get( 1 ).getName() );
+    assertEquals( 1L, metrics.findTimer( RequestMetrics.Category.REQUEST, "/api" ).getCount() );
+    assertEquals( 1L, metrics.findTimer( RequestMetrics.Category.REPOSITORY, "getChildren" ).getCount() );
+  }
+
+  @Test
+  public void testUnsampledRequestOnlyTimes() {
+    RequestMetrics metrics = new RequestMetrics( true, 0.0, 0, 10, 10, 100 );
+    try ( RequestMetrics.Span request = metrics.startRequest( "req-1", "/api" ) ) {
+      metrics.start( RequestMetrics.Category.REPOSITORY, "getFile" ).close();
+    }
+    assertTrue( metrics.getRecentTraceList().isEmpty() );
+    assertEquals( 1L, metrics.findTimer( RequestMetrics.Category.REPOSITORY, "getFile" ).getCount() );
+  }
+
+  @Test
+  public void testSlowRequestIsKept() throws Exception {
+    RequestMetrics metrics = new RequestMetrics( true, 0.0, 1, 10, 10, 100 );
+    try ( RequestMetrics.Span request = metrics.startRequest( "slow-1", "/plugin" ) ) {
+      Thread.sleep( 5 );
+    }
+    assertEquals( 1, metrics.getSlowRequestList().size() );
+    assertEquals( "slow-1", metrics.getSlowRequestList().get( 0 ).getRequestId() );
+  }
+
+  @Test
+  public void testDisabledIsNoop() {
+    RequestMetrics metrics = new RequestMetrics( false, 1.0, 0, 10, 10, 100 );
+    assertSame( RequestMetrics.Span.NOOP, metrics.start( RequestMetrics.Category.REST, "x" ) );
+    assertSame( RequestMetrics.Span.NOOP, metrics.startRequest( "id", "/api" ) );
+    assertNull( metrics.findTimer( RequestMetrics.Category.REST, "x" ) );
+  }
+
+  @Test
+  public void testNamesPerCategoryAreBounded() {
+    RequestMetrics metrics = new RequestMetrics( true, 0.0, 0, 10, 10, 2 );
+    for ( int i = 0; i < 5; i++ ) {
+      metrics.start( RequestMetrics.Category.DATASOURCE, "ds" + i ).close();
+    }
+    assertEquals( 3L,
+      metrics.findTimer( RequestMetrics.Category.DATASOURCE, RequestMetrics.OVERFLOW_NAME ).getCount() );
+    assertEquals( 3, metrics.getStatistics().get( "datasource" ).size() );
+  }
+
+  @Test
+  public void testPrometheusOutput() throws Exception {
+    RequestMetrics metrics = new RequestMetrics( true, 0.0, 0, 10, 10, 100 );
+    metrics.start( RequestMetrics.Category.CONTENT_GENERATOR, "my \"plugin\"" ).close();
+    StringWriter out = new StringWriter();
+    metrics.writePrometheus( out );
+    String text = out.toString();
+    assertTrue( text.contains( "# TYPE pentaho_latency_seconds histogram" ) );
+    assertTrue( text.contains(
+      "pentaho_latency_seconds_bucket{category=\"content_generator\",name=\"my \\\"plugin\\\"\",le=\"+Inf\"} 1" ) );
+    assertTrue( text.contains(
+      "pentaho_latency_seconds_count{category=\"content_generator\",name=\"my \\\"plugin\\\"\"} 1" ) );
+  }
+
+  @Test
+  public void testRegisteredStatisticsArePublished() throws Exception {
+    RequestMetrics metrics = new RequestMetrics( true, 0.0, 0, 10, 10, 100 );
+    IStatisticsProvider provider = () -> Collections.<String, Number>singletonMap( "size", 3 );
+    IStatisticsProvider other = () -> Collections.<String, Number>singletonMap( "size", 4 );
+    RequestMetrics.registerStatistics( "testCache", provider );
+    try {
+      assertEquals( 3, RequestMetrics.getStatistics( "testCache" ).get( "size" ) );
+      StringWriter out = new StringWriter();
+      metrics.writePrometheus( out );
+      assertTrue( out.toString().contains( "pentaho_statistic{source=\"testCache\",name=\"size\"} 3" ) );
+      assertTrue( Arrays.asList( metrics.getStatisticSummaries() ).contains( "testCache {size=3}" ) );
+
+      // a provider replaced under the same name is not dropped by the previous one
+      RequestMetrics.registerStatistics( "testCache", other );
+      RequestMetrics.unregisterStatistics( "testCache", provider );
+      assertEquals( 4, RequestMetrics.getStatistics( "testCache" ).get( "size" ) );
+    } finally {
+      RequestMetrics.unregisterStatistics( "testCache", provider );
+      RequestMetrics.unregisterStatistics( "testCache", other );
+    }
+    assertNull( RequestMetrics.getStatistics( "testCache" ) );
+  }
+}
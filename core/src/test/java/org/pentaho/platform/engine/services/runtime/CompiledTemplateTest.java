@@ -0,0 +1,104 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.runtime;
+
+import org.junit.Test;
+import org.pentaho.platform.api.engine.IParameterResolver;
+
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CompiledTemplateTest {
+
+  private static final Pattern PARAMETER_PATTERN = Pattern.compile( "\\{([^\\}\\{$^]*)\\}" );
+
+  @Test
+  public void testApplyTemplate() {
+    Properties inputs = new Properties();
+    inputs.put( "name1", "value1" );
+    inputs.put( "name2", "value2" );
+
+    assertApplied( "", "", inputs, null );
+    assertApplied( "no parameters at all", "no parameters at all", inputs, null );
+    assertApplied( "value1", "{name1}", inputs, null );
+    assertApplied( "select * from t where a = 'value1' and b = value2 and c = {missing}",
+        "select * from t where a = '{name1}' and b = {name2} and c = {missing}", inputs, null );
+    assertApplied( "value1value2value1 trailing", "{name1}{name2}{name1} trailing", inputs, null );
+    assertApplied( "a date 2010-01-01 and a space { not a param }",
+        "a date {2010-01-01} and a space { not a param }", inputs, null );
+    assertApplied( "key {data:KEY:k:VAL:default} value", "key {data:KEY:k:VAL:default} value", inputs, null );
+  }
+
+  @Test
+  public void testDataTableKeyIsMatchedAsDateByItsFirstPart() {
+    assertApplied( "on 2010-01-01", "on {2010-01-01:KEY:k:VAL:default}", new Properties(), null );
+  }
+
+  @Test
+  public void testResolver() {
+    Properties inputs = new Properties();
+    inputs.put( "name1", "value1" );
+    String template = "prepared {PREPARE:name1} and '{PREPARE:name2}' and {name1}";
+
+    assertApplied( "prepared {PREPARE:name1} and '{PREPARE:name2}' and value1", template, inputs, null );
+    assertApplied( "prepared ? and ? and value1", template, inputs, new QuotingResolver() );
+  }
+
+  @Test
+  public void testTemplateIsParsedOnce() {
+    String template = "select {name1} from dual";
+    assertSame( TemplateUtil.compile( template, PARAMETER_PATTERN ), TemplateUtil.compile( template,
+        Pattern.compile( PARAMETER_PATTERN.pattern() ) ) );
+  }
+
+  private static void assertApplied( String expected, String template, Properties inputs,
+      IParameterResolver resolver ) {
+    // twice, the second time from the compiled template cache
+    assertEquals( expected, TemplateUtil.applyTemplate( template, inputs, PARAMETER_PATTERN, resolver ) );
+    assertEquals( expected, TemplateUtil.applyTemplate( template, inputs, PARAMETER_PATTERN, resolver ) );
+  }
+
+  /**
+   * Resolves PREPARE parameters to '?' and swallows the surrounding quotes, like the SQL components do.
+   */
+  private static class QuotingResolver implements IParameterResolver {
+    public int resolveParameter( String template, String parameter, Matcher parameterMatcher, int copyStart,
+        StringBuffer results ) {
+      if ( !parameter.startsWith( "PREPARE:" ) ) {
+        return -1;
+      }
+      int start = parameterMatcher.start();
+      int end = parameterMatcher.end();
+      if ( start > 0 && end < template.length() && template.charAt( start - 1 ) == '\''
+          && template.charAt( end ) == '\'' ) {
+        start--;
+        end++;
+      }
+      results.append( template.substring( copyStart, start ) );
+      results.append( '?' );
+      return end;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.util.xml;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.dom4j.io.SAXReader;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class SAXReaderPoolTest {
+
+  @Test
+  public void testReaderIsReused() throws Exception {
+    SAXReaderPool pool = new SAXReaderPool( 2 );
+    Document first = pool.read( stream( "<a><b>one</b></a>" ), null );
+    Document second = pool.read( stream( "<a><b>two</b></a>" ), null );
+    assertEquals( "one", first.valueOf( "/a/b" ) );
+    assertEquals( "two", second.valueOf( "/a/b" ) );
+    assertEquals( 1L, pool.getStatistics().get( "created" ) );
+    assertEquals( 1L, pool.getStatistics().get( "reused" ) );
+    assertEquals( 1, pool.getStatistics().get( "idle" ) );
+  }
+
+  @Test
+  public void testFailedReaderIsDiscarded() throws Exception {
+    SAXReaderPool pool = new SAXReaderPool( 2 );
+    try {
+      pool.read( stream( "<a><b></a>" ), null );
+      fail();
+    } catch ( DocumentException e ) {
+      // expected
+    }
+    assertEquals( 0, pool.getStatistics().get( "idle" ) );
+    assertEquals( 1L, pool.getStatistics().get( "discarded" ) );
+    assertEquals( "ok", pool.read( stream( "<a>ok</a>" ), null ).valueOf( "/a" ) );
+  }
+
+  @Test
+  public void testPooledReaderDoesNotKeepLastParse() throws Exception {
+    SAXReaderPool pool = new SAXReaderPool( 1 );
+    pool.read( stream( "<a/>" ), ( publicId, systemId ) -> new InputSource( stream( "" ) ) );
+    SAXReader reader = pool.borrow( null );
+    assertNull( reader.getEntityResolver() );
+    assertNull( reader.getXMLReader().getContentHandler() );
+  }
+
+  @Test
+  public void testStreamElementTexts() throws Exception {
+    Map<String, String> texts = XmlStreamHelper.getElementTexts(
+      stream( "<index><name>the <b>name</b></name><description>desc</description><name>other</name></index>" ),
+      "/index/name", "/index/description", "/index/missing" );
+    assertEquals( "the name", texts.get( "/index/name" ) );
+    assertEquals( "desc", texts.get( "/index/description" ) );
+    assertEquals( "", texts.get( "/index/missing" ) );
+  }
+
+  @Test( expected = XMLStreamException.class )
+  public void testStreamRejectsDoctype() throws Exception {
+    XmlStreamHelper.getElementTexts( stream( "<!DOCTYPE index [<!ENTITY x \"y\">]><index><name>&x;</name></index>" ),
+      "/index/name" );
+  }
+
+  private static InputStream stream( String xml ) {
+    return new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8 ) );
+  }
+}
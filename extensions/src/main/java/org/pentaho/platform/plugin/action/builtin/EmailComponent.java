@@ -30,6 +30,7 @@ import org.pentaho.actionsequence.dom.actions.EmailAction;
 import org.pentaho.actionsequence.dom.actions.EmailAttachment;
 import org.pentaho.commons.connection.ActivationHelper;
 import org.pentaho.commons.connection.IPentahoStreamSource;
+import org.pentaho.platform.api.email.EmailServiceException;
 import org.pentaho.platform.api.email.IEmailService;
 import org.pentaho.platform.api.engine.IMessageFormatter;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
@@ -49,7 +50,6 @@ import javax.mail.Multipart;
 import javax.mail.PasswordAuthentication;
 import javax.mail.SendFailedException;
 import javax.mail.Session;
-import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
@@ -354,7 +354,13 @@ public class EmailComponent extends ComponentBase {
       msg.setHeader( "X-Mailer", EmailComponent.MAILER ); //$NON-NLS-1$
       msg.setSentDate( new Date() );
 
-      Transport.send( msg );
+      // sent synchronously so that the action reports the outcome; the service reuses pooled SMTP connections
+      try {
+        service.sendEmail( session, msg );
+      } catch ( EmailServiceException e ) {
+        // report the mail exception wrapped by the email service like before
+        throw e.getCause() != null ? e.getCause() : e;
+      }
 
       if ( ComponentBase.debug ) {
         debug( Messages.getInstance().getString( "Email.DEBUG_EMAIL_SUCCESS" ) ); //$NON-NLS-1$
@@ -35,7 +35,7 @@ import org.pentaho.commons.connection.IPentahoResultSet;
 import org.pentaho.platform.api.engine.IActionSequenceResource;
 import org.pentaho.platform.engine.services.solution.ComponentBase;
 import org.pentaho.platform.plugin.action.messages.Messages;
-import org.pentaho.platform.plugin.condition.javascript.RhinoScriptable;
+import org.pentaho.platform.plugin.condition.javascript.RhinoScriptCache;
 import org.pentaho.platform.plugin.services.connections.javascript.JavaScriptResultSet;
 
 import java.util.ArrayList;
@@ -130,7 +130,9 @@ public class JavascriptRule extends ComponentBase {
    */
   @Override
   protected boolean executeAction() {
+    RhinoScriptCache scriptCache = RhinoScriptCache.getInstance();
     Context cx = ContextFactory.getGlobal().enterContext();
+    scriptCache.prepareContext( cx );
     StringBuffer buffer = new StringBuffer();
     @SuppressWarnings( "unchecked" )
     Iterator<String> iter = getResourceNames().iterator();
@@ -179,9 +181,9 @@ public class JavascriptRule extends ComponentBase {
           debug( "script=" + script ); //$NON-NLS-1$
         }
         try {
-          ScriptableObject scriptable = new RhinoScriptable();
-          // initialize the standard javascript objects
-          Scriptable scope = cx.initStandardObjects( scriptable );
+          // the standard javascript objects are shared, sealed, by every execution
+          Scriptable scope = scriptCache.newExecutionScope( cx );
+          ScriptableObject scriptable = (ScriptableObject) scope;
 
           Object resultObject = executeScript( scriptable, scope, script, cx );
           if ( oldStyleOutputs ) {
@@ -246,7 +248,6 @@ public class JavascriptRule extends ComponentBase {
 
   protected Object executeScript( final ScriptableObject scriptable, final Scriptable scope, final String script,
       final Context cx ) throws Exception {
-    ScriptableObject.defineClass( scope, JavaScriptResultSet.class );
     @SuppressWarnings( "unchecked" )
     Set<String> inputNames = getInputNames();
     Iterator<String> inputNamesIterator = inputNames.iterator();
@@ -284,7 +285,7 @@ public class JavascriptRule extends ComponentBase {
     ScriptableObject.putProperty( scope, "out", wrappedOut ); //$NON-NLS-1$
     ScriptableObject.putProperty( scope, "rule", wrappedThis ); //$NON-NLS-1$
     // evaluate the script
-    return cx.evaluateString( scope, script, "<cmd>", 1, null ); //$NON-NLS-1$
+    return RhinoScriptCache.getInstance().execute( cx, scope, script );
 
   }
 
@@ -22,9 +22,12 @@ package org.pentaho.platform.plugin.action.mondrian;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.services.solution.ComponentBase;
 import org.pentaho.platform.plugin.action.mdx.MDXLookupRule;
+import org.pentaho.platform.plugin.action.olap.XmlaDiscoverCache;
 import org.pentaho.platform.plugin.services.connections.mondrian.MDXConnection;
+import org.pentaho.platform.plugin.services.connections.mondrian.MondrianConnectionPool;
 
 import mondrian.olap.CacheControl;
 import mondrian.olap.Connection;
@@ -47,6 +50,12 @@ public class MondrianFlushCacheComponent extends ComponentBase {
       cacheControl.flush( cacheControl.createMeasuresRegion( cube ) );
     }
     cacheControl.flushSchema( conn.getSchema() );
+    MondrianConnectionPool pool =
+      PentahoSystem.get( MondrianConnectionPool.class, "mondrianConnectionPool", getSession() ); //$NON-NLS-1$
+    if ( pool != null ) {
+      pool.invalidateCatalog( conn.getCatalogName() );
+    }
+    XmlaDiscoverCache.getInstance().invalidateCatalog( conn.getCatalogName() );
     return true;
   }
 
@@ -48,6 +48,7 @@ import org.pentaho.platform.plugin.action.mondrian.catalog.MondrianCatalog;
 import org.pentaho.platform.plugin.action.mondrian.catalog.MondrianCatalogComplementInfo;
 import org.pentaho.platform.plugin.action.mondrian.catalog.MondrianCatalogHelper;
 import org.pentaho.platform.plugin.services.connections.mondrian.MDXConnection;
+import org.pentaho.platform.plugin.services.connections.mondrian.MondrianConnectionPool;
 import org.pentaho.platform.plugin.services.connections.sql.SQLConnection;
 import org.pentaho.platform.util.logging.Logger;
 
@@ -416,7 +417,7 @@ public class MondrianModelComponent extends ComponentBase {
         }
 
         Member member =
-          Locus.execute( (RolapConnection) connection, "Retrieving default members in plugin",
+          Locus.execute( (RolapConnection) MondrianConnectionPool.unwrap( connection ), "Retrieving default members in plugin",
             new Locus.Action<Member>() {
               public Member execute() {
                 return connection.getSchemaReader().getHierarchyDefaultMember( hierarchy );
@@ -73,6 +73,8 @@ import org.pentaho.platform.engine.services.solution.PentahoEntityResolver;
 import org.pentaho.platform.plugin.action.messages.Messages;
 import org.pentaho.platform.plugin.action.mondrian.catalog.MondrianCatalogServiceException.Reason;
 import org.pentaho.platform.plugin.action.olap.IOlapService;
+import org.pentaho.platform.plugin.action.olap.XmlaDiscoverCache;
+import org.pentaho.platform.plugin.services.connections.mondrian.MondrianConnectionPool;
 import org.pentaho.platform.plugin.services.importexport.legacy.MondrianCatalogRepositoryHelper;
 import org.pentaho.platform.repository.solution.filebased.MondrianVfs;
 import org.pentaho.platform.repository2.ClientRepositoryPaths;
@@ -100,6 +102,7 @@ import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -286,9 +289,21 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
     if ( cacheMgr.cacheEnabled( MONDRIAN_CATALOG_CACHE_REGION ) ) {
       cacheMgr.clearRegionCache( MONDRIAN_CATALOG_CACHE_REGION );
     }
+    MondrianConnectionPool pool = getMondrianConnectionPool( pentahoSession );
+    if ( pool != null ) {
+      pool.invalidateAll();
+    }
+    XmlaDiscoverCache.getInstance().invalidateAll();
     init( pentahoSession );
   }
 
+  /**
+   * Returns the mondrianConnectionPool bean, null if none is configured.
+   */
+  private static MondrianConnectionPool getMondrianConnectionPool( IPentahoSession session ) {
+    return PentahoSystem.get( MondrianConnectionPool.class, "mondrianConnectionPool", session ); //$NON-NLS-1$
+  }
+
   private static Locale getLocale() {
     final Locale locale = LocaleHelper.getLocale();
     if ( locale != null ) {
@@ -673,20 +688,30 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
   private void flushCacheForCatalog( String catalogName, IPentahoSession pentahoSession ) {
     IOlapService olapService =
         PentahoSystem.get( IOlapService.class, "IOlapService", pentahoSession );
-    Connection unwrap = null;
+    OlapConnection connection = null;
     try {
-      OlapConnection connection = olapService.getConnection( catalogName, pentahoSession );
-      unwrap = connection.unwrap( Connection.class );
+      connection = olapService.getConnection( catalogName, pentahoSession );
+      Connection unwrap = connection.unwrap( Connection.class );
       unwrap.getCacheControl( null ).flushSchema( unwrap.getSchema() );
     } catch ( Throwable e ) {
       MondrianCatalogHelper.logger.warn(
           Messages.getInstance().getErrorString(
               "MondrianCatalogHelper.ERROR_0019_FAILED_TO_FLUSH", catalogName ), e );
     } finally {
-      if ( unwrap != null ) {
-        unwrap.close();
+      // closing the olap4j connection, not the unwrapped one, hands a pooled connection back to its pool
+      if ( connection != null ) {
+        try {
+          connection.close();
+        } catch ( SQLException e ) {
+          MondrianCatalogHelper.logger.debug( "Failed to close the connection to " + catalogName, e ); //$NON-NLS-1$
+        }
       }
     }
+    MondrianConnectionPool pool = getMondrianConnectionPool( pentahoSession );
+    if ( pool != null ) {
+      pool.invalidateCatalog( catalogName );
+    }
+    XmlaDiscoverCache.getInstance().invalidateCatalog( catalogName );
     removeHelpGeneratorCache( catalogName, pentahoSession );
   }
 
@@ -715,6 +740,8 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
   @Override
   public void setAclFor( String catalogName, RepositoryFileAcl acl ) {
     getAclHelper().setAclFor( getMondrianCatalogRepositoryHelper().getMondrianCatalogFile( catalogName ), acl );
+    // the catalogs a user may discover changed
+    XmlaDiscoverCache.getInstance().invalidateCatalog( catalogName );
   }
 
   @Override
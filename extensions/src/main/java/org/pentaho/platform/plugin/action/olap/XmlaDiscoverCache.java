@@ -0,0 +1,172 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.action.olap;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.apache.commons.lang.math.NumberUtils;
+import org.pentaho.platform.engine.core.metrics.IStatisticsProvider;
+import org.pentaho.platform.engine.core.metrics.RequestMetrics;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of the responses of the XMLA discovery requests (<code>MDSCHEMA_CUBES</code>, <code>DBSCHEMA_CATALOGS</code>
+ * ...) served by the XMLA servlet. Pivot table clients such as Excel send the same requests over and over.
+ *
+ * <p>The servlet keys the responses by catalog, user, effective roles, locale and the full request, restrictions and
+ * properties included. The responses of a catalog are dropped when its Mondrian schema cache is flushed or its ACL
+ * changes; responses which are not bound to a catalog, e.g. the list of catalogs, are dropped on every flush.
+ * Configured in pentaho.xml:
+ * <pre>
+ *   &lt;xmla&gt;
+ *     &lt;discover-cache-max-size-kb&gt;16384&lt;/discover-cache-max-size-kb&gt;
+ *     &lt;discover-cache-ttl-seconds&gt;3600&lt;/discover-cache-ttl-seconds&gt;
+ *   &lt;/xmla&gt;
+ * </pre>
+ * A size of 0 disables the cache.
+ */
+public class XmlaDiscoverCache implements IStatisticsProvider {
+
+  static final String MAX_SIZE_SETTING = "xmla/discover-cache-max-size-kb"; //$NON-NLS-1$
+  static final String TTL_SETTING = "xmla/discover-cache-ttl-seconds"; //$NON-NLS-1$
+
+  private static final long DEFAULT_MAX_SIZE_KB = 16384;
+  private static final long DEFAULT_TTL_SECONDS = 3600;
+
+  private static volatile XmlaDiscoverCache instance;
+
+  private final Cache<Key, byte[]> responses;
+
+  public XmlaDiscoverCache( long maxSizeKb, long ttlSeconds ) {
+    this.responses = maxSizeKb <= 0 ? null : CacheBuilder.newBuilder()
+      .maximumWeight( maxSizeKb * 1024 )
+      .weigher( ( Key key, byte[] value ) -> value.length + key.request.length() )
+      .expireAfterWrite( ttlSeconds, TimeUnit.SECONDS )
+      .recordStats()
+      .build();
+  }
+
+  /**
+   * Returns the instance configured through the system settings.
+   */
+  public static XmlaDiscoverCache getInstance() {
+    XmlaDiscoverCache cache = instance;
+    if ( cache == null ) {
+      synchronized ( XmlaDiscoverCache.class ) {
+        cache = instance;
+        if ( cache == null ) {
+          cache = instance = new XmlaDiscoverCache(
+            NumberUtils.toLong( PentahoSystem.getSystemSetting( MAX_SIZE_SETTING, null ), DEFAULT_MAX_SIZE_KB ),
+            NumberUtils.toLong( PentahoSystem.getSystemSetting( TTL_SETTING, null ), DEFAULT_TTL_SECONDS ) );
+          RequestMetrics.registerStatistics( "xmlaDiscoverCache", cache ); //$NON-NLS-1$
+        }
+      }
+    }
+    return cache;
+  }
+
+  public boolean isEnabled() {
+    return responses != null;
+  }
+
+  /**
+   * Returns the cached response body, or null.
+   *
+   * @param catalog the catalog the request is bound to, null if none
+   * @param request identifies the request: roles, request type, restrictions, properties and response format
+   */
+  public byte[] get( String catalog, String request ) {
+    return responses == null ? null : responses.getIfPresent( new Key( catalog, request ) );
+  }
+
+  public void put( String catalog, String request, byte[] response ) {
+    if ( responses != null && response != null ) {
+      responses.put( new Key( catalog, request ), response );
+    }
+  }
+
+  /**
+   * Drops the responses of a catalog and those not bound to any catalog. The name may also be the location of the
+   * schema, e.g. <code>mondrian:/SteelWheels</code>.
+   */
+  public void invalidateCatalog( String catalogName ) {
+    if ( responses == null ) {
+      return;
+    }
+    responses.asMap().keySet().removeIf( key -> key.catalog == null || catalogName == null
+      || catalogName.equals( key.catalog ) || catalogName.endsWith( "/" + key.catalog ) ); //$NON-NLS-1$
+  }
+
+  public void invalidateAll() {
+    if ( responses != null ) {
+      responses.invalidateAll();
+    }
+  }
+
+  /**
+   * Returns the cache counters.
+   */
+  @Override
+  public Map<String, Number> getStatistics() {
+    final Map<String, Number> result = new LinkedHashMap<>();
+    if ( responses != null ) {
+      final CacheStats stats = responses.stats();
+      result.put( "size", responses.size() );
+      result.put( "hits", stats.hitCount() );
+      result.put( "misses", stats.missCount() );
+      result.put( "evictions", stats.evictionCount() );
+    }
+    return result;
+  }
+
+  private static final class Key {
+    private final String catalog;
+    private final String request;
+
+    Key( String catalog, String request ) {
+      this.catalog = catalog;
+      this.request = request;
+    }
+
+    @Override
+    public boolean equals( Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( !( o instanceof Key ) ) {
+        return false;
+      }
+      final Key other = (Key) o;
+      return Objects.equals( catalog, other.catalog ) && request.equals( other.request );
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash( catalog, request );
+    }
+  }
+}
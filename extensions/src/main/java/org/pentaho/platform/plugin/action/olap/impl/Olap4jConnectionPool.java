@@ -0,0 +1,425 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.action.olap.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
+import org.olap4j.OlapConnection;
+import org.pentaho.platform.engine.core.metrics.IStatisticsProvider;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keyed pool of olap4j connections to remote (XMLA or generic olap4j) servers.
+ *
+ * <p>Connections are keyed by the server name, its URL and the final set of
+ * connection properties, i.e. after the {@link org.pentaho.platform.plugin.action.olap.IOlapConnectionFilter}s
+ * have been applied and the credentials injected. Two requests which end up with
+ * a different effective role or user therefore never share a connection.
+ *
+ * <p>Borrowed connections are handed out behind a proxy. Calling
+ * {@link Connection#close()} on it returns the physical connection to the pool.
+ * If the borrower changed the connection state (catalog, schema, role, locale...)
+ * the physical connection is discarded instead of being recycled.
+ *
+ * <p>The pool of {@link OlapServiceImpl} is the <code>olap4jConnectionPool</code> bean of pentahoObjects.spring.xml,
+ * which closes it on shutdown and publishes its counters.
+ */
+public class Olap4jConnectionPool implements IStatisticsProvider {
+
+  private static final Log LOG = LogFactory.getLog( Olap4jConnectionPool.class );
+
+  private int maxTotalPerKey = 8;
+  private int maxIdlePerKey = 4;
+  private int maxTotal = 64;
+  private long maxWaitMillis = 30000;
+  private long minEvictableIdleTimeMillis = 300000;
+  private long timeBetweenEvictionRunsMillis = 60000;
+  private int validationTimeoutSeconds = 5;
+
+  private final Set<Key> knownKeys = ConcurrentHashMap.newKeySet();
+  private volatile GenericKeyedObjectPool<Key, OlapConnection> pool;
+
+  /**
+   * Borrows a connection for the given server. The caller must close the returned
+   * connection to hand it back to the pool.
+   *
+   * @param serverName The name of the olap4j server, as registered in the repository.
+   * @param url        The JDBC URL of the server.
+   * @param properties The final connection properties, including credentials.
+   */
+  public OlapConnection borrowConnection( String serverName, String url, Properties properties ) throws SQLException {
+    final Key key = new Key( serverName, url, properties );
+    knownKeys.add( key );
+    final OlapConnection physical;
+    try {
+      physical = getPool().borrowObject( key );
+    } catch ( SQLException e ) {
+      throw e;
+    } catch ( Exception e ) {
+      throw new SQLException( e );
+    }
+    return wrap( key, physical );
+  }
+
+  /**
+   * Closes every pooled connection of the given server, idle or not. Connections
+   * currently leased are destroyed when they get returned.
+   */
+  public void invalidateServer( String serverName ) {
+    if ( pool == null ) {
+      return;
+    }
+    for ( Key key : knownKeys ) {
+      if ( key.serverName.equals( serverName ) ) {
+        knownKeys.remove( key );
+        pool.clear( key );
+      }
+    }
+  }
+
+  /**
+   * Closes all idle connections and discards the ones currently leased once they are returned.
+   */
+  public void invalidateAll() {
+    if ( pool == null ) {
+      return;
+    }
+    knownKeys.clear();
+    pool.clear();
+  }
+
+  /**
+   * Closes the pool and every connection it holds.
+   */
+  public synchronized void close() {
+    if ( pool != null ) {
+      pool.close();
+      pool = null;
+    }
+    knownKeys.clear();
+  }
+
+  /**
+   * Returns a snapshot of the pool metrics. Suitable for logging or to be published
+   * through a monitoring endpoint.
+   */
+  @Override
+  public Map<String, Number> getStatistics() {
+    final Map<String, Number> stats = new LinkedHashMap<>();
+    final GenericKeyedObjectPool<Key, OlapConnection> p = pool;
+    if ( p == null ) {
+      return stats;
+    }
+    stats.put( "keys", knownKeys.size() );
+    stats.put( "active", p.getNumActive() );
+    stats.put( "idle", p.getNumIdle() );
+    stats.put( "waiters", p.getNumWaiters() );
+    stats.put( "created", p.getCreatedCount() );
+    stats.put( "destroyed", p.getDestroyedCount() );
+    stats.put( "destroyedByEvictor", p.getDestroyedByEvictorCount() );
+    stats.put( "destroyedByBorrowValidation", p.getDestroyedByBorrowValidationCount() );
+    stats.put( "borrowed", p.getBorrowedCount() );
+    stats.put( "returned", p.getReturnedCount() );
+    stats.put( "meanBorrowWaitTimeMillis", p.getMeanBorrowWaitTimeMillis() );
+    stats.put( "maxBorrowWaitTimeMillis", p.getMaxBorrowWaitTimeMillis() );
+    stats.put( "meanActiveTimeMillis", p.getMeanActiveTimeMillis() );
+    return stats;
+  }
+
+  /**
+   * Opens a new physical connection. Protected for testing purposes.
+   */
+  protected OlapConnection openConnection( String url, Properties properties ) throws SQLException {
+    final Connection conn = DriverManager.getConnection( url, properties );
+    return conn.unwrap( OlapConnection.class );
+  }
+
+  /**
+   * Validates a physical connection before it gets handed out again.
+   */
+  protected boolean isValid( OlapConnection connection ) {
+    try {
+      if ( connection.isClosed() ) {
+        return false;
+      }
+      try {
+        return connection.isValid( validationTimeoutSeconds );
+      } catch ( SQLException | UnsupportedOperationException | AbstractMethodError e ) {
+        // Some olap4j drivers don't implement validation. An open connection
+        // is the best we can check for.
+        return true;
+      }
+    } catch ( SQLException e ) {
+      return false;
+    }
+  }
+
+  private GenericKeyedObjectPool<Key, OlapConnection> getPool() {
+    GenericKeyedObjectPool<Key, OlapConnection> p = pool;
+    if ( p == null ) {
+      synchronized ( this ) {
+        p = pool;
+        if ( p == null ) {
+          p = pool = createPool();
+        }
+      }
+    }
+    return p;
+  }
+
+  private GenericKeyedObjectPool<Key, OlapConnection> createPool() {
+    final GenericKeyedObjectPoolConfig<OlapConnection> config = new GenericKeyedObjectPoolConfig<>();
+    config.setMaxTotalPerKey( maxTotalPerKey );
+    config.setMaxIdlePerKey( maxIdlePerKey );
+    config.setMaxTotal( maxTotal );
+    config.setMaxWait( Duration.ofMillis( maxWaitMillis ) );
+    config.setTestOnBorrow( true );
+    config.setTestWhileIdle( true );
+    config.setMinEvictableIdleTimeMillis( minEvictableIdleTimeMillis );
+    config.setTimeBetweenEvictionRunsMillis( timeBetweenEvictionRunsMillis );
+    config.setJmxEnabled( false );
+    return new GenericKeyedObjectPool<>( new Factory(), config );
+  }
+
+  private OlapConnection wrap( final Key key, final OlapConnection physical ) {
+    return (OlapConnection) Proxy.newProxyInstance(
+      OlapConnection.class.getClassLoader(),
+      new Class<?>[] { OlapConnection.class },
+      new LeaseHandler( key, physical ) );
+  }
+
+  private void release( Key key, OlapConnection physical, boolean dirty ) {
+    final GenericKeyedObjectPool<Key, OlapConnection> p = pool;
+    if ( p == null ) {
+      closeQuietly( physical );
+      return;
+    }
+    try {
+      if ( dirty || !knownKeys.contains( key ) ) {
+        p.invalidateObject( key, physical );
+      } else {
+        p.returnObject( key, physical );
+      }
+    } catch ( Exception e ) {
+      LOG.debug( "Failed to release a pooled olap4j connection to " + key.serverName, e );
+      closeQuietly( physical );
+    }
+  }
+
+  private static void closeQuietly( OlapConnection connection ) {
+    try {
+      connection.close();
+    } catch ( SQLException e ) {
+      LOG.debug( "Failed to close an olap4j connection", e );
+    }
+  }
+
+  public void setMaxTotalPerKey( int maxTotalPerKey ) {
+    this.maxTotalPerKey = maxTotalPerKey;
+  }
+
+  public void setMaxIdlePerKey( int maxIdlePerKey ) {
+    this.maxIdlePerKey = maxIdlePerKey;
+  }
+
+  public void setMaxTotal( int maxTotal ) {
+    this.maxTotal = maxTotal;
+  }
+
+  public void setMaxWaitMillis( long maxWaitMillis ) {
+    this.maxWaitMillis = maxWaitMillis;
+  }
+
+  public void setMinEvictableIdleTimeMillis( long minEvictableIdleTimeMillis ) {
+    this.minEvictableIdleTimeMillis = minEvictableIdleTimeMillis;
+  }
+
+  public void setTimeBetweenEvictionRunsMillis( long timeBetweenEvictionRunsMillis ) {
+    this.timeBetweenEvictionRunsMillis = timeBetweenEvictionRunsMillis;
+  }
+
+  public void setValidationTimeoutSeconds( int validationTimeoutSeconds ) {
+    this.validationTimeoutSeconds = validationTimeoutSeconds;
+  }
+
+  /**
+   * Pool key. Holds the server name, the URL and every effective connection property.
+   */
+  static final class Key {
+    private final String serverName;
+    private final String url;
+    private final SortedMap<String, String> properties;
+
+    Key( String serverName, String url, Properties properties ) {
+      this.serverName = serverName;
+      this.url = url;
+      final SortedMap<String, String> props = new TreeMap<>();
+      // stringPropertyNames() also walks the default properties.
+      for ( String name : properties.stringPropertyNames() ) {
+        props.put( name, properties.getProperty( name ) );
+      }
+      this.properties = Collections.unmodifiableSortedMap( props );
+    }
+
+    Properties toProperties() {
+      final Properties props = new Properties();
+      props.putAll( properties );
+      return props;
+    }
+
+    @Override
+    public boolean equals( Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( !( o instanceof Key ) ) {
+        return false;
+      }
+      final Key other = (Key) o;
+      return serverName.equals( other.serverName )
+        && url.equals( other.url )
+        && properties.equals( other.properties );
+    }
+
+    @Override
+    public int hashCode() {
+      int result = serverName.hashCode();
+      result = 31 * result + url.hashCode();
+      result = 31 * result + properties.hashCode();
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      // Never expose the property values, they contain the credentials.
+      return serverName + "@" + url + properties.keySet();
+    }
+  }
+
+  private class Factory extends BaseKeyedPooledObjectFactory<Key, OlapConnection> {
+    @Override
+    public OlapConnection create( Key key ) throws Exception {
+      return openConnection( key.url, key.toProperties() );
+    }
+
+    @Override
+    public PooledObject<OlapConnection> wrap( OlapConnection connection ) {
+      return new DefaultPooledObject<>( connection );
+    }
+
+    @Override
+    public boolean validateObject( Key key, PooledObject<OlapConnection> p ) {
+      return isValid( p.getObject() );
+    }
+
+    @Override
+    public void destroyObject( Key key, PooledObject<OlapConnection> p ) {
+      closeQuietly( p.getObject() );
+    }
+  }
+
+  /**
+   * Intercepts the calls made on a leased connection. {@code close()} releases the lease,
+   * and any state mutator marks the physical connection as not reusable.
+   */
+  private class LeaseHandler implements InvocationHandler {
+    private final Key key;
+    private final OlapConnection physical;
+    private boolean released;
+    private boolean dirty;
+
+    LeaseHandler( Key key, OlapConnection physical ) {
+      this.key = key;
+      this.physical = physical;
+    }
+
+    @Override
+    public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+      final String name = method.getName();
+      switch ( name ) {
+        case "close":
+          synchronized ( this ) {
+            if ( !released ) {
+              released = true;
+              release( key, physical, dirty );
+            }
+          }
+          return null;
+        case "isClosed":
+          synchronized ( this ) {
+            return released || physical.isClosed();
+          }
+        case "unwrap":
+          if ( ( (Class<?>) args[ 0 ] ).isInstance( proxy ) ) {
+            return proxy;
+          }
+          break;
+        case "isWrapperFor":
+          if ( ( (Class<?>) args[ 0 ] ).isInstance( proxy ) ) {
+            return true;
+          }
+          break;
+        case "equals":
+          return proxy == args[ 0 ];
+        case "hashCode":
+          return System.identityHashCode( proxy );
+        case "toString":
+          return "Pooled[" + key + "]";
+        default:
+          break;
+      }
+      synchronized ( this ) {
+        if ( released ) {
+          throw new SQLException( "Connection already returned to the pool" );
+        }
+        if ( name.startsWith( "set" ) ) {
+          dirty = true;
+        }
+      }
+      try {
+        return method.invoke( physical, args );
+      } catch ( InvocationTargetException e ) {
+        throw e.getCause();
+      }
+    }
+  }
+}
@@ -53,7 +53,9 @@ import org.pentaho.platform.plugin.action.olap.IOlapConnectionFilter;
 import org.pentaho.platform.plugin.action.olap.IOlapService;
 import org.pentaho.platform.plugin.action.olap.IOlapServiceException;
 import org.pentaho.platform.plugin.action.olap.PlatformXmlaExtra;
+import org.pentaho.platform.plugin.action.olap.XmlaDiscoverCache;
 import org.pentaho.platform.plugin.services.connections.mondrian.MDXConnection;
+import org.pentaho.platform.plugin.services.connections.mondrian.MondrianConnectionPool;
 import org.pentaho.platform.plugin.services.importexport.legacy.MondrianCatalogRepositoryHelper;
 import org.pentaho.platform.plugin.services.importexport.legacy.MondrianCatalogRepositoryHelper.HostedCatalogInfo;
 import org.pentaho.platform.plugin.services.importexport.legacy.MondrianCatalogRepositoryHelper.Olap4jServerInfo;
@@ -62,7 +64,6 @@ import org.pentaho.platform.util.messages.LocaleHelper;
 import org.springframework.security.core.userdetails.UserDetailsService;
 
 import java.io.InputStream;
-import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -89,6 +90,10 @@ import java.util.stream.Collectors;
  * <p>It will also check for the presence of a {@link IConnectionUserRoleMapper}
  * and change the roles accordingly before creating a connection.
  * <p/>
+ * <p>Connections to remote olap4j servers are borrowed from an
+ * {@link Olap4jConnectionPool}, keyed by server and effective connection
+ * properties.
+ * <p/>
  * <p>This implementation is thread safe. It will use a {@link ReadWriteLock}
  * to manage the access to its metadata.
  */
@@ -119,6 +124,7 @@ public class OlapServiceImpl implements IOlapService {
   private MondrianServer server = null;
   private final List<IOlapConnectionFilter> filters;
   private Role role;
+  private Olap4jConnectionPool remoteConnectionPool;
 
   private static Log getLogger() {
     return LogFactory.getLog( IOlapService.class );
@@ -193,6 +199,26 @@ public class OlapServiceImpl implements IOlapService {
     this.helper = helper;
   }
 
+  /**
+   * Returns the pool used for the connections to the remote olap4j servers.
+   */
+  public synchronized Olap4jConnectionPool getRemoteConnectionPool() {
+    if ( remoteConnectionPool == null ) {
+      remoteConnectionPool = new Olap4jConnectionPool();
+    }
+    return remoteConnectionPool;
+  }
+
+  /**
+   * Allows to configure the pool used for the connections to the remote olap4j servers.
+   */
+  public synchronized void setRemoteConnectionPool( Olap4jConnectionPool remoteConnectionPool ) {
+    if ( this.remoteConnectionPool != null && this.remoteConnectionPool != remoteConnectionPool ) {
+      this.remoteConnectionPool.close();
+    }
+    this.remoteConnectionPool = remoteConnectionPool;
+  }
+
   /**
    * Returns a list of catalogs for the current session.
    *
@@ -474,6 +500,9 @@ public class OlapServiceImpl implements IOlapService {
         new MondrianCatalogRepositoryHelper( getRepository() );
 
     helper.addOlap4jServer( name, className, URL, user, password, props );
+
+    // The server definition might have changed.
+    getRemoteConnectionPool().invalidateServer( name );
   }
 
   public void removeCatalog( String name, IPentahoSession session ) {
@@ -496,6 +525,7 @@ public class OlapServiceImpl implements IOlapService {
 
     // This could be a remote connection
     getHelper().deleteCatalog( name );
+    getRemoteConnectionPool().invalidateServer( name );
   }
 
   /**
@@ -514,6 +544,12 @@ public class OlapServiceImpl implements IOlapService {
       throw new IOlapServiceException(
         Messages.getInstance().getErrorString( "MondrianCatalogHelper.ERROR_0019_FAILED_TO_FLUSH", name ) );
     } finally {
+      // Pooled connections keep the schema they were opened with.
+      final MondrianConnectionPool pool = getMondrianConnectionPool( session );
+      if ( pool != null ) {
+        pool.invalidateCatalog( name );
+      }
+      XmlaDiscoverCache.getInstance().invalidateCatalog( name );
       writeLock.unlock();
     }
   }
@@ -547,6 +583,18 @@ public class OlapServiceImpl implements IOlapService {
     }
     // clean cache for all mondrian schemas used by mondrian default "static" server
     MondrianServer.forId( null ).getAggregationManager().getCacheControl( null, null ).flushSchemaCache();
+    final MondrianConnectionPool pool = getMondrianConnectionPool( null );
+    if ( pool != null ) {
+      pool.invalidateAll();
+    }
+    XmlaDiscoverCache.getInstance().invalidateAll();
+  }
+
+  /**
+   * Returns the mondrianConnectionPool bean, null if none is configured.
+   */
+  private static MondrianConnectionPool getMondrianConnectionPool( IPentahoSession session ) {
+    return PentahoSystem.get( MondrianConnectionPool.class, "mondrianConnectionPool", session ); //$NON-NLS-1$
   }
 
   /**
@@ -571,6 +619,8 @@ public class OlapServiceImpl implements IOlapService {
         if ( connection != null ) {
           connection.close();
         }
+        // Pooled connections hold on to the metadata they discovered.
+        getRemoteConnectionPool().invalidateServer( name );
       }
     }
   }
@@ -807,10 +857,8 @@ public class OlapServiceImpl implements IOlapService {
     }
 
     try {
-      final Connection conn =
-        DriverManager.getConnection(
-          olapServerInfo.URL, newProps );
-      return conn.unwrap( OlapConnection.class );
+      return getRemoteConnectionPool().borrowConnection(
+        name, olapServerInfo.URL, newProps );
     } catch ( SQLException e ) {
       throw new IOlapServiceException( e );
     }
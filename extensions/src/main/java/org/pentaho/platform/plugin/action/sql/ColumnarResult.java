@@ -0,0 +1,284 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.action.sql;
+
+import org.pentaho.commons.connection.IPentahoMetaData;
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.commons.connection.memory.MemoryMetaData;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable, column oriented copy of a result set kept by the {@link SQLResultCache}.
+ *
+ * <p>Integral and floating point columns are stored in primitive arrays, string columns with few distinct values are
+ * dictionary encoded, and nulls are kept in a bit set. Every cache hit gets its own {@link ColumnarResultSet} cursor
+ * over the same data.
+ */
+final class ColumnarResult {
+
+  private final Object[][] columnHeaders;
+  private final String[] columnTypes;
+  private final Column[] columns;
+  private final int rowCount;
+  private final long estimatedBytes;
+
+  private ColumnarResult( final Object[][] columnHeaders, final String[] columnTypes, final Column[] columns,
+                          final int rowCount ) {
+    this.columnHeaders = columnHeaders;
+    this.columnTypes = columnTypes;
+    this.columns = columns;
+    this.rowCount = rowCount;
+    long bytes = 64;
+    for ( Column column : columns ) {
+      bytes += column.estimatedBytes();
+    }
+    this.estimatedBytes = bytes;
+  }
+
+  /**
+   * Copies an in memory result set into columnar form.
+   *
+   * @param resultSet scrollable result set, typically the {@link IPentahoResultSet#memoryCopy()} of a query result
+   */
+  static ColumnarResult copyOf( final IPentahoResultSet resultSet ) {
+    final IPentahoMetaData metaData = resultSet.getMetaData();
+    final Object[][] headers = metaData.getColumnHeaders();
+    final String[] types = metaData instanceof MemoryMetaData ? ( (MemoryMetaData) metaData ).getColumnTypes() : null;
+    final int columnCount = metaData.getColumnCount();
+    final int rowCount = resultSet.getRowCount();
+    final Column[] columns = new Column[ columnCount ];
+    for ( int c = 0; c < columnCount; c++ ) {
+      columns[ c ] = Column.of( resultSet, rowCount, c );
+    }
+    return new ColumnarResult( headers, types == null ? null : types.clone(), columns, rowCount );
+  }
+
+  ColumnarResultSet newResultSet() {
+    final MemoryMetaData metaData = new MemoryMetaData( columnHeaders, null );
+    if ( columnTypes != null ) {
+      metaData.setColumnTypes( columnTypes.clone() );
+    }
+    return new ColumnarResultSet( this, metaData );
+  }
+
+  int getRowCount() {
+    return rowCount;
+  }
+
+  int getColumnCount() {
+    return columns.length;
+  }
+
+  Object getValueAt( final int row, final int column ) {
+    return columns[ column ].get( row );
+  }
+
+  long getEstimatedBytes() {
+    return estimatedBytes;
+  }
+
+  private abstract static class Column {
+
+    private static final int DICTIONARY_MAX_RATIO = 2;
+
+    final BitSet nulls;
+
+    Column( final BitSet nulls ) {
+      this.nulls = nulls;
+    }
+
+    Object get( final int row ) {
+      return nulls.get( row ) ? null : value( row );
+    }
+
+    abstract Object value( int row );
+
+    abstract long estimatedBytes();
+
+    static Column of( final IPentahoResultSet rows, final int size, final int c ) {
+      final BitSet nulls = new BitSet( size );
+      Class<?> type = null;
+      boolean uniform = true;
+      for ( int r = 0; r < size; r++ ) {
+        final Object value = rows.getValueAt( r, c );
+        if ( value == null ) {
+          nulls.set( r );
+        } else if ( type == null ) {
+          type = value.getClass();
+        } else if ( type != value.getClass() ) {
+          uniform = false;
+        }
+      }
+      if ( uniform && ( type == Long.class || type == Integer.class || type == Short.class || type == Byte.class ) ) {
+        final long[] values = new long[ size ];
+        for ( int r = 0; r < size; r++ ) {
+          final Object value = rows.getValueAt( r, c );
+          values[ r ] = value == null ? 0 : ( (Number) value ).longValue();
+        }
+        return new IntegralColumn( nulls, values, type );
+      }
+      if ( uniform && ( type == Double.class || type == Float.class ) ) {
+        final double[] values = new double[ size ];
+        for ( int r = 0; r < size; r++ ) {
+          final Object value = rows.getValueAt( r, c );
+          values[ r ] = value == null ? 0 : ( (Number) value ).doubleValue();
+        }
+        return new FloatingColumn( nulls, values, type == Float.class );
+      }
+      if ( uniform && type == String.class ) {
+        final Map<String, Integer> codes = new HashMap<>();
+        final int[] values = new int[ size ];
+        for ( int r = 0; r < size && codes.size() * DICTIONARY_MAX_RATIO <= size; r++ ) {
+          final String value = (String) rows.getValueAt( r, c );
+          if ( value != null ) {
+            Integer code = codes.get( value );
+            if ( code == null ) {
+              code = codes.size();
+              codes.put( value, code );
+            }
+            values[ r ] = code;
+          }
+        }
+        if ( codes.size() * DICTIONARY_MAX_RATIO <= size ) {
+          final String[] dictionary = new String[ codes.size() ];
+          for ( Map.Entry<String, Integer> entry : codes.entrySet() ) {
+            dictionary[ entry.getValue() ] = entry.getKey();
+          }
+          return new DictionaryColumn( nulls, values, dictionary );
+        }
+      }
+      final Object[] values = new Object[ size ];
+      for ( int r = 0; r < size; r++ ) {
+        values[ r ] = rows.getValueAt( r, c );
+      }
+      return new ObjectColumn( nulls, values );
+    }
+  }
+
+  private static final class IntegralColumn extends Column {
+
+    private final long[] values;
+    private final Class<?> type;
+
+    IntegralColumn( final BitSet nulls, final long[] values, final Class<?> type ) {
+      super( nulls );
+      this.values = values;
+      this.type = type;
+    }
+
+    @Override
+    Object value( final int row ) {
+      final long value = values[ row ];
+      if ( type == Integer.class ) {
+        return (int) value;
+      } else if ( type == Short.class ) {
+        return (short) value;
+      } else if ( type == Byte.class ) {
+        return (byte) value;
+      }
+      return value;
+    }
+
+    @Override
+    long estimatedBytes() {
+      return 8L * values.length + 32;
+    }
+  }
+
+  private static final class FloatingColumn extends Column {
+
+    private final double[] values;
+    private final boolean isFloat;
+
+    FloatingColumn( final BitSet nulls, final double[] values, final boolean isFloat ) {
+      super( nulls );
+      this.values = values;
+      this.isFloat = isFloat;
+    }
+
+    @Override
+    Object value( final int row ) {
+      return isFloat ? (Object) (float) values[ row ] : (Object) values[ row ];
+    }
+
+    @Override
+    long estimatedBytes() {
+      return 8L * values.length + 32;
+    }
+  }
+
+  private static final class DictionaryColumn extends Column {
+
+    private final int[] codes;
+    private final String[] dictionary;
+
+    DictionaryColumn( final BitSet nulls, final int[] codes, final String[] dictionary ) {
+      super( nulls );
+      this.codes = codes;
+      this.dictionary = dictionary;
+    }
+
+    @Override
+    Object value( final int row ) {
+      return dictionary[ codes[ row ] ];
+    }
+
+    @Override
+    long estimatedBytes() {
+      long bytes = 4L * codes.length + 32;
+      for ( String value : dictionary ) {
+        bytes += stringBytes( value );
+      }
+      return bytes;
+    }
+  }
+
+  private static final class ObjectColumn extends Column {
+
+    private final Object[] values;
+
+    ObjectColumn( final BitSet nulls, final Object[] values ) {
+      super( nulls );
+      this.values = values;
+    }
+
+    @Override
+    Object value( final int row ) {
+      return values[ row ];
+    }
+
+    @Override
+    long estimatedBytes() {
+      long bytes = 8L * values.length + 32;
+      for ( Object value : values ) {
+        bytes += value instanceof String ? stringBytes( (String) value ) : value == null ? 0 : 32;
+      }
+      return bytes;
+    }
+  }
+
+  private static long stringBytes( final String value ) {
+    return 40 + 2L * value.length();
+  }
+}
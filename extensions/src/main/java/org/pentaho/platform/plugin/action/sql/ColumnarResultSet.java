@@ -0,0 +1,128 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.action.sql;
+
+import org.pentaho.commons.connection.IPeekable;
+import org.pentaho.commons.connection.IPentahoMetaData;
+import org.pentaho.commons.connection.IPentahoResultSet;
+
+/**
+ * Scrollable, read only cursor over a cached {@link ColumnarResult}. Closing it releases nothing, the data stays in
+ * the cache.
+ */
+public class ColumnarResultSet implements IPentahoResultSet, IPeekable {
+
+  private final ColumnarResult result;
+
+  private IPentahoMetaData metaData;
+
+  private int index = 0;
+
+  private Object[] peekRow;
+
+  ColumnarResultSet( final ColumnarResult result, final IPentahoMetaData metaData ) {
+    this.result = result;
+    this.metaData = metaData;
+  }
+
+  public IPentahoMetaData getMetaData() {
+    return metaData;
+  }
+
+  public void setMetaData( final IPentahoMetaData metaData ) {
+    this.metaData = metaData;
+  }
+
+  public Object[] peek() {
+    if ( peekRow == null ) {
+      peekRow = next();
+    }
+    return peekRow;
+  }
+
+  public Object[] next() {
+    if ( peekRow != null ) {
+      Object[] row = peekRow;
+      peekRow = null;
+      return row;
+    }
+    if ( index < result.getRowCount() ) {
+      return getDataRow( index++ );
+    }
+    return null;
+  }
+
+  public void close() {
+  }
+
+  public void closeConnection() {
+  }
+
+  public void dispose() {
+  }
+
+  public boolean isScrollable() {
+    return true;
+  }
+
+  public int getColumnCount() {
+    return result.getColumnCount();
+  }
+
+  public int getRowCount() {
+    return result.getRowCount();
+  }
+
+  public Object getValueAt( final int row, final int column ) {
+    if ( row < result.getRowCount() && column < result.getColumnCount() ) {
+      return result.getValueAt( row, column );
+    }
+    return null;
+  }
+
+  /**
+   * Returns a fresh cursor over the same cached data.
+   */
+  public IPentahoResultSet memoryCopy() {
+    return result.newResultSet();
+  }
+
+  public void beforeFirst() {
+    index = 0;
+    peekRow = null;
+  }
+
+  public Object[] getDataColumn( final int column ) {
+    final Object[] values = new Object[ result.getRowCount() ];
+    for ( int row = 0; row < values.length; row++ ) {
+      values[ row ] = result.getValueAt( row, column );
+    }
+    return values;
+  }
+
+  public Object[] getDataRow( final int row ) {
+    final Object[] values = new Object[ result.getColumnCount() ];
+    for ( int column = 0; column < values.length; column++ ) {
+      values[ column ] = result.getValueAt( row, column );
+    }
+    return values;
+  }
+}
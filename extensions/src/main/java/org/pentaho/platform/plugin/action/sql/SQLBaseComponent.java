@@ -20,6 +20,7 @@
 
 package org.pentaho.platform.plugin.action.sql;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.pentaho.actionsequence.dom.ActionInputConstant;
 import org.pentaho.actionsequence.dom.IActionDefinition;
@@ -35,17 +36,24 @@ import org.pentaho.commons.connection.memory.MemoryMetaData;
 import org.pentaho.platform.api.data.IDataComponent;
 import org.pentaho.platform.api.data.IPreparedComponent;
 import org.pentaho.platform.api.engine.IParameterResolver;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.services.connection.PentahoConnectionFactory;
 import org.pentaho.platform.engine.services.runtime.TemplateUtil;
 import org.pentaho.platform.engine.services.solution.ComponentBase;
 import org.pentaho.platform.plugin.action.messages.Messages;
 import org.pentaho.platform.plugin.services.connections.sql.SQLConnection;
 
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
 import java.text.Format;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.TreeSet;
 import java.util.regex.Matcher;
 
 /**
@@ -53,6 +61,13 @@ import java.util.regex.Matcher;
  * with Pentaho's BI Platform, including implementing the necessary component features. It also implements
  * IDataComponent and IPreparedComponent.
  * 
+ * <p>Query results can be kept in the {@link SQLResultCache} by adding a {@code cache-ttl} (seconds) to the
+ * component definition. Cached results are always in memory (not live) and are served without borrowing a
+ * connection. {@code cache-tags} (comma separated) tags the entries for invalidation, and {@code cache-scope} set to
+ * {@code shared} shares the results between users; by default they are kept per user and roles so that row level
+ * security enforced by the database is honored. Shared connections, prepared statement outputs, {@link SQLExecute}
+ * and statements other than plain queries ({@link SQLResultCache#isCacheable(String)}) are never cached.
+ * 
  * @see SQLExecute
  * @see SQLLookupRule
  */
@@ -61,6 +76,17 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
 
   public static final String PREPARE_PARAMETER_PREFIX = "PREPARE"; //$NON-NLS-1$
 
+  /** component setting enabling the result cache, time to live in seconds */
+  public static final String CACHE_TTL = "cache-ttl"; //$NON-NLS-1$
+
+  /** component setting, comma separated tags of the cached results */
+  public static final String CACHE_TAGS = "cache-tags"; //$NON-NLS-1$
+
+  /** component setting, {@link #CACHE_SCOPE_SHARED} to share the cached results between users */
+  public static final String CACHE_SCOPE = "cache-scope"; //$NON-NLS-1$
+
+  public static final String CACHE_SCOPE_SHARED = "shared"; //$NON-NLS-1$
+
   /** stores the prepared query for later use */
   protected String preparedQuery = null;
 
@@ -194,6 +220,7 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
           this.setReadOnly( readOnlyInput.getBooleanValue() );
         }
 
+        long cacheTtl = 0;
         if ( sharedConnection != null ) {
           connectionOwner = false;
           IPentahoConnection conn = sharedConnection.shareConnection();
@@ -210,10 +237,16 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
           }
         } else {
           dispose();
-          connection = getDatasourceConnection();
+          if ( relationalDbAction.getOutputPreparedStatement() == null && SQLResultCache.isCacheable( baseQuery ) ) {
+            cacheTtl = getResultCacheTtl();
+          }
+          // cached queries only borrow a connection on a cache miss
+          if ( cacheTtl <= 0 ) {
+            connection = getDatasourceConnection();
+          }
         }
 
-        if ( connection == null ) {
+        if ( connection == null && cacheTtl <= 0 ) {
           return false;
         }
 
@@ -240,7 +273,11 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
         }
 
         if ( relationalDbAction.getPerformTransform().getBooleanValue( false ) ) {
-          runQuery( baseQuery, false ); // The side effect of
+          if ( cacheTtl > 0 ) {
+            runCachedQuery( baseQuery, cacheTtl );
+          } else {
+            runQuery( baseQuery, false ); // The side effect of
+          }
           // transform rSet here
 
           rSet =
@@ -256,6 +293,8 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
             actionOutput.setValue( rSet );
           }
           return true;
+        } else if ( cacheTtl > 0 ) {
+          return runCachedQuery( baseQuery, cacheTtl );
         } else {
           return runQuery( baseQuery, relationalDbAction.getLive().getBooleanValue( false ) );
         }
@@ -548,22 +587,7 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
       }
 
       String query = applyInputsToFormat( rawQuery );
-      SQLConnection sqlConnection = null;
-      if ( ( connection instanceof SQLConnection ) ) {
-        sqlConnection = (SQLConnection) connection;
-      }
-      // Some of the following Added by Arijit Chatterjee passing the timeout value to SQLConnection class
-      if ( sqlConnection != null ) {
-        if ( this.getQueryTimeout() >= 0 ) {
-          sqlConnection.setQueryTimeout( this.getQueryTimeout() );
-        }
-        if ( this.getMaxRows() >= 0 ) {
-          sqlConnection.setMaxRows( this.getMaxRows() );
-        }
-        if ( this.getReadOnly() ) {
-          sqlConnection.setReadOnly( true );
-        }
-      }
+      SQLConnection sqlConnection = configureConnection();
 
       AbstractRelationalDbAction relationalDbAction = (AbstractRelationalDbAction) getActionDefinition();
 
@@ -633,6 +657,163 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
     return false;
   }
 
+  /**
+   * executes the specified query template through the {@link SQLResultCache}. On a hit the cached result set is
+   * returned without borrowing a connection; on a miss the query runs, its in memory copy is cached and the
+   * connection is closed.
+   * 
+   * @param rawQuery
+   *          query template
+   * @param ttlSeconds
+   *          time to live of the cached result
+   * @return true if successful
+   */
+  protected boolean runCachedQuery( final String rawQuery, final long ttlSeconds ) {
+    try {
+      String query = applyInputsToFormat( rawQuery );
+      AbstractRelationalDbAction relationalDbAction = (AbstractRelationalDbAction) getActionDefinition();
+      SQLResultCache cache = getResultCache();
+      if ( cache == null || !SQLResultCache.isCacheable( query ) ) {
+        // the inputs turned the query into something else, run it like any other statement
+        preparedParameters.clear();
+        connection = getDatasourceConnection();
+        return connection != null && runQuery( rawQuery, relationalDbAction.getLive().getBooleanValue( false ) );
+      }
+      SQLResultCache.Key key =
+          new SQLResultCache.Key( getDatasourceKey(), query, preparedParameters, getResultCacheSecurityContext(),
+              getMaxRows(), getQueryTimeout() );
+
+      IPentahoResultSet resultSet = cache.get( key );
+      if ( resultSet != null ) {
+        if ( ComponentBase.debug ) {
+          debug( Messages.getInstance().getString( "SQLBaseComponent.DEBUG_RESULT_CACHE_HIT", query ) ); //$NON-NLS-1$
+        }
+      } else {
+        connection = getDatasourceConnection();
+        if ( connection == null ) {
+          return false;
+        }
+        try {
+          SQLConnection sqlConnection = configureConnection();
+          boolean isForwardOnly = relationalDbAction.getUseForwardOnlyResultSet().getBooleanValue( false );
+          IPentahoResultSet liveResultSet = doQuery( sqlConnection, query, isForwardOnly );
+          if ( liveResultSet == null ) {
+            error( Messages.getInstance().getErrorString( "SQLBaseComponent.ERROR_0006_EXECUTE_FAILED",
+              getActionName() ) ); //$NON-NLS-1$
+            return false;
+          }
+          resultSet = cache.put( key, liveResultSet.memoryCopy(), ttlSeconds * 1000, getResultCacheTags() );
+        } finally {
+          connection.close();
+          connection = null;
+        }
+      }
+
+      // After preparation and execution, we need to clear out the
+      // prepared parameters.
+      preparedParameters.clear();
+      rSet = resultSet;
+      IActionOutput actionOutput = relationalDbAction.getOutputResultSet();
+      if ( actionOutput != null ) {
+        actionOutput.setValue( resultSet );
+      }
+      return true;
+    } catch ( Exception e ) {
+      error( Messages.getInstance().getErrorString( "SQLBaseComponent.ERROR_0006_EXECUTE_FAILED", getActionName() ), e ); //$NON-NLS-1$
+    }
+    return false;
+  }
+
+  /**
+   * passes the timeout, max rows and read only settings to the connection
+   * 
+   * @return the connection if it is a SQLConnection, null otherwise
+   */
+  private SQLConnection configureConnection() {
+    SQLConnection sqlConnection = null;
+    if ( ( connection instanceof SQLConnection ) ) {
+      sqlConnection = (SQLConnection) connection;
+    }
+    // Some of the following Added by Arijit Chatterjee passing the timeout value to SQLConnection class
+    if ( sqlConnection != null ) {
+      if ( this.getQueryTimeout() >= 0 ) {
+        sqlConnection.setQueryTimeout( this.getQueryTimeout() );
+      }
+      if ( this.getMaxRows() >= 0 ) {
+        sqlConnection.setMaxRows( this.getMaxRows() );
+      }
+      if ( this.getReadOnly() ) {
+        sqlConnection.setReadOnly( true );
+      }
+    }
+    return sqlConnection;
+  }
+
+  /**
+   * returns the time to live of the cached results of this action, in seconds. 0 if the results are not cached.
+   */
+  protected long getResultCacheTtl() {
+    SQLResultCache cache = getResultCache();
+    if ( cache == null || !cache.isEnabled() ) {
+      return 0;
+    }
+    return getInputLongValue( CACHE_TTL, 0 );
+  }
+
+  /**
+   * returns the sqlResultCache bean, null if none is configured
+   */
+  protected SQLResultCache getResultCache() {
+    return PentahoSystem.get( SQLResultCache.class, "sqlResultCache", getSession() ); //$NON-NLS-1$
+  }
+
+  protected List<String> getResultCacheTags() {
+    String tags = getInputStringValue( CACHE_TAGS );
+    if ( StringUtils.isBlank( tags ) ) {
+      return Collections.emptyList();
+    }
+    List<String> result = new ArrayList<String>();
+    for ( String tag : tags.split( "," ) ) { //$NON-NLS-1$
+      if ( StringUtils.isNotBlank( tag ) ) {
+        result.add( tag.trim() );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * identifies the user and roles the query runs for, so that results filtered by the database are not shared.
+   * Empty if the action shares its results between users.
+   */
+  protected String getResultCacheSecurityContext() {
+    if ( CACHE_SCOPE_SHARED.equalsIgnoreCase( getInputStringValue( CACHE_SCOPE ) ) ) {
+      return ""; //$NON-NLS-1$
+    }
+    StringBuilder context = new StringBuilder( String.valueOf( getSession() == null ? null : getSession().getName() ) );
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if ( authentication != null && authentication.getAuthorities() != null ) {
+      TreeSet<String> roles = new TreeSet<String>();
+      for ( GrantedAuthority authority : authentication.getAuthorities() ) {
+        roles.add( authority.getAuthority() );
+      }
+      context.append( roles );
+    }
+    return context.toString();
+  }
+
+  /**
+   * identifies the datasource of this action: its JNDI name, or its driver, URL and user.
+   */
+  protected String getDatasourceKey() {
+    AbstractRelationalDbAction relationalDbAction = (AbstractRelationalDbAction) getActionDefinition();
+    String jndiName = relationalDbAction.getJndi().getStringValue();
+    if ( jndiName != null ) {
+      return jndiName;
+    }
+    return relationalDbAction.getDriver().getStringValue() + "|" + relationalDbAction.getDbUrl().getStringValue() //$NON-NLS-1$
+        + "|" + relationalDbAction.getUserId().getStringValue(); //$NON-NLS-1$
+  }
+
   public IPentahoResultSet doQuery( final SQLConnection sqlConnection, final String query, boolean forwardOnlyResultset ) throws Exception {
     //
     // At this point, 'connection' and 'sqlConnection' should be pointers to
@@ -54,6 +54,14 @@ public class SQLExecute extends SQLLookupRule {
     return result;
   }
 
+  /**
+   * Statements run by this component change the database, their results are never cached.
+   */
+  @Override
+  protected long getResultCacheTtl() {
+    return 0;
+  }
+
   @Override
   protected boolean runQuery( final String rawQuery, final boolean live ) {
     SQLConnection conn = (SQLConnection) connection;
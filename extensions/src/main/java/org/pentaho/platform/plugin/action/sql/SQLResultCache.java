@@ -0,0 +1,335 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.action.sql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.Weigher;
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.platform.engine.core.metrics.IStatisticsProvider;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Opt-in cache of the query results of the SQL components ({@link SQLBaseComponent}).
+ *
+ * <p>Entries are keyed by datasource, normalized SQL text, bound prepared parameters, the row limit and timeout of
+ * the statement and the security context of the caller, so that row level security applied by the database is never
+ * shared between users. Results are kept in a columnar form ({@link ColumnarResult}) and the cache is bounded by their
+ * estimated size. Each action sets its own time to live and may tag its entries, see {@link SQLBaseComponent}. Only
+ * plain queries are cached, see {@link #isCacheable(String)}.
+ *
+ * <p>The cache is the <code>sqlResultCache</code> bean of pentahoObjects.spring.xml, whose counters are published by
+ * the statistics registrar. Results with more than <code>maxRows</code> rows are never cached.
+ */
+public class SQLResultCache implements IStatisticsProvider {
+
+  private static final Pattern QUERY = Pattern.compile( "^[(\\s]*(select|with)\\b", //$NON-NLS-1$
+    Pattern.CASE_INSENSITIVE );
+
+  private static final Pattern SIDE_EFFECT = Pattern.compile(
+    "\\b(insert|update|delete|merge|upsert|call|exec|execute|create|alter|drop|truncate|grant|revoke|into" //$NON-NLS-1$
+      + "|nextval)\\b", Pattern.CASE_INSENSITIVE ); //$NON-NLS-1$
+
+  private static final Pattern LITERAL = Pattern.compile( "'[^']*'|\"[^\"]*\"" ); //$NON-NLS-1$
+
+  private final boolean enabled;
+  private final int maxRows;
+  private final long maxTtlMillis;
+  private final Cache<Key, Entry> cache;
+  private final ConcurrentMap<String, Set<Key>> tagIndex = new ConcurrentHashMap<>();
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong expired = new AtomicLong();
+  private final AtomicLong stored = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong weightBytes = new AtomicLong();
+
+  public SQLResultCache( boolean enabled, long maxMemoryBytes, int maxRows, long maxTtlMillis ) {
+    this.enabled = enabled;
+    this.maxRows = maxRows;
+    this.maxTtlMillis = maxTtlMillis;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight( maxMemoryBytes )
+      .weigher( ( Weigher<Key, Entry> ) ( key, entry ) -> entry.weight )
+      .expireAfterWrite( maxTtlMillis, TimeUnit.MILLISECONDS )
+      .removalListener( ( RemovalListener<Key, Entry> ) notification ->
+        removed( notification.getKey(), notification.getValue(), notification.getCause() ) )
+      .build();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Whether the results of a statement may be cached: only queries starting with SELECT or WITH, and none naming a
+   * statement or function with side effects outside of its literals (e.g. a data modifying WITH, SELECT INTO,
+   * SELECT FOR UPDATE or a sequence). Anything else must run every time.
+   */
+  public static boolean isCacheable( final String sql ) {
+    if ( sql == null || !QUERY.matcher( sql ).find() ) {
+      return false;
+    }
+    return !SIDE_EFFECT.matcher( LITERAL.matcher( sql ).replaceAll( "''" ) ).find(); //$NON-NLS-1$
+  }
+
+  /**
+   * Returns a new cursor over the cached result, or null on a miss. Expired entries count as misses.
+   */
+  public IPentahoResultSet get( final Key key ) {
+    final Entry entry = cache.getIfPresent( key );
+    if ( entry != null && entry.expiresAt < System.currentTimeMillis() ) {
+      expired.incrementAndGet();
+      cache.invalidate( key );
+    } else if ( entry != null ) {
+      hits.incrementAndGet();
+      return entry.result.newResultSet();
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Caches an in memory result set.
+   *
+   * @param key       cache key
+   * @param resultSet in memory result set, e.g. the {@link IPentahoResultSet#memoryCopy()} of the query result
+   * @param ttlMillis time to live of the entry, capped by max-ttl-seconds
+   * @param tags      tags for {@link #invalidateTag(String)}, may be empty
+   * @return a cursor over the cached copy, or {@code resultSet} itself if it is too large to be cached
+   */
+  public IPentahoResultSet put( final Key key, final IPentahoResultSet resultSet, final long ttlMillis,
+                                final Collection<String> tags ) {
+    if ( resultSet.getRowCount() > maxRows ) {
+      rejected.incrementAndGet();
+      return resultSet;
+    }
+    final ColumnarResult result = ColumnarResult.copyOf( resultSet );
+    final Entry entry = new Entry( result, System.currentTimeMillis() + Math.min( ttlMillis, maxTtlMillis ),
+      new LinkedHashSet<>( tags ) );
+    for ( String tag : entry.tags ) {
+      tagIndex.computeIfAbsent( tag, t -> ConcurrentHashMap.newKeySet() ).add( key );
+    }
+    weightBytes.addAndGet( entry.weight );
+    cache.put( key, entry );
+    stored.incrementAndGet();
+    return result.newResultSet();
+  }
+
+  /**
+   * Drops every entry stored with the tag.
+   */
+  public void invalidateTag( final String tag ) {
+    final Set<Key> keys = tagIndex.remove( tag );
+    if ( keys != null ) {
+      cache.invalidateAll( keys );
+    }
+  }
+
+  /**
+   * Drops every entry of a datasource.
+   */
+  public void invalidateDatasource( final String datasource ) {
+    final List<Key> keys = new ArrayList<>();
+    for ( Key key : cache.asMap().keySet() ) {
+      if ( key.datasource.equals( datasource ) ) {
+        keys.add( key );
+      }
+    }
+    cache.invalidateAll( keys );
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * Returns the hit, miss and size counters.
+   */
+  @Override
+  public Map<String, Number> getStatistics() {
+    final long hitCount = hits.get();
+    final long missCount = misses.get();
+    final Map<String, Number> result = new LinkedHashMap<>();
+    result.put( "size", cache.size() );
+    result.put( "weightBytes", weightBytes.get() );
+    result.put( "hits", hitCount );
+    result.put( "misses", missCount );
+    result.put( "hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / ( hitCount + missCount ) );
+    result.put( "stored", stored.get() );
+    result.put( "rejected", rejected.get() );
+    result.put( "expired", expired.get() );
+    result.put( "evictions", evictions.get() );
+    return result;
+  }
+
+  private void removed( final Key key, final Entry entry, final RemovalCause cause ) {
+    if ( entry == null ) {
+      return;
+    }
+    weightBytes.addAndGet( -entry.weight );
+    if ( cause == RemovalCause.REPLACED ) {
+      // the key is still cached, and indexed under the tags of its new entry
+      return;
+    }
+    if ( cause == RemovalCause.SIZE ) {
+      evictions.incrementAndGet();
+    } else if ( cause == RemovalCause.EXPIRED ) {
+      expired.incrementAndGet();
+    }
+    for ( String tag : entry.tags ) {
+      final Set<Key> keys = tagIndex.get( tag );
+      if ( keys != null ) {
+        keys.remove( key );
+      }
+    }
+  }
+
+  /**
+   * Collapses the whitespace outside of quoted literals and identifiers and drops a trailing semicolon, so that
+   * queries only differing in their formatting share an entry.
+   */
+  static String normalize( final String sql ) {
+    final StringBuilder sb = new StringBuilder( sql.length() );
+    char quote = 0;
+    boolean pendingSpace = false;
+    for ( int i = 0; i < sql.length(); i++ ) {
+      final char ch = sql.charAt( i );
+      if ( quote != 0 ) {
+        sb.append( ch );
+        if ( ch == quote ) {
+          quote = 0;
+        }
+      } else if ( Character.isWhitespace( ch ) ) {
+        pendingSpace = sb.length() > 0;
+      } else {
+        if ( pendingSpace ) {
+          sb.append( ' ' );
+          pendingSpace = false;
+        }
+        if ( ch == '\'' || ch == '"' ) {
+          quote = ch;
+        }
+        sb.append( ch );
+      }
+    }
+    int end = sb.length();
+    while ( end > 0 && ( sb.charAt( end - 1 ) == ';' || sb.charAt( end - 1 ) == ' ' ) ) {
+      end--;
+    }
+    sb.setLength( end );
+    return sb.toString();
+  }
+
+  /**
+   * Identifies one query execution.
+   */
+  public static final class Key {
+
+    private final String datasource;
+    private final String sql;
+    private final List<Object> parameters;
+    private final String securityContext;
+    private final int maxRows;
+    private final int queryTimeout;
+    private final int hash;
+
+    /**
+     * Key of a statement run without row limit or timeout.
+     */
+    public Key( final String datasource, final String sql, final List<?> parameters, final String securityContext ) {
+      this( datasource, sql, parameters, securityContext, -1, -1 );
+    }
+
+    /**
+     * @param datasource      JNDI name, or driver and URL of the connection
+     * @param sql             query text, parameters already replaced by markers
+     * @param parameters      bound prepared parameters
+     * @param securityContext user and roles the query runs for, empty when results may be shared
+     * @param maxRows         row limit of the statement, negative when unlimited
+     * @param queryTimeout    timeout of the statement in seconds, negative when unlimited
+     */
+    public Key( final String datasource, final String sql, final List<?> parameters, final String securityContext,
+                final int maxRows, final int queryTimeout ) {
+      this.datasource = String.valueOf( datasource );
+      this.sql = normalize( sql );
+      this.parameters = parameters == null ? Collections.emptyList()
+        : Collections.unmodifiableList( new ArrayList<Object>( parameters ) );
+      this.securityContext = String.valueOf( securityContext );
+      this.maxRows = Math.max( -1, maxRows );
+      this.queryTimeout = Math.max( -1, queryTimeout );
+      this.hash = Objects.hash( this.datasource, this.sql, this.parameters, this.securityContext, this.maxRows,
+        this.queryTimeout );
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( !( o instanceof Key ) ) {
+        return false;
+      }
+      final Key other = (Key) o;
+      return hash == other.hash && maxRows == other.maxRows && queryTimeout == other.queryTimeout
+        && datasource.equals( other.datasource ) && sql.equals( other.sql ) && parameters.equals( other.parameters )
+        && securityContext.equals( other.securityContext );
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private static final class Entry {
+
+    private final ColumnarResult result;
+    private final long expiresAt;
+    private final Set<String> tags;
+    private final int weight;
+
+    Entry( final ColumnarResult result, final long expiresAt, final Set<String> tags ) {
+      this.result = result;
+      this.expiresAt = expiresAt;
+      this.tags = tags;
+      this.weight = (int) Math.min( Integer.MAX_VALUE, result.getEstimatedBytes() );
+    }
+  }
+}
@@ -51,12 +51,12 @@ public class ConditionalExecution implements IConditionalExecution {
 
   public boolean shouldExecute( final Map currentInputs, final Log logger ) throws Exception {
     boolean shouldExecute = true;
+    RhinoScriptCache scriptCache = RhinoScriptCache.getInstance();
     Context cx = ContextFactory.getGlobal().enterContext();
     try {
-      ScriptableObject scriptable = new RhinoScriptable();
-      // initialize the standard javascript objects
-      Scriptable scope = cx.initStandardObjects( scriptable );
-      ScriptableObject.defineClass( scope, JavaScriptResultSet.class );
+      scriptCache.prepareContext( cx );
+      // the standard javascript objects are shared, sealed, by every execution
+      Scriptable scope = scriptCache.newExecutionScope( cx );
       Object inputValue;
       IActionParameter inputParameter;
       String inputName;
@@ -78,7 +78,7 @@ public class ConditionalExecution implements IConditionalExecution {
 
           // Required as of Rhino 1.7R1 to resolve caching, base object
           // inheritance and property tree
-          results.setPrototype( scriptable );
+          results.setPrototype( scope );
 
           results.setResultSet( (IPentahoResultSet) inputValue );
           wrapper = Context.javaToJS( inputValue, results );
@@ -93,7 +93,7 @@ public class ConditionalExecution implements IConditionalExecution {
       ScriptableObject.putProperty( scope, "rule", wrappedThis ); //$NON-NLS-1$
 
       // evaluate the script
-      Object resultObject = cx.evaluateString( scope, script, "<cmd>", 1, null ); //$NON-NLS-1$
+      Object resultObject = scriptCache.execute( cx, scope, script );
 
       Object actualObject = null;
       if ( resultObject instanceof org.mozilla.javascript.NativeJavaObject ) {
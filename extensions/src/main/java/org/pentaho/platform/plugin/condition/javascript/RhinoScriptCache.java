@@ -0,0 +1,195 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.condition.javascript;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.pentaho.platform.engine.core.metrics.IStatisticsProvider;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.plugin.services.connections.javascript.JavaScriptResultSet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of compiled Rhino scripts shared by the javascript based components
+ * ({@link ConditionalExecution}, {@link org.pentaho.platform.plugin.action.javascript.JavascriptRule}).
+ *
+ * <p>Scripts are compiled once and kept in a bounded LRU cache keyed by their source text.
+ * The standard javascript objects live in a single sealed top-level scope; every execution
+ * gets its own lightweight scope which has the shared one as prototype, so that variables
+ * set by a script never leak into another execution.
+ *
+ * <p>Configured as the <code>rhinoScriptCache</code> bean of pentahoObjects.spring.xml, whose arguments are the
+ * number of compiled scripts kept and the Rhino optimization level. A level of -1 selects the interpreter, 0 (the
+ * Rhino default) to 9 compile to bytecode.
+ */
+public class RhinoScriptCache implements IStatisticsProvider {
+
+  static final String BEAN_ID = "rhinoScriptCache"; //$NON-NLS-1$
+
+  private static final int DEFAULT_MAX_SIZE = 500;
+  private static final int DEFAULT_OPTIMIZATION_LEVEL = 0;
+
+  private static volatile RhinoScriptCache defaultInstance;
+
+  private final int optimizationLevel;
+  private final Cache<String, Script> scripts;
+  private volatile ScriptableObject sharedScope;
+
+  private final AtomicLong compileCount = new AtomicLong();
+  private final AtomicLong compileNanos = new AtomicLong();
+  private final AtomicLong executeCount = new AtomicLong();
+  private final AtomicLong executeNanos = new AtomicLong();
+
+  public RhinoScriptCache( int maxSize, int optimizationLevel ) {
+    this.optimizationLevel = optimizationLevel;
+    this.scripts = CacheBuilder.newBuilder().maximumSize( maxSize ).recordStats().build();
+  }
+
+  /**
+   * Returns the <code>rhinoScriptCache</code> bean, or a cache with the default settings when the bean is not
+   * configured.
+   */
+  public static RhinoScriptCache getInstance() {
+    final RhinoScriptCache configured = PentahoSystem.get( RhinoScriptCache.class, BEAN_ID, null );
+    if ( configured != null ) {
+      return configured;
+    }
+    RhinoScriptCache cache = defaultInstance;
+    if ( cache == null ) {
+      synchronized ( RhinoScriptCache.class ) {
+        cache = defaultInstance;
+        if ( cache == null ) {
+          cache = defaultInstance = new RhinoScriptCache( DEFAULT_MAX_SIZE, DEFAULT_OPTIMIZATION_LEVEL );
+        }
+      }
+    }
+    return cache;
+  }
+
+  /**
+   * Applies the configured optimization level to a context. Must be called before
+   * compiling or executing a script in that context.
+   */
+  public void prepareContext( final Context cx ) {
+    cx.setOptimizationLevel( optimizationLevel );
+  }
+
+  /**
+   * Creates a new, empty scope for one execution. Global lookups fall back to the shared
+   * sealed scope which holds the standard objects and the {@link JavaScriptResultSet} class.
+   */
+  public Scriptable newExecutionScope( final Context cx ) throws Exception {
+    final Scriptable scope = cx.newObject( getSharedScope( cx ) );
+    scope.setPrototype( getSharedScope( cx ) );
+    scope.setParentScope( null );
+    return scope;
+  }
+
+  /**
+   * Runs a script in the given scope, compiling it first if it is not cached yet.
+   */
+  public Object execute( final Context cx, final Scriptable scope, final String source ) throws Exception {
+    final Script script = getScript( cx, source );
+    final long start = System.nanoTime();
+    try {
+      return script.exec( cx, scope );
+    } finally {
+      executeNanos.addAndGet( System.nanoTime() - start );
+      executeCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * Drops every compiled script.
+   */
+  public void clear() {
+    scripts.invalidateAll();
+  }
+
+  /**
+   * Returns the cache and timing counters.
+   */
+  @Override
+  public Map<String, Number> getStatistics() {
+    final CacheStats stats = scripts.stats();
+    final Map<String, Number> result = new LinkedHashMap<>();
+    result.put( "size", scripts.size() );
+    result.put( "hits", stats.hitCount() );
+    result.put( "misses", stats.missCount() );
+    result.put( "evictions", stats.evictionCount() );
+    result.put( "compileCount", compileCount.get() );
+    result.put( "compileTimeMillis", compileNanos.get() / 1000000 );
+    result.put( "executeCount", executeCount.get() );
+    result.put( "executeTimeMillis", executeNanos.get() / 1000000 );
+    return result;
+  }
+
+  Script getScript( final Context cx, final String source ) throws Exception {
+    try {
+      return scripts.get( source, () -> compile( cx, source ) );
+    } catch ( ExecutionException e ) {
+      if ( e.getCause() instanceof Exception ) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private Script compile( final Context cx, final String source ) {
+    final long start = System.nanoTime();
+    try {
+      return cx.compileString( source, "<cmd>", 1, null ); //$NON-NLS-1$
+    } finally {
+      compileNanos.addAndGet( System.nanoTime() - start );
+      compileCount.incrementAndGet();
+    }
+  }
+
+  private ScriptableObject getSharedScope( final Context cx ) throws Exception {
+    ScriptableObject scope = sharedScope;
+    if ( scope == null ) {
+      synchronized ( this ) {
+        scope = sharedScope;
+        if ( scope == null ) {
+          // initialize the standard javascript objects, sealed
+          scope = cx.initStandardObjects( new RhinoScriptable(), true );
+          ScriptableObject.defineClass( scope, JavaScriptResultSet.class );
+          final Object resultSetCtor = ScriptableObject.getProperty( scope, "JavaScriptResultSet" ); //$NON-NLS-1$
+          if ( resultSetCtor instanceof ScriptableObject ) {
+            ( (ScriptableObject) resultSetCtor ).sealObject();
+          }
+          scope.sealObject();
+          sharedScope = scope;
+        }
+      }
+    }
+    return scope;
+  }
+}
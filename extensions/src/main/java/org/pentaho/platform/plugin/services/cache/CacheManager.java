@@ -35,12 +35,12 @@ import org.pentaho.platform.engine.services.messages.Messages;
 import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class provides an access point for pluggable caching mechanisms. Right now, it only supports the caching
@@ -171,7 +171,7 @@ public class CacheManager implements ICacheManager {
       if ( obj instanceof CacheProvider ) {
         this.cacheProvider = (CacheProvider) obj;
         cacheProvider.start( cacheProperties );
-        regionCache = new HashMap<String, Cache>();
+        regionCache = new ConcurrentHashMap<String, Cache>();
         Cache cache = buildCache( SESSION, cacheProperties );
         if ( cache == null ) {
           CacheManager.logger
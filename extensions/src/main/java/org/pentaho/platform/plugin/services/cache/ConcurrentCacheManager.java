@@ -0,0 +1,638 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.Weigher;
+import org.apache.commons.lang.math.NumberUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dom4j.Document;
+import org.dom4j.Element;
+import org.pentaho.platform.api.cache.ICacheExpirationRegistry;
+import org.pentaho.platform.api.cache.ILastModifiedCacheItem;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.engine.ISystemSettings;
+import org.pentaho.platform.engine.core.metrics.IStatisticsProvider;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.services.messages.Messages;
+import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ICacheManager} backed by in-memory concurrent caches, one per region, without going through the Hibernate
+ * <code>CacheProvider</code> SPI.
+ *
+ * <p>Every region gets its own size, weight and expiry policy. The policy is read from the region properties given
+ * to {@link #addCacheRegion(String, Properties)}, falling back to the properties configured in pentaho.xml, where a
+ * property can be set for all regions or for a single region by prefixing it with the region name, and last to the
+ * Ehcache configuration the platform ships with (<code>ehcache.xml</code> on the class path), so that the regions
+ * keep the limits they have with {@link CacheManager}:
+ *
+ * <pre>
+ *  &lt;cache-manager&gt;
+ *    &lt;properties&gt;
+ *      &lt;property name=&quot;max-size&quot;&gt;10000&lt;/property&gt;
+ *      &lt;property name=&quot;SESSION.expire-after-access-seconds&quot;&gt;3600&lt;/property&gt;
+ *    &lt;/properties&gt;
+ *  &lt;/cache-manager&gt;
+ * </pre>
+ *
+ * Supported properties: <code>max-size</code> (entries), <code>max-weight</code> (with the <code>weigher</code> class,
+ * by default an estimate of string and collection sizes), <code>expire-after-write-seconds</code>,
+ * <code>expire-after-access-seconds</code>. A value of 0 disables the limit. The <code>maxElementsInMemory</code>
+ * (or <code>maxEntriesLocalHeap</code>), <code>timeToLiveSeconds</code> and <code>timeToIdleSeconds</code> of an
+ * Ehcache <code>cache</code> element map to the properties of the region of that name, the ones of
+ * <code>defaultCache</code> to the properties of all regions. Regions configured nowhere keep at most 10000 entries.
+ *
+ * <p>The {@link #SESSION} and {@link #GLOBAL} regions always exist, session entries are keyed by session id as in
+ * {@link CacheManager}. On top of the region limits, a session keeps at most <code>max-size-per-session</code>
+ * entries (1000 by default, 0 for no limit); its oldest entry is dropped past that, so that one session can not evict
+ * the entries of all the others.
+ *
+ * <p>The counters of every region are published as statistics named <code>region.counter</code>.
+ */
+public class ConcurrentCacheManager implements ICacheManager, IStatisticsProvider {
+
+  protected static final Log logger = LogFactory.getLog( ConcurrentCacheManager.class );
+
+  public static final String MAX_SIZE = "max-size"; //$NON-NLS-1$
+  public static final String MAX_WEIGHT = "max-weight"; //$NON-NLS-1$
+  public static final String WEIGHER = "weigher"; //$NON-NLS-1$
+  public static final String EXPIRE_AFTER_WRITE_SECONDS = "expire-after-write-seconds"; //$NON-NLS-1$
+  public static final String EXPIRE_AFTER_ACCESS_SECONDS = "expire-after-access-seconds"; //$NON-NLS-1$
+  public static final String MAX_SIZE_PER_SESSION = "max-size-per-session"; //$NON-NLS-1$
+
+  private static final long DEFAULT_MAX_SIZE = 10000;
+  private static final long DEFAULT_MAX_SIZE_PER_SESSION = 1000;
+
+  private static final String SESSION_KEY_SEPARATOR = "\t"; //$NON-NLS-1$
+
+  private static final String EHCACHE_CONFIGURATION = "/ehcache.xml"; //$NON-NLS-1$
+
+  private final Map<String, Region> regions = new ConcurrentHashMap<>();
+
+  // session id -> keys of that session in the SESSION region in insertion order, so a session can be dropped without
+  // a scan. The key sets are only modified inside the compute methods of the map.
+  private final Map<String, Set<Object>> sessionKeys = new ConcurrentHashMap<>();
+
+  private final Properties defaultProperties;
+
+  private final Properties ehcacheProperties;
+
+  private final long maxSizePerSession;
+
+  private final ICacheExpirationRegistry cacheExpirationRegistry;
+
+  public ConcurrentCacheManager() {
+    this( getConfiguredProperties( PentahoSystem.getSystemSettings() ), getEhcacheProperties(),
+      PentahoSystem.get( ICacheExpirationRegistry.class, null ) );
+    PentahoSystem.addLogoutListener( this );
+  }
+
+  public ConcurrentCacheManager( Properties defaultProperties, ICacheExpirationRegistry cacheExpirationRegistry ) {
+    this( defaultProperties, null, cacheExpirationRegistry );
+  }
+
+  /**
+   * @param ehcacheProperties region properties used when missing from <code>defaultProperties</code>, see
+   *                          {@link #getEhcacheProperties(InputStream)}
+   */
+  public ConcurrentCacheManager( Properties defaultProperties, Properties ehcacheProperties,
+                                 ICacheExpirationRegistry cacheExpirationRegistry ) {
+    this.defaultProperties = defaultProperties != null ? defaultProperties : new Properties();
+    this.ehcacheProperties = ehcacheProperties != null ? ehcacheProperties : new Properties();
+    this.cacheExpirationRegistry = cacheExpirationRegistry;
+    this.maxSizePerSession = getLongProperty( SESSION, null, MAX_SIZE_PER_SESSION, DEFAULT_MAX_SIZE_PER_SESSION );
+    if ( cacheExpirationRegistry == null ) {
+      logger.warn( Messages.getInstance().getErrorString( "CacheManager.WARN_0003_NO_CACHE_EXPIRATION_REGISTRY" ) );
+    }
+    regions.put( SESSION, buildRegion( SESSION, null ) );
+    regions.put( GLOBAL, buildRegion( GLOBAL, null ) );
+  }
+
+  /**
+   * Reads the <code>cache-manager/properties/*</code> settings.
+   */
+  private static Properties getConfiguredProperties( final ISystemSettings settings ) {
+    Properties properties = new Properties();
+    if ( settings == null ) {
+      return properties;
+    }
+    List<?> propertySettings = settings.getSystemSettings( "cache-manager/properties/*" ); //$NON-NLS-1$
+    for ( Object obj : propertySettings ) {
+      Element someProperty = (Element) obj;
+      String propertyName = XmlDom4JHelper.getNodeText( "@name", someProperty, null ); //$NON-NLS-1$
+      if ( propertyName != null ) {
+        properties.put( propertyName, someProperty.getTextTrim() );
+      }
+    }
+    return properties;
+  }
+
+  /**
+   * Reads the Ehcache configuration from the class path, see {@link #getEhcacheProperties(InputStream)}.
+   */
+  private static Properties getEhcacheProperties() {
+    try ( InputStream ehcacheConfiguration = ConcurrentCacheManager.class.getResourceAsStream(
+      EHCACHE_CONFIGURATION ) ) {
+      if ( ehcacheConfiguration != null ) {
+        return getEhcacheProperties( ehcacheConfiguration );
+      }
+    } catch ( Exception e ) {
+      logger.error( e.getMessage(), e );
+    }
+    return new Properties();
+  }
+
+  /**
+   * Translates the <code>defaultCache</code> and <code>cache</code> elements of an Ehcache configuration to region
+   * properties.
+   */
+  static Properties getEhcacheProperties( final InputStream ehcacheConfiguration ) throws Exception {
+    final Properties properties = new Properties();
+    final Document document = XmlDom4JHelper.getDocFromStream( ehcacheConfiguration );
+    for ( Object obj : document.getRootElement().elements() ) {
+      final Element cache = (Element) obj;
+      final String prefix;
+      if ( "defaultCache".equals( cache.getName() ) ) { //$NON-NLS-1$
+        prefix = ""; //$NON-NLS-1$
+      } else if ( "cache".equals( cache.getName() ) && cache.attributeValue( "name" ) != null ) { //$NON-NLS-1$
+        prefix = cache.attributeValue( "name" ) + "."; //$NON-NLS-1$
+      } else {
+        continue;
+      }
+      String maxSize = cache.attributeValue( "maxElementsInMemory" ); //$NON-NLS-1$
+      if ( maxSize == null ) {
+        maxSize = cache.attributeValue( "maxEntriesLocalHeap" ); //$NON-NLS-1$
+      }
+      if ( maxSize != null ) {
+        properties.setProperty( prefix + MAX_SIZE, maxSize.trim() );
+      }
+      // eternal elements ignore the timeouts
+      final boolean eternal = Boolean.parseBoolean( cache.attributeValue( "eternal" ) ); //$NON-NLS-1$
+      final String timeToLive = cache.attributeValue( "timeToLiveSeconds" ); //$NON-NLS-1$
+      final String timeToIdle = cache.attributeValue( "timeToIdleSeconds" ); //$NON-NLS-1$
+      properties.setProperty( prefix + EXPIRE_AFTER_WRITE_SECONDS,
+        eternal || timeToLive == null ? "0" : timeToLive.trim() ); //$NON-NLS-1$
+      properties.setProperty( prefix + EXPIRE_AFTER_ACCESS_SECONDS,
+        eternal || timeToIdle == null ? "0" : timeToIdle.trim() ); //$NON-NLS-1$
+    }
+    return properties;
+  }
+
+  // ~ Region management ======================================================
+
+  @Override
+  public boolean cacheEnabled() {
+    return true;
+  }
+
+  @Override
+  public boolean cacheEnabled( String region ) {
+    return region != null && regions.containsKey( region );
+  }
+
+  @Override
+  public boolean addCacheRegion( String region ) {
+    // an existing region is usable as well
+    addCacheRegion( region, null );
+    return true;
+  }
+
+  /**
+   * @return <code>false</code> when the region already existed, its policy is left unchanged
+   */
+  @Override
+  public boolean addCacheRegion( String region, Properties cacheProperties ) {
+    final boolean[] added = { false };
+    regions.computeIfAbsent( region, name -> {
+      added[0] = true;
+      return buildRegion( name, cacheProperties );
+    } );
+    if ( !added[0] ) {
+      logger.warn( Messages.getInstance().getString( "CacheManager.WARN_0002_REGION_ALREADY_EXIST", region ) ); //$NON-NLS-1$
+    }
+    return added[0];
+  }
+
+  @Override
+  public void clearRegionCache( String region ) {
+    final Region cache = regions.get( region );
+    if ( cache != null ) {
+      cache.clear();
+    } else {
+      logger.info( Messages.getInstance().getString( "CacheManager.INFO_0001_CACHE_DOES_NOT_EXIST", region ) ); //$NON-NLS-1$
+    }
+  }
+
+  @Override
+  public void removeRegionCache( String region ) {
+    // like CacheManager, the region is emptied but stays registered
+    if ( cacheEnabled( region ) ) {
+      clearRegionCache( region );
+    } else {
+      logger.info( Messages.getInstance().getString( "CacheManager.INFO_0001_CACHE_DOES_NOT_EXIST", region ) ); //$NON-NLS-1$
+    }
+  }
+
+  @Override
+  public void clearCache() {
+    for ( Region cache : regions.values() ) {
+      cache.clear();
+    }
+  }
+
+  @Override
+  public void cacheStop() {
+    clearCache();
+  }
+
+  // ~ Region entries =========================================================
+
+  @Override
+  public void putInRegionCache( String region, Object key, Object value ) {
+    final Region cache = getRegion( region );
+    if ( cache != null && key != null ) {
+      if ( value == null ) {
+        cache.remove( key );
+      } else {
+        cache.put( key, value );
+      }
+    }
+  }
+
+  @Override
+  public Object getFromRegionCache( String region, Object key ) {
+    final Region cache = getRegion( region );
+    return cache == null || key == null ? null : cache.cache.getIfPresent( key );
+  }
+
+  @Override
+  public void removeFromRegionCache( String region, Object key ) {
+    final Region cache = getRegion( region );
+    if ( cache != null && key != null ) {
+      cache.remove( key );
+    }
+  }
+
+  @SuppressWarnings( "rawtypes" )
+  @Override
+  public Set getAllEntriesFromRegionCache( String region ) {
+    final Region cache = regions.get( region );
+    return cache == null ? null : new HashSet<Object>( cache.cache.asMap().entrySet() );
+  }
+
+  @SuppressWarnings( "rawtypes" )
+  @Override
+  public Set getAllKeysFromRegionCache( String region ) {
+    final Region cache = regions.get( region );
+    return cache == null ? null : new HashSet<Object>( cache.cache.asMap().keySet() );
+  }
+
+  @SuppressWarnings( "rawtypes" )
+  @Override
+  public List getAllValuesFromRegionCache( String region ) {
+    final Region cache = regions.get( region );
+    return cache == null ? new ArrayList<Object>() : new ArrayList<Object>( cache.cache.asMap().values() );
+  }
+
+  @Override
+  public long getElementCountInRegionCache( String region ) {
+    final Region cache = regions.get( region );
+    return cache == null ? -1 : cache.cache.size();
+  }
+
+  @Override
+  public long getElementCountInSessionCache() {
+    return getElementCountInRegionCache( SESSION );
+  }
+
+  @Override
+  public long getElementCountInGlobalCache() {
+    return getElementCountInRegionCache( GLOBAL );
+  }
+
+  // ~ Session and global shortcuts ===========================================
+
+  @Override
+  public void putInSessionCache( IPentahoSession session, String key, Object value ) {
+    putInRegionCache( SESSION, getCorrectedKey( session, key ), value );
+  }
+
+  @Override
+  public Object getFromSessionCache( IPentahoSession session, String key ) {
+    return getFromRegionCache( SESSION, getCorrectedKey( session, key ) );
+  }
+
+  @Override
+  public void removeFromSessionCache( IPentahoSession session, String key ) {
+    removeFromRegionCache( SESSION, getCorrectedKey( session, key ) );
+  }
+
+  @Override
+  public void killSessionCache( IPentahoSession session ) {
+    final Set<Object> keys = sessionKeys.remove( session.getId() );
+    if ( keys != null ) {
+      regions.get( SESSION ).cache.invalidateAll( keys );
+    }
+  }
+
+  @Override
+  public void killSessionCaches() {
+    removeRegionCache( SESSION );
+  }
+
+  @Override
+  public void onLogout( final IPentahoSession session ) {
+    if ( cacheEnabled( session.getName() ) ) {
+      removeRegionCache( session.getName() );
+    }
+  }
+
+  @Override
+  public void putInGlobalCache( Object key, Object value ) {
+    putInRegionCache( GLOBAL, key, value );
+  }
+
+  @Override
+  public Object getFromGlobalCache( Object key ) {
+    return getFromRegionCache( GLOBAL, key );
+  }
+
+  @Override
+  public void removeFromGlobalCache( Object key ) {
+    removeFromRegionCache( GLOBAL, key );
+  }
+
+  // ~ Statistics =============================================================
+
+  /**
+   * Returns per region counters: <code>size</code>, <code>hits</code>, <code>misses</code> and
+   * <code>evictions</code>.
+   */
+  public Map<String, Map<String, Number>> getRegionStatistics() {
+    final Map<String, Map<String, Number>> result = new TreeMap<>();
+    for ( Map.Entry<String, Region> entry : regions.entrySet() ) {
+      result.put( entry.getKey(), entry.getValue().getStatistics() );
+    }
+    return result;
+  }
+
+  /**
+   * Returns the {@link #getRegionStatistics() region counters} as <code>region.counter</code>.
+   */
+  @Override
+  public Map<String, Number> getStatistics() {
+    final Map<String, Number> result = new LinkedHashMap<>();
+    for ( Map.Entry<String, Map<String, Number>> region : getRegionStatistics().entrySet() ) {
+      for ( Map.Entry<String, Number> counter : region.getValue().entrySet() ) {
+        result.put( region.getKey() + "." + counter.getKey(), counter.getValue() ); //$NON-NLS-1$
+      }
+    }
+    return result;
+  }
+
+  // ~ Internals ==============================================================
+
+  private Region getRegion( String region ) {
+    final Region cache = region == null ? null : regions.get( region );
+    if ( cache == null ) {
+      logger.warn( Messages.getInstance().getString( "CacheManager.WARN_0003_REGION_DOES_NOT_EXIST", region ) ); //$NON-NLS-1$
+    }
+    return cache;
+  }
+
+  private String getCorrectedKey( final IPentahoSession session, final String key ) {
+    String sessionId = session.getId();
+    if ( sessionId != null ) {
+      return sessionId + SESSION_KEY_SEPARATOR + key;
+    } else {
+      throw new IllegalStateException( Messages.getInstance().getErrorString( "CacheManager.ERROR_0001_NOSESSION" ) ); //$NON-NLS-1$
+    }
+  }
+
+  private String getProperty( String region, Properties regionProperties, String name ) {
+    String value = regionProperties != null ? regionProperties.getProperty( name ) : null;
+    if ( value == null ) {
+      value = defaultProperties.getProperty( region + "." + name ); //$NON-NLS-1$
+    }
+    if ( value == null ) {
+      value = defaultProperties.getProperty( name );
+    }
+    if ( value == null ) {
+      value = ehcacheProperties.getProperty( region + "." + name ); //$NON-NLS-1$
+    }
+    if ( value == null ) {
+      value = ehcacheProperties.getProperty( name );
+    }
+    return value;
+  }
+
+  private long getLongProperty( String region, Properties regionProperties, String name, long defaultValue ) {
+    return NumberUtils.toLong( getProperty( region, regionProperties, name ), defaultValue );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private Region buildRegion( final String name, final Properties regionProperties ) {
+    final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+
+    final long maxWeight = getLongProperty( name, regionProperties, MAX_WEIGHT, 0 );
+    final long maxSize = getLongProperty( name, regionProperties, MAX_SIZE, DEFAULT_MAX_SIZE );
+    if ( maxWeight > 0 ) {
+      Weigher<Object, Object> weigher = new EstimatingWeigher();
+      final String weigherClass = getProperty( name, regionProperties, WEIGHER );
+      if ( weigherClass != null ) {
+        try {
+          weigher = (Weigher<Object, Object>) Class.forName( weigherClass ).newInstance();
+        } catch ( Exception e ) {
+          logger.error( e.getMessage(), e );
+        }
+      }
+      builder.maximumWeight( maxWeight ).weigher( weigher );
+    } else if ( maxSize > 0 ) {
+      builder.maximumSize( maxSize );
+    }
+
+    final long expireAfterWrite = getLongProperty( name, regionProperties, EXPIRE_AFTER_WRITE_SECONDS, 0 );
+    if ( expireAfterWrite > 0 ) {
+      builder.expireAfterWrite( expireAfterWrite, TimeUnit.SECONDS );
+    }
+    final long expireAfterAccess = getLongProperty( name, regionProperties, EXPIRE_AFTER_ACCESS_SECONDS, 0 );
+    if ( expireAfterAccess > 0 ) {
+      builder.expireAfterAccess( expireAfterAccess, TimeUnit.SECONDS );
+    }
+
+    if ( SESSION.equals( name ) ) {
+      builder.removalListener( (RemovalListener<Object, Object>) notification -> {
+        if ( notification.getCause() != RemovalCause.REPLACED ) {
+          forgetSessionKey( notification.getKey() );
+        }
+      } );
+    }
+
+    final Region region = new Region( name );
+    region.cache = builder.build();
+    if ( cacheExpirationRegistry != null ) {
+      cacheExpirationRegistry.register( region );
+    }
+    return region;
+  }
+
+  private void rememberSessionKey( Object key ) {
+    final String sessionId = getSessionId( key );
+    if ( sessionId == null ) {
+      return;
+    }
+    final Object[] eldest = { null };
+    sessionKeys.compute( sessionId, ( k, keys ) -> {
+      final Set<Object> result = keys != null ? keys : new LinkedHashSet<>();
+      result.add( key );
+      if ( maxSizePerSession > 0 && result.size() > maxSizePerSession ) {
+        final Iterator<Object> iterator = result.iterator();
+        eldest[0] = iterator.next();
+        iterator.remove();
+      }
+      return result;
+    } );
+    if ( eldest[0] != null ) {
+      // outside of compute, the removal listener updates the key set again
+      regions.get( SESSION ).cache.invalidate( eldest[0] );
+    }
+  }
+
+  private void forgetSessionKey( Object key ) {
+    final String sessionId = getSessionId( key );
+    if ( sessionId != null ) {
+      sessionKeys.computeIfPresent( sessionId, ( k, keys ) -> {
+        keys.remove( key );
+        return keys.isEmpty() ? null : keys;
+      } );
+    }
+  }
+
+  private static String getSessionId( Object key ) {
+    if ( key instanceof String ) {
+      final int index = ( (String) key ).indexOf( SESSION_KEY_SEPARATOR );
+      return index > 0 ? ( (String) key ).substring( 0, index ) : null;
+    }
+    return null;
+  }
+
+  /**
+   * A region and the time it was last written to, for the {@link ICacheExpirationRegistry}.
+   */
+  private class Region implements ILastModifiedCacheItem {
+    private final String name;
+    private volatile Cache<Object, Object> cache;
+    private volatile long lastModified = System.currentTimeMillis();
+
+    Region( String name ) {
+      this.name = name;
+    }
+
+    void put( Object key, Object value ) {
+      cache.put( key, value );
+      touch( key );
+    }
+
+    void remove( Object key ) {
+      cache.invalidate( key );
+      lastModified = System.currentTimeMillis();
+    }
+
+    void clear() {
+      cache.invalidateAll();
+      if ( SESSION.equals( name ) ) {
+        sessionKeys.clear();
+      }
+      lastModified = System.currentTimeMillis();
+    }
+
+    private void touch( Object key ) {
+      if ( SESSION.equals( name ) ) {
+        rememberSessionKey( key );
+      }
+      lastModified = System.currentTimeMillis();
+    }
+
+    Map<String, Number> getStatistics() {
+      final CacheStats stats = cache.stats();
+      final Map<String, Number> result = new LinkedHashMap<>();
+      result.put( "size", cache.size() );
+      result.put( "hits", stats.hitCount() );
+      result.put( "misses", stats.missCount() );
+      result.put( "evictions", stats.evictionCount() );
+      return result;
+    }
+
+    @Override
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    @Override
+    public String getCacheKey() {
+      return name;
+    }
+  }
+
+  /**
+   * Rough memory estimate: characters of strings, length of arrays, size of collections and maps, 1 otherwise.
+   */
+  static class EstimatingWeigher implements Weigher<Object, Object> {
+    @Override
+    public int weigh( Object key, Object value ) {
+      final long weight;
+      if ( value instanceof CharSequence ) {
+        weight = ( (CharSequence) value ).length();
+      } else if ( value instanceof byte[] ) {
+        weight = ( (byte[]) value ).length;
+      } else if ( value instanceof Collection ) {
+        weight = ( (Collection<?>) value ).size();
+      } else if ( value instanceof Map ) {
+        weight = ( (Map<?, ?>) value ).size();
+      } else {
+        weight = 1;
+      }
+      return (int) Math.max( 1, Math.min( Integer.MAX_VALUE, weight ) );
+    }
+  }
+}
@@ -234,19 +234,16 @@ public class MDXConnection implements IPentahoLoggingConnection {
 
       mapPlatformRolesToMondrianRoles( properties );
 
+      DataSource dataSourceImpl = null;
       if ( dataSourceName != null ) {
         IDBDatasourceService datasourceService =
           PentahoSystem.getObjectFactory().get( IDBDatasourceService.class, null );
-        DataSource dataSourceImpl = datasourceService.getDataSource( dataSourceName );
+        dataSourceImpl = datasourceService.getDataSource( dataSourceName );
         if ( dataSourceImpl != null ) {
           properties.remove( RolapConnectionProperties.DataSource.name() );
-          nativeConnection = DriverManager.getConnection( properties, null, dataSourceImpl );
-        } else {
-          nativeConnection = DriverManager.getConnection( properties, null );
         }
-      } else {
-        nativeConnection = DriverManager.getConnection( properties, null );
       }
+      nativeConnection = openConnection( properties, dataSourceImpl, dataSourceName );
 
       if ( nativeConnection != null ) {
         if ( role != null ) {
@@ -272,6 +269,23 @@ public class MDXConnection implements IPentahoLoggingConnection {
     }
   }
 
+  /**
+   * Opens the Mondrian connection, taking it from the {@link MondrianConnectionPool} unless the pool is not
+   * configured or disabled, a custom role is set on this connection or the properties are not poolable.
+   */
+  protected Connection openConnection( Util.PropertyList properties, DataSource dataSource, String dataSourceName )
+    throws Exception {
+    final MondrianConnectionPool pool = PentahoSystem.get( MondrianConnectionPool.class,
+      "mondrianConnectionPool", PentahoSessionHolder.getSession() ); //$NON-NLS-1$
+    if ( role == null && pool != null && pool.isEnabled() && MondrianConnectionPool.isPoolable( properties ) ) {
+      return pool.borrowConnection( properties, dataSource, dataSource != null ? dataSourceName : null );
+    }
+    if ( dataSource != null ) {
+      return DriverManager.getConnection( properties, null, dataSource );
+    }
+    return DriverManager.getConnection( properties, null );
+  }
+
   public boolean initialized() {
     return nativeConnection != null;
   }
@@ -0,0 +1,499 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.connections.mondrian;
+
+import mondrian.olap.Connection;
+import mondrian.olap.DriverManager;
+import mondrian.olap.Util;
+import mondrian.rolap.RolapConnectionProperties;
+import mondrian.util.Pair;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.AbandonedConfig;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
+import org.pentaho.platform.engine.core.metrics.IStatisticsProvider;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keyed pool of Mondrian connections used by {@link MDXConnection}.
+ *
+ * <p>Connections are keyed by the datasource and the final connection properties, i.e. after the platform roles
+ * have been mapped to Mondrian roles and the locale has been set. The catalog, the role set and the locale are all
+ * part of those properties, so two requests which end up with a different effective role never share a
+ * connection. Connections using a dynamic schema processor are not poolable, see {@link #isPoolable}, since the
+ * schema it produces may depend on the user. When a datasource name gets bound to a new {@link DataSource}, the
+ * connections opened through the previous one are dropped.
+ *
+ * <p>Borrowed connections are handed out behind a proxy. Calling {@link Connection#close()} on it returns the
+ * physical connection to the pool. If the borrower changed the connection state (role, locale...) the physical
+ * connection is discarded instead of being recycled. Use {@link #unwrap(Connection)} where the Mondrian
+ * implementation class is needed.
+ *
+ * <p>A lease that is not used for {@link #setRemoveAbandonedTimeoutMillis removeAbandonedTimeoutMillis}, one hour by
+ * default, is considered abandoned, e.g. by a caller that never closed it. Its physical connection is destroyed when
+ * the pool runs short of connections or by the evictor, so that leaked leases do not exhaust the pool. Every call
+ * made through the lease counts as a use.
+ *
+ * <p>Connections of a catalog are dropped when the catalog is flushed through the
+ * {@link org.pentaho.platform.plugin.action.mondrian.catalog.MondrianCatalogHelper}, since they keep the schema they
+ * were opened with. The pool is the <code>mondrianConnectionPool</code> bean of pentahoObjects.spring.xml, which
+ * closes it on shutdown.
+ */
+public class MondrianConnectionPool implements IStatisticsProvider {
+
+  private static final Log LOG = LogFactory.getLog( MondrianConnectionPool.class );
+
+  private boolean enabled = true;
+  private int maxTotalPerKey = 8;
+  private int maxIdlePerKey = 4;
+  private int maxTotal = 64;
+  private long maxWaitMillis = 30000;
+  private long minEvictableIdleTimeMillis = 300000;
+  private long timeBetweenEvictionRunsMillis = 60000;
+  private long removeAbandonedTimeoutMillis = 3600000;
+
+  // generation of every key seen so far, bumped when its connections get invalidated
+  private final ConcurrentMap<Key, Long> generations = new ConcurrentHashMap<>();
+  private final AtomicLong lastGeneration = new AtomicLong();
+  // datasource each datasource name was last borrowed through
+  private final ConcurrentMap<String, DataSource> dataSources = new ConcurrentHashMap<>();
+  private volatile GenericKeyedObjectPool<Key, Connection> pool;
+
+  /**
+   * Tells whether connections opened with the given properties may be shared. Connections using a dynamic schema
+   * processor are not, the processor may produce a different schema for every user.
+   */
+  public static boolean isPoolable( Util.PropertyList properties ) {
+    return properties.get( RolapConnectionProperties.DynamicSchemaProcessor.name() ) == null;
+  }
+
+  /**
+   * Returns the Mondrian connection behind a pooled connection, or the connection itself if it is not pooled.
+   */
+  public static Connection unwrap( Connection connection ) {
+    if ( connection != null && Proxy.isProxyClass( connection.getClass() ) ) {
+      final InvocationHandler handler = Proxy.getInvocationHandler( connection );
+      if ( handler instanceof LeaseHandler ) {
+        return ( (LeaseHandler) handler ).physical;
+      }
+    }
+    return connection;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Borrows a connection. The caller must close the returned connection to hand it back to the pool.
+   *
+   * @param properties     The final connection properties.
+   * @param dataSource     The datasource to connect through, or null if the properties hold the JDBC settings.
+   * @param dataSourceName The name the datasource was looked up with, null if there is none.
+   */
+  public Connection borrowConnection( Util.PropertyList properties, DataSource dataSource, String dataSourceName )
+    throws Exception {
+    final Key key = new Key( properties, dataSource, dataSourceName );
+    if ( dataSourceName != null && dataSource != null ) {
+      final DataSource previous = dataSources.put( dataSourceName, dataSource );
+      if ( previous != null && previous != dataSource ) {
+        invalidateDataSource( dataSourceName, dataSource );
+      }
+    }
+    final long generation = generations.computeIfAbsent( key, k -> lastGeneration.get() );
+    return wrap( key, generation, getPool().borrowObject( key ) );
+  }
+
+  /**
+   * Closes every pooled connection of the given catalog, idle or not. Connections currently leased are destroyed
+   * when they get returned. The name is matched against the catalog of the connection, which may also be the
+   * location of the schema, e.g. <code>mondrian:/SteelWheels</code>.
+   */
+  public void invalidateCatalog( String catalogName ) {
+    if ( pool == null || catalogName == null ) {
+      return;
+    }
+    for ( Key key : generations.keySet() ) {
+      if ( key.isCatalog( catalogName ) ) {
+        generations.put( key, lastGeneration.incrementAndGet() );
+        pool.clear( key );
+      }
+    }
+  }
+
+  /**
+   * Forgets the connections opened through another datasource than the given one under the same name, e.g. after
+   * the datasource was redefined. Connections currently leased are destroyed when they get returned.
+   */
+  private void invalidateDataSource( String dataSourceName, DataSource current ) {
+    for ( Key key : generations.keySet() ) {
+      if ( dataSourceName.equals( key.dataSourceName ) && key.dataSource != current ) {
+        generations.remove( key );
+        final GenericKeyedObjectPool<Key, Connection> p = pool;
+        if ( p != null ) {
+          p.clear( key );
+        }
+      }
+    }
+  }
+
+  /**
+   * Closes all idle connections and discards the ones currently leased once they are returned.
+   */
+  public void invalidateAll() {
+    if ( pool == null ) {
+      return;
+    }
+    final long generation = lastGeneration.incrementAndGet();
+    generations.replaceAll( ( key, old ) -> generation );
+    pool.clear();
+  }
+
+  /**
+   * Closes the pool and every connection it holds.
+   */
+  public synchronized void close() {
+    if ( pool != null ) {
+      pool.close();
+      pool = null;
+    }
+    generations.clear();
+    dataSources.clear();
+  }
+
+  /**
+   * Returns a snapshot of the pool metrics. Suitable for logging or to be published through a monitoring endpoint.
+   */
+  @Override
+  public Map<String, Number> getStatistics() {
+    final Map<String, Number> stats = new LinkedHashMap<>();
+    final GenericKeyedObjectPool<Key, Connection> p = pool;
+    if ( p == null ) {
+      return stats;
+    }
+    stats.put( "keys", generations.size() );
+    stats.put( "active", p.getNumActive() );
+    stats.put( "idle", p.getNumIdle() );
+    stats.put( "waiters", p.getNumWaiters() );
+    stats.put( "created", p.getCreatedCount() );
+    stats.put( "destroyed", p.getDestroyedCount() );
+    stats.put( "destroyedByEvictor", p.getDestroyedByEvictorCount() );
+    stats.put( "destroyedByBorrowValidation", p.getDestroyedByBorrowValidationCount() );
+    stats.put( "borrowed", p.getBorrowedCount() );
+    stats.put( "returned", p.getReturnedCount() );
+    stats.put( "meanBorrowWaitTimeMillis", p.getMeanBorrowWaitTimeMillis() );
+    stats.put( "maxBorrowWaitTimeMillis", p.getMaxBorrowWaitTimeMillis() );
+    stats.put( "meanActiveTimeMillis", p.getMeanActiveTimeMillis() );
+    return stats;
+  }
+
+  /**
+   * Opens a new physical connection. Protected for testing purposes.
+   */
+  protected Connection openConnection( Util.PropertyList properties, DataSource dataSource ) {
+    if ( dataSource != null ) {
+      return DriverManager.getConnection( properties, null, dataSource );
+    }
+    return DriverManager.getConnection( properties, null );
+  }
+
+  /**
+   * Validates a physical connection before it gets handed out again.
+   */
+  protected boolean isValid( Connection connection ) {
+    try {
+      return connection.getSchema() != null;
+    } catch ( RuntimeException e ) {
+      return false;
+    }
+  }
+
+  private GenericKeyedObjectPool<Key, Connection> getPool() {
+    GenericKeyedObjectPool<Key, Connection> p = pool;
+    if ( p == null ) {
+      synchronized ( this ) {
+        p = pool;
+        if ( p == null ) {
+          p = pool = createPool();
+        }
+      }
+    }
+    return p;
+  }
+
+  private GenericKeyedObjectPool<Key, Connection> createPool() {
+    final GenericKeyedObjectPoolConfig<Connection> config = new GenericKeyedObjectPoolConfig<>();
+    config.setMaxTotalPerKey( maxTotalPerKey );
+    config.setMaxIdlePerKey( maxIdlePerKey );
+    config.setMaxTotal( maxTotal );
+    config.setMaxWait( Duration.ofMillis( maxWaitMillis ) );
+    config.setTestOnBorrow( true );
+    config.setTestWhileIdle( true );
+    config.setMinEvictableIdleTimeMillis( minEvictableIdleTimeMillis );
+    config.setTimeBetweenEvictionRunsMillis( timeBetweenEvictionRunsMillis );
+    config.setJmxEnabled( false );
+    if ( removeAbandonedTimeoutMillis <= 0 ) {
+      return new GenericKeyedObjectPool<>( new Factory(), config );
+    }
+    final AbandonedConfig abandonedConfig = new AbandonedConfig();
+    abandonedConfig.setRemoveAbandonedOnBorrow( true );
+    abandonedConfig.setRemoveAbandonedOnMaintenance( true );
+    abandonedConfig.setRemoveAbandonedTimeout( Duration.ofMillis( removeAbandonedTimeoutMillis ) );
+    abandonedConfig.setUseUsageTracking( true );
+    return new GenericKeyedObjectPool<>( new Factory(), config, abandonedConfig );
+  }
+
+  private Connection wrap( final Key key, final long generation, final Connection physical ) {
+    return (Connection) Proxy.newProxyInstance(
+      Connection.class.getClassLoader(),
+      new Class<?>[] { Connection.class },
+      new LeaseHandler( key, generation, physical ) );
+  }
+
+  private void release( Key key, long generation, Connection physical, boolean dirty ) {
+    final GenericKeyedObjectPool<Key, Connection> p = pool;
+    if ( p == null ) {
+      closeQuietly( physical );
+      return;
+    }
+    try {
+      if ( dirty || !Long.valueOf( generation ).equals( generations.get( key ) ) ) {
+        p.invalidateObject( key, physical );
+      } else {
+        p.returnObject( key, physical );
+      }
+    } catch ( Exception e ) {
+      LOG.debug( "Failed to release a pooled Mondrian connection to " + key, e );
+      closeQuietly( physical );
+    }
+  }
+
+  private static void closeQuietly( Connection connection ) {
+    try {
+      connection.close();
+    } catch ( RuntimeException e ) {
+      LOG.debug( "Failed to close a Mondrian connection", e );
+    }
+  }
+
+  public void setEnabled( boolean enabled ) {
+    this.enabled = enabled;
+  }
+
+  public void setMaxTotalPerKey( int maxTotalPerKey ) {
+    this.maxTotalPerKey = maxTotalPerKey;
+  }
+
+  public void setMaxIdlePerKey( int maxIdlePerKey ) {
+    this.maxIdlePerKey = maxIdlePerKey;
+  }
+
+  public void setMaxTotal( int maxTotal ) {
+    this.maxTotal = maxTotal;
+  }
+
+  public void setMaxWaitMillis( long maxWaitMillis ) {
+    this.maxWaitMillis = maxWaitMillis;
+  }
+
+  public void setMinEvictableIdleTimeMillis( long minEvictableIdleTimeMillis ) {
+    this.minEvictableIdleTimeMillis = minEvictableIdleTimeMillis;
+  }
+
+  public void setTimeBetweenEvictionRunsMillis( long timeBetweenEvictionRunsMillis ) {
+    this.timeBetweenEvictionRunsMillis = timeBetweenEvictionRunsMillis;
+  }
+
+  /**
+   * Sets the time after which an unused lease is reclaimed. Must be longer than the longest query; 0 never reclaims.
+   */
+  public void setRemoveAbandonedTimeoutMillis( long removeAbandonedTimeoutMillis ) {
+    this.removeAbandonedTimeoutMillis = removeAbandonedTimeoutMillis;
+  }
+
+  /**
+   * Pool key. Holds the datasource name, the datasource and every effective connection property. Datasources are
+   * compared by identity.
+   */
+  static final class Key {
+    private final String dataSourceName;
+    private final SortedMap<String, String> properties;
+    private final DataSource dataSource;
+
+    Key( Util.PropertyList properties, DataSource dataSource, String dataSourceName ) {
+      this.dataSourceName = dataSourceName;
+      this.dataSource = dataSource;
+      // property names are case insensitive in a connect string
+      final SortedMap<String, String> props = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+      for ( Pair<String, String> pair : properties ) {
+        props.put( pair.getKey(), pair.getValue() );
+      }
+      this.properties = Collections.unmodifiableSortedMap( props );
+    }
+
+    Util.PropertyList toPropertyList() {
+      final Util.PropertyList list = new Util.PropertyList();
+      for ( Map.Entry<String, String> entry : properties.entrySet() ) {
+        list.put( entry.getKey(), entry.getValue() );
+      }
+      return list;
+    }
+
+    boolean isCatalog( String catalogName ) {
+      final String catalog = properties.get( RolapConnectionProperties.Catalog.name() );
+      if ( catalog == null ) {
+        return false;
+      }
+      return catalog.equals( catalogName ) || catalog.endsWith( "/" + catalogName ); //$NON-NLS-1$
+    }
+
+    @Override
+    public boolean equals( Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( !( o instanceof Key ) ) {
+        return false;
+      }
+      final Key other = (Key) o;
+      return ( dataSourceName == null ? other.dataSourceName == null : dataSourceName.equals( other.dataSourceName ) )
+        && dataSource == other.dataSource
+        && properties.equals( other.properties );
+    }
+
+    @Override
+    public int hashCode() {
+      int result = dataSourceName == null ? 0 : dataSourceName.hashCode();
+      result = 31 * result + System.identityHashCode( dataSource );
+      // the map is case insensitive, so must be the hash
+      for ( Map.Entry<String, String> entry : properties.entrySet() ) {
+        result = 31 * result + entry.getKey().toLowerCase().hashCode();
+        result = 31 * result + ( entry.getValue() == null ? 0 : entry.getValue().hashCode() );
+      }
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      // Never expose the property values, they may contain the credentials.
+      return properties.get( RolapConnectionProperties.Catalog.name() ) + properties.keySet();
+    }
+  }
+
+  private class Factory extends BaseKeyedPooledObjectFactory<Key, Connection> {
+    @Override
+    public Connection create( Key key ) {
+      return openConnection( key.toPropertyList(), key.dataSource );
+    }
+
+    @Override
+    public PooledObject<Connection> wrap( Connection connection ) {
+      return new DefaultPooledObject<>( connection );
+    }
+
+    @Override
+    public boolean validateObject( Key key, PooledObject<Connection> p ) {
+      return isValid( p.getObject() );
+    }
+
+    @Override
+    public void destroyObject( Key key, PooledObject<Connection> p ) {
+      closeQuietly( p.getObject() );
+    }
+  }
+
+  /**
+   * Intercepts the calls made on a leased connection. {@code close()} releases the lease, and any state mutator
+   * marks the physical connection as not reusable.
+   */
+  private class LeaseHandler implements InvocationHandler {
+    private final Key key;
+    private final long generation;
+    private final Connection physical;
+    private boolean released;
+    private boolean dirty;
+
+    LeaseHandler( Key key, long generation, Connection physical ) {
+      this.key = key;
+      this.generation = generation;
+      this.physical = physical;
+    }
+
+    @Override
+    public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+      final String name = method.getName();
+      switch ( name ) {
+        case "close":
+          synchronized ( this ) {
+            if ( !released ) {
+              released = true;
+              release( key, generation, physical, dirty );
+            }
+          }
+          return null;
+        case "equals":
+          return proxy == args[ 0 ];
+        case "hashCode":
+          return System.identityHashCode( proxy );
+        case "toString":
+          return "Pooled[" + key + "]";
+        default:
+          break;
+      }
+      synchronized ( this ) {
+        if ( released ) {
+          throw new IllegalStateException( "Connection already returned to the pool" );
+        }
+        if ( name.startsWith( "set" ) ) {
+          dirty = true;
+        }
+      }
+      final GenericKeyedObjectPool<Key, Connection> p = pool;
+      if ( p != null ) {
+        // keeps the lease from being reclaimed as abandoned
+        p.use( physical );
+      }
+      try {
+        return method.invoke( physical, args );
+      } catch ( InvocationTargetException e ) {
+        throw e.getCause();
+      }
+    }
+  }
+}
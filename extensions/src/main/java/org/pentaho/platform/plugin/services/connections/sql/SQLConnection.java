@@ -28,6 +28,7 @@ import org.pentaho.platform.api.data.IDBDatasourceService;
 import org.pentaho.platform.api.engine.ILogger;
 import org.pentaho.platform.api.engine.ObjectFactoryException;
 import org.pentaho.platform.api.engine.PentahoSystemException;
+import org.pentaho.platform.engine.core.metrics.RequestMetrics;
 import org.pentaho.platform.engine.core.system.IPentahoLoggingConnection;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.plugin.services.messages.Messages;
@@ -198,7 +199,7 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
       IDBDatasourceService datasourceService = PentahoSystem.getObjectFactory().get( IDBDatasourceService.class, null );
       DataSource dataSource = datasourceService.getDataSource( jndiName );
       if ( dataSource != null ) {
-        nativeConnection = captureConnection( dataSource.getConnection() );
+        nativeConnection = captureConnection( borrowConnection( dataSource, jndiName ) );
         if ( nativeConnection == null ) {
           logger.error( Messages.getInstance()
               .getErrorString( "ConnectFactory.ERROR_0001_INVALID_CONNECTION", jndiName ) ); //$NON-NLS-1$
@@ -230,6 +231,16 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
     }
   }
 
+  /**
+   * Gets a connection from the datasource, timing the borrow under the datasource name.
+   */
+  Connection borrowConnection( final DataSource dataSource, final String datasourceName ) throws SQLException {
+    try ( RequestMetrics.Span span = RequestMetrics.getInstance()
+      .start( RequestMetrics.Category.DATASOURCE, String.valueOf( datasourceName ) ) ) {
+      return dataSource.getConnection();
+    }
+  }
+
   /**
    * Allows the native SQL Connection to be enhanced in a subclass. Best used when a connection needs to be enhanced
    * with an "effective user"
@@ -582,7 +593,7 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
     DataSource dataSource = null;
     try {
       dataSource = PooledDatasourceHelper.setupPooledDataSource( databaseConnection );
-      nativeConnection = captureConnection( dataSource.getConnection() );
+      nativeConnection = captureConnection( borrowConnection( dataSource, databaseConnection.getName() ) );
     } catch ( Exception e ) {
       logger.error( "Can't get connection from Pool", e );
     }
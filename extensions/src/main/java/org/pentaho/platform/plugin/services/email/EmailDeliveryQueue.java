@@ -0,0 +1,293 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.email;
+
+import com.sun.mail.smtp.SMTPAddressFailedException;
+import com.sun.mail.smtp.SMTPSendFailedException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.engine.core.metrics.IStatisticsProvider;
+
+import javax.mail.Address;
+import javax.mail.AuthenticationFailedException;
+import javax.mail.SendFailedException;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbound email queue. Callers hand a message off and return immediately; a small pool of threads delivers the
+ * messages, retrying transient failures (connection errors, 4xx SMTP replies) with exponential backoff.
+ * <p>
+ * When the queue is full the message is delivered in the calling thread, which slows producers down instead of
+ * dropping mail. With 0 threads every message is delivered synchronously.
+ * <p>
+ * The queue is the <code>emailDeliveryQueue</code> bean of pentahoObjects.spring.xml. On shutdown it stops accepting
+ * messages and waits up to <code>shutdownTimeoutMillis</code> for the queued ones; the messages still undelivered
+ * then are logged and their futures fail.
+ */
+public class EmailDeliveryQueue implements IStatisticsProvider {
+
+  private static final Log logger = LogFactory.getLog( EmailDeliveryQueue.class );
+
+  /**
+   * One delivery attempt of a message.
+   */
+  public interface Delivery {
+    void deliver() throws Exception;
+  }
+
+  private final ScheduledThreadPoolExecutor executor;
+  private final int capacity;
+  private final int maxAttempts;
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+  private long shutdownTimeoutMillis = 30000;
+
+  private final Set<Task> inFlight = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger pending = new AtomicInteger();
+  private final AtomicLong submitted = new AtomicLong();
+  private final AtomicLong deliveredInCaller = new AtomicLong();
+  private final AtomicLong delivered = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong retried = new AtomicLong();
+  private final AtomicLong deliveryNanos = new AtomicLong();
+  private final AtomicLong queueWaitNanos = new AtomicLong();
+  private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+  public EmailDeliveryQueue( int threads, int capacity, int maxAttempts, long initialBackoffMillis,
+                             long maxBackoffMillis ) {
+    this.capacity = capacity;
+    this.maxAttempts = Math.max( 1, maxAttempts );
+    this.initialBackoffMillis = initialBackoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+    if ( threads > 0 ) {
+      final AtomicInteger threadNumber = new AtomicInteger();
+      executor = new ScheduledThreadPoolExecutor( threads, r -> {
+        final Thread thread = new Thread( r, "email-delivery-" + threadNumber.incrementAndGet() ); //$NON-NLS-1$
+        thread.setDaemon( true );
+        return thread;
+      } );
+      executor.setRemoveOnCancelPolicy( true );
+    } else {
+      executor = null;
+    }
+  }
+
+  public long getShutdownTimeoutMillis() {
+    return shutdownTimeoutMillis;
+  }
+
+  /**
+   * How long {@link #shutdown()} waits for the queued messages to be delivered.
+   */
+  public void setShutdownTimeoutMillis( final long shutdownTimeoutMillis ) {
+    this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+  }
+
+  /**
+   * Queues a delivery. The returned future completes once the message is delivered, or exceptionally once it has
+   * failed permanently or exhausted its attempts.
+   *
+   * @param description identifies the message in the logs, e.g. its recipients
+   */
+  public CompletableFuture<Void> submit( final String description, final Delivery delivery ) {
+    final Task task = new Task( description, delivery );
+    submitted.incrementAndGet();
+    if ( executor == null || pending.incrementAndGet() > capacity ) {
+      if ( executor != null ) {
+        pending.decrementAndGet();
+      }
+      deliveredInCaller.incrementAndGet();
+      try {
+        attempt( delivery );
+        delivered.incrementAndGet();
+        task.future.complete( null );
+      } catch ( Exception e ) {
+        failed.incrementAndGet();
+        task.future.completeExceptionally( e );
+      }
+      return task.future;
+    }
+    inFlight.add( task );
+    try {
+      executor.execute( () -> run( task ) );
+    } catch ( RejectedExecutionException e ) {
+      finish( task, e );
+    }
+    return task.future;
+  }
+
+  /**
+   * Stops accepting messages and waits up to the shutdown timeout for the queued ones, including their pending
+   * retries, to be delivered. Messages still queued after the timeout are dropped; each one is logged and its future
+   * fails.
+   */
+  public void shutdown() {
+    if ( executor == null ) {
+      return;
+    }
+    executor.shutdown();
+    try {
+      if ( !executor.awaitTermination( shutdownTimeoutMillis, TimeUnit.MILLISECONDS ) ) {
+        executor.shutdownNow();
+      }
+    } catch ( InterruptedException e ) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    for ( Task task : inFlight ) {
+      finish( task, new RejectedExecutionException(
+        "Email delivery stopped before the message was sent" ) ); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Returns the queue and delivery counters.
+   */
+  @Override
+  public Map<String, Number> getStatistics() {
+    final long deliveredCount = delivered.get();
+    final long dequeued = submitted.get() - deliveredInCaller.get() - pending.get();
+    final Map<String, Number> result = new LinkedHashMap<>();
+    result.put( "pending", pending.get() );
+    result.put( "submitted", submitted.get() );
+    result.put( "delivered", deliveredCount );
+    result.put( "deliveredInCaller", deliveredInCaller.get() );
+    result.put( "failed", failed.get() );
+    result.put( "retried", retried.get() );
+    result.put( "averageDeliveryMillis", deliveredCount == 0 ? 0 : deliveryNanos.get() / deliveredCount / 1000000 );
+    result.put( "averageQueueWaitMillis", dequeued <= 0 ? 0 : queueWaitNanos.get() / dequeued / 1000000 );
+    result.put( "maxQueueWaitMillis", maxQueueWaitNanos.get() / 1000000 );
+    return result;
+  }
+
+  private void run( final Task task ) {
+    if ( task.attempts == 0 ) {
+      final long wait = System.nanoTime() - task.queued;
+      queueWaitNanos.addAndGet( wait );
+      maxQueueWaitNanos.accumulateAndGet( wait, Math::max );
+    }
+    task.attempts++;
+    try {
+      attempt( task.delivery );
+      if ( inFlight.remove( task ) ) {
+        delivered.incrementAndGet();
+        pending.decrementAndGet();
+        task.future.complete( null );
+      }
+    } catch ( Exception e ) {
+      if ( task.attempts < maxAttempts && isTransient( e ) ) {
+        final long delay = getBackoffMillis( task.attempts );
+        logger.warn( "Email delivery to " + task.description + " failed, retrying in " + delay + " ms: " //$NON-NLS-1$
+          + e.getMessage() );
+        retried.incrementAndGet();
+        try {
+          executor.schedule( () -> run( task ), delay, TimeUnit.MILLISECONDS );
+        } catch ( RejectedExecutionException ree ) {
+          finish( task, e );
+        }
+      } else {
+        finish( task, e );
+      }
+    }
+  }
+
+  private void attempt( final Delivery delivery ) throws Exception {
+    final long start = System.nanoTime();
+    delivery.deliver();
+    deliveryNanos.addAndGet( System.nanoTime() - start );
+  }
+
+  private void finish( final Task task, final Exception e ) {
+    if ( !inFlight.remove( task ) ) {
+      // already completed, e.g. dropped by shutdown
+      return;
+    }
+    logger.error( "Email delivery to " + task.description + " failed after " + task.attempts //$NON-NLS-1$
+      + " attempt(s)", e ); //$NON-NLS-1$
+    failed.incrementAndGet();
+    pending.decrementAndGet();
+    task.future.completeExceptionally( e );
+  }
+
+  long getBackoffMillis( final int attempt ) {
+    final long backoff = Math.min( maxBackoffMillis, initialBackoffMillis << Math.min( attempt - 1, 30 ) );
+    // spread the retries of a burst which failed at the same time
+    return backoff + ThreadLocalRandom.current().nextLong( backoff / 10 + 1 );
+  }
+
+  /**
+   * Connection problems and 4xx SMTP replies are worth retrying, authentication failures and rejected messages or
+   * addresses are not.
+   */
+  static boolean isTransient( final Throwable e ) {
+    for ( Throwable cause = e; cause != null; cause = cause.getCause() ) {
+      if ( cause instanceof AuthenticationFailedException ) {
+        return false;
+      }
+      if ( cause instanceof SendFailedException ) {
+        // retrying would send the message twice to the recipients which already got it
+        final Address[] sent = ( (SendFailedException) cause ).getValidSentAddresses();
+        if ( sent != null && sent.length > 0 ) {
+          return false;
+        }
+      }
+      if ( cause instanceof SMTPSendFailedException ) {
+        return isTransientReply( ( (SMTPSendFailedException) cause ).getReturnCode() );
+      }
+      if ( cause instanceof SMTPAddressFailedException ) {
+        return isTransientReply( ( (SMTPAddressFailedException) cause ).getReturnCode() );
+      }
+      if ( cause instanceof IOException ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isTransientReply( final int code ) {
+    // a negative code means the connection was closed before the server replied
+    return code < 0 || code >= 400 && code < 500;
+  }
+
+  private static class Task {
+    private final String description;
+    private final Delivery delivery;
+    private final long queued = System.nanoTime();
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+    private volatile int attempts;
+
+    private Task( final String description, final Delivery delivery ) {
+      this.description = description;
+      this.delivery = delivery;
+    }
+  }
+}
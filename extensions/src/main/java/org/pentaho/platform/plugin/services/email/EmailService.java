@@ -52,8 +52,8 @@ import org.pentaho.platform.util.EncryptedPasswordAuthenticator;
 import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
 
 import javax.mail.Message;
+import javax.mail.MessagingException;
 import javax.mail.Session;
-import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
 import java.io.ByteArrayOutputStream;
@@ -63,10 +63,12 @@ import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Date;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Manages the email connection information
@@ -96,6 +98,16 @@ public class EmailService implements IEmailService {
    */
   private File emailConfigFile;
 
+  /**
+   * Delivers the messages of {@link #sendEmailAsync(Session, MimeMessage)}; synchronous unless a queue is injected
+   */
+  private EmailDeliveryQueue deliveryQueue = new EmailDeliveryQueue( 0, 0, 1, 0, 0 );
+
+  /**
+   * Connections to the mail servers; one per message unless a pool is injected
+   */
+  private SmtpTransportPool transportPool = new SmtpTransportPool( 0, 0, 1 );
+
   public static final String GRANT_TYPE = "grant_type";
   public static final String SCOPE = "scope";
   public static final String CLIENT_ID = "client_id";
@@ -152,6 +164,8 @@ public class EmailService implements IEmailService {
       final FileOutputStream fileOutputStream = new FileOutputStream( emailConfigFile );
       XmlDom4JHelper.saveDom( document, fileOutputStream, "UTF-8" );
       fileOutputStream.close();
+      // connections opened with the previous server or credentials must not be reused
+      getTransportPool().clear();
     } catch ( IOException e ) {
       logger.error( messages.getErrorString( "EmailService.ERROR_0003_ERROR_CREATING_EMAIL_CONFIG_FILE", e
               .getLocalizedMessage() ) );
@@ -243,11 +257,48 @@ public class EmailService implements IEmailService {
           transport.sendMessage( msg, msg.getAllRecipients() );
         }
       } else {
-        Transport.send( msg ); //sends message to all recipients set in the msg object.
+        // sends message to all recipients set in the msg object, reusing an open connection to the server if any
+        getTransportPool().send( msg.getSession() != null ? msg.getSession() : session, msg );
       }
     } catch ( Exception he ) {
-      throw new EmailServiceException( he.getMessage() );
+      throw new EmailServiceException( he.getMessage(), he );
+    }
+  }
+
+  /**
+   * Queues the message on the {@link EmailDeliveryQueue}. The message is copied first, so that content read lazily
+   * (e.g. attachments backed by temporary files) is captured before the caller moves on. The returned future is the
+   * only place a delivery failure is reported to the caller; the queue also logs it.
+   */
+  @Override
+  public CompletableFuture<Void> sendEmailAsync( final Session session, final MimeMessage msg ) {
+    final MimeMessage copy;
+    final String recipients;
+    try {
+      copy = new MimeMessage( msg );
+      recipients = Arrays.toString( copy.getAllRecipients() );
+    } catch ( MessagingException e ) {
+      final CompletableFuture<Void> result = new CompletableFuture<>();
+      result.completeExceptionally( new EmailServiceException( e.getMessage(), e ) );
+      return result;
     }
+    return getDeliveryQueue().submit( recipients, () -> sendEmail( session, copy ) );
+  }
+
+  protected SmtpTransportPool getTransportPool() {
+    return transportPool;
+  }
+
+  public void setTransportPool( final SmtpTransportPool transportPool ) {
+    this.transportPool = transportPool;
+  }
+
+  protected EmailDeliveryQueue getDeliveryQueue() {
+    return deliveryQueue;
+  }
+
+  public void setDeliveryQueue( final EmailDeliveryQueue deliveryQueue ) {
+    this.deliveryQueue = deliveryQueue;
   }
 
   /**
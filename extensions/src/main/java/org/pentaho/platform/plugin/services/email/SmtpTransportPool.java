@@ -0,0 +1,264 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.email;
+
+import com.sun.mail.util.MailConnectException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.engine.core.metrics.IStatisticsProvider;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps SMTP connections open between messages so that a burst of emails pays the TCP, TLS and authentication
+ * handshakes once per connection instead of once per message.
+ * <p>
+ * Connections are keyed by the server and credential properties of the mail session. A connection is used by one
+ * message at a time; it is closed after being idle for too long or after a number of messages. An idle connection is
+ * checked with <code>Transport.isConnected</code> before reuse. A message which fails on a reused connection because
+ * the connection was lost meanwhile is retried once on a new connection; a message refused by the server is not.
+ * <p>
+ * The pool is the <code>smtpTransportPool</code> bean of pentahoObjects.spring.xml, whose idle connections are closed
+ * on shutdown. Keeping 0 idle connections per server opens a connection per message, as <code>Transport.send</code>
+ * does.
+ */
+public class SmtpTransportPool implements IStatisticsProvider {
+
+  /**
+   * Session properties which select the server and the credentials of a connection.
+   */
+  private static final String[] KEY_PROPERTIES = { "mail.transport.protocol", "mail.smtp.host", "mail.smtp.port",
+    "mail.smtp.ssl", "mail.smtp.ssl.enable", "mail.smtp.starttls.enable", "mail.smtp.auth", "mail.smtp.user",
+    "mail.userid", "mail.password" };
+
+  private static final Log logger = LogFactory.getLog( SmtpTransportPool.class );
+
+  private final int maxIdlePerServer;
+  private final long idleMillis;
+  private final int maxMessagesPerConnection;
+
+  private final Map<List<String>, Deque<PooledTransport>> idle = new ConcurrentHashMap<>();
+
+  private final AtomicLong sent = new AtomicLong();
+  private final AtomicLong created = new AtomicLong();
+  private final AtomicLong reused = new AtomicLong();
+  private final AtomicLong reconnected = new AtomicLong();
+  private final AtomicLong closed = new AtomicLong();
+
+  public SmtpTransportPool( int maxIdlePerServer, long idleMillis, int maxMessagesPerConnection ) {
+    this.maxIdlePerServer = maxIdlePerServer;
+    this.idleMillis = idleMillis;
+    this.maxMessagesPerConnection = maxMessagesPerConnection;
+  }
+
+  /**
+   * Sends a message to all its recipients, like <code>Transport.send</code>, over a pooled connection.
+   */
+  public void send( final Session session, final MimeMessage msg ) throws MessagingException {
+    msg.saveChanges();
+    final Address[] addresses = msg.getAllRecipients();
+    if ( addresses == null || addresses.length == 0 ) {
+      throw new SendFailedException( "No recipient addresses" ); //$NON-NLS-1$
+    }
+    final List<String> key = getKey( session, addresses[0] );
+
+    PooledTransport transport = borrow( key );
+    if ( transport != null ) {
+      try {
+        transport.send( msg, addresses );
+        release( key, transport );
+        return;
+      } catch ( MessagingException e ) {
+        final boolean lost = isConnectionLost( transport.transport, e );
+        discard( transport );
+        if ( !lost ) {
+          // the server answered, the message itself was refused
+          throw e;
+        }
+        logger.debug( "Pooled SMTP connection lost, sending over a new one", e ); //$NON-NLS-1$
+        reconnected.incrementAndGet();
+      } catch ( IllegalStateException e ) {
+        // closed between the check on borrow and the send
+        discard( transport );
+        logger.debug( "Pooled SMTP connection closed, sending over a new one", e ); //$NON-NLS-1$
+        reconnected.incrementAndGet();
+      }
+    }
+
+    transport = open( session, addresses[0] );
+    try {
+      transport.send( msg, addresses );
+    } catch ( MessagingException e ) {
+      discard( transport );
+      throw e;
+    }
+    release( key, transport );
+  }
+
+  /**
+   * Closes every idle connection, e.g. after the email configuration changed.
+   */
+  public void clear() {
+    for ( Deque<PooledTransport> transports : idle.values() ) {
+      PooledTransport transport;
+      while ( ( transport = transports.pollFirst() ) != null ) {
+        discard( transport );
+      }
+    }
+  }
+
+  /**
+   * Returns the connection counters.
+   */
+  @Override
+  public Map<String, Number> getStatistics() {
+    int idleCount = 0;
+    for ( Deque<PooledTransport> transports : idle.values() ) {
+      idleCount += transports.size();
+    }
+    final Map<String, Number> result = new LinkedHashMap<>();
+    result.put( "idleConnections", idleCount );
+    result.put( "sent", sent.get() );
+    result.put( "connectionsCreated", created.get() );
+    result.put( "connectionsReused", reused.get() );
+    result.put( "reconnects", reconnected.get() );
+    result.put( "connectionsClosed", closed.get() );
+    return result;
+  }
+
+  /**
+   * @return true if the error comes from the connection (closed by the server while idle) rather than from the
+   * message: the connection could not be established, a socket error caused it or the transport is closed
+   */
+  static boolean isConnectionLost( final Transport transport, final MessagingException e ) {
+    if ( e instanceof MailConnectException ) {
+      return true;
+    }
+    for ( Throwable cause = e.getCause(); cause != null; cause = cause.getCause() ) {
+      if ( cause instanceof SocketException ) {
+        return true;
+      }
+    }
+    return !transport.isConnected();
+  }
+
+  private List<String> getKey( final Session session, final Address address ) {
+    final List<String> key = new ArrayList<>( KEY_PROPERTIES.length + 1 );
+    key.add( address.getType() );
+    for ( String property : KEY_PROPERTIES ) {
+      key.add( session.getProperty( property ) );
+    }
+    return key;
+  }
+
+  private PooledTransport borrow( final List<String> key ) {
+    final Deque<PooledTransport> transports = idle.get( key );
+    if ( transports == null ) {
+      return null;
+    }
+    PooledTransport transport;
+    while ( ( transport = transports.pollFirst() ) != null ) {
+      if ( transport.isExpired() ) {
+        discard( transport );
+      } else if ( !transport.transport.isConnected() ) {
+        // dropped by the server while idle
+        discard( transport );
+        reconnected.incrementAndGet();
+      } else {
+        reused.incrementAndGet();
+        return transport;
+      }
+    }
+    return null;
+  }
+
+  private PooledTransport open( final Session session, final Address address ) throws MessagingException {
+    final Transport transport = session.getTransport( address );
+    transport.connect();
+    created.incrementAndGet();
+    return new PooledTransport( transport );
+  }
+
+  private void release( final List<String> key, final PooledTransport transport ) {
+    sent.incrementAndGet();
+    if ( maxIdlePerServer <= 0 || transport.messages >= maxMessagesPerConnection ) {
+      discard( transport );
+      return;
+    }
+    final Deque<PooledTransport> transports = idle.computeIfAbsent( key, k -> new ConcurrentLinkedDeque<>() );
+    // the least recently used connections are at the tail
+    PooledTransport oldest;
+    while ( ( oldest = transports.peekLast() ) != null && oldest.isExpired() ) {
+      if ( transports.removeLastOccurrence( oldest ) ) {
+        discard( oldest );
+      }
+    }
+    if ( transports.size() < maxIdlePerServer ) {
+      transports.offerFirst( transport );
+    } else {
+      discard( transport );
+    }
+  }
+
+  private void discard( final PooledTransport transport ) {
+    closed.incrementAndGet();
+    try {
+      transport.transport.close();
+    } catch ( MessagingException e ) {
+      logger.debug( "Error closing SMTP connection", e ); //$NON-NLS-1$
+    }
+  }
+
+  private class PooledTransport {
+    private final Transport transport;
+    // only touched by the thread currently holding the connection, published through the idle deque
+    private long lastUsed = System.currentTimeMillis();
+    private int messages;
+
+    private PooledTransport( final Transport transport ) {
+      this.transport = transport;
+    }
+
+    private void send( final MimeMessage msg, final Address[] addresses ) throws MessagingException {
+      messages++;
+      transport.sendMessage( msg, addresses );
+      lastUsed = System.currentTimeMillis();
+    }
+
+    private boolean isExpired() {
+      return System.currentTimeMillis() - lastUsed >= idleMillis;
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.importer;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Journal of the progress of a solution import, used to resume an import which did not complete.
+ *
+ * <p>The journal is an append-only text file named after a key identifying the archive and the import options. It
+ * holds one line per completed {@link ImportPhase} and one line per imported file. A line is only taken into account
+ * once it is terminated, so a journal cut short by a crash never marks a file as imported by mistake. The journal is
+ * deleted once the import completes, and ignored once it is older than the configured maximum age.
+ *
+ * <p>Files whose import failed but was only logged by the {@link PentahoPlatformImporter} count as imported.
+ */
+public class ImportCheckpoint implements Closeable {
+
+  private static final Log log = LogFactory.getLog( ImportCheckpoint.class );
+
+  private static final String SUFFIX = ".checkpoint"; //$NON-NLS-1$
+  private static final String PHASE_PREFIX = "phase:"; //$NON-NLS-1$
+  private static final String ENTRY_PREFIX = "file:"; //$NON-NLS-1$
+
+  private final File file;
+  private final Set<ImportPhase> phases = EnumSet.noneOf( ImportPhase.class );
+  private final Set<String> entries = new HashSet<>();
+  private final boolean resumed;
+  private Writer writer;
+
+  ImportCheckpoint( File file ) throws IOException {
+    this.file = file;
+    if ( file != null && file.isFile() ) {
+      load( FileUtils.readFileToString( file, StandardCharsets.UTF_8 ) );
+    }
+    this.resumed = !phases.isEmpty() || !entries.isEmpty();
+  }
+
+  /**
+   * Opens the journal of the given key in a directory, creating the directory if needed.
+   *
+   * @param directory    The directory holding the journals.
+   * @param key          Identifies the archive and the import options.
+   * @param maxAgeMillis A journal last written to before that is discarded.
+   */
+  public static ImportCheckpoint open( File directory, String key, long maxAgeMillis ) throws IOException {
+    FileUtils.forceMkdir( directory );
+    final File file = new File( directory, key + SUFFIX );
+    if ( file.isFile() && System.currentTimeMillis() - file.lastModified() > maxAgeMillis ) {
+      log.debug( "Discarding expired import checkpoint " + file );
+      FileUtils.deleteQuietly( file );
+    }
+    return new ImportCheckpoint( file );
+  }
+
+  /**
+   * Returns a checkpoint which is kept in memory only.
+   */
+  public static ImportCheckpoint none() {
+    try {
+      return new ImportCheckpoint( null );
+    } catch ( IOException e ) {
+      // nothing is read without a file
+      throw new IllegalStateException( e );
+    }
+  }
+
+  /**
+   * @return whether a previous attempt of the same import left a journal behind.
+   */
+  public boolean isResumed() {
+    return resumed;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public synchronized boolean isPhaseDone( ImportPhase phase ) {
+    return phases.contains( phase );
+  }
+
+  public synchronized void markPhaseDone( ImportPhase phase ) throws IOException {
+    if ( phases.add( phase ) ) {
+      append( PHASE_PREFIX + phase.name() );
+    }
+  }
+
+  public synchronized boolean isDone( String path ) {
+    return entries.contains( path );
+  }
+
+  public synchronized void markDone( String path ) throws IOException {
+    if ( entries.add( path ) ) {
+      append( ENTRY_PREFIX + path );
+    }
+  }
+
+  /**
+   * Deletes the journal, the import completed.
+   */
+  public synchronized void complete() {
+    close();
+    if ( file != null ) {
+      FileUtils.deleteQuietly( file );
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if ( writer != null ) {
+      try {
+        writer.close();
+      } catch ( IOException e ) {
+        log.debug( "Failed to close the import checkpoint " + file, e );
+      }
+      writer = null;
+    }
+  }
+
+  private void load( String content ) {
+    // an unterminated last line was cut short while being written
+    final int end = content.lastIndexOf( '\n' );
+    if ( end < 0 ) {
+      return;
+    }
+    for ( String line : content.substring( 0, end ).split( "\n" ) ) {
+      if ( line.startsWith( ENTRY_PREFIX ) ) {
+        entries.add( line.substring( ENTRY_PREFIX.length() ) );
+      } else if ( line.startsWith( PHASE_PREFIX ) ) {
+        try {
+          phases.add( ImportPhase.valueOf( line.substring( PHASE_PREFIX.length() ) ) );
+        } catch ( IllegalArgumentException e ) {
+          log.debug( "Ignoring unknown import phase in " + file + ": " + line );
+        }
+      }
+    }
+  }
+
+  private void append( String line ) throws IOException {
+    if ( file == null ) {
+      return;
+    }
+    if ( writer == null ) {
+      writer = new OutputStreamWriter( new FileOutputStream( file, true ), StandardCharsets.UTF_8 );
+    }
+    writer.write( line );
+    writer.write( '\n' );
+    writer.flush();
+  }
+}
@@ -0,0 +1,54 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.importer;
+
+/**
+ * The phases of a solution import, in the order they are run by the {@link SolutionImportHandler}. Each phase only
+ * depends on the ones before it: datasources are available when the metadata models and Mondrian schemas get
+ * imported, those are available when the content referencing them is imported, and the content exists when the
+ * schedules pointing at it are created.
+ */
+public enum ImportPhase {
+
+  /** Users, roles and user settings from the manifest. */
+  SECURITY,
+
+  /** JDBC connections from the manifest. */
+  DATASOURCES,
+
+  /** Metadata models, Mondrian schemas and their annotations. */
+  METADATA,
+
+  /** The metastore elements from the manifest. */
+  METASTORE,
+
+  /** Folders, parents first. */
+  FOLDERS,
+
+  /** Every other file of the archive. Independent files may be imported concurrently. */
+  CONTENT,
+
+  /** Schedules from the manifest. */
+  SCHEDULES,
+
+  /** Localized names and descriptions of the imported files. */
+  LOCALES
+}
@@ -0,0 +1,380 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.importer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.plugin.services.importexport.IRepositoryImportLogger;
+import org.pentaho.platform.plugin.services.importexport.ImportSession;
+import org.pentaho.platform.plugin.services.messages.Messages;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the phases of a solution import in order, recording their progress in an {@link ImportCheckpoint}.
+ *
+ * <p>A phase is either a single action, or a list of tasks importing one file each. Phases and tasks recorded as done
+ * by the checkpoint are skipped, so an import which stopped half way resumes where it stopped. Tasks of a concurrent
+ * phase are grouped by folder in batches of at most <code>batchSize</code> files; the batches are imported by a
+ * bounded pool of workers, each batch by one worker in the archive order. A worker runs with the session, the
+ * security context and a fork of the {@link ImportSession} of the thread which started the import, and joins its
+ * import log job so that the entries of the files it imports end up in the import log. Tasks which fail in a worker
+ * are retried one by one in the calling thread once the other batches are done, with their retry action since the
+ * failed attempt may have been partly applied, so that a failure is handled exactly as in a sequential import.
+ *
+ * <p>Progress is logged to the import log, every ten seconds and at the end of every phase.
+ */
+public class ImportPipeline implements Closeable {
+
+  private static final Log workerLog = LogFactory.getLog( ImportPipeline.class );
+  private static final Messages messages = Messages.getInstance();
+  private static final long PROGRESS_INTERVAL_MILLIS = 10000;
+  private static final AtomicInteger poolCount = new AtomicInteger();
+
+  private final Log log;
+  private final ImportCheckpoint checkpoint;
+  private final int workers;
+  private final int batchSize;
+  private final Map<ImportPhase, Progress> progress = new EnumMap<>( ImportPhase.class );
+  private ExecutorService executor;
+
+  /**
+   * @param log        The log of the import. Workers write to it only if it is an {@link IRepositoryImportLogger}.
+   * @param checkpoint Records the completed phases and files.
+   * @param workers    The number of threads importing the files of a concurrent phase. 1 imports every file in
+   *                   the calling thread.
+   * @param batchSize  The maximum number of files of one folder imported by a worker in a row.
+   */
+  public ImportPipeline( Log log, ImportCheckpoint checkpoint, int workers, int batchSize ) {
+    this.log = log;
+    this.checkpoint = checkpoint;
+    this.workers = Math.max( 1, workers );
+    this.batchSize = Math.max( 1, batchSize );
+  }
+
+  /**
+   * Imports one file, or one element of a phase.
+   */
+  public interface ImportAction {
+    void run() throws Exception;
+  }
+
+  /**
+   * A file to import.
+   */
+  public static class Task {
+    private final String key;
+    private final String group;
+    private final ImportAction action;
+    private final ImportAction retryAction;
+
+    /**
+     * @param key    Identifies the file in the checkpoint, typically its path in the archive.
+     * @param group  The folder of the file. A group is split in batches of at most <code>batchSize</code> files,
+     *               which may be imported by different workers at the same time; only the files of a batch are
+     *               imported in order by the same worker.
+     * @param action Imports the file.
+     */
+    public Task( String key, String group, ImportAction action ) {
+      this( key, group, action, action );
+    }
+
+    /**
+     * @param retryAction Imports the file again after it failed in a worker, e.g. overwriting what the failed attempt
+     *                    wrote.
+     */
+    public Task( String key, String group, ImportAction action, ImportAction retryAction ) {
+      this.key = key;
+      this.group = group;
+      this.action = action;
+      this.retryAction = retryAction;
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    public String getGroup() {
+      return group;
+    }
+  }
+
+  /**
+   * Counters of one phase.
+   */
+  public static class Progress {
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger resumed = new AtomicInteger();
+    private final AtomicInteger retried = new AtomicInteger();
+    private final AtomicLong elapsedMillis = new AtomicLong();
+
+    /**
+     * @return the number of files of the phase.
+     */
+    public int getTotal() {
+      return total.get();
+    }
+
+    /**
+     * @return the number of files imported so far.
+     */
+    public int getCompleted() {
+      return completed.get();
+    }
+
+    /**
+     * @return the number of files skipped since a previous attempt imported them.
+     */
+    public int getResumed() {
+      return resumed.get();
+    }
+
+    /**
+     * @return the number of files which failed in a worker and were retried in the calling thread.
+     */
+    public int getRetried() {
+      return retried.get();
+    }
+
+    public long getElapsedMillis() {
+      return elapsedMillis.get();
+    }
+  }
+
+  public ImportCheckpoint getCheckpoint() {
+    return checkpoint;
+  }
+
+  /**
+   * @return the counters of a phase, never null.
+   */
+  public synchronized Progress getProgress( ImportPhase phase ) {
+    return progress.computeIfAbsent( phase, p -> new Progress() );
+  }
+
+  /**
+   * Runs a phase made of a single action, unless a previous attempt completed it.
+   */
+  public void runPhase( ImportPhase phase, ImportAction action ) throws Exception {
+    if ( checkpoint.isPhaseDone( phase ) ) {
+      log.info( messages.getString( "ImportPipeline.PhaseSkipped", phase ) );
+      return;
+    }
+    final Progress p = getProgress( phase );
+    final long start = System.currentTimeMillis();
+    action.run();
+    p.elapsedMillis.addAndGet( System.currentTimeMillis() - start );
+    checkpoint.markPhaseDone( phase );
+    log.info( messages.getString( "ImportPipeline.PhaseDone", phase, p.getElapsedMillis() ) );
+  }
+
+  /**
+   * Imports the files of a phase, skipping the ones a previous attempt imported.
+   *
+   * @param concurrent Whether the files of different folders are independent from each other.
+   */
+  public void runTasks( ImportPhase phase, List<Task> tasks, boolean concurrent ) throws Exception {
+    final Progress p = getProgress( phase );
+    p.total.addAndGet( tasks.size() );
+    if ( checkpoint.isPhaseDone( phase ) ) {
+      p.resumed.addAndGet( tasks.size() );
+      log.info( messages.getString( "ImportPipeline.PhaseSkipped", phase ) );
+      return;
+    }
+    List<Task> pending = new ArrayList<>( tasks.size() );
+    for ( Task task : tasks ) {
+      if ( checkpoint.isDone( task.key ) ) {
+        p.resumed.incrementAndGet();
+      } else {
+        pending.add( task );
+      }
+    }
+
+    final long start = System.currentTimeMillis();
+    if ( concurrent && workers > 1 && pending.size() > 1 ) {
+      final List<Task> failed = runConcurrently( phase, p, pending );
+      p.retried.addAndGet( failed.size() );
+      runSequentially( phase, p, failed, true );
+    } else {
+      runSequentially( phase, p, pending, false );
+    }
+    p.elapsedMillis.addAndGet( System.currentTimeMillis() - start );
+
+    checkpoint.markPhaseDone( phase );
+    log.info( messages.getString( "ImportPipeline.PhaseCompleted", phase, p.getElapsedMillis(), p.getCompleted(),
+      p.getResumed(), p.getRetried() ) );
+  }
+
+  /**
+   * Deletes the checkpoint, the import completed.
+   */
+  public void complete() {
+    checkpoint.complete();
+  }
+
+  @Override
+  public void close() {
+    if ( executor != null ) {
+      executor.shutdownNow();
+      executor = null;
+    }
+    checkpoint.close();
+  }
+
+  private void runSequentially( ImportPhase phase, Progress p, List<Task> tasks, boolean retry ) throws Exception {
+    long lastLog = System.currentTimeMillis();
+    for ( Task task : tasks ) {
+      ( retry ? task.retryAction : task.action ).run();
+      checkpoint.markDone( task.key );
+      p.completed.incrementAndGet();
+      if ( System.currentTimeMillis() - lastLog >= PROGRESS_INTERVAL_MILLIS ) {
+        logProgress( phase, p );
+        lastLog = System.currentTimeMillis();
+      }
+    }
+  }
+
+  /**
+   * @return the tasks which failed.
+   */
+  private List<Task> runConcurrently( ImportPhase phase, Progress p, List<Task> tasks ) throws InterruptedException {
+    final ImportSession importSession = ImportSession.getSession();
+    final IPentahoSession session = PentahoSessionHolder.getSession();
+    final SecurityContext securityContext = SecurityContextHolder.getContext();
+    final IRepositoryImportLogger importLogger = log instanceof IRepositoryImportLogger
+      ? (IRepositoryImportLogger) log : null;
+    final Object importJob = importLogger != null ? importLogger.getJob() : null;
+
+    final CompletionService<List<Task>> completion = new ExecutorCompletionService<>( getExecutor() );
+    int pending = 0;
+    for ( List<Task> batch : toBatches( tasks ) ) {
+      // forked here, the import session must not be initialized from a worker
+      final ImportSession fork = importSession.fork();
+      completion.submit(
+        () -> runBatch( batch, p, importSession, fork, session, securityContext, importLogger, importJob ) );
+      pending++;
+    }
+
+    final List<Task> failed = new ArrayList<>();
+    long lastLog = System.currentTimeMillis();
+    while ( pending > 0 ) {
+      final Future<List<Task>> done = completion.poll( PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS );
+      if ( done != null ) {
+        pending--;
+        try {
+          failed.addAll( done.get() );
+        } catch ( ExecutionException e ) {
+          // runBatch reports the failed tasks, only an error may end up here
+          throw new IllegalStateException( e.getCause() );
+        }
+      }
+      if ( System.currentTimeMillis() - lastLog >= PROGRESS_INTERVAL_MILLIS ) {
+        logProgress( phase, p );
+        lastLog = System.currentTimeMillis();
+      }
+    }
+    return failed;
+  }
+
+  private List<Task> runBatch( List<Task> batch, Progress p, ImportSession importSession, ImportSession fork,
+                               IPentahoSession session, SecurityContext securityContext,
+                               IRepositoryImportLogger importLogger, Object importJob ) {
+    ImportSession.setSession( fork );
+    PentahoSessionHolder.setSession( session );
+    SecurityContextHolder.setContext( securityContext );
+    if ( importJob != null ) {
+      importLogger.joinJob( importJob );
+    }
+    final List<Task> failed = new ArrayList<>();
+    try {
+      for ( Task task : batch ) {
+        try {
+          task.action.run();
+          checkpoint.markDone( task.key );
+          p.completed.incrementAndGet();
+        } catch ( Exception e ) {
+          workerLog.debug( "Import of " + task.key + " failed in a worker, it will be retried", e );
+          failed.add( task );
+        }
+      }
+    } finally {
+      if ( importJob != null ) {
+        importLogger.leaveJob();
+      }
+      importSession.merge( fork );
+      SecurityContextHolder.clearContext();
+      PentahoSessionHolder.removeSession();
+      ImportSession.clearSession();
+    }
+    return failed;
+  }
+
+  private List<List<Task>> toBatches( List<Task> tasks ) {
+    final Map<String, List<Task>> groups = new LinkedHashMap<>();
+    for ( Task task : tasks ) {
+      groups.computeIfAbsent( task.group, g -> new ArrayList<>() ).add( task );
+    }
+    final List<List<Task>> batches = new ArrayList<>();
+    for ( List<Task> group : groups.values() ) {
+      for ( int i = 0; i < group.size(); i += batchSize ) {
+        batches.add( group.subList( i, Math.min( i + batchSize, group.size() ) ) );
+      }
+    }
+    return batches;
+  }
+
+  private void logProgress( ImportPhase phase, Progress p ) {
+    log.info( messages.getString( "ImportPipeline.PhaseProgress", phase, p.getCompleted() + p.getResumed(),
+      p.getTotal() ) );
+  }
+
+  private synchronized ExecutorService getExecutor() {
+    if ( executor == null ) {
+      final int id = poolCount.incrementAndGet();
+      final AtomicInteger threadCount = new AtomicInteger();
+      executor = Executors.newFixedThreadPool( workers, r -> {
+        final Thread thread = new Thread( r, "import-" + id + "-worker-" + threadCount.incrementAndGet() );
+        thread.setDaemon( true );
+        return thread;
+      } );
+    }
+    return executor;
+  }
+}
@@ -30,22 +30,16 @@ import org.pentaho.platform.plugin.services.importexport.ExportFileNameEncoder;
 import org.pentaho.platform.plugin.services.importexport.ImportSession;
 import org.pentaho.platform.plugin.services.importexport.ImportSource.IRepositoryFileBundle;
 import org.pentaho.platform.repository.RepositoryFilenameUtils;
-import org.pentaho.platform.util.xml.XMLParserFactoryProducer;
-import org.w3c.dom.Document;
-import org.xml.sax.SAXException;
+import org.pentaho.platform.util.xml.XmlStreamHelper;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import javax.xml.stream.XMLStreamException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.PropertyResourceBundle;
 
@@ -68,12 +62,23 @@ public class LocaleFilesProcessor {
   private static final String PROPERTIES_EXT = ".properties";
   private static final String LOCALE_EXT = ".locale";
   private static final String XML_LOCALE = "index.xml";
+  private static final String INDEX_NAME_PATH = "/index/name";
+  private static final String INDEX_DESC_PATH = "/index/description";
   private List<LocaleFileDescriptor> localeFiles;
 
   public LocaleFilesProcessor() {
     localeFiles = new ArrayList<LocaleFileDescriptor>();
   }
 
+  /**
+   * Tells from its name if a file may hold localized names, i.e. if {@link #isLocaleFile} needs its content.
+   *
+   * @param fileName The decoded name of the file.
+   */
+  public boolean isLocaleFileCandidate( String fileName ) {
+    return fileName.endsWith( PROPERTIES_EXT ) || fileName.endsWith( LOCALE_EXT ) || fileName.equals( XML_LOCALE );
+  }
+
   /**
    * 
    * @param file
@@ -266,18 +271,15 @@ public class LocaleFilesProcessor {
   @VisibleForTesting
   boolean isXMLlocale( InputStream localeBundle ) {
     try {
-      DocumentBuilderFactory builderFactory = XMLParserFactoryProducer.createSecureDocBuilderFactory();
-      DocumentBuilder builder = builderFactory.newDocumentBuilder();
-      XPath xPath = XPathFactory.newInstance().newXPath();
-      Document document = builder.parse( localeBundle );
-      String name = xPath.compile( "/index/name" ).evaluate( document );
-      String desc = xPath.compile( "/index/description" ).evaluate( document );
-      if ( !name.isEmpty() && !desc.isEmpty() ) {
+      // read once, so stream it rather than building a DOM for the xpath lookups
+      Map<String, String> texts = XmlStreamHelper.getElementTexts( localeBundle, INDEX_NAME_PATH, INDEX_DESC_PATH );
+      if ( !texts.get( INDEX_NAME_PATH ).isEmpty() && !texts.get( INDEX_DESC_PATH ).isEmpty() ) {
         return true;
       }
-    } catch ( XPathExpressionException | ParserConfigurationException | SAXException | IOException e ) {
+    } catch ( XMLStreamException e ) {
       return false;
     }
     return false;
   }
+
 }
@@ -27,20 +27,29 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 import javax.ws.rs.core.Response;
 
 import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.apache.commons.logging.Log;
 import org.pentaho.database.model.IDatabaseConnection;
 import org.pentaho.metadata.repository.DomainAlreadyExistsException;
@@ -97,8 +106,15 @@ public class SolutionImportHandler implements IPlatformImportHandler {
   private static final String DOMAIN_ID = "domain-id";
   private static final String UTF_8 = StandardCharsets.UTF_8.name();
 
+  private static final String PIPELINE_SETTINGS = "solution-import/";
+  private static final int DEFAULT_BATCH_SIZE = 100;
+  private static final long DEFAULT_CHECKPOINT_MAX_AGE_HOURS = 24;
+  private static final String DEFAULT_CHECKPOINT_DIR = "pentaho-import-checkpoints";
+
   private IUnifiedRepository repository; // TODO inject via Spring
   protected Map<String, RepositoryFileImportBundle.Builder> cachedImports;
+  // cached imports to run once the others are done
+  private final Set<String> dependentImports = new HashSet<>();
   private SolutionFileImportHelper solutionHelper;
   private List<IMimeType> mimeTypes;
   private boolean overwriteFile;
@@ -123,71 +139,63 @@ public class SolutionImportHandler implements IPlatformImportHandler {
     DomainAlreadyExistsException, DomainStorageException, IOException {
 
     RepositoryFileImportBundle importBundle = (RepositoryFileImportBundle) bundle;
-    if ( !processZip( bundle.getInputStream() ) ) {
+    MessageDigest digest = DigestUtils.getSha256Digest();
+    if ( !processZip( new DigestInputStream( bundle.getInputStream(), digest ) ) ) {
       // Something went wrong, do not proceed!
       return;
     }
+    digest.update( String.valueOf( importBundle.getPath() ).getBytes( StandardCharsets.UTF_8 ) );
+    digest.update( (byte) ( bundle.overwriteInRepository() ? 1 : 0 ) );
 
-    LocaleFilesProcessor localeFilesProcessor = new LocaleFilesProcessor();
     setOverwriteFile( bundle.overwriteInRepository() );
 
+    try ( ImportPipeline pipeline = createPipeline( Hex.encodeHexString( digest.digest() ) ) ) {
+      importFiles( importBundle, pipeline );
+      pipeline.complete();
+    } catch ( PlatformImportException | DomainIdNullException | DomainAlreadyExistsException
+      | DomainStorageException | IOException | RuntimeException e ) {
+      throw e;
+    } catch ( Exception e ) {
+      throw new PlatformImportException( e.getLocalizedMessage(), e );
+    }
+  }
+
+  /**
+   * Imports the content of the archive, phase after phase. See {@link ImportPhase} for the order.
+   */
+  protected void importFiles( RepositoryFileImportBundle importBundle, ImportPipeline pipeline ) throws Exception {
+    LocaleFilesProcessor localeFilesProcessor = new LocaleFilesProcessor();
     IPlatformImporter importer = PentahoSystem.get( IPlatformImporter.class );
 
     cachedImports = new HashMap<>();
+    dependentImports.clear();
 
     //Process Manifest Settings
     ExportManifest manifest = getImportSession().getManifest();
     String manifestVersion = null;
-    // Process Metadata
     if ( manifest != null ) {
       manifestVersion = manifest.getManifestInformation().getManifestVersion();
 
-      // import the users
-      Map<String, List<String>> roleToUserMap = importUsers( manifest.getUserExports() );
+      pipeline.runPhase( ImportPhase.SECURITY, () -> {
+        // import the users
+        Map<String, List<String>> roleToUserMap = importUsers( manifest.getUserExports() );
 
-      // import the roles
-      importRoles( manifest.getRoleExports(), roleToUserMap );
+        // import the roles
+        importRoles( manifest.getRoleExports(), roleToUserMap );
+      } );
 
-      // import the metadata
-      importMetadata( manifest.getMetadataList(), bundle.isPreserveDsw() );
+      // Add DB Connections, the metadata models and schemas may use them
+      pipeline.runPhase( ImportPhase.DATASOURCES, () -> importDatasources( manifest.getDatasourceList() ) );
 
-      // Process Mondrian
+      // register the metadata and mondrian files, imported with the METADATA phase
+      importMetadata( manifest.getMetadataList(), importBundle.isPreserveDsw() );
       importMondrian( manifest.getMondrianList() );
-
-      // import the metastore
-      importMetaStore( manifest.getMetaStore(), bundle.overwriteInRepository() );
-
-      // Add DB Connections
-      List<org.pentaho.platform.plugin.services.importexport.exportManifest.bindings.DatabaseConnection> datasourceList = manifest.getDatasourceList();
-      if ( datasourceList != null ) {
-        IDatasourceMgmtService datasourceMgmtSvc = PentahoSystem.get( IDatasourceMgmtService.class );
-        for ( org.pentaho.platform.plugin.services.importexport.exportManifest.bindings.DatabaseConnection databaseConnection : datasourceList ) {
-          if ( databaseConnection.getDatabaseType() == null ) {
-            // don't try to import the connection if there is no type it will cause an error
-            // However, if this is the DI Server, and the connection is defined in a ktr, it will import automatically
-            getLogger().warn( Messages.getInstance()
-              .getString( "SolutionImportHandler.ConnectionWithoutDatabaseType", databaseConnection.getName() ) );
-            continue;
-          }
-          try {
-            IDatabaseConnection existingDBConnection =
-              datasourceMgmtSvc.getDatasourceByName( databaseConnection.getName() );
-            if ( existingDBConnection != null && existingDBConnection.getName() != null ) {
-              if ( isOverwriteFile() ) {
-                databaseConnection.setId( existingDBConnection.getId() );
-                datasourceMgmtSvc.updateDatasourceByName( databaseConnection.getName(),
-                  DatabaseConnectionConverter.export2model( databaseConnection ) );
-              }
-            } else {
-              datasourceMgmtSvc.createDatasource( DatabaseConnectionConverter.export2model( databaseConnection ) );
-            }
-          } catch ( Exception e ) {
-            e.printStackTrace();
-          }
-        }
-      }
     }
 
+    List<ImportPipeline.Task> metadataTasks = new ArrayList<>();
+    List<ImportPipeline.Task> dependentTasks = new ArrayList<>();
+    List<ImportPipeline.Task> folderTasks = new ArrayList<>();
+    List<ImportPipeline.Task> contentTasks = new ArrayList<>();
     for ( IRepositoryFileBundle fileBundle : files ) {
       String fileName = fileBundle.getFile().getName();
       String actualFilePath = fileBundle.getPath();
@@ -199,101 +207,214 @@ public class SolutionImportHandler implements IPlatformImportHandler {
         RepositoryFilenameUtils.concat( PentahoPlatformImporter.computeBundlePath( actualFilePath ), fileName );
 
       if ( cachedImports.containsKey( repositoryFilePath ) ) {
-        byte[] bytes = IOUtils.toByteArray( fileBundle.getInputStream() );
-        RepositoryFileImportBundle.Builder builder = cachedImports.get( repositoryFilePath );
-        builder.input( new ByteArrayInputStream( bytes ) );
-
-        importer.importFile( build( builder ) );
+        ImportPipeline.Task task = new ImportPipeline.Task( repositoryFilePath, actualFilePath, () -> {
+          RepositoryFileImportBundle.Builder builder = cachedImports.get( repositoryFilePath );
+          builder.input( new ByteArrayInputStream( IOUtils.toByteArray( fileBundle.getInputStream() ) ) );
+          importer.importFile( build( builder ) );
+        } );
+        ( dependentImports.contains( repositoryFilePath ) ? dependentTasks : metadataTasks ).add( task );
         continue;
       }
 
-      RepositoryFileImportBundle.Builder bundleBuilder = new RepositoryFileImportBundle.Builder();
-      InputStream bundleInputStream = null;
-
-      String decodedFilePath = fileBundle.getPath();
-      RepositoryFile decodedFile = fileBundle.getFile();
-      if ( manifestVersion != null ) {
-        decodedFile = new RepositoryFile.Builder( decodedFile ).path( decodedFilePath ).name( fileName ).title( fileName ).build();
-        decodedFilePath = ExportFileNameEncoder.decodeZipFileName( fileBundle.getPath() );
+      final String name = fileName;
+      if ( fileBundle.getFile().isFolder() ) {
+        folderTasks.add( new ImportPipeline.Task( repositoryFilePath, actualFilePath,
+          () -> importFileBundle( importBundle, fileBundle, manifest, name, repositoryFilePath, null, importer,
+            importBundle.overwriteInRepository() ) ) );
+        continue;
       }
 
-      if ( fileBundle.getFile().isFolder() ) {
-        bundleBuilder.mime( "text/directory" );
-        bundleBuilder.file( decodedFile );
-        fileName = repositoryFilePath;
-        repositoryFilePath = importBundle.getPath();
-      } else {
-        byte[] bytes = IOUtils.toByteArray( fileBundle.getInputStream() );
-        bundleInputStream = new ByteArrayInputStream( bytes );
+      byte[] bytes = null;
+      if ( localeFilesProcessor.isLocaleFileCandidate( fileName ) ) {
+        bytes = IOUtils.toByteArray( fileBundle.getInputStream() );
         // If is locale file store it for later processing.
         if ( localeFilesProcessor.isLocaleFile( fileBundle, importBundle.getPath(), bytes ) ) {
           getLogger().trace( Messages.getInstance()
-            .getString( "SolutionImportHandler.SkipLocaleFile",  repositoryFilePath ) );
+            .getString( "SolutionImportHandler.SkipLocaleFile", repositoryFilePath ) );
           continue;
         }
-        bundleBuilder.input( bundleInputStream );
-        bundleBuilder.mime( solutionHelper.getMime( fileName ) );
-
-        String filePath =
-          ( decodedFilePath.equals( "/" ) || decodedFilePath.equals( "\\" ) ) ? "" : decodedFilePath;
-        repositoryFilePath = RepositoryFilenameUtils.concat( importBundle.getPath(), filePath );
       }
+      final byte[] content = bytes;
+      final AtomicBoolean existed = new AtomicBoolean();
+      contentTasks.add( new ImportPipeline.Task( repositoryFilePath, actualFilePath,
+        () -> {
+          existed.set( getFile( importBundle, fileBundle ) != null );
+          importFileBundle( importBundle, fileBundle, manifest, name, repositoryFilePath, content, importer,
+            importBundle.overwriteInRepository() );
+        },
+        // a file created by an attempt which failed in a worker may be partly written, so the retry replaces it
+        () -> importFileBundle( importBundle, fileBundle, manifest, name, repositoryFilePath, content, importer,
+          importBundle.overwriteInRepository() || !existed.get() ) ) );
+    }
+    // annotations go to the folder created with their schema
+    metadataTasks.addAll( dependentTasks );
+    // parents first
+    folderTasks.sort( Comparator.comparingInt( task -> StringUtils.countMatches( task.getKey(), "/" ) ) );
 
-      bundleBuilder.name( fileName );
-      bundleBuilder.path( repositoryFilePath );
+    pipeline.runTasks( ImportPhase.METADATA, metadataTasks, false );
+    if ( manifest != null ) {
+      // import the metastore
+      pipeline.runPhase( ImportPhase.METASTORE,
+        () -> importMetaStore( manifest.getMetaStore(), importBundle.overwriteInRepository() ) );
+    }
+    pipeline.runTasks( ImportPhase.FOLDERS, folderTasks, false );
+    pipeline.runTasks( ImportPhase.CONTENT, contentTasks, true );
 
-      String sourcePath;
-      if ( fileBundle.getFile().isFolder() ) {
-        sourcePath = fileName;
-      } else {
-        sourcePath =
-            RepositoryFilenameUtils.concat( PentahoPlatformImporter.computeBundlePath( actualFilePath ), fileName );
-      }
+    if ( manifest != null ) {
+      pipeline.runPhase( ImportPhase.SCHEDULES, () -> importSchedules( manifest.getScheduleList() ) );
+    }
 
-      //This clause was added for processing ivb files so that it would not try process acls on folders that the user
-      //may not have rights to such as /home or /public
-      if ( manifest != null && manifest.getExportManifestEntity( sourcePath ) == null && fileBundle.getFile()
-          .isFolder() ) {
-        continue;
+    // Process locale files.
+    pipeline.runPhase( ImportPhase.LOCALES, () -> localeFilesProcessor.processLocaleFiles( importer ) );
+  }
+
+  /**
+   * Creates the pipeline running the import, with its checkpoint. Configured in pentaho.xml:
+   * <pre>
+   *   &lt;solution-import&gt;
+   *     &lt;workers&gt;1&lt;/workers&gt;
+   *     &lt;batch-size&gt;100&lt;/batch-size&gt;
+   *     &lt;checkpoint-dir&gt;&lt;/checkpoint-dir&gt;
+   *     &lt;checkpoint-max-age-hours&gt;24&lt;/checkpoint-max-age-hours&gt;
+   *   &lt;/solution-import&gt;
+   * </pre>
+   *
+   * @param archiveKey Identifies the archive and the import options.
+   */
+  protected ImportPipeline createPipeline( String archiveKey ) {
+    int workers = NumberUtils.toInt( getSetting( "workers" ), 1 );
+    int batchSize = NumberUtils.toInt( getSetting( "batch-size" ), DEFAULT_BATCH_SIZE );
+    long maxAgeHours = NumberUtils.toLong( getSetting( "checkpoint-max-age-hours" ), DEFAULT_CHECKPOINT_MAX_AGE_HOURS );
+    String checkpointDir = getSetting( "checkpoint-dir" );
+
+    ImportCheckpoint checkpoint = ImportCheckpoint.none();
+    if ( maxAgeHours > 0 ) {
+      File directory = StringUtils.isBlank( checkpointDir )
+        ? new File( System.getProperty( "java.io.tmpdir" ), DEFAULT_CHECKPOINT_DIR ) : new File( checkpointDir );
+      try {
+        checkpoint = ImportCheckpoint.open( directory, archiveKey, TimeUnit.HOURS.toMillis( maxAgeHours ) );
+        if ( checkpoint.isResumed() ) {
+          getLogger().info( Messages.getInstance()
+            .getString( "SolutionImportHandler.ResumingImport", checkpoint.getFile() ) );
+        }
+      } catch ( IOException e ) {
+        getLogger().warn( Messages.getInstance()
+          .getString( "SolutionImportHandler.CheckpointError", e.getLocalizedMessage() ), e );
       }
+    }
+    return new ImportPipeline( getLogger(), checkpoint, workers, batchSize );
+  }
 
-      getImportSession().setCurrentManifestKey( sourcePath );
+  private static String getSetting( String name ) {
+    return PentahoSystem.getSystemSetting( PIPELINE_SETTINGS + name, null );
+  }
 
-      bundleBuilder.charSet( bundle.getCharSet() );
-      bundleBuilder.overwriteFile( bundle.overwriteInRepository() );
-      bundleBuilder.applyAclSettings( bundle.isApplyAclSettings() );
-      bundleBuilder.retainOwnership( bundle.isRetainOwnership() );
-      bundleBuilder.overwriteAclSettings( bundle.isOverwriteAclSettings() );
-      bundleBuilder.acl( getImportSession().processAclForFile( sourcePath ) );
-      bundleBuilder.extraMetaData( getImportSession().processExtraMetaDataForFile( sourcePath ) );
+  /**
+   * Imports a folder or a file of the archive.
+   *
+   * @param bytes     The content of the file, null to read it from the bundle.
+   * @param overwrite Whether an existing repository file is replaced.
+   */
+  private void importFileBundle( RepositoryFileImportBundle importBundle, IRepositoryFileBundle fileBundle,
+                                 ExportManifest manifest, String fileName, String repositoryFilePath, byte[] bytes,
+                                 IPlatformImporter importer, boolean overwrite ) throws Exception {
+    RepositoryFileImportBundle.Builder bundleBuilder = new RepositoryFileImportBundle.Builder();
+    InputStream bundleInputStream = null;
+
+    String decodedFilePath = fileBundle.getPath();
+    RepositoryFile decodedFile = fileBundle.getFile();
+    if ( manifest != null && manifest.getManifestInformation().getManifestVersion() != null ) {
+      decodedFile = new RepositoryFile.Builder( decodedFile ).path( decodedFilePath ).name( fileName ).title( fileName ).build();
+      decodedFilePath = ExportFileNameEncoder.decodeZipFileName( fileBundle.getPath() );
+    }
 
-      RepositoryFile file = getFile( importBundle, fileBundle );
-      ManifestFile manifestFile = getImportSession().getManifestFile( sourcePath, file != null );
+    String sourcePath;
+    if ( fileBundle.getFile().isFolder() ) {
+      bundleBuilder.mime( "text/directory" );
+      bundleBuilder.file( decodedFile );
+      sourcePath = repositoryFilePath;
+      fileName = repositoryFilePath;
+      repositoryFilePath = importBundle.getPath();
+    } else {
+      bundleInputStream = new ByteArrayInputStream( bytes != null ? bytes : IOUtils.toByteArray( fileBundle.getInputStream() ) );
+      bundleBuilder.input( bundleInputStream );
+      bundleBuilder.mime( solutionHelper.getMime( fileName ) );
+
+      sourcePath = repositoryFilePath;
+      String filePath =
+        ( decodedFilePath.equals( "/" ) || decodedFilePath.equals( "\\" ) ) ? "" : decodedFilePath;
+      repositoryFilePath = RepositoryFilenameUtils.concat( importBundle.getPath(), filePath );
+    }
 
-      bundleBuilder.hidden( isFileHidden( file, manifestFile, sourcePath ) );
-      boolean isSchedulable = isSchedulable( file, manifestFile );
+    bundleBuilder.name( fileName );
+    bundleBuilder.path( repositoryFilePath );
 
-      if ( isSchedulable ) {
-        bundleBuilder.schedulable( isSchedulable );
-      } else {
-        bundleBuilder.schedulable( fileIsScheduleInputSource( manifest, sourcePath ) );
-      }
+    //This clause was added for processing ivb files so that it would not try process acls on folders that the user
+    //may not have rights to such as /home or /public
+    if ( manifest != null && manifest.getExportManifestEntity( sourcePath ) == null && fileBundle.getFile()
+        .isFolder() ) {
+      return;
+    }
 
-      IPlatformImportBundle platformImportBundle = build( bundleBuilder );
-      importer.importFile( platformImportBundle );
+    getImportSession().setCurrentManifestKey( sourcePath );
 
-      if ( bundleInputStream != null ) {
-        bundleInputStream.close();
-        bundleInputStream = null;
-      }
+    bundleBuilder.charSet( importBundle.getCharSet() );
+    bundleBuilder.overwriteFile( overwrite );
+    bundleBuilder.applyAclSettings( importBundle.isApplyAclSettings() );
+    bundleBuilder.retainOwnership( importBundle.isRetainOwnership() );
+    bundleBuilder.overwriteAclSettings( importBundle.isOverwriteAclSettings() );
+    bundleBuilder.acl( getImportSession().processAclForFile( sourcePath ) );
+    bundleBuilder.extraMetaData( getImportSession().processExtraMetaDataForFile( sourcePath ) );
+
+    RepositoryFile file = getFile( importBundle, fileBundle );
+    ManifestFile manifestFile = getImportSession().getManifestFile( sourcePath, file != null );
+
+    bundleBuilder.hidden( isFileHidden( file, manifestFile, sourcePath ) );
+    boolean isSchedulable = isSchedulable( file, manifestFile );
+
+    if ( isSchedulable ) {
+      bundleBuilder.schedulable( isSchedulable );
+    } else {
+      bundleBuilder.schedulable( fileIsScheduleInputSource( manifest, sourcePath ) );
     }
 
-    if ( manifest != null ) {
-      importSchedules( manifest.getScheduleList() );
+    IPlatformImportBundle platformImportBundle = build( bundleBuilder );
+    importer.importFile( platformImportBundle );
+
+    if ( bundleInputStream != null ) {
+      bundleInputStream.close();
     }
+  }
 
-    // Process locale files.
-    localeFilesProcessor.processLocaleFiles( importer );
+  protected void importDatasources(
+    List<org.pentaho.platform.plugin.services.importexport.exportManifest.bindings.DatabaseConnection> datasourceList ) {
+    if ( datasourceList != null ) {
+      IDatasourceMgmtService datasourceMgmtSvc = PentahoSystem.get( IDatasourceMgmtService.class );
+      for ( org.pentaho.platform.plugin.services.importexport.exportManifest.bindings.DatabaseConnection databaseConnection : datasourceList ) {
+        if ( databaseConnection.getDatabaseType() == null ) {
+          // don't try to import the connection if there is no type it will cause an error
+          // However, if this is the DI Server, and the connection is defined in a ktr, it will import automatically
+          getLogger().warn( Messages.getInstance()
+            .getString( "SolutionImportHandler.ConnectionWithoutDatabaseType", databaseConnection.getName() ) );
+          continue;
+        }
+        try {
+          IDatabaseConnection existingDBConnection =
+            datasourceMgmtSvc.getDatasourceByName( databaseConnection.getName() );
+          if ( existingDBConnection != null && existingDBConnection.getName() != null ) {
+            if ( isOverwriteFile() ) {
+              databaseConnection.setId( existingDBConnection.getId() );
+              datasourceMgmtSvc.updateDatasourceByName( databaseConnection.getName(),
+                DatabaseConnectionConverter.export2model( databaseConnection ) );
+            }
+          } else {
+            datasourceMgmtSvc.createDatasource( DatabaseConnectionConverter.export2model( databaseConnection ) );
+          }
+        } catch ( Exception e ) {
+          e.printStackTrace();
+        }
+      }
+    }
   }
 
   List<Job> getAllJobs( SchedulerResource schedulerResource ) {
@@ -623,6 +744,7 @@ public class SolutionImportHandler implements IPlatformImportHandler {
               isOverwriteFile() ).mime( "text/xml" ).hidden( RepositoryFile.HIDDEN_BY_DEFAULT ).schedulable(
               RepositoryFile.SCHEDULABLE_BY_DEFAULT ).withParam( DOMAIN_ID, catName );
           cachedImports.put( annotationsFile, annotationsBundle );
+          dependentImports.add( annotationsFile );
         }
       }
     }
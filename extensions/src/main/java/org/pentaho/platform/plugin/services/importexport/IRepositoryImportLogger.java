@@ -120,4 +120,29 @@ public interface IRepositoryImportLogger extends Log {
    * @return true if the logger is present.
    */
   boolean hasLogger();
+
+  /**
+   * Returns the job of the current thread, to be joined by the threads importing files on its behalf.
+   * 
+   * @return the job, null if none is started or the implementation does not support sharing it.
+   */
+  default Object getJob() {
+    return null;
+  }
+
+  /**
+   * Associates the current thread with a job returned by {@link #getJob()}. The thread then logs to that job until
+   * {@link #leaveJob()} is called. It must not end the job.
+   * 
+   * @param job
+   *          The job to log to.
+   */
+  default void joinJob( Object job ) {
+  }
+
+  /**
+   * Dissociates the current thread from the job it joined.
+   */
+  default void leaveJob() {
+  }
 }
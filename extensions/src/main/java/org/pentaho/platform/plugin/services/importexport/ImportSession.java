@@ -69,6 +69,43 @@ public class ImportSession {
     return session;
   }
 
+  /**
+   * Makes the given session the one of the current thread. Used to run part of an import in another thread.
+   */
+  public static void setSession( ImportSession session ) {
+    sessions.set( session );
+  }
+
+  /**
+   * Creates a session for a worker thread importing part of the files of this session. The fork shares the manifest
+   * and the import settings but has its own collections, to be merged back with {@link #merge(ImportSession)}. Its log
+   * is resolved in the worker, so it is the import log if the worker joined the import log job. The log of this session
+   * must have been resolved already.
+   */
+  public ImportSession fork() {
+    final ImportSession fork = new ImportSession();
+    fork.manifest = manifest;
+    fork.applyAclSettings = applyAclSettings;
+    fork.retainOwnership = retainOwnership;
+    fork.overwriteAclSettings = overwriteAclSettings;
+    fork.isNotRunningImport = isNotRunningImport;
+    synchronized ( this ) {
+      fork.foldersCreatedImplicitly.addAll( foldersCreatedImplicitly );
+      fork.skippedFiles.addAll( skippedFiles );
+    }
+    return fork;
+  }
+
+  /**
+   * Adds the files and schedules recorded by a forked session to this session.
+   */
+  public synchronized void merge( ImportSession fork ) {
+    skippedFiles.addAll( fork.skippedFiles );
+    foldersCreatedImplicitly.addAll( fork.foldersCreatedImplicitly );
+    importedRepositoryFiles.addAll( fork.importedRepositoryFiles );
+    importedScheduleJobIds.addAll( fork.importedScheduleJobIds );
+  }
+
   /**
    * Clear out any collections, most likely before starting a new import
    */
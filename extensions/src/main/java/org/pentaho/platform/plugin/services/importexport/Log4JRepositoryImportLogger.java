@@ -22,6 +22,7 @@ package org.pentaho.platform.plugin.services.importexport;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.Logger;
+import org.slf4j.MDC;
 
 import java.io.OutputStream;
 
@@ -93,6 +94,24 @@ public class Log4JRepositoryImportLogger implements IRepositoryImportLogger {
     return ( repositoryImportLog.get() == null ) ? false : true;
   }
 
+  @Override
+  public Object getJob() {
+    return repositoryImportLog.get();
+  }
+
+  @Override
+  public void joinJob( Object job ) {
+    if ( job instanceof Log4JRepositoryImportLog ) {
+      repositoryImportLog.set( (Log4JRepositoryImportLog) job );
+    }
+  }
+
+  @Override
+  public void leaveJob() {
+    repositoryImportLog.remove();
+    MDC.remove( Log4JRepositoryImportLog.FILE_KEY );
+  }
+
   @Override
   public void debug( Object arg0 ) {
     getLogger().debug( arg0 );
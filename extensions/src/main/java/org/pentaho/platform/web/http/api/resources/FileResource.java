@@ -69,6 +69,7 @@ import org.pentaho.platform.security.policy.rolebased.actions.PublishAction;
 import org.pentaho.platform.util.xml.XMLParserFactoryProducer;
 import org.pentaho.platform.web.http.api.resources.services.FileService;
 import org.pentaho.platform.web.http.api.resources.services.UserRoleListService;
+import org.pentaho.platform.web.http.api.resources.utils.ConditionalRequestUtils;
 import org.pentaho.platform.web.http.api.resources.utils.FileUtils;
 import org.pentaho.platform.web.http.api.resources.utils.SystemUtils;
 import org.pentaho.platform.web.http.messages.Messages;
@@ -87,6 +88,8 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
@@ -104,6 +107,7 @@ import java.nio.channels.IllegalSelectorException;
 import java.security.GeneralSecurityException;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -124,6 +128,8 @@ public class FileResource extends AbstractJaxRSResource {
 
   public static final String APPLICATION_ZIP = "application/zip";
   public static final String REPOSITORY_ADMIN_USERNAME = "pentahoRepoAdmin";
+  // not in the JAX-RS 1.1 Response.Status enum
+  private static final int HTTP_NOT_IMPLEMENTED = 501;
 
   protected static final Log logger = LogFactory.getLog( FileResource.class );
 
@@ -195,6 +201,84 @@ public class FileResource extends AbstractJaxRSResource {
     }
   }
 
+  /**
+   * Starts writing a chunked snapshot of the repository into the snapshot directory of the server, without stopping
+   * it. The snapshot only holds the changes since the snapshot named by previous when given. It runs in the
+   * background, poll GET pentaho/api/repo/files/snapshot/{jobId} for its outcome.
+   *
+   * <p><b>Example Request:</b><br />
+   *    POST pentaho/api/repo/files/snapshot?previous=repository-snapshot-1760000000000.zip
+   * </p>
+   *
+   * @param previous Name of an earlier snapshot in the snapshot directory, omitted for a full snapshot.
+   *
+   * @return The id of the job, its state and the name of the new snapshot.
+   *
+   * <p><b>Example Response:</b></p>
+   *    <pre function="syntax.xml">
+   *      {"setting":[{"name":"job","value":"5c9b3b8e-2b1e-4f4e-9a57-0f6d7c1e2a10"},{"name":"state","value":"QUEUED"},
+   *        {"name":"file","value":"repository-snapshot-1760000360000.zip"}]}
+   *    </pre>
+   */
+  @POST
+  @Path( "/snapshot" )
+  @Produces ( { MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @StatusCodes( {
+    @ResponseCode( code = 200, condition = "Successfully started the snapshot" ),
+    @ResponseCode( code = 403, condition = "User does not have administrative permissions" ),
+    @ResponseCode( code = 404, condition = "The previous snapshot does not exist" ),
+    @ResponseCode( code = 500, condition = "Failure to start the snapshot." ),
+    @ResponseCode( code = 503, condition = "The snapshot directory is not configured or accessible to others" ) } )
+  public List<Setting> systemSnapshot( @QueryParam( "previous" ) String previous ) {
+    try {
+      return fileService.systemSnapshot( previous );
+    } catch ( FileNotFoundException e ) {
+      throw new WebApplicationException( e, Response.Status.NOT_FOUND );
+    } catch ( IOException e ) {
+      throw new WebApplicationException( e, Response.Status.INTERNAL_SERVER_ERROR );
+    } catch ( IllegalStateException e ) {
+      throw new WebApplicationException( e, Response.Status.SERVICE_UNAVAILABLE );
+    } catch ( SecurityException e ) {
+      throw new WebApplicationException( e, Response.Status.FORBIDDEN );
+    }
+  }
+
+  /**
+   * Retrieves the outcome of a snapshot started with POST pentaho/api/repo/files/snapshot.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/repo/files/snapshot/5c9b3b8e-2b1e-4f4e-9a57-0f6d7c1e2a10
+   * </p>
+   *
+   * @param jobId The id of the job returned when the snapshot was started.
+   *
+   * @return The state of the job (QUEUED, RUNNING, SUCCEEDED or FAILED) and the name of the snapshot, with its
+   * checkpoint and the number of chunks and removed nodes once it succeeded, or the error once it failed.
+   *
+   * <p><b>Example Response:</b></p>
+   *    <pre function="syntax.xml">
+   *      {"setting":[{"name":"job","value":"5c9b3b8e-2b1e-4f4e-9a57-0f6d7c1e2a10"},
+   *        {"name":"state","value":"SUCCEEDED"},{"name":"file","value":"repository-snapshot-1760000360000.zip"},
+   *        {"name":"chunk.count","value":"12"}]}
+   *    </pre>
+   */
+  @GET
+  @Path( "/snapshot/{jobId}" )
+  @Produces ( { MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @StatusCodes( {
+    @ResponseCode( code = 200, condition = "Successfully retrieved the state of the snapshot" ),
+    @ResponseCode( code = 403, condition = "User does not have administrative permissions" ),
+    @ResponseCode( code = 404, condition = "The job is unknown" ) } )
+  public List<Setting> getSystemSnapshot( @PathParam( "jobId" ) String jobId ) {
+    try {
+      return fileService.getSystemSnapshot( jobId );
+    } catch ( FileNotFoundException e ) {
+      throw new WebApplicationException( e, Response.Status.NOT_FOUND );
+    } catch ( SecurityException e ) {
+      throw new WebApplicationException( e, Response.Status.FORBIDDEN );
+    }
+  }
+
   /**
    * Performs a system restore of the Hitachi Vantara system. This includes content, schedules, users, roles, datasources, and
    * the metastore.
@@ -1577,6 +1661,8 @@ public class FileResource extends AbstractJaxRSResource {
    *                   metadata to return. Member Filters start with "includeMembers=" or "excludeMembers=" followed by a list of
    *                   comma separated field names that are to be included in, or, excluded from, the list. Valid field names can
    *                   be found in org.pentaho.platform.repository2.unified.webservices#RepositoryFileAdapter.
+   *                   "includeMembers=compact" returns only the members needed to browse: name, path, title, folder,
+   *                   hidden and versionId.
    *                   Omission of a member filter will return all members. It is invalid to both and includeMembers= and an
    *                   excludeMembers= clause in the same service call.
    * @param showHidden Include or exclude hidden files from the file list.
@@ -1641,6 +1727,8 @@ public class FileResource extends AbstractJaxRSResource {
    *                    metadata to return. Member Filters start with "includeMembers=" or "excludeMembers=" followed by a list of
    *                    comma separated field names that are to be included in, or, excluded from, the list. Valid field names can
    *                    be found in  org.pentaho.platform.repository2.unified.webservices#RepositoryFileAdapter.
+   *                    "includeMembers=compact" returns only the members needed to browse: name, path, title, folder,
+   *                    hidden and versionId.
    *                    Omission of a member filter will return all members. It is invalid to both and includeMembers= and an
    *                    excludeMembers= clause in the same service call.
    * @param showHidden  Include or exclude hidden files from the file list.
@@ -1707,6 +1795,8 @@ public class FileResource extends AbstractJaxRSResource {
    *                    metadata to return. Member Filters start with "includeMembers=" or "excludeMembers=" followed by a list of
    *                    comma separated field names that are to be included in, or, excluded from, the list. Valid field names can
    *                    be found in  org.pentaho.platform.repository2.unified.webservices#RepositoryFileAdapter.
+   *                    "includeMembers=compact" returns only the members needed to browse: name, path, title, folder,
+   *                    hidden and versionId.
    *                    Omission of a member filter will return all members. It is invalid to both and includeMembers= and an
    *                    excludeMembers= clause in the same service call.
    * @param showHidden  Include or exclude hidden files from the file list.
@@ -1774,6 +1864,8 @@ public class FileResource extends AbstractJaxRSResource {
    *                    metadata to return. Member Filters start with "includeMembers=" or "excludeMembers=" followed by a list of
    *                    comma separated field names that are to be included in, or, excluded from, the list. Valid field names can
    *                    be found in  org.pentaho.platform.repository2.unified.webservices#RepositoryFileAdapter.
+   *                    "includeMembers=compact" returns only the members needed to browse: name, path, title, folder,
+   *                    hidden and versionId.
    *                    Omission of a member filter will return all members. It is invalid to both and includeMembers= and an
    *                    excludeMembers= clause in the same service call.
    * @param showHidden  Include or exclude hidden files from the file list.
@@ -1879,6 +1971,68 @@ public class FileResource extends AbstractJaxRSResource {
     return fileService.doGetDeletedFiles();
   }
 
+  /**
+   * Retrieve the list of locked files. Administrators can list the locks of every user, other users only get their
+   * own locks.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/repo/files/locks?owner=suzy
+   * </p>
+   *
+   * @param owner Only list the files locked by this user. Every locked file if omitted (administrators only).
+   *
+   * @return A list of RepositoryFileDto objects for the locked files, including their lock owner, date and message.
+   */
+  @GET
+  @Path ( "/locks" )
+  @Produces ( { MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @StatusCodes ( {
+    @ResponseCode ( code = 200, condition = "Successfully retrieved the list of locked files." ),
+    @ResponseCode ( code = 403, condition = "The user cannot list the locks of another user." ),
+    @ResponseCode ( code = 500, condition = "Server Error." ),
+    @ResponseCode ( code = 501, condition = "The repository does not support listing locks." ) } )
+  public List<RepositoryFileDto> doGetLockedFiles( @QueryParam ( "owner" ) String owner ) {
+    try {
+      return fileService.doGetLockedFiles( owner );
+    } catch ( GeneralSecurityException e ) {
+      throw new WebApplicationException( e, Response.Status.FORBIDDEN );
+    } catch ( UnsupportedOperationException e ) {
+      throw new WebApplicationException( e, HTTP_NOT_IMPLEMENTED );
+    }
+  }
+
+  /**
+   * Unlock a list of files, for instance to break the locks left behind by a user.
+   *
+   * <p><b>Example Request:</b><br />
+   *    PUT pentaho/api/repo/files/locks/unlock
+   * </p>
+   *
+   * @param params Comma separated list of the ids of the files to unlock.
+   *
+   * @return A jax-rs Response object with the appropriate status code, header, and body.
+   */
+  @PUT
+  @Path ( "/locks/unlock" )
+  @Consumes ( { MediaType.WILDCARD } )
+  @StatusCodes ( {
+    @ResponseCode ( code = 200, condition = "Successfully unlocked the files." ),
+    @ResponseCode ( code = 403, condition = "The user cannot unlock one of the files." ),
+    @ResponseCode ( code = 500, condition = "Failure to unlock the files." ),
+    @ResponseCode ( code = 501, condition = "The repository does not support locking." ) } )
+  public Response doUnlockFiles( String params ) {
+    try {
+      fileService.doUnlockFiles( params );
+      return buildOkResponse();
+    } catch ( GeneralSecurityException e ) {
+      return buildStatusResponse( Response.Status.FORBIDDEN );
+    } catch ( UnsupportedOperationException e ) {
+      return Response.status( HTTP_NOT_IMPLEMENTED ).build();
+    } catch ( Throwable t ) {
+      return buildServerErrorResponse( t );
+    }
+  }
+
   /**
    * Retrieve the metadata of the selected file. Even though the hidden flag is a property of the file node itself, and not
    * the metadata child, it is considered metadata from PUC and is included in the setMetadata call.
@@ -2212,7 +2366,22 @@ public class FileResource extends AbstractJaxRSResource {
   }
 
   protected Response buildOkResponse( FileService.RepositoryFileToStreamWrapper wrapper ) {
-    Response.ResponseBuilder builder = Response.ok( wrapper.getOutputStream() );
+    RepositoryFile repositoryFile = wrapper.getRepositoryFile();
+    EntityTag entityTag = ConditionalRequestUtils.getEntityTag( repositoryFile, null );
+    Date lastModified = ConditionalRequestUtils.getLastModified( repositoryFile );
+
+    if ( ConditionalRequestUtils.isNotModified( httpServletRequest, entityTag, lastModified ) ) {
+      IOUtils.closeQuietly( wrapper.getInputStream() );
+      return buildNotModifiedResponse( entityTag, lastModified );
+    }
+
+    Response.ResponseBuilder builder;
+    if ( wrapper.getInputStream() != null && repositoryFile != null ) {
+      builder = buildContentResponse( wrapper.getInputStream(), repositoryFile.getFileSize(), entityTag,
+        lastModified );
+    } else {
+      builder = Response.ok( wrapper.getOutputStream() );
+    }
 
     if ( wrapper.getMimetype() != null ) {
 
@@ -2225,7 +2394,7 @@ public class FileResource extends AbstractJaxRSResource {
         mediaType = MediaType.APPLICATION_OCTET_STREAM_TYPE;
       }
 
-      builder = Response.ok( wrapper.getOutputStream(), mediaType );
+      builder.type( mediaType );
     }
 
     return builder.header( "Content-Disposition", HttpMimeTypeListener.buildContentDispositionValue( wrapper
@@ -2233,10 +2402,74 @@ public class FileResource extends AbstractJaxRSResource {
   }
 
   protected Response buildZipOkResponse( FileService.DownloadFileWrapper wrapper ) {
-    return Response.ok( wrapper.getOutputStream(), APPLICATION_ZIP + "; charset=UTF-8" )
+    RepositoryFile repositoryFile = wrapper.getRepositoryFile();
+    if ( repositoryFile == null ) {
+      return Response.ok( wrapper.getOutputStream(), APPLICATION_ZIP + "; charset=UTF-8" )
+          .header( "Content-Disposition", wrapper.getAttachment() ).build();
+    }
+
+    // single file download, only exported when the client copy is stale
+    EntityTag entityTag = ConditionalRequestUtils.getEntityTag( repositoryFile, "download" );
+    Date lastModified = ConditionalRequestUtils.getLastModified( repositoryFile );
+    if ( ConditionalRequestUtils.isNotModified( httpServletRequest, entityTag, lastModified ) ) {
+      return buildNotModifiedResponse( entityTag, lastModified );
+    }
+
+    File exportedFile;
+    InputStream is;
+    try {
+      exportedFile = wrapper.getExportedFile();
+      is = getFileInputStream( exportedFile );
+    } catch ( Exception e ) {
+      throw new WebApplicationException( e, Response.Status.INTERNAL_SERVER_ERROR );
+    }
+    return buildContentResponse( is, exportedFile.length(), entityTag, lastModified )
+        .type( APPLICATION_ZIP + "; charset=UTF-8" )
         .header( "Content-Disposition", wrapper.getAttachment() ).build();
   }
 
+  /**
+   * Builds a 200 response with the whole content, or a 206 / 416 response if a byte range was requested.
+   */
+  protected Response.ResponseBuilder buildContentResponse( InputStream is, long length, EntityTag entityTag,
+                                                           Date lastModified ) {
+    ConditionalRequestUtils.ByteRange range =
+      ConditionalRequestUtils.getRange( httpServletRequest, entityTag, lastModified, length );
+
+    Response.ResponseBuilder builder;
+    if ( range == null ) {
+      builder = Response.ok( ConditionalRequestUtils.getStreamingOutput( is, 0, -1 ) );
+    } else if ( !range.isSatisfiable() ) {
+      IOUtils.closeQuietly( is );
+      builder = Response.status( ConditionalRequestUtils.SC_REQUESTED_RANGE_NOT_SATISFIABLE );
+      builder.header( ConditionalRequestUtils.CONTENT_RANGE, range.toContentRange() );
+    } else {
+      builder = Response.status( ConditionalRequestUtils.SC_PARTIAL_CONTENT )
+        .entity( ConditionalRequestUtils.getStreamingOutput( is, range.getStart(), range.getLength() ) );
+      builder.header( ConditionalRequestUtils.CONTENT_RANGE, range.toContentRange() );
+      builder.header( HttpHeaders.CONTENT_LENGTH, range.getLength() );
+    }
+    if ( length > 0 ) {
+      builder.header( ConditionalRequestUtils.ACCEPT_RANGES, ConditionalRequestUtils.BYTES );
+    }
+    return withValidators( builder, entityTag, lastModified );
+  }
+
+  protected Response buildNotModifiedResponse( EntityTag entityTag, Date lastModified ) {
+    return withValidators( Response.notModified(), entityTag, lastModified ).build();
+  }
+
+  private Response.ResponseBuilder withValidators( Response.ResponseBuilder builder, EntityTag entityTag,
+                                                   Date lastModified ) {
+    if ( entityTag != null ) {
+      builder.tag( entityTag );
+    }
+    if ( lastModified != null ) {
+      builder.lastModified( lastModified );
+    }
+    return builder;
+  }
+
   protected Response buildOkResponse( Object o, String s ) {
     return Response.ok( o, s ).build();
   }
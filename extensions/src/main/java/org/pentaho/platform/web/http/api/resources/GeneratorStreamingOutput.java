@@ -28,6 +28,7 @@ import org.pentaho.platform.api.engine.IParameterProvider;
 import org.pentaho.platform.api.engine.IPentahoUrlFactory;
 import org.pentaho.platform.api.engine.IPluginManager;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.engine.core.metrics.RequestMetrics;
 import org.pentaho.platform.engine.core.solution.SimpleParameterProvider;
 import org.pentaho.platform.engine.core.system.PentahoRequestContextHolder;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
@@ -237,7 +238,10 @@ public class GeneratorStreamingOutput {
       if ( urlFactory != null ) {
         contentGenerator.setUrlFactory( urlFactory );
       }
-      contentGenerator.createContent();
+      try ( RequestMetrics.Span span = RequestMetrics.getInstance()
+        .start( RequestMetrics.Category.CONTENT_GENERATOR, pluginId + "/" + contentGeneratorID ) ) {
+        contentGenerator.createContent();
+      }
     } finally {
       Thread.currentThread().setContextClassLoader( origContextClassloader );
     }
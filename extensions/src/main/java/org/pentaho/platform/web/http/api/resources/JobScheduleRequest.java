@@ -101,6 +101,8 @@ public class JobScheduleRequest implements Serializable {
 
   String timeZone;
 
+  Integer priority;
+
   protected String runSafeMode;
   protected String gatheringMetrics;
   protected String logLevel;
@@ -226,6 +228,18 @@ public class JobScheduleRequest implements Serializable {
     this.jobId = jobId;
   }
 
+  /**
+   * @return the priority of the job's executions over other waiting ones, higher first; <code>null</code> for the
+   * default priority
+   */
+  public Integer getPriority() {
+    return priority;
+  }
+
+  public void setPriority( Integer priority ) {
+    this.priority = priority;
+  }
+
   public String getRunSafeMode() {
     return runSafeMode;
   }
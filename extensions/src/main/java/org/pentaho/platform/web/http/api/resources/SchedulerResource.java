@@ -29,6 +29,7 @@ import static javax.ws.rs.core.Response.Status.UNAUTHORIZED;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 import javax.ws.rs.Consumes;
@@ -53,6 +54,7 @@ import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryException;
 import org.pentaho.platform.api.scheduler2.IJobTrigger;
 import org.pentaho.platform.api.scheduler2.Job;
 import org.pentaho.platform.api.scheduler2.Job.JobState;
+import org.pentaho.platform.api.scheduler2.JobRun;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
 import org.pentaho.platform.web.http.api.resources.proxies.BlockStatusProxy;
@@ -956,6 +958,75 @@ public class SchedulerResource extends AbstractJaxRSResource {
     }
   }
 
+  /**
+   * Return the recorded runs of a job, newest first. Runs still executing are included with no completion date.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/scheduler/jobHistory?jobId=admin%09JobName%091410786491777
+   * </p>
+   *
+   * @param jobId The jobId of the job for which we are requesting the history.
+   *
+   * @return A list of the runs of the job visible to the current user.
+   *
+   * <p><b>Example Response:</b></p>
+   * <pre function="syntax.xml">
+   *  &lt;jobRuns&gt;
+   *  &lt;jobRun&gt;
+   *  &lt;id&gt;6b1d2c4e-5f7a-4b8c-9d0e-1f2a3b4c5d6e&lt;/id&gt;
+   *  &lt;jobId&gt;admin JobName 1410786491777&lt;/jobId&gt;
+   *  &lt;jobName&gt;JobName&lt;/jobName&gt;
+   *  &lt;userName&gt;admin&lt;/userName&gt;
+   *  &lt;startDate&gt;2014-08-14T11:46:00-04:00&lt;/startDate&gt;
+   *  &lt;completionDate&gt;2014-08-14T11:46:04-04:00&lt;/completionDate&gt;
+   *  &lt;status&gt;SUCCEEDED&lt;/status&gt;
+   *  &lt;outputPath&gt;/home/admin/JobName.*&lt;/outputPath&gt;
+   *  &lt;workerNode&gt;server1&lt;/workerNode&gt;
+   *  &lt;/jobRun&gt;
+   *  &lt;/jobRuns&gt;
+   * </pre>
+   */
+  @GET
+  @Path ( "/jobHistory" )
+  @Produces ( { APPLICATION_JSON, APPLICATION_XML } )
+  @StatusCodes ( {
+      @ResponseCode ( code = 200, condition = "Successfully retrieved the history of the requested job." ),
+      @ResponseCode ( code = 500, condition = "Internal error." )
+    } )
+  public List<JobRun> getJobHistory( @QueryParam ( "jobId" ) String jobId ) {
+    return schedulerService.getJobHistory( jobId );
+  }
+
+  /**
+   * Query the recorded job runs by user and start time, newest first. Users who cannot administer only see
+   * their own runs.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/scheduler/history?userName=admin&amp;from=1410786491777&amp;limit=50
+   * </p>
+   *
+   * @param userName Only the runs of that user (optional).
+   * @param from Only the runs started at or after that time, in milliseconds since the epoch (optional).
+   * @param to Only the runs started before that time, in milliseconds since the epoch (optional).
+   * @param limit The maximum number of runs returned, 0 for no limit.
+   *
+   * @return A list of the matching runs, in the same format as jobHistory.
+   */
+  @GET
+  @Path ( "/history" )
+  @Produces ( { APPLICATION_JSON, APPLICATION_XML } )
+  @StatusCodes ( {
+      @ResponseCode ( code = 200, condition = "Successfully retrieved the job history." ),
+      @ResponseCode ( code = 500, condition = "Internal error." )
+    } )
+  public List<JobRun> findJobHistory( @QueryParam ( "userName" ) String userName,
+                                      @QueryParam ( "from" ) Long from,
+                                      @QueryParam ( "to" ) Long to,
+                                      @DefaultValue ( "100" ) @QueryParam ( "limit" ) int limit ) {
+    return schedulerService.findJobHistory( null, userName, from == null ? null : new Date( from ),
+      to == null ? null : new Date( to ), limit );
+  }
+
   @Deprecated
   @GET
   @Path ( "/jobinfotest" )
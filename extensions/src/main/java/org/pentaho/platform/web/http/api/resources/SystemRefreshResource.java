@@ -27,6 +27,7 @@ import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.plugin.action.mondrian.catalog.IMondrianCatalogService;
 import org.pentaho.platform.plugin.action.olap.IOlapService;
+import org.pentaho.platform.plugin.action.sql.SQLResultCache;
 import org.pentaho.platform.web.http.api.resources.utils.SystemUtils;
 
 import javax.ws.rs.GET;
@@ -162,6 +163,38 @@ public class SystemRefreshResource extends AbstractJaxRSResource {
     }
   }
 
+  /**
+   * Invalidates the cached SQL query results. Without parameters the whole cache is cleared.
+   *
+   * @param tag        only invalidate the results tagged with this name
+   * @param datasource only invalidate the results of this datasource
+   */
+  @GET
+  @Path( "/sqlResultCache" )
+  @Produces( { MediaType.TEXT_PLAIN, MediaType.APPLICATION_JSON } )
+  @Facet( name = "Unsupported" )
+  public Response flushSqlResultCache( @QueryParam( "tag" ) String tag,
+                                       @QueryParam( "datasource" ) String datasource ) {
+    if ( canAdminister() ) {
+      SQLResultCache cache = PentahoSystem.get( SQLResultCache.class, "sqlResultCache", null ); //$NON-NLS-1$
+      if ( cache == null ) {
+        return Response.ok().type( MediaType.TEXT_PLAIN ).build();
+      }
+      if ( tag == null && datasource == null ) {
+        cache.invalidateAll();
+      }
+      if ( tag != null ) {
+        cache.invalidateTag( tag );
+      }
+      if ( datasource != null ) {
+        cache.invalidateDatasource( datasource );
+      }
+      return Response.ok().type( MediaType.TEXT_PLAIN ).build();
+    } else {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+  }
+
   private boolean canAdminister() {
     return SystemUtils.canAdminister();
   }
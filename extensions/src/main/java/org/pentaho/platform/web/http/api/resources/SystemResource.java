@@ -34,6 +34,7 @@ import org.pentaho.platform.api.engine.ISystemConfig;
 import org.pentaho.platform.api.engine.IPluginOperation;
 import org.pentaho.platform.api.engine.IAuthorizationPolicy;
 import org.pentaho.platform.api.usersettings.IUserSettingService;
+import org.pentaho.platform.engine.core.metrics.RequestMetrics;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.api.repository2.unified.webservices.ExecutableFileTypeDto;
@@ -47,11 +48,14 @@ import org.pentaho.platform.web.http.messages.Messages;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -61,6 +65,7 @@ import java.util.TimeZone;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static javax.ws.rs.core.MediaType.APPLICATION_XML;
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
 import static javax.ws.rs.core.Response.Status.UNAUTHORIZED;
 
 /**
@@ -233,6 +238,85 @@ public class SystemResource extends AbstractJaxRSResource {
     return Response.ok( entity ).build();
   }
 
+  /**
+   * Returns the request latency histograms (per request path, REST resource method, content generator, repository
+   * method and datasource) in the Prometheus text exposition format. Only available to administrators.
+   *
+   * <p>Response sample:
+   * <pre>
+   * pentaho_latency_seconds_bucket{category="repository",name="getFile",le="0.001"} 12
+   * pentaho_latency_seconds_sum{category="repository",name="getFile"} 0.0153
+   * pentaho_latency_seconds_count{category="repository",name="getFile"} 14
+   * </pre>
+   *
+   * @return the latency histograms as text/plain
+   */
+  @GET
+  @Path( "/metrics" )
+  @Produces( { MediaType.TEXT_PLAIN } )
+  @Facet ( name = "Unsupported" )
+  public Response getMetrics() throws IOException {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    StringWriter out = new StringWriter();
+    RequestMetrics.getInstance().writePrometheus( out );
+    return Response.ok( out.toString() ).type( "text/plain; version=0.0.4" ).build();
+  }
+
+  /**
+   * Returns the slow requests and the sampled request traces, with the spans recorded for each request id. Only
+   * available to administrators.
+   *
+   * @return the traces as text/plain
+   */
+  @GET
+  @Path( "/metrics/traces" )
+  @Produces( { MediaType.TEXT_PLAIN } )
+  @Facet ( name = "Unsupported" )
+  public Response getMetricsTraces() throws IOException {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    StringWriter out = new StringWriter();
+    RequestMetrics.getInstance().writeTraces( out );
+    return Response.ok( out.toString() ).type( MediaType.TEXT_PLAIN ).build();
+  }
+
+  /**
+   * Returns the counters of a cache, pool or queue registered with {@link RequestMetrics}, e.g.
+   * <code>mondrianConnectionPool</code>, <code>repositoryDtoCache</code>, <code>xmlaDiscoverCache</code>,
+   * <code>jobHistory</code>, <code>emailDeliveryQueue</code> or <code>smtpTransportPool</code>. The same counters
+   * are part of {@link #getMetrics()} and of the JMX view. Only available to administrators.
+   *
+   * <p>Response sample:
+   * <pre>
+   * {"setting":[{"name":"size","value":"1250"},{"name":"hits","value":"8400"},{"name":"misses","value":"1310"}]}
+   * </pre>
+   *
+   * @param name the name the counters are registered under
+   * @return the counters as a list of name/value settings, or 404 if nothing is registered under the name (caches
+   *         register when first used)
+   */
+  @GET
+  @Path( "/metrics/{name}" )
+  @Produces( { APPLICATION_JSON } )
+  @Facet ( name = "Unsupported" )
+  public Response getStatistics( @PathParam( "name" ) String name ) {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    Map<String, Number> statistics = RequestMetrics.getStatistics( name );
+    if ( statistics == null ) {
+      return Response.status( NOT_FOUND ).build();
+    }
+    List<Setting> settings = new ArrayList<Setting>();
+    for ( Map.Entry<String, Number> entry : statistics.entrySet() ) {
+      settings.add( new Setting( entry.getKey(), String.valueOf( entry.getValue() ) ) );
+    }
+    return Response.ok( new JaxbList<Setting>( settings ), MediaType.APPLICATION_JSON ).build();
+  }
+
   private boolean hasOperationId( final List<IPluginOperation> operations, final String operationId ) {
     if ( operations != null && StringUtils.isNotBlank( operationId ) ) {
       for ( IPluginOperation operation : operations ) {
@@ -28,6 +28,7 @@ import java.util.Set;
 import java.util.StringTokenizer;
 
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
@@ -73,6 +74,7 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 public class UserRoleDaoResource extends AbstractJaxRSResource {
 
   private static final String PUC_VALIDATION_ERROR_MESSAGE = "PUC_VALIDATION_ERROR_MESSAGE";
+  private static final String DEFAULT_PAGE_SIZE = "100";
   private IRoleAuthorizationPolicyRoleBindingDao roleBindingDao = null;
   private ITenantManager tenantManager = null;
   private final UserRoleDaoService userRoleDaoService;
@@ -291,6 +293,51 @@ public class UserRoleDaoResource extends AbstractJaxRSResource {
     }
   }
 
+  /**
+   * Returns one page of the users in the platform's repository whose name starts with the given prefix, ignoring case.
+   * Names are sorted case-insensitively. Intended for typeahead lookups on systems with many users. Must have
+   * administrative privileges to access this.
+   *
+   * <p><b>Example Request:</b><br />
+   * GET pentaho/api/userroledao/searchUsers?prefix=s&offset=0&limit=2
+   * </p>
+   *
+   * @param prefix Beginning of the user names to return. When empty every user matches.
+   * @param offset Number of matching users to skip.
+   * @param limit  Maximum number of users to return. Negative for no limit.
+   *
+   * @return List of matching users.
+   *
+   * <p><b>Example Response:</b>
+   * <pre function="syntax.xml">
+   *  <userList>
+   *    <users>suzy</users>
+   *    <users>sam</users>
+   *  </userList>
+   * </pre>
+   */
+  @GET
+  @Path ( "/searchUsers" )
+  @Produces ( { MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @StatusCodes( {
+      @ResponseCode ( code = 200, condition = "Successfully returned the list of users." ),
+      @ResponseCode ( code = 403, condition = "Only users with administrative privileges can access this method." ),
+      @ResponseCode ( code = 500, condition = "An error occurred in the platform while trying to access the list of users." )
+    } )
+  public UserListWrapper searchUsers( @QueryParam ( "prefix" ) String prefix,
+                                      @DefaultValue ( "0" ) @QueryParam ( "offset" ) int offset,
+                                      @DefaultValue ( DEFAULT_PAGE_SIZE ) @QueryParam ( "limit" ) int limit )
+    throws WebApplicationException {
+    try {
+      return userRoleDaoService.searchUsers( prefix, offset, limit );
+    } catch ( SecurityException e ) {
+      throw new WebApplicationException( Response.Status.FORBIDDEN );
+    } catch ( Exception e ) {
+      logger.warn( e.getMessage(), e );
+      throw new WebApplicationException( Response.Status.INTERNAL_SERVER_ERROR );
+    }
+  }
+
   /**
    * Gets the roles for the given user.
    *
@@ -494,6 +541,46 @@ public class UserRoleDaoResource extends AbstractJaxRSResource {
     }
   }
 
+  /**
+   * Returns one page of the roles in the platform whose name starts with the given prefix, ignoring case. Names are
+   * sorted case-insensitively. Must have administrative privileges to access this.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/userroledao/searchRoles?prefix=p&limit=10
+   * </p>
+   *
+   * @param prefix Beginning of the role names to return. When empty every role matches.
+   * @param offset Number of matching roles to skip.
+   * @param limit  Maximum number of roles to return. Negative for no limit.
+   *
+   * @return List of matching roles.
+   *
+   * <p><b>Example Response:</b></p>
+   * <pre function="syntax.xml">
+   *   &lt;?xml version=&quot;1.0&quot; encoding=&quot;UTF-8&quot; standalone=&quot;yes&quot;?&gt;&lt;roleList&gt;&lt;roles&gt;Power User&lt;/roles&gt;&lt;/roleList&gt;
+   * </pre>
+   */
+  @GET
+  @Path( "/searchRoles" )
+  @Produces( { MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @StatusCodes ( {
+    @ResponseCode ( code = 200, condition = "Successfully retrieved the list of roles." ),
+    @ResponseCode ( code = 403, condition = "Only users with administrative privileges can access this method." ),
+    @ResponseCode ( code = 500, condition = "The system was not able to return the list of roles." )
+    } )
+  public RoleListWrapper searchRoles( @QueryParam ( "prefix" ) String prefix,
+                                      @DefaultValue ( "0" ) @QueryParam ( "offset" ) int offset,
+                                      @DefaultValue ( DEFAULT_PAGE_SIZE ) @QueryParam ( "limit" ) int limit )
+    throws Exception {
+    try {
+      return userRoleDaoService.searchRoles( prefix, offset, limit );
+    } catch ( UncategorizedUserRoleDaoException e ) {
+      throw new WebApplicationException( Response.Status.INTERNAL_SERVER_ERROR );
+    } catch ( SecurityException e ) {
+      throw new WebApplicationException( Response.Status.FORBIDDEN );
+    }
+  }
+
   /**
    * Retrieves list of users for the selected role. The role must be a valid role in the system. Must have administrative privileges to access this.
    *
@@ -528,6 +615,48 @@ public class UserRoleDaoResource extends AbstractJaxRSResource {
     }
   }
 
+  /**
+   * Returns one page of the users of the selected role whose name starts with the given prefix, ignoring case. Must
+   * have administrative privileges to access this.
+   *
+   * <p><b>Example Request:</b><br />
+   *   GET pentaho/api/userroledao/searchRoleMembers?roleName=Power%20User&prefix=s
+   * </p>
+   *
+   * @param roleName The role name to get the list of users associated with it.
+   * @param prefix   Beginning of the user names to return. When empty every member matches.
+   * @param offset   Number of matching users to skip.
+   * @param limit    Maximum number of users to return. Negative for no limit.
+   *
+   * @return List of matching users for the selected role.
+   *
+   *<p><b>Example Response:</b></p>
+   * <pre function="syntax.xml">
+   *   &lt;?xml version=&quot;1.0&quot; encoding=&quot;UTF-8&quot; standalone=&quot;yes&quot;?&gt;&lt;userList&gt;&lt;users&gt;suzy&lt;/users&gt;&lt;/userList&gt;
+   * </pre>
+   */
+  @GET
+  @Path ( "/searchRoleMembers" )
+  @Produces ( { MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @StatusCodes ( {
+    @ResponseCode ( code = 200, condition = "Successfully retrieved the list of Users." ),
+    @ResponseCode ( code = 403, condition = "Only users with administrative privileges can access this method." ),
+    @ResponseCode ( code = 500, condition = "The system was not able to return the list of users." )
+    } )
+  public UserListWrapper searchRoleMembers( @QueryParam ( "roleName" ) String roleName,
+                                            @QueryParam ( "prefix" ) String prefix,
+                                            @DefaultValue ( "0" ) @QueryParam ( "offset" ) int offset,
+                                            @DefaultValue ( DEFAULT_PAGE_SIZE ) @QueryParam ( "limit" ) int limit )
+    throws Exception {
+    try {
+      return userRoleDaoService.searchRoleMembers( roleName, prefix, offset, limit );
+    } catch ( UncategorizedUserRoleDaoException e ) {
+      throw new WebApplicationException( Response.Status.INTERNAL_SERVER_ERROR );
+    } catch ( SecurityException e ) {
+      throw new WebApplicationException( Response.Status.FORBIDDEN );
+    }
+  }
+
   /**
    * Associate a particular role to a list of physical permissions available in the system. Setting the physical permissions to the roles is a way to add and delete permissions from the role.
    * Any permissions the role had before that are not on this list will be deleted. Any permissions on this list that were not previously assigned will now be assigned.
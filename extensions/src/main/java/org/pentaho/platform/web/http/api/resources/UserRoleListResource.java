@@ -34,6 +34,7 @@ import org.pentaho.platform.engine.security.DefaultRoleComparator;
 import org.pentaho.platform.engine.security.DefaultUsernameComparator;
 import org.pentaho.platform.web.http.api.resources.services.UserRoleListService;
 
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
@@ -160,6 +161,40 @@ public class UserRoleListResource extends AbstractJaxRSResource {
     return userRoleListService.getUsers();
   }
 
+  /**
+   * Returns one page of the users in the platform whose name starts with the given prefix, ignoring case. Names are
+   * sorted case-insensitively.
+   *
+   * <p>
+   * <b>Example Request:</b><br />
+   * GET pentaho/api/userrolelist/searchUsers?prefix=s&limit=2
+   * </p>
+   *
+   * @param prefix Beginning of the user names to return. When empty every user matches.
+   * @param offset Number of matching users to skip.
+   * @param limit  Maximum number of users to return. Negative for no limit.
+   *
+   * @return A list of matching users.
+   *
+   *         <p>
+   *         <b>Example Response:</b>
+   *         </p>
+   * 
+   *         <pre function="syntax.xml">
+   *     &lt;?xml version=&quot;1.0&quot; encoding=&quot;UTF-8&quot; standalone=&quot;yes&quot;?&gt;&lt;userList&gt;&lt;users&gt;suzy&lt;/users&gt;&lt;/userList&gt;
+   * </pre>
+   */
+  @GET
+  @Path( "/searchUsers" )
+  @Produces( { APPLICATION_XML, APPLICATION_JSON } )
+  @StatusCodes( { @ResponseCode( code = 200, condition = "Successfully retrieved the list of User objects." ),
+    @ResponseCode( code = 500, condition = "Unable to retrieve User objects." ) } )
+  public UserListWrapper searchUsers( @QueryParam( "prefix" ) String prefix,
+                                      @DefaultValue( "0" ) @QueryParam( "offset" ) int offset,
+                                      @DefaultValue( "100" ) @QueryParam( "limit" ) int limit ) throws Exception {
+    return userRoleListService.searchUsers( prefix, offset, limit );
+  }
+
   /**
    * Get a list of the standard roles in the platform.
    *
@@ -191,6 +226,45 @@ public class UserRoleListResource extends AbstractJaxRSResource {
     return userRoleListService.getRoles( includeExtraRoles );
   }
 
+  /**
+   * Returns one page of the standard roles in the platform whose name starts with the given prefix, ignoring case.
+   *
+   * <p>
+   * <b>Example Request:</b><br />
+   * GET pentaho/api/userrolelist/searchRoles?prefix=p
+   * </p>
+   *
+   * @param prefix Beginning of the role names to return. When empty every role matches.
+   * @param addExtraRoles Whether the extra roles are listed too. Defaults to true.
+   * @param offset Number of matching roles to skip.
+   * @param limit  Maximum number of roles to return. Negative for no limit.
+   *
+   * @return A list of matching roles.
+   *
+   *         <p>
+   *         <b>Example Response:</b>
+   *         </p>
+   * 
+   *         <pre function="syntax.xml">
+   *     &lt;?xml version=&quot;1.0&quot; encoding=&quot;UTF-8&quot; standalone=&quot;yes&quot;?&gt;&lt;roleList&gt;&lt;roles&gt;Power User&lt;/roles&gt;&lt;/roleList&gt;
+   * </pre>
+   */
+  @GET
+  @Path( "/searchRoles" )
+  @Produces( { APPLICATION_XML, APPLICATION_JSON } )
+  @StatusCodes( { @ResponseCode( code = 200, condition = "Successfully retrieved the list of Role objects." ), } )
+  public RoleListWrapper searchRoles( @QueryParam( "prefix" ) String prefix,
+                                      @QueryParam( "addExtraRoles" ) String addExtraRoles,
+                                      @DefaultValue( "0" ) @QueryParam( "offset" ) int offset,
+                                      @DefaultValue( "100" ) @QueryParam( "limit" ) int limit ) {
+    boolean includeExtraRoles = true;
+
+    if ( addExtraRoles != null && addExtraRoles.length() > 0 ) {
+      includeExtraRoles = Boolean.parseBoolean( addExtraRoles );
+    }
+    return userRoleListService.searchRoles( prefix, includeExtraRoles, offset, limit );
+  }
+
   /**
    * Get a list of the all roles in the platform including Anonymous and Administrator.
    *
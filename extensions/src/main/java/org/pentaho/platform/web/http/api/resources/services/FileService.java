@@ -32,6 +32,11 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.channels.IllegalSelectorException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.security.GeneralSecurityException;
 import java.security.InvalidParameterException;
 import java.text.Collator;
@@ -48,6 +53,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
 
 import javax.ws.rs.core.StreamingOutput;
 
@@ -91,6 +97,8 @@ import org.pentaho.platform.repository2.ClientRepositoryPaths;
 import org.pentaho.platform.repository2.locale.PentahoLocale;
 import org.pentaho.platform.repository2.unified.fileio.RepositoryFileInputStream;
 import org.pentaho.platform.repository2.unified.fileio.RepositoryFileOutputStream;
+import org.pentaho.platform.repository2.unified.jcr.JcrRepositorySnapshot;
+import org.pentaho.platform.repository2.unified.jcr.JcrRepositorySnapshotJobs;
 import org.pentaho.platform.repository2.unified.jcr.PentahoJcrConstants;
 import org.pentaho.platform.repository2.unified.webservices.DefaultUnifiedRepositoryWebService;
 import org.pentaho.platform.api.repository2.unified.webservices.LocaleMapDto;
@@ -153,6 +161,105 @@ public class FileService {
     }
   }
 
+  /**
+   * Starts writing a snapshot of the repository into the snapshot directory ("repository-snapshot/directory" in
+   * pentaho.xml) while the server keeps running, see {@link JcrRepositorySnapshot}. The snapshot runs in the
+   * background, its outcome is available from {@link #getSystemSnapshot(String)}.
+   *
+   * @param previous Name of an earlier snapshot in the snapshot directory the new one is incremental to, or
+   *                 {@code null} for a full snapshot
+   * @return the id of the job, its state and the name of the snapshot
+   * @throws IllegalStateException if the snapshot directory is not configured or accessible to others
+   */
+  public List<Setting> systemSnapshot( String previous ) throws IOException {
+    if ( !doCanAdminister() ) {
+      throw new SecurityException();
+    }
+    File directory = getSnapshotDirectory();
+    File archive = new File( directory, "repository-snapshot-" + System.currentTimeMillis() + ".zip" );
+    JcrRepositorySnapshot snapshot =
+        JcrRepositorySnapshot.create( PentahoSessionHolder.getSession(), archive.getAbsolutePath() );
+    if ( !StringUtils.isBlank( previous ) ) {
+      // only snapshots of the snapshot directory can be named
+      File previousArchive = new File( directory, FilenameUtils.getName( previous ) );
+      if ( !previousArchive.isFile() ) {
+        throw new FileNotFoundException( previousArchive.getName() );
+      }
+      snapshot.setPrevious( previousArchive );
+    }
+    return getSnapshotJobSummary( getSnapshotJobs().submit( snapshot ) );
+  }
+
+  /**
+   * @param jobId Id returned by {@link #systemSnapshot(String)}
+   * @return the state of the job and the name of the snapshot, with the summary of its manifest once it succeeded
+   * or the error once it failed
+   * @throws FileNotFoundException if the job is unknown
+   */
+  public List<Setting> getSystemSnapshot( String jobId ) throws FileNotFoundException {
+    if ( !doCanAdminister() ) {
+      throw new SecurityException();
+    }
+    JcrRepositorySnapshotJobs.Job job = getSnapshotJobs().getJob( jobId );
+    if ( job == null ) {
+      throw new FileNotFoundException( jobId );
+    }
+    return getSnapshotJobSummary( job );
+  }
+
+  private List<Setting> getSnapshotJobSummary( JcrRepositorySnapshotJobs.Job job ) {
+    List<Setting> summary = new ArrayList<Setting>();
+    summary.add( new Setting( "job", job.getId() ) );
+    summary.add( new Setting( "state", job.getState().name() ) );
+    summary.add( new Setting( "file", job.getFile() ) );
+    Properties manifest = job.getManifest();
+    if ( manifest != null ) {
+      for ( String key : new String[] { JcrRepositorySnapshot.KEY_CHECKPOINT, JcrRepositorySnapshot.KEY_SINCE,
+        JcrRepositorySnapshot.KEY_CHUNK_COUNT, JcrRepositorySnapshot.KEY_REMOVED_COUNT,
+        JcrRepositorySnapshot.KEY_REMOVALS_TRACKED, JcrRepositorySnapshot.KEY_ACL_CHANGES_TRACKED } ) {
+        if ( manifest.getProperty( key ) != null ) {
+          summary.add( new Setting( key, manifest.getProperty( key ) ) );
+        }
+      }
+    }
+    if ( job.getError() != null ) {
+      summary.add( new Setting( "error", job.getError() ) );
+    }
+    return summary;
+  }
+
+  protected JcrRepositorySnapshotJobs getSnapshotJobs() {
+    return JcrRepositorySnapshotJobs.getInstance();
+  }
+
+  /**
+   * Snapshots hold the whole repository, so they are only written to a directory the administrator has set up for
+   * them, and which only the server user can access where the file system tells.
+   */
+  protected File getSnapshotDirectory() throws IOException {
+    String directory = PentahoSystem.getSystemSetting( "repository-snapshot/directory", null );
+    if ( StringUtils.isBlank( directory ) ) {
+      throw new IllegalStateException( "repository-snapshot/directory is not configured in pentaho.xml" );
+    }
+    Path snapshotDirectory = Paths.get( directory );
+    boolean posix = snapshotDirectory.getFileSystem().supportedFileAttributeViews().contains( "posix" );
+    if ( !Files.isDirectory( snapshotDirectory ) ) {
+      if ( posix ) {
+        Files.createDirectories( snapshotDirectory,
+          PosixFilePermissions.asFileAttribute( PosixFilePermissions.fromString( "rwx------" ) ) );
+      } else {
+        Files.createDirectories( snapshotDirectory );
+      }
+    } else if ( posix ) {
+      Set<PosixFilePermission> permissions = Files.getPosixFilePermissions( snapshotDirectory );
+      permissions.retainAll( EnumSet.range( PosixFilePermission.GROUP_READ, PosixFilePermission.OTHERS_EXECUTE ) );
+      if ( !permissions.isEmpty() ) {
+        throw new IllegalStateException( snapshotDirectory + " is accessible to other users: " + permissions );
+      }
+    }
+    return snapshotDirectory.toFile();
+  }
+
   public void systemRestore( final InputStream fileUpload, String overwriteFile,
                              String applyAclSettings, String overwriteAclSettings ) throws PlatformImportException, SecurityException {
     if ( doCanAdminister() ) {
@@ -548,6 +655,9 @@ public class FileService {
     private StreamingOutput outputStream;
     private String attachment;
     private String encodedFileName;
+    private RepositoryFile repositoryFile;
+    private Callable<File> exporter;
+    private File exportedFile;
 
     public DownloadFileWrapper( StreamingOutput outputStream, String attachment, String encodedFileName ) {
       super();
@@ -556,10 +666,56 @@ public class FileService {
       this.encodedFileName = encodedFileName;
     }
 
+    /**
+     * Wraps the download of a single file whose export is deferred until {@link #getExportedFile()} or
+     * {@link #getOutputStream()} is called.
+     */
+    public DownloadFileWrapper( RepositoryFile repositoryFile, Callable<File> exporter, String attachment,
+                                String encodedFileName ) {
+      this( null, attachment, encodedFileName );
+      this.repositoryFile = repositoryFile;
+      this.exporter = exporter;
+    }
+
     public StreamingOutput getOutputStream() {
+      if ( outputStream == null && exporter != null ) {
+        outputStream = new StreamingOutput() {
+          @Override
+          public void write( OutputStream output ) throws IOException {
+            File file;
+            try {
+              file = getExportedFile();
+            } catch ( IOException e ) {
+              throw e;
+            } catch ( Exception e ) {
+              throw new IOException( e );
+            }
+            try ( InputStream is = new FileInputStream( file ) ) {
+              IOUtils.copy( is, output );
+            }
+          }
+        };
+      }
       return outputStream;
     }
 
+    /**
+     * @return the downloaded file if the export is deferred, null otherwise
+     */
+    public RepositoryFile getRepositoryFile() {
+      return repositoryFile;
+    }
+
+    /**
+     * Performs the deferred export once and returns the exported file.
+     */
+    public synchronized File getExportedFile() throws Exception {
+      if ( exportedFile == null && exporter != null ) {
+        exportedFile = exporter.call();
+      }
+      return exportedFile;
+    }
+
     public String getAttachment() {
       return attachment;
     }
@@ -606,11 +762,17 @@ public class FileService {
     // add export handlers for each expected file type
     exportProcessor.addExportHandler( getDownloadExportHandler() );
 
+    String attachment = HttpMimeTypeListener.buildContentDispositionValue( originalFileName, true );
+    if ( !requiresZip ) {
+      // a plain file download is only exported once the caller has checked the client's validators
+      return new DownloadFileWrapper( repositoryFile, () -> exportProcessor.performExport( repositoryFile ),
+        attachment, encodedFileName );
+    }
+
     // copy streaming output
     StreamingOutput streamingOutput = getDownloadStream( repositoryFile, exportProcessor );
 
-    return new DownloadFileWrapper( streamingOutput, HttpMimeTypeListener.buildContentDispositionValue(
-      originalFileName, true ), encodedFileName );
+    return new DownloadFileWrapper( streamingOutput, attachment, encodedFileName );
   }
 
   private String makeEncodedFileName( String originalFile ) throws UnsupportedEncodingException {
@@ -664,6 +826,7 @@ public class FileService {
 
       RepositoryFileToStreamWrapper wrapper = new RepositoryFileToStreamWrapper();
       wrapper.setOutputStream( streamingOutput );
+      wrapper.setInputStream( is );
       wrapper.setRepositoryFile( repositoryFile );
 
       return wrapper;
@@ -778,6 +941,7 @@ public class FileService {
 
     RepositoryFileToStreamWrapper wrapper = new RepositoryFileToStreamWrapper();
     wrapper.setOutputStream( streamingOutput );
+    wrapper.setInputStream( is );
     wrapper.setRepositoryFile( repoFile );
     wrapper.setMimetype( is.getMimeType() );
 
@@ -1047,6 +1211,47 @@ public class FileService {
     return getRepoWs().getDeletedFiles();
   }
 
+  /**
+   * Get the locked files. Administrators can list the locks of any user, other users only their own locks.
+   *
+   * @param owner user holding the locks, every user if {@code null} (administrators only)
+   * @return locked files
+   * @throws GeneralSecurityException if a non administrator asks for the locks of another user
+   * @throws UnsupportedOperationException if the repository cannot list its locks
+   */
+  public List<RepositoryFileDto> doGetLockedFiles( String owner ) throws GeneralSecurityException {
+    if ( !doCanAdminister() ) {
+      String currentUser = PentahoSessionHolder.getSession().getName();
+      if ( owner != null && !owner.equals( currentUser ) ) {
+        throw new GeneralSecurityException();
+      }
+      owner = currentUser;
+    }
+    List<RepositoryFileDto> lockedFiles = new ArrayList<RepositoryFileDto>();
+    for ( RepositoryFile file : getRepository().getLockedFiles( owner ) ) {
+      lockedFiles.add( toFileDto( file, null, false ) );
+    }
+    return lockedFiles;
+  }
+
+  /**
+   * Unlock a list of files, e.g. to break the locks left by a user
+   *
+   * @param params Comma separated list of the ids of the files to unlock
+   * @throws GeneralSecurityException if the current user cannot unlock one of the files
+   */
+  public void doUnlockFiles( String params ) throws GeneralSecurityException {
+    String[] fileIds = FileUtils.convertCommaSeparatedStringToArray( params );
+    List<Serializable> lockedFileIds = new ArrayList<Serializable>();
+    for ( String fileId : fileIds ) {
+      if ( !getRepository().canUnlockFile( fileId ) ) {
+        throw new GeneralSecurityException();
+      }
+      lockedFileIds.add( fileId );
+    }
+    getRepository().unlockFiles( lockedFileIds );
+  }
+
   /**
    * Get metadata for a file by path id
    *
@@ -1840,6 +2045,7 @@ public class FileService {
 
   public class RepositoryFileToStreamWrapper {
     private StreamingOutput outputStream;
+    private InputStream inputStream;
     private RepositoryFile repositoryFile;
     private String mimetype;
 
@@ -1847,6 +2053,17 @@ public class FileService {
       this.outputStream = outputStream;
     }
 
+    /**
+     * Sets the unread file content backing the output stream, used to serve byte ranges.
+     */
+    public void setInputStream( InputStream inputStream ) {
+      this.inputStream = inputStream;
+    }
+
+    public InputStream getInputStream() {
+      return inputStream;
+    }
+
     public void setRepositoryFile( RepositoryFile repositoryFile ) {
       this.repositoryFile = repositoryFile;
     }
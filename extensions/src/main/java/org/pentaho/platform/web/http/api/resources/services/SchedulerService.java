@@ -38,12 +38,15 @@ import org.pentaho.platform.api.scheduler2.IJobTrigger;
 import org.pentaho.platform.api.scheduler2.IScheduler;
 import org.pentaho.platform.api.scheduler2.Job;
 import org.pentaho.platform.api.scheduler2.Job.JobState;
+import org.pentaho.platform.api.scheduler2.JobRun;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.security.SecurityHelper;
 import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
+import org.pentaho.platform.scheduler2.action.FairShareActionQueue;
 import org.pentaho.platform.scheduler2.blockout.BlockoutAction;
+import org.pentaho.platform.scheduler2.history.JobHistoryStore;
 import org.pentaho.platform.scheduler2.quartz.QuartzScheduler;
 import org.pentaho.platform.security.policy.rolebased.actions.AdministerSecurityAction;
 import org.pentaho.platform.security.policy.rolebased.actions.SchedulerAction;
@@ -159,6 +162,16 @@ public class SchedulerService {
       parameterMap.put( "logLevel", scheduleRequest.getLogLevel() );
     }
 
+    if ( scheduleRequest.getPriority() != null ) {
+      // only administrators may put their jobs ahead of the default priority
+      int priority = scheduleRequest.getPriority();
+      if ( priority > FairShareActionQueue.DEFAULT_PRIORITY
+        && !getPolicy().isAllowed( AdministerSecurityAction.NAME ) ) {
+        priority = FairShareActionQueue.DEFAULT_PRIORITY;
+      }
+      parameterMap.put( QuartzScheduler.RESERVEDMAPKEY_PRIORITY, priority );
+    }
+
     if ( isPdiFile( file ) ) {
       parameterMap = handlePDIScheduling( file, parameterMap, scheduleRequest.getPdiParameters() );
     }
@@ -366,6 +379,23 @@ public class SchedulerService {
     }
   }
 
+  /**
+   * Returns the recorded runs of a job, newest first. Users who cannot administer only see their own runs.
+   */
+  public List<JobRun> getJobHistory( String jobId ) {
+    return findJobHistory( jobId, null, null, null, 0 );
+  }
+
+  /**
+   * Queries the job history by job, user and start time range. The user name is forced to the current
+   * user when the caller cannot administer.
+   */
+  public List<JobRun> findJobHistory( String jobId, String userName, Date from, Date to, int limit ) {
+    final String owner = canAdminister() ? userName : getSession().getName();
+    final JobHistoryStore jobHistory = getJobHistoryStore();
+    return jobHistory == null ? new ArrayList<JobRun>() : jobHistory.findRuns( jobId, owner, from, to, limit );
+  }
+
   public List<Job> getBlockOutJobs() {
     return getBlockoutManager().getBlockOutJobs();
   }
@@ -473,6 +503,10 @@ public class SchedulerService {
     return PentahoSessionHolder.getSession();
   }
 
+  protected JobHistoryStore getJobHistoryStore() {
+    return PentahoSystem.get( JobHistoryStore.class, "jobHistoryStore", getSession() ); //$NON-NLS-1$
+  }
+
   public Class<IAction> getAction( String actionClass ) throws ClassNotFoundException {
     return ( (Class<IAction>) Class.forName( actionClass ) );
   }
@@ -155,6 +155,34 @@ public class UserRoleDaoService {
     }
   }
 
+  public UserListWrapper searchUsers( String prefix, int offset, int limit )
+    throws UncategorizedUserRoleDaoException, SecurityException {
+    if ( canAdminister() ) {
+      return new UserListWrapper( getRoleDao().getUserNames( TenantUtils.getCurrentTenant(), prefix, offset, limit ) );
+    } else {
+      throw new SecurityException();
+    }
+  }
+
+  public RoleListWrapper searchRoles( String prefix, int offset, int limit )
+    throws UncategorizedUserRoleDaoException, SecurityException {
+    if ( canAdminister() ) {
+      return new RoleListWrapper( getRoleDao().getRoleNames( TenantUtils.getCurrentTenant(), prefix, offset, limit ) );
+    } else {
+      throw new SecurityException();
+    }
+  }
+
+  public UserListWrapper searchRoleMembers( String roleName, String prefix, int offset, int limit )
+    throws UncategorizedUserRoleDaoException, SecurityException {
+    if ( canAdminister() ) {
+      return new UserListWrapper(
+        getRoleDao().getRoleMemberNames( TenantUtils.getCurrentTenant(), roleName, prefix, offset, limit ) );
+    } else {
+      throw new SecurityException();
+    }
+  }
+
   private boolean containsReservedChars( String username ) {
     StringBuffer reservedChars = new FileService().doGetReservedChars();
     return StringUtils.containsAny( username, reservedChars );
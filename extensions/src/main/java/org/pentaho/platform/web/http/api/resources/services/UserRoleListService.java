@@ -22,6 +22,7 @@ package org.pentaho.platform.web.http.api.resources.services;
 
 import org.pentaho.platform.api.engine.IAuthorizationPolicy;
 import org.pentaho.platform.api.engine.IUserRoleListService;
+import org.pentaho.platform.api.engine.security.userroledao.UserRoleNames;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.security.policy.rolebased.actions.AdministerSecurityAction;
 import org.pentaho.platform.security.policy.rolebased.actions.RepositoryCreateAction;
@@ -91,6 +92,23 @@ public class UserRoleListService {
     return new RoleListWrapper( roles );
   }
 
+  /**
+   * Returns one page of the users whose name starts with <code>prefix</code>, ignoring case. The underlying
+   * {@link IUserRoleListService} has no paged lookup, so this saves the transfer and rendering of the full list but not
+   * the lookup itself.
+   */
+  public UserListWrapper searchUsers( String prefix, int offset, int limit ) {
+    return new UserListWrapper( UserRoleNames.page( getUserRoleListService().getAllUsers(), prefix, offset, limit ) );
+  }
+
+  /**
+   * Returns one page of the roles whose name starts with <code>prefix</code>, ignoring case.
+   */
+  public RoleListWrapper searchRoles( String prefix, boolean includeExtraRoles, int offset, int limit ) {
+    return new RoleListWrapper(
+      UserRoleNames.page( getRoles( includeExtraRoles ).getRoles(), prefix, offset, limit ) );
+  }
+
   public RoleListWrapper getAllRoles() {
     Set<String> existingRoles = new HashSet<>( getUserRoleListService().getAllRoles() );
     List<String> extraRoles = getExtraRoles();
@@ -0,0 +1,287 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources.utils;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.repository2.unified.fileio.RepositoryFileInputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Date;
+
+/**
+ * Helpers for conditional (<code>If-None-Match</code>, <code>If-Modified-Since</code>) and range
+ * (<code>Range</code>, <code>If-Range</code>) requests on repository file content.
+ */
+public class ConditionalRequestUtils {
+
+  public static final String IF_NONE_MATCH = "If-None-Match";
+  public static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+  public static final String IF_RANGE = "If-Range";
+  public static final String RANGE = "Range";
+  public static final String ACCEPT_RANGES = "Accept-Ranges";
+  public static final String CONTENT_RANGE = "Content-Range";
+  public static final String BYTES = "bytes";
+
+  public static final int SC_PARTIAL_CONTENT = 206;
+  public static final int SC_REQUESTED_RANGE_NOT_SATISFIABLE = 416;
+
+  private ConditionalRequestUtils() {
+  }
+
+  /**
+   * Builds a strong entity tag from the file id and version id. When versioning is disabled the last modified date
+   * stands in for the version.
+   *
+   * @param file    repository file
+   * @param variant distinguishes representations of the same file, may be null
+   * @return the tag, or null if the file carries no usable validator
+   */
+  public static EntityTag getEntityTag( RepositoryFile file, String variant ) {
+    if ( file == null || file.getId() == null ) {
+      return null;
+    }
+    Date lastModified = getLastModified( file );
+    Object version = file.getVersionId() != null ? file.getVersionId()
+      : lastModified != null ? Long.toString( lastModified.getTime() ) : null;
+    if ( version == null ) {
+      return null;
+    }
+    StringBuilder value = new StringBuilder().append( file.getId() ).append( '-' ).append( version );
+    if ( variant != null ) {
+      value.append( '-' ).append( variant );
+    }
+    return new EntityTag( value.toString().replace( "\"", "" ) );
+  }
+
+  /**
+   * Returns the last modified date of the file truncated to the second, as used by HTTP dates.
+   */
+  public static Date getLastModified( RepositoryFile file ) {
+    if ( file == null ) {
+      return null;
+    }
+    Date date = file.getLastModifiedDate() != null ? file.getLastModifiedDate() : file.getCreatedDate();
+    return date == null ? null : new Date( date.getTime() / 1000 * 1000 );
+  }
+
+  /**
+   * Evaluates <code>If-None-Match</code> and, in its absence, <code>If-Modified-Since</code>.
+   *
+   * @return true if the client copy is current and a 304 should be sent
+   */
+  public static boolean isNotModified( HttpServletRequest request, EntityTag tag, Date lastModified ) {
+    if ( request == null ) {
+      return false;
+    }
+    String ifNoneMatch = request.getHeader( IF_NONE_MATCH );
+    if ( ifNoneMatch != null ) {
+      return tag != null && matches( ifNoneMatch, tag, false );
+    }
+    long ifModifiedSince = getDateHeader( request, IF_MODIFIED_SINCE );
+    return ifModifiedSince >= 0 && lastModified != null && lastModified.getTime() <= ifModifiedSince;
+  }
+
+  /**
+   * Evaluates the <code>Range</code> and <code>If-Range</code> headers. Only a single byte range is served; multiple
+   * ranges, malformed headers and stale <code>If-Range</code> validators yield the full content.
+   *
+   * @param length content length, ranges are not served if unknown (&lt;= 0)
+   * @return the requested range, or null to send the full content
+   */
+  public static ByteRange getRange( HttpServletRequest request, EntityTag tag, Date lastModified, long length ) {
+    if ( request == null || length <= 0 ) {
+      return null;
+    }
+    String range = request.getHeader( RANGE );
+    if ( range == null ) {
+      return null;
+    }
+    String ifRange = request.getHeader( IF_RANGE );
+    if ( ifRange != null ) {
+      if ( ifRange.trim().startsWith( "\"" ) || ifRange.trim().startsWith( "W/" ) ) {
+        if ( tag == null || !matches( ifRange, tag, true ) ) {
+          return null;
+        }
+      } else {
+        long date = getDateHeader( request, IF_RANGE );
+        if ( date < 0 || lastModified == null || lastModified.getTime() != date ) {
+          return null;
+        }
+      }
+    }
+    return parseRange( range, length );
+  }
+
+  static ByteRange parseRange( String header, long length ) {
+    String value = header.trim();
+    if ( !value.startsWith( BYTES + "=" ) ) {
+      return null;
+    }
+    value = value.substring( BYTES.length() + 1 ).trim();
+    if ( value.indexOf( ',' ) >= 0 ) {
+      return null;
+    }
+    int dash = value.indexOf( '-' );
+    if ( dash < 0 ) {
+      return null;
+    }
+    String first = value.substring( 0, dash ).trim();
+    String last = value.substring( dash + 1 ).trim();
+    try {
+      if ( first.isEmpty() ) {
+        // suffix range: the last n bytes
+        long suffix = Long.parseLong( last );
+        if ( suffix <= 0 ) {
+          return new ByteRange( length, length - 1, length );
+        }
+        return new ByteRange( Math.max( 0, length - suffix ), length - 1, length );
+      }
+      long start = Long.parseLong( first );
+      long end = last.isEmpty() ? length - 1 : Math.min( Long.parseLong( last ), length - 1 );
+      if ( start < 0 || ( !last.isEmpty() && Long.parseLong( last ) < start ) ) {
+        return null;
+      }
+      return new ByteRange( start, end, length );
+    } catch ( NumberFormatException e ) {
+      return null;
+    }
+  }
+
+  /**
+   * Streams <code>count</code> bytes of <code>is</code> starting at <code>offset</code>, or everything from the offset
+   * when <code>count</code> is negative. File backed content is copied through its {@link FileChannel} without an
+   * intermediate buffer; the stream is closed afterwards.
+   */
+  public static StreamingOutput getStreamingOutput( final InputStream is, final long offset, final long count ) {
+    return new StreamingOutput() {
+      @Override
+      public void write( OutputStream output ) throws IOException {
+        InputStream content = is instanceof RepositoryFileInputStream
+          ? ( (RepositoryFileInputStream) is ).getContentStream() : is;
+        try {
+          if ( content instanceof FileInputStream ) {
+            transfer( ( (FileInputStream) content ).getChannel(), output, offset, count );
+          } else {
+            IOUtils.copyLarge( content, output, offset, count );
+          }
+          output.flush();
+        } finally {
+          IOUtils.closeQuietly( is );
+        }
+      }
+    };
+  }
+
+  private static void transfer( FileChannel channel, OutputStream output, long offset, long count )
+    throws IOException {
+    long position = channel.position() + offset;
+    long remaining = count < 0 ? channel.size() - position : Math.min( count, channel.size() - position );
+    WritableByteChannel target = Channels.newChannel( output );
+    while ( remaining > 0 ) {
+      long sent = channel.transferTo( position, remaining, target );
+      if ( sent <= 0 ) {
+        break;
+      }
+      position += sent;
+      remaining -= sent;
+    }
+  }
+
+  private static boolean matches( String header, EntityTag tag, boolean strong ) {
+    if ( "*".equals( header.trim() ) ) {
+      return !strong;
+    }
+    for ( String candidate : StringUtils.split( header, ',' ) ) {
+      String value = candidate.trim();
+      boolean weak = value.startsWith( "W/" );
+      if ( weak ) {
+        if ( strong ) {
+          continue;
+        }
+        value = value.substring( 2 );
+      }
+      if ( value.length() >= 2 && value.startsWith( "\"" ) && value.endsWith( "\"" ) ) {
+        value = value.substring( 1, value.length() - 1 );
+      }
+      if ( value.equals( tag.getValue() ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static long getDateHeader( HttpServletRequest request, String name ) {
+    try {
+      return request.getDateHeader( name );
+    } catch ( IllegalArgumentException e ) {
+      return -1;
+    }
+  }
+
+  /**
+   * An inclusive byte range of a content of known length.
+   */
+  public static class ByteRange {
+    private final long start;
+    private final long end;
+    private final long total;
+
+    ByteRange( long start, long end, long total ) {
+      this.start = start;
+      this.end = end;
+      this.total = total;
+    }
+
+    public long getStart() {
+      return start;
+    }
+
+    public long getEnd() {
+      return end;
+    }
+
+    public long getLength() {
+      return end - start + 1;
+    }
+
+    public boolean isSatisfiable() {
+      return start < total && start <= end;
+    }
+
+    /**
+     * @return the <code>Content-Range</code> header value
+     */
+    public String toContentRange() {
+      return isSatisfiable() ? BYTES + " " + start + "-" + end + "/" + total : BYTES + " */" + total;
+    }
+  }
+}
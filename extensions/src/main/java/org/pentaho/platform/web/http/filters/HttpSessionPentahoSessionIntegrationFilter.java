@@ -22,6 +22,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.util.ITempFileDeleter;
+import org.pentaho.platform.engine.core.metrics.RequestMetrics;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.core.system.StandaloneSession;
@@ -97,6 +98,11 @@ import java.util.Locale;
  * <code>false</code> will cause a startup time error).
  * </p>
  * <p/>
+ * Requests that the {@link #setRequestClassifier(SessionRequestClassifier) request classifier} identifies as static
+ * resources or stateless API calls never create a <code>HttpSession</code>. When they do not already have one they
+ * get a lightweight, anonymous Hitachi Vantara session that lives for the duration of the request.
+ * </p>
+ * <p/>
  * This filter MUST be executed BEFORE any code that expects the <code>PentahoSessionHolder</code> to contain a valid
  * <code>IPentahoSession</code> by the time they execute.
  * </p>
@@ -147,6 +153,13 @@ public class HttpSessionPentahoSessionIntegrationFilter implements Filter, Initi
 
   private boolean ssoEnabled = false;
 
+  private SessionRequestClassifier requestClassifier = new SessionRequestClassifier();
+
+  /**
+   * Authentication providers are registered at startup; once found there is no need to look them up on every request.
+   */
+  private volatile boolean authenticationProvidersFound = false;
+
   // ~ Methods ========================================================================================================
 
   /**
@@ -181,12 +194,13 @@ public class HttpSessionPentahoSessionIntegrationFilter implements Filter, Initi
     IPentahoSession pentahoSession;
 
     HttpSession httpSession = httpRequest.getSession( false );
-    if ( httpSession != null ) {
-      pentahoSession = new PentahoHttpSession( null, httpSession, httpRequest.getLocale(), null );
-    } else {
-      pentahoSession = new NoDestroyStandaloneSession( null );
+    if ( httpSession == null ) {
+      // the temp file deleter of a standalone session is created on first use
+      return generateLightweightPentahoSession();
     }
 
+    pentahoSession = new PentahoHttpSession( null, httpSession, httpRequest.getLocale(), null );
+
     if ( callSetAuthenticatedForAnonymousUsers ) {
       pentahoSession.setAuthenticated( getAnonymousUser() );
     }
@@ -199,6 +213,19 @@ public class HttpSessionPentahoSessionIntegrationFilter implements Filter, Initi
     return pentahoSession;
   }
 
+  /**
+   * Creates a session that is not bound to any <code>HttpSession</code>, for requests which must not create one.
+   */
+  protected IPentahoSession generateLightweightPentahoSession() {
+    IPentahoSession pentahoSession = new NoDestroyStandaloneSession( null );
+
+    if ( callSetAuthenticatedForAnonymousUsers ) {
+      pentahoSession.setAuthenticated( getAnonymousUser() );
+    }
+
+    return pentahoSession;
+  }
+
   /**
    * Copied from {@code PentahoHttpSessionHelper.getPentahoSession(HttpServletRequest)}. Not sure what locale code was
    * doing there in the first place. TODO mlowery move this somewhere else
@@ -239,12 +266,23 @@ public class HttpSessionPentahoSessionIntegrationFilter implements Filter, Initi
       return;
     }
 
-    HttpSession httpSession = safeGetSession( httpRequest, forceEagerSessionCreation );
-    boolean httpSessionExistedAtStartOfRequest = httpSession != null;
-    IPentahoSession pentahoSessionBeforeChainExecution = readPentahoSessionFromHttpSession( httpSession );
+    final RequestMetrics metrics = RequestMetrics.getInstance();
+
+    // Static resources and stateless API calls never need a HttpSession of their own
+    final boolean lightweight = requestClassifier != null
+      && requestClassifier.classify( httpRequest ) != SessionRequestClassifier.RequestType.STATEFUL;
+
+    HttpSession httpSession;
+    boolean httpSessionExistedAtStartOfRequest;
+    IPentahoSession pentahoSessionBeforeChainExecution;
+    try ( RequestMetrics.Span span = metrics.start( RequestMetrics.Category.SESSION, "read" ) ) { //$NON-NLS-1$
+      httpSession = safeGetSession( httpRequest, forceEagerSessionCreation && !lightweight );
+      httpSessionExistedAtStartOfRequest = httpSession != null;
+      pentahoSessionBeforeChainExecution = readPentahoSessionFromHttpSession( httpSession );
 
-    if ( httpSessionExistedAtStartOfRequest ) {
-      setSessionExpirationCookies( httpSession, pentahoSessionBeforeChainExecution, httpResponse );
+      if ( httpSessionExistedAtStartOfRequest ) {
+        setSessionExpirationCookies( httpSession, pentahoSessionBeforeChainExecution, httpResponse );
+      }
     }
 
     // Make the HttpSession null, as we don't want to keep a reference to it lying
@@ -254,7 +292,11 @@ public class HttpSessionPentahoSessionIntegrationFilter implements Filter, Initi
     localeLeftovers( httpRequest );
 
     if ( pentahoSessionBeforeChainExecution == null ) {
-      pentahoSessionBeforeChainExecution = generatePentahoSession( httpRequest );
+      try ( RequestMetrics.Span span = metrics.start( RequestMetrics.Category.SESSION,
+        lightweight ? "lightweight" : "generate" ) ) { //$NON-NLS-1$ //$NON-NLS-2$
+        pentahoSessionBeforeChainExecution =
+          lightweight ? generateLightweightPentahoSession() : generatePentahoSession( httpRequest );
+      }
 
       if ( logger.isDebugEnabled() ) {
         logger.debug( "Found no IPentahoSession in HTTP session; created new IPentahoSession" );
@@ -272,7 +314,8 @@ public class HttpSessionPentahoSessionIntegrationFilter implements Filter, Initi
     // if anything in the chain does a sendError() or sendRedirect().
 
     OnRedirectUpdateSessionResponseWrapper responseWrapper =
-      new OnRedirectUpdateSessionResponseWrapper( httpResponse, httpRequest, httpSessionExistedAtStartOfRequest );
+      new OnRedirectUpdateSessionResponseWrapper( httpResponse, httpRequest, httpSessionExistedAtStartOfRequest,
+        !lightweight );
 
     // Proceed with chain
 
@@ -293,9 +336,14 @@ public class HttpSessionPentahoSessionIntegrationFilter implements Filter, Initi
       // storePentahoSessionInHttpSession() might already have been called by the response wrapper
       // if something in the chain called sendError() or sendRedirect(). This ensures we only call it
       // once per request.
-      if ( !responseWrapper.isSessionUpdateDone() ) {
-        storePentahoSessionInHttpSession( pentahoSessionAfterChainExecution, httpRequest,
-          httpSessionExistedAtStartOfRequest );
+      // A lightweight request that kept the session it started with has nothing to write back.
+      final boolean unchanged =
+        lightweight && pentahoSessionAfterChainExecution == pentahoSessionBeforeChainExecution;
+      if ( !responseWrapper.isSessionUpdateDone() && !unchanged ) {
+        try ( RequestMetrics.Span span = metrics.start( RequestMetrics.Category.SESSION, "store" ) ) { //$NON-NLS-1$
+          storePentahoSessionInHttpSession( pentahoSessionAfterChainExecution, httpRequest,
+            httpSessionExistedAtStartOfRequest, !lightweight );
+        }
       }
 
       localeReset();
@@ -353,10 +401,13 @@ public class HttpSessionPentahoSessionIntegrationFilter implements Filter, Initi
    *          indicates whether there was a session in place before the filter chain executed. If this is true, and the
    *          session is found to be null, this indicates that it was invalidated during the request and a new session
    *                                           will now be created.
+   * @param createAllowed
+   *          false if the request must not create a <code>HttpSession</code>, e.g. for a static resource.
    * 
    */
   private void storePentahoSessionInHttpSession( IPentahoSession pentahoSession, HttpServletRequest request,
-                                                 boolean httpSessionExistedAtStartOfRequest ) {
+                                                 boolean httpSessionExistedAtStartOfRequest,
+                                                 boolean createAllowed ) {
     HttpSession httpSession = safeGetSession( request, false );
 
     if ( httpSession == null ) {
@@ -375,6 +426,11 @@ public class HttpSessionPentahoSessionIntegrationFilter implements Filter, Initi
               + "(because the allowSessionCreation property is false) - Pentaho session thus not "
               + "stored for next request" );
           }
+        } else if ( !createAllowed ) {
+          if ( logger.isDebugEnabled() ) {
+            logger.debug( "The HttpSession is currently null, and the request does not need one "
+              + "(static resource or stateless API call) - Pentaho session thus not stored for next request" );
+          }
         } else if ( pentahoSession != null ) {
           if ( logger.isDebugEnabled() ) {
             logger.debug( "HttpSession being created as Pentaho session is non-null" );
@@ -430,16 +486,13 @@ public class HttpSessionPentahoSessionIntegrationFilter implements Filter, Initi
 
     if ( "true".equals( showDialog ) ) {
 
-      final List<AuthenticationProvider> authenticationProviders =
-        PentahoSystem.getAll( AuthenticationProvider.class, pentahoSession );
-
-      //No authentication - no session expiration
-      if ( null == authenticationProviders || authenticationProviders.isEmpty() ) {
+      //No session expired dialog when SSO is used
+      if ( isSsoEnabled() ) {
         return;
       }
 
-      //No session expired dialog when SSO is used
-      if ( isSsoEnabled() ) {
+      //No authentication - no session expiration
+      if ( !hasAuthenticationProviders( pentahoSession ) ) {
         return;
       }
 
@@ -470,6 +523,15 @@ public class HttpSessionPentahoSessionIntegrationFilter implements Filter, Initi
     }
   }
 
+  private boolean hasAuthenticationProviders( final IPentahoSession pentahoSession ) {
+    if ( !authenticationProvidersFound ) {
+      final List<AuthenticationProvider> authenticationProviders =
+        PentahoSystem.getAll( AuthenticationProvider.class, pentahoSession );
+      authenticationProvidersFound = null != authenticationProviders && !authenticationProviders.isEmpty();
+    }
+    return authenticationProvidersFound;
+  }
+
   private Locale readLocaleOverrideFromHttpSession( HttpServletRequest httpRequest ) {
     HttpSession httpSession = httpRequest.getSession( false );
     return httpSession != null
@@ -524,6 +586,18 @@ public class HttpSessionPentahoSessionIntegrationFilter implements Filter, Initi
     this.ssoEnabled = ssoEnabled;
   }
 
+  public SessionRequestClassifier getRequestClassifier() {
+    return requestClassifier;
+  }
+
+  /**
+   * Identifies the requests that do not need a <code>HttpSession</code>. A <code>null</code> classifier handles every
+   * request as stateful.
+   */
+  public void setRequestClassifier( SessionRequestClassifier requestClassifier ) {
+    this.requestClassifier = requestClassifier;
+  }
+
   // ~ Inner Classes ==================================================================================================
 
   /**
@@ -537,6 +611,8 @@ public class HttpSessionPentahoSessionIntegrationFilter implements Filter, Initi
 
     boolean httpSessionExistedAtStartOfRequest;
 
+    boolean createAllowed;
+
     // Used to ensure storePentahoSessionInHttpSession() is only
     // called once.
     boolean sessionUpdateDone = false;
@@ -545,13 +621,15 @@ public class HttpSessionPentahoSessionIntegrationFilter implements Filter, Initi
      * Takes the parameters required to call <code>storePentahoSessionInHttpSession()</code> in addition to the response
      * object we are wrapping.
      *
-     * @see #storePentahoSessionInHttpSession(IPentahoSession, HttpServletRequest, boolean)
+     * @see #storePentahoSessionInHttpSession(IPentahoSession, HttpServletRequest, boolean, boolean)
      */
     public OnRedirectUpdateSessionResponseWrapper( HttpServletResponse response, HttpServletRequest request,
-                                                   boolean httpSessionExistedAtStartOfRequest ) {
+                                                   boolean httpSessionExistedAtStartOfRequest,
+                                                   boolean createAllowed ) {
       super( response );
       this.request = request;
       this.httpSessionExistedAtStartOfRequest = httpSessionExistedAtStartOfRequest;
+      this.createAllowed = createAllowed;
     }
 
     /**
@@ -589,7 +667,7 @@ public class HttpSessionPentahoSessionIntegrationFilter implements Filter, Initi
         return;
       }
       IPentahoSession pentahoSession = PentahoSessionHolder.getSession();
-      storePentahoSessionInHttpSession( pentahoSession, request, httpSessionExistedAtStartOfRequest );
+      storePentahoSessionInHttpSession( pentahoSession, request, httpSessionExistedAtStartOfRequest, createAllowed );
       sessionUpdateDone = true;
     }
 
@@ -619,9 +697,13 @@ public class HttpSessionPentahoSessionIntegrationFilter implements Filter, Initi
    * 
    * Until now, Standalone sessions were only used for scheduled jobs. This is a new use for StandaloneSessions.
    *
+   * The {@link ITempFileDeleter} is looked up the first time it is asked for, since most requests never create a
+   * temporary file.
+   *
    * @author mlowery
    */
-  private static class NoDestroyStandaloneSession extends StandaloneSession {
+  @VisibleForTesting
+  static class NoDestroyStandaloneSession extends StandaloneSession {
 
     private static final long serialVersionUID = -2402127216157794843L;
 
@@ -629,6 +711,18 @@ public class HttpSessionPentahoSessionIntegrationFilter implements Filter, Initi
       super( name );
     }
 
+    @Override
+    public Object getAttribute( final String attributeName ) {
+      Object value = super.getAttribute( attributeName );
+      if ( value == null && ITempFileDeleter.DELETER_SESSION_VARIABLE.equals( attributeName ) ) {
+        value = PentahoSystem.get( ITempFileDeleter.class, this );
+        if ( value != null ) {
+          setAttribute( attributeName, value );
+        }
+      }
+      return value;
+    }
+
     @Override
     public void destroy() {
       // nothing to do
@@ -22,6 +22,7 @@ package org.pentaho.platform.web.http.filters;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.engine.core.metrics.RequestMetrics;
 import org.pentaho.platform.util.RequestIdUtil;
 import org.slf4j.MDC;
 
@@ -50,6 +51,7 @@ public class RequestIdFilter implements Filter {
     String requestId = Optional.ofNullable( request.getHeader( RequestIdUtil.X_REQUEST_ID ) ).orElse(
       UUID.randomUUID().toString() );
 
+    RequestMetrics.Span span = RequestMetrics.getInstance().startRequest( requestId, getRequestName( request ) );
     try {
 
       if ( logger.isDebugEnabled() ) {
@@ -60,6 +62,7 @@ public class RequestIdFilter implements Filter {
       chain.doFilter( req, resp );
 
     } finally {
+      span.close();
 
       if ( logger.isDebugEnabled() ) {
         logger.debug( "Exiting request with request id of: " + requestId );
@@ -69,6 +72,22 @@ public class RequestIdFilter implements Filter {
     }
   }
 
+  /**
+   * Names the request after the first segment of its path, e.g. {@code /api} or {@code /plugin}, which keeps the
+   * number of request timers small.
+   */
+  static String getRequestName( HttpServletRequest request ) {
+    String path = request.getServletPath();
+    if ( path == null || path.isEmpty() || "/".equals( path ) ) {
+      path = request.getPathInfo();
+    }
+    if ( path == null || path.isEmpty() ) {
+      return "/";
+    }
+    int end = path.indexOf( '/', 1 );
+    return end < 0 ? path : path.substring( 0, end );
+  }
+
   public void init( FilterConfig config ) throws ServletException {
 
   }
@@ -0,0 +1,165 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.filters;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Tells the {@link HttpSessionPentahoSessionIntegrationFilter} which requests need a Pentaho session bound to an
+ * HTTP session.
+ *
+ * <ul>
+ * <li>{@link RequestType#STATIC_RESOURCE}: <code>GET</code> and <code>HEAD</code> requests of a static file, by
+ * extension (css, js, images, fonts...) or by path prefix.</li>
+ * <li>{@link RequestType#STATELESS_API}: requests authenticated by a token in the <code>Authorization</code>
+ * header, with one of the configured schemes (<code>Bearer</code> by default). Those clients do not send the session
+ * cookie back, so a session created for them would never be used again.</li>
+ * <li>{@link RequestType#STATEFUL}: everything else.</li>
+ * </ul>
+ *
+ * <p>Configured on the <code>httpSessionPentahoSessionContextIntegrationFilter</code> bean in
+ * applicationContext-spring-security.xml.
+ */
+public class SessionRequestClassifier {
+
+  public enum RequestType {
+    STATEFUL, STATIC_RESOURCE, STATELESS_API
+  }
+
+  private static final String AUTHORIZATION_HEADER = "Authorization"; //$NON-NLS-1$
+
+  private boolean enabled = true;
+
+  private Set<String> staticExtensions = new HashSet<>( Arrays.asList(
+    "css", "js", "map", "png", "gif", "jpg", "jpeg", "svg", "ico", "woff", "woff2", "ttf", "eot" ) ); //$NON-NLS-1$
+
+  private List<String> staticPathPrefixes = new ArrayList<>();
+
+  private List<String> statelessAuthorizationSchemes = new ArrayList<>( Arrays.asList( "Bearer" ) ); //$NON-NLS-1$
+
+  public RequestType classify( HttpServletRequest request ) {
+    if ( !enabled ) {
+      return RequestType.STATEFUL;
+    }
+    if ( isStatelessApi( request ) ) {
+      return RequestType.STATELESS_API;
+    }
+    if ( isStaticResource( request ) ) {
+      return RequestType.STATIC_RESOURCE;
+    }
+    return RequestType.STATEFUL;
+  }
+
+  private boolean isStatelessApi( HttpServletRequest request ) {
+    final String authorization = request.getHeader( AUTHORIZATION_HEADER );
+    if ( authorization == null ) {
+      return false;
+    }
+    for ( String scheme : statelessAuthorizationSchemes ) {
+      if ( authorization.length() > scheme.length()
+        && authorization.regionMatches( true, 0, scheme, 0, scheme.length() )
+        && authorization.charAt( scheme.length() ) == ' ' ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isStaticResource( HttpServletRequest request ) {
+    final String method = request.getMethod();
+    if ( !"GET".equals( method ) && !"HEAD".equals( method ) ) { //$NON-NLS-1$ //$NON-NLS-2$
+      return false;
+    }
+    final String path = getPath( request );
+    for ( String prefix : staticPathPrefixes ) {
+      if ( path.startsWith( prefix ) ) {
+        return true;
+      }
+    }
+    final int dot = path.lastIndexOf( '.' );
+    return dot > path.lastIndexOf( '/' )
+      && staticExtensions.contains( path.substring( dot + 1 ).toLowerCase( Locale.ROOT ) );
+  }
+
+  private static String getPath( HttpServletRequest request ) {
+    String path = request.getRequestURI();
+    if ( path == null ) {
+      return "";
+    }
+    // path parameters, e.g. ;jsessionid=...
+    final int semicolon = path.indexOf( ';' );
+    if ( semicolon >= 0 ) {
+      path = path.substring( 0, semicolon );
+    }
+    final String contextPath = request.getContextPath();
+    if ( contextPath != null && path.startsWith( contextPath ) ) {
+      path = path.substring( contextPath.length() );
+    }
+    return path;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * When disabled every request is handled as {@link RequestType#STATEFUL}.
+   */
+  public void setEnabled( boolean enabled ) {
+    this.enabled = enabled;
+  }
+
+  public Set<String> getStaticExtensions() {
+    return staticExtensions;
+  }
+
+  /**
+   * @param staticExtensions lower case file extensions, without the dot.
+   */
+  public void setStaticExtensions( Set<String> staticExtensions ) {
+    this.staticExtensions = staticExtensions;
+  }
+
+  public List<String> getStaticPathPrefixes() {
+    return staticPathPrefixes;
+  }
+
+  /**
+   * @param staticPathPrefixes paths relative to the context path, e.g. <code>/content/common-ui/resources/</code>.
+   */
+  public void setStaticPathPrefixes( List<String> staticPathPrefixes ) {
+    this.staticPathPrefixes = staticPathPrefixes;
+  }
+
+  public List<String> getStatelessAuthorizationSchemes() {
+    return statelessAuthorizationSchemes;
+  }
+
+  public void setStatelessAuthorizationSchemes( List<String> statelessAuthorizationSchemes ) {
+    this.statelessAuthorizationSchemes = statelessAuthorizationSchemes;
+  }
+}
@@ -33,6 +33,7 @@ import org.pentaho.platform.api.engine.IParameterProvider;
 import org.pentaho.platform.api.engine.IPentahoRequestContext;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.IPluginManager;
+import org.pentaho.platform.engine.core.metrics.RequestMetrics;
 import org.pentaho.platform.engine.core.solution.SimpleParameterProvider;
 import org.pentaho.platform.engine.core.system.PentahoRequestContextHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
@@ -303,7 +304,10 @@ public class GenericServlet extends ServletBase {
       contentGenerator.setUrlFactory( urlFactory );
       // String contentType = request.getContentType();
       // contentGenerator.setInput(input);
-      contentGenerator.createContent();
+      try ( RequestMetrics.Span span = RequestMetrics.getInstance()
+        .start( RequestMetrics.Category.CONTENT_GENERATOR, pluginId + "/" + contentGeneratorId ) ) {
+        contentGenerator.createContent();
+      }
       if ( PentahoSystem.debug ) {
         debug( "Generic Servlet content generate successfully" ); //$NON-NLS-1$
       }
@@ -27,6 +27,7 @@ import com.sun.jersey.spi.container.servlet.WebConfig;
 import com.sun.jersey.spi.spring.container.servlet.SpringServlet;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.web.servlet.jaxrs.RequestMetricsResourceFilterFactory;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
@@ -144,6 +145,7 @@ public class JAXRSPluginServlet extends SpringServlet implements ApplicationCont
       rc.getFeatures().put( ResourceConfig.FEATURE_TRACE, true );
       rc.getFeatures().put( ResourceConfig.FEATURE_TRACE_PER_REQUEST, true );
     }
+    RequestMetricsResourceFilterFactory.register( rc );
     super.initiate( rc, wa );
   }
 
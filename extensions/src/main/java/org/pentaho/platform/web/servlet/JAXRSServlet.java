@@ -39,6 +39,7 @@ import com.sun.jersey.spi.spring.container.servlet.SpringServlet;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.web.servlet.jaxrs.RequestMetricsResourceFilterFactory;
 import org.pentaho.platform.engine.core.system.objfac.spring.PentahoBeanScopeValidatorPostProcessor;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ConfigurableApplicationContext;
@@ -151,6 +152,7 @@ public class JAXRSServlet extends SpringServlet {
       rc.getFeatures().put( ResourceConfig.FEATURE_TRACE, true );
       rc.getFeatures().put( ResourceConfig.FEATURE_TRACE_PER_REQUEST, true );
     }
+    RequestMetricsResourceFilterFactory.register( rc );
     callSuperInitiate( rc, wa );
     if ( logger.isDebugEnabled() ) {
       MessageBodyWorkers messageBodyWorkers = wa.getMessageBodyWorkers();
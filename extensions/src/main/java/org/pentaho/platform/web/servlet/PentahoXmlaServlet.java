@@ -34,6 +34,7 @@ import mondrian.xmla.XmlaHandler.ConnectionFactory;
 import mondrian.xmla.impl.DynamicDatasourceXmlaServlet;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.Predicate;
+import org.apache.commons.lang.math.NumberUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.vfs2.FileSystemException;
@@ -58,21 +59,35 @@ import org.pentaho.platform.engine.services.solution.PentahoEntityResolver;
 import org.pentaho.platform.plugin.action.mondrian.catalog.IMondrianCatalogService;
 import org.pentaho.platform.plugin.action.mondrian.catalog.MondrianCatalog;
 import org.pentaho.platform.plugin.action.mondrian.catalog.MondrianCatalogHelper;
+import org.pentaho.platform.plugin.action.olap.XmlaDiscoverCache;
 import org.pentaho.platform.plugin.services.connections.mondrian.MDXConnection;
 import org.pentaho.platform.repository.solution.filebased.MondrianVfs;
 import org.pentaho.platform.repository.solution.filebased.SolutionRepositoryVfsFileObject;
+import org.pentaho.platform.util.messages.LocaleHelper;
 import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
 import org.pentaho.platform.web.servlet.messages.Messages;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.xml.sax.EntityResolver;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Filters out <code>DataSource</code> elements that are not XMLA-related.
@@ -83,6 +98,10 @@ import java.util.concurrent.Callable;
  * <p/>
  * The convention here is that any <code>DataSource</code> elements with
  * <code>&lt;ProviderType&gt;None&lt;/ProviderType&gt;</code> are considered non-XMLA and are filtered out.
+ * <p/>
+ * The responses of the discovery requests are kept in the {@link XmlaDiscoverCache}, and the number of requests a
+ * user runs at the same time is limited by <code>xmla/max-concurrent-requests-per-user</code> in pentaho.xml. A request
+ * waiting longer than <code>xmla/max-wait-seconds</code> for its turn is rejected with a 503 status.
  *
  * @author mlowery
  */
@@ -107,6 +126,27 @@ public class PentahoXmlaServlet extends DynamicDatasourceXmlaServlet {
   private final MondrianCatalogHelper mondrianCatalogService;
   private CatalogLocator catalogLocator;
 
+  static final String MAX_CONCURRENT_REQUESTS_SETTING = "xmla/max-concurrent-requests-per-user"; //$NON-NLS-1$
+  static final String MAX_WAIT_SETTING = "xmla/max-wait-seconds"; //$NON-NLS-1$
+
+  private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+  private static final int DEFAULT_MAX_WAIT_SECONDS = 30;
+
+  /**
+   * Discovery request types whose response only depends on the schema and the roles.
+   */
+  private static final Set<String> CACHEABLE_DISCOVER_TYPES = new TreeSet<>( Arrays.asList(
+    "DISCOVER_DATASOURCES", "DISCOVER_PROPERTIES", "DISCOVER_SCHEMA_ROWSETS", "DISCOVER_ENUMERATORS",
+    "DISCOVER_KEYWORDS", "DISCOVER_LITERALS", "DISCOVER_XML_METADATA" ) );
+
+  private final int maxConcurrentRequestsPerUser;
+  private final int maxWaitSeconds;
+  // permits of the users with requests in progress, dropped when their last request ends
+  private final ConcurrentMap<String, UserPermits> userPermits = new ConcurrentHashMap<>();
+
+  // response format (Accept header) of the request being processed, part of the discovery cache key
+  private final ThreadLocal<String> acceptedFormat = new ThreadLocal<>();
+
   // - Constructors ================================
 
   public PentahoXmlaServlet() {
@@ -116,6 +156,10 @@ public class PentahoXmlaServlet extends DynamicDatasourceXmlaServlet {
     }
     repo = PentahoSystem.get( IUnifiedRepository.class );
     mondrianCatalogService = (MondrianCatalogHelper) PentahoSystem.get( IMondrianCatalogService.class );
+    maxConcurrentRequestsPerUser = NumberUtils.toInt(
+      PentahoSystem.getSystemSetting( MAX_CONCURRENT_REQUESTS_SETTING, null ), DEFAULT_MAX_CONCURRENT_REQUESTS );
+    maxWaitSeconds =
+      NumberUtils.toInt( PentahoSystem.getSystemSetting( MAX_WAIT_SETTING, null ), DEFAULT_MAX_WAIT_SECONDS );
     try {
       DefaultFileSystemManager dfsm = (DefaultFileSystemManager) VFS.getManager();
       if ( !dfsm.hasProvider( "mondrian" ) ) {
@@ -128,6 +172,187 @@ public class PentahoXmlaServlet extends DynamicDatasourceXmlaServlet {
 
   // ~ Methods =========================================================================================================
 
+  @Override
+  protected void doPost( HttpServletRequest request, HttpServletResponse response )
+    throws ServletException, IOException {
+    final String user = getUserName( request );
+    final UserPermits permits = user == null || maxConcurrentRequestsPerUser <= 0 ? null
+      : userPermits.compute( user, ( name, p ) -> {
+        final UserPermits result = p != null ? p : new UserPermits( maxConcurrentRequestsPerUser );
+        result.requests++;
+        return result;
+      } );
+    boolean acquired = permits == null;
+    if ( !acquired ) {
+      try {
+        acquired = permits.tryAcquire( maxWaitSeconds, TimeUnit.SECONDS );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if ( !acquired ) {
+      forgetRequest( user );
+      final String message = Messages.getInstance().getString(
+        "PentahoXmlaServlet.WARN_0002_TOO_MANY_REQUESTS", user, String.valueOf( maxConcurrentRequestsPerUser ) );
+      logger.warn( message );
+      response.setHeader( "Retry-After", String.valueOf( Math.max( maxWaitSeconds, 1 ) ) ); //$NON-NLS-1$
+      response.sendError( HttpServletResponse.SC_SERVICE_UNAVAILABLE, message );
+      return;
+    }
+    try {
+      acceptedFormat.set( request.getHeader( "Accept" ) ); //$NON-NLS-1$
+      super.doPost( request, response );
+    } finally {
+      acceptedFormat.remove();
+      if ( permits != null ) {
+        permits.release();
+        forgetRequest( user );
+      }
+    }
+  }
+
+  private void forgetRequest( String user ) {
+    userPermits.computeIfPresent( user, ( name, p ) -> --p.requests == 0 ? null : p );
+  }
+
+  private static String getUserName( HttpServletRequest request ) {
+    final IPentahoSession session = PentahoSessionHolder.getSession();
+    if ( session != null && session.getName() != null ) {
+      return session.getName();
+    }
+    return request.getRemoteUser();
+  }
+
+  /**
+   * Serves the discovery requests from the {@link XmlaDiscoverCache} when possible.
+   */
+  @Override
+  protected void handleSoapBody( HttpServletResponse response, org.w3c.dom.Element[] requestSoapParts,
+                                 byte[][] responseSoapParts, Map<String, Object> context ) throws XmlaException {
+    final XmlaDiscoverCache cache = XmlaDiscoverCache.getInstance();
+    final org.w3c.dom.Element discover = cache.isEnabled() ? getCacheableDiscover( requestSoapParts[1] ) : null;
+    final String catalog = discover != null ? getCatalog( discover ) : null;
+    final String key = discover != null ? getDiscoverKey( discover, catalog, response.getCharacterEncoding() ) : null;
+    if ( key == null ) {
+      super.handleSoapBody( response, requestSoapParts, responseSoapParts, context );
+      return;
+    }
+    final byte[] cached = cache.get( catalog, key );
+    if ( cached != null ) {
+      responseSoapParts[1] = cached;
+      return;
+    }
+    super.handleSoapBody( response, requestSoapParts, responseSoapParts, context );
+    cache.put( catalog, key, responseSoapParts[1] );
+  }
+
+  /**
+   * Returns the <code>Discover</code> element of the request body if its response can be cached.
+   */
+  static org.w3c.dom.Element getCacheableDiscover( org.w3c.dom.Element body ) {
+    final org.w3c.dom.Element discover = body != null ? getChild( body, "Discover" ) : null; //$NON-NLS-1$
+    if ( discover == null ) {
+      return null;
+    }
+    final org.w3c.dom.Element requestType = getChild( discover, "RequestType" ); //$NON-NLS-1$
+    if ( requestType == null ) {
+      return null;
+    }
+    final String type = requestType.getTextContent().trim();
+    return type.startsWith( "MDSCHEMA_" ) || type.startsWith( "DBSCHEMA_" ) //$NON-NLS-1$ //$NON-NLS-2$
+      || CACHEABLE_DISCOVER_TYPES.contains( type ) ? discover : null;
+  }
+
+  /**
+   * Returns the catalog a discovery request is bound to: the <code>Catalog</code> property, else the
+   * <code>CATALOG_NAME</code> restriction.
+   */
+  static String getCatalog( org.w3c.dom.Element discover ) {
+    String catalog = getText( discover, "Properties", "PropertyList", "Catalog" );
+    if ( catalog == null ) {
+      catalog = getText( discover, "Restrictions", "RestrictionList", "CATALOG_NAME" );
+    }
+    return catalog;
+  }
+
+  /**
+   * Builds the cache key of a discovery request from the user, the roles of the user, the locale, the response format
+   * and the request, restrictions and properties included. The user is part of the key since a dynamic schema
+   * processor or a role mapper may give every user a different view of a catalog. Returns null if the roles cannot be
+   * resolved.
+   */
+  private String getDiscoverKey( org.w3c.dom.Element discover, String catalog, String encoding ) {
+    final StringBuilder key = new StringBuilder();
+    final IPentahoSession session = PentahoSessionHolder.getSession();
+    key.append( session != null ? session.getName() : null ).append( '|' ).append( LocaleHelper.getLocale() );
+    final Set<String> roles = new TreeSet<>();
+    final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if ( authentication != null ) {
+      for ( GrantedAuthority authority : authentication.getAuthorities() ) {
+        roles.add( authority.getAuthority() );
+      }
+    }
+    key.append( roles );
+    if ( catalog != null ) {
+      final IConnectionUserRoleMapper mapper =
+        PentahoSystem.get( IConnectionUserRoleMapper.class, MDXConnection.MDX_CONNECTION_MAPPER_KEY, null );
+      if ( mapper != null ) {
+        try {
+          final String[] mapped = mapper.mapConnectionRoles( PentahoSessionHolder.getSession(), catalog );
+          key.append( mapped != null ? new TreeSet<>( Arrays.asList( mapped ) ) : null );
+        } catch ( PentahoAccessControlException e ) {
+          return null;
+        }
+      }
+    }
+    key.append( '|' ).append( acceptedFormat.get() ).append( '|' ).append( encoding ).append( '|' );
+    appendCanonical( key, discover );
+    return key.toString();
+  }
+
+  private static void appendCanonical( StringBuilder out, org.w3c.dom.Node node ) {
+    for ( org.w3c.dom.Node child = node.getFirstChild(); child != null; child = child.getNextSibling() ) {
+      if ( child instanceof org.w3c.dom.Element ) {
+        final String name = getLocalName( child );
+        out.append( '<' ).append( name ).append( '>' );
+        appendCanonical( out, child );
+        out.append( "</" ).append( name ).append( '>' ); //$NON-NLS-1$
+      } else if ( child.getNodeType() == org.w3c.dom.Node.TEXT_NODE
+        || child.getNodeType() == org.w3c.dom.Node.CDATA_SECTION_NODE ) {
+        out.append( child.getNodeValue().trim() );
+      }
+    }
+  }
+
+  private static String getText( org.w3c.dom.Element element, String... path ) {
+    org.w3c.dom.Element current = element;
+    for ( String name : path ) {
+      current = getChild( current, name );
+      if ( current == null ) {
+        return null;
+      }
+    }
+    final String text = current.getTextContent().trim();
+    return text.isEmpty() ? null : text;
+  }
+
+  private static org.w3c.dom.Element getChild( org.w3c.dom.Element parent, String localName ) {
+    for ( org.w3c.dom.Node child = parent.getFirstChild(); child != null; child = child.getNextSibling() ) {
+      if ( child instanceof org.w3c.dom.Element && localName.equals( getLocalName( child ) ) ) {
+        return (org.w3c.dom.Element) child;
+      }
+    }
+    return null;
+  }
+
+  private static String getLocalName( org.w3c.dom.Node node ) {
+    if ( node.getLocalName() != null ) {
+      return node.getLocalName();
+    }
+    final String name = node.getNodeName();
+    return name.substring( name.indexOf( ':' ) + 1 );
+  }
+
   @Override
   protected RepositoryContentFinder makeContentFinder( String dataSourcesUrl ) {
     // It is safe to cache these for now because their lambda doesn't
@@ -380,4 +605,17 @@ public class PentahoXmlaServlet extends DynamicDatasourceXmlaServlet {
 
 
   }
+
+  /**
+   * Permits of a user, with the number of requests holding or waiting for one. Only changed inside the map.
+   */
+  private static final class UserPermits extends Semaphore {
+    private static final long serialVersionUID = 1L;
+
+    private int requests;
+
+    UserPermits( int permits ) {
+      super( permits );
+    }
+  }
 }
@@ -29,6 +29,7 @@ import org.pentaho.platform.api.engine.IPluginManager;
 import org.pentaho.platform.api.engine.IPluginManagerListener;
 import org.pentaho.platform.api.websocket.IWebsocketEndpointConfig;
 import org.pentaho.platform.engine.core.audit.MDCUtil;
+import org.pentaho.platform.engine.core.metrics.RequestMetrics;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.springframework.beans.factory.BeanFactoryUtils;
 import org.springframework.beans.factory.ListableBeanFactory;
@@ -106,7 +107,10 @@ public class PluginDispatchServlet implements Servlet {
       return;
     }
 
-    pluginServlet.service( req, res );
+    try ( RequestMetrics.Span span = RequestMetrics.getInstance()
+      .start( RequestMetrics.Category.CONTENT_GENERATOR, pluginServlet.getClass().getSimpleName() ) ) {
+      pluginServlet.service( req, res );
+    }
   }
 
   protected Servlet getTargetServlet( HttpServletRequest request, HttpServletResponse response )
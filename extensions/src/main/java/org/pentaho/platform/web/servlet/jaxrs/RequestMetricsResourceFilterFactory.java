@@ -0,0 +1,104 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.servlet.jaxrs;
+
+import com.sun.jersey.api.core.ResourceConfig;
+import com.sun.jersey.api.model.AbstractMethod;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ResourceFilter;
+import com.sun.jersey.spi.container.ResourceFilterFactory;
+import org.pentaho.platform.engine.core.metrics.RequestMetrics;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Times every JAX-RS resource method under the {@link RequestMetrics.Category#REST} category, named
+ * {@code ResourceClass.method}.
+ *
+ * <p>The span is opened by the request filter and closed by the response filter, so it covers the resource method
+ * and the response filters of the method but not the writing of a streamed entity.
+ */
+public class RequestMetricsResourceFilterFactory implements ResourceFilterFactory {
+
+  static final String SPAN_PROPERTY = RequestMetricsResourceFilterFactory.class.getName() + ".span"; //$NON-NLS-1$
+
+  /**
+   * Adds the factory to a resource config, once.
+   */
+  @SuppressWarnings( "unchecked" )
+  public static void register( final ResourceConfig rc ) {
+    final List<Object> factories = rc.getResourceFilterFactories();
+    for ( Object factory : factories ) {
+      if ( factory instanceof RequestMetricsResourceFilterFactory ) {
+        return;
+      }
+    }
+    factories.add( new RequestMetricsResourceFilterFactory() );
+  }
+
+  @Override
+  public List<ResourceFilter> create( final AbstractMethod am ) {
+    if ( am.getMethod() == null ) {
+      return null;
+    }
+    final String name = am.getResource().getResourceClass().getSimpleName() + "." + am.getMethod().getName();
+    return Collections.<ResourceFilter>singletonList( new TimingFilter( name ) );
+  }
+
+  static class TimingFilter implements ResourceFilter, ContainerRequestFilter, ContainerResponseFilter {
+
+    private final String name;
+
+    TimingFilter( final String name ) {
+      this.name = name;
+    }
+
+    @Override
+    public ContainerRequestFilter getRequestFilter() {
+      return this;
+    }
+
+    @Override
+    public ContainerResponseFilter getResponseFilter() {
+      return this;
+    }
+
+    @Override
+    public ContainerRequest filter( final ContainerRequest request ) {
+      request.getProperties().put( SPAN_PROPERTY, RequestMetrics.getInstance().start( RequestMetrics.Category.REST,
+        name ) );
+      return request;
+    }
+
+    @Override
+    public ContainerResponse filter( final ContainerRequest request, final ContainerResponse response ) {
+      final Object span = request.getProperties().remove( SPAN_PROPERTY );
+      if ( span instanceof RequestMetrics.Span ) {
+        ( (RequestMetrics.Span) span ).close();
+      }
+      return response;
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.action.olap.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.olap4j.OlapConnection;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class Olap4jConnectionPoolTest {
+
+  private List<OlapConnection> opened;
+  private Olap4jConnectionPool pool;
+
+  @Before
+  public void setUp() {
+    opened = new ArrayList<>();
+    pool = new Olap4jConnectionPool() {
+      @Override
+      protected OlapConnection openConnection( String url, Properties properties ) throws SQLException {
+        final OlapConnection connection = mock( OlapConnection.class );
+        doReturn( true ).when( connection ).isValid( anyInt() );
+        opened.add( connection );
+        return connection;
+      }
+    };
+  }
+
+  @After
+  public void tearDown() {
+    pool.close();
+  }
+
+  @Test
+  public void testConnectionIsReusedForSameKey() throws Exception {
+    final OlapConnection first = pool.borrowConnection( "server", "jdbc:xmla:x", props( "role", "A" ) );
+    first.getCatalog();
+    first.close();
+    assertTrue( first.isClosed() );
+
+    final OlapConnection second = pool.borrowConnection( "server", "jdbc:xmla:x", props( "role", "A" ) );
+    second.getCatalog();
+    second.close();
+
+    assertEquals( 1, opened.size() );
+    verify( opened.get( 0 ), never() ).close();
+    assertEquals( 2L, pool.getStatistics().get( "borrowed" ) );
+    assertEquals( 1L, pool.getStatistics().get( "created" ) );
+  }
+
+  @Test
+  public void testDifferentRolesDoNotShareConnections() throws Exception {
+    pool.borrowConnection( "server", "jdbc:xmla:x", props( "role", "A" ) ).close();
+    pool.borrowConnection( "server", "jdbc:xmla:x", props( "role", "B" ) ).close();
+    assertEquals( 2, opened.size() );
+  }
+
+  @Test
+  public void testDirtyConnectionIsDiscarded() throws Exception {
+    final OlapConnection connection = pool.borrowConnection( "server", "jdbc:xmla:x", props( "role", "A" ) );
+    connection.setSchema( "other" );
+    connection.close();
+    verify( opened.get( 0 ) ).close();
+
+    pool.borrowConnection( "server", "jdbc:xmla:x", props( "role", "A" ) ).close();
+    assertEquals( 2, opened.size() );
+  }
+
+  @Test
+  public void testInvalidConnectionIsReplacedOnBorrow() throws Exception {
+    pool.borrowConnection( "server", "jdbc:xmla:x", props( "role", "A" ) ).close();
+    doReturn( true ).when( opened.get( 0 ) ).isClosed();
+
+    pool.borrowConnection( "server", "jdbc:xmla:x", props( "role", "A" ) ).close();
+    assertEquals( 2, opened.size() );
+  }
+
+  @Test
+  public void testInvalidateServer() throws Exception {
+    pool.borrowConnection( "server", "jdbc:xmla:x", props( "role", "A" ) ).close();
+    pool.borrowConnection( "other", "jdbc:xmla:y", props( "role", "A" ) ).close();
+
+    pool.invalidateServer( "server" );
+    verify( opened.get( 0 ) ).close();
+    verify( opened.get( 1 ), never() ).close();
+  }
+
+  @Test
+  public void testUnwrapReturnsProxy() throws Exception {
+    final OlapConnection connection = pool.borrowConnection( "server", "jdbc:xmla:x", props( "role", "A" ) );
+    assertSame( connection, connection.unwrap( OlapConnection.class ) );
+    connection.close();
+    try {
+      connection.getCatalog();
+      fail();
+    } catch ( SQLException e ) {
+      // expected
+    }
+    assertFalse( opened.isEmpty() );
+  }
+
+  private static Properties props( String key, String value ) {
+    final Properties defaults = new Properties();
+    defaults.put( "user", "admin" );
+    final Properties props = new Properties( defaults );
+    props.put( key, value );
+    return props;
+  }
+}
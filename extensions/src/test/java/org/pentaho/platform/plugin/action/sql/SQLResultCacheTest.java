@@ -0,0 +1,188 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.action.sql;
+
+import org.junit.Test;
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.commons.connection.memory.MemoryMetaData;
+import org.pentaho.commons.connection.memory.MemoryResultSet;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SQLResultCacheTest {
+
+  private static final long MB = 1024 * 1024;
+
+  @Test
+  public void testHitAndMiss() {
+    SQLResultCache cache = new SQLResultCache( true, MB, 100, 60000 );
+    SQLResultCache.Key key = key( "select * from customers", "user[Authenticated]" );
+    assertNull( cache.get( key ) );
+
+    cache.put( key, resultSet( 3 ), 60000, Collections.<String>emptyList() );
+    IPentahoResultSet first = cache.get( key );
+    IPentahoResultSet second = cache.get( key );
+    assertEquals( 3, first.getRowCount() );
+    assertEquals( "name2", first.getValueAt( 2, 1 ) );
+
+    // every hit gets its own cursor
+    first.next();
+    assertEquals( 3, countRows( second ) );
+    assertEquals( 2L, cache.getStatistics().get( "hits" ) );
+    assertEquals( 1L, cache.getStatistics().get( "misses" ) );
+  }
+
+  @Test
+  public void testKeyIncludesParametersAndSecurityContext() {
+    SQLResultCache cache = new SQLResultCache( true, MB, 100, 60000 );
+    cache.put( key( "select * from customers", "joe[Admin]" ), resultSet( 1 ), 60000,
+      Collections.<String>emptyList() );
+
+    assertNull( cache.get( key( "select * from customers", "suzy[Authenticated]" ) ) );
+    assertNull( cache.get( new SQLResultCache.Key( "SampleData", "select * from customers",
+      Arrays.asList( 2 ), "joe[Admin]" ) ) );
+    assertEquals( 1, cache.get( key( "select  *\n from customers;", "joe[Admin]" ) ).getRowCount() );
+  }
+
+  @Test
+  public void testColumnarCopyKeepsTypesAndNulls() {
+    MemoryMetaData metaData = new MemoryMetaData( new String[][] { { "id", "name", "amount", "region" } }, null );
+    metaData.setColumnTypes( new String[] { "int", "string", "numeric", "string" } );
+    MemoryResultSet source = new MemoryResultSet( metaData );
+    for ( int i = 0; i < 10; i++ ) {
+      source.addRow( new Object[] { i, "name" + i, i == 3 ? null : i * 1.5d, i % 2 == 0 ? "east" : "west" } );
+    }
+    source.addRow( new Object[] { null, null, null, null } );
+
+    SQLResultCache cache = new SQLResultCache( true, MB, 100, 60000 );
+    SQLResultCache.Key key = key( "select * from orders", "" );
+    cache.put( key, source, 60000, Collections.<String>emptyList() );
+    IPentahoResultSet cached = cache.get( key );
+
+    assertEquals( 11, cached.getRowCount() );
+    assertEquals( 4, cached.getColumnCount() );
+    assertEquals( Integer.valueOf( 4 ), cached.getValueAt( 4, 0 ) );
+    assertEquals( 6.0d, cached.getValueAt( 4, 2 ) );
+    assertNull( cached.getValueAt( 3, 2 ) );
+    assertEquals( "west", cached.getValueAt( 5, 3 ) );
+    assertNull( cached.getValueAt( 10, 0 ) );
+    assertNull( cached.getValueAt( 10, 3 ) );
+    assertEquals( "amount", cached.getMetaData().getColumnHeaders()[ 0 ][ 2 ] );
+    assertEquals( "numeric", ( (MemoryMetaData) cached.getMetaData() ).getColumnTypes()[ 2 ] );
+  }
+
+  @Test
+  public void testTagAndDatasourceInvalidation() {
+    SQLResultCache cache = new SQLResultCache( true, MB, 100, 60000 );
+    SQLResultCache.Key sales = key( "select * from sales", "" );
+    SQLResultCache.Key stock = key( "select * from stock", "" );
+    cache.put( sales, resultSet( 1 ), 60000, Arrays.asList( "sales" ) );
+    cache.put( stock, resultSet( 1 ), 60000, Arrays.asList( "stock" ) );
+
+    cache.invalidateTag( "sales" );
+    assertNull( cache.get( sales ) );
+    assertEquals( 1, cache.get( stock ).getRowCount() );
+
+    cache.invalidateDatasource( "SampleData" );
+    assertNull( cache.get( stock ) );
+  }
+
+  @Test
+  public void testLargeResultsAreNotCached() {
+    SQLResultCache cache = new SQLResultCache( true, MB, 5, 60000 );
+    SQLResultCache.Key key = key( "select * from customers", "" );
+    IPentahoResultSet source = resultSet( 6 );
+    assertSame( source, cache.put( key, source, 60000, Collections.<String>emptyList() ) );
+    assertNull( cache.get( key ) );
+    assertEquals( 1L, cache.getStatistics().get( "rejected" ) );
+  }
+
+  @Test
+  public void testExpiredEntriesAreMisses() {
+    SQLResultCache cache = new SQLResultCache( true, MB, 100, 60000 );
+    SQLResultCache.Key key = key( "select * from customers", "" );
+    cache.put( key, resultSet( 1 ), -1, Collections.<String>emptyList() );
+    assertNull( cache.get( key ) );
+    assertEquals( 1L, cache.getStatistics().get( "expired" ) );
+  }
+
+  @Test
+  public void testNormalize() {
+    assertEquals( "select a, b from t where c = 'x  y'",
+      SQLResultCache.normalize( "  select a,\n\tb   from t\nwhere c = 'x  y' ;" ) );
+    assertNotEquals( SQLResultCache.normalize( "select 'a b'" ), SQLResultCache.normalize( "select 'a  b'" ) );
+  }
+
+  @Test
+  public void testKeyIncludesRowLimitAndTimeout() {
+    SQLResultCache cache = new SQLResultCache( true, MB, 100, 60000 );
+    SQLResultCache.Key limited =
+      new SQLResultCache.Key( "SampleData", "select * from customers", null, "", 10, -1 );
+    cache.put( limited, resultSet( 2 ), 60000, Collections.<String>emptyList() );
+
+    assertNull( cache.get( new SQLResultCache.Key( "SampleData", "select * from customers", null, "" ) ) );
+    assertNull( cache.get( new SQLResultCache.Key( "SampleData", "select * from customers", null, "", 10, 30 ) ) );
+    assertEquals( 2, cache.get(
+      new SQLResultCache.Key( "SampleData", "select * from customers", null, "", 10, -1 ) ).getRowCount() );
+  }
+
+  @Test
+  public void testOnlyQueriesAreCacheable() {
+    assertTrue( SQLResultCache.isCacheable( "select * from t where name = 'update'" ) );
+    assertTrue( SQLResultCache.isCacheable( "  (SELECT a FROM t) UNION (SELECT a FROM u)" ) );
+    assertTrue( SQLResultCache.isCacheable( "with x as (select 1) select * from x" ) );
+    assertFalse( SQLResultCache.isCacheable( "update t set a = 1" ) );
+    assertFalse( SQLResultCache.isCacheable( "delete from t" ) );
+    assertFalse( SQLResultCache.isCacheable( "with x as (delete from t returning *) select * from x" ) );
+    assertFalse( SQLResultCache.isCacheable( "select * into backup from t" ) );
+    assertFalse( SQLResultCache.isCacheable( "select * from t for update" ) );
+    assertFalse( SQLResultCache.isCacheable( "call refresh_totals()" ) );
+  }
+
+  private static SQLResultCache.Key key( String sql, String securityContext ) {
+    return new SQLResultCache.Key( "SampleData", sql, Arrays.asList( 1 ), securityContext );
+  }
+
+  private static IPentahoResultSet resultSet( int rows ) {
+    MemoryMetaData metaData = new MemoryMetaData( new String[][] { { "id", "name" } }, null );
+    MemoryResultSet resultSet = new MemoryResultSet( metaData );
+    for ( int i = 0; i < rows; i++ ) {
+      resultSet.addRow( new Object[] { i, "name" + i } );
+    }
+    return resultSet;
+  }
+
+  private static int countRows( IPentahoResultSet resultSet ) {
+    int count = 0;
+    while ( resultSet.next() != null ) {
+      count++;
+    }
+    return count;
+  }
+}
@@ -0,0 +1,89 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.condition.javascript;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+public class RhinoScriptCacheTest {
+
+  @Test
+  public void testScriptIsCompiledOnce() throws Exception {
+    RhinoScriptCache cache = new RhinoScriptCache( 10, -1 );
+    Context cx = ContextFactory.getGlobal().enterContext();
+    try {
+      cache.prepareContext( cx );
+      Script first = cache.getScript( cx, "1 + 1;" );
+      Script second = cache.getScript( cx, "1 + 1;" );
+      assertSame( first, second );
+      assertEquals( 1L, cache.getStatistics().get( "compileCount" ) );
+      assertEquals( 1L, cache.getStatistics().get( "hits" ) );
+    } finally {
+      Context.exit();
+    }
+  }
+
+  @Test
+  public void testExecutionScopesAreIsolated() throws Exception {
+    RhinoScriptCache cache = new RhinoScriptCache( 10, -1 );
+    Context cx = ContextFactory.getGlobal().enterContext();
+    try {
+      cache.prepareContext( cx );
+      Scriptable scope = cache.newExecutionScope( cx );
+      ScriptableObject.putProperty( scope, "input", 2 );
+      Object result = cache.execute( cx, scope, "var leaked = Math.max( input, 5 ); leaked;" );
+      assertEquals( 5, Context.toNumber( result ), 0 );
+
+      Scriptable other = cache.newExecutionScope( cx );
+      assertFalse( ScriptableObject.hasProperty( other, "leaked" ) );
+      assertFalse( ScriptableObject.hasProperty( other, "input" ) );
+      assertEquals( "undefined", Context.toString( cache.execute( cx, other, "typeof leaked;" ) ) );
+      assertEquals( 2L, cache.getStatistics().get( "executeCount" ) );
+    } finally {
+      Context.exit();
+    }
+  }
+
+  @Test
+  public void testCacheIsBounded() throws Exception {
+    RhinoScriptCache cache = new RhinoScriptCache( 2, 0 );
+    Context cx = ContextFactory.getGlobal().enterContext();
+    try {
+      cache.prepareContext( cx );
+      for ( int i = 0; i < 5; i++ ) {
+        cache.execute( cx, cache.newExecutionScope( cx ), i + ";" );
+      }
+      assertTrue( cache.getStatistics().get( "size" ).longValue() <= 2 );
+      assertTrue( cache.getStatistics().get( "evictions" ).longValue() >= 3 );
+    } finally {
+      Context.exit();
+    }
+  }
+}
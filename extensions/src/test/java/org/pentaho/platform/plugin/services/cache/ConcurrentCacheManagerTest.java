@@ -0,0 +1,177 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.api.engine.IPentahoSession;
+
+import java.io.ByteArrayInputStream;
+import java.util.Properties;
+import java.util.Set;
+
+public class ConcurrentCacheManagerTest {
+
+  private ConcurrentCacheManager cacheManager;
+
+  @Before
+  public void setUp() {
+    Properties defaults = new Properties();
+    defaults.put( "small." + ConcurrentCacheManager.MAX_SIZE, "2" );
+    cacheManager = new ConcurrentCacheManager( defaults, null );
+  }
+
+  @After
+  public void tearDown() {
+    cacheManager.cacheStop();
+  }
+
+  @Test
+  public void testSessionAndGlobalRegions() {
+    IPentahoSession first = session( "s1" );
+    IPentahoSession second = session( "s2" );
+
+    cacheManager.putInSessionCache( first, "key", "one" );
+    cacheManager.putInSessionCache( second, "key", "two" );
+    cacheManager.putInGlobalCache( "key", "global" );
+
+    assertEquals( "one", cacheManager.getFromSessionCache( first, "key" ) );
+    assertEquals( "two", cacheManager.getFromSessionCache( second, "key" ) );
+    assertEquals( "global", cacheManager.getFromGlobalCache( "key" ) );
+    assertEquals( 2, cacheManager.getElementCountInSessionCache() );
+
+    cacheManager.killSessionCache( first );
+    assertNull( cacheManager.getFromSessionCache( first, "key" ) );
+    assertEquals( "two", cacheManager.getFromSessionCache( second, "key" ) );
+    assertTrue( cacheManager.getAllKeysFromRegionCache( ICacheManager.SESSION ).contains( "s2\tkey" ) );
+  }
+
+  @Test
+  public void testRegionPolicyFromConfiguration() {
+    assertTrue( cacheManager.addCacheRegion( "small" ) );
+    for ( int i = 0; i < 10; i++ ) {
+      cacheManager.putInRegionCache( "small", i, i );
+    }
+    cacheManager.getFromRegionCache( "small", 9 );
+
+    assertTrue( cacheManager.getElementCountInRegionCache( "small" ) <= 2 );
+    assertTrue( cacheManager.getRegionStatistics().get( "small" ).get( "evictions" ).longValue() >= 8 );
+    assertEquals( 1L, cacheManager.getRegionStatistics().get( "small" ).get( "hits" ) );
+  }
+
+  @Test
+  public void testAddExistingRegionKeepsEntries() {
+    assertTrue( cacheManager.addCacheRegion( "region", new Properties() ) );
+    cacheManager.putInRegionCache( "region", "key", "value" );
+    assertFalse( cacheManager.addCacheRegion( "region", new Properties() ) );
+    assertTrue( cacheManager.addCacheRegion( "region" ) );
+    assertEquals( "value", cacheManager.getFromRegionCache( "region", "key" ) );
+
+    cacheManager.removeRegionCache( "region" );
+    assertTrue( cacheManager.cacheEnabled( "region" ) );
+    assertEquals( 0, cacheManager.getElementCountInRegionCache( "region" ) );
+  }
+
+  @Test
+  public void testRegionPolicyFromEhcacheConfiguration() throws Exception {
+    String ehcache = "<ehcache>"
+      + "<defaultCache maxElementsInMemory=\"1000\" eternal=\"false\" timeToIdleSeconds=\"0\" timeToLiveSeconds=\"0\"/>"
+      + "<cache name=\"catalogs\" maxElementsInMemory=\"3\" eternal=\"false\" timeToIdleSeconds=\"300\""
+      + " timeToLiveSeconds=\"600\"/>"
+      + "<cache name=\"forever\" maxElementsInMemory=\"5\" eternal=\"true\" timeToLiveSeconds=\"600\"/>"
+      + "</ehcache>";
+    Properties properties =
+      ConcurrentCacheManager.getEhcacheProperties( new ByteArrayInputStream( ehcache.getBytes( "UTF-8" ) ) );
+    assertEquals( "1000", properties.getProperty( ConcurrentCacheManager.MAX_SIZE ) );
+    assertEquals( "3", properties.getProperty( "catalogs." + ConcurrentCacheManager.MAX_SIZE ) );
+    assertEquals( "600", properties.getProperty( "catalogs." + ConcurrentCacheManager.EXPIRE_AFTER_WRITE_SECONDS ) );
+    assertEquals( "300", properties.getProperty( "catalogs." + ConcurrentCacheManager.EXPIRE_AFTER_ACCESS_SECONDS ) );
+    assertEquals( "0", properties.getProperty( "forever." + ConcurrentCacheManager.EXPIRE_AFTER_WRITE_SECONDS ) );
+
+    // the pentaho.xml properties come first
+    cacheManager.cacheStop();
+    Properties defaults = new Properties();
+    defaults.put( "forever." + ConcurrentCacheManager.MAX_SIZE, "2" );
+    cacheManager = new ConcurrentCacheManager( defaults, properties, null );
+    cacheManager.addCacheRegion( "catalogs" );
+    cacheManager.addCacheRegion( "forever" );
+    for ( int i = 0; i < 10; i++ ) {
+      cacheManager.putInRegionCache( "catalogs", i, i );
+      cacheManager.putInRegionCache( "forever", i, i );
+    }
+    assertTrue( cacheManager.getElementCountInRegionCache( "catalogs" ) <= 3 );
+    assertTrue( cacheManager.getElementCountInRegionCache( "forever" ) <= 2 );
+    assertEquals( 10L, cacheManager.getStatistics().get( "catalogs.size" ).longValue()
+      + cacheManager.getStatistics().get( "catalogs.evictions" ).longValue() );
+  }
+
+  @Test
+  public void testNullValueRemovesEntry() {
+    cacheManager.putInGlobalCache( "key", "value" );
+    cacheManager.putInGlobalCache( "key", null );
+    assertNull( cacheManager.getFromGlobalCache( "key" ) );
+    assertNull( cacheManager.getFromRegionCache( "missing", "key" ) );
+  }
+
+  @Test
+  public void testSessionEntriesAreBoundedPerSession() {
+    cacheManager.cacheStop();
+    Properties defaults = new Properties();
+    defaults.put( ConcurrentCacheManager.MAX_SIZE_PER_SESSION, "2" );
+    cacheManager = new ConcurrentCacheManager( defaults, null );
+    IPentahoSession busy = session( "s1" );
+    IPentahoSession other = session( "s2" );
+
+    cacheManager.putInSessionCache( other, "key", "kept" );
+    for ( int i = 0; i < 5; i++ ) {
+      cacheManager.putInSessionCache( busy, "key" + i, i );
+    }
+
+    assertNull( cacheManager.getFromSessionCache( busy, "key2" ) );
+    assertEquals( 3, cacheManager.getFromSessionCache( busy, "key3" ) );
+    assertEquals( 4, cacheManager.getFromSessionCache( busy, "key4" ) );
+    assertEquals( "kept", cacheManager.getFromSessionCache( other, "key" ) );
+    assertEquals( 3, cacheManager.getElementCountInSessionCache() );
+  }
+
+  @Test
+  public void testKeysAreACopy() {
+    cacheManager.putInGlobalCache( "key", "value" );
+    Set<?> keys = cacheManager.getAllKeysFromRegionCache( ICacheManager.GLOBAL );
+    cacheManager.putInGlobalCache( "other", "value" );
+    assertEquals( 1, keys.size() );
+  }
+
+  private static IPentahoSession session( String id ) {
+    IPentahoSession session = mock( IPentahoSession.class );
+    doReturn( id ).when( session ).getId();
+    return session;
+  }
+}
@@ -0,0 +1,204 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.connections.mondrian;
+
+import mondrian.olap.Connection;
+import mondrian.olap.Schema;
+import mondrian.olap.Util;
+import mondrian.rolap.RolapConnectionProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class MondrianConnectionPoolTest {
+
+  private List<Connection> opened;
+  private MondrianConnectionPool pool;
+
+  @Before
+  public void setUp() {
+    opened = new ArrayList<>();
+    pool = new MondrianConnectionPool() {
+      @Override
+      protected Connection openConnection( Util.PropertyList properties, DataSource dataSource ) {
+        final Connection connection = mock( Connection.class );
+        doReturn( mock( Schema.class ) ).when( connection ).getSchema();
+        opened.add( connection );
+        return connection;
+      }
+    };
+  }
+
+  @After
+  public void tearDown() {
+    pool.close();
+  }
+
+  @Test
+  public void testConnectionIsReusedForSameProperties() throws Exception {
+    final Connection first = pool.borrowConnection( props( "mondrian:/SteelWheels", "Admin" ), null, null );
+    first.getSchema();
+    first.close();
+
+    final Connection second = pool.borrowConnection( props( "mondrian:/SteelWheels", "Admin" ), null, null );
+    second.getSchema();
+    second.close();
+
+    assertEquals( 1, opened.size() );
+    verify( opened.get( 0 ), never() ).close();
+    assertEquals( 2L, pool.getStatistics().get( "borrowed" ) );
+    assertEquals( 1L, pool.getStatistics().get( "created" ) );
+  }
+
+  @Test
+  public void testDifferentRolesDoNotShareConnections() throws Exception {
+    pool.borrowConnection( props( "mondrian:/SteelWheels", "Admin" ), null, null ).close();
+    pool.borrowConnection( props( "mondrian:/SteelWheels", "Power User" ), null, null ).close();
+    pool.borrowConnection( props( "mondrian:/SteelWheels", "Admin" ), null, "jdbc/SampleData" ).close();
+    assertEquals( 3, opened.size() );
+  }
+
+  @Test
+  public void testPropertyNamesAreCaseInsensitive() throws Exception {
+    final Util.PropertyList lower = new Util.PropertyList();
+    lower.put( "catalog", "mondrian:/SteelWheels" );
+    final Util.PropertyList upper = new Util.PropertyList();
+    upper.put( "Catalog", "mondrian:/SteelWheels" );
+
+    pool.borrowConnection( lower, null, null ).close();
+    pool.borrowConnection( upper, null, null ).close();
+    assertEquals( 1, opened.size() );
+  }
+
+  @Test
+  public void testDirtyConnectionIsDiscarded() throws Exception {
+    final Connection connection = pool.borrowConnection( props( "mondrian:/SteelWheels", "Admin" ), null, null );
+    connection.setLocale( Locale.FRENCH );
+    connection.close();
+    verify( opened.get( 0 ) ).close();
+
+    pool.borrowConnection( props( "mondrian:/SteelWheels", "Admin" ), null, null ).close();
+    assertEquals( 2, opened.size() );
+  }
+
+  @Test
+  public void testInvalidateCatalog() throws Exception {
+    pool.borrowConnection( props( "mondrian:/SteelWheels", "Admin" ), null, null ).close();
+    pool.borrowConnection( props( "mondrian:/SampleData", "Admin" ), null, null ).close();
+    final Connection leased = pool.borrowConnection( props( "mondrian:/SteelWheels", "Admin" ), null, null );
+
+    pool.invalidateCatalog( "SteelWheels" );
+    verify( opened.get( 1 ), never() ).close();
+
+    // the leased connection holds the flushed schema, it must not go back to the pool
+    leased.close();
+    verify( opened.get( 0 ) ).close();
+
+    final Connection fresh = pool.borrowConnection( props( "mondrian:/SteelWheels", "Admin" ), null, null );
+    assertNotSame( opened.get( 0 ), MondrianConnectionPool.unwrap( fresh ) );
+    fresh.close();
+    assertEquals( 3, opened.size() );
+  }
+
+  @Test
+  public void testUnwrapAndUseAfterClose() throws Exception {
+    final Connection connection = pool.borrowConnection( props( "mondrian:/SteelWheels", "Admin" ), null, null );
+    assertSame( opened.get( 0 ), MondrianConnectionPool.unwrap( connection ) );
+    assertSame( opened.get( 0 ), MondrianConnectionPool.unwrap( opened.get( 0 ) ) );
+    connection.close();
+    connection.close();
+    try {
+      connection.getSchema();
+      fail();
+    } catch ( IllegalStateException e ) {
+      // expected
+    }
+    assertEquals( 1L, pool.getStatistics().get( "returned" ) );
+  }
+
+  @Test
+  public void testAbandonedLeaseIsReclaimed() throws Exception {
+    pool.setMaxTotal( 2 );
+    pool.setMaxTotalPerKey( 2 );
+    pool.setMaxWaitMillis( 100 );
+    pool.setRemoveAbandonedTimeoutMillis( 50 );
+    final Connection leaked = pool.borrowConnection( props( "mondrian:/SteelWheels", "Admin" ), null, null );
+    final Connection used = pool.borrowConnection( props( "mondrian:/SteelWheels", "Admin" ), null, null );
+    Thread.sleep( 100 );
+    used.getSchema();
+
+    // the pool is exhausted, the borrow reclaims the lease nobody used since the timeout
+    final Connection third = pool.borrowConnection( props( "mondrian:/SteelWheels", "Admin" ), null, null );
+    verify( opened.get( 0 ) ).close();
+    verify( opened.get( 1 ), never() ).close();
+    assertSame( opened.get( 2 ), MondrianConnectionPool.unwrap( third ) );
+
+    // closing the reclaimed lease late is harmless
+    leaked.close();
+    used.close();
+    third.close();
+    assertEquals( 2, pool.getStatistics().get( "idle" ) );
+  }
+
+  @Test
+  public void testRedefinedDataSourceIsNotReused() throws Exception {
+    final DataSource original = mock( DataSource.class );
+    final DataSource redefined = mock( DataSource.class );
+    pool.borrowConnection( props( "mondrian:/SteelWheels", "Admin" ), original, "SampleData" ).close();
+    pool.borrowConnection( props( "mondrian:/SteelWheels", "Admin" ), redefined, "SampleData" ).close();
+
+    assertEquals( 2, opened.size() );
+    verify( opened.get( 0 ) ).close();
+    assertEquals( 1, pool.getStatistics().get( "keys" ) );
+  }
+
+  @Test
+  public void testDynamicSchemaIsNotPoolable() {
+    final Util.PropertyList properties = props( "mondrian:/SteelWheels", "Admin" );
+    assertTrue( MondrianConnectionPool.isPoolable( properties ) );
+    properties.put( RolapConnectionProperties.DynamicSchemaProcessor.name(), "com.example.UserSchemaProcessor" );
+    assertFalse( MondrianConnectionPool.isPoolable( properties ) );
+  }
+
+  private static Util.PropertyList props( String catalog, String role ) {
+    final Util.PropertyList properties = new Util.PropertyList();
+    properties.put( RolapConnectionProperties.Provider.name(), "mondrian" );
+    properties.put( RolapConnectionProperties.Catalog.name(), catalog );
+    properties.put( RolapConnectionProperties.Role.name(), role );
+    return properties;
+  }
+}
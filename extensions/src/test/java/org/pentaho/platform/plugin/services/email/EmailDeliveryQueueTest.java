@@ -0,0 +1,159 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.email;
+
+import com.sun.mail.smtp.SMTPSendFailedException;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.mail.AuthenticationFailedException;
+import javax.mail.MessagingException;
+import java.net.ConnectException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EmailDeliveryQueueTest {
+
+  private EmailDeliveryQueue queue;
+
+  @After
+  public void tearDown() {
+    if ( queue != null ) {
+      queue.shutdown();
+    }
+  }
+
+  @Test
+  public void testTransientFailuresAreRetried() throws Exception {
+    queue = new EmailDeliveryQueue( 2, 10, 3, 1, 10 );
+    AtomicInteger attempts = new AtomicInteger();
+    CompletableFuture<Void> future = queue.submit( "suzy", () -> {
+      if ( attempts.incrementAndGet() < 3 ) {
+        throw new MessagingException( "connect failed", new ConnectException() );
+      }
+    } );
+    assertNull( future.get( 10, TimeUnit.SECONDS ) );
+    assertEquals( 3, attempts.get() );
+    assertEquals( 1L, queue.getStatistics().get( "delivered" ) );
+    assertEquals( 2L, queue.getStatistics().get( "retried" ) );
+    assertEquals( 0, queue.getStatistics().get( "pending" ) );
+  }
+
+  @Test
+  public void testPermanentFailureIsNotRetried() throws Exception {
+    queue = new EmailDeliveryQueue( 1, 10, 5, 1, 10 );
+    AtomicInteger attempts = new AtomicInteger();
+    AuthenticationFailedException failure = new AuthenticationFailedException( "535 denied" );
+    CompletableFuture<Void> future = queue.submit( "suzy", () -> {
+      attempts.incrementAndGet();
+      throw failure;
+    } );
+    try {
+      future.get( 10, TimeUnit.SECONDS );
+      fail();
+    } catch ( ExecutionException e ) {
+      assertSame( failure, e.getCause() );
+    }
+    assertEquals( 1, attempts.get() );
+    assertEquals( 1L, queue.getStatistics().get( "failed" ) );
+  }
+
+  @Test
+  public void testFullQueueDeliversInCaller() throws Exception {
+    queue = new EmailDeliveryQueue( 1, 1, 1, 1, 10 );
+    CountDownLatch release = new CountDownLatch( 1 );
+    CompletableFuture<Void> blocked = queue.submit( "first", release::await );
+    Thread caller = Thread.currentThread();
+    AtomicInteger inCaller = new AtomicInteger();
+    CompletableFuture<Void> second = queue.submit( "second", () -> {
+      if ( Thread.currentThread() == caller ) {
+        inCaller.incrementAndGet();
+      }
+    } );
+    assertTrue( second.isDone() );
+    assertEquals( 1, inCaller.get() );
+    assertFalse( blocked.isDone() );
+    release.countDown();
+    blocked.get( 10, TimeUnit.SECONDS );
+    assertEquals( 1L, queue.getStatistics().get( "deliveredInCaller" ) );
+  }
+
+  @Test
+  public void testShutdownDeliversQueuedMessages() throws Exception {
+    queue = new EmailDeliveryQueue( 1, 10, 1, 1, 10 );
+    CountDownLatch started = new CountDownLatch( 1 );
+    AtomicInteger delivered = new AtomicInteger();
+    queue.submit( "first", () -> {
+      started.countDown();
+      Thread.sleep( 200 );
+      delivered.incrementAndGet();
+    } );
+    CompletableFuture<Void> second = queue.submit( "second", delivered::incrementAndGet );
+    started.await( 10, TimeUnit.SECONDS );
+    queue.shutdown();
+    assertEquals( 2, delivered.get() );
+    assertTrue( second.isDone() );
+    assertEquals( 0, queue.getStatistics().get( "pending" ) );
+  }
+
+  @Test
+  public void testShutdownTimeoutFailsUndeliveredMessages() throws Exception {
+    queue = new EmailDeliveryQueue( 1, 10, 1, 1, 10 );
+    queue.setShutdownTimeoutMillis( 50 );
+    CountDownLatch release = new CountDownLatch( 1 );
+    queue.submit( "first", release::await );
+    CompletableFuture<Void> second = queue.submit( "second", () -> { } );
+    queue.shutdown();
+    release.countDown();
+    assertTrue( second.isCompletedExceptionally() );
+    assertEquals( 2L, queue.getStatistics().get( "failed" ) );
+    assertEquals( 0, queue.getStatistics().get( "pending" ) );
+  }
+
+  @Test
+  public void testIsTransient() {
+    assertTrue( EmailDeliveryQueue.isTransient( new MessagingException( "x", new ConnectException() ) ) );
+    assertTrue( EmailDeliveryQueue.isTransient(
+      new SMTPSendFailedException( "MAIL", 451, "451 try later", null, null, null, null ) ) );
+    assertFalse( EmailDeliveryQueue.isTransient(
+      new SMTPSendFailedException( "DATA", 554, "554 rejected", null, null, null, null ) ) );
+    assertFalse( EmailDeliveryQueue.isTransient( new AuthenticationFailedException() ) );
+    assertFalse( EmailDeliveryQueue.isTransient( new IllegalArgumentException() ) );
+  }
+
+  @Test
+  public void testBackoffGrowsAndIsCapped() {
+    queue = new EmailDeliveryQueue( 0, 10, 5, 100, 1000 );
+    assertTrue( queue.getBackoffMillis( 1 ) >= 100 && queue.getBackoffMillis( 1 ) <= 110 );
+    assertTrue( queue.getBackoffMillis( 3 ) >= 400 && queue.getBackoffMillis( 3 ) <= 440 );
+    assertTrue( queue.getBackoffMillis( 10 ) >= 1000 && queue.getBackoffMillis( 10 ) <= 1100 );
+  }
+}
@@ -0,0 +1,219 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.email;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.mail.Message;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SmtpTransportPoolTest {
+
+  private SmtpStub server;
+  private Session session;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new SmtpStub();
+    Properties props = new Properties();
+    props.put( "mail.transport.protocol", "smtp" );
+    props.put( "mail.smtp.host", "localhost" );
+    props.put( "mail.smtp.port", String.valueOf( server.getPort() ) );
+    // the test classpath maps smtp to a mock transport, use the real one against the stub
+    props.put( "mail.smtp.class", "com.sun.mail.smtp.SMTPTransport" );
+    session = Session.getInstance( props );
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.close();
+  }
+
+  @Test
+  public void testConnectionIsReusedAcrossMessages() throws Exception {
+    SmtpTransportPool pool = new SmtpTransportPool( 2, 60000, 100 );
+    for ( int i = 0; i < 3; i++ ) {
+      pool.send( session, message( i ) );
+    }
+    assertEquals( 3, server.messages.get() );
+    assertEquals( 1, server.connections.get() );
+    assertEquals( 1L, pool.getStatistics().get( "connectionsCreated" ) );
+    assertEquals( 2L, pool.getStatistics().get( "connectionsReused" ) );
+    pool.clear();
+    assertEquals( 0, pool.getStatistics().get( "idleConnections" ) );
+  }
+
+  @Test
+  public void testConnectionClosedByServerIsReplaced() throws Exception {
+    SmtpTransportPool pool = new SmtpTransportPool( 2, 60000, 100 );
+    server.closeAfterMessage = true;
+    pool.send( session, message( 1 ) );
+    pool.send( session, message( 2 ) );
+    assertEquals( 2, server.messages.get() );
+    assertEquals( 2, server.connections.get() );
+    assertEquals( 1L, pool.getStatistics().get( "reconnects" ) );
+    pool.clear();
+  }
+
+  @Test
+  public void testRefusedMessageIsNotRetried() throws Exception {
+    SmtpTransportPool pool = new SmtpTransportPool( 2, 60000, 100 );
+    pool.send( session, message( 1 ) );
+    server.refuseRecipients = true;
+    try {
+      pool.send( session, message( 2 ) );
+      fail();
+    } catch ( SendFailedException e ) {
+      // the server refused the recipient, the connection is fine
+    }
+    assertEquals( 1, server.messages.get() );
+    assertEquals( 1, server.connections.get() );
+    assertEquals( 0L, pool.getStatistics().get( "reconnects" ) );
+    pool.clear();
+  }
+
+  @Test
+  public void testConnectionIsClosedAfterMaxMessages() throws Exception {
+    SmtpTransportPool pool = new SmtpTransportPool( 2, 60000, 2 );
+    for ( int i = 0; i < 4; i++ ) {
+      pool.send( session, message( i ) );
+    }
+    assertEquals( 4, server.messages.get() );
+    assertEquals( 2, server.connections.get() );
+    pool.clear();
+  }
+
+  @Test
+  public void testNoPooling() throws Exception {
+    SmtpTransportPool pool = new SmtpTransportPool( 0, 60000, 100 );
+    pool.send( session, message( 1 ) );
+    pool.send( session, message( 2 ) );
+    assertEquals( 2, server.connections.get() );
+    assertEquals( 0, pool.getStatistics().get( "idleConnections" ) );
+  }
+
+  private MimeMessage message( int i ) throws Exception {
+    MimeMessage msg = new MimeMessage( session );
+    msg.setFrom( new InternetAddress( "scheduler@pentaho.com" ) );
+    msg.setRecipients( Message.RecipientType.TO, InternetAddress.parse( "suzy@pentaho.com" ) );
+    msg.setSubject( "Report " + i );
+    msg.setText( "body " + i );
+    return msg;
+  }
+
+  /**
+   * Minimal in-process SMTP server: accepts every command unless told otherwise, counts connections and messages.
+   */
+  private static class SmtpStub implements Runnable {
+    private final ServerSocket serverSocket = new ServerSocket( 0 );
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger messages = new AtomicInteger();
+    private volatile boolean closeAfterMessage;
+    private volatile boolean refuseRecipients;
+
+    private SmtpStub() throws IOException {
+      Thread thread = new Thread( this, "smtp-stub" );
+      thread.setDaemon( true );
+      thread.start();
+    }
+
+    private int getPort() {
+      return serverSocket.getLocalPort();
+    }
+
+    private void close() throws IOException {
+      serverSocket.close();
+    }
+
+    @Override
+    public void run() {
+      try {
+        while ( true ) {
+          final Socket socket = serverSocket.accept();
+          connections.incrementAndGet();
+          Thread handler = new Thread( () -> handle( socket ), "smtp-stub-connection" );
+          handler.setDaemon( true );
+          handler.start();
+        }
+      } catch ( IOException e ) {
+        // closed
+      }
+    }
+
+    private void handle( Socket socket ) {
+      try ( Socket s = socket;
+            BufferedReader in = new BufferedReader( new InputStreamReader( s.getInputStream(),
+              StandardCharsets.US_ASCII ) ) ) {
+        OutputStream out = s.getOutputStream();
+        reply( out, "220 localhost ready" );
+        String line;
+        while ( ( line = in.readLine() ) != null ) {
+          String command = line.toUpperCase();
+          if ( command.startsWith( "DATA" ) ) {
+            reply( out, "354 go ahead" );
+            while ( ( line = in.readLine() ) != null && !line.equals( "." ) ) {
+              // message content
+            }
+            messages.incrementAndGet();
+            reply( out, "250 queued" );
+            if ( closeAfterMessage ) {
+              return;
+            }
+          } else if ( command.startsWith( "RCPT" ) && refuseRecipients ) {
+            reply( out, "550 no such user" );
+          } else if ( command.startsWith( "QUIT" ) ) {
+            reply( out, "221 bye" );
+            return;
+          } else {
+            reply( out, "250 OK" );
+          }
+        }
+      } catch ( SocketException e ) {
+        // client went away
+      } catch ( IOException e ) {
+        throw new IllegalStateException( e );
+      }
+    }
+
+    private static void reply( OutputStream out, String reply ) throws IOException {
+      out.write( ( reply + "\r\n" ).getBytes( StandardCharsets.US_ASCII ) );
+      out.flush();
+    }
+  }
+}
@@ -0,0 +1,207 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.importer;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.platform.plugin.services.importexport.IRepositoryImportLogger;
+import org.pentaho.platform.plugin.services.importexport.ImportSession;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ImportPipelineTest {
+
+  private static final long MAX_AGE = 3600000L;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Log log;
+
+  @Before
+  public void setUp() {
+    log = mock( Log.class );
+    ImportSession.iPlatformImporter = mock( IPlatformImporter.class );
+  }
+
+  @After
+  public void tearDown() {
+    ImportSession.clearSession();
+    ImportSession.iPlatformImporter = null;
+  }
+
+  @Test
+  public void testFailedImportResumesFromCheckpoint() throws Exception {
+    final List<String> imported = new ArrayList<>();
+    final AtomicBoolean fail = new AtomicBoolean( true );
+    final List<ImportPipeline.Task> tasks = new ArrayList<>();
+    for ( String name : new String[] { "/public/a.prpt", "/public/b.prpt", "/public/c.prpt" } ) {
+      tasks.add( new ImportPipeline.Task( name, "/public", () -> {
+        if ( name.startsWith( "/public/b" ) && fail.get() ) {
+          throw new PlatformImportException( "failed" );
+        }
+        imported.add( name );
+      } ) );
+    }
+
+    try ( ImportPipeline pipeline = newPipeline( 1 ) ) {
+      pipeline.runPhase( ImportPhase.DATASOURCES, () -> imported.add( "datasources" ) );
+      pipeline.runTasks( ImportPhase.CONTENT, tasks, true );
+      fail();
+    } catch ( PlatformImportException e ) {
+      // expected
+    }
+    assertEquals( 1, folder.getRoot().listFiles().length );
+
+    fail.set( false );
+    imported.clear();
+    try ( ImportPipeline pipeline = newPipeline( 1 ) ) {
+      assertTrue( pipeline.getCheckpoint().isResumed() );
+      pipeline.runPhase( ImportPhase.DATASOURCES, () -> imported.add( "datasources" ) );
+      pipeline.runTasks( ImportPhase.CONTENT, tasks, true );
+      assertEquals( 1, pipeline.getProgress( ImportPhase.CONTENT ).getResumed() );
+      assertEquals( 2, pipeline.getProgress( ImportPhase.CONTENT ).getCompleted() );
+      pipeline.complete();
+    }
+    assertEquals( 2, imported.size() );
+    assertEquals( "/public/b.prpt", imported.get( 0 ) );
+    assertEquals( 0, folder.getRoot().listFiles().length );
+  }
+
+  @Test
+  public void testTruncatedCheckpointLineIsIgnored() throws Exception {
+    try ( ImportPipeline pipeline = newPipeline( 1 ) ) {
+      pipeline.getCheckpoint().markDone( "/public/a.prpt" );
+    }
+    final File journal = folder.getRoot().listFiles()[ 0 ];
+    FileUtils.writeStringToFile( journal, "file:/public/b", "UTF-8", true );
+
+    try ( ImportPipeline pipeline = newPipeline( 1 ) ) {
+      assertTrue( pipeline.getCheckpoint().isDone( "/public/a.prpt" ) );
+      assertFalse( pipeline.getCheckpoint().isDone( "/public/b" ) );
+    }
+  }
+
+  @Test
+  public void testConcurrentTasksAndRetryInCallingThread() throws Exception {
+    final ImportSession parent = ImportSession.getSession();
+    final Map<String, Thread> threads = new ConcurrentHashMap<>();
+    final AtomicBoolean failOnce = new AtomicBoolean( true );
+    final List<ImportPipeline.Task> tasks = new ArrayList<>();
+    for ( int i = 0; i < 12; i++ ) {
+      final String name = "/public/f" + ( i % 3 ) + "/file" + i;
+      tasks.add( new ImportPipeline.Task( name, "/public/f" + ( i % 3 ), () -> {
+        if ( name.endsWith( "/file5" ) && failOnce.getAndSet( false ) ) {
+          throw new IllegalStateException( "conflict" );
+        }
+        ImportSession.getSession().getSkippedFiles().add( name );
+        threads.put( name, Thread.currentThread() );
+      } ) );
+    }
+
+    final Thread caller = Thread.currentThread();
+    try ( ImportPipeline pipeline = newPipeline( 4, 2 ) ) {
+      pipeline.runTasks( ImportPhase.CONTENT, tasks, true );
+      assertEquals( 12, pipeline.getProgress( ImportPhase.CONTENT ).getCompleted() );
+      assertEquals( 1, pipeline.getProgress( ImportPhase.CONTENT ).getRetried() );
+    }
+
+    assertEquals( 12, threads.size() );
+    assertEquals( caller, threads.get( "/public/f2/file5" ) );
+    for ( Map.Entry<String, Thread> entry : threads.entrySet() ) {
+      if ( !entry.getKey().endsWith( "/file5" ) ) {
+        assertNotSame( caller, entry.getValue() );
+      }
+    }
+    // the workers imported with forks of the import session, merged back at the end of their batch
+    assertEquals( 12, parent.getSkippedFiles().size() );
+  }
+
+  @Test
+  public void testWorkersJoinTheImportLogAndRetryWithRetryAction() throws Exception {
+    final IRepositoryImportLogger importLogger = mock( IRepositoryImportLogger.class );
+    final Object job = new Object();
+    when( importLogger.getJob() ).thenReturn( job );
+    final List<String> retried = Collections.synchronizedList( new ArrayList<>() );
+    final List<ImportPipeline.Task> tasks = new ArrayList<>();
+    for ( int i = 0; i < 4; i++ ) {
+      final String name = "/public/f" + i + "/file";
+      tasks.add( new ImportPipeline.Task( name, "/public/f" + i, () -> {
+        if ( name.startsWith( "/public/f1/" ) ) {
+          throw new IllegalStateException( "partly written" );
+        }
+      }, () -> retried.add( name ) ) );
+    }
+
+    try ( ImportPipeline pipeline = new ImportPipeline( importLogger,
+      ImportCheckpoint.open( folder.getRoot(), "archive", MAX_AGE ), 2, 100 ) ) {
+      pipeline.runTasks( ImportPhase.CONTENT, tasks, true );
+      assertEquals( 4, pipeline.getProgress( ImportPhase.CONTENT ).getCompleted() );
+    }
+
+    assertEquals( Collections.singletonList( "/public/f1/file" ), retried );
+    verify( importLogger, times( 4 ) ).joinJob( job );
+    verify( importLogger, times( 4 ) ).leaveJob();
+  }
+
+  @Test
+  public void testCompletedPhaseIsSkipped() throws Exception {
+    try ( ImportPipeline pipeline = newPipeline( 1 ) ) {
+      pipeline.runPhase( ImportPhase.SCHEDULES, () -> { } );
+    }
+    try ( ImportPipeline pipeline = newPipeline( 1 ) ) {
+      pipeline.runPhase( ImportPhase.SCHEDULES, () -> fail() );
+      pipeline.runTasks( ImportPhase.CONTENT,
+        Collections.singletonList( new ImportPipeline.Task( "/public/a", "/public", () -> { } ) ), false );
+      assertEquals( 1, pipeline.getProgress( ImportPhase.CONTENT ).getCompleted() );
+    }
+  }
+
+  private ImportPipeline newPipeline( int workers ) throws Exception {
+    return newPipeline( workers, 100 );
+  }
+
+  private ImportPipeline newPipeline( int workers, int batchSize ) throws Exception {
+    return new ImportPipeline( log, ImportCheckpoint.open( folder.getRoot(), "archive", MAX_AGE ), workers,
+      batchSize );
+  }
+}
@@ -61,6 +61,7 @@ import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -70,10 +71,14 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.channels.IllegalSelectorException;
 import java.security.GeneralSecurityException;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static javax.ws.rs.core.Response.Status.FORBIDDEN;
 import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
@@ -84,15 +89,18 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -118,6 +126,8 @@ public class FileResourceTest {
   private static final String NAME_NEW_FILE_WITHOUT_EXTENSION = "nameNewFile";
 
   private static final String FILE_ID = "444324fd54ghad";
+  private static final String CONTENT = "0123456789";
+  private static final Date LAST_MODIFIED = new Date( 1700000000000L );
   private FileResource fileResource;
   private Tenant tenant;
 
@@ -1424,6 +1434,26 @@ public class FileResourceTest {
     verify( fileResource.fileService, times( 1 ) ).doGetDeletedFiles();
   }
 
+  @Test
+  public void testDoGetLockedFilesNotSupported() throws Exception {
+    doThrow( new UnsupportedOperationException() ).when( fileResource.fileService ).doGetLockedFiles( "suzy" );
+
+    try {
+      fileResource.doGetLockedFiles( "suzy" );
+      fail();
+    } catch ( WebApplicationException e ) {
+      assertEquals( 501, e.getResponse().getStatus() );
+    }
+  }
+
+  @Test
+  public void testDoUnlockFilesNotSupported() throws Exception {
+    doThrow( new UnsupportedOperationException() ).when( fileResource.fileService ).doUnlockFiles( "fileId" );
+
+    Response response = fileResource.doUnlockFiles( "fileId" );
+    assertEquals( 501, response.getStatus() );
+  }
+
   @Test
   public void testDoGetMetadata() throws Exception {
 
@@ -1704,4 +1734,124 @@ public class FileResourceTest {
     assertFalse( fileResource.validateSecurityPrincipal( ",Admin" ) );
     assertFalse( fileResource.validateSecurityPrincipal( "Admin\"" ) );
   }
+
+  @Test
+  public void testMatchingIfNoneMatchIsNotModified() throws Exception {
+    Map<String, String> headers = new HashMap<>();
+    headers.put( "If-None-Match", "\"" + FILE_ID + "-1.3\"" );
+    Response response = fileResource.buildOkResponse( contentWrapper( headers, new HashMap<>() ) );
+
+    assertEquals( 304, response.getStatus() );
+    assertEquals( FILE_ID + "-1.3", response.getEntityTag().getValue() );
+    assertNull( response.getEntity() );
+  }
+
+  @Test
+  public void testStaleIfNoneMatchReturnsContent() throws Exception {
+    Map<String, String> headers = new HashMap<>();
+    headers.put( "If-None-Match", "\"" + FILE_ID + "-1.2\"" );
+    Response response = fileResource.buildOkResponse( contentWrapper( headers, new HashMap<>() ) );
+
+    assertEquals( 200, response.getStatus() );
+    assertEquals( CONTENT, write( response ) );
+  }
+
+  @Test
+  public void testIfModifiedSince() throws Exception {
+    Map<String, Long> dates = new HashMap<>();
+    dates.put( "If-Modified-Since", LAST_MODIFIED.getTime() );
+    assertEquals( 304, fileResource.buildOkResponse( contentWrapper( new HashMap<>(), dates ) ).getStatus() );
+
+    dates.put( "If-Modified-Since", LAST_MODIFIED.getTime() - 1000 );
+    Response response = fileResource.buildOkResponse( contentWrapper( new HashMap<>(), dates ) );
+    assertEquals( 200, response.getStatus() );
+    assertEquals( CONTENT, write( response ) );
+  }
+
+  @Test
+  public void testSingleRangeIsPartialContent() throws Exception {
+    Map<String, String> headers = new HashMap<>();
+    headers.put( "Range", "bytes=2-5" );
+    Response response = fileResource.buildOkResponse( contentWrapper( headers, new HashMap<>() ) );
+
+    assertEquals( 206, response.getStatus() );
+    assertEquals( "bytes 2-5/10", response.getMetadata().getFirst( "Content-Range" ) );
+    assertEquals( "2345", write( response ) );
+  }
+
+  @Test
+  public void testRangeWithCurrentIfRangeIsPartialContent() throws Exception {
+    Map<String, String> headers = new HashMap<>();
+    headers.put( "Range", "bytes=-3" );
+    headers.put( "If-Range", "\"" + FILE_ID + "-1.3\"" );
+    Response response = fileResource.buildOkResponse( contentWrapper( headers, new HashMap<>() ) );
+
+    assertEquals( 206, response.getStatus() );
+    assertEquals( "789", write( response ) );
+  }
+
+  @Test
+  public void testRangeWithStaleIfRangeReturnsContent() throws Exception {
+    Map<String, String> headers = new HashMap<>();
+    headers.put( "Range", "bytes=2-5" );
+    headers.put( "If-Range", "\"" + FILE_ID + "-1.2\"" );
+    Response response = fileResource.buildOkResponse( contentWrapper( headers, new HashMap<>() ) );
+
+    assertEquals( 200, response.getStatus() );
+    assertEquals( CONTENT, write( response ) );
+  }
+
+  @Test
+  public void testMultipleRangesReturnContent() throws Exception {
+    Map<String, String> headers = new HashMap<>();
+    headers.put( "Range", "bytes=0-1,4-5" );
+    Response response = fileResource.buildOkResponse( contentWrapper( headers, new HashMap<>() ) );
+
+    assertEquals( 200, response.getStatus() );
+    assertNull( response.getMetadata().getFirst( "Content-Range" ) );
+    assertEquals( CONTENT, write( response ) );
+  }
+
+  @Test
+  public void testMalformedRangeReturnsContent() throws Exception {
+    Map<String, String> headers = new HashMap<>();
+    headers.put( "Range", "bytes=abc" );
+    Response response = fileResource.buildOkResponse( contentWrapper( headers, new HashMap<>() ) );
+
+    assertEquals( 200, response.getStatus() );
+    assertEquals( CONTENT, write( response ) );
+  }
+
+  @Test
+  public void testUnsatisfiableRange() throws Exception {
+    Map<String, String> headers = new HashMap<>();
+    headers.put( "Range", "bytes=20-" );
+    Response response = fileResource.buildOkResponse( contentWrapper( headers, new HashMap<>() ) );
+
+    assertEquals( 416, response.getStatus() );
+    assertEquals( "bytes */10", response.getMetadata().getFirst( "Content-Range" ) );
+    assertNull( response.getEntity() );
+  }
+
+  private FileService.RepositoryFileToStreamWrapper contentWrapper( Map<String, String> headers,
+                                                                    Map<String, Long> dates ) {
+    when( fileResource.httpServletRequest.getHeader( anyString() ) )
+      .thenAnswer( invocation -> headers.get( invocation.getArgument( 0 ) ) );
+    // not read when If-None-Match is sent
+    lenient().when( fileResource.httpServletRequest.getDateHeader( anyString() ) )
+      .thenAnswer( invocation -> dates.getOrDefault( invocation.getArgument( 0 ), -1L ) );
+    RepositoryFile file = new RepositoryFile.Builder( FILE_ID, "content.txt" ).versionId( "1.3" )
+      .lastModificationDate( LAST_MODIFIED ).fileSize( CONTENT.length() ).build();
+    FileService.RepositoryFileToStreamWrapper wrapper = mock( FileService.RepositoryFileToStreamWrapper.class );
+    when( wrapper.getRepositoryFile() ).thenReturn( file );
+    when( wrapper.getInputStream() )
+      .thenReturn( new ByteArrayInputStream( CONTENT.getBytes( StandardCharsets.UTF_8 ) ) );
+    return wrapper;
+  }
+
+  private static String write( Response response ) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ( (StreamingOutput) response.getEntity() ).write( out );
+    return new String( out.toByteArray(), StandardCharsets.UTF_8 );
+  }
 }
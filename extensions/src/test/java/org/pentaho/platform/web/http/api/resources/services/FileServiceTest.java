@@ -20,6 +20,7 @@
 
 package org.pentaho.platform.web.http.api.resources.services;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -37,16 +38,22 @@ import org.pentaho.platform.repository2.ClientRepositoryPaths;
 import org.pentaho.platform.repository2.unified.fileio.RepositoryFileOutputStream;
 import org.pentaho.platform.repository2.unified.webservices.DefaultUnifiedRepositoryWebService;
 import org.pentaho.platform.security.policy.rolebased.actions.RepositoryCreateAction;
+import java.io.File;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.LinkedList;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.ArgumentMatchers.any;
@@ -529,6 +536,38 @@ public class FileServiceTest {
     assertEquals(fileService.doGetCanEdit(), "true" );
   }
 
+  @Test( expected = IllegalStateException.class )
+  public void testSnapshotDirectoryMustBeConfigured() throws Exception {
+    fileService.getSnapshotDirectory();
+  }
+
+  @Test
+  public void testSnapshotDirectoryMustNotBeAccessibleToOthers() throws Exception {
+    File parent = Files.createTempDirectory( "snapshots" ).toFile();
+    try {
+      File directory = new File( parent, "snapshots" );
+      ISystemSettings settingsService = mock( ISystemSettings.class );
+      when( settingsService.getSystemSetting( "repository-snapshot/directory", null ) )
+        .thenReturn( directory.getAbsolutePath() );
+      PentahoSystem.setSystemSettingsService( settingsService );
+
+      assertEquals( directory, fileService.getSnapshotDirectory() );
+      assumeTrue( FileSystems.getDefault().supportedFileAttributeViews().contains( "posix" ) );
+      assertEquals( PosixFilePermissions.fromString( "rwx------" ),
+        Files.getPosixFilePermissions( directory.toPath() ) );
+
+      Files.setPosixFilePermissions( directory.toPath(), PosixFilePermissions.fromString( "rwxr-x---" ) );
+      try {
+        fileService.getSnapshotDirectory();
+        fail();
+      } catch ( IllegalStateException e ) {
+        // expected
+      }
+    } finally {
+      FileUtils.deleteQuietly( parent );
+    }
+  }
+
   private static String encode( String pathControlCharacter ) throws UnsupportedEncodingException {
     return URLEncoder.encode( pathControlCharacter, UTF_8 );
   }
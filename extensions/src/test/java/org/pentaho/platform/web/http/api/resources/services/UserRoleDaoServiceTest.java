@@ -401,6 +401,33 @@ public class UserRoleDaoServiceTest {
     userRoleService.getRoleMembers( "Report Author" );
   }
 
+  @Test
+  public void testSearchUsers() {
+    setupMockSessionUser( SESSION_USER_NAME, true );
+
+    IUserRoleDao roleDao = registerMockUserRoleDao();
+    when( roleDao.getUserNames( nullable( ITenant.class ), eq( "s" ), eq( 0 ), eq( 2 ) ) )
+      .thenReturn( Arrays.asList( "sam", "suzy" ) );
+
+    assertEquals( Arrays.asList( "sam", "suzy" ), userRoleService.searchUsers( "s", 0, 2 ).getUsers() );
+  }
+
+  @Test( expected = SecurityException.class )
+  public void testSearchUsersSecurityException() {
+    setupMockSessionUser( SESSION_USER_NAME, false );
+    registerMockUserRoleDao();
+
+    userRoleService.searchUsers( "s", 0, 2 );
+  }
+
+  @Test( expected = SecurityException.class )
+  public void testSearchRolesSecurityException() {
+    setupMockSessionUser( SESSION_USER_NAME, false );
+    registerMockUserRoleDao();
+
+    userRoleService.searchRoles( "p", 0, 2 );
+  }
+
   @Test
   public void testDeleteRole() {
     String roles = "role1\trole2\t";
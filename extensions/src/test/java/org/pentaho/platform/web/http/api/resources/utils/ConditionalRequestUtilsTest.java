@@ -0,0 +1,147 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources.utils;
+
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.EntityTag;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ConditionalRequestUtilsTest {
+
+  private static final Date MODIFIED = new Date( 1700000000123L );
+
+  @Test
+  public void testEntityTagFollowsVersion() {
+    RepositoryFile file = file( "1.0" );
+    EntityTag tag = ConditionalRequestUtils.getEntityTag( file, null );
+    assertEquals( "id-1-1.0", tag.getValue() );
+    assertNotEquals( tag, ConditionalRequestUtils.getEntityTag( file( "1.1" ), null ) );
+    assertNotEquals( tag, ConditionalRequestUtils.getEntityTag( file, "download" ) );
+    assertEquals( "id-1-1700000000000", ConditionalRequestUtils.getEntityTag( file( null ), null ).getValue() );
+    assertNull( ConditionalRequestUtils.getEntityTag( null, null ) );
+  }
+
+  @Test
+  public void testIfNoneMatch() {
+    EntityTag tag = ConditionalRequestUtils.getEntityTag( file( "1.0" ), null );
+    HttpServletRequest request = mock( HttpServletRequest.class );
+
+    when( request.getHeader( ConditionalRequestUtils.IF_NONE_MATCH ) ).thenReturn( "\"other\", W/\"id-1-1.0\"" );
+    assertTrue( ConditionalRequestUtils.isNotModified( request, tag, MODIFIED ) );
+
+    when( request.getHeader( ConditionalRequestUtils.IF_NONE_MATCH ) ).thenReturn( "\"id-1-0.9\"" );
+    when( request.getDateHeader( ConditionalRequestUtils.IF_MODIFIED_SINCE ) ).thenReturn( MODIFIED.getTime() );
+    // If-Modified-Since is ignored when If-None-Match is present
+    assertFalse( ConditionalRequestUtils.isNotModified( request, tag, MODIFIED ) );
+  }
+
+  @Test
+  public void testIfModifiedSince() {
+    Date lastModified = ConditionalRequestUtils.getLastModified( file( "1.0" ) );
+    HttpServletRequest request = mock( HttpServletRequest.class );
+    when( request.getDateHeader( ConditionalRequestUtils.IF_MODIFIED_SINCE ) ).thenReturn( -1L );
+    assertFalse( ConditionalRequestUtils.isNotModified( request, null, lastModified ) );
+
+    when( request.getDateHeader( ConditionalRequestUtils.IF_MODIFIED_SINCE ) ).thenReturn( 1700000000000L );
+    assertTrue( ConditionalRequestUtils.isNotModified( request, null, lastModified ) );
+
+    when( request.getDateHeader( ConditionalRequestUtils.IF_MODIFIED_SINCE ) ).thenReturn( 1699999999000L );
+    assertFalse( ConditionalRequestUtils.isNotModified( request, null, lastModified ) );
+  }
+
+  @Test
+  public void testParseRange() {
+    assertRange( ConditionalRequestUtils.parseRange( "bytes=0-99", 1000 ), 0, 99 );
+    assertRange( ConditionalRequestUtils.parseRange( "bytes=900-", 1000 ), 900, 999 );
+    assertRange( ConditionalRequestUtils.parseRange( "bytes=-100", 1000 ), 900, 999 );
+    assertRange( ConditionalRequestUtils.parseRange( "bytes=990-2000", 1000 ), 990, 999 );
+    assertFalse( ConditionalRequestUtils.parseRange( "bytes=1000-", 1000 ).isSatisfiable() );
+    assertEquals( "bytes */1000", ConditionalRequestUtils.parseRange( "bytes=1000-", 1000 ).toContentRange() );
+    assertNull( ConditionalRequestUtils.parseRange( "bytes=0-1,5-6", 1000 ) );
+    assertNull( ConditionalRequestUtils.parseRange( "bytes=5-1", 1000 ) );
+    assertNull( ConditionalRequestUtils.parseRange( "items=0-1", 1000 ) );
+    assertNull( ConditionalRequestUtils.parseRange( "bytes=a-b", 1000 ) );
+  }
+
+  @Test
+  public void testStaleIfRangeSendsFullContent() {
+    EntityTag tag = ConditionalRequestUtils.getEntityTag( file( "1.0" ), null );
+    HttpServletRequest request = mock( HttpServletRequest.class );
+    when( request.getHeader( ConditionalRequestUtils.RANGE ) ).thenReturn( "bytes=10-19" );
+
+    when( request.getHeader( ConditionalRequestUtils.IF_RANGE ) ).thenReturn( "\"id-1-1.0\"" );
+    assertRange( ConditionalRequestUtils.getRange( request, tag, MODIFIED, 100 ), 10, 19 );
+
+    when( request.getHeader( ConditionalRequestUtils.IF_RANGE ) ).thenReturn( "\"id-1-0.9\"" );
+    assertNull( ConditionalRequestUtils.getRange( request, tag, MODIFIED, 100 ) );
+
+    when( request.getHeader( ConditionalRequestUtils.IF_RANGE ) ).thenReturn( "W/\"id-1-1.0\"" );
+    assertNull( ConditionalRequestUtils.getRange( request, tag, MODIFIED, 100 ) );
+  }
+
+  @Test
+  public void testStreamingOutputCopiesRange() throws Exception {
+    byte[] content = "0123456789".getBytes( StandardCharsets.US_ASCII );
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ConditionalRequestUtils.getStreamingOutput( new ByteArrayInputStream( content ), 3, 4 ).write( out );
+    assertEquals( "3456", out.toString( "US-ASCII" ) );
+
+    File file = File.createTempFile( "range", ".txt" );
+    try {
+      try ( FileOutputStream fos = new FileOutputStream( file ) ) {
+        fos.write( content );
+      }
+      out.reset();
+      ConditionalRequestUtils.getStreamingOutput( new FileInputStream( file ), 6, -1 ).write( out );
+      assertEquals( "6789", out.toString( "US-ASCII" ) );
+    } finally {
+      assertTrue( file.delete() );
+    }
+  }
+
+  private static void assertRange( ConditionalRequestUtils.ByteRange range, long start, long end ) {
+    assertTrue( range.isSatisfiable() );
+    assertEquals( start, range.getStart() );
+    assertEquals( end, range.getEnd() );
+  }
+
+  private static RepositoryFile file( String versionId ) {
+    return new RepositoryFile.Builder( "id-1", "file.txt" ).versionId( versionId ).lastModificationDate( MODIFIED )
+      .build();
+  }
+}
@@ -29,14 +29,24 @@ import org.mockito.Mockito;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.ISystemSettings;
 import org.pentaho.platform.api.engine.ObjectFactoryException;
+import org.pentaho.platform.api.util.ITempFileDeleter;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.springframework.security.authentication.AuthenticationProvider;
 
+import javax.servlet.FilterChain;
 import javax.servlet.ServletContext;
 import javax.servlet.SessionCookieConfig;
 import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 public class HttpSessionPentahoSessionIntegrationFilterTest {
 
@@ -151,4 +161,67 @@ public class HttpSessionPentahoSessionIntegrationFilterTest {
     }
   }
 
+  @Test
+  public void testStaticResourceDoesNotCreateHttpSession() throws Exception {
+    final HttpServletRequest request = mockRequest( "GET", "/pentaho/content/common-ui/resources/web/require.js" );
+    final AtomicReference<IPentahoSession> sessionInChain = new AtomicReference<>();
+    final FilterChain chain = Mockito.mock( FilterChain.class );
+    Mockito.doAnswer( invocation -> {
+      sessionInChain.set( PentahoSessionHolder.getSession() );
+      return null;
+    } ).when( chain ).doFilter( Mockito.any(), Mockito.any() );
+
+    new HttpSessionPentahoSessionIntegrationFilter().doFilter( request, servletResponse, chain );
+
+    assertNotNull( sessionInChain.get() );
+    Mockito.verify( request, Mockito.never() ).getSession( true );
+    Mockito.verify( request, Mockito.never() ).getSession();
+  }
+
+  @Test
+  public void testStatefulRequestCreatesHttpSession() throws Exception {
+    final HttpServletRequest request = mockRequest( "GET", "/pentaho/Home" );
+    Mockito.when( request.getSession( true ) ).thenReturn( httpSession );
+
+    new HttpSessionPentahoSessionIntegrationFilter()
+      .doFilter( request, servletResponse, Mockito.mock( FilterChain.class ) );
+
+    Mockito.verify( httpSession ).setAttribute( Mockito.eq( PentahoSystem.PENTAHO_SESSION_KEY ), Mockito.any() );
+  }
+
+  @Test
+  public void testClassifier() {
+    final SessionRequestClassifier classifier = new SessionRequestClassifier();
+    assertEquals( SessionRequestClassifier.RequestType.STATIC_RESOURCE,
+      classifier.classify( mockRequest( "GET", "/pentaho/content/x/style.CSS;jsessionid=1" ) ) );
+    assertEquals( SessionRequestClassifier.RequestType.STATEFUL,
+      classifier.classify( mockRequest( "POST", "/pentaho/content/x/style.css" ) ) );
+    assertEquals( SessionRequestClassifier.RequestType.STATEFUL,
+      classifier.classify( mockRequest( "GET", "/pentaho/api/repos/x.prpt/viewer" ) ) );
+
+    final HttpServletRequest bearer = mockRequest( "GET", "/pentaho/api/session/userName" );
+    Mockito.when( bearer.getHeader( "Authorization" ) ).thenReturn( "bearer abc" );
+    assertEquals( SessionRequestClassifier.RequestType.STATELESS_API, classifier.classify( bearer ) );
+
+    classifier.setEnabled( false );
+    assertEquals( SessionRequestClassifier.RequestType.STATEFUL, classifier.classify( bearer ) );
+  }
+
+  @Test
+  public void testTempFileDeleterIsResolvedOnFirstUse() throws ObjectFactoryException {
+    final IPentahoSession session = new HttpSessionPentahoSessionIntegrationFilter().generateLightweightPentahoSession();
+    final ITempFileDeleter deleter = Mockito.mock( ITempFileDeleter.class );
+    PentahoSystem.registerObject( deleter, ITempFileDeleter.class );
+
+    assertSame( deleter, session.getAttribute( ITempFileDeleter.DELETER_SESSION_VARIABLE ) );
+  }
+
+  private HttpServletRequest mockRequest( String method, String uri ) {
+    final HttpServletRequest request = Mockito.mock( HttpServletRequest.class );
+    Mockito.when( request.getMethod() ).thenReturn( method );
+    Mockito.when( request.getRequestURI() ).thenReturn( uri );
+    Mockito.when( request.getContextPath() ).thenReturn( "/pentaho" );
+    Mockito.when( request.getLocale() ).thenReturn( Locale.US );
+    return request;
+  }
 }
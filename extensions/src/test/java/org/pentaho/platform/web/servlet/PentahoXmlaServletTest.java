@@ -38,6 +38,7 @@ import org.pentaho.platform.engine.services.solution.PentahoEntityResolver;
 import org.pentaho.platform.plugin.action.mondrian.catalog.IMondrianCatalogService;
 import org.pentaho.platform.plugin.action.mondrian.catalog.MondrianCatalog;
 import org.pentaho.platform.plugin.action.mondrian.catalog.MondrianCatalogHelper;
+import org.pentaho.platform.plugin.action.olap.XmlaDiscoverCache;
 import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
 
 import javax.servlet.ServletConfig;
@@ -45,6 +46,7 @@ import java.util.Properties;
 import java.util.concurrent.Callable;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static junit.framework.TestCase.assertNotNull;
 import static junit.framework.TestCase.fail;
 import static org.junit.Assert.assertTrue;
@@ -201,4 +203,51 @@ public class PentahoXmlaServletTest  {
 
     }
   }
+
+  @Test
+  public void testCacheableDiscover() throws Exception {
+    org.w3c.dom.Element body = parseBody( "<Discover xmlns=\"urn:schemas-microsoft-com:xml-analysis\">"
+      + "<RequestType>MDSCHEMA_CUBES</RequestType>"
+      + "<Restrictions><RestrictionList><CUBE_NAME>Sales</CUBE_NAME></RestrictionList></Restrictions>"
+      + "<Properties><PropertyList><Catalog>SteelWheels</Catalog></PropertyList></Properties>"
+      + "</Discover>" );
+    org.w3c.dom.Element discover = PentahoXmlaServlet.getCacheableDiscover( body );
+    assertNotNull( discover );
+    assertEquals( "SteelWheels", PentahoXmlaServlet.getCatalog( discover ) );
+  }
+
+  @Test
+  public void testExecuteIsNotCacheable() throws Exception {
+    org.w3c.dom.Element body = parseBody( "<Execute xmlns=\"urn:schemas-microsoft-com:xml-analysis\">"
+      + "<Command><Statement>SELECT FROM [Sales]</Statement></Command></Execute>" );
+    assertNull( PentahoXmlaServlet.getCacheableDiscover( body ) );
+
+    body = parseBody( "<Discover xmlns=\"urn:schemas-microsoft-com:xml-analysis\">"
+      + "<RequestType>DISCOVER_SESSIONS</RequestType></Discover>" );
+    assertNull( PentahoXmlaServlet.getCacheableDiscover( body ) );
+  }
+
+  @Test
+  public void testDiscoverCacheInvalidation() {
+    XmlaDiscoverCache cache = new XmlaDiscoverCache( 1024, 60 );
+    cache.put( "SteelWheels", "cubes", new byte[] { 1 } );
+    cache.put( "FoodMart", "cubes", new byte[] { 2 } );
+    cache.put( null, "catalogs", new byte[] { 3 } );
+
+    cache.invalidateCatalog( "mondrian:/SteelWheels" );
+
+    assertNull( cache.get( "SteelWheels", "cubes" ) );
+    assertNull( cache.get( null, "catalogs" ) );
+    assertEquals( 2, cache.get( "FoodMart", "cubes" )[ 0 ] );
+  }
+
+  private static org.w3c.dom.Element parseBody( String content ) throws Exception {
+    javax.xml.parsers.DocumentBuilderFactory factory = javax.xml.parsers.DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware( true );
+    String envelope = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+      + "<SOAP-ENV:Body>" + content + "</SOAP-ENV:Body></SOAP-ENV:Envelope>";
+    org.w3c.dom.Document document =
+      factory.newDocumentBuilder().parse( new org.xml.sax.InputSource( new java.io.StringReader( envelope ) ) );
+    return (org.w3c.dom.Element) document.getDocumentElement().getFirstChild();
+  }
 }
@@ -0,0 +1,291 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository.usersettings;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import org.pentaho.platform.api.engine.ILogoutListener;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.security.SecurityHelper;
+import org.pentaho.platform.repository2.ClientRepositoryPaths;
+import org.pentaho.platform.repository2.unified.jcr.JcrTenantUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the user settings stored in the repository file metadata in memory, for the {@link UserSettingService}
+ * beans sharing it.
+ *
+ * <p>The global settings (metadata of the etc folder) are loaded once per tenant and shared by the users of that
+ * tenant. The settings of each user (metadata of the home folder) are loaded on first access and kept until the
+ * user logs out or the entry expires. Users are identified by their tenant qualified principal name, so that
+ * users with the same name in different tenants never share an entry. Both maps hold the setting names without
+ * the {@link UserSettingService#SETTING_PREFIX}.
+ *
+ * <p>Changes made through another server of a cluster are only seen once the entry expires; keep the global
+ * settings expiration short when the settings are changed on a cluster.
+ *
+ * <p>When a write-behind delay is configured, {@link #setUserSetting(String, String, String)} only updates the
+ * cached map and schedules the write; all the changes made by a user within the delay are stored in a single
+ * repository update. {@link #flush(String)} writes them immediately.
+ */
+public class UserSettingCache {
+
+  private static final Logger log = LoggerFactory.getLogger( UserSettingCache.class );
+
+  private final IUnifiedRepository repository;
+  private final long writeBehindDelayMillis;
+  private final Cache<String, UserEntry> users;
+  private final Cache<String, Map<String, String>> globalSettings;
+  private ScheduledExecutorService writer;
+
+  private final ILogoutListener logoutListener = new ILogoutListener() {
+    @Override
+    public void onLogout( IPentahoSession session ) {
+      if ( session != null && session.getName() != null ) {
+        invalidateUser( session.getName() );
+      }
+    }
+  };
+
+  /**
+   * @param writeBehindDelayMillis         Delay before the changes made by a user are written to the repository;
+   *                                       changes made within the delay are written together. 0 writes every
+   *                                       change immediately.
+   * @param expirationMillis               How long the settings of a user stay cached; 0 disables the cache.
+   * @param globalSettingsExpirationMillis How long the global settings of a tenant stay cached.
+   */
+  public UserSettingCache( IUnifiedRepository repository, long writeBehindDelayMillis, long expirationMillis,
+                           long globalSettingsExpirationMillis ) {
+    this.repository = repository;
+    this.writeBehindDelayMillis = writeBehindDelayMillis;
+    this.users = CacheBuilder.newBuilder()
+      .expireAfterWrite( expirationMillis, TimeUnit.MILLISECONDS )
+      .removalListener( ( RemovalNotification<String, UserEntry> notification ) -> {
+        // never lose a pending write because the entry went away
+        flush( notification.getKey(), notification.getValue() );
+      } )
+      .build();
+    this.globalSettings = CacheBuilder.newBuilder()
+      .expireAfterWrite( globalSettingsExpirationMillis, TimeUnit.MILLISECONDS )
+      .build();
+    if ( expirationMillis > 0 ) {
+      PentahoSystem.addLogoutListener( logoutListener );
+    }
+  }
+
+  /**
+   * Returns the global settings of the current tenant, loading them if needed.
+   */
+  Map<String, String> getGlobalSettings() {
+    try {
+      return globalSettings.get( getTenantKey(), () -> {
+        Serializable tenantHomeId = repository.getFile( ClientRepositoryPaths.getEtcFolderPath() ).getId();
+        return extractSettings( repository.getFileMetadata( tenantHomeId ) );
+      } );
+    } catch ( ExecutionException e ) {
+      throw new IllegalStateException( e.getCause() );
+    }
+  }
+
+  /**
+   * Drops the cached global settings of the current tenant.
+   */
+  void invalidateGlobalSettings() {
+    globalSettings.invalidate( getTenantKey() );
+  }
+
+  /**
+   * Returns the settings of a user, loading them if needed. Pending changes are included.
+   */
+  Map<String, String> getUserSettings( String username ) {
+    return getEntry( username ).settings;
+  }
+
+  /**
+   * Writes the pending changes of a user, if any, and drops the cached settings.
+   */
+  void invalidateUser( String username ) {
+    users.invalidate( getUserKey( username ) );
+  }
+
+  /**
+   * Changes a setting of a user. The repository is updated immediately or after the write-behind delay.
+   */
+  void setUserSetting( final String username, String settingName, String settingValue ) {
+    final UserEntry entry = getEntry( username );
+    final String key = getUserKey( username );
+    boolean schedule;
+    synchronized ( entry ) {
+      Map<String, String> settings = new LinkedHashMap<>( entry.settings );
+      settings.put( settingName, settingValue );
+      entry.settings = Collections.unmodifiableMap( settings );
+      entry.pending.put( settingName, settingValue );
+      schedule = !entry.flushScheduled;
+      entry.flushScheduled = true;
+    }
+    if ( writeBehindDelayMillis <= 0 ) {
+      flush( key, entry );
+    } else if ( schedule ) {
+      getWriter().schedule( () -> flush( key, entry ), writeBehindDelayMillis, TimeUnit.MILLISECONDS );
+    }
+  }
+
+  /**
+   * Writes the pending changes of a user to the repository.
+   */
+  void flush( String username ) {
+    final String key = getUserKey( username );
+    UserEntry entry = users.getIfPresent( key );
+    if ( entry != null ) {
+      flush( key, entry );
+    }
+  }
+
+  /**
+   * Writes the pending changes of every user to the repository.
+   */
+  public void flushAll() {
+    for ( Map.Entry<String, UserEntry> entry : users.asMap().entrySet() ) {
+      flush( entry.getKey(), entry.getValue() );
+    }
+  }
+
+  /**
+   * Writes everything and stops the write-behind thread.
+   */
+  public synchronized void shutdown() {
+    PentahoSystem.remove( logoutListener );
+    flushAll();
+    if ( writer != null ) {
+      writer.shutdown();
+      writer = null;
+    }
+  }
+
+  /**
+   * The tenant qualified principal name of a user.
+   */
+  protected String getUserKey( String username ) {
+    return JcrTenantUtils.getTenantedUser( username );
+  }
+
+  /**
+   * The id of the tenant of the current session.
+   */
+  protected String getTenantKey() {
+    ITenant tenant = JcrTenantUtils.getTenant();
+    return tenant == null || tenant.getId() == null ? "" : tenant.getId();
+  }
+
+  private UserEntry getEntry( String username ) {
+    final String key = getUserKey( username );
+    UserEntry entry = users.getIfPresent( key );
+    if ( entry == null ) {
+      Serializable userHomeId = repository.getFile( ClientRepositoryPaths.getUserHomeFolderPath( username ) ).getId();
+      entry = new UserEntry( userHomeId, extractSettings( repository.getFileMetadata( userHomeId ) ) );
+      UserEntry existing = users.asMap().putIfAbsent( key, entry );
+      if ( existing != null ) {
+        entry = existing;
+      }
+    }
+    return entry;
+  }
+
+  private void flush( final String key, final UserEntry entry ) {
+    final Map<String, String> changes;
+    synchronized ( entry ) {
+      entry.flushScheduled = false;
+      if ( entry.pending.isEmpty() ) {
+        return;
+      }
+      changes = new LinkedHashMap<>( entry.pending );
+      entry.pending.clear();
+    }
+    synchronized ( UserSettingService.lock ) {
+      try {
+        SecurityHelper.getInstance().runAsSystem( () -> {
+          // re-read the metadata, other properties of the home folder may have changed meanwhile
+          final Map<String, Serializable> fileMetadata = repository.getFileMetadata( entry.homeFolderId );
+          for ( Map.Entry<String, String> change : changes.entrySet() ) {
+            fileMetadata.put( UserSettingService.SETTING_PREFIX + change.getKey(), change.getValue() );
+          }
+          repository.setFileMetadata( entry.homeFolderId, fileMetadata );
+          return null;
+        } );
+      } catch ( Exception e ) {
+        if ( log.isDebugEnabled() ) {
+          log.debug( "Error storing user settings for user: " + key + ", settings: " + changes, e );
+        }
+        log.error( "Error storing user setting", e );
+        // the cached values are not what the repository holds anymore
+        users.asMap().remove( key, entry );
+      }
+    }
+  }
+
+  private synchronized ScheduledExecutorService getWriter() {
+    if ( writer == null ) {
+      writer = Executors.newSingleThreadScheduledExecutor( runnable -> {
+        Thread thread = new Thread( runnable, "user-settings-writer" ); //$NON-NLS-1$
+        thread.setDaemon( true );
+        return thread;
+      } );
+    }
+    return writer;
+  }
+
+  private static Map<String, String> extractSettings( Map<String, Serializable> metadata ) {
+    Map<String, String> settings = new LinkedHashMap<>();
+    for ( Map.Entry<String, Serializable> entry : metadata.entrySet() ) {
+      String key = entry.getKey();
+      if ( key.startsWith( UserSettingService.SETTING_PREFIX ) && entry.getValue() != null ) {
+        settings.put( key.substring( UserSettingService.SETTING_PREFIX.length() ), entry.getValue().toString() );
+      }
+    }
+    return Collections.unmodifiableMap( settings );
+  }
+
+  private static class UserEntry {
+    private final Serializable homeFolderId;
+    private volatile Map<String, String> settings;
+    private final Map<String, String> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    UserEntry( Serializable homeFolderId, Map<String, String> settings ) {
+      this.homeFolderId = homeFolderId;
+      this.settings = settings;
+    }
+  }
+}
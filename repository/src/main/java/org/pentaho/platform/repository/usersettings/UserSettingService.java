@@ -44,30 +44,58 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 
+/**
+ * Stores the user settings as metadata of the user home folders, and the global settings as metadata of the etc
+ * folder.
+ *
+ * <p>Reads of the current user and global settings are served from a {@link UserSettingCache}. Pass the shared
+ * cache bean so that every instance, whatever the scope of this bean, uses it; otherwise the settings are read from
+ * the repository on every call.
+ */
 public class UserSettingService implements IAnyUserSettingService, IUserSettingService {
 
   public static final String SETTING_PREFIX = "_USERSETTING"; //$NON-NLS-1$
   IPentahoSession session = null;
-  private static final byte[] lock = new byte[0];
+  static final byte[] lock = new byte[0];
 
   protected IUnifiedRepository repository;
   private Logger log = LoggerFactory.getLogger( getClass() );
+  private final UserSettingCache cache;
 
   public UserSettingService( IUnifiedRepository repository ) {
+    // nothing cached, every call reads and writes the repository
+    this( repository, new UserSettingCache( repository, 0, 0, 0 ) );
+  }
+
+  public UserSettingService( IUnifiedRepository repository, UserSettingCache cache ) {
     this.repository = repository;
+    this.cache = cache;
   }
 
   public void init( IPentahoSession session ) {
     this.session = session;
   }
 
+  /**
+   * Writes all the pending changes to the repository.
+   */
+  public void flush() {
+    cache.flushAll();
+  }
+
+  UserSettingCache getCache() {
+    return cache;
+  }
+
   // ////////////////////////////////////////////////////////////////////////////////////////////////
   // GENERIC/ADMIN METHODS
   // ////////////////////////////////////////////////////////////////////////////////////////////////
 
   // delete all settings for a given user
   public void deleteUserSettings() {
-    String homePath = ClientRepositoryPaths.getUserHomeFolderPath( PentahoSessionHolder.getSession().getName() );
+    String username = PentahoSessionHolder.getSession().getName();
+    getCache().invalidateUser( username );
+    String homePath = ClientRepositoryPaths.getUserHomeFolderPath( username );
     Serializable id = repository.getFile( homePath ).getId();
 
     Map<String, Serializable> fileMetadata = repository.getFileMetadata( id );
@@ -99,34 +127,20 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
   public List<IUserSetting> getUserSettings() {
     // get the global settings and the user settings
     // merge unseen global settings into the user settings list
-    List<IUserSetting> userSettings = new ArrayList<IUserSetting>();
-
-    String tentantHomePath = ClientRepositoryPaths.getEtcFolderPath();
-    Serializable tenantHomeId = repository.getFile( tentantHomePath ).getId();
-    Map<String, Serializable> tenantMetadata = repository.getFileMetadata( tenantHomeId );
-
-    for ( Map.Entry<String, Serializable> entry : tenantMetadata.entrySet() ) {
-      String key = entry.getKey();
-      if ( key.startsWith( SETTING_PREFIX ) ) {
-        UserSetting setting = createSetting( key.substring( SETTING_PREFIX.length() ), entry.getValue() );
-        userSettings.add( setting );
+    UserSettingCache settingCache = getCache();
+    Map<String, String> globalSettings = settingCache.getGlobalSettings();
+    Map<String, String> userSettingValues =
+      settingCache.getUserSettings( PentahoSessionHolder.getSession().getName() );
+
+    List<IUserSetting> userSettings = new ArrayList<IUserSetting>( globalSettings.size() + userSettingValues.size() );
+    for ( Map.Entry<String, String> entry : globalSettings.entrySet() ) {
+      // user settings override the global ones
+      if ( !userSettingValues.containsKey( entry.getKey() ) ) {
+        userSettings.add( createSetting( entry.getKey(), entry.getValue() ) );
       }
     }
-
-    String homePath = ClientRepositoryPaths.getUserHomeFolderPath( PentahoSessionHolder.getSession().getName() );
-    Serializable userHomeId = repository.getFile( homePath ).getId();
-    Map<String, Serializable> userMetadata = repository.getFileMetadata( userHomeId );
-
-    for ( Map.Entry<String, Serializable> entry : userMetadata.entrySet() ) {
-      String key = entry.getKey();
-      if ( key.startsWith( SETTING_PREFIX ) ) {
-        UserSetting setting = createSetting( key.substring( SETTING_PREFIX.length() ), entry.getValue() );
-        // see if a global setting exists which will be overridden
-        if ( userSettings.contains( setting ) ) {
-          userSettings.remove( setting );
-        }
-        userSettings.add( setting );
-      }
+    for ( Map.Entry<String, String> entry : userSettingValues.entrySet() ) {
+      userSettings.add( createSetting( entry.getKey(), entry.getValue() ) );
     }
     return userSettings;
   }
@@ -136,33 +150,13 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
     boolean hasAuth = PentahoSessionHolder.getSession().getAttribute( "SPRING_SECURITY_CONTEXT" ) != null;
     if ( hasAuth ) {
       try {
-        String homePath = ClientRepositoryPaths.getUserHomeFolderPath( PentahoSessionHolder.getSession().getName() );
-
-        Serializable userHomeId = repository.getFile( homePath ).getId();
-        Map<String, Serializable> userMetadata = repository.getFileMetadata( userHomeId );
-
-        for ( Map.Entry<String, Serializable> entry : userMetadata.entrySet() ) {
-          String key = entry.getKey();
-          if ( key.startsWith( SETTING_PREFIX ) ) {
-            String settingFromKey = key.substring( SETTING_PREFIX.length() );
-            if ( settingFromKey.equals( settingName ) ) {
-              return createSetting( settingFromKey, entry.getValue() );
-            }
-          }
+        UserSettingCache settingCache = getCache();
+        String value = settingCache.getUserSettings( PentahoSessionHolder.getSession().getName() ).get( settingName );
+        if ( value == null ) {
+          value = settingCache.getGlobalSettings().get( settingName );
         }
-
-        String tentantHomePath = ClientRepositoryPaths.getEtcFolderPath();
-        Serializable tenantHomeId = repository.getFile( tentantHomePath ).getId();
-        Map<String, Serializable> tenantMetadata = repository.getFileMetadata( tenantHomeId );
-
-        for ( Map.Entry<String, Serializable> entry : tenantMetadata.entrySet() ) {
-          String key = entry.getKey();
-          if ( key.startsWith( SETTING_PREFIX ) ) {
-            String settingFromKey = key.substring( SETTING_PREFIX.length() );
-            if ( settingFromKey.equals( settingName ) ) {
-              return createSetting( settingFromKey, entry.getValue() );
-            }
-          }
+        if ( value != null ) {
+          return createSetting( settingName, value );
         }
       } catch ( Throwable ignored ) {
         // if anything goes wrong with authentication (anonymous user) or permissions
@@ -176,34 +170,12 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
   public void setUserSetting( String settingName, String settingValue ) {
 
     String name = PentahoSessionHolder.getSession().getName();
-    String homePath = ClientRepositoryPaths.getUserHomeFolderPath( name );
-
-    synchronized ( lock ) {
-
-      final Serializable id = repository.getFile( homePath ).getId();
-
-      final Map<String, Serializable> fileMetadata = repository.getFileMetadata( id );
-      fileMetadata.put( SETTING_PREFIX + settingName, settingValue );
-      try {
-        SecurityHelper.getInstance().runAsSystem( new Callable<Void>() {
-          @Override
-          public Void call() throws Exception {
-            repository.setFileMetadata( id, fileMetadata );
-            return null;
-          }
-        } );
-      } catch ( Exception e ) {
-        if ( log.isDebugEnabled() ) {
-          log.debug( "Error storing user setting for user: " + name + ", setting: " + settingName + ", value: "
-            + settingValue, e );
-        }
-        log.error( "Error storing user setting", e );
-      }
-    }
+    getCache().setUserSetting( name, settingName, settingValue );
   }
 
   @Override public void deleteUserSettings( String username ) throws SecurityException {
     if( canAdminister() ) {
+      getCache().invalidateUser( username );
       String homePath = ClientRepositoryPaths.getUserHomeFolderPath( username );
       Serializable id = repository.getFile( homePath ).getId();
 
@@ -285,6 +257,8 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
     throws SecurityException {
 
     if ( canAdminister() ) {
+      // write the pending changes of the user first, the cached settings are reloaded afterwards
+      getCache().invalidateUser( username );
       String homePath = ClientRepositoryPaths.getUserHomeFolderPath( username );
 
       synchronized ( lock ) {
@@ -309,6 +283,7 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
           log.error( "Error storing user setting", e );
         }
       }
+      getCache().invalidateUser( username );
     } else {
       throw new SecurityException( "Unauthorized User" );
     }
@@ -319,31 +294,19 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
   // ////////////////////////////////////////////////////////////////////////////////////////////////
 
   public IUserSetting getGlobalUserSetting( String settingName, String defaultValue ) {
-    String tentantHomePath = ClientRepositoryPaths.getEtcFolderPath();
-    Serializable tenantHomeId = repository.getFile( tentantHomePath ).getId();
-    Map<String, Serializable> tenantMetadata = repository.getFileMetadata( tenantHomeId );
-
-    String key = SETTING_PREFIX + settingName;
-    Serializable value = tenantMetadata.get( key );
+    String value = getCache().getGlobalSettings().get( settingName );
     if ( value != null ) {
-      return createSetting( settingName, value.toString() );
+      return createSetting( settingName, value );
     }
 
     return createSetting( settingName, defaultValue );
   }
 
   public List<IUserSetting> getGlobalUserSettings() {
-
-    String tentantHomePath = ClientRepositoryPaths.getEtcFolderPath();
-    Serializable tenantHomeId = repository.getFile( tentantHomePath ).getId();
-    Map<String, Serializable> tenantMetadata = repository.getFileMetadata( tenantHomeId );
-
-    List<IUserSetting> userSettings = new ArrayList<IUserSetting>( tenantMetadata.size() );
-    for ( Map.Entry<String, Serializable> entry : tenantMetadata.entrySet() ) {
-      String key = entry.getKey();
-      if ( key.startsWith( SETTING_PREFIX ) ) {
-        userSettings.add( createSetting( key.substring( SETTING_PREFIX.length() ), entry.getValue() ) );
-      }
+    Map<String, String> globalSettings = getCache().getGlobalSettings();
+    List<IUserSetting> userSettings = new ArrayList<IUserSetting>( globalSettings.size() );
+    for ( Map.Entry<String, String> entry : globalSettings.entrySet() ) {
+      userSettings.add( createSetting( entry.getKey(), entry.getValue() ) );
     }
     return userSettings;
   }
@@ -355,6 +318,7 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
       Map<String, Serializable> tenantMetadata = repository.getFileMetadata( tenantHomeId );
       tenantMetadata.put( SETTING_PREFIX + settingName, settingValue );
       repository.setFileMetadata( tenantHomeId, tenantMetadata );
+      getCache().invalidateGlobalSettings();
     }
   }
 
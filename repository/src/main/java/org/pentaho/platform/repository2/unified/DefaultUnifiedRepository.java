@@ -394,6 +394,32 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
     repositoryFileDao.unlockFile( fileId );
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void lockFiles( final List<Serializable> fileIds, final String message ) {
+    Assert.notNull( fileIds );
+    repositoryFileDao.lockFiles( fileIds, message );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void unlockFiles( final List<Serializable> fileIds ) {
+    Assert.notNull( fileIds );
+    repositoryFileDao.unlockFiles( fileIds );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<RepositoryFile> getLockedFiles( final String lockOwner ) {
+    return repositoryFileDao.getLockedFiles( lockOwner );
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -440,6 +440,32 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
     }, Messages.getInstance().getString( "ExceptionLoggingDecorator.unlockFile", fileId ) ); //$NON-NLS-1$
   }
 
+  public void lockFiles( final List<Serializable> fileIds, final String message ) {
+    callLogThrow( new Callable<Void>() {
+      public Void call() throws Exception {
+        delegatee.lockFiles( fileIds, message );
+        return null;
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.lockFiles", fileIds ) ); //$NON-NLS-1$
+  }
+
+  public void unlockFiles( final List<Serializable> fileIds ) {
+    callLogThrow( new Callable<Void>() {
+      public Void call() throws Exception {
+        delegatee.unlockFiles( fileIds );
+        return null;
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.unlockFiles", fileIds ) ); //$NON-NLS-1$
+  }
+
+  public List<RepositoryFile> getLockedFiles( final String lockOwner ) {
+    return callLogThrow( new Callable<List<RepositoryFile>>() {
+      public List<RepositoryFile> call() throws Exception {
+        return delegatee.getLockedFiles( lockOwner );
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.getLockedFiles", lockOwner ) ); //$NON-NLS-1$
+  }
+
   public RepositoryFileAcl updateAcl( final RepositoryFileAcl acl ) {
     return callLogThrow( new Callable<RepositoryFileAcl>() {
       public RepositoryFileAcl call() throws Exception {
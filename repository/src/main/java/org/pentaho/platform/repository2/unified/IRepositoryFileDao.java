@@ -106,6 +106,22 @@ public interface IRepositoryFileDao {
 
   void unlockFile( final Serializable fileId );
 
+  default void lockFiles( final List<Serializable> fileIds, final String message ) {
+    for ( Serializable fileId : fileIds ) {
+      lockFile( fileId, message );
+    }
+  }
+
+  default void unlockFiles( final List<Serializable> fileIds ) {
+    for ( Serializable fileId : fileIds ) {
+      unlockFile( fileId );
+    }
+  }
+
+  default List<RepositoryFile> getLockedFiles( final String lockOwner ) {
+    throw new UnsupportedOperationException();
+  }
+
   List<VersionSummary> getVersionSummaries( final Serializable fileId );
 
   VersionSummary getVersionSummary( final Serializable fileId, final Serializable versionId );
@@ -108,6 +108,45 @@ public class RepositoryFileInputStream extends InputStream {
     return is.read();
   }
 
+  @Override
+  public int read( byte[] b, int off, int len ) throws IOException {
+    if ( is == null ) {
+      setStream();
+    }
+    return is.read( b, off, len );
+  }
+
+  @Override
+  public long skip( long n ) throws IOException {
+    if ( is == null ) {
+      setStream();
+    }
+    return is.skip( n );
+  }
+
+  @Override
+  public int available() throws IOException {
+    return is == null ? 0 : is.available();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if ( is != null ) {
+      is.close();
+    }
+  }
+
+  /**
+   * Returns the stream of the file content, e.g. to let callers detect file backed content and copy it through a
+   * {@link java.nio.channels.FileChannel}.
+   */
+  public InputStream getContentStream() throws FileNotFoundException {
+    if ( is == null ) {
+      setStream();
+    }
+    return is;
+  }
+
   public String getMimeType() {
     if ( fileData == null ) {
       fileData = repository.getDataForRead( file.getId(), SimpleRepositoryFileData.class );
@@ -21,6 +21,7 @@
 package org.pentaho.platform.repository2.unified.fileio;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.pentaho.platform.api.repository2.unified.Converter;
 import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.ISourcesStreamEvents;
@@ -32,21 +33,38 @@ import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.repository.RepositoryFilenameUtils;
 import org.pentaho.platform.util.web.MimeHelper;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * Stream writing its content to a repository file when flushed or closed.
+ *
+ * <p>Content is buffered in memory up to {@code repository-file-output/spill-threshold-kb} (pentaho.xml, 1024 by
+ * default) and in a temporary file past it, in {@code repository-file-output/temp-directory}, and is streamed to the
+ * repository from there, so large generated outputs are not held on the heap. The class still extends
+ * {@link ByteArrayOutputStream} for compatibility, but the inherited {@code buf} and {@code count} fields are unused.
+ */
 public class RepositoryFileOutputStream extends ByteArrayOutputStream implements ISourcesStreamEvents {
 
   private static final String TRANS_EXT = "ktr";
   private static final String JOB_EXT = "kjb";
 
+  static final String SPILL_THRESHOLD_SETTING = "repository-file-output/spill-threshold-kb"; //$NON-NLS-1$
+  private static final int DEFAULT_SPILL_THRESHOLD_KB = 1024;
+  static final String TEMP_DIRECTORY_SETTING = "repository-file-output/temp-directory"; //$NON-NLS-1$
+
   protected boolean hidden = false;
   protected String path = null;
   protected IUnifiedRepository repository;
@@ -57,6 +75,8 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
   protected boolean flushed = false;
   protected boolean forceFlush = true;
   protected ArrayList<IStreamListener> listeners = new ArrayList<>();
+  private final SpillingOutputBuffer buffer = new SpillingOutputBuffer( getSpillThreshold(),
+    getTempDirectory() );
 
   public RepositoryFileOutputStream( final String path, final boolean autoCreateUniqueFileName,
       final boolean autoCreateDirStructure, final IUnifiedRepository repository, final boolean hidden ) {
@@ -156,24 +176,50 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
     this.forceFlush = forceFlush;
   }
 
+  /**
+   * @throws UncheckedIOException if the content cannot be spilled to disk
+   */
+  @Override
+  public void write( final int b ) {
+    try {
+      buffer.write( b );
+    } catch ( IOException e ) {
+      throw new UncheckedIOException( e );
+    }
+  }
+
+  /**
+   * @throws UncheckedIOException if the content cannot be spilled to disk
+   */
+  @Override
+  public void write( final byte[] b, final int off, final int len ) {
+    try {
+      buffer.write( b, off, len );
+    } catch ( IOException e ) {
+      throw new UncheckedIOException( e );
+    }
+  }
+
   @Override
   public void flush() throws IOException {
     if ( closed ) {
       return;
     }
-    super.flush();
-
-    byte[] data = toByteArray();
 
-    if ( !forceFlush && data.length == 0 ) {
+    if ( !forceFlush && buffer.size() == 0 ) {
       for ( IStreamListener listener : listeners ) {
         listener.streamComplete();
       }
       flushed = true;
       return;
     }
-    ByteArrayInputStream bis = new ByteArrayInputStream( data );
+    try ( InputStream bis = buffer.openInputStream() ) {
+      store( bis );
+    }
+    flushed = true;
+  }
 
+  private void store( final InputStream bis ) throws IOException {
     // make an effort to determine the correct mime type, default to application/octet-stream
     String extension = RepositoryFilenameUtils.getExtension( path );
     String mimeType = "application/octet-stream"; //$NON-NLS-1$
@@ -290,19 +336,79 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
       RepositoryFile file = repository.getFile( path );
       repository.updateFile( file, payload, "New File" ); //$NON-NLS-1$
     }
-    flushed = true;
   }
 
   @Override
   public void close() throws IOException {
     if ( !closed ) {
-      flush();
-      closed = true;
-      reset();
+      try {
+        flush();
+      } finally {
+        closed = true;
+        reset();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of bytes written and not yet discarded by {@link #reset()}, capped at
+   * {@link Integer#MAX_VALUE}. See {@link #getBufferedSize()} for larger content.
+   */
+  @Override
+  public int size() {
+    return (int) Math.min( Integer.MAX_VALUE, buffer.size() );
+  }
+
+  /**
+   * Returns the number of bytes written and not yet discarded by {@link #reset()}.
+   */
+  public long getBufferedSize() {
+    return buffer.size();
+  }
+
+  /**
+   * Discards the buffered content.
+   */
+  @Override
+  public void reset() {
+    buffer.reset();
+  }
+
+  /**
+   * Returns a copy of the buffered content. Prefer {@link #writeTo(OutputStream)}, large content does not fit the heap.
+   *
+   * @throws UncheckedIOException if the content spilled to disk cannot be read back
+   */
+  @Override
+  public byte[] toByteArray() {
+    try {
+      return buffer.toByteArray();
+    } catch ( IOException e ) {
+      throw new UncheckedIOException( e );
     }
   }
 
-  IRepositoryFileData convert( Converter converter, ByteArrayInputStream bis, String mimeType ) {
+  @Override
+  public String toString() {
+    return new String( toByteArray() );
+  }
+
+  @Override
+  public String toString( final String charsetName ) throws UnsupportedEncodingException {
+    return new String( toByteArray(), charsetName );
+  }
+
+  @Override
+  public String toString( final Charset charset ) {
+    return new String( toByteArray(), charset );
+  }
+
+  @Override
+  public void writeTo( final OutputStream out ) throws IOException {
+    buffer.writeTo( out );
+  }
+
+  IRepositoryFileData convert( Converter converter, InputStream bis, String mimeType ) {
     final IRepositoryFileData payload;
     if ( converter != null ) {
       payload = converter.convert( bis, charsetName, mimeType );
@@ -373,6 +479,16 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
     return fileBuilder.build();
   }
 
+  private static int getSpillThreshold() {
+    return (int) Math.min( Integer.MAX_VALUE, 1024L * NumberUtils.toInt(
+      PentahoSystem.getSystemSetting( SPILL_THRESHOLD_SETTING, null ), DEFAULT_SPILL_THRESHOLD_KB ) );
+  }
+
+  private static File getTempDirectory() {
+    final String directory = PentahoSystem.getSystemSetting( TEMP_DIRECTORY_SETTING, null );
+    return StringUtils.isBlank( directory ) ? null : new File( directory.trim() );
+  }
+
   private static boolean isKettleExtension( String extension ) {
     return TRANS_EXT.equalsIgnoreCase( extension ) || JOB_EXT.equalsIgnoreCase( extension );
   }
@@ -0,0 +1,227 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.fileio;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+
+/**
+ * Output buffer of {@link RepositoryFileOutputStream}. Content is kept on the heap up to a threshold and moved to a
+ * temporary file past it, so that large generated outputs are never held in memory. The buffered content can be read
+ * any number of times through {@link #openInputStream()} without copying it.
+ *
+ * <p>The temporary file is deleted on {@link #reset()}. A buffer that is dropped without being reset, e.g. by a caller
+ * that never closes its stream, has its file deleted once it is garbage collected.
+ */
+final class SpillingOutputBuffer extends OutputStream {
+
+  private static final int INITIAL_CAPACITY = 8192;
+  private static final int FILE_BUFFER_SIZE = 65536;
+  private static final String TEMP_FILE_PREFIX = "pentaho-repo-output"; //$NON-NLS-1$
+  private static final Cleaner CLEANER = Cleaner.create();
+
+  private final int threshold;
+  private final File tempDirectory;
+  private MemoryBuffer memory = new MemoryBuffer( INITIAL_CAPACITY );
+  private File file;
+  private OutputStream fileOut;
+  private Cleaner.Cleanable cleanable;
+  private long size;
+
+  /**
+   * @param threshold     number of bytes kept in memory before spilling to disk
+   * @param tempDirectory directory of the temporary file, {@code null} for {@code java.io.tmpdir}
+   */
+  SpillingOutputBuffer( final int threshold, final File tempDirectory ) {
+    this.threshold = threshold;
+    this.tempDirectory = tempDirectory;
+  }
+
+  @Override
+  public void write( final int b ) throws IOException {
+    if ( fileOut == null && memory.size() + 1 > threshold ) {
+      spill();
+    }
+    if ( fileOut != null ) {
+      fileOut.write( b );
+    } else {
+      memory.write( b );
+    }
+    size++;
+  }
+
+  @Override
+  public void write( final byte[] b, final int off, final int len ) throws IOException {
+    if ( fileOut == null && memory.size() + len > threshold ) {
+      spill();
+    }
+    if ( fileOut != null ) {
+      fileOut.write( b, off, len );
+    } else {
+      memory.write( b, off, len );
+    }
+    size += len;
+  }
+
+  /**
+   * Returns the number of bytes written since the last {@link #reset()}.
+   */
+  long size() {
+    return size;
+  }
+
+  boolean isSpilled() {
+    return file != null;
+  }
+
+  /**
+   * Returns a stream over the content written so far. The buffer must not be written to or reset while the stream is
+   * in use.
+   */
+  InputStream openInputStream() throws IOException {
+    if ( fileOut != null ) {
+      fileOut.flush();
+      return new BufferedInputStream( new FileInputStream( file ), FILE_BUFFER_SIZE );
+    }
+    return memory.newInputStream();
+  }
+
+  /**
+   * Copies the whole content to a new array, which defeats the purpose of the buffer for large content.
+   */
+  byte[] toByteArray() throws IOException {
+    if ( fileOut == null ) {
+      return memory.toByteArray();
+    }
+    final ByteArrayOutputStream out = new ByteArrayOutputStream( (int) Math.min( size, Integer.MAX_VALUE - 8 ) );
+    writeTo( out );
+    return out.toByteArray();
+  }
+
+  void writeTo( final OutputStream out ) throws IOException {
+    if ( fileOut == null ) {
+      memory.writeTo( out );
+      return;
+    }
+    try ( InputStream in = openInputStream() ) {
+      final byte[] chunk = new byte[ FILE_BUFFER_SIZE ];
+      int read;
+      while ( ( read = in.read( chunk ) ) >= 0 ) {
+        out.write( chunk, 0, read );
+      }
+    }
+  }
+
+  /**
+   * Discards the content and deletes the temporary file, if any.
+   */
+  void reset() {
+    discardFile();
+    if ( memory.capacity() > INITIAL_CAPACITY * 8 ) {
+      memory = new MemoryBuffer( INITIAL_CAPACITY );
+    } else {
+      memory.reset();
+    }
+    size = 0;
+  }
+
+  @Override
+  public void close() {
+    reset();
+  }
+
+  private void spill() throws IOException {
+    file = File.createTempFile( TEMP_FILE_PREFIX, null, tempDirectory );
+    final SpillFile spillFile = new SpillFile( file );
+    cleanable = CLEANER.register( this, spillFile );
+    try {
+      fileOut = new BufferedOutputStream( new FileOutputStream( file ), FILE_BUFFER_SIZE );
+      spillFile.out = fileOut;
+      memory.writeTo( fileOut );
+    } catch ( IOException e ) {
+      discardFile();
+      throw e;
+    }
+    // release the heap buffer, the content now lives on disk
+    memory = new MemoryBuffer( 0 );
+  }
+
+  private void discardFile() {
+    if ( cleanable != null ) {
+      // closes the stream and deletes the file, and unregisters the buffer from the cleaner
+      cleanable.clean();
+      cleanable = null;
+    }
+    fileOut = null;
+    file = null;
+  }
+
+  /**
+   * Temporary file of a spilled buffer. Must not reference the buffer, or the buffer never becomes unreachable.
+   */
+  private static final class SpillFile implements Runnable {
+
+    private final File file;
+    private volatile OutputStream out;
+
+    SpillFile( final File file ) {
+      this.file = file;
+    }
+
+    @Override
+    public void run() {
+      if ( out != null ) {
+        try {
+          out.close();
+        } catch ( IOException e ) {
+          // the file is deleted anyway
+        }
+      }
+      if ( !file.delete() && file.exists() ) {
+        file.deleteOnExit();
+      }
+    }
+  }
+
+  private static final class MemoryBuffer extends ByteArrayOutputStream {
+
+    MemoryBuffer( final int capacity ) {
+      super( capacity );
+    }
+
+    int capacity() {
+      return buf.length;
+    }
+
+    InputStream newInputStream() {
+      return new ByteArrayInputStream( buf, 0, count );
+    }
+  }
+}
@@ -21,8 +21,6 @@
 package org.pentaho.platform.repository2.unified.fs;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -30,6 +28,7 @@ import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -98,24 +97,17 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
     return new File( rootDir.getAbsolutePath() );
   }
 
-  private byte[] inputStreamToBytes( InputStream in ) throws IOException {
-
-    ByteArrayOutputStream out = new ByteArrayOutputStream( 4096 );
-    byte[] buffer = new byte[ 4096 ];
-    int len;
-
-    while ( ( len = in.read( buffer ) ) >= 0 ) {
-      out.write( buffer, 0, len );
+  private void copyAndClose( InputStream in, OutputStream out ) throws IOException {
+    try {
+      IOUtils.copyLarge( in, out );
+    } finally {
+      in.close();
     }
-
-    in.close();
-    out.close();
-    return out.toByteArray();
   }
 
   public RepositoryFile createFile( Serializable parentFolderId, RepositoryFile file, IRepositoryFileData data,
       RepositoryFileAcl acl, String versionMessage ) {
-    String fileNameWithPath = RepositoryFilenameUtils.concat( parentFolderId.toString(), file.getName() );
+    String fileNameWithPath = RepositoryFilenameUtils.concat( idToFile( parentFolderId ).getPath(), file.getName() );
     FileOutputStream fos = null;
     File f = new File( fileNameWithPath );
 
@@ -123,10 +115,9 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
       f.createNewFile();
       fos = new FileOutputStream( f );
       if ( data instanceof SimpleRepositoryFileData ) {
-        fos.write( inputStreamToBytes( ( (SimpleRepositoryFileData) data ).getInputStream() ) );
+        copyAndClose( ( (SimpleRepositoryFileData) data ).getInputStream(), fos );
       } else if ( data instanceof NodeRepositoryFileData ) {
-        fos.write( inputStreamToBytes( new ByteArrayInputStream( ( (NodeRepositoryFileData) data ).getNode().toString()
-            .getBytes() ) ) );
+        fos.write( ( (NodeRepositoryFileData) data ).getNode().toString().getBytes() );
       }
     } catch ( FileNotFoundException e ) {
       throw new UnifiedRepositoryException( "Error writing file [" + fileNameWithPath + "]", e );
@@ -142,7 +133,7 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
   public RepositoryFile createFolder( Serializable parentFolderId, RepositoryFile file, RepositoryFileAcl acl,
       String versionMessage ) {
     try {
-      String folderNameWithPath = parentFolderId + "/" + file.getName();
+      String folderNameWithPath = idToFile( parentFolderId ).getPath() + "/" + file.getName();
       File newFolder = new File( folderNameWithPath );
       newFolder.mkdir();
       final RepositoryFile repositoryFolder = internalGetFile( newFolder );
@@ -154,7 +145,7 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
 
   public void deleteFile( Serializable fileId, String versionMessage ) {
     try {
-      File f = new File( fileId.toString() );
+      File f = idToFile( fileId );
       if ( f.isDirectory() ) {
         FileUtils.deleteDirectory( f );
       } else {
@@ -198,7 +189,7 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
 
   @SuppressWarnings( "unchecked" )
   public <T extends IRepositoryFileData> T getData( Serializable fileId, Serializable versionId, Class<T> dataClass ) {
-    File f = new File( fileId.toString() );
+    File f = idToFile( fileId );
     T data = null;
     try {
       if ( SimpleRepositoryFileData.class.getName().equals( dataClass.getName() ) ) {
@@ -364,6 +355,11 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
     throw new UnsupportedOperationException( "This operation is not support by this repository" );
   }
 
+  public List<RepositoryFile> getLockedFiles( String lockOwner ) {
+    // files cannot be locked in this repository
+    return Collections.emptyList();
+  }
+
   public void moveFile( Serializable fileId, String destRelPath, String versionMessage ) {
     RepositoryFile file = getFileById( fileId );
     SimpleRepositoryFileData data = getData( fileId, null, SimpleRepositoryFileData.class );
@@ -388,15 +384,14 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
   }
 
   public RepositoryFile updateFile( RepositoryFile file, IRepositoryFileData data, String versionMessage ) {
-    File f = new File( file.getId().toString() );
+    File f = idToFile( file.getId() );
     FileOutputStream fos = null;
     try {
       fos = new FileOutputStream( f, false );
       if ( data instanceof SimpleRepositoryFileData ) {
-        fos.write( inputStreamToBytes( ( (SimpleRepositoryFileData) data ).getInputStream() ) );
+        copyAndClose( ( (SimpleRepositoryFileData) data ).getInputStream(), fos );
       } else if ( data instanceof NodeRepositoryFileData ) {
-        fos.write( inputStreamToBytes( new ByteArrayInputStream( ( (NodeRepositoryFileData) data ).getNode().toString()
-            .getBytes() ) ) );
+        fos.write( ( (NodeRepositoryFileData) data ).getNode().toString().getBytes() );
       }
     } catch ( FileNotFoundException e ) {
       throw new UnifiedRepositoryException( e );
@@ -418,7 +413,7 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
   }
 
   public void setFileMetadata( final Serializable fileId, Map<String, Serializable> metadataMap ) {
-    final File targetFile = new File( fileId.toString() );
+    final File targetFile = idToFile( fileId );
     if ( targetFile.exists() ) {
       FileOutputStream fos = null;
       try {
@@ -452,9 +447,10 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
   }
 
   public Map<String, Serializable> getFileMetadata( final Serializable fileId ) {
+    final String filename = idToFile( fileId ).getPath();
     final String metadataFilename =
-        FilenameUtils.concat( FilenameUtils.concat( FilenameUtils.getFullPathNoEndSeparator( fileId.toString() ),
-            ".metadata" ), FilenameUtils.getName( fileId.toString() ) );
+        FilenameUtils.concat( FilenameUtils.concat( FilenameUtils.getFullPathNoEndSeparator( filename ),
+            ".metadata" ), FilenameUtils.getName( filename ) );
     final Map<String, Serializable> metadata = new HashMap<String, Serializable>();
     BufferedReader reader = null;
     try {
@@ -553,7 +549,14 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
     throw new UnsupportedOperationException( "This operation is not support by this repository" );
   }
 
-  private String getPhysicalFileLocation( String relPath ) {
+  /**
+   * Returns the file a repository file id stands for. Ids are the absolute path of the file.
+   */
+  protected File idToFile( Serializable fileId ) {
+    return new File( fileId.toString() );
+  }
+
+  protected String getPhysicalFileLocation( String relPath ) {
 
     if ( StringUtils.isEmpty( relPath ) ) {
       return relPath;
@@ -0,0 +1,623 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.fs;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest.FILES_TYPE_FILTER;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * In-memory tree of the files below a root directory, kept current through a {@link WatchService}.
+ *
+ * <p>Every file and folder gets a generated id when it is first indexed. A rename or move shows up as a delete and
+ * a create event; the two are matched through the file key of the file system (the inode on unix), so the file
+ * keeps its id as long as the create is seen within {@link #RENAME_WINDOW_MILLIS} of the delete. File systems that
+ * have no file keys hand out a new id instead.
+ *
+ * <p>Events are applied by a daemon thread, so changes made outside the platform show up shortly after they
+ * happen. Callers that change a file themselves call {@link #refresh(Path)} to see the change right away.
+ * Searches and tree walks never touch the disk. Updates read the disk first and only take the write lock to apply
+ * what they read, so a slow disk does not hold up readers.
+ */
+class FileSystemRepositoryIndex implements Closeable {
+
+  static final long RENAME_WINDOW_MILLIS = 5000;
+
+  private static final Log logger = LogFactory.getLog( FileSystemRepositoryIndex.class );
+
+  private final Path root;
+  private final boolean windows;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<String, Entry> byId = new HashMap<>();
+  private final Map<Path, Entry> byPath = new HashMap<>();
+  private final Map<Object, Entry> byFileKey = new HashMap<>();
+  private final Map<Object, Entry> detached = new LinkedHashMap<>();
+  private final Map<Path, WatchKey> watchKeys = new HashMap<>();
+  private final List<WatchKey> unwatched = new ArrayList<>();
+
+  private WatchService watchService;
+  private Thread watcher;
+
+  FileSystemRepositoryIndex( final Path root, final boolean windows ) {
+    this.root = root.toAbsolutePath().normalize();
+    this.windows = windows;
+  }
+
+  /**
+   * Indexes the whole tree and starts watching it.
+   */
+  void start() throws IOException {
+    watchService = root.getFileSystem().newWatchService();
+    final Scan scan = scan( root, true );
+    lock.writeLock().lock();
+    try {
+      apply( scan, Collections.emptySet() );
+    } finally {
+      lock.writeLock().unlock();
+    }
+    watcher = new Thread( this::watch, "FileSystemRepositoryIndex-" + root.getFileName() ); //$NON-NLS-1$
+    watcher.setDaemon( true );
+    watcher.start();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if ( watchService != null ) {
+      watchService.close();
+    }
+    if ( watcher != null ) {
+      watcher.interrupt();
+    }
+  }
+
+  Path getRoot() {
+    return root;
+  }
+
+  RepositoryFile getFile( final Path path ) {
+    lock.readLock().lock();
+    try {
+      final Entry entry = byPath.get( normalize( path ) );
+      return entry == null ? null : toFile( entry );
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  RepositoryFile getFileById( final String id ) {
+    lock.readLock().lock();
+    try {
+      final Entry entry = byId.get( id );
+      return entry == null ? null : toFile( entry );
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the current location of an indexed id, or null if the id is unknown.
+   */
+  Path getPath( final String id ) {
+    lock.readLock().lock();
+    try {
+      final Entry entry = byId.get( id );
+      return entry == null ? null : entry.path;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the children of a folder accepted by the filter, in name order.
+   */
+  List<RepositoryFile> getChildren( final Path folder, final Predicate<RepositoryFile> filter ) {
+    final List<RepositoryFile> children = new ArrayList<>();
+    lock.readLock().lock();
+    try {
+      final Entry entry = byPath.get( normalize( folder ) );
+      if ( entry != null && entry.children != null ) {
+        for ( Entry child : entry.children.values() ) {
+          final RepositoryFile file = toFile( child );
+          if ( filter.test( file ) ) {
+            children.add( file );
+          }
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return children;
+  }
+
+  /**
+   * Returns the tree below a path. Folders accepted by the folder filter are descended into unless only files are
+   * requested.
+   */
+  RepositoryFileTree getTree( final Path path, final int depth, final FILES_TYPE_FILTER types,
+                              final Predicate<RepositoryFile> folderFilter,
+                              final Predicate<RepositoryFile> fileFilter ) {
+    lock.readLock().lock();
+    try {
+      final Entry entry = byPath.get( normalize( path ) );
+      return entry == null ? null : getTree( entry, depth, types, folderFilter, fileFilter );
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Brings the entry for a path in line with the disk. A folder that is already indexed only has its own
+   * attributes updated; anything new is indexed with everything below it.
+   */
+  void refresh( final Path path ) {
+    update( path, false );
+  }
+
+  /**
+   * Re-indexes a path and everything below it.
+   */
+  void rescan( final Path path ) {
+    update( path, true );
+  }
+
+  private void update( final Path path, final boolean deep ) {
+    Path normalized = normalize( path );
+    if ( !normalized.startsWith( root ) ) {
+      return;
+    }
+    final boolean indexed;
+    lock.readLock().lock();
+    try {
+      // start at the topmost folder that is not indexed yet, so that the new entry has a parent
+      while ( !normalized.equals( root ) && !byPath.containsKey( normalized.getParent() ) ) {
+        normalized = normalized.getParent();
+      }
+      indexed = byPath.containsKey( normalized );
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    Scan scan;
+    try {
+      scan = scan( normalized, deep || !indexed );
+    } catch ( NoSuchFileException e ) {
+      scan = new Scan();
+      scan.failed.add( normalized );
+    } catch ( IOException e ) {
+      logger.warn( "Unable to index " + normalized, e ); //$NON-NLS-1$
+      return;
+    }
+    final Set<Path> copied = findCopied( scan );
+
+    final List<WatchKey> cancelled;
+    lock.writeLock().lock();
+    try {
+      apply( scan, copied );
+      expireDetached();
+      cancelled = new ArrayList<>( unwatched );
+      unwatched.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+    for ( WatchKey key : cancelled ) {
+      key.cancel();
+    }
+  }
+
+  /**
+   * Returns the number of indexed files and folders.
+   */
+  int size() {
+    lock.readLock().lock();
+    try {
+      return byPath.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void watch() {
+    while ( !Thread.currentThread().isInterrupted() ) {
+      final WatchKey key;
+      try {
+        key = watchService.take();
+      } catch ( InterruptedException | ClosedWatchServiceException e ) {
+        // closed
+        return;
+      }
+      final Path dir = (Path) key.watchable();
+      try {
+        for ( WatchEvent<?> event : key.pollEvents() ) {
+          apply( dir, event );
+        }
+        if ( !key.reset() ) {
+          refresh( dir );
+        }
+      } catch ( ClosedWatchServiceException e ) {
+        // closed
+        return;
+      } catch ( RuntimeException e ) {
+        // the thread must survive, or nothing changed outside the platform would be seen again
+        logger.error( "Unable to apply the changes of " + dir, e ); //$NON-NLS-1$
+        key.reset();
+      }
+    }
+  }
+
+  private void apply( final Path dir, final WatchEvent<?> event ) {
+    if ( event.kind() == StandardWatchEventKinds.OVERFLOW ) {
+      rescan( dir );
+    } else if ( event.kind() == StandardWatchEventKinds.ENTRY_CREATE ) {
+      // may be a folder moved in with its content
+      rescan( dir.resolve( (Path) event.context() ) );
+    } else {
+      refresh( dir.resolve( (Path) event.context() ) );
+    }
+  }
+
+  /**
+   * Reads the attributes of a path, and of everything below it when deep, and registers the folders with the watch
+   * service. Runs without the lock.
+   */
+  private Scan scan( final Path start, final boolean deep ) throws IOException {
+    final Scan scan = new Scan();
+    if ( !deep ) {
+      scan.found.add( new Found( start,
+        Files.readAttributes( start, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS ) ) );
+      return scan;
+    }
+    Files.walkFileTree( start, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory( final Path dir, final BasicFileAttributes attrs ) throws IOException {
+        final Found found = new Found( dir, attrs );
+        found.childNames = new HashSet<>();
+        try ( DirectoryStream<Path> stream = Files.newDirectoryStream( dir ) ) {
+          for ( Path child : stream ) {
+            found.childNames.add( child.getFileName().toString() );
+          }
+          found.watchKey = dir.register( watchService, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY );
+        } catch ( NoSuchFileException e ) {
+          scan.failed.add( dir );
+          return FileVisitResult.SKIP_SUBTREE;
+        }
+        scan.found.add( found );
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile( final Path file, final BasicFileAttributes attrs ) {
+        scan.found.add( new Found( file, attrs ) );
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed( final Path file, final IOException e ) {
+        scan.failed.add( file );
+        return FileVisitResult.CONTINUE;
+      }
+    } );
+    return scan;
+  }
+
+  /**
+   * Returns the previous locations of the scanned files that still exist. A file found at a new path under a known
+   * file key was copied or hard linked there when its previous location is one of them, and moved otherwise.
+   */
+  private Set<Path> findCopied( final Scan scan ) {
+    final List<Path> previous = new ArrayList<>();
+    lock.readLock().lock();
+    try {
+      for ( Found found : scan.found ) {
+        final Object fileKey = found.attrs.fileKey();
+        if ( fileKey != null && !byPath.containsKey( found.path ) ) {
+          Entry entry = byFileKey.get( fileKey );
+          if ( entry == null ) {
+            entry = detached.get( fileKey );
+          }
+          if ( entry != null && !entry.path.equals( found.path ) ) {
+            previous.add( entry.path );
+          }
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    final Set<Path> copied = new HashSet<>();
+    for ( Path path : previous ) {
+      if ( Files.exists( path, LinkOption.NOFOLLOW_LINKS ) ) {
+        copied.add( path );
+      }
+    }
+    return copied;
+  }
+
+  // everything below runs with the write lock held
+
+  private void apply( final Scan scan, final Set<Path> copied ) {
+    for ( Found found : scan.found ) {
+      final Entry entry = put( found.path, found.attrs, copied );
+      if ( found.watchKey != null ) {
+        // registering a folder again hands back its current key, which must stay valid
+        unwatched.remove( found.watchKey );
+        watchKeys.put( found.path, found.watchKey );
+      }
+      if ( found.childNames != null && entry.children != null ) {
+        // a moved folder brings its children along, drop those that are not there anymore
+        for ( Entry child : new ArrayList<>( entry.children.values() ) ) {
+          if ( !found.childNames.contains( child.path.getFileName().toString() ) ) {
+            remove( child.path );
+          }
+        }
+      }
+    }
+    for ( Path path : scan.failed ) {
+      remove( path );
+    }
+  }
+
+  private Entry put( final Path path, final BasicFileAttributes attrs, final Set<Path> copied ) {
+    Entry entry = byPath.get( path );
+    final Object fileKey = attrs.fileKey();
+    if ( entry == null && fileKey != null ) {
+      entry = byFileKey.get( fileKey );
+      if ( entry == null ) {
+        entry = detached.remove( fileKey );
+      }
+      if ( entry != null && !entry.path.equals( path ) && copied.contains( entry.path ) ) {
+        // a copy or a hard link, not a move
+        entry = null;
+      }
+      if ( entry != null ) {
+        move( entry, path );
+      }
+    }
+    if ( entry == null ) {
+      entry = new Entry( UUID.randomUUID().toString(), path );
+      byId.put( entry.id, entry );
+      byPath.put( path, entry );
+      attach( entry );
+    }
+    if ( entry.fileKey != null && !entry.fileKey.equals( fileKey ) ) {
+      byFileKey.remove( entry.fileKey, entry );
+    }
+    entry.fileKey = fileKey;
+    if ( fileKey != null ) {
+      byFileKey.put( fileKey, entry );
+    }
+    entry.folder = attrs.isDirectory();
+    if ( entry.folder && entry.children == null ) {
+      entry.children = new TreeMap<>();
+    } else if ( !entry.folder ) {
+      entry.children = null;
+    }
+    entry.size = attrs.size();
+    entry.lastModified = attrs.lastModifiedTime().toMillis();
+    entry.file = null;
+    return entry;
+  }
+
+  private void move( final Entry entry, final Path path ) {
+    detach( entry );
+    relocate( entry, path );
+    attach( entry );
+  }
+
+  private void relocate( final Entry entry, final Path path ) {
+    if ( byPath.get( entry.path ) == entry ) {
+      byPath.remove( entry.path );
+      unregister( entry.path );
+    }
+    entry.path = path;
+    entry.file = null;
+    byPath.put( path, entry );
+    byId.put( entry.id, entry );
+    if ( entry.fileKey != null ) {
+      detached.remove( entry.fileKey );
+      byFileKey.put( entry.fileKey, entry );
+    }
+    if ( entry.children != null ) {
+      for ( Entry child : entry.children.values() ) {
+        relocate( child, path.resolve( child.path.getFileName() ) );
+      }
+    }
+  }
+
+  private void remove( final Path path ) {
+    final Entry entry = byPath.get( path );
+    if ( entry != null ) {
+      detach( entry );
+      drop( entry );
+    }
+  }
+
+  private void drop( final Entry entry ) {
+    byPath.remove( entry.path );
+    byId.remove( entry.id );
+    unregister( entry.path );
+    if ( entry.fileKey != null && byFileKey.remove( entry.fileKey, entry ) ) {
+      // kept for a while so that a create seen after the delete can take over the id
+      entry.detachedAt = System.currentTimeMillis();
+      detached.put( entry.fileKey, entry );
+    }
+    if ( entry.children != null ) {
+      for ( Entry child : entry.children.values() ) {
+        drop( child );
+      }
+    }
+  }
+
+  private void attach( final Entry entry ) {
+    final Entry parent = entry.path.equals( root ) ? null : byPath.get( entry.path.getParent() );
+    entry.parent = parent;
+    if ( parent != null && parent.children != null ) {
+      parent.children.put( entry.path.getFileName().toString(), entry );
+    }
+  }
+
+  private void detach( final Entry entry ) {
+    if ( entry.parent != null && entry.parent.children != null ) {
+      entry.parent.children.remove( entry.path.getFileName().toString(), entry );
+    }
+    entry.parent = null;
+  }
+
+  private void expireDetached() {
+    final long expired = System.currentTimeMillis() - RENAME_WINDOW_MILLIS;
+    for ( Iterator<Entry> it = detached.values().iterator(); it.hasNext(); ) {
+      if ( it.next().detachedAt >= expired ) {
+        break;
+      }
+      it.remove();
+    }
+  }
+
+  private void unregister( final Path dir ) {
+    final WatchKey key = watchKeys.remove( dir );
+    if ( key != null ) {
+      // cancelled once the write lock is released
+      unwatched.add( key );
+    }
+  }
+
+  private RepositoryFileTree getTree( final Entry entry, final int depth, final FILES_TYPE_FILTER types,
+                                      final Predicate<RepositoryFile> folderFilter,
+                                      final Predicate<RepositoryFile> fileFilter ) {
+    List<RepositoryFileTree> children = null;
+    if ( depth != 0 ) {
+      children = new ArrayList<>();
+      if ( entry.children != null ) {
+        for ( Entry child : entry.children.values() ) {
+          if ( child.folder ) {
+            if ( types != FILES_TYPE_FILTER.FILES && folderFilter.test( toFile( child ) ) ) {
+              children.add( getTree( child, depth - 1, types, folderFilter, fileFilter ) );
+            }
+          } else if ( types != FILES_TYPE_FILTER.FOLDERS ) {
+            final RepositoryFile file = toFile( child );
+            if ( fileFilter.test( file ) ) {
+              children.add( new RepositoryFileTree( file, new ArrayList<>() ) );
+            }
+          }
+        }
+      }
+      Collections.sort( children );
+    }
+    return new RepositoryFileTree( toFile( entry ), children );
+  }
+
+  private RepositoryFile toFile( final Entry entry ) {
+    RepositoryFile file = entry.file;
+    if ( file == null ) {
+      String jcrPath = entry.path.toString().substring( root.toString().length() );
+      if ( jcrPath.length() == 0 ) {
+        jcrPath = "/";
+      } else if ( windows ) {
+        jcrPath = FilenameUtils.separatorsToUnix( jcrPath );
+      }
+      final String name = entry.path.getFileName() == null ? "" : entry.path.getFileName().toString();
+      final Date lastModified = new Date( entry.lastModified );
+      file = new RepositoryFile.Builder( entry.id, name ).createdDate( lastModified )
+        .lastModificationDate( lastModified ).folder( entry.folder ).versioned( false ).path( jcrPath )
+        .versionId( name ).locked( false ).hidden( name.startsWith( "." ) ).title( name ).description( name )
+        .fileSize( entry.size ).build();
+      entry.file = file;
+    }
+    return file;
+  }
+
+  private Path normalize( final Path path ) {
+    return path.toAbsolutePath().normalize();
+  }
+
+  /**
+   * What a scan read from the disk, in walk order so that folders come before their content.
+   */
+  private static class Scan {
+    private final List<Found> found = new ArrayList<>();
+    private final List<Path> failed = new ArrayList<>();
+  }
+
+  private static class Found {
+    private final Path path;
+    private final BasicFileAttributes attrs;
+    private Set<String> childNames;
+    private WatchKey watchKey;
+
+    Found( final Path path, final BasicFileAttributes attrs ) {
+      this.path = path;
+      this.attrs = attrs;
+    }
+  }
+
+  private static class Entry {
+    private final String id;
+    private Path path;
+    private Entry parent;
+    private TreeMap<String, Entry> children;
+    private Object fileKey;
+    private boolean folder;
+    private long size;
+    private long lastModified;
+    private long detachedAt;
+    private volatile RepositoryFile file;
+
+    Entry( final String id, final Path path ) {
+      this.id = id;
+      this.path = path;
+    }
+  }
+}
@@ -0,0 +1,219 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.fs;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang.StringUtils;
+import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A {@link FileSystemRepositoryFileDao} that answers lookups, children and trees from an in-memory index of the
+ * solution folder instead of the disk. The index is built on first use and follows changes made outside the
+ * platform through a {@link java.nio.file.WatchService}; see {@link FileSystemRepositoryIndex}.
+ *
+ * <p>File ids are generated and survive renames and moves within the solution folder, where the file system
+ * provides file keys. Ids handed out by {@link FileSystemRepositoryFileDao}, the absolute path of a file, are still
+ * accepted.
+ *
+ * <p>Meant to be a singleton: every instance watches its own tree, until {@link #close()} is called.
+ * <pre>
+ *   &lt;bean id="IUnifiedRepository" class="org.pentaho.platform.repository2.unified.fs.FileSystemBackedUnifiedRepository"&gt;
+ *     &lt;constructor-arg&gt;
+ *       &lt;bean class="org.pentaho.platform.repository2.unified.fs.IndexedFileSystemRepositoryFileDao"
+ *             destroy-method="close"/&gt;
+ *     &lt;/constructor-arg&gt;
+ *   &lt;/bean&gt;
+ * </pre>
+ */
+@SuppressWarnings( "nls" )
+public class IndexedFileSystemRepositoryFileDao extends FileSystemRepositoryFileDao implements Closeable {
+
+  private final boolean windows = System.getProperty( "os.name" ).toLowerCase().contains( "win" );
+
+  private volatile FileSystemRepositoryIndex index;
+
+  public IndexedFileSystemRepositoryFileDao() {
+    super();
+  }
+
+  public IndexedFileSystemRepositoryFileDao( final String baseDir ) {
+    super( baseDir );
+  }
+
+  public IndexedFileSystemRepositoryFileDao( final File baseDir ) {
+    super( baseDir );
+  }
+
+  @Override
+  public synchronized void setRootDir( final File rootDir ) {
+    super.setRootDir( rootDir );
+    close();
+  }
+
+  @Override
+  public synchronized void close() {
+    if ( index != null ) {
+      try {
+        index.close();
+      } catch ( IOException e ) {
+        // CHECKSTYLES IGNORE
+      }
+      index = null;
+    }
+  }
+
+  @Override
+  public RepositoryFile getFile( final String relPath ) {
+    if ( StringUtils.isEmpty( relPath ) ) {
+      return null;
+    }
+    final FileSystemRepositoryIndex theIndex = getIndex();
+    final RepositoryFile file = theIndex.getFileById( relPath );
+    return file != null ? file : theIndex.getFile( toPath( relPath ) );
+  }
+
+  @Override
+  public RepositoryFile internalGetFile( final File f ) {
+    final FileSystemRepositoryIndex theIndex = getIndex();
+    final RepositoryFile file = theIndex.getFile( f.toPath() );
+    return file != null ? file : refresh( f );
+  }
+
+  @Override
+  public List<RepositoryFile> getChildren( final RepositoryRequest repositoryRequest ) {
+    final Predicate<RepositoryFile> nameFilter =
+      filter( repositoryRequest.getChildNodeFilter(), repositoryRequest.isShowHidden() );
+    final RepositoryRequest.FILES_TYPE_FILTER types = repositoryRequest.getTypes();
+    return getIndex().getChildren( toPath( repositoryRequest.getPath() ),
+      file -> nameFilter.test( file ) && ( file.isFolder()
+        ? types != RepositoryRequest.FILES_TYPE_FILTER.FILES
+        : types != RepositoryRequest.FILES_TYPE_FILTER.FOLDERS ) );
+  }
+
+  @Override
+  public RepositoryFileTree getTree( final RepositoryRequest repositoryRequest ) {
+    return getIndex().getTree( toPath( repositoryRequest.getPath() ), repositoryRequest.getDepth(),
+      repositoryRequest.getTypes(), filter( null, repositoryRequest.isShowHidden() ),
+      filter( repositoryRequest.getChildNodeFilter(), repositoryRequest.isShowHidden() ) );
+  }
+
+  @Deprecated
+  @Override
+  public RepositoryFileTree getTree( final String relPath, final int depth, final String filter,
+                                     final boolean showHidden ) {
+    return getIndex().getTree( toPath( relPath ), depth, RepositoryRequest.FILES_TYPE_FILTER.FILES_FOLDERS,
+      filter( null, showHidden ), filter( filter, showHidden ) );
+  }
+
+  @Override
+  public RepositoryFile createFile( final Serializable parentFolderId, final RepositoryFile file,
+                                    final IRepositoryFileData data, final RepositoryFileAcl acl,
+                                    final String versionMessage ) {
+    final RepositoryFile created = super.createFile( parentFolderId, file, data, acl, versionMessage );
+    // the file may have been there already, with another size
+    return refresh( idToFile( created.getId() ) );
+  }
+
+  @Override
+  public RepositoryFile updateFile( final RepositoryFile file, final IRepositoryFileData data,
+                                    final String versionMessage ) {
+    super.updateFile( file, data, versionMessage );
+    return refresh( idToFile( file.getId() ) );
+  }
+
+  @Override
+  public void deleteFile( final Serializable fileId, final String versionMessage ) {
+    final File f = idToFile( fileId );
+    super.deleteFile( fileId, versionMessage );
+    getIndex().refresh( f.toPath() );
+  }
+
+  @Override
+  protected File idToFile( final Serializable fileId ) {
+    final Path path = getIndex().getPath( fileId.toString() );
+    return path != null ? path.toFile() : super.idToFile( fileId );
+  }
+
+  FileSystemRepositoryIndex getIndex() {
+    FileSystemRepositoryIndex theIndex = index;
+    if ( theIndex == null ) {
+      synchronized ( this ) {
+        theIndex = index;
+        if ( theIndex == null ) {
+          theIndex = new FileSystemRepositoryIndex( getRootDir().toPath(), windows );
+          try {
+            theIndex.start();
+          } catch ( IOException e ) {
+            throw new UnifiedRepositoryException( "Error indexing [" + getRootDir() + "]", e );
+          }
+          index = theIndex;
+        }
+      }
+    }
+    return theIndex;
+  }
+
+  /**
+   * Reads a file the platform just changed into the index, without waiting for the watch service.
+   */
+  private RepositoryFile refresh( final File f ) {
+    final FileSystemRepositoryIndex theIndex = getIndex();
+    theIndex.refresh( f.toPath() );
+    return theIndex.getFile( f.toPath() );
+  }
+
+  private Path toPath( final String idOrPath ) {
+    final Path path = getIndex().getPath( idOrPath );
+    return path != null ? path : Paths.get( getPhysicalFileLocation( idOrPath ) );
+  }
+
+  private static Predicate<RepositoryFile> filter( final String childNodeFilter, final boolean showHidden ) {
+    final String[] patterns = StringUtils.isEmpty( childNodeFilter ) ? null : childNodeFilter.split( "\\|" );
+    return file -> {
+      if ( !showHidden && file.isHidden() ) {
+        return false;
+      }
+      if ( patterns == null ) {
+        return true;
+      }
+      for ( String pattern : patterns ) {
+        if ( FilenameUtils.wildcardMatch( file.getName(), pattern ) ) {
+          return true;
+        }
+      }
+      return false;
+    };
+  }
+}
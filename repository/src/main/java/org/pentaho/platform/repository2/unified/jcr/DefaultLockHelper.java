@@ -20,27 +20,38 @@
 
 package org.pentaho.platform.repository2.unified.jcr;
 
+import org.apache.commons.lang.math.NumberUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.mt.ITenantedPrincipleNameResolver;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.repository.RepositoryFilenameUtils;
 import org.pentaho.platform.repository2.unified.ServerRepositoryPaths;
 import org.springframework.util.Assert;
 
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
+import javax.jcr.Property;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.lock.Lock;
+import javax.jcr.lock.LockException;
 import javax.jcr.lock.LockManager;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryResult;
+import javax.jcr.query.qom.QueryObjectModelFactory;
+import javax.jcr.query.qom.Selector;
 import javax.jcr.security.AccessControlManager;
 import javax.jcr.security.Privilege;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Default implementation of {@link ILockHelper}. If user {@code suzy} in tenant {@code acme} locks a file with
@@ -56,6 +67,15 @@ import java.util.List;
  * message are null.
  * </p>
  * 
+ * <p>
+ * Lock tokens are indexed in memory by session user and file id once they have been read, so that adding a token to
+ * a session does not walk the owner's {@code .lockTokens} folder again. A token is only served to a user who has read
+ * it from the repository before, so the access check on the owner's home folder still applies. The index keeps the
+ * most recently used {@value #MAX_INDEXED_LOCK_TOKENS} tokens. Locks expire after
+ * {@code repository-locks/timeout-hours} (pentaho.xml, never by default), and the locked files are found with a
+ * query on {@code jcr:lockOwner} rather than by crawling the repository.
+ * </p>
+ * 
  * @author mlowery
  */
 public class DefaultLockHelper implements ILockHelper {
@@ -79,11 +99,26 @@ public class DefaultLockHelper implements ILockHelper {
 
   private static final int POSITION_LOCK_MESSAGE = 2;
 
+  static final String LOCK_TIMEOUT_SETTING = "repository-locks/timeout-hours"; //$NON-NLS-1$
+
+  static final int MAX_INDEXED_LOCK_TOKENS = 10000;
+
   ITenantedPrincipleNameResolver userNameUtils;
 
   // ~ Instance fields
   // =================================================================================================
 
+  /**
+   * lock tokens read or created by this helper, by session user and locked file id, least recently used first
+   */
+  private final Map<LockTokenKey, IndexedLockToken> lockTokenIndex =
+      new LinkedHashMap<LockTokenKey, IndexedLockToken>( 16, 0.75f, true ) {
+        @Override
+        protected boolean removeEldestEntry( final Map.Entry<LockTokenKey, IndexedLockToken> eldest ) {
+          return size() > MAX_INDEXED_LOCK_TOKENS;
+        }
+      };
+
   // ~ Constructors
   // ====================================================================================================
 
@@ -101,11 +136,18 @@ public class DefaultLockHelper implements ILockHelper {
   protected void addLockToken( final Session session, final PentahoJcrConstants pentahoJcrConstants, final Lock lock )
     throws RepositoryException {
     Node lockTokensNode = getOrCreateLockTokensNode( session, pentahoJcrConstants, lock );
-    Node newLockTokenNode =
-        lockTokensNode.addNode( lock.getNode().getIdentifier(), pentahoJcrConstants.getPHO_NT_LOCKTOKENSTORAGE() );
+    String fileId = lock.getNode().getIdentifier();
+    // tokens of expired locks are never removed by an unlock
+    NodeIterator staleTokens = lockTokensNode.getNodes( fileId );
+    while ( staleTokens.hasNext() ) {
+      staleTokens.nextNode().remove();
+    }
+    Node newLockTokenNode = lockTokensNode.addNode( fileId, pentahoJcrConstants.getPHO_NT_LOCKTOKENSTORAGE() );
     newLockTokenNode.setProperty( pentahoJcrConstants.getPHO_LOCKEDNODEREF(), lock.getNode() );
     newLockTokenNode.setProperty( pentahoJcrConstants.getPHO_LOCKTOKEN(), lock.getLockToken() );
     session.save();
+    indexLockToken( session, fileId, new IndexedLockToken( getLockOwner( session, pentahoJcrConstants, lock ),
+        lock.getLockToken() ) );
   }
 
   /**
@@ -119,10 +161,71 @@ public class DefaultLockHelper implements ILockHelper {
    */
   protected String getLockToken( final Session session, final PentahoJcrConstants pentahoJcrConstants, final Lock lock )
     throws RepositoryException {
+    String fileId = lock.getNode().getIdentifier();
+    String lockOwner = getLockOwner( session, pentahoJcrConstants, lock );
+    IndexedLockToken indexed = getIndexedLockToken( session, fileId );
+    if ( indexed != null && indexed.owner.equals( lockOwner ) ) {
+      return indexed.token;
+    }
     Node lockTokensNode = getOrCreateLockTokensNode( session, pentahoJcrConstants, lock );
-    NodeIterator nodes = lockTokensNode.getNodes( lock.getNode().getIdentifier() );
+    NodeIterator nodes = lockTokensNode.getNodes( fileId );
     Assert.isTrue( nodes.hasNext() );
-    return nodes.nextNode().getProperty( pentahoJcrConstants.getPHO_LOCKTOKEN() ).getString();
+    String lockToken = nodes.nextNode().getProperty( pentahoJcrConstants.getPHO_LOCKTOKEN() ).getString();
+    indexLockToken( session, fileId, new IndexedLockToken( lockOwner, lockToken ) );
+    return lockToken;
+  }
+
+  private IndexedLockToken getIndexedLockToken( final Session session, final String fileId ) {
+    if ( session.getUserID() == null ) {
+      return null;
+    }
+    synchronized ( lockTokenIndex ) {
+      return lockTokenIndex.get( new LockTokenKey( session.getUserID(), fileId ) );
+    }
+  }
+
+  private void indexLockToken( final Session session, final String fileId, final IndexedLockToken indexed ) {
+    if ( session.getUserID() == null ) {
+      return;
+    }
+    synchronized ( lockTokenIndex ) {
+      lockTokenIndex.put( new LockTokenKey( session.getUserID(), fileId ), indexed );
+    }
+  }
+
+  private IndexedLockToken unindexLockToken( final Session session, final String fileId ) {
+    if ( session.getUserID() == null ) {
+      return null;
+    }
+    synchronized ( lockTokenIndex ) {
+      return lockTokenIndex.remove( new LockTokenKey( session.getUserID(), fileId ) );
+    }
+  }
+
+  /**
+   * Drops the token of a file for every user.
+   */
+  private void unindexLockTokens( final String fileId ) {
+    synchronized ( lockTokenIndex ) {
+      lockTokenIndex.keySet().removeIf( key -> key.fileId.equals( fileId ) );
+    }
+  }
+
+  /**
+   * Adds the token of the lock to the session. A token taken from the index is looked up again if the lock manager
+   * rejects it, e.g. because the lock it belonged to expired.
+   */
+  private void addLockTokenToSession( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final LockManager lockManager, final Lock lock ) throws RepositoryException {
+    String lockToken = getLockToken( session, pentahoJcrConstants, lock );
+    try {
+      lockManager.addLockToken( lockToken );
+    } catch ( LockException e ) {
+      if ( unindexLockToken( session, lock.getNode().getIdentifier() ) == null ) {
+        throw e;
+      }
+      lockManager.addLockToken( getLockToken( session, pentahoJcrConstants, lock ) );
+    }
   }
 
   /**
@@ -131,6 +234,7 @@ public class DefaultLockHelper implements ILockHelper {
    */
   public void removeLockToken( final Session session, final PentahoJcrConstants pentahoJcrConstants, final Lock lock )
     throws RepositoryException {
+    unindexLockTokens( lock.getNode().getIdentifier() );
     Node lockTokensNode = getOrCreateLockTokensNode( session, pentahoJcrConstants, lock );
     NodeIterator nodes = lockTokensNode.getNodes( lock.getNode().getIdentifier() );
     if ( nodes.hasNext() ) {
@@ -180,8 +284,7 @@ public class DefaultLockHelper implements ILockHelper {
     if ( fileNode.isLocked() ) {
       LockManager lockManager = session.getWorkspace().getLockManager();
       Lock lock = lockManager.getLock( fileNode.getPath() );
-      String lockToken = getLockToken( session, pentahoJcrConstants, lock );
-      lockManager.addLockToken( lockToken );
+      addLockTokenToSession( session, pentahoJcrConstants, lockManager, lock );
     }
   }
 
@@ -207,8 +310,7 @@ public class DefaultLockHelper implements ILockHelper {
     Node fileNode = session.getNodeByIdentifier( fileId.toString() );
     LockManager lockManager = session.getWorkspace().getLockManager();
     Lock lock = lockManager.getLock( fileNode.getPath() );
-    String lockToken = getLockToken( session, pentahoJcrConstants, lock );
-    lockManager.addLockToken( lockToken );
+    addLockTokenToSession( session, pentahoJcrConstants, lockManager, lock );
     // get the lock again so that it has a non-null lockToken
     lock = lockManager.getLock( fileNode.getPath() );
     // don't need lock token anymore
@@ -228,7 +330,8 @@ public class DefaultLockHelper implements ILockHelper {
     // anyway; from spec, "if a lock is enabled and then disabled within the same transaction, its effect never
     // makes it to the persistent workspace and therefore it does nothing"
     final boolean isSessionScoped = false;
-    final long timeoutHint = Long.MAX_VALUE;
+    // stale locks are released by the JCR lock manager once the timeout elapses
+    final long timeoutHint = getLockTimeoutSeconds();
     final String ownerInfo =
         makeOwnerInfo( JcrTenantUtils.getTenantedUser( PentahoSessionHolder.getSession().getName() ), Calendar
             .getInstance().getTime(), message );
@@ -238,6 +341,49 @@ public class DefaultLockHelper implements ILockHelper {
     addLockToken( session, pentahoJcrConstants, lock );
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<Node> getLockedNodes( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final String lockOwner ) throws RepositoryException {
+    QueryObjectModelFactory fac = session.getWorkspace().getQueryManager().getQOMFactory();
+    final String selectorName = "selector"; //$NON-NLS-1$
+    final Selector selector = fac.selector( pentahoJcrConstants.getMIX_LOCKABLE(), selectorName );
+    Query query = fac.createQuery( selector, fac.propertyExistence( selectorName, Property.JCR_LOCK_OWNER ), null,
+        null );
+    QueryResult result =
+        session.getWorkspace().getQueryManager().createQuery( query.getStatement(), Query.JCR_JQOM ).execute();
+
+    LockManager lockManager = session.getWorkspace().getLockManager();
+    List<Node> lockedNodes = new ArrayList<>();
+    NodeIterator nodeIter = result.getNodes();
+    while ( nodeIter.hasNext() ) {
+      Node node = nodeIter.nextNode();
+      if ( !lockManager.holdsLock( node.getPath() ) ) {
+        continue;
+      }
+      Lock lock = lockManager.getLock( node.getPath() );
+      if ( lockOwner == null || isOwner( lockOwner, getLockOwner( session, pentahoJcrConstants, lock ) ) ) {
+        lockedNodes.add( node );
+      }
+    }
+    return lockedNodes;
+  }
+
+  private boolean isOwner( final String user, final String lockOwner ) {
+    return lockOwner != null
+        && ( lockOwner.equals( user ) || user.equals( userNameUtils.getPrincipleName( lockOwner ) ) );
+  }
+
+  /**
+   * Returns the lock timeout hint in seconds, {@code Long.MAX_VALUE} if locks never expire.
+   */
+  protected long getLockTimeoutSeconds() {
+    long hours = NumberUtils.toLong( PentahoSystem.getSystemSetting( LOCK_TIMEOUT_SETTING, null ), 0 );
+    return hours > 0 ? hours * 3600 : Long.MAX_VALUE;
+  }
+
   private String makeOwnerInfo( final String lockOwner, final Date lockDate, final String lockMessage ) {
     return escape( lockOwner ) + LOCK_OWNER_INFO_SEPARATOR + lockDate.getTime() + LOCK_OWNER_INFO_SEPARATOR
         + escape( lockMessage );
@@ -304,6 +450,44 @@ public class DefaultLockHelper implements ILockHelper {
     return RepositoryFilenameUtils.unescape( in );
   }
 
+  private static final class IndexedLockToken {
+
+    private final String owner;
+
+    private final String token;
+
+    private IndexedLockToken( final String owner, final String token ) {
+      this.owner = owner;
+      this.token = token;
+    }
+  }
+
+  private static final class LockTokenKey {
+
+    private final String userId;
+
+    private final String fileId;
+
+    private LockTokenKey( final String userId, final String fileId ) {
+      this.userId = userId;
+      this.fileId = fileId;
+    }
+
+    @Override
+    public boolean equals( final Object obj ) {
+      if ( !( obj instanceof LockTokenKey ) ) {
+        return false;
+      }
+      LockTokenKey other = (LockTokenKey) obj;
+      return userId.equals( other.userId ) && fileId.equals( other.fileId );
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * userId.hashCode() + fileId.hashCode();
+    }
+  }
+
   // public static void main(final String[] args) {
   // System.out.println("'" + escape(null) + "'");
   // System.out.println("'" + escape("") + "'");
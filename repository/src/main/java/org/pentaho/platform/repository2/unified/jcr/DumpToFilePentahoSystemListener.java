@@ -84,6 +84,13 @@ import java.util.zip.ZipOutputStream;
  * -Dpentaho.repository.dumpToFile.documentView=/tmp/repodump
  * </pre>
  * 
+ * or, for a chunked snapshot (see {@link JcrRepositorySnapshot}), optionally incremental to a previous one
+ * 
+ * <pre>
+ * -Dpentaho.repository.dumpToFile.snapshot=/tmp/reposnapshot
+ * -Dpentaho.repository.dumpToFile.snapshot.previous=/tmp/reposnapshot-old.zip
+ * </pre>
+ * 
  * </li>
  * </ol>
  * 
@@ -117,6 +124,17 @@ public class DumpToFilePentahoSystemListener implements IPentahoSystemListener {
    */
   public static final String PROP_DUMP_TO_FILE_DOCUMENT_VIEW = "pentaho.repository.dumpToFile.documentView"; //$NON-NLS-1$
 
+  /**
+   * Writes a chunked snapshot using {@link JcrRepositorySnapshot}.
+   */
+  public static final String PROP_DUMP_TO_FILE_SNAPSHOT = "pentaho.repository.dumpToFile.snapshot"; //$NON-NLS-1$
+
+  /**
+   * Makes the snapshot incremental to the given snapshot archive.
+   */
+  public static final String PROP_DUMP_TO_FILE_SNAPSHOT_PREVIOUS =
+      "pentaho.repository.dumpToFile.snapshot.previous"; //$NON-NLS-1$
+
   private enum Mode {
     CUSTOM, SYS, DOC
   };
@@ -134,6 +152,9 @@ public class DumpToFilePentahoSystemListener implements IPentahoSystemListener {
 
   @Override
   public boolean startup( IPentahoSession pentahoSession ) {
+    if ( !StringUtils.hasText( fileName ) && System.getProperty( PROP_DUMP_TO_FILE_SNAPSHOT ) != null ) {
+      return snapshot( pentahoSession, System.getProperty( PROP_DUMP_TO_FILE_SNAPSHOT ) );
+    }
     Mode tmpMode = null;
     if ( !StringUtils.hasText( fileName ) ) {
       fileName = System.getProperty( PROP_DUMP_TO_FILE );
@@ -214,6 +235,20 @@ public class DumpToFilePentahoSystemListener implements IPentahoSystemListener {
     return true;
   }
 
+  private boolean snapshot( final IPentahoSession pentahoSession, final String snapshotFileName ) {
+    JcrRepositorySnapshot snapshot = JcrRepositorySnapshot.create( pentahoSession, snapshotFileName );
+    String previous = System.getProperty( PROP_DUMP_TO_FILE_SNAPSHOT_PREVIOUS );
+    if ( StringUtils.hasText( previous ) ) {
+      try {
+        snapshot.setPrevious( new File( previous ) );
+      } catch ( IOException e ) {
+        throw new RuntimeException( e );
+      }
+    }
+    snapshot.execute();
+    return true;
+  }
+
   protected IPentahoSession createRepositoryAdminPentahoSession( final String repositoryAdminUsername ) {
     StandaloneSession pentahoSession = new StandaloneSession( repositoryAdminUsername );
     pentahoSession.setAuthenticated( repositoryAdminUsername );
@@ -20,11 +20,13 @@
 
 package org.pentaho.platform.repository2.unified.jcr;
 
+import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.lock.Lock;
 import java.io.Serializable;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Helper class that stores, retrieves, and removes lock tokens. In section 8.4.7 of the JSR-170 specification, it
@@ -139,4 +141,21 @@ public interface ILockHelper {
 
   String getLockOwner( final Session session, final PentahoJcrConstants pentahoJcrConstants, final Lock lock )
     throws RepositoryException;
+
+  /**
+   * Returns the lock holding nodes visible to the session.
+   * 
+   * @param session
+   *          session
+   * @param pentahoJcrConstants
+   *          constants
+   * @param lockOwner
+   *          only return the nodes locked by this user, all locked nodes if {@code null}
+   * @throws RepositoryException
+   *           if anything goes wrong
+   */
+  default List<Node> getLockedNodes( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final String lockOwner ) throws RepositoryException {
+    throw new UnsupportedOperationException();
+  }
 }
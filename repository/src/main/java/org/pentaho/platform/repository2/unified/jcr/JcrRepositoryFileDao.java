@@ -605,6 +605,70 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     } );
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void lockFiles( final List<Serializable> fileIds, final String message ) {
+    if ( isKioskEnabled() ) {
+      throw new RuntimeException( Messages.getInstance().getString( "JcrRepositoryFileDao.ERROR_0006_ACCESS_DENIED" ) ); //$NON-NLS-1$
+    }
+
+    Assert.notNull( fileIds );
+    jcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+        for ( Serializable fileId : fileIds ) {
+          lockHelper.lockFile( session, pentahoJcrConstants, fileId, message );
+        }
+        return null;
+      }
+    } );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void unlockFiles( final List<Serializable> fileIds ) {
+    if ( isKioskEnabled() ) {
+      throw new RuntimeException( Messages.getInstance().getString( "JcrRepositoryFileDao.ERROR_0006_ACCESS_DENIED" ) ); //$NON-NLS-1$
+    }
+
+    Assert.notNull( fileIds );
+    jcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+        for ( Serializable fileId : fileIds ) {
+          lockHelper.unlockFile( session, pentahoJcrConstants, fileId );
+        }
+        return null;
+      }
+    } );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @SuppressWarnings( "unchecked" )
+  public List<RepositoryFile> getLockedFiles( final String lockOwner ) {
+    return (List<RepositoryFile>) jcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+        List<RepositoryFile> lockedFiles = new ArrayList<RepositoryFile>();
+        for ( Node lockedNode : lockHelper.getLockedNodes( session, pentahoJcrConstants, lockOwner ) ) {
+          lockedFiles.add( JcrRepositoryFileUtils.nodeToFile( session, pentahoJcrConstants, pathConversionHelper,
+              lockHelper, lockedNode ) );
+        }
+        return lockedFiles;
+      }
+    } );
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -0,0 +1,646 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+import org.springframework.extensions.jcr.JcrCallback;
+import org.springframework.extensions.jcr.JcrTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.jcr.NamespaceException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.nodetype.NodeDefinition;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventJournal;
+import javax.jcr.query.Query;
+import javax.jcr.query.qom.Constraint;
+import javax.jcr.query.qom.QueryObjectModelConstants;
+import javax.jcr.query.qom.QueryObjectModelFactory;
+import javax.jcr.query.qom.Selector;
+import javax.jcr.util.TraversingItemVisitor;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Creates an online, chunked snapshot of the JCR.
+ *
+ * <p>
+ * Unlike {@link JcrRepositoryDumpToFile}, which exports the whole workspace through one session, the snapshot is
+ * split into chunks which are exported in parallel, each through its own session, and gzipped into a zip archive
+ * together with a {@value #MANIFEST_ENTRY} describing them. Chunks are streamed into the archive while they are
+ * exported, so a snapshot needs no temporary space:
+ * </p>
+ * <ul>
+ * <li>A full snapshot descends the tree down to {@link #setSplitDepth(int) splitDepth}. Every node above that
+ * depth is exported on its own (without children), every node at that depth with its whole subtree.</li>
+ * <li>An incremental snapshot ({@link #setPrevious(File)} or {@link #setSince(Calendar)}) only exports the subtrees
+ * of nodes whose {@code jcr:created}, {@code jcr:lastModified} or {@code pho:lastModified} is later than the
+ * checkpoint of the previous snapshot, plus their ancestors on their own. When the repository keeps an event
+ * journal, nodes added and removed since the checkpoint are taken from it as well, so that moves and deletes are
+ * replayed on restore, and so are nodes whose properties changed without touching their modification time. Changes
+ * below an access control policy ({@code rep:policy}), which carries the ACL and the owner of a file, are mapped to
+ * the node holding the policy, whose subtree is exported instead. Without a journal the manifest records that
+ * removals and ACL changes were not tracked ({@value #KEY_REMOVALS_TRACKED}, {@value #KEY_ACL_CHANGES_TRACKED}).
+ * </li>
+ * </ul>
+ *
+ * <p>
+ * The checkpoint of a snapshot is taken before anything is read, so a change made while the snapshot runs is
+ * picked up again by the next incremental snapshot. Chunks are not exported at the same instant; a snapshot is
+ * consistent per chunk only. The version storage ({@code /jcr:system}) is not part of the snapshot, and protected
+ * nodes such as access control policies are only restored where the import of the target repository supports
+ * them. Use {@link JcrRepositorySnapshotVerifier} to restore and check a chain of snapshots.
+ * </p>
+ *
+ * <p>
+ * Snapshots are taken at startup by {@link DumpToFilePentahoSystemListener}, or at any time through
+ * {@link #create(IPentahoSession, String)}.
+ * </p>
+ */
+public class JcrRepositorySnapshot {
+
+  // ~ Static fields/initializers
+  // ======================================================================================
+
+  private static final Log logger = LogFactory.getLog( JcrRepositorySnapshot.class );
+
+  public static final String MANIFEST_ENTRY = "manifest.properties"; //$NON-NLS-1$
+
+  public static final String KEY_CHECKPOINT = "checkpoint"; //$NON-NLS-1$
+
+  public static final String KEY_SINCE = "since"; //$NON-NLS-1$
+
+  public static final String KEY_REMOVALS_TRACKED = "removals.tracked"; //$NON-NLS-1$
+
+  public static final String KEY_ACL_CHANGES_TRACKED = "acl.changes.tracked"; //$NON-NLS-1$
+
+  public static final String KEY_REMOVED_COUNT = "removed.count"; //$NON-NLS-1$
+
+  static final String KEY_REMOVED = "removed."; //$NON-NLS-1$
+
+  public static final String KEY_CHUNK_COUNT = "chunk.count"; //$NON-NLS-1$
+
+  static final String KEY_CHUNK = "chunk."; //$NON-NLS-1$
+
+  static final String CHUNK_PATH = ".path"; //$NON-NLS-1$
+
+  static final String CHUNK_ENTRY = ".entry"; //$NON-NLS-1$
+
+  static final String CHUNK_RECURSIVE = ".recursive"; //$NON-NLS-1$
+
+  static final String CHUNK_NODES = ".nodes"; //$NON-NLS-1$
+
+  private static final String ZIP_EXTENSION = ".zip"; //$NON-NLS-1$
+
+  private static final String POLICY_NODE = "/rep:policy"; //$NON-NLS-1$
+
+  private static final int JOURNAL_EVENTS =
+      Event.NODE_ADDED | Event.NODE_REMOVED | Event.PROPERTY_ADDED | Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED;
+
+  private static final int DEFAULT_SPLIT_DEPTH = 4;
+
+  private static final int PIPE_SIZE = 1 << 20;
+
+  private static final List<String> DEFAULT_EXCLUDED_PATHS = Collections.singletonList( "/jcr:system" ); //$NON-NLS-1$
+
+  // ~ Instance fields
+  // =================================================================================================
+
+  private final JcrTemplate jcrTemplate;
+
+  private final TransactionTemplate txnTemplate;
+
+  private final String repositoryAdminUsername;
+
+  private String filename;
+
+  private Calendar since;
+
+  private int threads = Math.min( 4, Runtime.getRuntime().availableProcessors() );
+
+  private int splitDepth = DEFAULT_SPLIT_DEPTH;
+
+  private List<String> excludedPaths = DEFAULT_EXCLUDED_PATHS;
+
+  // ~ Constructors
+  // ====================================================================================================
+
+  public JcrRepositorySnapshot( final JcrTemplate jcrTemplate, final TransactionTemplate txnTemplate,
+      final String repositoryAdminUsername, final String filename ) {
+    this.jcrTemplate = jcrTemplate;
+    this.txnTemplate = txnTemplate;
+    this.repositoryAdminUsername = repositoryAdminUsername;
+    this.filename = filename;
+  }
+
+  // ~ Methods
+  // =========================================================================================================
+
+  /**
+   * Creates a snapshot of the repository of this server, e.g. to take one while the server is running.
+   */
+  public static JcrRepositorySnapshot create( final IPentahoSession pentahoSession, final String filename ) {
+    JcrTemplate jcrTemplate = PentahoSystem.get( JcrTemplate.class, "jcrTemplate", pentahoSession ); //$NON-NLS-1$
+    TransactionTemplate txnTemplate =
+        PentahoSystem.get( TransactionTemplate.class, "jcrTransactionTemplate", pentahoSession ); //$NON-NLS-1$
+    String repositoryAdminUsername =
+        PentahoSystem.get( String.class, "repositoryAdminUsername", pentahoSession ); //$NON-NLS-1$
+    return new JcrRepositorySnapshot( jcrTemplate, txnTemplate, repositoryAdminUsername, filename );
+  }
+
+  /**
+   * Only nodes changed after the checkpoint of the given snapshot archive are exported.
+   */
+  public void setPrevious( final File previous ) throws IOException {
+    Properties manifest = readManifest( previous );
+    Calendar checkpoint = Calendar.getInstance();
+    checkpoint.setTimeInMillis( Long.parseLong( manifest.getProperty( KEY_CHECKPOINT ) ) );
+    setSince( checkpoint );
+  }
+
+  /**
+   * Only nodes changed after the given time are exported. {@code null} creates a full snapshot.
+   */
+  public void setSince( final Calendar since ) {
+    this.since = since;
+  }
+
+  public void setThreads( final int threads ) {
+    this.threads = Math.max( 1, threads );
+  }
+
+  public void setSplitDepth( final int splitDepth ) {
+    this.splitDepth = Math.max( 1, splitDepth );
+  }
+
+  public void setExcludedPaths( final List<String> excludedPaths ) {
+    this.excludedPaths = excludedPaths != null ? excludedPaths : Collections.<String>emptyList();
+  }
+
+  public String getFilename() {
+    return filename;
+  }
+
+  /**
+   * Writes the snapshot and returns its manifest.
+   */
+  public Properties execute() {
+    // let the user know this is a zip
+    if ( !filename.endsWith( ZIP_EXTENSION ) ) {
+      filename = filename + ZIP_EXTENSION;
+    }
+    logger.debug( String.format( "writing repository snapshot to file \"%s\"", filename ) ); //$NON-NLS-1$
+    final long checkpoint = System.currentTimeMillis();
+    final IPentahoSession adminSession = createRepositoryAdminPentahoSession( repositoryAdminUsername );
+    // stash existing session
+    IPentahoSession origPentahoSession = PentahoSessionHolder.getSession();
+    // run as repo super user
+    PentahoSessionHolder.setSession( adminSession );
+    ExecutorService executor = Executors.newFixedThreadPool( threads );
+    final File archive = new File( filename );
+    ZipOutputStream out = null;
+    boolean completed = false;
+    try {
+      final Properties manifest = new Properties();
+      manifest.setProperty( KEY_CHECKPOINT, String.valueOf( checkpoint ) );
+      if ( since != null ) {
+        manifest.setProperty( KEY_SINCE, String.valueOf( since.getTimeInMillis() ) );
+      }
+      final List<Chunk> chunks = new ArrayList<>();
+      final Set<String> removed = new TreeSet<>();
+      doInJcr( new JcrCallback() {
+        public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+          if ( since == null ) {
+            planFull( session.getRootNode(), 0, chunks );
+          } else {
+            boolean tracked = readJournal( session, checkpoint, chunks, removed );
+            manifest.setProperty( KEY_REMOVALS_TRACKED, String.valueOf( tracked ) );
+            manifest.setProperty( KEY_ACL_CHANGES_TRACKED, String.valueOf( tracked ) );
+            planIncremental( session, chunks );
+          }
+          return null;
+        }
+      } );
+
+      out = new ZipOutputStream( new BufferedOutputStream( FileUtils.openOutputStream( archive ) ) );
+      writeChunks( out, chunks, executor, adminSession );
+      writeManifest( out, manifest, chunks, removed );
+      out.close();
+      completed = true;
+      logger.debug( String.format( "wrote repository snapshot with %d chunks to file \"%s\"", //$NON-NLS-1$
+          chunks.size(), filename ) );
+      return manifest;
+    } catch ( IOException e ) {
+      throw new RuntimeException( e );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException( e );
+    } catch ( ExecutionException e ) {
+      if ( e.getCause() instanceof RuntimeException ) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException( e.getCause() );
+    } finally {
+      executor.shutdownNow();
+      if ( !completed ) {
+        // never leave a partial archive behind, it could be taken for a snapshot
+        IOUtils.closeQuietly( out );
+        FileUtils.deleteQuietly( archive );
+      }
+      // restore original session
+      PentahoSessionHolder.setSession( origPentahoSession );
+    }
+  }
+
+  protected IPentahoSession createRepositoryAdminPentahoSession( final String repositoryAdminUsername ) {
+    StandaloneSession pentahoSession = new StandaloneSession( repositoryAdminUsername );
+    pentahoSession.setAuthenticated( repositoryAdminUsername );
+    return pentahoSession;
+  }
+
+  private Object doInJcr( final JcrCallback callback ) {
+    return txnTemplate.execute( status -> jcrTemplate.execute( callback ) );
+  }
+
+  private void planFull( final Node node, final int depth, final List<Chunk> chunks ) throws RepositoryException {
+    if ( isExcluded( node.getPath() ) || node.getDefinition().isProtected() ) {
+      return;
+    }
+    if ( depth >= splitDepth || !node.hasNodes() || hasMandatoryChildNodes( node ) ) {
+      chunks.add( new Chunk( node.getPath(), true ) );
+      return;
+    }
+    // the root node itself cannot be imported
+    if ( depth > 0 ) {
+      chunks.add( new Chunk( node.getPath(), false ) );
+    }
+    NodeIterator children = node.getNodes();
+    while ( children.hasNext() ) {
+      planFull( children.nextNode(), depth + 1, chunks );
+    }
+  }
+
+  /**
+   * A node whose type requires child nodes cannot be restored without them, so it is never split.
+   */
+  private static boolean hasMandatoryChildNodes( final Node node ) throws RepositoryException {
+    for ( NodeDefinition definition : node.getPrimaryNodeType().getChildNodeDefinitions() ) {
+      if ( definition.isMandatory() ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Adds the nodes added or changed since the checkpoint to {@code chunks} and the removed ones to {@code removed}.
+   * Returns {@code false} if the repository does not keep an event journal.
+   */
+  private boolean readJournal( final Session session, final long checkpoint, final List<Chunk> chunks,
+      final Set<String> removed ) {
+    List<Chunk> added = new ArrayList<>();
+    Set<String> removedPaths = new TreeSet<>();
+    try {
+      EventJournal journal = session.getWorkspace().getObservationManager()
+          .getEventJournal( JOURNAL_EVENTS, "/", true, null, null ); //$NON-NLS-1$
+      journal.skipTo( since.getTimeInMillis() );
+      while ( journal.hasNext() ) {
+        Event event = journal.nextEvent();
+        if ( event.getDate() > checkpoint ) {
+          break;
+        }
+        boolean nodeEvent = event.getType() == Event.NODE_ADDED || event.getType() == Event.NODE_REMOVED;
+        // a property event names the property, the node is its parent
+        String path = nodeEvent ? event.getPath() : getParentPath( event.getPath() );
+        String policyOwner = getPolicyOwner( path );
+        if ( isExcluded( path ) ) {
+          continue;
+        }
+        if ( policyOwner != null ) {
+          // policies are protected and exported with their owner; a removed policy is dropped by replacing it
+          added.add( new Chunk( policyOwner, true ) );
+        } else if ( event.getType() == Event.NODE_REMOVED ) {
+          removedPaths.add( path );
+        } else {
+          added.add( new Chunk( path, true ) );
+        }
+      }
+    } catch ( RepositoryException | RuntimeException e ) {
+      logger.warn( "no event journal available, removals and ACL changes are not in the snapshot", e ); //$NON-NLS-1$
+      return false;
+    }
+    chunks.addAll( added );
+    removed.addAll( removedPaths );
+    return true;
+  }
+
+  private void planIncremental( final Session session, final List<Chunk> chunks ) throws RepositoryException {
+    QueryObjectModelFactory fac = session.getWorkspace().getQueryManager().getQOMFactory();
+    final String selectorName = "selector"; //$NON-NLS-1$
+    final Selector selector = fac.selector( "nt:base", selectorName ); //$NON-NLS-1$
+    Constraint changed = null;
+    for ( String propertyName : getChangeProperties( session ) ) {
+      Constraint constraint =
+          fac.comparison( fac.propertyValue( selectorName, propertyName ),
+              QueryObjectModelConstants.JCR_OPERATOR_GREATER_THAN, fac.literal( session.getValueFactory()
+                  .createValue( since ) ) );
+      changed = changed == null ? constraint : fac.or( changed, constraint );
+    }
+    Query query = fac.createQuery( selector, changed, null, null );
+    NodeIterator nodes = query.execute().getNodes();
+
+    // journal entries first, then the query results
+    Set<String> paths = new TreeSet<>();
+    for ( Chunk chunk : chunks ) {
+      paths.add( chunk.path );
+    }
+    while ( nodes.hasNext() ) {
+      String path = nodes.nextNode().getPath();
+      if ( !isExcluded( path ) ) {
+        paths.add( path );
+      }
+    }
+    chunks.clear();
+
+    // keep the top-most changed nodes only, their subtrees are exported as a whole
+    List<String> subtrees = new ArrayList<>();
+    for ( String path : paths ) {
+      if ( !"/".equals( path ) && session.nodeExists( path ) && !isCovered( path, subtrees ) ) { //$NON-NLS-1$
+        subtrees.add( path );
+      }
+    }
+    // ancestors are exported on their own so the subtrees can be restored into a repository that lacks them
+    Set<String> ancestors = new LinkedHashSet<>();
+    for ( String path : subtrees ) {
+      ancestors.addAll( getAncestors( path ) );
+    }
+    List<String> sortedAncestors = new ArrayList<>( ancestors );
+    Collections.sort( sortedAncestors, ( a, b ) -> Integer.compare( depth( a ), depth( b ) ) );
+    for ( String path : sortedAncestors ) {
+      chunks.add( new Chunk( path, false ) );
+    }
+    for ( String path : subtrees ) {
+      chunks.add( new Chunk( path, true ) );
+    }
+  }
+
+  private List<String> getChangeProperties( final Session session ) throws RepositoryException {
+    List<String> names = new ArrayList<>( Arrays.asList( Property.JCR_CREATED, Property.JCR_LAST_MODIFIED ) );
+    try {
+      names.add( session.getNamespacePrefix( PentahoJcrConstants.PHO_NS ) + ":lastModified" ); //$NON-NLS-1$
+    } catch ( NamespaceException e ) {
+      // not a pentaho repository
+    }
+    return names;
+  }
+
+  private boolean isExcluded( final String path ) {
+    return isCovered( path, excludedPaths );
+  }
+
+  private static boolean isCovered( final String path, final List<String> roots ) {
+    for ( String root : roots ) {
+      if ( path.equals( root ) || path.startsWith( root + "/" ) ) { //$NON-NLS-1$
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the path of the node holding the access control policy {@code path} belongs to, or {@code null}.
+   */
+  private static String getPolicyOwner( final String path ) {
+    int index = path.indexOf( POLICY_NODE );
+    while ( index >= 0 ) {
+      int end = index + POLICY_NODE.length();
+      if ( end == path.length() || path.charAt( end ) == '/' || path.charAt( end ) == '[' ) {
+        return index == 0 ? "/" : path.substring( 0, index ); //$NON-NLS-1$
+      }
+      index = path.indexOf( POLICY_NODE, end );
+    }
+    return null;
+  }
+
+  private static String getParentPath( final String path ) {
+    int index = path.lastIndexOf( '/' );
+    return index > 0 ? path.substring( 0, index ) : "/"; //$NON-NLS-1$
+  }
+
+  private static List<String> getAncestors( final String path ) {
+    List<String> ancestors = new ArrayList<>();
+    int index = path.indexOf( '/', 1 );
+    while ( index > 0 ) {
+      ancestors.add( path.substring( 0, index ) );
+      index = path.indexOf( '/', index + 1 );
+    }
+    return ancestors;
+  }
+
+  private static int depth( final String path ) {
+    return path.length() - path.replace( "/", "" ).length(); //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  /**
+   * Exports the chunks in parallel and streams them into the archive in order. Every chunk in flight is handed over
+   * through a pipe of {@value #PIPE_SIZE} bytes, so at most {@code threads} chunks are exported at the same time and
+   * nothing but their pipes is buffered.
+   */
+  private void writeChunks( final ZipOutputStream out, final List<Chunk> chunks, final ExecutorService executor,
+      final IPentahoSession adminSession ) throws IOException, InterruptedException, ExecutionException {
+    final PipedInputStream[] pipes = new PipedInputStream[chunks.size()];
+    final List<Future<Long>> futures = new ArrayList<>( chunks.size() );
+    // chunks are gzipped already
+    out.setLevel( Deflater.NO_COMPRESSION );
+    try {
+      for ( int i = 0; i < chunks.size(); i++ ) {
+        // chunks are started in order, so the one read next is always running or done
+        while ( futures.size() < chunks.size() && futures.size() < i + threads ) {
+          final int index = futures.size();
+          final Chunk chunk = chunks.get( index );
+          chunk.entry = String.format( "chunks/%06d.xml.gz", index ); //$NON-NLS-1$
+          pipes[index] = new PipedInputStream( PIPE_SIZE );
+          final OutputStream pipe = new PipedOutputStream( pipes[index] );
+          futures.add( executor.submit( () -> {
+            PentahoSessionHolder.setSession( adminSession );
+            try {
+              return (Long) doInJcr( session -> exportChunk( session, chunk, pipe ) );
+            } finally {
+              IOUtils.closeQuietly( pipe );
+              PentahoSessionHolder.removeSession();
+            }
+          } ) );
+        }
+        out.putNextEntry( new ZipEntry( chunks.get( i ).entry ) );
+        IOUtils.copyLarge( pipes[i], out );
+        IOUtils.closeQuietly( pipes[i] );
+        pipes[i] = null;
+        // a chunk whose export failed ended early, fail with its error
+        chunks.get( i ).nodes = futures.get( i ).get();
+        out.closeEntry();
+      }
+    } finally {
+      // a failed copy leaves exports in flight, closing their pipes stops them
+      for ( PipedInputStream pipe : pipes ) {
+        IOUtils.closeQuietly( pipe );
+      }
+    }
+    out.setLevel( Deflater.DEFAULT_COMPRESSION );
+  }
+
+  private Long exportChunk( final Session session, final Chunk chunk, final OutputStream out )
+    throws RepositoryException, IOException {
+    final boolean SKIP_BINARY = false;
+    if ( !session.nodeExists( chunk.path ) ) {
+      // removed after planning, an empty entry; the next snapshot records the removal
+      return 0L;
+    }
+    Node node = session.getNode( chunk.path );
+    if ( node.getDefinition().isProtected() ) {
+      // e.g. access control policies, which are restored with their parent where the import supports them
+      return 0L;
+    }
+    long nodes = 1;
+    if ( chunk.recursive ) {
+      NodeCounter counter = new NodeCounter();
+      node.accept( counter );
+      nodes = counter.count;
+    }
+    GZIPOutputStream gzip = new GZIPOutputStream( out, PIPE_SIZE );
+    session.exportSystemView( chunk.path, gzip, SKIP_BINARY, !chunk.recursive );
+    gzip.finish();
+    return nodes;
+  }
+
+  private void writeManifest( final ZipOutputStream out, final Properties manifest, final List<Chunk> chunks,
+      final Set<String> removed ) throws IOException {
+    int index = 0;
+    for ( Chunk chunk : chunks ) {
+      String key = KEY_CHUNK + index++;
+      manifest.setProperty( key + CHUNK_PATH, chunk.path );
+      manifest.setProperty( key + CHUNK_ENTRY, chunk.entry );
+      manifest.setProperty( key + CHUNK_RECURSIVE, String.valueOf( chunk.recursive ) );
+      manifest.setProperty( key + CHUNK_NODES, String.valueOf( chunk.nodes ) );
+    }
+    manifest.setProperty( KEY_CHUNK_COUNT, String.valueOf( chunks.size() ) );
+    index = 0;
+    for ( String path : removed ) {
+      manifest.setProperty( KEY_REMOVED + index++, path );
+    }
+    manifest.setProperty( KEY_REMOVED_COUNT, String.valueOf( removed.size() ) );
+    out.putNextEntry( new ZipEntry( MANIFEST_ENTRY ) );
+    manifest.store( out, null );
+    out.closeEntry();
+  }
+
+  /**
+   * Reads the manifest of a snapshot archive.
+   */
+  public static Properties readManifest( final File archive ) throws IOException {
+    ZipFile zip = new ZipFile( archive );
+    try {
+      return readManifest( zip );
+    } finally {
+      zip.close();
+    }
+  }
+
+  static Properties readManifest( final ZipFile zip ) throws IOException {
+    ZipEntry entry = zip.getEntry( MANIFEST_ENTRY );
+    if ( entry == null ) {
+      throw new IOException( String.format( "\"%s\" is not a repository snapshot", zip.getName() ) ); //$NON-NLS-1$
+    }
+    Properties manifest = new Properties();
+    InputStream in = zip.getInputStream( entry );
+    try {
+      manifest.load( in );
+    } finally {
+      IOUtils.closeQuietly( in );
+    }
+    return manifest;
+  }
+
+  private static class Chunk {
+
+    private final String path;
+
+    private final boolean recursive;
+
+    private String entry;
+
+    private long nodes;
+
+    Chunk( final String path, final boolean recursive ) {
+      this.path = path;
+      this.recursive = recursive;
+    }
+  }
+
+  /**
+   * Counts the nodes of a subtree that an XML import restores; protected nodes are skipped.
+   */
+  static class NodeCounter extends TraversingItemVisitor.Default {
+
+    long count;
+
+    @Override
+    protected void entering( final Node node, final int level ) throws RepositoryException {
+      if ( !node.getDefinition().isProtected() ) {
+        count++;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,146 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs {@link JcrRepositorySnapshot}s in the background, one at a time, and keeps the state of the last
+ * {@value #MAX_JOBS} of them so that callers can poll for the outcome by job id.
+ */
+public class JcrRepositorySnapshotJobs {
+
+  private static final Log logger = LogFactory.getLog( JcrRepositorySnapshotJobs.class );
+
+  static final int MAX_JOBS = 20;
+
+  private static final JcrRepositorySnapshotJobs INSTANCE = new JcrRepositorySnapshotJobs();
+
+  public enum State {
+    QUEUED, RUNNING, SUCCEEDED, FAILED
+  }
+
+  // snapshots are parallel already, running several at once would only compete for the repository
+  private final ExecutorService executor = Executors.newSingleThreadExecutor( runnable -> {
+    Thread thread = new Thread( runnable, "repository-snapshot" ); //$NON-NLS-1$
+    thread.setDaemon( true );
+    return thread;
+  } );
+
+  private final Map<String, Job> jobs = Collections.synchronizedMap( new LinkedHashMap<String, Job>() {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry( final Map.Entry<String, Job> eldest ) {
+      return size() > MAX_JOBS;
+    }
+  } );
+
+  public static JcrRepositorySnapshotJobs getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Queues the snapshot.
+   *
+   * @return the job, which is updated as the snapshot runs
+   */
+  public Job submit( final JcrRepositorySnapshot snapshot ) {
+    final Job job = new Job( UUID.randomUUID().toString(), new File( snapshot.getFilename() ).getName() );
+    jobs.put( job.getId(), job );
+    executor.execute( () -> {
+      job.state = State.RUNNING;
+      try {
+        job.manifest = snapshot.execute();
+        job.state = State.SUCCEEDED;
+      } catch ( RuntimeException e ) {
+        logger.error( String.format( "repository snapshot \"%s\" failed", job.getFile() ), e ); //$NON-NLS-1$
+        job.error = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+        job.state = State.FAILED;
+      }
+    } );
+    return job;
+  }
+
+  /**
+   * @return the job, or {@code null} when it is unknown or has been evicted by newer ones
+   */
+  public Job getJob( final String id ) {
+    return jobs.get( id );
+  }
+
+  public static class Job {
+
+    private final String id;
+
+    private final String file;
+
+    private volatile State state = State.QUEUED;
+
+    private volatile Properties manifest;
+
+    private volatile String error;
+
+    Job( final String id, final String file ) {
+      this.id = id;
+      this.file = file;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    /**
+     * @return the name of the archive, which is only complete once the job {@link State#SUCCEEDED}
+     */
+    public String getFile() {
+      return file;
+    }
+
+    public State getState() {
+      return state;
+    }
+
+    /**
+     * @return the manifest of the snapshot once the job {@link State#SUCCEEDED}, {@code null} otherwise
+     */
+    public Properties getManifest() {
+      return manifest;
+    }
+
+    /**
+     * @return why the job {@link State#FAILED}, {@code null} otherwise
+     */
+    public String getError() {
+      return error;
+    }
+  }
+}
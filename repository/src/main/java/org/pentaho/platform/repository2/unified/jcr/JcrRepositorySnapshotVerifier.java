@@ -0,0 +1,182 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.jcr.ImportUUIDBehavior;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.pentaho.platform.repository2.unified.jcr.JcrRepositorySnapshot.CHUNK_ENTRY;
+import static org.pentaho.platform.repository2.unified.jcr.JcrRepositorySnapshot.CHUNK_NODES;
+import static org.pentaho.platform.repository2.unified.jcr.JcrRepositorySnapshot.CHUNK_PATH;
+import static org.pentaho.platform.repository2.unified.jcr.JcrRepositorySnapshot.CHUNK_RECURSIVE;
+import static org.pentaho.platform.repository2.unified.jcr.JcrRepositorySnapshot.KEY_CHUNK;
+import static org.pentaho.platform.repository2.unified.jcr.JcrRepositorySnapshot.KEY_CHUNK_COUNT;
+import static org.pentaho.platform.repository2.unified.jcr.JcrRepositorySnapshot.KEY_REMOVED;
+import static org.pentaho.platform.repository2.unified.jcr.JcrRepositorySnapshot.KEY_REMOVED_COUNT;
+
+/**
+ * Restores {@link JcrRepositorySnapshot} archives into a workspace and checks the result.
+ *
+ * <p>
+ * Archives are applied in the order they were written: a full snapshot followed by any number of incremental ones.
+ * For each archive the removed nodes are deleted first, then the chunks are imported in manifest order. A chunk
+ * holding a single node is only imported when the node is missing; a chunk holding a subtree replaces the subtree.
+ * </p>
+ *
+ * <p>
+ * Meant to be run against a scratch repository (in tests, or before trusting a backup), since the import
+ * replaces whatever is found at the same paths or with the same identifiers.
+ * </p>
+ */
+public class JcrRepositorySnapshotVerifier {
+
+  // ~ Static fields/initializers
+  // ======================================================================================
+
+  private static final Log logger = LogFactory.getLog( JcrRepositorySnapshotVerifier.class );
+
+  // ~ Methods
+  // =========================================================================================================
+
+  /**
+   * Restores the archives into {@code session}, in order, and checks the outcome of the last one. Returns the
+   * problems found, an empty list when the restored workspace matches the last archive.
+   */
+  public List<String> verify( final Session session, final File... archives ) throws RepositoryException,
+    IOException {
+    for ( File archive : archives ) {
+      restore( session, archive );
+    }
+    return archives.length > 0 ? check( session, archives[archives.length - 1] ) : new ArrayList<String>();
+  }
+
+  /**
+   * Applies one archive to {@code session}.
+   */
+  public void restore( final Session session, final File archive ) throws RepositoryException, IOException {
+    logger.debug( String.format( "restoring repository snapshot \"%s\"", archive ) ); //$NON-NLS-1$
+    ZipFile zip = new ZipFile( archive );
+    try {
+      Properties manifest = JcrRepositorySnapshot.readManifest( zip );
+      int removed = Integer.parseInt( manifest.getProperty( KEY_REMOVED_COUNT, "0" ) ); //$NON-NLS-1$
+      for ( int i = 0; i < removed; i++ ) {
+        String path = manifest.getProperty( KEY_REMOVED + i );
+        if ( session.nodeExists( path ) ) {
+          session.getNode( path ).remove();
+        }
+      }
+      session.save();
+      int chunks = Integer.parseInt( manifest.getProperty( KEY_CHUNK_COUNT ) );
+      for ( int i = 0; i < chunks; i++ ) {
+        String key = KEY_CHUNK + i;
+        String path = manifest.getProperty( key + CHUNK_PATH );
+        boolean recursive = Boolean.parseBoolean( manifest.getProperty( key + CHUNK_RECURSIVE ) );
+        ZipEntry entry = zip.getEntry( manifest.getProperty( key + CHUNK_ENTRY ) );
+        if ( entry.getSize() == 0 || ( !recursive && session.nodeExists( path ) ) ) {
+          continue;
+        }
+        // replaced within one save, the parent may require the node
+        if ( session.nodeExists( path ) ) {
+          session.getNode( path ).remove();
+        }
+        InputStream in = new GZIPInputStream( zip.getInputStream( entry ) );
+        try {
+          session.importXML( getParentPath( path ), in, ImportUUIDBehavior.IMPORT_UUID_COLLISION_REPLACE_EXISTING );
+        } finally {
+          IOUtils.closeQuietly( in );
+        }
+        session.save();
+      }
+    } finally {
+      zip.close();
+    }
+  }
+
+  /**
+   * Compares the workspace with the manifest of {@code archive}.
+   */
+  public List<String> check( final Session session, final File archive ) throws RepositoryException, IOException {
+    List<String> problems = new ArrayList<>();
+    session.refresh( false );
+    Properties manifest = JcrRepositorySnapshot.readManifest( archive );
+    int chunks = Integer.parseInt( manifest.getProperty( KEY_CHUNK_COUNT ) );
+    for ( int i = 0; i < chunks; i++ ) {
+      String key = KEY_CHUNK + i;
+      String path = manifest.getProperty( key + CHUNK_PATH );
+      long expected = Long.parseLong( manifest.getProperty( key + CHUNK_NODES ) );
+      if ( expected == 0 ) {
+        continue;
+      }
+      if ( !session.nodeExists( path ) ) {
+        problems.add( String.format( "missing node \"%s\"", path ) ); //$NON-NLS-1$
+        continue;
+      }
+      if ( Boolean.parseBoolean( manifest.getProperty( key + CHUNK_RECURSIVE ) ) ) {
+        JcrRepositorySnapshot.NodeCounter counter = new JcrRepositorySnapshot.NodeCounter();
+        session.getNode( path ).accept( counter );
+        if ( counter.count != expected ) {
+          problems.add( String.format( "subtree \"%s\" has %d nodes, expected %d", path, counter.count, //$NON-NLS-1$
+              expected ) );
+        }
+      }
+    }
+    int removed = Integer.parseInt( manifest.getProperty( KEY_REMOVED_COUNT, "0" ) ); //$NON-NLS-1$
+    for ( int i = 0; i < removed; i++ ) {
+      String path = manifest.getProperty( KEY_REMOVED + i );
+      if ( session.nodeExists( path ) && !isChunk( manifest, chunks, path ) ) {
+        problems.add( String.format( "removed node \"%s\" still exists", path ) ); //$NON-NLS-1$
+      }
+    }
+    return problems;
+  }
+
+  private static boolean isChunk( final Properties manifest, final int chunks, final String path ) {
+    for ( int i = 0; i < chunks; i++ ) {
+      String key = KEY_CHUNK + i;
+      String chunkPath = manifest.getProperty( key + CHUNK_PATH );
+      boolean recursive = Boolean.parseBoolean( manifest.getProperty( key + CHUNK_RECURSIVE ) );
+      if ( path.equals( chunkPath ) || ( recursive && path.startsWith( chunkPath + "/" ) ) ) { //$NON-NLS-1$
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String getParentPath( final String path ) {
+    int index = path.lastIndexOf( '/' );
+    return index > 0 ? path.substring( 0, index ) : "/"; //$NON-NLS-1$
+  }
+
+}
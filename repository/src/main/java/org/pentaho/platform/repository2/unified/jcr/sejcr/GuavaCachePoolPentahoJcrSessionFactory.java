@@ -20,12 +20,8 @@
 
 package org.pentaho.platform.repository2.unified.jcr.sejcr;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.cache.RemovalListener;
-import org.apache.jackrabbit.core.SessionImpl;
 import org.pentaho.platform.api.engine.ISystemConfig;
+import org.pentaho.platform.engine.core.metrics.IStatisticsProvider;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,19 +31,28 @@ import javax.jcr.Credentials;
 import javax.jcr.Repository;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
-import javax.jcr.SimpleCredentials;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Properties;
 
 /**
- * JCR Session Factory which caches Sessions by Credentials per Thread. The size of the cache and TTL of the entries can
- * be configured with repository.spring.properties
+ * JCR Session Factory which pools Sessions by principal. Several sessions can be leased for the same user at once,
+ * and a thread asking again for a principal it already holds gets the same session. The pool is sized from the
+ * <code>maxThreads</code> of the servlet container thread pools; TTL and minimum size of the idle sessions can be
+ * configured with repository.spring.properties:
+ * <ul>
+ *   <li>cache-ttl: seconds an idle session is kept (300)</li>
+ *   <li>cache-size: minimum number of idle sessions kept overall (100)</li>
+ * </ul>
+ * The pool counters are published by the <code>statisticsRegistrar</code> bean of pentahoObjects.spring.xml.
  * <p>
  * Created by nbaker on 6/9/14.
  */
 class GuavaCachePoolPentahoJcrSessionFactory extends NoCachePentahoJcrSessionFactory
-  implements PentahoJcrSessionFactory {
+  implements PentahoJcrSessionFactory, IStatisticsProvider {
 
   static final String USAGE_COUNT = "usage_count"; // attribute key for tracking session usages
 
@@ -58,6 +63,13 @@ class GuavaCachePoolPentahoJcrSessionFactory extends NoCachePentahoJcrSessionFac
   private Logger logger = LoggerFactory.getLogger( getClass() );
   private PentahoTransactionManager transactionManager;
 
+  /**
+   * Sessions from the pool have a "usage_count" attribute set to track if still in use, and a "pool_lease" attribute
+   * used to return them once unused. See
+   * {@link PentahoJcrTemplate#execute(org.springframework.extensions.jcr.JcrCallback,
+   * boolean)}
+   */
+  private final JcrSessionPool sessionPool;
 
   public GuavaCachePoolPentahoJcrSessionFactory( Repository repository, String workspace ) {
     this( repository, workspace, null );
@@ -71,102 +83,65 @@ class GuavaCachePoolPentahoJcrSessionFactory extends NoCachePentahoJcrSessionFac
     ISystemConfig systemConfig = PentahoSystem.get( ISystemConfig.class );
     if ( systemConfig != null && systemConfig.getConfiguration( "repository" ) != null ) {
       try {
-        this.cacheDuration =
-          Integer.parseInt( systemConfig.getConfiguration( "repository" ).getProperties().getProperty(
-            "cache-ttl", "300" ) );
-
-
-        this.cacheSize =
-          Integer.parseInt( systemConfig.getConfiguration( "repository" ).getProperties().getProperty(
-            "cache-size", "100" ) );
+        Properties properties = systemConfig.getConfiguration( "repository" ).getProperties();
+        this.cacheDuration = Integer.parseInt( properties.getProperty( "cache-ttl", "300" ) );
+        this.cacheSize = Integer.parseInt( properties.getProperty( "cache-size", "100" ) );
       } catch ( IOException e ) {
         logger.info( "Could not find repository.cache-duration" );
       }
     }
+
+    // every worker may hold one session; a single principal (e.g. the admin) rarely needs more than a quarter of them
+    final int workerThreads = Math.max( cacheSize, countWorkerThreads() );
+    this.sessionPool = new JcrSessionPool( GuavaCachePoolPentahoJcrSessionFactory.super::getSession,
+      Math.max( 2, workerThreads / 4 ), workerThreads, cacheDuration * 1000L );
   }
 
   /**
-   * Session cache by credentials, partitioned by thread. Two threads obtaining sessions for the same credentials cannot
-   * use the same Session.
-   * <p>
-   * Sessions from the cache will have a "usage_count" attribute set to track if still in use, to verify they can be
-   * safely logged out on eviction. See
-   * {@link PentahoJcrTemplate#execute(org.springframework.extensions.jcr.JcrCallback,
-   * boolean)}
+   * Returns the sum of the <code>maxThreads</code> of the thread pools the servlet container publishes through JMX
+   * (e.g. <code>Catalina:type=ThreadPool,name="http-nio-8080"</code>), or 0 if there are none.
    */
-  private LoadingCache<CacheKey, Session> sessionCache =
-    CacheBuilder.newBuilder()
-      .expireAfterAccess( cacheDuration, TimeUnit.SECONDS )
-      .maximumSize( cacheSize )
-      .removalListener( (RemovalListener<CacheKey, Session>) objectObjectRemovalNotification -> {
-        Session session = objectObjectRemovalNotification.getValue();
-        if ( sessionIsUnused( session ) ) {
-          logger.debug( "Logging out cached session after eviction " + session );
-          session.logout();
-        } else {
-          logger.warn( "Session has expired from cache, but still marked as in use.  May be orphaned.  " + session );
+  static int countWorkerThreads() {
+    int count = 0;
+    try {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      for ( ObjectName name : server.queryNames( new ObjectName( "*:type=ThreadPool,*" ), null ) ) {
+        final Object maxThreads = server.getAttribute( name, "maxThreads" );
+        if ( maxThreads instanceof Number ) {
+          count += ( (Number) maxThreads ).intValue();
         }
-      } ).recordStats()
-      .build( new CacheLoader<CacheKey, Session>() {
-        @Override public Session load( CacheKey credKey ) throws Exception {
-          Session session = GuavaCachePoolPentahoJcrSessionFactory.super.getSession( credKey.creds );
-          if ( session instanceof SessionImpl ) {
-            ( (SessionImpl) session ).setAttribute( USAGE_COUNT, new AtomicInteger( 0 ) );
-          } else {
-            logger.warn( "Expected a Jackrabbit SessionImpl.  Will not be tracking usage." );
-          }
-          return session;
-        }
-      } );
-
-  private boolean sessionIsUnused( Session session ) {
-    return session.getAttribute( USAGE_COUNT ) instanceof AtomicInteger
-      && ( (AtomicInteger) session.getAttribute( USAGE_COUNT ) ).get() == 0;
+      }
+    } catch ( Exception e ) {
+      LoggerFactory.getLogger( GuavaCachePoolPentahoJcrSessionFactory.class )
+        .debug( "Could not read the worker thread count of the servlet container", e );
+    }
+    return count;
   }
 
   @Override public Session getSession( Credentials creds ) throws RepositoryException {
-
-
-    // Aquire from cache
     Session session;
 
     if ( transactionManager == null || !transactionManager.isCreatingTransaction() ) {
       if ( logger.isDebugEnabled() ) {
-        logger.debug( "Thread is not transacted, checking cache for session: " + creds );
+        logger.debug( "Thread is not transacted, leasing session from pool: " + creds );
       }
       try {
-        CacheKey key = new CacheKey( creds );
-        // find or create
-        session = sessionCache.get( key );
-        if ( !session.isLive() ) {
-          if ( logger.isDebugEnabled() ) {
-            logger.debug( "Cached session is not longer alive. disposing: " + creds );
-          }
-          sessionCache.invalidate( key );
-          session = sessionCache.get( key );
-        }
-
+        session = sessionPool.borrow( creds );
         if ( SessionFactoryUtils.isSessionThreadBound( session, credentialsStrategySessionFactory ) ) {
           if ( logger.isDebugEnabled() ) {
             logger.debug(
               "Session is bound to a transaction. This should never happen, ignoring this session and creating a new "
-                +
-                "session: "
-                + creds );
+                + "session: " + creds );
           }
-          sessionCache.invalidate( key );
-          session = sessionCache.get( key );
+          session = super.getSession( creds );
         }
-
-        session.refresh( false );
-
       } catch ( Exception e ) {
-        logger.error( "Error obtaining session from cache. Creating one directly instead: " + creds, e );
+        logger.error( "Error obtaining session from pool. Creating one directly instead: " + creds, e );
         session = super.getSession( creds );
       }
     } else {
       if ( logger.isDebugEnabled() ) {
-        logger.debug( "Thread is transacted, obtaining session directly, not cached: " + creds );
+        logger.debug( "Thread is transacted, obtaining session directly, not pooled: " + creds );
       }
       session = super.getSession( creds );
     }
@@ -174,44 +149,18 @@ class GuavaCachePoolPentahoJcrSessionFactory extends NoCachePentahoJcrSessionFac
   }
 
   /**
-   * Used by the sessionCache as a key for Jcr Sessions.
+   * Returns the pool size, lease time, creation rate and orphan counters.
    */
-  private class CacheKey {
-    SimpleCredentials creds;
-    Long threadId;
-
-    private CacheKey( Credentials creds ) {
-      this.creds = (SimpleCredentials) creds;
-      this.threadId = Thread.currentThread().getId();
-    }
-
-    @Override
-    public boolean equals( Object o ) {
-      if ( this == o ) {
-        return true;
-      }
-      if ( o == null || getClass() != o.getClass() ) {
-        return false;
-      }
-
-      CacheKey cacheKey = (CacheKey) o;
-
-      if ( creds != null ? !creds.getUserID().equals( cacheKey.creds.getUserID() ) : cacheKey.creds != null ) {
-        return false;
-      }
-      if ( threadId != null ? !threadId.equals( cacheKey.threadId ) : cacheKey.threadId != null ) {
-        return false;
-      }
-
-      return true;
-    }
+  @Override
+  public Map<String, Number> getStatistics() {
+    return sessionPool.getStatistics();
+  }
 
-    @Override
-    public int hashCode() {
-      int result = creds != null ? creds.getUserID().hashCode() : 0;
-      result = 31 * result + ( threadId != null ? threadId.hashCode() : 0 );
-      return result;
-    }
+  /**
+   * Logs out the idle sessions of the pool.
+   */
+  public void close() {
+    sessionPool.close();
   }
 
 }
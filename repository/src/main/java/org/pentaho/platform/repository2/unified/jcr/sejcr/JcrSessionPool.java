@@ -0,0 +1,387 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.sejcr;
+
+import org.apache.jackrabbit.core.SessionImpl;
+import org.pentaho.platform.engine.core.metrics.IStatisticsProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.Credentials;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.jcr.Workspace;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.ObservationManager;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of JCR Sessions keyed by principal. Several sessions may be leased for the same user at once; a lease is
+ * returned to the pool by {@link PentahoJcrTemplate} once the outermost callback using it completes.
+ * <p>
+ * A thread which already holds a lease for a principal gets the same session back, so nested template calls keep
+ * seeing the transient state of the outer one. Leases which are never returned (the session was obtained outside of
+ * the template) and have not been borrowed again within the idle TTL are reaped and counted as orphans. A lease
+ * still in use by a template is never reaped.
+ * <p>
+ * Every pooled session observes the changes saved by other sessions. A clean session is only refreshed when it is
+ * borrowed again after such a change.
+ */
+public class JcrSessionPool implements IStatisticsProvider {
+
+  /**
+   * Session attribute holding the {@link Lease} of a pooled session.
+   */
+  static final String LEASE = "pool_lease";
+
+  /**
+   * Opens a new session for the given credentials.
+   */
+  interface SessionOpener {
+    Session open( Credentials credentials ) throws RepositoryException;
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger( JcrSessionPool.class );
+
+  private static final int CHANGE_EVENTS = Event.NODE_ADDED | Event.NODE_REMOVED | Event.NODE_MOVED
+    | Event.PROPERTY_ADDED | Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED;
+
+  private final SessionOpener opener;
+  private final int maxIdlePerUser;
+  private final int maxIdle;
+  private final long idleTtlNanos;
+  private final long sweepIntervalNanos;
+
+  private final Map<String, Deque<Lease>> idle = new ConcurrentHashMap<>();
+  private final Set<Lease> leased = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger idleCount = new AtomicInteger();
+  private final ThreadLocal<Map<String, Lease>> threadLeases = ThreadLocal.withInitial( HashMap::new );
+
+  private final long startNanos = System.nanoTime();
+  private final AtomicLong lastSweep = new AtomicLong( System.nanoTime() );
+  private final AtomicLong created = new AtomicLong();
+  private final AtomicLong borrowed = new AtomicLong();
+  private final AtomicLong reused = new AtomicLong();
+  private final AtomicLong refreshed = new AtomicLong();
+  private final AtomicLong refreshSkipped = new AtomicLong();
+  private final AtomicLong orphaned = new AtomicLong();
+  private final AtomicLong expired = new AtomicLong();
+  private final AtomicLong returned = new AtomicLong();
+  private final AtomicLong leaseNanos = new AtomicLong();
+  private final AtomicLong maxLeaseNanos = new AtomicLong();
+
+  /**
+   * @param opener             creates new sessions
+   * @param maxIdlePerUser     idle sessions kept per principal
+   * @param maxIdle            idle sessions kept overall
+   * @param idleTtlMillis      time after which idle sessions are logged out and unreturned leases are reaped
+   */
+  JcrSessionPool( SessionOpener opener, int maxIdlePerUser, int maxIdle, long idleTtlMillis ) {
+    this.opener = opener;
+    this.maxIdlePerUser = Math.max( 1, maxIdlePerUser );
+    this.maxIdle = Math.max( this.maxIdlePerUser, maxIdle );
+    this.idleTtlNanos = TimeUnit.MILLISECONDS.toNanos( idleTtlMillis );
+    this.sweepIntervalNanos = Math.max( TimeUnit.SECONDS.toNanos( 1 ), idleTtlNanos / 10 );
+  }
+
+  /**
+   * Leases a session for the given credentials.
+   */
+  Session borrow( Credentials credentials ) throws RepositoryException {
+    sweepIfDue();
+    borrowed.incrementAndGet();
+    final String user = userOf( credentials );
+
+    // re-entrant use from the thread already holding a lease
+    final Map<String, Lease> bound = threadLeases.get();
+    Lease lease = bound.get( user );
+    if ( lease != null ) {
+      if ( !lease.released && lease.session.isLive() ) {
+        reused.incrementAndGet();
+        lease.touch();
+        return lease.session;
+      }
+      bound.remove( user );
+    }
+
+    lease = pollIdle( user );
+    if ( lease != null ) {
+      reused.incrementAndGet();
+      refreshIfNeeded( lease );
+    } else {
+      final Session session = opener.open( credentials );
+      created.incrementAndGet();
+      if ( !( session instanceof SessionImpl ) ) {
+        logger.warn( "Expected a Jackrabbit SessionImpl.  Will not be pooling or tracking usage." );
+        return session;
+      }
+      lease = new Lease( this, user, session );
+      watchChanges( lease );
+      ( (SessionImpl) session ).setAttribute( GuavaCachePoolPentahoJcrSessionFactory.USAGE_COUNT,
+        new AtomicInteger( 0 ) );
+      ( (SessionImpl) session ).setAttribute( LEASE, lease );
+    }
+    lease.leasedAt = System.nanoTime();
+    lease.lastUsedAt = lease.leasedAt;
+    lease.owner = Thread.currentThread();
+    lease.released = false;
+    lease.orphanReported = false;
+    leased.add( lease );
+    bound.put( user, lease );
+    return lease.session;
+  }
+
+  /**
+   * Returns a leased session to the pool.
+   */
+  void release( Lease lease ) {
+    if ( !leased.remove( lease ) ) {
+      return; // already returned or reaped
+    }
+    lease.released = true;
+    if ( lease.owner == Thread.currentThread() ) {
+      threadLeases.get().remove( lease.user, lease );
+    }
+    lease.owner = null;
+    returned.incrementAndGet();
+    recordLeaseTime( System.nanoTime() - lease.leasedAt );
+
+    final Session session = lease.session;
+    if ( !session.isLive() ) {
+      return;
+    }
+    try {
+      if ( session.hasPendingChanges() ) {
+        // never hand out transient state of a previous lease
+        lease.changed = false;
+        session.refresh( false );
+      }
+    } catch ( RepositoryException e ) {
+      logger.debug( "Could not discard pending changes, logging out session " + session, e );
+      session.logout();
+      return;
+    }
+
+    lease.returnedAt = System.nanoTime();
+    final Deque<Lease> queue = idle.computeIfAbsent( lease.user, k -> new ConcurrentLinkedDeque<>() );
+    if ( queue.size() < maxIdlePerUser ) {
+      if ( idleCount.incrementAndGet() <= maxIdle ) {
+        queue.offerFirst( lease );
+        return;
+      }
+      idleCount.decrementAndGet();
+    }
+    logger.debug( "Pool is full, logging out session " + session );
+    session.logout();
+  }
+
+  /**
+   * Logs out every idle session. Leased sessions are logged out when they are returned.
+   */
+  void close() {
+    for ( Deque<Lease> queue : idle.values() ) {
+      Lease lease;
+      while ( ( lease = queue.pollFirst() ) != null ) {
+        idleCount.decrementAndGet();
+        lease.session.logout();
+      }
+    }
+  }
+
+  /**
+   * Returns the pool size, lease time, creation rate, refresh and orphan counters.
+   */
+  @Override
+  public Map<String, Number> getStatistics() {
+    final Map<String, Number> result = new LinkedHashMap<>();
+    final long returnedCount = returned.get();
+    final double minutes = Math.max( 1d, ( System.nanoTime() - startNanos ) / (double) TimeUnit.MINUTES.toNanos( 1 ) );
+    result.put( "idle", idleCount.get() );
+    result.put( "leased", leased.size() );
+    result.put( "borrowed", borrowed.get() );
+    result.put( "reused", reused.get() );
+    result.put( "created", created.get() );
+    result.put( "createdPerMinute", created.get() / minutes );
+    result.put( "refreshed", refreshed.get() );
+    result.put( "refreshSkipped", refreshSkipped.get() );
+    result.put( "expired", expired.get() );
+    result.put( "orphaned", orphaned.get() );
+    result.put( "averageLeaseMillis", returnedCount == 0 ? 0 : leaseNanos.get() / returnedCount / 1000000 );
+    result.put( "maxLeaseMillis", maxLeaseNanos.get() / 1000000 );
+    return result;
+  }
+
+  private Lease pollIdle( String user ) {
+    final Deque<Lease> queue = idle.get( user );
+    if ( queue == null ) {
+      return null;
+    }
+    Lease lease;
+    while ( ( lease = queue.pollFirst() ) != null ) {
+      idleCount.decrementAndGet();
+      if ( lease.session.isLive() ) {
+        return lease;
+      }
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Pooled session is no longer alive. disposing: " + user );
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Refreshes a session taken from the idle queue if it has pending changes or if another session saved changes since
+   * its last refresh. Sessions whose changes cannot be observed are always refreshed.
+   */
+  private void refreshIfNeeded( Lease lease ) throws RepositoryException {
+    if ( !lease.watched || lease.changed || lease.session.hasPendingChanges() ) {
+      // cleared first, so that a change saved during the refresh triggers the next one
+      lease.changed = false;
+      lease.session.refresh( false );
+      refreshed.incrementAndGet();
+    } else {
+      refreshSkipped.incrementAndGet();
+    }
+  }
+
+  /**
+   * Registers a listener which flags the lease as changed whenever another session saves changes its session can
+   * see.
+   */
+  private static void watchChanges( final Lease lease ) {
+    try {
+      final Workspace workspace = lease.session.getWorkspace();
+      final ObservationManager observationManager = workspace != null ? workspace.getObservationManager() : null;
+      if ( observationManager != null ) {
+        observationManager.addEventListener( events -> lease.changed = true, CHANGE_EVENTS, "/", true, null, null,
+          true );
+        lease.watched = true;
+      }
+    } catch ( RepositoryException e ) {
+      logger.debug( "Cannot observe the changes seen by session " + lease.session + ", it is refreshed on every reuse",
+        e );
+    }
+  }
+
+  private void sweepIfDue() {
+    final long now = System.nanoTime();
+    final long last = lastSweep.get();
+    if ( now - last < sweepIntervalNanos || !lastSweep.compareAndSet( last, now ) ) {
+      return;
+    }
+    for ( Deque<Lease> queue : idle.values() ) {
+      for ( Iterator<Lease> it = queue.descendingIterator(); it.hasNext(); ) {
+        final Lease lease = it.next();
+        if ( now - lease.returnedAt > idleTtlNanos && queue.removeFirstOccurrence( lease ) ) {
+          idleCount.decrementAndGet();
+          expired.incrementAndGet();
+          logger.debug( "Logging out pooled session after expiry " + lease.session );
+          lease.session.logout();
+        }
+      }
+    }
+    for ( Lease lease : leased ) {
+      if ( now - lease.lastUsedAt <= idleTtlNanos ) {
+        continue;
+      }
+      if ( getUsage( lease.session ) == 0 ) {
+        // obtained outside of PentahoJcrTemplate and never returned
+        if ( leased.remove( lease ) ) {
+          lease.released = true;
+          orphaned.incrementAndGet();
+          logger.debug( "Logging out orphaned session " + lease.session );
+          lease.session.logout();
+        }
+      } else if ( !lease.orphanReported ) {
+        lease.orphanReported = true;
+        logger.warn( "Session has been leased for more than " + TimeUnit.NANOSECONDS.toSeconds( idleTtlNanos )
+          + "s and is still in use by " + lease.owner + ": " + lease.session );
+      }
+    }
+  }
+
+  private void recordLeaseTime( long nanos ) {
+    leaseNanos.addAndGet( nanos );
+    long max;
+    do {
+      max = maxLeaseNanos.get();
+    } while ( nanos > max && !maxLeaseNanos.compareAndSet( max, nanos ) );
+  }
+
+  private static int getUsage( Session session ) {
+    final Object usage = session.getAttribute( GuavaCachePoolPentahoJcrSessionFactory.USAGE_COUNT );
+    return usage instanceof AtomicInteger ? ( (AtomicInteger) usage ).get() : 0;
+  }
+
+  private static String userOf( Credentials credentials ) {
+    return credentials instanceof SimpleCredentials ? ( (SimpleCredentials) credentials ).getUserID()
+      : String.valueOf( credentials );
+  }
+
+  /**
+   * A pooled session together with its lease bookkeeping.
+   */
+  static final class Lease {
+    private final JcrSessionPool pool;
+    private final String user;
+    private final Session session;
+    private volatile long leasedAt;
+    private volatile long lastUsedAt;
+    private volatile long returnedAt;
+    private volatile Thread owner;
+    private volatile boolean released;
+    private volatile boolean orphanReported;
+    // whether changes saved by other sessions are observed, and whether one was saved since the last refresh
+    private volatile boolean watched;
+    private volatile boolean changed;
+
+    private Lease( JcrSessionPool pool, String user, Session session ) {
+      this.pool = pool;
+      this.user = user;
+      this.session = session;
+    }
+
+    /**
+     * Records a use of the leased session, so that it is not reaped as unused.
+     */
+    void touch() {
+      lastUsedAt = System.nanoTime();
+    }
+
+    /**
+     * Returns the session to its pool.
+     */
+    void release() {
+      pool.release( this );
+    }
+  }
+}
@@ -93,8 +93,19 @@ public class PentahoJcrTemplate extends JcrTemplate {
     getUsageCount( session ).incrementAndGet();
   }
 
+  /**
+   * Decrements the usage count and returns a pooled session to its pool once the outermost usage completes.
+   */
   private void releaseSession( Session session ) {
-    getUsageCount( session ).decrementAndGet();
+    final int usage = getUsageCount( session ).decrementAndGet();
+    Object lease = session.getAttribute( JcrSessionPool.LEASE );
+    if ( lease instanceof JcrSessionPool.Lease ) {
+      if ( usage == 0 ) {
+        ( (JcrSessionPool.Lease) lease ).release();
+      } else {
+        ( (JcrSessionPool.Lease) lease ).touch();
+      }
+    }
   }
 
   /**
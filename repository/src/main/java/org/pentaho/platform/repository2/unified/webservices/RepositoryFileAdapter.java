@@ -107,6 +107,22 @@ public class RepositoryFileAdapter extends XmlAdapter<RepositoryFileDto, Reposit
     if ( v == null ) {
       return null;
     }
+    if ( includeAcls ) {
+      return buildFileDto( v, memberSet, exclude, true );
+    }
+    try {
+      // unchanged files reuse the DTO built the last time they were listed
+      return RepositoryFileDtoCache.getInstance().get( v, memberSet, exclude,
+        () -> buildFileDto( v, memberSet, exclude, false ) );
+    } catch ( NullPointerException e ) {
+      getLogger().warn( "NullPointerException while reading file attributes, returning null. Probable cause: File "
+        + "does not exist anymore: " );
+      return null;
+    }
+  }
+
+  private static RepositoryFileDto buildFileDto( final RepositoryFile v, Set<String> memberSet, boolean exclude,
+                                                 boolean includeAcls ) {
     RepositoryFileDto f = new RepositoryFileDto();
     // Will try to read the repository file parameters from the repository, in case it returns NPE, means that the file
     // no longer exists, so it returns null
@@ -201,7 +217,9 @@ public class RepositoryFileAdapter extends XmlAdapter<RepositoryFileDto, Reposit
       if ( include( "owner", memberSet, exclude ) ) {
         Serializable id = v.getId();
         if ( id != null ) {
-          RepositoryFileAclDto acl = getRepoWs().getAcl( "" + id );
+          // reuse the ACL read above rather than reading it a second time
+          RepositoryFileAclDto acl =
+            f.getRepositoryFileAclDto() != null ? f.getRepositoryFileAclDto() : getRepoWs().getAcl( "" + id );
           if ( acl != null ) {
             f.setOwner( acl.getOwner() );
           }
@@ -0,0 +1,259 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.webservices;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.apache.commons.lang.math.NumberUtils;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.webservices.LocaleMapDto;
+import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
+import org.pentaho.platform.api.repository2.unified.webservices.StringKeyStringValueDto;
+import org.pentaho.platform.engine.core.metrics.IStatisticsProvider;
+import org.pentaho.platform.engine.core.metrics.RequestMetrics;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the {@link RepositoryFileDto}s built by {@link RepositoryFileAdapter}, so browsing the same folders again does
+ * not rebuild them.
+ *
+ * <p>Entries are keyed by file id, version id, last modification date, path, lock flag and the requested members,
+ * which the file holds already loaded, so that a hit costs much less than building the DTO. An unversioned save, a
+ * rename or move and a lock therefore rebuild the DTO even though the version id did not change. Changes which touch
+ * none of them, such as the versioning settings of the folder, are served stale until the entry expires some time
+ * after it was built. DTOs holding ACLs, and with them the owner, are never cached, the ACLs are not part of the
+ * file.
+ *
+ * <p>Callers get a copy of the cached DTO, which they are free to change. Configured in pentaho.xml:
+ * <pre>
+ *   &lt;repository-dto-cache&gt;
+ *     &lt;max-size&gt;20000&lt;/max-size&gt;
+ *     &lt;expire-after-write-seconds&gt;600&lt;/expire-after-write-seconds&gt;
+ *   &lt;/repository-dto-cache&gt;
+ * </pre>
+ * A size of 0 disables the cache.
+ */
+public class RepositoryFileDtoCache implements IStatisticsProvider {
+
+  static final String MAX_SIZE_SETTING = "repository-dto-cache/max-size"; //$NON-NLS-1$
+
+  static final String EXPIRE_SETTING = "repository-dto-cache/expire-after-write-seconds"; //$NON-NLS-1$
+
+  private static final int DEFAULT_MAX_SIZE = 20000;
+
+  private static final long DEFAULT_EXPIRE_SECONDS = 600;
+
+  private static volatile RepositoryFileDtoCache instance;
+
+  private final Cache<Key, RepositoryFileDto> entries;
+
+  public RepositoryFileDtoCache( int maxSize ) {
+    this( maxSize, DEFAULT_EXPIRE_SECONDS );
+  }
+
+  /**
+   * @param maxSize                 the most DTOs kept, 0 disables the cache
+   * @param expireAfterWriteSeconds how long a DTO is kept after it was built, 0 keeps it until it is evicted
+   */
+  public RepositoryFileDtoCache( int maxSize, long expireAfterWriteSeconds ) {
+    if ( maxSize > 0 ) {
+      final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize( maxSize ).recordStats();
+      if ( expireAfterWriteSeconds > 0 ) {
+        builder.expireAfterWrite( expireAfterWriteSeconds, TimeUnit.SECONDS );
+      }
+      this.entries = builder.build();
+    } else {
+      this.entries = null;
+    }
+  }
+
+  /**
+   * Returns the instance configured through the system settings.
+   */
+  public static RepositoryFileDtoCache getInstance() {
+    RepositoryFileDtoCache cache = instance;
+    if ( cache == null ) {
+      synchronized ( RepositoryFileDtoCache.class ) {
+        cache = instance;
+        if ( cache == null ) {
+          cache = instance = new RepositoryFileDtoCache(
+            NumberUtils.toInt( PentahoSystem.getSystemSetting( MAX_SIZE_SETTING, null ), DEFAULT_MAX_SIZE ),
+            NumberUtils.toLong( PentahoSystem.getSystemSetting( EXPIRE_SETTING, null ), DEFAULT_EXPIRE_SECONDS ) );
+          RequestMetrics.registerStatistics( "repositoryDtoCache", cache ); //$NON-NLS-1$
+        }
+      }
+    }
+    return cache;
+  }
+
+  /**
+   * Returns the DTO of a file, building it with {@code builder} unless an up to date one is cached.
+   *
+   * @param file      the file to convert
+   * @param memberSet the members included, or excluded, by the request; {@code null} for all of them
+   * @param exclude   whether {@code memberSet} lists excluded members
+   * @param builder   builds the DTO; may return {@code null}, which is not cached
+   */
+  public RepositoryFileDto get( RepositoryFile file, Set<String> memberSet, boolean exclude,
+                                Supplier<RepositoryFileDto> builder ) {
+    if ( entries == null || file.getId() == null ) {
+      return builder.get();
+    }
+    final Key key = new Key( file, memberSet, exclude );
+    final RepositoryFileDto cached = entries.getIfPresent( key );
+    if ( cached != null ) {
+      return copy( cached );
+    }
+    final RepositoryFileDto dto = builder.get();
+    if ( dto != null ) {
+      entries.put( key, copy( dto ) );
+    }
+    return dto;
+  }
+
+  /**
+   * Drops every cached DTO.
+   */
+  public void clear() {
+    if ( entries != null ) {
+      entries.invalidateAll();
+    }
+  }
+
+  /**
+   * Returns the cache counters.
+   */
+  @Override
+  public Map<String, Number> getStatistics() {
+    final Map<String, Number> result = new LinkedHashMap<>();
+    if ( entries != null ) {
+      final CacheStats stats = entries.stats();
+      result.put( "size", entries.size() );
+      result.put( "hits", stats.hitCount() );
+      result.put( "misses", stats.missCount() );
+      result.put( "evictions", stats.evictionCount() );
+    }
+    return result;
+  }
+
+  static RepositoryFileDto copy( RepositoryFileDto v ) {
+    final RepositoryFileDto f = new RepositoryFileDto();
+    f.setName( v.getName() );
+    f.setId( v.getId() );
+    f.setPath( v.getPath() );
+    f.setHidden( v.isHidden() );
+    f.setNotSchedulable( v.isNotSchedulable() );
+    f.setAclNode( v.isAclNode() );
+    f.setCreatedDate( v.getCreatedDate() );
+    f.setCreatorId( v.getCreatorId() );
+    f.setFileSize( v.getFileSize() );
+    f.setDescription( v.getDescription() );
+    f.setFolder( v.isFolder() );
+    f.setLastModifiedDate( v.getLastModifiedDate() );
+    f.setLocale( v.getLocale() );
+    f.setOriginalParentFolderPath( v.getOriginalParentFolderPath() );
+    f.setDeletedDate( v.getDeletedDate() );
+    f.setLockDate( v.getLockDate() );
+    f.setLocked( v.isLocked() );
+    f.setLockMessage( v.getLockMessage() );
+    f.setLockOwner( v.getLockOwner() );
+    f.setTitle( v.getTitle() );
+    f.setVersioned( v.isVersioned() );
+    f.setVersionId( v.getVersionId() );
+    f.setOwner( v.getOwner() );
+    f.setOwnerType( v.getOwnerType() );
+    f.setOwnerTenantPath( v.getOwnerTenantPath() );
+    f.setVersioningEnabled( v.getVersioningEnabled() );
+    f.setVersionCommentEnabled( v.getVersionCommentEnabled() );
+    if ( v.getLocalePropertiesMapEntries() != null ) {
+      final List<LocaleMapDto> locales = new ArrayList<>( v.getLocalePropertiesMapEntries().size() );
+      for ( LocaleMapDto locale : v.getLocalePropertiesMapEntries() ) {
+        locales.add( copy( locale ) );
+      }
+      f.setLocalePropertiesMapEntries( locales );
+    }
+    return f;
+  }
+
+  private static LocaleMapDto copy( LocaleMapDto v ) {
+    List<StringKeyStringValueDto> properties = null;
+    if ( v.getProperties() != null ) {
+      properties = new ArrayList<>( v.getProperties().size() );
+      for ( StringKeyStringValueDto property : v.getProperties() ) {
+        properties.add( new StringKeyStringValueDto( property.getKey(), property.getValue() ) );
+      }
+    }
+    return new LocaleMapDto( v.getLocale(), properties );
+  }
+
+  private static final class Key {
+    private final Serializable id;
+    private final Serializable versionId;
+    private final Date lastModified;
+    private final String path;
+    private final boolean locked;
+    private final Set<String> memberSet;
+    private final boolean exclude;
+
+    Key( RepositoryFile file, Set<String> memberSet, boolean exclude ) {
+      this.id = file.getId();
+      this.versionId = file.getVersionId();
+      this.lastModified = file.getLastModifiedDate();
+      this.path = file.getPath();
+      this.locked = file.isLocked();
+      // the caller may change its set afterwards
+      this.memberSet = memberSet != null ? new HashSet<>( memberSet ) : null;
+      this.exclude = exclude;
+    }
+
+    @Override
+    public boolean equals( Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( !( o instanceof Key ) ) {
+        return false;
+      }
+      final Key other = (Key) o;
+      return exclude == other.exclude && locked == other.locked && id.equals( other.id )
+        && Objects.equals( versionId, other.versionId ) && Objects.equals( lastModified, other.lastModified )
+        && Objects.equals( path, other.path ) && Objects.equals( memberSet, other.memberSet );
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash( id, versionId, lastModified, path, locked, memberSet, exclude );
+    }
+  }
+}
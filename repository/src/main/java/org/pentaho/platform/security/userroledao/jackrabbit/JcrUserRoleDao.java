@@ -48,7 +48,9 @@ import javax.jcr.NamespaceException;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class JcrUserRoleDao extends AbstractJcrBackedUserRoleDao {
 
@@ -58,6 +60,10 @@ public class JcrUserRoleDao extends AbstractJcrBackedUserRoleDao {
 
   JcrTemplate adminJcrTemplate;
 
+  private UserRoleNameIndex userNameIndex;
+
+  private UserRoleNameIndex roleNameIndex;
+
   public JcrUserRoleDao( JcrTemplate adminJcrTemplate, ITenantedPrincipleNameResolver userNameUtils,
       ITenantedPrincipleNameResolver roleNameUtils, String authenticatedRoleName, String tenantAdminRoleName,
       String repositoryAdminUsername, IRepositoryFileAclDao repositoryFileAclDao, IRepositoryFileDao repositoryFileDao,
@@ -68,6 +74,17 @@ public class JcrUserRoleDao extends AbstractJcrBackedUserRoleDao {
         repositoryFileAclDao, repositoryFileDao, pathConversionHelper, lockHelper, defaultAclHandler, systemRoles,
         extraRoles, userCache );
     this.adminJcrTemplate = adminJcrTemplate;
+    setNameIndexTtlMillis( TimeUnit.MINUTES.toMillis( 10 ) );
+  }
+
+  /**
+   * Sets how long the user and role name indexes used by the paged listings are trusted before being rebuilt from the
+   * repository. Changes made through this DAO are applied to the indexes immediately; the expiration only matters for
+   * changes made by other cluster nodes.
+   */
+  public void setNameIndexTtlMillis( long nameIndexTtlMillis ) {
+    userNameIndex = new UserRoleNameIndex( nameIndexTtlMillis );
+    roleNameIndex = new UserRoleNameIndex( nameIndexTtlMillis );
   }
 
   @Override
@@ -113,8 +130,9 @@ public class JcrUserRoleDao extends AbstractJcrBackedUserRoleDao {
   @Override
   public IPentahoRole createRole( final ITenant tenant, final String roleName, final String description,
       final String[] memberUserNames ) throws AlreadyExistsException, UncategorizedUserRoleDaoException {
+    final IPentahoRole role;
     try {
-      return (IPentahoRole) adminJcrTemplate.execute( new JcrCallback() {
+      role = (IPentahoRole) adminJcrTemplate.execute( new JcrCallback() {
         @Override
         public Object doInJcr( Session session ) throws IOException, RepositoryException {
           return createRole( session, tenant, roleName, description, memberUserNames );
@@ -128,6 +146,10 @@ public class JcrUserRoleDao extends AbstractJcrBackedUserRoleDao {
       throw new UncategorizedUserRoleDaoException( Messages.getInstance().getString(
           "JcrUserRoleDao.ERROR_0002_CREATING_ROLE", e.getLocalizedMessage() ), e );
     }
+    if ( role != null ) {
+      roleNameIndex.add( getTenantId( role.getTenant() ), role.getName() );
+    }
+    return role;
   }
 
   @Override
@@ -150,6 +172,9 @@ public class JcrUserRoleDao extends AbstractJcrBackedUserRoleDao {
       throw new UncategorizedUserRoleDaoException( Messages.getInstance().getString(
           "JcrUserRoleDao.ERROR_0003_CREATING_USER", e.getLocalizedMessage() ), e );
     }
+    if ( user != null ) {
+      userNameIndex.add( getTenantId( user.getTenant() ), user.getUsername() );
+    }
     return user;
   }
 
@@ -170,6 +195,7 @@ public class JcrUserRoleDao extends AbstractJcrBackedUserRoleDao {
       throw new UncategorizedUserRoleDaoException( Messages.getInstance().getString(
           "JcrUserRoleDao.ERROR_0004_DELETING_ROLE", role.getName(), e.getLocalizedMessage() ), e );
     }
+    roleNameIndex.remove( getTenantId( role.getTenant() ), role.getName() );
   }
 
   @Override
@@ -189,6 +215,7 @@ public class JcrUserRoleDao extends AbstractJcrBackedUserRoleDao {
       throw new UncategorizedUserRoleDaoException( Messages.getInstance().getString(
           "JcrUserRoleDao.ERROR_0005_DELETING_USER", user.getUsername(), e.getLocalizedMessage() ), e );
     }
+    userNameIndex.remove( getTenantId( user.getTenant() ), user.getUsername() );
   }
 
   @Override
@@ -282,6 +309,19 @@ public class JcrUserRoleDao extends AbstractJcrBackedUserRoleDao {
     }
   }
 
+  @Override
+  public List<String> getRoleNames( final ITenant tenant, String prefix, int offset, int limit )
+    throws UncategorizedUserRoleDaoException {
+    final ITenant theTenant = getTenant( tenant );
+    return roleNameIndex.page( theTenant.getId(), () -> {
+      List<String> names = new ArrayList<>();
+      for ( IPentahoRole role : getRoles( theTenant, false ) ) {
+        names.add( role.getName() );
+      }
+      return names;
+    }, prefix, offset, limit );
+  }
+
   @Override
   public List<IPentahoUser> getUsers( ITenant tenant ) throws UncategorizedUserRoleDaoException {
     return getUsers( tenant, false );
@@ -303,6 +343,27 @@ public class JcrUserRoleDao extends AbstractJcrBackedUserRoleDao {
     }
   }
 
+  @Override
+  public List<String> getUserNames( final ITenant tenant, String prefix, int offset, int limit )
+    throws UncategorizedUserRoleDaoException {
+    final ITenant theTenant = getTenant( tenant );
+    return userNameIndex.page( theTenant.getId(), () -> {
+      List<String> names = new ArrayList<>();
+      for ( IPentahoUser user : getUsers( theTenant, false ) ) {
+        names.add( user.getUsername() );
+      }
+      return names;
+    }, prefix, offset, limit );
+  }
+
+  private static ITenant getTenant( ITenant tenant ) {
+    return tenant == null || tenant.getId() == null ? JcrTenantUtils.getTenant() : tenant;
+  }
+
+  private static String getTenantId( ITenant tenant ) {
+    return getTenant( tenant ).getId();
+  }
+
   @Override
   public IPentahoRole getRole( final ITenant tenant, final String name ) throws UncategorizedUserRoleDaoException {
     try {
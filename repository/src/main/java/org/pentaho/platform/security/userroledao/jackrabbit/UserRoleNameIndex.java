@@ -0,0 +1,131 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.security.userroledao.jackrabbit;
+
+import org.pentaho.platform.api.engine.security.userroledao.UserRoleNames;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Sorted in-memory index of user or role names per tenant, used to answer paged prefix searches without iterating
+ * every authorizable of the repository.
+ * <p>
+ * A tenant's names are loaded on first use and kept up to date by {@link #add(String, String)} and
+ * {@link #remove(String, String)}. Changes made by other cluster nodes or bypassing the DAO are picked up when the
+ * index expires.
+ */
+class UserRoleNameIndex {
+
+  private final long ttlNanos;
+
+  private final Map<String, Names> tenants = new ConcurrentHashMap<>();
+
+  UserRoleNameIndex( long ttlMillis ) {
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos( ttlMillis );
+  }
+
+  /**
+   * Returns one page of the names of a tenant starting with <code>prefix</code> (ignoring case).
+   *
+   * @param loader lists every name of the tenant, called when the index of the tenant is missing or expired
+   * @param limit  maximum number of names to return; negative for no limit
+   */
+  List<String> page( String tenantId, Supplier<Collection<String>> loader, String prefix, int offset, int limit ) {
+    if ( limit == 0 ) {
+      return Collections.emptyList();
+    }
+    String from = prefix == null ? "" : UserRoleNames.fold( prefix );
+    Iterator<Map.Entry<String, String>> it = getNames( tenantId, loader ).tailMap( from, true ).entrySet().iterator();
+    List<String> page = new ArrayList<>( limit < 0 ? 16 : Math.min( limit, 1024 ) );
+    int skipped = 0;
+    while ( it.hasNext() && ( limit < 0 || page.size() < limit ) ) {
+      Map.Entry<String, String> entry = it.next();
+      if ( !entry.getKey().startsWith( from ) ) {
+        break;
+      }
+      if ( skipped < offset ) {
+        skipped++;
+      } else {
+        page.add( entry.getValue() );
+      }
+    }
+    return page;
+  }
+
+  void add( String tenantId, String name ) {
+    Names names = tenants.computeIfAbsent( tenantId, k -> new Names() );
+    names.generation.incrementAndGet();
+    if ( names.loaded != null && name != null ) {
+      names.loaded.put( UserRoleNames.indexKey( name ), name );
+    }
+  }
+
+  void remove( String tenantId, String name ) {
+    Names names = tenants.computeIfAbsent( tenantId, k -> new Names() );
+    names.generation.incrementAndGet();
+    if ( names.loaded != null && name != null ) {
+      names.loaded.remove( UserRoleNames.indexKey( name ) );
+    }
+  }
+
+  void invalidateAll() {
+    tenants.clear();
+  }
+
+  private NavigableMap<String, String> getNames( String tenantId, Supplier<Collection<String>> loader ) {
+    Names names = tenants.computeIfAbsent( tenantId, k -> new Names() );
+    ConcurrentSkipListMap<String, String> loaded = names.loaded;
+    if ( loaded != null && System.nanoTime() - names.loadedAt < ttlNanos ) {
+      return loaded;
+    }
+    synchronized ( names ) {
+      if ( names.loaded != null && System.nanoTime() - names.loadedAt < ttlNanos ) {
+        return names.loaded;
+      }
+      long generation = names.generation.get();
+      ConcurrentSkipListMap<String, String> fresh = new ConcurrentSkipListMap<>();
+      for ( String name : loader.get() ) {
+        fresh.put( UserRoleNames.indexKey( name ), name );
+      }
+      names.loaded = fresh;
+      // a change made while loading may be missing from the snapshot: reload on next use
+      names.loadedAt = names.generation.get() == generation ? System.nanoTime() : System.nanoTime() - ttlNanos;
+      return fresh;
+    }
+  }
+
+  private static class Names {
+    private final AtomicLong generation = new AtomicLong();
+    private volatile ConcurrentSkipListMap<String, String> loaded;
+    private volatile long loadedAt;
+  }
+}
@@ -0,0 +1,169 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository.usersettings;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.ISecurityHelper;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.engine.security.SecurityHelper;
+import org.pentaho.platform.repository2.ClientRepositoryPaths;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UserSettingCacheTest {
+  private static final String USER_FOLDER_ID = "userFolderID";
+  private static final String TENANT_FOLDER_ID = "tenantFolderID";
+
+  private IUnifiedRepository repository;
+  private Map<String, Serializable> userMetadata;
+  private UserSettingCache cache;
+  private String tenant;
+
+  @Before
+  public void setUp() throws Exception {
+    repository = mock( IUnifiedRepository.class );
+    userMetadata = new HashMap<String, Serializable>();
+    userMetadata.put( "other", "property" );
+    userMetadata.put( UserSettingService.SETTING_PREFIX + "theme", "ruby" );
+    Map<String, Serializable> globalMetadata = new HashMap<String, Serializable>();
+    globalMetadata.put( UserSettingService.SETTING_PREFIX + "locale", "en" );
+
+    RepositoryFile userFolder = mock( RepositoryFile.class );
+    when( userFolder.getId() ).thenReturn( USER_FOLDER_ID );
+    when( repository.getFile( eq( ClientRepositoryPaths.getUserHomeFolderPath( "joe" ) ) ) ).thenReturn( userFolder );
+    RepositoryFile tenantFolder = mock( RepositoryFile.class );
+    when( tenantFolder.getId() ).thenReturn( TENANT_FOLDER_ID );
+    when( repository.getFile( eq( ClientRepositoryPaths.getEtcFolderPath() ) ) ).thenReturn( tenantFolder );
+    when( repository.getFileMetadata( eq( USER_FOLDER_ID ) ) ).thenReturn( userMetadata );
+    when( repository.getFileMetadata( eq( TENANT_FOLDER_ID ) ) ).thenReturn( globalMetadata );
+
+    ISecurityHelper securityHelper = mock( ISecurityHelper.class );
+    when( securityHelper.runAsSystem( any( Callable.class ) ) ).thenAnswer(
+      invocation -> ( (Callable) invocation.getArguments()[0] ).call() );
+    SecurityHelper.setMockInstance( securityHelper );
+
+    cache = new UserSettingCache( repository, 60000, 60000, 60000 );
+  }
+
+  @After
+  public void tearDown() {
+    cache.shutdown();
+  }
+
+  @Test
+  public void testSettingsAreLoadedOnce() {
+    assertEquals( "ruby", cache.getUserSettings( "joe" ).get( "theme" ) );
+    assertEquals( "ruby", cache.getUserSettings( "joe" ).get( "theme" ) );
+    assertEquals( "en", cache.getGlobalSettings().get( "locale" ) );
+    assertEquals( "en", cache.getGlobalSettings().get( "locale" ) );
+
+    verify( repository, times( 1 ) ).getFileMetadata( USER_FOLDER_ID );
+    verify( repository, times( 1 ) ).getFileMetadata( TENANT_FOLDER_ID );
+  }
+
+  @Test
+  public void testWritesAreCoalesced() {
+    cache.setUserSetting( "joe", "theme", "crystal" );
+    cache.setUserSetting( "joe", "perspective", "browse" );
+
+    // visible right away, but not written yet
+    assertEquals( "crystal", cache.getUserSettings( "joe" ).get( "theme" ) );
+    verify( repository, never() ).setFileMetadata( any(), anyMap() );
+
+    cache.flush( "joe" );
+    verify( repository, times( 1 ) ).setFileMetadata( eq( USER_FOLDER_ID ), anyMap() );
+    assertEquals( "crystal", userMetadata.get( UserSettingService.SETTING_PREFIX + "theme" ) );
+    assertEquals( "browse", userMetadata.get( UserSettingService.SETTING_PREFIX + "perspective" ) );
+    assertEquals( "property", userMetadata.get( "other" ) );
+
+    // nothing left to write
+    cache.flush( "joe" );
+    verify( repository, times( 1 ) ).setFileMetadata( eq( USER_FOLDER_ID ), anyMap() );
+  }
+
+  @Test
+  public void testInvalidateWritesPendingChanges() {
+    cache.setUserSetting( "joe", "theme", "crystal" );
+    cache.invalidateUser( "joe" );
+    verify( repository, times( 1 ) ).setFileMetadata( eq( USER_FOLDER_ID ), anyMap() );
+
+    // reloaded from the repository
+    assertEquals( "crystal", cache.getUserSettings( "joe" ).get( "theme" ) );
+    verify( repository, times( 3 ) ).getFileMetadata( USER_FOLDER_ID );
+  }
+
+  @Test
+  public void testUsersAreKeyedByTenant() {
+    UserSettingCache tenanted = new UserSettingCache( repository, 0, 60000, 60000 ) {
+      @Override
+      protected String getUserKey( String username ) {
+        return tenant + "/" + username;
+      }
+
+      @Override
+      protected String getTenantKey() {
+        return tenant;
+      }
+    };
+    tenant = "a";
+    assertEquals( "ruby", tenanted.getUserSettings( "joe" ).get( "theme" ) );
+    assertEquals( "en", tenanted.getGlobalSettings().get( "locale" ) );
+    tenant = "b";
+    tenanted.getUserSettings( "joe" );
+    tenanted.getGlobalSettings();
+    verify( repository, times( 2 ) ).getFileMetadata( USER_FOLDER_ID );
+    verify( repository, times( 2 ) ).getFileMetadata( TENANT_FOLDER_ID );
+
+    // only the entry of the user of tenant b is dropped
+    tenanted.invalidateUser( "joe" );
+    tenanted.invalidateGlobalSettings();
+    tenant = "a";
+    tenanted.getUserSettings( "joe" );
+    tenanted.getGlobalSettings();
+    verify( repository, times( 2 ) ).getFileMetadata( USER_FOLDER_ID );
+    verify( repository, times( 2 ) ).getFileMetadata( TENANT_FOLDER_ID );
+    tenanted.shutdown();
+  }
+
+  @Test
+  public void testWriteThroughWithoutDelay() {
+    UserSettingCache writeThrough = new UserSettingCache( repository, 0, 60000, 60000 );
+    writeThrough.setUserSetting( "joe", "theme", "crystal" );
+    verify( repository, times( 1 ) ).setFileMetadata( eq( USER_FOLDER_ID ), anyMap() );
+    assertEquals( "crystal", userMetadata.get( UserSettingService.SETTING_PREFIX + "theme" ) );
+  }
+}
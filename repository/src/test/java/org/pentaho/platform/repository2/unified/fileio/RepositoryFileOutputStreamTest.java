@@ -22,6 +22,7 @@ package org.pentaho.platform.repository2.unified.fileio;
 
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.pentaho.platform.api.engine.ISystemSettings;
 import org.pentaho.platform.api.repository2.unified.Converter;
 import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.IStreamListener;
@@ -29,15 +30,27 @@ import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.data.node.NodeRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
@@ -121,4 +134,115 @@ public class RepositoryFileOutputStreamTest {
     verify( streamListener, times( 1 ) ).streamComplete();
     verify( streamListener, times( 0 ) ).fileCreated( any() );
   }
+
+  @Test
+  public void testLargeOutputIsSpilledToDisk() throws IOException {
+    final long contentLength = 1024L * 1024;
+    final File directory = Files.createTempDirectory( "spill" ).toFile();
+    ISystemSettings systemSettings = mock( ISystemSettings.class );
+    when( systemSettings.getSystemSetting( any(), nullable( String.class ) ) ).thenReturn( null );
+    when( systemSettings.getSystemSetting( eq( RepositoryFileOutputStream.SPILL_THRESHOLD_SETTING ),
+      nullable( String.class ) ) ).thenReturn( "64" );
+    when( systemSettings.getSystemSetting( eq( RepositoryFileOutputStream.TEMP_DIRECTORY_SETTING ),
+      nullable( String.class ) ) ).thenReturn( directory.getPath() );
+    PentahoSystem.setSystemSettingsService( systemSettings );
+    try {
+      IUnifiedRepository repository = mock( IUnifiedRepository.class );
+      RepositoryFile folder = mock( RepositoryFile.class );
+      when( folder.getId() ).thenReturn( "folderId" );
+      when( repository.getFile( "/public" ) ).thenReturn( folder );
+
+      final AtomicLong received = new AtomicLong();
+      final CRC32 receivedCrc = new CRC32();
+      doAnswer( invocation -> {
+        // the content is streamed from the backing file, not from a heap copy
+        assertEquals( 1, directory.list().length );
+        SimpleRepositoryFileData data = invocation.getArgument( 2 );
+        InputStream in = data.getInputStream();
+        assertFalse( in instanceof ByteArrayInputStream );
+        byte[] chunk = new byte[ 8192 ];
+        int read;
+        while ( ( read = in.read( chunk ) ) >= 0 ) {
+          receivedCrc.update( chunk, 0, read );
+          received.addAndGet( read );
+        }
+        return invocation.getArgument( 1 );
+      } ).when( repository ).createFile( any(), any(), any(), any() );
+
+      RepositoryFileOutputStream outputStream = new RepositoryFileOutputStream( "/public/report.csv", false, false,
+        repository, false );
+      CRC32 writtenCrc = new CRC32();
+      byte[] chunk = new byte[ 8192 ];
+      for ( long written = 0; written < contentLength; written += chunk.length ) {
+        for ( int i = 0; i < chunk.length; i++ ) {
+          chunk[ i ] = (byte) ( written + i );
+        }
+        writtenCrc.update( chunk );
+        outputStream.write( chunk );
+      }
+      assertEquals( contentLength, outputStream.getBufferedSize() );
+      assertEquals( 1, directory.list().length );
+      outputStream.close();
+
+      assertEquals( contentLength, received.get() );
+      assertEquals( writtenCrc.getValue(), receivedCrc.getValue() );
+      assertEquals( 0, outputStream.size() );
+      assertEquals( 0, directory.list().length );
+    } finally {
+      PentahoSystem.setSystemSettingsService( null );
+      directory.delete();
+    }
+  }
+
+  @Test
+  public void testSpilledContentIsReadBack() throws IOException {
+    File directory = Files.createTempDirectory( "spill" ).toFile();
+    try {
+      SpillingOutputBuffer buffer = new SpillingOutputBuffer( 16, directory );
+      byte[] content = new byte[ 100 ];
+      Arrays.fill( content, (byte) 'x' );
+      buffer.write( content, 0, content.length );
+
+      assertTrue( buffer.isSpilled() );
+      assertEquals( 1, directory.list().length );
+      assertArrayEquals( content, buffer.toByteArray() );
+
+      buffer.reset();
+      assertEquals( 0, directory.list().length );
+    } finally {
+      directory.delete();
+    }
+  }
+
+  @Test
+  public void testClosedBufferFileIsDeleted() throws IOException {
+    File directory = Files.createTempDirectory( "spill" ).toFile();
+    try {
+      SpillingOutputBuffer buffer = new SpillingOutputBuffer( 16, directory );
+      buffer.write( new byte[ 100 ], 0, 100 );
+      assertEquals( 1, directory.list().length );
+
+      buffer.close();
+      assertFalse( buffer.isSpilled() );
+      assertEquals( 0, buffer.size() );
+      assertEquals( 0, directory.list().length );
+
+      // closing twice is harmless
+      buffer.close();
+      assertEquals( 0, directory.list().length );
+    } finally {
+      directory.delete();
+    }
+  }
+
+  @Test
+  public void testStreamIsStillAByteArrayOutputStream() {
+    ByteArrayOutputStream outputStream = new RepositoryFileOutputStream( "/public/report.csv", "UTF-8" );
+    outputStream.write( 'a' );
+    outputStream.writeBytes( "bc".getBytes() );
+
+    assertEquals( 3, outputStream.size() );
+    assertEquals( "abc", outputStream.toString() );
+    assertArrayEquals( "abc".getBytes(), outputStream.toByteArray() );
+  }
 }
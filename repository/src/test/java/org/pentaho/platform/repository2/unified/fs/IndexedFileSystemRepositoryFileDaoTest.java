@@ -0,0 +1,185 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.fs;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IndexedFileSystemRepositoryFileDaoTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path root;
+  private IndexedFileSystemRepositoryFileDao dao;
+
+  @Before
+  public void setUp() throws Exception {
+    root = folder.getRoot().toPath();
+    Files.createDirectories( root.resolve( "public/reports" ) );
+    Files.createDirectories( root.resolve( "public/.metadata" ) );
+    write( root.resolve( "public/reports/sales.xaction" ), "sales" );
+    write( root.resolve( "public/reports/sales.prpt" ), "prpt" );
+    write( root.resolve( "public/readme.txt" ), "readme" );
+    dao = new IndexedFileSystemRepositoryFileDao( folder.getRoot() );
+  }
+
+  @After
+  public void tearDown() {
+    dao.close();
+  }
+
+  @Test
+  public void testGetChildrenWithFilters() {
+    assertEquals( names( "readme.txt", "reports" ),
+      names( dao.getChildren( new RepositoryRequest( "/public", false, 1, "*" ) ) ) );
+    assertEquals( names( ".metadata", "readme.txt", "reports" ),
+      names( dao.getChildren( new RepositoryRequest( "/public", true, 1, "*" ) ) ) );
+    assertEquals( names( "reports" ),
+      names( dao.getChildren( new RepositoryRequest( "/public", false, 1, "*|FOLDERS" ) ) ) );
+    assertEquals( names( "sales.xaction" ),
+      names( dao.getChildren( new RepositoryRequest( "/public/reports", false, 1, "*.xaction|*.url" ) ) ) );
+  }
+
+  @Test
+  public void testGetTree() {
+    RepositoryFileTree tree = dao.getTree( new RepositoryRequest( "/public", false, -1, "*.prpt" ) );
+    assertEquals( "/public", tree.getFile().getPath() );
+    assertEquals( 1, tree.getChildren().size() );
+    RepositoryFileTree reports = tree.getChildren().get( 0 );
+    assertEquals( "/public/reports", reports.getFile().getPath() );
+    assertEquals( names( "sales.prpt" ), names( files( reports.getChildren() ) ) );
+
+    assertNull( dao.getTree( new RepositoryRequest( "/public", false, 0, "*" ) ).getChildren() );
+  }
+
+  @Test
+  public void testIdIsStableAcrossRename() throws Exception {
+    RepositoryFile file = dao.getFile( "/public/reports/sales.xaction" );
+    assertNotNull( file );
+    assertEquals( file, dao.getFileById( file.getId() ) );
+
+    Path renamed = root.resolve( "public/sales-2024.xaction" );
+    Files.move( root.resolve( "public/reports/sales.xaction" ), renamed );
+    RepositoryFile moved = awaitFile( "/public/sales-2024.xaction" );
+    assertEquals( file.getId(), moved.getId() );
+    assertEquals( "/public/sales-2024.xaction", dao.getFileById( file.getId() ).getPath() );
+    assertEquals( "sales",
+      IOUtils.toString( dao.getData( file.getId(), null, SimpleRepositoryFileData.class ).getInputStream(), "UTF-8" ) );
+  }
+
+  @Test
+  public void testChangesThroughDaoAreVisibleImmediately() {
+    RepositoryFile parent = dao.getFile( "/public" );
+    RepositoryFile created = dao.createFile( parent.getId(), new RepositoryFile.Builder( "new.txt" ).build(),
+      new SimpleRepositoryFileData( new ByteArrayInputStream( "abc".getBytes() ), "UTF-8", "text/plain" ), null,
+      null );
+    assertEquals( "/public/new.txt", created.getPath() );
+    assertEquals( 3, created.getFileSize() );
+    assertEquals( created, dao.getFile( "/public/new.txt" ) );
+
+    dao.deleteFile( created.getId(), null );
+    assertNull( dao.getFile( "/public/new.txt" ) );
+    assertTrue( !new File( root.toFile(), "public/new.txt" ).exists() );
+  }
+
+  @Test
+  public void testFileRewrittenThroughDaoIsVisibleImmediately() {
+    RepositoryFile readme = dao.getFile( "/public/readme.txt" );
+    RepositoryFile parent = dao.getFile( "/public" );
+    RepositoryFile rewritten = dao.createFile( parent.getId(), new RepositoryFile.Builder( "readme.txt" ).build(),
+      new SimpleRepositoryFileData( new ByteArrayInputStream( "read me first".getBytes() ), "UTF-8", "text/plain" ),
+      null, null );
+    assertEquals( readme.getId(), rewritten.getId() );
+    assertEquals( 13, rewritten.getFileSize() );
+    assertEquals( 13, dao.getFile( "/public/readme.txt" ).getFileSize() );
+  }
+
+  @Test
+  public void testExternalChangesAreIndexed() throws Exception {
+    Files.createDirectories( root.resolve( "public/added" ) );
+    write( root.resolve( "public/added/report.prpt" ), "prpt" );
+    assertNotNull( awaitFile( "/public/added/report.prpt" ) );
+
+    Files.delete( root.resolve( "public/readme.txt" ) );
+    long deadline = System.currentTimeMillis() + 10000;
+    while ( dao.getFile( "/public/readme.txt" ) != null && System.currentTimeMillis() < deadline ) {
+      Thread.sleep( 50 );
+    }
+    assertNull( dao.getFile( "/public/readme.txt" ) );
+  }
+
+  private RepositoryFile awaitFile( String path ) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    RepositoryFile file = dao.getFile( path );
+    while ( file == null && System.currentTimeMillis() < deadline ) {
+      Thread.sleep( 50 );
+      file = dao.getFile( path );
+    }
+    return file;
+  }
+
+  private static void write( Path path, String content ) throws Exception {
+    Files.write( path, content.getBytes( StandardCharsets.UTF_8 ) );
+  }
+
+  private static List<RepositoryFile> files( List<RepositoryFileTree> trees ) {
+    List<RepositoryFile> files = new ArrayList<>();
+    for ( RepositoryFileTree tree : trees ) {
+      files.add( tree.getFile() );
+    }
+    return files;
+  }
+
+  private static List<String> names( List<RepositoryFile> files ) {
+    List<String> names = new ArrayList<>();
+    for ( RepositoryFile file : files ) {
+      names.add( file.getName() );
+    }
+    return names;
+  }
+
+  private static List<String> names( String... names ) {
+    return Arrays.asList( names );
+  }
+}
@@ -0,0 +1,165 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.mt.ITenantedPrincipleNameResolver;
+import org.pentaho.platform.core.mt.Tenant;
+
+import javax.jcr.AccessDeniedException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.Session;
+import javax.jcr.Workspace;
+import javax.jcr.lock.Lock;
+import javax.jcr.lock.LockException;
+import javax.jcr.lock.LockManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DefaultLockHelperTest {
+
+  private static final String FILE_ID = "abc";
+
+  private Session session;
+  private PentahoJcrConstants pentahoJcrConstants;
+  private DefaultLockHelper lockHelper;
+  private Node fileNode;
+  private Node lockTokensNode;
+  private Lock lock;
+  private LockManager lockManager;
+
+  @Before
+  public void setUp() throws Exception {
+    session = mock( Session.class );
+    when( session.getNamespacePrefix( anyString() ) ).thenReturn( "prefix" );
+    when( session.getUserID() ).thenReturn( "suzy" );
+    pentahoJcrConstants = new PentahoJcrConstants( session );
+
+    ITenantedPrincipleNameResolver userNameUtils = mock( ITenantedPrincipleNameResolver.class );
+    when( userNameUtils.getTenant( anyString() ) ).thenReturn( new Tenant( "/pentaho/acme", true ) );
+    when( userNameUtils.getPrincipleName( anyString() ) ).thenReturn( "suzy" );
+    lockHelper = new DefaultLockHelper( userNameUtils );
+
+    Node homeNode = mock( Node.class );
+    lockTokensNode = mock( Node.class );
+    when( session.getItem( anyString() ) ).thenReturn( homeNode );
+    when( homeNode.hasNode( ".lockTokens" ) ).thenReturn( true );
+    when( homeNode.getNode( ".lockTokens" ) ).thenReturn( lockTokensNode );
+    when( lockTokensNode.getNodes( FILE_ID ) ).thenAnswer( invocation -> tokenNodes( "token-1" ) );
+
+    fileNode = mock( Node.class );
+    when( fileNode.getIdentifier() ).thenReturn( FILE_ID );
+    when( fileNode.getPath() ).thenReturn( "/pentaho/acme/public/report.prpt" );
+    when( fileNode.isLocked() ).thenReturn( true );
+    when( session.getNodeByIdentifier( FILE_ID ) ).thenReturn( fileNode );
+    lock = mock( Lock.class );
+    when( lock.getNode() ).thenReturn( fileNode );
+    when( lock.getLockOwner() ).thenReturn( "suzy:1332272120111:editing" );
+
+    Workspace workspace = mock( Workspace.class );
+    lockManager = mock( LockManager.class );
+    when( session.getWorkspace() ).thenReturn( workspace );
+    when( workspace.getLockManager() ).thenReturn( lockManager );
+    when( lockManager.getLock( fileNode.getPath() ) ).thenReturn( lock );
+  }
+
+  @Test
+  public void testLockTokenIsIndexed() throws Exception {
+    assertEquals( "token-1", lockHelper.getLockToken( session, pentahoJcrConstants, lock ) );
+    assertEquals( "token-1", lockHelper.getLockToken( session, pentahoJcrConstants, lock ) );
+    lockHelper.addLockTokenToSessionIfNecessary( session, pentahoJcrConstants, FILE_ID );
+
+    verify( lockTokensNode, times( 1 ) ).getNodes( FILE_ID );
+    verify( lockManager ).addLockToken( "token-1" );
+  }
+
+  @Test
+  public void testRemovedLockTokenIsReadAgain() throws Exception {
+    lockHelper.getLockToken( session, pentahoJcrConstants, lock );
+    lockHelper.removeLockToken( session, pentahoJcrConstants, lock );
+    lockHelper.getLockToken( session, pentahoJcrConstants, lock );
+
+    verify( lockTokensNode, times( 3 ) ).getNodes( FILE_ID );
+  }
+
+  @Test
+  public void testRejectedIndexedTokenIsReadAgain() throws Exception {
+    lockHelper.getLockToken( session, pentahoJcrConstants, lock );
+    when( lockTokensNode.getNodes( FILE_ID ) ).thenAnswer( invocation -> tokenNodes( "token-2" ) );
+    doThrow( new LockException() ).when( lockManager ).addLockToken( "token-1" );
+
+    lockHelper.addLockTokenToSessionIfNecessary( session, pentahoJcrConstants, FILE_ID );
+
+    verify( lockManager ).addLockToken( "token-2" );
+  }
+
+  @Test
+  public void testIndexedTokenIsNotServedToOtherUsers() throws Exception {
+    lockHelper.getLockToken( session, pentahoJcrConstants, lock );
+    when( session.getUserID() ).thenReturn( "tiffany" );
+    when( session.getItem( anyString() ) ).thenThrow( new AccessDeniedException() );
+
+    try {
+      lockHelper.getLockToken( session, pentahoJcrConstants, lock );
+      fail();
+    } catch ( AccessDeniedException e ) {
+      // the owner's home folder is read again with the other user's session
+    }
+  }
+
+  @Test
+  public void testRemovedLockTokenIsDroppedForAllUsers() throws Exception {
+    lockHelper.getLockToken( session, pentahoJcrConstants, lock );
+    when( session.getUserID() ).thenReturn( "admin" );
+    lockHelper.getLockToken( session, pentahoJcrConstants, lock );
+    lockHelper.removeLockToken( session, pentahoJcrConstants, lock );
+    when( session.getUserID() ).thenReturn( "suzy" );
+    lockHelper.getLockToken( session, pentahoJcrConstants, lock );
+
+    verify( lockTokensNode, times( 4 ) ).getNodes( FILE_ID );
+  }
+
+  @Test
+  public void testLocksNeverExpireByDefault() {
+    assertEquals( Long.MAX_VALUE, lockHelper.getLockTimeoutSeconds() );
+  }
+
+  private static NodeIterator tokenNodes( String token ) throws Exception {
+    Property tokenProperty = mock( Property.class );
+    when( tokenProperty.getString() ).thenReturn( token );
+    Node tokenNode = mock( Node.class );
+    when( tokenNode.getProperty( anyString() ) ).thenReturn( tokenProperty );
+    NodeIterator nodes = mock( NodeIterator.class );
+    when( nodes.hasNext() ).thenReturn( true );
+    when( nodes.nextNode() ).thenReturn( tokenNode );
+    return nodes;
+  }
+}
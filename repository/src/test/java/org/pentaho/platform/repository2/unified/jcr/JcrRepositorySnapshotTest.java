@@ -0,0 +1,284 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.core.TransientRepository;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
+import org.apache.jackrabbit.core.security.principal.EveryonePrincipal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.springframework.dao.DataAccessException;
+import org.springframework.extensions.jcr.JcrCallback;
+import org.springframework.extensions.jcr.JcrTemplate;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.jcr.Credentials;
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.jcr.security.AccessControlList;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.Privilege;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JcrRepositorySnapshotTest {
+
+  private static final String REPO_CONFIG_FILE = "/jackrabbit/repository.xml";
+  private static final Credentials ADMIN_CREDENTIALS = new SimpleCredentials( "admin", "admin".toCharArray() );
+
+  private File workDir;
+  private final List<TransientRepository> repositories = new ArrayList<>();
+  private final List<Session> sessions = new ArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    workDir = Files.createTempDirectory( "repository-snapshot-test" ).toFile();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    for ( Session session : sessions ) {
+      session.logout();
+    }
+    for ( TransientRepository repository : repositories ) {
+      repository.shutdown();
+    }
+    PentahoSessionHolder.removeSession();
+    FileUtils.deleteDirectory( workDir );
+  }
+
+  @Test
+  public void testFullSnapshotRestores() throws Exception {
+    Session source = openRepository( "source" );
+    addFile( source, "/public/reports/a.txt", "a" );
+    addFile( source, "/home/suzy/b.txt", "b" );
+
+    File archive = new File( workDir, "full.zip" );
+    Properties manifest = newSnapshot( source.getRepository(), archive, null ).execute();
+    assertTrue( Integer.parseInt( manifest.getProperty( JcrRepositorySnapshot.KEY_CHUNK_COUNT ) ) > 2 );
+    assertEquals( manifest, JcrRepositorySnapshot.readManifest( archive ) );
+
+    Session target = openRepository( "target" );
+    List<String> problems = new JcrRepositorySnapshotVerifier().verify( target, archive );
+    assertTrue( problems.toString(), problems.isEmpty() );
+    assertEquals( "a", read( target, "/public/reports/a.txt" ) );
+    assertEquals( "b", read( target, "/home/suzy/b.txt" ) );
+    assertFalse( getChunkPaths( manifest ).contains( "/jcr:system" ) );
+  }
+
+  @Test
+  public void testIncrementalSnapshotContainsChangesOnly() throws Exception {
+    Session source = openRepository( "source" );
+    addFile( source, "/public/reports/a.txt", "a" );
+    addFile( source, "/home/suzy/b.txt", "b" );
+    addFile( source, "/home/tiffany/c.txt", "c" );
+    File full = new File( workDir, "full.zip" );
+    newSnapshot( source.getRepository(), full, null ).execute();
+
+    // changes have to be later than the checkpoint
+    Thread.sleep( 50 );
+    addFile( source, "/public/reports/d.txt", "d" );
+    Node content = source.getNode( "/public/reports/a.txt/jcr:content" );
+    content.setProperty( "jcr:data", source.getValueFactory().createBinary( toStream( "a2" ) ) );
+    content.setProperty( "jcr:lastModified", Calendar.getInstance() );
+    source.getNode( "/home/suzy/b.txt" ).remove();
+    source.save();
+
+    File incremental = new File( workDir, "incremental.zip" );
+    Properties manifest = newSnapshot( source.getRepository(), incremental, full ).execute();
+    for ( String path : getChunkPaths( manifest ) ) {
+      assertFalse( path, path.startsWith( "/home/tiffany" ) );
+    }
+
+    Session target = openRepository( "target" );
+    List<String> problems = new JcrRepositorySnapshotVerifier().verify( target, full, incremental );
+    assertTrue( problems.toString(), problems.isEmpty() );
+    assertEquals( "a2", read( target, "/public/reports/a.txt" ) );
+    assertEquals( "c", read( target, "/home/tiffany/c.txt" ) );
+    assertEquals( "d", read( target, "/public/reports/d.txt" ) );
+    if ( Boolean.parseBoolean( manifest.getProperty( JcrRepositorySnapshot.KEY_REMOVALS_TRACKED ) ) ) {
+      assertFalse( target.nodeExists( "/home/suzy/b.txt" ) );
+    }
+  }
+
+  @Test
+  public void testIncrementalSnapshotTracksPropertyAndAclChanges() throws Exception {
+    Session source = openRepository( "source" );
+    addFile( source, "/public/reports/a.txt", "a" );
+    addFile( source, "/home/tiffany/c.txt", "c" );
+    File full = new File( workDir, "full.zip" );
+    newSnapshot( source.getRepository(), full, null ).execute();
+
+    Thread.sleep( 50 );
+    // neither change touches a modification time
+    Node folder = source.getNode( "/home/tiffany" );
+    folder.addMixin( "mix:title" );
+    folder.setProperty( "jcr:title", "Tiffany" );
+    AccessControlManager acm = source.getAccessControlManager();
+    AccessControlList acl =
+        (AccessControlList) acm.getApplicablePolicies( "/public/reports" ).nextAccessControlPolicy();
+    acl.addAccessControlEntry( EveryonePrincipal.getInstance(),
+        new Privilege[] { acm.privilegeFromName( Privilege.JCR_READ ) } );
+    acm.setPolicy( "/public/reports", acl );
+    source.save();
+
+    File incremental = new File( workDir, "incremental.zip" );
+    Properties manifest = newSnapshot( source.getRepository(), incremental, full ).execute();
+    List<String> paths = getChunkPaths( manifest );
+    for ( String path : paths ) {
+      assertFalse( path, path.contains( "rep:policy" ) );
+    }
+    if ( Boolean.parseBoolean( manifest.getProperty( JcrRepositorySnapshot.KEY_ACL_CHANGES_TRACKED ) ) ) {
+      assertTrue( paths.toString(), paths.contains( "/home/tiffany" ) );
+      assertTrue( paths.toString(), paths.contains( "/public/reports" ) );
+    }
+  }
+
+  @Test
+  public void testVerifierReportsMissingNodes() throws Exception {
+    Session source = openRepository( "source" );
+    addFile( source, "/public/reports/a.txt", "a" );
+    File archive = new File( workDir, "full.zip" );
+    newSnapshot( source.getRepository(), archive, null ).execute();
+
+    Session target = openRepository( "target" );
+    JcrRepositorySnapshotVerifier verifier = new JcrRepositorySnapshotVerifier();
+    verifier.restore( target, archive );
+    target.getNode( "/public/reports/a.txt" ).remove();
+    target.save();
+    assertFalse( verifier.check( target, archive ).isEmpty() );
+  }
+
+  private Session openRepository( final String name ) throws Exception {
+    InputStream configStream = JcrRepositorySnapshotTest.class.getResourceAsStream( REPO_CONFIG_FILE );
+    RepositoryConfig config = RepositoryConfig.create( configStream, new File( workDir, name ).getAbsolutePath() );
+    TransientRepository repository = new TransientRepository( config );
+    repositories.add( repository );
+    Session session = repository.login( ADMIN_CREDENTIALS );
+    sessions.add( session );
+    return session;
+  }
+
+  private JcrRepositorySnapshot newSnapshot( final Repository repository, final File archive, final File previous )
+    throws Exception {
+    JcrTemplate jcrTemplate = new JcrTemplate() {
+      @Override
+      public Object execute( JcrCallback callback ) throws DataAccessException {
+        try {
+          Session session = repository.login( ADMIN_CREDENTIALS );
+          try {
+            return callback.doInJcr( session );
+          } finally {
+            session.logout();
+          }
+        } catch ( Exception e ) {
+          // wrapping exception to comply overriding rules
+          throw new RuntimeException( e );
+        }
+      }
+    };
+    JcrRepositorySnapshot snapshot =
+        new JcrRepositorySnapshot( jcrTemplate, new TransactionTemplate( new NoopTransactionManager() ), "admin",
+            archive.getAbsolutePath() );
+    snapshot.setSplitDepth( 2 );
+    snapshot.setThreads( 2 );
+    if ( previous != null ) {
+      snapshot.setPrevious( previous );
+    }
+    return snapshot;
+  }
+
+  private static void addFile( final Session session, final String path, final String data ) throws Exception {
+    Node parent = session.getRootNode();
+    String[] names = path.substring( 1 ).split( "/" );
+    for ( int i = 0; i < names.length - 1; i++ ) {
+      parent = parent.hasNode( names[i] ) ? parent.getNode( names[i] ) : parent.addNode( names[i], "nt:folder" );
+    }
+    Node file = parent.addNode( names[names.length - 1], "nt:file" );
+    Node content = file.addNode( "jcr:content", "nt:resource" );
+    content.setProperty( "jcr:data", session.getValueFactory().createBinary( toStream( data ) ) );
+    content.setProperty( "jcr:lastModified", Calendar.getInstance() );
+    session.save();
+  }
+
+  private static String read( final Session session, final String path ) throws Exception {
+    session.refresh( false );
+    InputStream in = session.getNode( path + "/jcr:content" ).getProperty( "jcr:data" ).getBinary().getStream();
+    try {
+      return IOUtils.toString( in, StandardCharsets.UTF_8 );
+    } finally {
+      in.close();
+    }
+  }
+
+  private static InputStream toStream( final String data ) {
+    return new ByteArrayInputStream( data.getBytes( StandardCharsets.UTF_8 ) );
+  }
+
+  private static List<String> getChunkPaths( final Properties manifest ) {
+    List<String> paths = new ArrayList<>();
+    int chunks = Integer.parseInt( manifest.getProperty( JcrRepositorySnapshot.KEY_CHUNK_COUNT ) );
+    for ( int i = 0; i < chunks; i++ ) {
+      paths.add( manifest.getProperty( JcrRepositorySnapshot.KEY_CHUNK + i + JcrRepositorySnapshot.CHUNK_PATH ) );
+    }
+    return paths;
+  }
+
+  private static class NoopTransactionManager extends AbstractPlatformTransactionManager {
+
+    @Override
+    protected Object doGetTransaction() {
+      return new Object();
+    }
+
+    @Override
+    protected void doBegin( Object transaction, TransactionDefinition definition ) {
+    }
+
+    @Override
+    protected void doCommit( DefaultTransactionStatus status ) {
+    }
+
+    @Override
+    protected void doRollback( DefaultTransactionStatus status ) {
+    }
+  }
+}
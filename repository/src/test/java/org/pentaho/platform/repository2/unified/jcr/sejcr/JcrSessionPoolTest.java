@@ -0,0 +1,243 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.sejcr;
+
+import org.apache.jackrabbit.core.SessionImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.jcr.Credentials;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.jcr.Workspace;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+import javax.jcr.observation.ObservationManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.pentaho.platform.repository2.unified.jcr.sejcr.GuavaCachePoolPentahoJcrSessionFactory.USAGE_COUNT;
+
+public class JcrSessionPoolTest {
+
+  private List<SessionImpl> opened;
+  private Map<Session, EventListener> listeners;
+  private JcrSessionPool pool;
+
+  @Before
+  public void setUp() {
+    opened = new ArrayList<>();
+    listeners = new HashMap<>();
+    pool = new JcrSessionPool( this::open, 2, 10, 60000 );
+  }
+
+  @Test
+  public void testSessionIsReusedAfterRelease() throws Exception {
+    Session first = pool.borrow( creds( "joe" ) );
+    release( first );
+    Session second = pool.borrow( creds( "joe" ) );
+
+    assertSame( first, second );
+    assertEquals( 1, opened.size() );
+    assertEquals( 1L, pool.getStatistics().get( "created" ) );
+    assertEquals( 1L, pool.getStatistics().get( "refreshSkipped" ) );
+    verify( first, never() ).refresh( false );
+  }
+
+  @Test
+  public void testSessionIsRefreshedAfterAChangeIsSaved() throws Exception {
+    Session session = pool.borrow( creds( "joe" ) );
+    release( session );
+    listeners.get( session ).onEvent( mock( EventIterator.class ) );
+
+    assertSame( session, pool.borrow( creds( "joe" ) ) );
+    verify( session ).refresh( false );
+    assertEquals( 1L, pool.getStatistics().get( "refreshed" ) );
+
+    // the change has been picked up, the next reuse needs no refresh
+    release( session );
+    pool.borrow( creds( "joe" ) );
+    verify( session, times( 1 ) ).refresh( false );
+    assertEquals( 1L, pool.getStatistics().get( "refreshSkipped" ) );
+  }
+
+  @Test
+  public void testUnobservedSessionIsAlwaysRefreshed() throws Exception {
+    pool = new JcrSessionPool( credentials -> {
+      Session unobserved = open( credentials );
+      when( unobserved.getWorkspace() ).thenReturn( null );
+      return unobserved;
+    }, 2, 10, 60000 );
+    Session session = pool.borrow( creds( "joe" ) );
+    release( session );
+    pool.borrow( creds( "joe" ) );
+    verify( session ).refresh( false );
+    assertEquals( 0L, pool.getStatistics().get( "refreshSkipped" ) );
+  }
+
+  @Test
+  public void testSameThreadGetsItsLeasedSession() throws Exception {
+    Session first = pool.borrow( creds( "joe" ) );
+    Session nested = pool.borrow( creds( "joe" ) );
+    Session other = pool.borrow( creds( "suzy" ) );
+
+    assertSame( first, nested );
+    assertNotSame( first, other );
+    assertEquals( 2, pool.getStatistics().get( "leased" ) );
+  }
+
+  @Test
+  public void testConcurrentLeasesForSamePrincipal() throws Exception {
+    Session first = pool.borrow( creds( "joe" ) );
+    Session[] second = new Session[ 1 ];
+    Thread thread = new Thread( () -> {
+      try {
+        second[ 0 ] = pool.borrow( creds( "joe" ) );
+        release( second[ 0 ] );
+      } catch ( RepositoryException e ) {
+        throw new RuntimeException( e );
+      }
+    } );
+    thread.start();
+    thread.join();
+
+    assertNotSame( first, second[ 0 ] );
+    release( first );
+    assertEquals( 2, pool.getStatistics().get( "idle" ) );
+  }
+
+  @Test
+  public void testPendingChangesAreDiscardedOnRelease() throws Exception {
+    Session session = pool.borrow( creds( "joe" ) );
+    when( session.hasPendingChanges() ).thenReturn( true );
+    release( session );
+    verify( session ).refresh( false );
+  }
+
+  @Test
+  public void testIdleSessionsPerUserAreBounded() throws Exception {
+    List<Session> sessions = new ArrayList<>();
+    for ( int i = 0; i < 3; i++ ) {
+      Thread thread = new Thread( () -> {
+        try {
+          sessions.add( pool.borrow( creds( "joe" ) ) );
+        } catch ( RepositoryException e ) {
+          throw new RuntimeException( e );
+        }
+      } );
+      thread.start();
+      thread.join();
+    }
+    for ( Session session : sessions ) {
+      release( session );
+    }
+    assertEquals( 2, pool.getStatistics().get( "idle" ) );
+    verify( sessions.get( 2 ) ).logout();
+  }
+
+  @Test
+  public void testDeadSessionIsReplaced() throws Exception {
+    Session first = pool.borrow( creds( "joe" ) );
+    release( first );
+    when( first.isLive() ).thenReturn( false );
+
+    Session second = pool.borrow( creds( "joe" ) );
+    assertNotSame( first, second );
+    assertEquals( 2, opened.size() );
+  }
+
+  @Test
+  public void testLeaseInUseIsNotReaped() throws Exception {
+    pool = new JcrSessionPool( this::open, 2, 10, 1500 );
+    Session session = pool.borrow( creds( "joe" ) );
+    for ( int i = 0; i < 2; i++ ) {
+      Thread.sleep( 1100 );
+      // each borrow from the owning thread counts as a use
+      assertSame( session, pool.borrow( creds( "joe" ) ) );
+    }
+    assertEquals( 0L, pool.getStatistics().get( "orphaned" ) );
+    verify( session, never() ).logout();
+  }
+
+  @Test
+  public void testUnusedLeaseIsReaped() throws Exception {
+    pool = new JcrSessionPool( this::open, 2, 10, 1000 );
+    Session session = pool.borrow( creds( "joe" ) );
+    Thread.sleep( 1100 );
+    Thread thread = new Thread( () -> {
+      try {
+        pool.borrow( creds( "suzy" ) );
+      } catch ( RepositoryException e ) {
+        throw new RuntimeException( e );
+      }
+    } );
+    thread.start();
+    thread.join();
+    assertEquals( 1L, pool.getStatistics().get( "orphaned" ) );
+    verify( session ).logout();
+  }
+
+  private void release( Session session ) {
+    ( (JcrSessionPool.Lease) session.getAttribute( JcrSessionPool.LEASE ) ).release();
+  }
+
+  private Session open( Credentials credentials ) throws RepositoryException {
+    SessionImpl session = mock( SessionImpl.class );
+    Workspace workspace = mock( Workspace.class );
+    ObservationManager observationManager = mock( ObservationManager.class );
+    when( session.getWorkspace() ).thenReturn( workspace );
+    when( workspace.getObservationManager() ).thenReturn( observationManager );
+    doAnswer( invocation -> listeners.put( session, invocation.getArgument( 0 ) ) ).when( observationManager )
+      .addEventListener( any(), anyInt(), eq( "/" ), anyBoolean(), any(), any(), eq( true ) );
+    Map<String, Object> attributes = new HashMap<>();
+    doAnswer( invocation -> attributes.put( invocation.getArgument( 0 ), invocation.getArgument( 1 ) ) )
+      .when( session ).setAttribute( anyString(), any() );
+    when( session.getAttribute( anyString() ) ).thenAnswer( invocation -> attributes.get( invocation.getArgument( 0 ) ) );
+    when( session.isLive() ).thenReturn( true );
+    attributes.put( USAGE_COUNT, new AtomicInteger( 0 ) );
+    synchronized ( opened ) {
+      opened.add( session );
+    }
+    return session;
+  }
+
+  private static Credentials creds( String user ) {
+    return new SimpleCredentials( user, new char[ 0 ] );
+  }
+}
@@ -0,0 +1,192 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.webservices;
+
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.api.repository2.unified.webservices.LocaleMapDto;
+import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
+import org.pentaho.platform.api.repository2.unified.webservices.StringKeyStringValueDto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RepositoryFileDtoCacheTest {
+
+  private final AtomicInteger builds = new AtomicInteger();
+
+  @Test
+  public void testUnchangedFileIsNotRebuilt() {
+    RepositoryFileDtoCache cache = new RepositoryFileDtoCache( 100 );
+    RepositoryFile file = file( "report.prpt", "Report" );
+
+    RepositoryFileDto first = cache.get( file, null, false, builder( file ) );
+    RepositoryFileDto second = cache.get( file( "report.prpt", "Report" ), null, false, builder( file ) );
+
+    assertEquals( 1, builds.get() );
+    assertNotSame( first, second );
+    assertEquals( "Report", second.getTitle() );
+    assertEquals( 1L, cache.getStatistics().get( "hits" ) );
+  }
+
+  @Test
+  public void testChangedFileIsRebuilt() {
+    RepositoryFileDtoCache cache = new RepositoryFileDtoCache( 100 );
+    cache.get( file( "report.prpt", "Report" ), null, false, builder( file( "report.prpt", "Report" ) ) );
+
+    // an unversioned save keeps the version id
+    RepositoryFile saved = new RepositoryFile.Builder( file( "report.prpt", "Sales" ) )
+      .lastModificationDate( new Date( 2000 ) ).build();
+    RepositoryFileDto dto = cache.get( saved, null, false, builder( saved ) );
+
+    assertEquals( 2, builds.get() );
+    assertEquals( "Sales", dto.getTitle() );
+  }
+
+  @Test
+  public void testMovedOrLockedFileIsRebuilt() {
+    RepositoryFileDtoCache cache = new RepositoryFileDtoCache( 100 );
+    RepositoryFile file = file( "report.prpt", "Report" );
+    cache.get( file, null, false, builder( file ) );
+
+    RepositoryFile moved = new RepositoryFile.Builder( file ).path( "/home/admin/report.prpt" ).build();
+    assertEquals( "/home/admin/report.prpt", cache.get( moved, null, false, builder( moved ) ).getPath() );
+    RepositoryFile locked = new RepositoryFile.Builder( file ).locked( true ).build();
+    assertTrue( cache.get( locked, null, false, builder( locked ) ).isLocked() );
+    assertEquals( 3, builds.get() );
+  }
+
+  @Test
+  public void testEachProjectionIsAnEntry() {
+    RepositoryFileDtoCache cache = new RepositoryFileDtoCache( 100 );
+    RepositoryFile file = file( "report.prpt", "Report" );
+    cache.get( file, Collections.singleton( "name" ), false, builder( file ) );
+    cache.get( file, Collections.singleton( "name" ), false, builder( file ) );
+    assertEquals( 1, builds.get() );
+
+    cache.get( file, null, false, builder( file ) );
+    cache.get( file, Collections.singleton( "name" ), true, builder( file ) );
+    assertEquals( 3, builds.get() );
+  }
+
+  @Test
+  public void testMemberSetIsCopied() {
+    RepositoryFileDtoCache cache = new RepositoryFileDtoCache( 100 );
+    RepositoryFile file = file( "report.prpt", "Report" );
+    Set<String> members = new HashSet<>( Collections.singleton( "name" ) );
+    cache.get( file, members, false, builder( file ) );
+
+    members.add( "title" );
+    cache.get( file, members, false, builder( file ) );
+    cache.get( file, Collections.singleton( "name" ), false, builder( file ) );
+    assertEquals( 2, builds.get() );
+  }
+
+  @Test
+  public void testCallersGetCopies() {
+    RepositoryFileDtoCache cache = new RepositoryFileDtoCache( 100 );
+    RepositoryFile file = file( "report.prpt", "Report" );
+    cache.get( file, null, false, builder( file ) ).setTitle( "changed" );
+
+    assertEquals( "Report", cache.get( file, null, false, builder( file ) ).getTitle() );
+  }
+
+  @Test
+  public void testLocaleMapsAreCopied() {
+    RepositoryFileDtoCache cache = new RepositoryFileDtoCache( 100 );
+    RepositoryFile file = file( "report.prpt", "Report" );
+    Supplier<RepositoryFileDto> builder = () -> {
+      RepositoryFileDto dto = builder( file ).get();
+      List<StringKeyStringValueDto> properties = new ArrayList<>();
+      properties.add( new StringKeyStringValueDto( "title", "Report" ) );
+      dto.setLocalePropertiesMapEntries( new ArrayList<>( Collections.singletonList(
+        new LocaleMapDto( "default", properties ) ) ) );
+      return dto;
+    };
+    RepositoryFileDto first = cache.get( file, null, false, builder );
+    first.getLocalePropertiesMapEntries().get( 0 ).getProperties().get( 0 ).setValue( "changed" );
+    first.getLocalePropertiesMapEntries().get( 0 ).setLocale( "fr" );
+
+    RepositoryFileDto second = cache.get( file, null, false, builder );
+    LocaleMapDto locale = second.getLocalePropertiesMapEntries().get( 0 );
+    assertEquals( "default", locale.getLocale() );
+    assertEquals( "Report", locale.getProperties().get( 0 ).getValue() );
+    second.getLocalePropertiesMapEntries().get( 0 ).getProperties().clear();
+
+    assertEquals( 1, cache.get( file, null, false, builder ).getLocalePropertiesMapEntries().get( 0 )
+      .getProperties().size() );
+    assertEquals( 1, builds.get() );
+  }
+
+  @Test
+  public void testDisabledCache() {
+    RepositoryFileDtoCache cache = new RepositoryFileDtoCache( 0 );
+    RepositoryFile file = file( "report.prpt", "Report" );
+    cache.get( file, null, false, builder( file ) );
+    cache.get( file, null, false, builder( file ) );
+    assertEquals( 2, builds.get() );
+    assertTrue( cache.getStatistics().isEmpty() );
+  }
+
+  @Test
+  public void testNullDtoIsNotCached() {
+    RepositoryFileDtoCache cache = new RepositoryFileDtoCache( 100 );
+    RepositoryFile file = file( "report.prpt", "Report" );
+    assertNull( cache.get( file, null, false, () -> null ) );
+    assertEquals( 0L, cache.getStatistics().get( "size" ) );
+  }
+
+  @Test
+  public void testCompactPreset() {
+    RepositoryRequest request = new RepositoryRequest( "/", false, 1, "*|includeMembers=compact" );
+    assertEquals( RepositoryRequest.COMPACT_MEMBERS, request.getIncludeMemberSet() );
+  }
+
+  private Supplier<RepositoryFileDto> builder( final RepositoryFile file ) {
+    return () -> {
+      builds.incrementAndGet();
+      RepositoryFileDto dto = new RepositoryFileDto();
+      dto.setId( file.getId().toString() );
+      dto.setName( file.getName() );
+      dto.setPath( file.getPath() );
+      dto.setTitle( file.getTitle() );
+      dto.setLocked( file.isLocked() );
+      return dto;
+    };
+  }
+
+  private static RepositoryFile file( String name, String title ) {
+    return new RepositoryFile.Builder( "id-1", name ).path( "/public/" + name ).title( title ).versionId( "1.0" )
+      .lastModificationDate( new Date( 1000 ) ).build();
+  }
+}
@@ -0,0 +1,94 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.security.userroledao.jackrabbit;
+
+import org.junit.Test;
+import org.pentaho.platform.api.engine.security.userroledao.UserRoleNames;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UserRoleNameIndexTest {
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private final Supplier<Collection<String>> loader = () -> {
+    loads.incrementAndGet();
+    return Arrays.asList( "suzy", "admin", "Sam", "pat", "tiffany", "sally" );
+  };
+
+  @Test
+  public void testPrefixSearchIgnoresCaseAndIsSorted() {
+    UserRoleNameIndex index = new UserRoleNameIndex( 60000 );
+    assertEquals( Arrays.asList( "sally", "Sam", "suzy" ), index.page( "t", loader, "S", 0, -1 ) );
+    assertEquals( Arrays.asList( "admin", "pat", "sally", "Sam", "suzy", "tiffany" ),
+      index.page( "t", loader, null, 0, -1 ) );
+    assertTrue( index.page( "t", loader, "x", 0, -1 ).isEmpty() );
+    assertEquals( 1, loads.get() );
+  }
+
+  @Test
+  public void testIndexAgreesWithUnindexedPaging() {
+    // the lower case of U+0130 is two chars long, a locale-based index would sort and match it apart from "i"
+    List<String> names = Arrays.asList( "ivan", "\u0130pek", "Ilse", "\u017Fam", "sally", "_x", "[y" );
+    Supplier<Collection<String>> special = () -> names;
+    UserRoleNameIndex index = new UserRoleNameIndex( 60000 );
+    for ( String prefix : Arrays.asList( null, "i", "\u0130", "I", "s", "S", "_", "[" ) ) {
+      assertEquals( prefix, UserRoleNames.page( names, prefix, 0, -1 ), index.page( "t", special, prefix, 0, -1 ) );
+    }
+    assertEquals( Arrays.asList( "Ilse", "\u0130pek", "ivan" ), index.page( "t", special, "\u0130", 0, -1 ) );
+  }
+
+  @Test
+  public void testPaging() {
+    UserRoleNameIndex index = new UserRoleNameIndex( 60000 );
+    assertEquals( Arrays.asList( "Sam", "suzy" ), index.page( "t", loader, "s", 1, 5 ) );
+    assertEquals( Arrays.asList( "admin", "pat" ), index.page( "t", loader, "", 0, 2 ) );
+    assertTrue( index.page( "t", loader, "", 10, 2 ).isEmpty() );
+    assertTrue( index.page( "t", loader, "", 0, 0 ).isEmpty() );
+  }
+
+  @Test
+  public void testUpdatesAreAppliedWithoutReload() {
+    UserRoleNameIndex index = new UserRoleNameIndex( 60000 );
+    index.page( "t", loader, null, 0, -1 );
+    index.add( "t", "sam2" );
+    index.remove( "t", "suzy" );
+    List<String> names = index.page( "t", loader, "s", 0, -1 );
+    assertEquals( Arrays.asList( "sally", "Sam", "sam2" ), names );
+    assertEquals( 1, loads.get() );
+  }
+
+  @Test
+  public void testTenantsAreSeparateAndIndexExpires() {
+    UserRoleNameIndex index = new UserRoleNameIndex( 0 );
+    index.page( "t1", loader, null, 0, -1 );
+    index.page( "t2", loader, null, 0, -1 );
+    index.page( "t1", loader, null, 0, -1 );
+    assertEquals( 3, loads.get() );
+  }
+}
@@ -0,0 +1,205 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.api.scheduler2;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+/**
+ * The {@link IJobResult} of one execution of a {@link Job}, as kept by the job history.
+ * <p>
+ * The status is the name of the last lifecycle phase of the run (see
+ * {@code org.pentaho.platform.workitem.WorkItemLifecyclePhase}), e.g. {@code IN_PROGRESS} while it runs and
+ * {@code SUCCEEDED} or {@code FAILED} once it completed. A run which has not completed has no completion date.
+ */
+@XmlRootElement
+public class JobRun implements IJobResult, Serializable {
+
+  private static final long serialVersionUID = -2873045542107305313L;
+
+  String id;
+
+  String jobId;
+
+  String jobName;
+
+  String userName;
+
+  String actionClass;
+
+  Map<String, Serializable> jobParams = new HashMap<String, Serializable>();
+
+  Date startDate;
+
+  Date completionDate;
+
+  String status;
+
+  String outputPath;
+
+  String errorSummary;
+
+  String workerNode;
+
+  int retryCount;
+
+  long queueWaitMillis;
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId( String id ) {
+    this.id = id;
+  }
+
+  /**
+   * @return the id of the job this is a run of
+   */
+  public String getJobId() {
+    return jobId;
+  }
+
+  public void setJobId( String jobId ) {
+    this.jobId = jobId;
+  }
+
+  public String getJobName() {
+    return jobName;
+  }
+
+  public void setJobName( String jobName ) {
+    this.jobName = jobName;
+  }
+
+  /**
+   * @return the user the action ran as
+   */
+  public String getUserName() {
+    return userName;
+  }
+
+  public void setUserName( String userName ) {
+    this.userName = userName;
+  }
+
+  public String getActionClass() {
+    return actionClass;
+  }
+
+  public void setActionClass( String actionClass ) {
+    this.actionClass = actionClass;
+  }
+
+  @XmlJavaTypeAdapter( JobParamsAdapter.class )
+  public Map<String, Serializable> getJobParams() {
+    return jobParams;
+  }
+
+  public void setJobParams( Map<String, Serializable> jobParams ) {
+    this.jobParams = jobParams;
+  }
+
+  public Date getStartDate() {
+    return startDate;
+  }
+
+  public void setStartDate( Date startDate ) {
+    this.startDate = startDate;
+  }
+
+  public Date getCompletionDate() {
+    return completionDate;
+  }
+
+  public void setCompletionDate( Date completionDate ) {
+    this.completionDate = completionDate;
+  }
+
+  public String getStatus() {
+    return status;
+  }
+
+  public void setStatus( String status ) {
+    this.status = status;
+  }
+
+  /**
+   * @return the repository path the output of the run was written to, or null if it has none
+   */
+  public String getOutputPath() {
+    return outputPath;
+  }
+
+  public void setOutputPath( String outputPath ) {
+    this.outputPath = outputPath;
+  }
+
+  /**
+   * @return a one line description of why the run failed, or null
+   */
+  public String getErrorSummary() {
+    return errorSummary;
+  }
+
+  public void setErrorSummary( String errorSummary ) {
+    this.errorSummary = errorSummary;
+  }
+
+  /**
+   * @return the host name of the server which executed the run
+   */
+  public String getWorkerNode() {
+    return workerNode;
+  }
+
+  public void setWorkerNode( String workerNode ) {
+    this.workerNode = workerNode;
+  }
+
+  /**
+   * @return how many times the action was retried before this run, 0 for a regular run
+   */
+  public int getRetryCount() {
+    return retryCount;
+  }
+
+  public void setRetryCount( int retryCount ) {
+    this.retryCount = retryCount;
+  }
+
+  /**
+   * @return how long the run waited for an execution slot
+   */
+  public long getQueueWaitMillis() {
+    return queueWaitMillis;
+  }
+
+  public void setQueueWaitMillis( long queueWaitMillis ) {
+    this.queueWaitMillis = queueWaitMillis;
+  }
+
+}
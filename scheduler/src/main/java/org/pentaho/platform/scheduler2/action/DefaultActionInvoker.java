@@ -147,6 +147,7 @@ public class DefaultActionInvoker implements IActionInvoker {
     ActionUtil.removeKeyFromMap( params, ActionUtil.INVOKER_ACTIONCLASS );
     ActionUtil.removeKeyFromMap( params, ActionUtil.INVOKER_ACTIONID );
     ActionUtil.removeKeyFromMap( params, ActionUtil.INVOKER_ACTIONUSER );
+    ActionUtil.removeKeyFromMap( params, ActionUtil.QUARTZ_PRIORITY );
     // build the stream provider
     final IBackgroundExecutionStreamProvider streamProvider = getStreamProvider( params );
     ActionUtil.removeKeyFromMap( params, ActionUtil.INVOKER_STREAMPROVIDER );
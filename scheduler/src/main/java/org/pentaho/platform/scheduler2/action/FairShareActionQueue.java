@@ -0,0 +1,456 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.scheduler2.action;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+import org.pentaho.platform.engine.core.metrics.IStatisticsProvider;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for scheduled actions, applied between the Quartz trigger and the
+ * {@link org.pentaho.platform.api.action.IActionInvoker}.
+ *
+ * <p>At most <code>max-concurrent</code> actions run at once, no user runs more than
+ * <code>max-concurrent-per-user</code> and no action type more than its configured limit. Actions which can not run
+ * yet wait in a queue ordered by priority first and then by start-time fair queuing across users, so that every user
+ * with waiting actions gets a share of the free slots proportional to its weight, whatever the size of the bursts
+ * of the others.
+ *
+ * <p>Waiting keeps the Quartz worker thread busy, so a user never has more than
+ * <code>max-waiting-per-user</code> actions waiting; above that {@link #enqueue} returns <code>null</code> and the
+ * caller is expected to postpone the action.
+ *
+ * <p>Disabled unless configured in pentaho.xml:
+ * <pre>
+ *   &lt;scheduler-execution&gt;
+ *     &lt;enabled&gt;true&lt;/enabled&gt;
+ *     &lt;max-concurrent&gt;8&lt;/max-concurrent&gt;
+ *     &lt;max-concurrent-per-user&gt;4&lt;/max-concurrent-per-user&gt;
+ *     &lt;max-waiting-per-user&gt;2&lt;/max-waiting-per-user&gt;
+ *     &lt;defer-seconds&gt;60&lt;/defer-seconds&gt;
+ *     &lt;user-weights&gt;admin=2&lt;/user-weights&gt;
+ *     &lt;action-limits&gt;org.pentaho.platform.plugin.action.pentahometadata.MetadataQueryComponent=2&lt;/action-limits&gt;
+ *   &lt;/scheduler-execution&gt;
+ * </pre>
+ * A limit of 0 means unlimited, which is also the default of the concurrency limits. The instance is the
+ * <code>fairShareActionQueue</code> bean of pentahoObjects.spring.xml, whose counters are published by the
+ * statistics registrar.
+ */
+public class FairShareActionQueue implements IStatisticsProvider {
+
+  /**
+   * Priority of actions scheduled without one, the same default as Quartz trigger priorities.
+   */
+  public static final int DEFAULT_PRIORITY = 5;
+
+  static final String ENABLED_SETTING = "scheduler-execution/enabled"; //$NON-NLS-1$
+  static final String MAX_CONCURRENT_SETTING = "scheduler-execution/max-concurrent"; //$NON-NLS-1$
+  static final String MAX_CONCURRENT_PER_USER_SETTING = "scheduler-execution/max-concurrent-per-user"; //$NON-NLS-1$
+  static final String MAX_WAITING_PER_USER_SETTING = "scheduler-execution/max-waiting-per-user"; //$NON-NLS-1$
+  static final String DEFER_SECONDS_SETTING = "scheduler-execution/defer-seconds"; //$NON-NLS-1$
+  static final String USER_WEIGHTS_SETTING = "scheduler-execution/user-weights"; //$NON-NLS-1$
+  static final String ACTION_LIMITS_SETTING = "scheduler-execution/action-limits"; //$NON-NLS-1$
+
+  private static final int DEFAULT_MAX_CONCURRENT = 0;
+  private static final int DEFAULT_MAX_CONCURRENT_PER_USER = 0;
+  private static final int DEFAULT_MAX_WAITING_PER_USER = 2;
+  private static final int DEFAULT_DEFER_SECONDS = 60;
+
+  private static volatile FairShareActionQueue instance;
+
+  private final boolean enabled;
+  private final int maxConcurrent;
+  private final int maxConcurrentPerUser;
+  private final int maxWaitingPerUser;
+  private final int deferSeconds;
+  private final Map<String, Double> userWeights;
+  private final Map<String, Integer> actionLimits;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final List<Ticket> waiting = new ArrayList<>();
+  private final Map<String, UserState> users = new HashMap<>();
+  private final Map<String, UserCounters> counters = new HashMap<>();
+  private final Map<String, Integer> runningPerAction = new HashMap<>();
+  private int running;
+  private long admitted;
+  private long deferred;
+  private long sequence;
+  private double virtualTime;
+
+  public FairShareActionQueue( boolean enabled, int maxConcurrent, int maxConcurrentPerUser, int maxWaitingPerUser,
+                               int deferSeconds, Map<String, Double> userWeights, Map<String, Integer> actionLimits ) {
+    this.enabled = enabled;
+    this.maxConcurrent = maxConcurrent;
+    this.maxConcurrentPerUser = maxConcurrentPerUser;
+    this.maxWaitingPerUser = maxWaitingPerUser;
+    this.deferSeconds = deferSeconds;
+    this.userWeights = new HashMap<>( userWeights );
+    this.actionLimits = new HashMap<>( actionLimits );
+  }
+
+  /**
+   * Returns the instance configured through the system settings.
+   */
+  public static FairShareActionQueue getInstance() {
+    FairShareActionQueue queue = instance;
+    if ( queue == null ) {
+      synchronized ( FairShareActionQueue.class ) {
+        queue = instance;
+        if ( queue == null ) {
+          Map<String, Double> weights = new HashMap<>();
+          for ( Map.Entry<String, String> entry : parseMap( PentahoSystem.getSystemSetting( USER_WEIGHTS_SETTING,
+            null ) ).entrySet() ) {
+            weights.put( entry.getKey(), NumberUtils.toDouble( entry.getValue(), 1 ) );
+          }
+          Map<String, Integer> limits = new HashMap<>();
+          for ( Map.Entry<String, String> entry : parseMap( PentahoSystem.getSystemSetting( ACTION_LIMITS_SETTING,
+            null ) ).entrySet() ) {
+            limits.put( entry.getKey(), NumberUtils.toInt( entry.getValue(), 0 ) );
+          }
+          queue = instance = new FairShareActionQueue(
+            "true".equalsIgnoreCase( PentahoSystem.getSystemSetting( ENABLED_SETTING, "false" ) ), //$NON-NLS-1$
+            setting( MAX_CONCURRENT_SETTING, DEFAULT_MAX_CONCURRENT ),
+            setting( MAX_CONCURRENT_PER_USER_SETTING, DEFAULT_MAX_CONCURRENT_PER_USER ),
+            setting( MAX_WAITING_PER_USER_SETTING, DEFAULT_MAX_WAITING_PER_USER ),
+            setting( DEFER_SECONDS_SETTING, DEFAULT_DEFER_SECONDS ), weights, limits );
+        }
+      }
+    }
+    return queue;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return how long an action which could not be queued should be postponed
+   */
+  public int getDeferSeconds() {
+    return deferSeconds;
+  }
+
+  /**
+   * Queues an action for execution.
+   *
+   * @param user       the user the action runs as
+   * @param actionType the action class or id, used for the per action type limits
+   * @param priority   higher priorities are admitted first
+   * @return the ticket to {@link Ticket#awaitAdmission() wait on} and {@link Ticket#release() release}, or
+   * <code>null</code> when the action can not run now and the user already has the maximum of waiting actions
+   */
+  public Ticket enqueue( String user, String actionType, int priority ) {
+    final String userKey = StringUtils.defaultString( user );
+    final String typeKey = StringUtils.defaultString( actionType );
+    lock.lock();
+    try {
+      final UserState state = users.computeIfAbsent( userKey, k -> new UserState() );
+      final UserCounters userCounters = getCounters( userKey );
+      if ( !canRun( state, typeKey ) && maxWaitingPerUser > 0 && state.waiting >= maxWaitingPerUser ) {
+        userCounters.deferred++;
+        deferred++;
+        return null;
+      }
+
+      // Start-time fair queuing: a user's tags advance by 1 / weight per action, idle users restart at the
+      // current virtual time so they can not bank credit
+      final Ticket ticket = new Ticket( userKey, typeKey, priority, sequence++ );
+      ticket.startTag = Math.max( virtualTime, state.lastFinishTag );
+      state.lastFinishTag = ticket.startTag + 1 / getWeight( userKey );
+      state.waiting++;
+      waiting.add( ticket );
+      dispatch();
+      return ticket;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the global counters: <code>running</code>, <code>waiting</code>, <code>users</code> with running or
+   * waiting actions or a pending fair share, and the <code>admitted</code> and <code>deferred</code> totals.
+   */
+  @Override
+  public Map<String, Number> getStatistics() {
+    lock.lock();
+    try {
+      final Map<String, Number> result = new LinkedHashMap<>();
+      result.put( "running", running );
+      result.put( "waiting", waiting.size() );
+      result.put( "users", users.size() );
+      result.put( "admitted", admitted );
+      result.put( "deferred", deferred );
+      return result;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the queue counters of every user who queued an action since startup: <code>admitted</code>,
+   * <code>queueWaitMillis</code>, <code>maxQueueWaitMillis</code>, <code>deferred</code>, <code>running</code> and
+   * <code>waiting</code>.
+   */
+  public Map<String, Map<String, Number>> getUserStatistics() {
+    lock.lock();
+    try {
+      final Map<String, Map<String, Number>> result = new TreeMap<>();
+      for ( Map.Entry<String, UserCounters> entry : counters.entrySet() ) {
+        final UserCounters userCounters = entry.getValue();
+        final UserState state = users.get( entry.getKey() );
+        final Map<String, Number> stats = new LinkedHashMap<>();
+        stats.put( "admitted", userCounters.admitted );
+        stats.put( "queueWaitMillis", TimeUnit.NANOSECONDS.toMillis( userCounters.waitNanos ) );
+        stats.put( "maxQueueWaitMillis", TimeUnit.NANOSECONDS.toMillis( userCounters.maxWaitNanos ) );
+        stats.put( "deferred", userCounters.deferred );
+        stats.put( "running", state == null ? 0 : state.running );
+        stats.put( "waiting", state == null ? 0 : state.waiting );
+        result.put( entry.getKey(), stats );
+      }
+      return result;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean canRun( UserState state, String actionType ) {
+    if ( maxConcurrent > 0 && running >= maxConcurrent ) {
+      return false;
+    }
+    if ( maxConcurrentPerUser > 0 && state.running >= maxConcurrentPerUser ) {
+      return false;
+    }
+    final Integer actionLimit = actionLimits.get( actionType );
+    return actionLimit == null || actionLimit <= 0 || runningPerAction.getOrDefault( actionType, 0 ) < actionLimit;
+  }
+
+  private void admit( Ticket ticket, UserState state ) {
+    ticket.admitted = true;
+    ticket.waitNanos = System.nanoTime() - ticket.enqueuedNanos;
+    running++;
+    admitted++;
+    state.running++;
+    final UserCounters userCounters = getCounters( ticket.user );
+    userCounters.admitted++;
+    userCounters.waitNanos += ticket.waitNanos;
+    userCounters.maxWaitNanos = Math.max( userCounters.maxWaitNanos, ticket.waitNanos );
+    runningPerAction.merge( ticket.actionType, 1, Integer::sum );
+    virtualTime = Math.max( virtualTime, ticket.startTag );
+  }
+
+  /**
+   * Admits waiting tickets as long as there are free slots. Must hold the lock.
+   */
+  private void dispatch() {
+    while ( !waiting.isEmpty() && ( maxConcurrent <= 0 || running < maxConcurrent ) ) {
+      Ticket next = null;
+      for ( Ticket ticket : waiting ) {
+        if ( ( next == null || ticket.compareTo( next ) < 0 )
+          && canRun( users.get( ticket.user ), ticket.actionType ) ) {
+          next = ticket;
+        }
+      }
+      if ( next == null ) {
+        return;
+      }
+      waiting.remove( next );
+      final UserState state = users.get( next.user );
+      state.waiting--;
+      admit( next, state );
+      next.admission.signal();
+    }
+  }
+
+  /**
+   * Forgets the scheduling state of the users without running or waiting actions whose next action would start at the
+   * current virtual time anyway, so that dropping them gives them no extra share. Their counters are kept. Must hold
+   * the lock.
+   */
+  private void pruneUsers() {
+    users.values().removeIf( state -> state.running == 0 && state.waiting == 0 && state.lastFinishTag <= virtualTime );
+  }
+
+  /**
+   * Must hold the lock.
+   */
+  private UserCounters getCounters( String user ) {
+    return counters.computeIfAbsent( user, k -> new UserCounters() );
+  }
+
+  private double getWeight( String user ) {
+    final Double weight = userWeights.get( user );
+    return weight == null || weight <= 0 ? 1 : weight;
+  }
+
+  private static int setting( String path, int defaultValue ) {
+    return NumberUtils.toInt( PentahoSystem.getSystemSetting( path, null ), defaultValue );
+  }
+
+  /**
+   * Parses <code>key=value</code> pairs separated by commas.
+   */
+  static Map<String, String> parseMap( String value ) {
+    if ( StringUtils.isBlank( value ) ) {
+      return Collections.emptyMap();
+    }
+    final Map<String, String> result = new HashMap<>();
+    for ( String pair : value.split( "," ) ) { //$NON-NLS-1$
+      final int index = pair.indexOf( '=' );
+      if ( index > 0 ) {
+        result.put( pair.substring( 0, index ).trim(), pair.substring( index + 1 ).trim() );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * A queued action. Admission must always be followed by a {@link #release()}.
+   */
+  public class Ticket implements Comparable<Ticket> {
+    private final String user;
+    private final String actionType;
+    private final int priority;
+    private final long seq;
+    private final long enqueuedNanos = System.nanoTime();
+    private final Condition admission = lock.newCondition();
+    private double startTag;
+    private boolean admitted;
+    private boolean released;
+    private long waitNanos;
+
+    Ticket( String user, String actionType, int priority, long seq ) {
+      this.user = user;
+      this.actionType = actionType;
+      this.priority = priority;
+      this.seq = seq;
+    }
+
+    /**
+     * Blocks until the action may run. When interrupted the ticket leaves the queue.
+     *
+     * @return the time spent in the queue in milliseconds
+     */
+    public long awaitAdmission() throws InterruptedException {
+      lock.lock();
+      try {
+        while ( !admitted ) {
+          try {
+            admission.await();
+          } catch ( InterruptedException e ) {
+            if ( !admitted ) {
+              leave();
+              throw e;
+            }
+            Thread.currentThread().interrupt();
+          }
+        }
+        return TimeUnit.NANOSECONDS.toMillis( waitNanos );
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Frees the slot taken by this action, or takes it out of the queue when it was not admitted yet, and admits the
+     * next waiting ones.
+     */
+    public void release() {
+      lock.lock();
+      try {
+        if ( released ) {
+          return;
+        }
+        if ( !admitted ) {
+          leave();
+          return;
+        }
+        released = true;
+        running--;
+        final UserState state = users.get( user );
+        state.running--;
+        runningPerAction.computeIfPresent( actionType, ( k, v ) -> v > 1 ? v - 1 : null );
+        dispatch();
+        pruneUsers();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Takes a ticket which was not admitted out of the queue. Must hold the lock.
+     */
+    private void leave() {
+      released = true;
+      if ( waiting.remove( this ) ) {
+        users.get( user ).waiting--;
+      }
+      dispatch();
+      pruneUsers();
+    }
+
+    public int getPriority() {
+      return priority;
+    }
+
+    boolean isAdmitted() {
+      lock.lock();
+      try {
+        return admitted;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public int compareTo( Ticket other ) {
+      if ( priority != other.priority ) {
+        return priority > other.priority ? -1 : 1;
+      }
+      final int byTag = Double.compare( startTag, other.startTag );
+      return byTag != 0 ? byTag : Long.compare( seq, other.seq );
+    }
+  }
+
+  private static class UserState {
+    private int running;
+    private int waiting;
+    private double lastFinishTag;
+  }
+
+  private static class UserCounters {
+    private long admitted;
+    private long deferred;
+    private long waitNanos;
+    private long maxWaitNanos;
+  }
+}
@@ -0,0 +1,188 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.scheduler2.blockout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.pentaho.platform.api.scheduler2.IJobTrigger;
+import org.pentaho.platform.api.scheduler2.IScheduler;
+import org.pentaho.platform.scheduler2.blockout.BlockoutManagerUtil.TIME;
+
+/**
+ * Immutable index of the windows during which a set of block outs are active.
+ *
+ * <p>The windows <code>[fireTime, fireTime + duration]</code> of every block out are materialized once over a rolling
+ * horizon starting at build time and kept sorted by start, together with the running maximum of their ends. Whether
+ * an instant is blocked then takes a single binary search instead of a walk over the fire times of every block out.
+ * Instants outside of the materialized horizon are evaluated against the block out triggers directly.
+ */
+public class BlockoutIntervalIndex {
+
+  static final long DEFAULT_HORIZON = 4 * TIME.YEAR.time;
+  static final int DEFAULT_MAX_WINDOWS = 20000;
+
+  private static final long[] EMPTY = new long[0];
+
+  private final List<IJobTrigger> blockOutTriggers;
+  private final IScheduler scheduler;
+  private final long horizonStart;
+  private final long horizonEnd;
+  private final long[] starts;
+  private final long[] maxEnds;
+
+  private BlockoutIntervalIndex( List<IJobTrigger> blockOutTriggers, IScheduler scheduler, long horizonStart,
+      long horizonEnd, long[] starts, long[] maxEnds ) {
+    this.blockOutTriggers = blockOutTriggers;
+    this.scheduler = scheduler;
+    this.horizonStart = horizonStart;
+    this.horizonEnd = horizonEnd;
+    this.starts = starts;
+    this.maxEnds = maxEnds;
+  }
+
+  /**
+   * Builds the index with the same four years horizon as {@link BlockoutManagerUtil#getFireTimes}.
+   */
+  public static BlockoutIntervalIndex build( List<IJobTrigger> blockOutTriggers, IScheduler scheduler ) {
+    return build( blockOutTriggers, scheduler, System.currentTimeMillis(), DEFAULT_HORIZON, DEFAULT_MAX_WINDOWS );
+  }
+
+  /**
+   * @param now
+   *          start of the materialized horizon
+   * @param horizon
+   *          length of the materialized horizon in milliseconds
+   * @param maxWindowsPerBlockOut
+   *          bound on the windows materialized per block out; when it is reached the horizon is shortened to the
+   *          last window which could be materialized
+   */
+  static BlockoutIntervalIndex build( List<IJobTrigger> blockOutTriggers, IScheduler scheduler, long now,
+      long horizon, int maxWindowsPerBlockOut ) {
+    List<IJobTrigger> triggers = Collections.unmodifiableList( new ArrayList<IJobTrigger>( blockOutTriggers ) );
+    if ( triggers.isEmpty() ) {
+      return new BlockoutIntervalIndex( triggers, scheduler, now, now, EMPTY, EMPTY );
+    }
+
+    long horizonEnd = now + horizon;
+    List<long[]> windows = new ArrayList<long[]>();
+    for ( IJobTrigger blockOut : triggers ) {
+      long duration = blockOut.getDuration();
+
+      // Start early enough to catch the window which may be active right now
+      List<Date> fireTimes =
+          BlockoutManagerUtil.getFireTimes( blockOut, scheduler, new Date( now - duration - 1 ), new Date( now
+              + horizon ), maxWindowsPerBlockOut );
+
+      for ( Date fireTime : fireTimes ) {
+        long start = fireTime.getTime();
+        long end = start + duration;
+        if ( blockOut.getEndTime() != null ) {
+          end = Math.min( end, blockOut.getEndTime().getTime() );
+        }
+        windows.add( new long[] { start, end } );
+      }
+
+      // Windows past the last fire time were not materialized for this block out
+      if ( fireTimes.size() >= maxWindowsPerBlockOut ) {
+        horizonEnd = Math.min( horizonEnd, fireTimes.get( fireTimes.size() - 1 ).getTime() );
+      }
+    }
+
+    Collections.sort( windows, ( a, b ) -> Long.compare( a[0], b[0] ) );
+
+    long[] starts = new long[windows.size()];
+    long[] maxEnds = new long[windows.size()];
+    long maxEnd = Long.MIN_VALUE;
+    for ( int i = 0; i < starts.length; i++ ) {
+      long[] window = windows.get( i );
+      maxEnd = Math.max( maxEnd, window[1] );
+      starts[i] = window[0];
+      maxEnds[i] = maxEnd;
+    }
+
+    return new BlockoutIntervalIndex( triggers, scheduler, now, horizonEnd, starts, maxEnds );
+  }
+
+  public boolean isEmpty() {
+    return blockOutTriggers.isEmpty();
+  }
+
+  public List<IJobTrigger> getBlockOutTriggers() {
+    return blockOutTriggers;
+  }
+
+  public long getHorizonStart() {
+    return horizonStart;
+  }
+
+  public long getHorizonEnd() {
+    return horizonEnd;
+  }
+
+  /**
+   * @return the number of materialized block out windows
+   */
+  public int size() {
+    return starts.length;
+  }
+
+  /**
+   * @param time
+   *          instant in milliseconds
+   * @return whether any of the block outs is active at that instant, window bounds inclusive
+   */
+  public boolean isBlocked( long time ) {
+    if ( isEmpty() ) {
+      return false;
+    }
+
+    if ( time < horizonStart || time > horizonEnd ) {
+      Date date = new Date( time );
+      for ( IJobTrigger blockOut : blockOutTriggers ) {
+        if ( BlockoutManagerUtil.willBlockDate( blockOut, date, scheduler ) ) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    // Any window which started at or before the instant and has not ended yet blocks it
+    int i = lastStartAtOrBefore( time );
+    return i >= 0 && maxEnds[i] >= time;
+  }
+
+  private int lastStartAtOrBefore( long time ) {
+    int i = Arrays.binarySearch( starts, time );
+    if ( i < 0 ) {
+      return -i - 2;
+    }
+    // Several windows may start at the same instant
+    while ( i + 1 < starts.length && starts[i + 1] == time ) {
+      i++;
+    }
+    return i;
+  }
+
+}
@@ -238,7 +238,7 @@ public class BlockoutManagerUtil {
     return false;
   }
 
-  private static boolean willBlockDate( IJobTrigger blockOutJobTrigger, Date date, IScheduler scheduler ) {
+  static boolean willBlockDate( IJobTrigger blockOutJobTrigger, Date date, IScheduler scheduler ) {
     // S + Rx <= d <= S + Rx + D
 
     // Out of range of block out
@@ -304,12 +304,34 @@ public class BlockoutManagerUtil {
   }
 
   public static List<Date> getFireTimes( IJobTrigger jobTrigger, IScheduler scheduler ) {
-    // Determines the maximum amount of fire times allowed to be calculated
-    int n = 1000;
-
     Date startDate = new Date( System.currentTimeMillis() );
     Date endDate = new Date( startDate.getTime() + 4 * TIME.YEAR.time );
 
+    // Determines the maximum amount of fire times allowed to be calculated
+    List<Date> fireTimes = getFireTimes( jobTrigger, scheduler, startDate, endDate, 1000 );
+
+    // add previous trigger (it might be currently active)
+    IBlockoutManager manager = PentahoSystem.get( IBlockoutManager.class, "IBlockoutManager", null ); //$NON-NLS-1$;
+    if ( manager != null ) {
+      List<Date> dates = new ArrayList<Date>();
+      List<Job> blockouts = manager.getBlockOutJobs();
+      for ( Job blockout : blockouts ) {
+        if ( blockout.getLastRun() != null ) {
+          dates.add( blockout.getLastRun() );
+        }
+      }
+      dates.addAll( fireTimes );
+      return dates;
+    }
+
+    return fireTimes;
+  }
+
+  /**
+   * Computes at most <code>n</code> fire times of a trigger which fall after <code>startDate</code> and not after
+   * <code>endDate</code>, in ascending order.
+   */
+  static List<Date> getFireTimes( IJobTrigger jobTrigger, IScheduler scheduler, Date startDate, Date endDate, int n ) {
     // Quartz Triggers
     if ( scheduler instanceof QuartzScheduler ) {
       try {
@@ -318,17 +340,6 @@ public class BlockoutManagerUtil {
         boolean endDateIsNull = jobTrigger.getEndTime() == null;
         Trigger trigger = QuartzScheduler.createQuartzTrigger( jobTrigger, new QuartzJobKey( "test", "test" ) ); //$NON-NLS-1$ //$NON-NLS-2$
 
-        // add previous trigger (it might be currently active)
-        IBlockoutManager manager = PentahoSystem.get( IBlockoutManager.class, "IBlockoutManager", null ); //$NON-NLS-1$;
-        if ( manager != null ) {
-          List<Job> blockouts = manager.getBlockOutJobs();
-          for ( Job blockout : blockouts ) {
-            if ( blockout.getLastRun() != null ) {
-              dates.add( blockout.getLastRun() );
-            }
-          }
-        }
-          
         for ( int i = 0; i < n; i++ ) {
           Date nextFireTime = trigger.getFireTimeAfter( startDate );
 
@@ -378,6 +389,74 @@ public class BlockoutManagerUtil {
     return false;
   }
 
+  /**
+   * Same as {@link #willFire(IJobTrigger, List, IScheduler)} but evaluated against a prebuilt
+   * {@link BlockoutIntervalIndex}: the schedule fires unless every one of its fire times falls within a block out
+   * window, whichever block out that window belongs to.
+   */
+  public static boolean willFire( IJobTrigger jobTrigger, BlockoutIntervalIndex blockOuts, IScheduler scheduler ) {
+
+    // Short return as to avoid having to calculate fire times
+    if ( blockOuts.isEmpty() ) {
+      return true;
+    }
+
+    List<Date> fireTimes = getScheduleFireTimes( jobTrigger, scheduler );
+    for ( Date fireTime : fireTimes ) {
+      if ( !blockOuts.isBlocked( fireTime.getTime() ) ) {
+        return true;
+      }
+    }
+
+    return fireTimes.isEmpty();
+  }
+
+  /**
+   * Same as {@link #shouldFireNow(List, IScheduler)} but evaluated against a prebuilt {@link BlockoutIntervalIndex}.
+   */
+  public static boolean shouldFireNow( BlockoutIntervalIndex blockOuts ) {
+    return !blockOuts.isBlocked( System.currentTimeMillis() );
+  }
+
+  /**
+   * Same as {@link #isPartiallyBlocked(IJobTrigger, List, IScheduler)} but evaluated against a prebuilt
+   * {@link BlockoutIntervalIndex}. Each fire time of the schedule costs a single O(log n) lookup.
+   */
+  public static boolean isPartiallyBlocked( IJobTrigger scheduleJobTrigger, BlockoutIntervalIndex blockOuts,
+      IScheduler scheduler ) {
+
+    if ( blockOuts.isEmpty() ) {
+      return false;
+    }
+
+    // Simple against simple is solved analytically, without any horizon
+    if ( !isComplexTrigger( scheduleJobTrigger ) ) {
+      for ( IJobTrigger blockOut : blockOuts.getBlockOutTriggers() ) {
+        if ( !isComplexTrigger( blockOut ) && willBlockSchedule( scheduleJobTrigger, blockOut, scheduler ) ) {
+          return true;
+        }
+      }
+    }
+
+    for ( Date fireTime : getScheduleFireTimes( scheduleJobTrigger, scheduler ) ) {
+      if ( blockOuts.isBlocked( fireTime.getTime() ) ) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Fire times of a schedule over the same horizon as {@link #getFireTimes(IJobTrigger, IScheduler)}, without the
+   * last runs of the block outs which that method prepends.
+   */
+  private static List<Date> getScheduleFireTimes( IJobTrigger jobTrigger, IScheduler scheduler ) {
+    Date startDate = new Date( System.currentTimeMillis() );
+    Date endDate = new Date( startDate.getTime() + 4 * TIME.YEAR.time );
+    return getFireTimes( jobTrigger, scheduler, startDate, endDate, 1000 );
+  }
+
   /**
    * @param x1
    *          double
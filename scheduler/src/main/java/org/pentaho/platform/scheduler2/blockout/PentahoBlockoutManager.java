@@ -21,6 +21,8 @@
 package org.pentaho.platform.scheduler2.blockout;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 
 import org.pentaho.platform.api.scheduler2.IBlockoutManager;
@@ -30,9 +32,19 @@ import org.pentaho.platform.api.scheduler2.IScheduler;
 import org.pentaho.platform.api.scheduler2.Job;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.scheduler2.blockout.BlockoutManagerUtil.TIME;
 
 public class PentahoBlockoutManager implements IBlockoutManager {
 
+  /**
+   * The materialized windows only need to be rebuilt when the block outs change; the rolling horizon is moved
+   * forward once a day.
+   */
+  static final long INDEX_REFRESH_INTERVAL = TIME.DAY.time;
+
+  // Shared, managers are created per fired job by BlockingQuartzJob
+  private static volatile CachedIndex cachedIndex;
+
   private IScheduler scheduler;
 
   public PentahoBlockoutManager() {
@@ -74,12 +86,12 @@ public class PentahoBlockoutManager implements IBlockoutManager {
   @Override
   public boolean willFire( IJobTrigger scheduleTrigger ) {
 
-    return BlockoutManagerUtil.willFire( scheduleTrigger, getBlockOutJobTriggers(), this.scheduler );
+    return BlockoutManagerUtil.willFire( scheduleTrigger, getBlockOutIndex(), this.scheduler );
   }
 
   @Override
   public boolean shouldFireNow() {
-    return BlockoutManagerUtil.shouldFireNow( getBlockOutJobTriggers(), this.scheduler );
+    return BlockoutManagerUtil.shouldFireNow( getBlockOutIndex() );
   }
 
   @Override
@@ -99,12 +111,16 @@ public class PentahoBlockoutManager implements IBlockoutManager {
       throw new RuntimeException( e );
     }
 
+    // Materialize the windows of the tested block out once for all schedules
+    BlockoutIntervalIndex testBlockOutIndex =
+        BlockoutIntervalIndex.build( Collections.singletonList( testBlockOutJobTrigger ), this.scheduler );
+
     // Loop over trigger group names
     for ( Job scheduledJob : scheduledJobs ) {
 
       // Add schedule to list if block out conflicts at all
-      if ( BlockoutManagerUtil.willBlockSchedule( scheduledJob.getJobTrigger(),
-              testBlockOutJobTrigger, this.scheduler ) ) {
+      if ( BlockoutManagerUtil.isPartiallyBlocked( scheduledJob.getJobTrigger(), testBlockOutIndex,
+              this.scheduler ) ) {
         blockedSchedules.add( scheduledJob.getJobTrigger() );
       }
     }
@@ -114,17 +130,58 @@ public class PentahoBlockoutManager implements IBlockoutManager {
 
   @Override
   public boolean isPartiallyBlocked( IJobTrigger scheduleJobTrigger ) {
-    return BlockoutManagerUtil.isPartiallyBlocked( scheduleJobTrigger, getBlockOutJobTriggers(), this.scheduler );
+    return BlockoutManagerUtil.isPartiallyBlocked( scheduleJobTrigger, getBlockOutIndex(), this.scheduler );
   }
 
-  private List<IJobTrigger> getBlockOutJobTriggers() {
-    List<IJobTrigger> blockOutJobTriggers = new ArrayList<IJobTrigger>();
+  /**
+   * Returns the windows of the current block outs, rebuilding them only when a block out was added, removed or
+   * changed since the last call or when the horizon is due to move forward.
+   */
+  BlockoutIntervalIndex getBlockOutIndex() {
+    List<Job> blockOutJobs = getBlockOutJobs();
+    String signature = getSignature( blockOutJobs );
+
+    CachedIndex cached = cachedIndex;
+    if ( cached == null || cached.scheduler != this.scheduler || !cached.signature.equals( signature )
+        || System.currentTimeMillis() - cached.index.getHorizonStart() > INDEX_REFRESH_INTERVAL ) {
+      List<IJobTrigger> blockOutJobTriggers = new ArrayList<IJobTrigger>();
+      for ( Job blockOutJob : blockOutJobs ) {
+        blockOutJobTriggers.add( blockOutJob.getJobTrigger() );
+      }
+      cached =
+          new CachedIndex( this.scheduler, signature, BlockoutIntervalIndex.build( blockOutJobTriggers,
+              this.scheduler ) );
+      cachedIndex = cached;
+    }
+    return cached.index;
+  }
 
-    for ( Job blockOutJob : getBlockOutJobs() ) {
-      blockOutJobTriggers.add( blockOutJob.getJobTrigger() );
+  private static String getSignature( List<Job> blockOutJobs ) {
+    List<String> parts = new ArrayList<String>();
+    for ( Job blockOutJob : blockOutJobs ) {
+      IJobTrigger trigger = blockOutJob.getJobTrigger();
+      parts.add( blockOutJob.getJobId() + '|' + trigger.getClass().getName() + '|' + trigger + '|'
+          + trigger.getCronString() + '|' + time( trigger.getStartTime() ) + '|' + time( trigger.getEndTime() ) + '|'
+          + trigger.getDuration() );
     }
+    Collections.sort( parts );
+    return String.join( "\n", parts ); //$NON-NLS-1$
+  }
+
+  private static String time( Date date ) {
+    return date == null ? "" : String.valueOf( date.getTime() ); //$NON-NLS-1$
+  }
 
-    return blockOutJobTriggers;
+  private static class CachedIndex {
+    final IScheduler scheduler;
+    final String signature;
+    final BlockoutIntervalIndex index;
+
+    CachedIndex( IScheduler scheduler, String signature, BlockoutIntervalIndex index ) {
+      this.scheduler = scheduler;
+      this.signature = signature;
+      this.index = index;
+    }
   }
 
 }
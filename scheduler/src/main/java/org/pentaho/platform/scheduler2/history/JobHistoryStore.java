@@ -0,0 +1,624 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.scheduler2.history;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IApplicationContext;
+import org.pentaho.platform.api.scheduler2.JobRun;
+import org.pentaho.platform.engine.core.metrics.IStatisticsProvider;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.util.ActionUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Execution history of scheduled jobs, behind {@link org.pentaho.platform.api.scheduler2.IScheduler#getJobHistory}.
+ *
+ * <p>A run is tracked in memory from its start and written once it completes. Completed runs are appended, one line
+ * each, to a text file per day of completion ({@code job-history-yyyy-MM-dd.log}); files are never rewritten, and
+ * those older than the retention period are deleted as a whole. At startup the files still retained are read back.
+ * Runs are indexed in memory by job, by user and by start time, so that the queries never scan the files; at most
+ * {@link #setMaxRuns(int) maxRuns} completed runs are kept there, the oldest are dropped first.
+ *
+ * <p>Only the job parameters named in {@link #setPersistedParams(List) persistedParams} are recorded, since the
+ * parameters of an action may hold credentials.
+ *
+ * <p>Configured as the <code>jobHistoryStore</code> bean in pentahoObjects.spring.xml, see
+ * {@link #create(boolean, String, int)}.
+ */
+public class JobHistoryStore implements IStatisticsProvider {
+
+  private static final Log log = LogFactory.getLog( JobHistoryStore.class );
+
+  /**
+   * The parameters recorded unless {@link #setPersistedParams(List)} says otherwise.
+   */
+  public static final List<String> DEFAULT_PERSISTED_PARAMS = Collections.unmodifiableList( Arrays.asList(
+    ActionUtil.QUARTZ_STREAMPROVIDER_INPUT_FILE, ActionUtil.QUARTZ_LINEAGE_ID, ActionUtil.QUARTZ_PRIORITY,
+    ActionUtil.QUARTZ_RESTART_FLAG ) );
+
+  private static final int DEFAULT_MAX_RUNS = 100000;
+  private static final String DEFAULT_DIRECTORY = "system/job-history"; //$NON-NLS-1$
+  private static final String PREFIX = "job-history-"; //$NON-NLS-1$
+  private static final String SUFFIX = ".log"; //$NON-NLS-1$
+  private static final String DAY_PATTERN = "yyyy-MM-dd"; //$NON-NLS-1$
+  private static final int FIELD_COUNT = 14;
+
+  private static final Comparator<JobRun> BY_START = new Comparator<JobRun>() {
+    @Override
+    public int compare( JobRun a, JobRun b ) {
+      final int result = Long.compare( a.getStartDate().getTime(), b.getStartDate().getTime() );
+      return result != 0 ? result : a.getId().compareTo( b.getId() );
+    }
+  };
+
+  private static String hostName;
+
+  private final boolean enabled;
+  private final File directory;
+  private final long retentionMillis;
+
+  private final Map<String, JobRun> running = new LinkedHashMap<>();
+  private final NavigableSet<JobRun> byStart = new TreeSet<>( BY_START );
+  private final Map<String, NavigableSet<JobRun>> byJob = new HashMap<>();
+  private final Map<String, NavigableSet<JobRun>> byUser = new HashMap<>();
+  private String lastPurgedDay;
+  private int maxRuns = DEFAULT_MAX_RUNS;
+  private volatile Set<String> persistedParams = new HashSet<>( DEFAULT_PERSISTED_PARAMS );
+  private boolean closed;
+
+  private final AtomicLong started = new AtomicLong();
+  private final AtomicLong completed = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong writeErrors = new AtomicLong();
+
+  static {
+    try {
+      hostName = InetAddress.getLocalHost().getCanonicalHostName();
+    } catch ( UnknownHostException e ) {
+      log.debug( e.getLocalizedMessage() );
+    }
+  }
+
+  /**
+   * @param enabled       When false no run is recorded.
+   * @param directory     The directory of the history files, or null to keep the history in memory only.
+   * @param retentionDays How many days completed runs are kept; 0 or less keeps them forever.
+   */
+  public JobHistoryStore( boolean enabled, File directory, int retentionDays ) {
+    this.enabled = enabled;
+    this.directory = directory;
+    this.retentionMillis = retentionDays > 0 ? TimeUnit.DAYS.toMillis( retentionDays ) : 0;
+    if ( enabled && directory != null ) {
+      load();
+    }
+  }
+
+  /**
+   * Creates the store of the server; a blank directory stands for <code>system/job-history</code> in the solution
+   * folder.
+   */
+  public static JobHistoryStore create( boolean enabled, String directory, int retentionDays ) {
+    File historyDirectory = null;
+    if ( StringUtils.isNotBlank( directory ) ) {
+      historyDirectory = new File( directory );
+    } else {
+      final IApplicationContext context = PentahoSystem.getApplicationContext();
+      historyDirectory = context == null ? null : new File( context.getSolutionPath( DEFAULT_DIRECTORY ) );
+    }
+    return new JobHistoryStore( enabled, historyDirectory, retentionDays );
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * How many completed runs are kept in memory, the oldest are dropped first; 0 or less removes the limit. The
+   * history files are not affected.
+   */
+  public synchronized void setMaxRuns( int maxRuns ) {
+    this.maxRuns = maxRuns;
+    trim();
+  }
+
+  /**
+   * The names of the job parameters recorded with a run; the other parameters are left out.
+   */
+  public void setPersistedParams( List<String> persistedParams ) {
+    this.persistedParams =
+      persistedParams == null ? Collections.<String>emptySet() : new HashSet<>( persistedParams );
+  }
+
+  /**
+   * Records the runs still in progress as failed, since they cannot complete once the server is shut down, and stops
+   * recording.
+   */
+  public void close() {
+    final List<JobRun> interrupted;
+    synchronized ( this ) {
+      if ( closed ) {
+        return;
+      }
+      closed = true;
+      interrupted = new ArrayList<>( running.values() );
+    }
+    for ( JobRun run : interrupted ) {
+      finish( run, "FAILED", "Interrupted by server shutdown" ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+  }
+
+  /**
+   * Records the start of a run. Returns null if the history is disabled.
+   *
+   * @param jobId      The id of the job.
+   * @param jobName    The name of the job.
+   * @param userName   The user the action runs as.
+   * @param actionClass The class or bean id of the action.
+   * @param jobParams  The parameters of the job; only the persisted ones with a simple value are kept.
+   * @param retryCount How many times the action was retried before this run.
+   */
+  public JobRun start( String jobId, String jobName, String userName, String actionClass,
+                       Map<String, Serializable> jobParams, int retryCount ) {
+    if ( !enabled ) {
+      return null;
+    }
+    final JobRun run = new JobRun();
+    run.setId( UUID.randomUUID().toString() );
+    run.setJobId( jobId );
+    run.setJobName( jobName );
+    run.setUserName( userName );
+    run.setActionClass( actionClass );
+    run.setJobParams( getPersistedParams( jobParams ) );
+    run.setStartDate( new Date() );
+    run.setStatus( "SUBMITTED" ); //$NON-NLS-1$
+    run.setWorkerNode( hostName );
+    run.setRetryCount( retryCount );
+    synchronized ( this ) {
+      if ( closed ) {
+        return null;
+      }
+      running.put( run.getId(), run );
+    }
+    started.incrementAndGet();
+    return run;
+  }
+
+  /**
+   * Records the completion of a run and appends it to the history file of the day.
+   *
+   * @param run          The run returned by {@link #start}; ignored if null or already completed.
+   * @param status       The final lifecycle phase of the run.
+   * @param errorSummary Why the run failed, or null.
+   */
+  public void complete( JobRun run, String status, String errorSummary ) {
+    if ( run != null ) {
+      finish( run, status, errorSummary );
+    }
+  }
+
+  private synchronized void finish( JobRun run, String status, String errorSummary ) {
+    if ( running.remove( run.getId() ) == null ) {
+      return;
+    }
+    run.setCompletionDate( new Date() );
+    run.setStatus( status );
+    run.setErrorSummary( errorSummary );
+    completed.incrementAndGet();
+    if ( errorSummary != null ) {
+      failed.incrementAndGet();
+    }
+    index( run );
+    append( run );
+    purge( System.currentTimeMillis() );
+    trim();
+  }
+
+  /**
+   * Returns every known run of a job, running ones included, most recent first.
+   */
+  public List<JobRun> getRuns( String jobId ) {
+    return findRuns( jobId, null, null, null, 0 );
+  }
+
+  /**
+   * Returns copies of the runs matching all of the given criteria, most recent first.
+   *
+   * @param jobId    Only the runs of that job, if not null.
+   * @param userName Only the runs of that user, if not null.
+   * @param from     Only the runs started at or after that time, if not null.
+   * @param to       Only the runs started before that time, if not null.
+   * @param limit    The maximum number of runs returned, 0 for no limit.
+   */
+  public synchronized List<JobRun> findRuns( String jobId, String userName, Date from, Date to, int limit ) {
+    NavigableSet<JobRun> candidates = byStart;
+    if ( jobId != null ) {
+      candidates = byJob.get( jobId );
+    } else if ( userName != null ) {
+      candidates = byUser.get( userName );
+    }
+    final List<JobRun> result = new ArrayList<>();
+    for ( JobRun run : running.values() ) {
+      if ( matches( run, jobId, userName, from, to ) ) {
+        result.add( run );
+      }
+    }
+    if ( candidates != null ) {
+      final Iterator<JobRun> runs = candidates.descendingIterator();
+      while ( runs.hasNext() && ( limit <= 0 || result.size() < limit ) ) {
+        final JobRun run = runs.next();
+        if ( from != null && run.getStartDate().before( from ) ) {
+          break;
+        }
+        if ( matches( run, jobId, userName, from, to ) ) {
+          result.add( run );
+        }
+      }
+    }
+    result.sort( BY_START.reversed() );
+    // running runs are still updated, and retained ones must not be changed by callers
+    final List<JobRun> copies = new ArrayList<>();
+    for ( JobRun run : limit > 0 && result.size() > limit ? result.subList( 0, limit ) : result ) {
+      copies.add( copy( run ) );
+    }
+    return copies;
+  }
+
+  private static JobRun copy( JobRun run ) {
+    final JobRun copy = new JobRun();
+    copy.setId( run.getId() );
+    copy.setJobId( run.getJobId() );
+    copy.setJobName( run.getJobName() );
+    copy.setUserName( run.getUserName() );
+    copy.setActionClass( run.getActionClass() );
+    copy.setJobParams( run.getJobParams() == null ? null : new LinkedHashMap<>( run.getJobParams() ) );
+    copy.setStartDate( run.getStartDate() == null ? null : new Date( run.getStartDate().getTime() ) );
+    copy.setCompletionDate( run.getCompletionDate() == null ? null : new Date( run.getCompletionDate().getTime() ) );
+    copy.setStatus( run.getStatus() );
+    copy.setOutputPath( run.getOutputPath() );
+    copy.setErrorSummary( run.getErrorSummary() );
+    copy.setWorkerNode( run.getWorkerNode() );
+    copy.setRetryCount( run.getRetryCount() );
+    copy.setQueueWaitMillis( run.getQueueWaitMillis() );
+    return copy;
+  }
+
+  /**
+   * Returns the history counters.
+   */
+  @Override
+  public synchronized Map<String, Number> getStatistics() {
+    final Map<String, Number> result = new LinkedHashMap<>();
+    result.put( "running", running.size() );
+    result.put( "retained", byStart.size() );
+    result.put( "jobs", byJob.size() );
+    result.put( "started", started.get() );
+    result.put( "completed", completed.get() );
+    result.put( "failed", failed.get() );
+    result.put( "writeErrors", writeErrors.get() );
+    return result;
+  }
+
+  /**
+   * Drops the runs, and deletes the history files, older than the retention period.
+   */
+  synchronized void purge( long now ) {
+    if ( retentionMillis <= 0 ) {
+      return;
+    }
+    final String today = formatDay( now );
+    if ( today.equals( lastPurgedDay ) ) {
+      return;
+    }
+    lastPurgedDay = today;
+    final long cutoff = now - retentionMillis;
+    final Iterator<JobRun> runs = byStart.iterator();
+    while ( runs.hasNext() ) {
+      final JobRun run = runs.next();
+      if ( run.getCompletionDate().getTime() < cutoff ) {
+        runs.remove();
+        unindex( run );
+      }
+    }
+    if ( directory != null ) {
+      final String oldestDay = formatDay( cutoff );
+      final File[] files = directory.listFiles();
+      if ( files != null ) {
+        for ( File file : files ) {
+          final String day = getDay( file );
+          if ( day != null && day.compareTo( oldestDay ) < 0 ) {
+            log.debug( "Deleting expired job history " + file );
+            FileUtils.deleteQuietly( file );
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Drops the oldest completed runs past maxRuns from memory.
+   */
+  private void trim() {
+    while ( maxRuns > 0 && byStart.size() > maxRuns ) {
+      unindex( byStart.pollFirst() );
+    }
+  }
+
+  private static boolean matches( JobRun run, String jobId, String userName, Date from, Date to ) {
+    return ( jobId == null || jobId.equals( run.getJobId() ) )
+      && ( userName == null || userName.equals( run.getUserName() ) )
+      && ( from == null || !run.getStartDate().before( from ) )
+      && ( to == null || run.getStartDate().before( to ) );
+  }
+
+  private void index( JobRun run ) {
+    byStart.add( run );
+    addToIndex( byJob, run.getJobId(), run );
+    addToIndex( byUser, run.getUserName(), run );
+  }
+
+  private void unindex( JobRun run ) {
+    removeFromIndex( byJob, run.getJobId(), run );
+    removeFromIndex( byUser, run.getUserName(), run );
+  }
+
+  private static void addToIndex( Map<String, NavigableSet<JobRun>> index, String key, JobRun run ) {
+    if ( key != null ) {
+      index.computeIfAbsent( key, k -> new TreeSet<>( BY_START ) ).add( run );
+    }
+  }
+
+  private static void removeFromIndex( Map<String, NavigableSet<JobRun>> index, String key, JobRun run ) {
+    final NavigableSet<JobRun> runs = key == null ? null : index.get( key );
+    if ( runs != null ) {
+      runs.remove( run );
+      if ( runs.isEmpty() ) {
+        index.remove( key );
+      }
+    }
+  }
+
+  private void append( JobRun run ) {
+    if ( directory == null ) {
+      return;
+    }
+    final File file = new File( directory, PREFIX + formatDay( run.getCompletionDate().getTime() ) + SUFFIX );
+    try {
+      FileUtils.forceMkdir( directory );
+      try ( Writer writer = new OutputStreamWriter( new FileOutputStream( file, true ), StandardCharsets.UTF_8 ) ) {
+        writer.write( format( run ) );
+        writer.write( '\n' );
+      }
+    } catch ( IOException e ) {
+      writeErrors.incrementAndGet();
+      log.warn( "Failed to write the job history to " + file, e );
+    }
+  }
+
+  private void load() {
+    final File[] files = directory.listFiles();
+    if ( files == null ) {
+      return;
+    }
+    final long cutoff = retentionMillis > 0 ? System.currentTimeMillis() - retentionMillis : 0;
+    for ( File file : files ) {
+      if ( getDay( file ) == null ) {
+        continue;
+      }
+      try {
+        final String content = FileUtils.readFileToString( file, StandardCharsets.UTF_8 );
+        // an unterminated last line was cut short while being written
+        final int end = content.lastIndexOf( '\n' );
+        if ( end < 0 ) {
+          continue;
+        }
+        for ( String line : content.substring( 0, end ).split( "\n" ) ) {
+          final JobRun run = parse( line );
+          if ( run == null ) {
+            log.debug( "Ignoring malformed job history line in " + file );
+          } else if ( run.getCompletionDate().getTime() >= cutoff ) {
+            index( run );
+          }
+        }
+      } catch ( IOException e ) {
+        log.warn( "Failed to read the job history from " + file, e );
+      }
+    }
+    purge( System.currentTimeMillis() );
+    trim();
+  }
+
+  static String format( JobRun run ) {
+    final String[] fields = new String[] {
+      run.getId(), run.getJobId(), run.getJobName(), run.getUserName(), run.getActionClass(),
+      String.valueOf( run.getStartDate().getTime() ), String.valueOf( run.getCompletionDate().getTime() ),
+      run.getStatus(), run.getOutputPath(), run.getErrorSummary(), run.getWorkerNode(),
+      String.valueOf( run.getRetryCount() ), String.valueOf( run.getQueueWaitMillis() ),
+      formatParams( run.getJobParams() ) };
+    final StringBuilder line = new StringBuilder();
+    for ( int i = 0; i < fields.length; i++ ) {
+      if ( i > 0 ) {
+        line.append( '\t' );
+      }
+      line.append( encode( fields[ i ] ) );
+    }
+    return line.toString();
+  }
+
+  static JobRun parse( String line ) {
+    final String[] fields = line.split( "\t", -1 );
+    if ( fields.length != FIELD_COUNT ) {
+      return null;
+    }
+    for ( int i = 0; i < fields.length; i++ ) {
+      fields[ i ] = decode( fields[ i ] );
+    }
+    final long startTime = NumberUtils.toLong( fields[ 5 ], -1 );
+    final long completionTime = NumberUtils.toLong( fields[ 6 ], -1 );
+    if ( fields[ 0 ] == null || startTime < 0 || completionTime < 0 ) {
+      return null;
+    }
+    final JobRun run = new JobRun();
+    run.setId( fields[ 0 ] );
+    run.setJobId( fields[ 1 ] );
+    run.setJobName( fields[ 2 ] );
+    run.setUserName( fields[ 3 ] );
+    run.setActionClass( fields[ 4 ] );
+    run.setStartDate( new Date( startTime ) );
+    run.setCompletionDate( new Date( completionTime ) );
+    run.setStatus( fields[ 7 ] );
+    run.setOutputPath( fields[ 8 ] );
+    run.setErrorSummary( fields[ 9 ] );
+    run.setWorkerNode( fields[ 10 ] );
+    run.setRetryCount( NumberUtils.toInt( fields[ 11 ] ) );
+    run.setQueueWaitMillis( NumberUtils.toLong( fields[ 12 ] ) );
+    run.setJobParams( parseParams( fields[ 13 ] ) );
+    return run;
+  }
+
+  private Map<String, Serializable> getPersistedParams( Map<String, Serializable> jobParams ) {
+    final Map<String, Serializable> params = new HashMap<>();
+    final Set<String> names = persistedParams;
+    if ( jobParams != null ) {
+      for ( Map.Entry<String, Serializable> entry : jobParams.entrySet() ) {
+        final Serializable value = entry.getValue();
+        if ( !names.contains( entry.getKey() ) ) {
+          continue;
+        }
+        if ( value instanceof String || value instanceof Number || value instanceof Boolean ) {
+          params.put( entry.getKey(), value.toString() );
+        }
+      }
+    }
+    return params;
+  }
+
+  private static String formatParams( Map<String, Serializable> params ) {
+    final StringBuilder result = new StringBuilder();
+    try {
+      for ( Map.Entry<String, Serializable> entry : params.entrySet() ) {
+        if ( result.length() > 0 ) {
+          result.append( '&' );
+        }
+        result.append( URLEncoder.encode( entry.getKey(), "UTF-8" ) ).append( '=' ) //$NON-NLS-1$
+          .append( URLEncoder.encode( String.valueOf( entry.getValue() ), "UTF-8" ) ); //$NON-NLS-1$
+      }
+    } catch ( UnsupportedEncodingException e ) {
+      throw new IllegalStateException( e );
+    }
+    return result.toString();
+  }
+
+  private static Map<String, Serializable> parseParams( String params ) {
+    final Map<String, Serializable> result = new HashMap<>();
+    if ( StringUtils.isEmpty( params ) ) {
+      return result;
+    }
+    try {
+      for ( String pair : params.split( "&" ) ) {
+        final int index = pair.indexOf( '=' );
+        if ( index > 0 ) {
+          result.put( URLDecoder.decode( pair.substring( 0, index ), "UTF-8" ), //$NON-NLS-1$
+            URLDecoder.decode( pair.substring( index + 1 ), "UTF-8" ) ); //$NON-NLS-1$
+        }
+      }
+    } catch ( UnsupportedEncodingException | IllegalArgumentException e ) {
+      log.debug( "Ignoring malformed job history parameters " + params );
+    }
+    return result;
+  }
+
+  /**
+   * Escapes a field so it holds no tab or line break; null is written as <code>\0</code>.
+   */
+  private static String encode( String value ) {
+    if ( value == null ) {
+      return "\\0"; //$NON-NLS-1$
+    }
+    return value.replace( "\\", "\\\\" ).replace( "\t", "\\t" ).replace( "\n", "\\n" ).replace( "\r", "\\r" );
+  }
+
+  private static String decode( String value ) {
+    if ( "\\0".equals( value ) ) { //$NON-NLS-1$
+      return null;
+    }
+    final StringBuilder result = new StringBuilder( value.length() );
+    for ( int i = 0; i < value.length(); i++ ) {
+      final char c = value.charAt( i );
+      if ( c == '\\' && i + 1 < value.length() ) {
+        final char next = value.charAt( ++i );
+        result.append( next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next );
+      } else {
+        result.append( c );
+      }
+    }
+    return result.toString();
+  }
+
+  private static String formatDay( long time ) {
+    final SimpleDateFormat format = new SimpleDateFormat( DAY_PATTERN );
+    format.setTimeZone( TimeZone.getTimeZone( "UTC" ) ); //$NON-NLS-1$
+    return format.format( new Date( time ) );
+  }
+
+  private static String getDay( File file ) {
+    final String name = file.getName();
+    if ( !file.isFile() || !name.startsWith( PREFIX ) || !name.endsWith( SUFFIX ) ) {
+      return null;
+    }
+    final String day = name.substring( PREFIX.length(), name.length() - SUFFIX.length() );
+    return day.length() == DAY_PATTERN.length() ? day : null;
+  }
+}
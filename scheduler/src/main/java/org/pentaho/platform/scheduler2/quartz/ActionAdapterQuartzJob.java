@@ -20,6 +20,8 @@
 
 package org.pentaho.platform.scheduler2.quartz;
 
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.action.IAction;
@@ -29,11 +31,14 @@ import org.pentaho.platform.api.scheduler2.IBackgroundExecutionStreamProvider;
 import org.pentaho.platform.api.scheduler2.IBlockoutManager;
 import org.pentaho.platform.api.scheduler2.IJobTrigger;
 import org.pentaho.platform.api.scheduler2.IScheduler;
+import org.pentaho.platform.api.scheduler2.JobRun;
 import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.security.SecurityHelper;
 import org.pentaho.platform.scheduler2.action.DefaultActionInvoker;
+import org.pentaho.platform.scheduler2.action.FairShareActionQueue;
 import org.pentaho.platform.scheduler2.blockout.BlockoutAction;
+import org.pentaho.platform.scheduler2.history.JobHistoryStore;
 import org.pentaho.platform.scheduler2.messsages.Messages;
 import org.pentaho.platform.scheduler2.ws.ListParamValue;
 import org.pentaho.platform.scheduler2.ws.MapParamValue;
@@ -66,8 +71,14 @@ public class ActionAdapterQuartzJob implements Job {
 
   static final Log log = LogFactory.getLog( ActionAdapterQuartzJob.class );
 
+  private static final WorkItemLifecyclePhase[] TERMINAL_PHASES = { WorkItemLifecyclePhase.SUCCEEDED,
+    WorkItemLifecyclePhase.RESTARTED, WorkItemLifecyclePhase.COMPLETED };
+
   private IActionInvoker actionInvoker = new DefaultActionInvoker(); // default
 
+  // Quartz creates a job instance per execution, so this is the run being executed
+  private JobRun jobRun;
+
   public void execute( JobExecutionContext context ) throws JobExecutionException {
     JobDataMap jobDataMap = context.getMergedJobDataMap();
     String actionUser = jobDataMap.getString( QuartzScheduler.RESERVEDMAPKEY_ACTIONUSER );
@@ -75,10 +86,20 @@ public class ActionAdapterQuartzJob implements Job {
     final String actionClassName = jobDataMap.getString( QuartzScheduler.RESERVEDMAPKEY_ACTIONCLASS );
     final String actionId = jobDataMap.getString( QuartzScheduler.RESERVEDMAPKEY_ACTIONID );
 
+    final JobHistoryStore jobHistory = getJobHistory();
+    if ( jobHistory != null ) {
+      jobRun = startRun( jobHistory, context, actionUser, getActionIdentifier( null, actionClassName, actionId ),
+        jobDataMap.getWrappedMap() );
+    }
     try {
       invokeAction( actionClassName, actionId, actionUser, context, jobDataMap.getWrappedMap() );
-
+      if ( jobHistory != null ) {
+        jobHistory.complete( jobRun, getTerminalPhase().name(), null );
+      }
     } catch ( Throwable t ) {
+      if ( jobHistory != null ) {
+        jobHistory.complete( jobRun, WorkItemLifecyclePhase.FAILED.name(), ExceptionUtils.getRootCauseMessage( t ) );
+      }
       // We should not distinguish between checked and unchecked exceptions here. All job execution failures
       // should result in a rethrow of a quartz exception
       throw new LoggingJobExecutionException( Messages.getInstance().getErrorString(
@@ -174,11 +195,48 @@ public class ActionAdapterQuartzJob implements Job {
       params.put( IBlockoutManager.SCHEDULED_FIRE_TIME, context.getScheduledFireTime() );
     }
 
-    // Invoke the action and get the status of the invocation
-    final IActionInvokeStatus status = actionInvoker.invokeAction( actionBean, actionUser, getSerializableMap( params ) );
+    // Wait for a slot in the fair-share queue; block outs are never held back
+    final FairShareActionQueue executionQueue = getExecutionQueue();
+    FairShareActionQueue.Ticket ticket = null;
+    if ( executionQueue.isEnabled() && !( actionBean instanceof BlockoutAction ) ) {
+      ticket = executionQueue.enqueue( actionUser, actionBean.getClass().getName(), getPriority( params ) );
+      if ( ticket == null ) {
+        // the user already holds enough worker threads waiting, run this one later instead
+        deferAction( actionBean, actionUser, context, params, executionQueue.getDeferSeconds() );
+        // this run ends here, the deferred one is recorded on its own
+        recordPhase( WorkItemLifecyclePhase.RESTARTED );
+        return;
+      }
+    }
+
+    final IActionInvokeStatus status;
+    try {
+      if ( ticket != null ) {
+        WorkItemLifecycleEventUtil.publish( workItemName, params, WorkItemLifecyclePhase.DISPATCHED );
+        recordPhase( WorkItemLifecyclePhase.DISPATCHED );
+        final long queueWaitMillis = ticket.awaitAdmission();
+        WorkItemLifecycleEventUtil.publish( workItemName, params, WorkItemLifecyclePhase.RECEIVED,
+          "queueWaitMillis=" + queueWaitMillis ); //$NON-NLS-1$
+        recordPhase( WorkItemLifecyclePhase.RECEIVED );
+        if ( jobRun != null ) {
+          jobRun.setQueueWaitMillis( queueWaitMillis );
+        }
+      }
+
+      // Invoke the action and get the status of the invocation
+      recordPhase( WorkItemLifecyclePhase.IN_PROGRESS );
+      status = actionInvoker.invokeAction( actionBean, actionUser, getSerializableMap( params ) );
+    } finally {
+      // leaves the queue whether the action was admitted, is still waiting or failed on the way
+      if ( ticket != null ) {
+        ticket.release();
+      }
+    }
 
     // Status may not be available for remote execution, which is expected
     if ( status == null ) {
+      // handed over for remote execution, whose outcome is not known here
+      recordPhase( WorkItemLifecyclePhase.COMPLETED );
       if ( log.isWarnEnabled() ) {
         log.warn( Messages.getInstance().getErrorString(
           "ActionAdapterQuartzJob.WARN_0002_NO_STATUS", //$NON-NLS-1$
@@ -237,6 +295,10 @@ public class ActionAdapterQuartzJob implements Job {
     }
 
     scheduler.fireJobCompleted( actionBean, actionUser, params, streamProvider );
+    recordPhase( WorkItemLifecyclePhase.SUCCEEDED );
+    if ( jobRun != null && streamProvider != null ) {
+      jobRun.setOutputPath( streamProvider.getOutputPath() );
+    }
 
     if ( requiresUpdate ) {
       log.warn( "Output path for job: " + context.getJobDetail().getName() + " has changed. Job requires update" );
@@ -273,6 +335,92 @@ public class ActionAdapterQuartzJob implements Job {
     }
   }
 
+  /**
+   * Re-creates the action as a run once job which fires after the given delay, in the context of the original
+   * creator.
+   */
+  protected void deferAction( final IAction actionBean, final String actionUser, final JobExecutionContext context,
+                              final Map<String, Serializable> params, final int delaySeconds ) throws Exception {
+    final String workItemName = ActionUtil.extractName( params );
+    final Map<String, Serializable> jobParams = new HashMap<String, Serializable>( params ); // shallow copy
+    final Object objsp = params.get( QuartzScheduler.RESERVEDMAPKEY_STREAMPROVIDER );
+    final IBackgroundExecutionStreamProvider streamProvider =
+      objsp instanceof IBackgroundExecutionStreamProvider ? (IBackgroundExecutionStreamProvider) objsp : null;
+    final SimpleJobTrigger trigger =
+      new SimpleJobTrigger( new Date( System.currentTimeMillis() + delaySeconds * 1000L ), null, 0, 0 );
+    final Class<IAction> iaction = (Class<IAction>) actionBean.getClass();
+    final IScheduler scheduler = PentahoSystem.getObjectFactory().get( IScheduler.class, "IScheduler2", null );
+
+    SecurityHelper.getInstance().runAsUser( actionUser, new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        QuartzJobKey jobKey = QuartzJobKey.parse( context.getJobDetail().getName() );
+        String jobName = jobKey.getJobName();
+        WorkItemLifecycleEventUtil.publish( workItemName, params, WorkItemLifecyclePhase.RESTARTED,
+          "deferred " + delaySeconds + "s" ); //$NON-NLS-1$ //$NON-NLS-2$
+        scheduler.createJob( jobName, iaction, jobParams, trigger, streamProvider );
+        log.info( "Too many queued actions for user " + actionUser + ", " + jobName + " deferred by " //$NON-NLS-1$
+          + delaySeconds + "s" ); //$NON-NLS-1$
+        return null;
+      }
+    } );
+  }
+
+  protected FairShareActionQueue getExecutionQueue() {
+    return FairShareActionQueue.getInstance();
+  }
+
+  protected JobHistoryStore getJobHistory() {
+    return PentahoSystem.get( JobHistoryStore.class, "jobHistoryStore", null ); //$NON-NLS-1$
+  }
+
+  private static JobRun startRun( final JobHistoryStore jobHistory, final JobExecutionContext context,
+                                  final String actionUser, final String action,
+                                  final Map<String, Serializable> params ) {
+    final String jobId = context.getJobDetail() == null ? null : context.getJobDetail().getName();
+    if ( jobId == null ) {
+      return null;
+    }
+    String jobName = jobId;
+    try {
+      jobName = QuartzJobKey.parse( jobId ).getJobName();
+    } catch ( org.pentaho.platform.api.scheduler2.SchedulerException e ) {
+      // not created by the QuartzScheduler, keep the raw name
+    }
+    final int retryCount = params.containsKey( QuartzScheduler.RESERVEDMAPKEY_RESTART_FLAG ) ? 1 : 0;
+    return jobHistory.start( jobId, jobName, actionUser, action, params, retryCount );
+  }
+
+  /**
+   * Keeps the lifecycle phase of the run being executed for the job history.
+   */
+  private void recordPhase( final WorkItemLifecyclePhase phase ) {
+    if ( jobRun != null ) {
+      jobRun.setStatus( phase.name() );
+    }
+  }
+
+  /**
+   * Returns the phase the run ended in: {@code SUCCEEDED}, {@code RESTARTED} when deferred or {@code COMPLETED} when
+   * the outcome is not known, e.g. for remote execution or when the action returned without recording one.
+   */
+  private WorkItemLifecyclePhase getTerminalPhase() {
+    if ( jobRun != null ) {
+      for ( WorkItemLifecyclePhase phase : TERMINAL_PHASES ) {
+        if ( phase.name().equals( jobRun.getStatus() ) ) {
+          return phase;
+        }
+      }
+    }
+    return WorkItemLifecyclePhase.COMPLETED;
+  }
+
+  static int getPriority( final Map<String, Serializable> params ) {
+    final Serializable priority = params.get( QuartzScheduler.RESERVEDMAPKEY_PRIORITY );
+    return priority == null ? FairShareActionQueue.DEFAULT_PRIORITY
+      : NumberUtils.toInt( priority.toString(), FairShareActionQueue.DEFAULT_PRIORITY );
+  }
+
   class LoggingJobExecutionException extends JobExecutionException {
     private static final long serialVersionUID = -4124907454208034326L;
 
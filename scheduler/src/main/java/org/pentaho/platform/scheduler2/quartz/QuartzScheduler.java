@@ -45,6 +45,7 @@ import org.pentaho.platform.api.scheduler2.recur.ITimeRecurrence;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.security.SecurityHelper;
+import org.pentaho.platform.scheduler2.history.JobHistoryStore;
 import org.pentaho.platform.scheduler2.messsages.Messages;
 import org.pentaho.platform.scheduler2.recur.IncrementalRecurrence;
 import org.pentaho.platform.scheduler2.recur.QualifiedDayOfMonth;
@@ -106,6 +107,8 @@ public class QuartzScheduler implements IScheduler {
 
   public static final String RESERVEDMAPKEY_APPEND_DATE_FORMAT = ActionUtil.QUARTZ_APPEND_DATE_FORMAT;
 
+  public static final String RESERVEDMAPKEY_PRIORITY = ActionUtil.QUARTZ_PRIORITY;
+
   private static final Log logger = LogFactory.getLog( QuartzScheduler.class );
 
   private SchedulerFactory quartzSchedulerFactory;
@@ -418,8 +421,8 @@ public class QuartzScheduler implements IScheduler {
 
   /** {@inheritDoc} */
   public List<IJobResult> getJobHistory( String jobId ) {
-    // TODO Auto-generated method stub
-    return null;
+    JobHistoryStore jobHistory = PentahoSystem.get( JobHistoryStore.class, "jobHistoryStore", null ); //$NON-NLS-1$
+    return jobHistory == null ? new ArrayList<IJobResult>() : new ArrayList<IJobResult>( jobHistory.getRuns( jobId ) );
   }
 
   /** {@inheritDoc} */
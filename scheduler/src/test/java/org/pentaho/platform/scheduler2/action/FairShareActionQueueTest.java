@@ -0,0 +1,168 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.scheduler2.action;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+public class FairShareActionQueueTest {
+
+  private static final String REPORT = "report"; //$NON-NLS-1$
+
+  @Test
+  public void testPerUserLimit() {
+    FairShareActionQueue queue = queue( 4, 1, 0, Collections.emptyMap() );
+    FairShareActionQueue.Ticket first = queue.enqueue( "a", REPORT, 5 );
+    FairShareActionQueue.Ticket second = queue.enqueue( "a", REPORT, 5 );
+    FairShareActionQueue.Ticket other = queue.enqueue( "b", REPORT, 5 );
+
+    assertTrue( first.isAdmitted() );
+    assertFalse( second.isAdmitted() );
+    assertTrue( other.isAdmitted() );
+
+    first.release();
+    assertTrue( second.isAdmitted() );
+  }
+
+  @Test
+  public void testBurstingUserDoesNotDelayOthers() {
+    FairShareActionQueue queue = queue( 1, 0, 0, Collections.emptyMap() );
+    FairShareActionQueue.Ticket running = queue.enqueue( "a", REPORT, 5 );
+    FairShareActionQueue.Ticket a2 = queue.enqueue( "a", REPORT, 5 );
+    FairShareActionQueue.Ticket a3 = queue.enqueue( "a", REPORT, 5 );
+    FairShareActionQueue.Ticket b1 = queue.enqueue( "b", REPORT, 5 );
+
+    running.release();
+    assertTrue( b1.isAdmitted() );
+    assertFalse( a2.isAdmitted() );
+
+    b1.release();
+    assertTrue( a2.isAdmitted() );
+    a2.release();
+    assertTrue( a3.isAdmitted() );
+  }
+
+  @Test
+  public void testHigherPriorityIsAdmittedFirst() {
+    FairShareActionQueue queue = queue( 1, 0, 0, Collections.emptyMap() );
+    FairShareActionQueue.Ticket running = queue.enqueue( "a", REPORT, 5 );
+    FairShareActionQueue.Ticket normal = queue.enqueue( "b", REPORT, 5 );
+    FairShareActionQueue.Ticket urgent = queue.enqueue( "a", REPORT, 9 );
+
+    running.release();
+    assertTrue( urgent.isAdmitted() );
+    assertFalse( normal.isAdmitted() );
+  }
+
+  @Test
+  public void testActionTypeLimit() {
+    FairShareActionQueue queue = queue( 4, 0, 0, Collections.singletonMap( REPORT, 1 ) );
+    FairShareActionQueue.Ticket first = queue.enqueue( "a", REPORT, 5 );
+    FairShareActionQueue.Ticket second = queue.enqueue( "b", REPORT, 5 );
+    FairShareActionQueue.Ticket other = queue.enqueue( "b", "etl", 5 ); //$NON-NLS-1$
+
+    assertTrue( first.isAdmitted() );
+    assertFalse( second.isAdmitted() );
+    assertTrue( other.isAdmitted() );
+  }
+
+  @Test
+  public void testUserIsDeferredWhenTooManyAreWaiting() {
+    FairShareActionQueue queue = queue( 1, 0, 1, Collections.emptyMap() );
+    assertNotNull( queue.enqueue( "a", REPORT, 5 ) );
+    assertNotNull( queue.enqueue( "a", REPORT, 5 ) );
+    assertNull( queue.enqueue( "a", REPORT, 5 ) );
+    assertNotNull( queue.enqueue( "b", REPORT, 5 ) );
+
+    Map<String, Number> stats = queue.getUserStatistics().get( "a" );
+    assertEquals( 1L, stats.get( "deferred" ) );
+    assertEquals( 1, stats.get( "running" ) );
+    assertEquals( 1, stats.get( "waiting" ) );
+  }
+
+  @Test
+  public void testInterruptedWaiterLeavesQueue() throws Exception {
+    FairShareActionQueue queue = queue( 1, 0, 0, Collections.emptyMap() );
+    FairShareActionQueue.Ticket running = queue.enqueue( "a", REPORT, 5 );
+    FairShareActionQueue.Ticket waiter = queue.enqueue( "b", REPORT, 5 );
+
+    Thread.currentThread().interrupt();
+    try {
+      waiter.awaitAdmission();
+    } catch ( InterruptedException e ) {
+      // expected
+    }
+    assertEquals( 0, queue.getStatistics().get( "waiting" ) );
+
+    running.release();
+    assertEquals( 0, queue.getStatistics().get( "running" ) );
+  }
+
+  @Test
+  public void testReleaseBeforeAdmissionLeavesQueue() {
+    FairShareActionQueue queue = queue( 1, 0, 0, Collections.emptyMap() );
+    FairShareActionQueue.Ticket running = queue.enqueue( "a", REPORT, 5 );
+    FairShareActionQueue.Ticket waiter = queue.enqueue( "b", REPORT, 5 );
+
+    waiter.release();
+    assertEquals( 0, queue.getStatistics().get( "waiting" ) );
+
+    running.release();
+    assertFalse( waiter.isAdmitted() );
+    assertEquals( 0, queue.getStatistics().get( "running" ) );
+    assertTrue( queue.enqueue( "c", REPORT, 5 ).isAdmitted() );
+  }
+
+  @Test
+  public void testIdleUsersAreForgotten() {
+    FairShareActionQueue queue = queue( 4, 0, 0, Collections.emptyMap() );
+    for ( int i = 0; i < 10; i++ ) {
+      queue.enqueue( "user" + i, REPORT, 5 ).release();
+    }
+    assertEquals( 10, queue.getStatistics().get( "users" ) );
+
+    // the virtual time moves past the share used by the other users once "a" runs a second action
+    queue.enqueue( "a", REPORT, 5 ).release();
+    queue.enqueue( "a", REPORT, 5 ).release();
+    assertEquals( 1, queue.getStatistics().get( "users" ) );
+    assertTrue( queue.getUserStatistics().containsKey( "a" ) );
+
+    // their counters are kept
+    assertEquals( 11, queue.getUserStatistics().size() );
+    assertEquals( 1L, queue.getUserStatistics().get( "user0" ).get( "admitted" ) );
+    assertEquals( 0, queue.getUserStatistics().get( "user0" ).get( "running" ) );
+    assertEquals( 12L, queue.getStatistics().get( "admitted" ) );
+  }
+
+  private static FairShareActionQueue queue( int maxConcurrent, int perUser, int maxWaiting,
+                                             Map<String, Integer> actionLimits ) {
+    return new FairShareActionQueue( true, maxConcurrent, perUser, maxWaiting, 60,
+      Collections.<String, Double>emptyMap(), actionLimits );
+  }
+}
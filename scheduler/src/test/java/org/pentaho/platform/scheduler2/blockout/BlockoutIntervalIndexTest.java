@@ -0,0 +1,131 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.scheduler2.blockout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Random;
+
+import org.junit.Test;
+import org.pentaho.platform.api.scheduler2.ComplexJobTrigger;
+import org.pentaho.platform.api.scheduler2.IJobTrigger;
+import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
+import org.pentaho.platform.scheduler2.blockout.BlockoutManagerUtil.TIME;
+import org.pentaho.platform.scheduler2.quartz.QuartzScheduler;
+
+public class BlockoutIntervalIndexTest {
+
+  private static final long NOW = 1704067200000L; // 2024-01-01T00:00:00Z
+
+  private final QuartzScheduler scheduler = new QuartzScheduler();
+
+  @Test
+  public void testEmptyIndexBlocksNothing() {
+    BlockoutIntervalIndex index =
+        BlockoutIntervalIndex.build( Collections.<IJobTrigger>emptyList(), scheduler, NOW, TIME.WEEK.time, 100 );
+    assertTrue( index.isEmpty() );
+    assertFalse( index.isBlocked( NOW ) );
+  }
+
+  @Test
+  public void testWindowBoundsAreInclusive() {
+    IJobTrigger daily = simple( NOW, TIME.DAY.time, TIME.HOUR.time );
+    BlockoutIntervalIndex index =
+        BlockoutIntervalIndex.build( Collections.singletonList( daily ), scheduler, NOW, TIME.WEEK.time, 100 );
+
+    long secondDay = NOW + TIME.DAY.time;
+    assertTrue( index.isBlocked( secondDay ) );
+    assertTrue( index.isBlocked( secondDay + TIME.MINUTE.time * 30 ) );
+    assertTrue( index.isBlocked( secondDay + TIME.HOUR.time ) );
+    assertFalse( index.isBlocked( secondDay + TIME.HOUR.time + 1 ) );
+    assertFalse( index.isBlocked( secondDay - 1 ) );
+  }
+
+  @Test
+  public void testWindowActiveAtBuildTimeIsIncluded() {
+    IJobTrigger started = simple( NOW - TIME.HOUR.time, TIME.DAY.time, TIME.HOUR.time * 2 );
+    BlockoutIntervalIndex index =
+        BlockoutIntervalIndex.build( Collections.singletonList( started ), scheduler, NOW, TIME.WEEK.time, 100 );
+    assertTrue( index.isBlocked( NOW + TIME.MINUTE.time ) );
+  }
+
+  @Test
+  public void testLongWindowCoversLaterShortOnes() {
+    // A long window started before a short window which ends earlier
+    IJobTrigger longWindow = simple( NOW, TIME.DAY.time, TIME.HOUR.time * 10 );
+    IJobTrigger shortWindow = simple( NOW + TIME.HOUR.time, TIME.DAY.time, TIME.MINUTE.time );
+    BlockoutIntervalIndex index =
+        BlockoutIntervalIndex.build( Arrays.asList( shortWindow, longWindow ), scheduler, NOW, TIME.WEEK.time, 100 );
+
+    assertTrue( index.isBlocked( NOW + TIME.HOUR.time * 5 ) );
+    assertFalse( index.isBlocked( NOW + TIME.HOUR.time * 11 ) );
+  }
+
+  @Test
+  public void testMatchesPerBlockOutEvaluation() {
+    long now = System.currentTimeMillis();
+    IJobTrigger simple = simple( now - TIME.DAY.time, TIME.HOUR.time * 7, TIME.MINUTE.time * 20 );
+    IJobTrigger complex = new ComplexJobTrigger();
+    complex.setStartTime( new Date( now - TIME.DAY.time ) );
+    complex.setCronString( "0 0 2 ? * 2-6 *" ); //$NON-NLS-1$
+    complex.setDuration( TIME.HOUR.time * 3 );
+
+    BlockoutIntervalIndex index =
+        BlockoutIntervalIndex.build( Arrays.asList( simple, complex ), scheduler, now, TIME.WEEK.time * 4, 1000 );
+
+    Random random = new Random( 42 );
+    for ( int i = 0; i < 2000; i++ ) {
+      // Skip the first day, the per block out evaluation does not look back at windows already active
+      long time = now + TIME.DAY.time + (long) ( random.nextDouble() * TIME.WEEK.time * 2 );
+      Date date = new Date( time );
+      boolean expected =
+          BlockoutManagerUtil.willBlockDate( simple, date, scheduler )
+              || BlockoutManagerUtil.willBlockDate( complex, date, scheduler );
+      assertEquals( date.toString(), expected, index.isBlocked( time ) );
+    }
+  }
+
+  @Test
+  public void testHorizonIsShortenedWhenWindowsAreCapped() {
+    IJobTrigger hourly = simple( NOW, TIME.HOUR.time, TIME.MINUTE.time * 10 );
+    BlockoutIntervalIndex index =
+        BlockoutIntervalIndex.build( Collections.singletonList( hourly ), scheduler, NOW, TIME.WEEK.time, 24 );
+
+    assertEquals( 24, index.size() );
+    assertTrue( index.getHorizonEnd() < NOW + TIME.DAY.time );
+
+    // Past the horizon the trigger itself is evaluated
+    long later = NOW + TIME.DAY.time * 3;
+    assertTrue( index.isBlocked( later + TIME.MINUTE.time * 5 ) );
+    assertFalse( index.isBlocked( later + TIME.MINUTE.time * 15 ) );
+  }
+
+  private static IJobTrigger simple( long start, long interval, long duration ) {
+    IJobTrigger trigger = new SimpleJobTrigger( new Date( start ), null, -1, interval / 1000 );
+    trigger.setDuration( duration );
+    return trigger;
+  }
+}
@@ -0,0 +1,129 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.scheduler2.blockout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.pentaho.platform.api.scheduler2.ComplexJobTrigger;
+import org.pentaho.platform.api.scheduler2.IJobTrigger;
+import org.pentaho.platform.scheduler2.blockout.BlockoutManagerUtil.TIME;
+import org.pentaho.platform.scheduler2.quartz.QuartzScheduler;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares checking schedules against the block outs one trigger at a time with the lookups in a
+ * {@link BlockoutIntervalIndex}, the way {@link PentahoBlockoutManager#willBlockSchedules(IJobTrigger)} does for
+ * every scheduled job. Not run by the unit tests; launch it with the {@link #main(String[])} method from the test
+ * classpath.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class BlockoutManagerUtilBenchmark {
+
+  @Param( { "1", "10", "50" } )
+  public int blockOutCount;
+
+  @Param( { "100" } )
+  public int scheduleCount;
+
+  private QuartzScheduler scheduler;
+  private List<IJobTrigger> blockOuts;
+  private List<IJobTrigger> schedules;
+  private BlockoutIntervalIndex index;
+
+  @Setup
+  public void setUp() {
+    scheduler = new QuartzScheduler();
+    Date start = new Date( System.currentTimeMillis() - TIME.DAY.time );
+
+    blockOuts = new ArrayList<IJobTrigger>();
+    for ( int i = 0; i < blockOutCount; i++ ) {
+      // Never matched by the schedules, so every fire time has to be checked
+      blockOuts.add( cron( start, "0 " + ( i % 60 ) + " 23 ? * " + ( 1 + i % 7 ) + " *", TIME.MINUTE.time * 5 ) );
+    }
+
+    schedules = new ArrayList<IJobTrigger>();
+    for ( int i = 0; i < scheduleCount; i++ ) {
+      schedules.add( cron( start, "0 " + ( i % 60 ) + " " + ( i % 20 ) + " ? * * *", 0 ) );
+    }
+
+    index = BlockoutIntervalIndex.build( blockOuts, scheduler );
+  }
+
+  @Benchmark
+  public int perBlockOut() {
+    int blocked = 0;
+    for ( IJobTrigger schedule : schedules ) {
+      if ( BlockoutManagerUtil.isPartiallyBlocked( schedule, blockOuts, scheduler ) ) {
+        blocked++;
+      }
+    }
+    return blocked;
+  }
+
+  @Benchmark
+  public int indexed() {
+    int blocked = 0;
+    for ( IJobTrigger schedule : schedules ) {
+      if ( BlockoutManagerUtil.isPartiallyBlocked( schedule, index, scheduler ) ) {
+        blocked++;
+      }
+    }
+    return blocked;
+  }
+
+  @Benchmark
+  public BlockoutIntervalIndex buildIndex() {
+    return BlockoutIntervalIndex.build( blockOuts, scheduler );
+  }
+
+  private static IJobTrigger cron( Date start, String cronString, long duration ) {
+    IJobTrigger trigger = new ComplexJobTrigger();
+    trigger.setStartTime( start );
+    trigger.setCronString( cronString );
+    trigger.setDuration( duration );
+    return trigger;
+  }
+
+  public static void main( String[] args ) throws RunnerException {
+    new Runner( new OptionsBuilder().include( BlockoutManagerUtilBenchmark.class.getSimpleName() ).build() ).run();
+  }
+}
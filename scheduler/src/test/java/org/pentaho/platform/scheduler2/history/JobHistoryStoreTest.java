@@ -0,0 +1,216 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2024 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.scheduler2.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.platform.api.scheduler2.JobRun;
+import org.pentaho.platform.util.ActionUtil;
+
+import java.io.File;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class JobHistoryStoreTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testFormatAndParse() {
+    JobRun run = new JobRun();
+    run.setId( "id" );
+    run.setJobId( "admin\tJob\t1" );
+    run.setJobName( "Job" );
+    run.setUserName( "admin" );
+    run.setStartDate( new Date( 1000 ) );
+    run.setCompletionDate( new Date( 2000 ) );
+    run.setStatus( "FAILED" );
+    run.setErrorSummary( "line\nbreak \\ back" );
+    run.setRetryCount( 1 );
+    run.setQueueWaitMillis( 25 );
+    Map<String, Serializable> params = new HashMap<>();
+    params.put( "a b", "x=y&z" );
+    run.setJobParams( params );
+
+    String line = JobHistoryStore.format( run );
+    assertFalse( line.contains( "\n" ) );
+
+    JobRun parsed = JobHistoryStore.parse( line );
+    assertEquals( "admin\tJob\t1", parsed.getJobId() );
+    assertEquals( "line\nbreak \\ back", parsed.getErrorSummary() );
+    assertNull( parsed.getActionClass() );
+    assertNull( parsed.getOutputPath() );
+    assertEquals( 2000, parsed.getCompletionDate().getTime() );
+    assertEquals( 1, parsed.getRetryCount() );
+    assertEquals( 25, parsed.getQueueWaitMillis() );
+    assertEquals( "x=y&z", parsed.getJobParams().get( "a b" ) );
+
+    assertNull( JobHistoryStore.parse( "truncated\tline" ) );
+  }
+
+  @Test
+  public void testRunsArePersisted() throws Exception {
+    File directory = folder.newFolder();
+    JobHistoryStore store = new JobHistoryStore( true, directory, 30 );
+    JobRun run = store.start( "job1", "Job", "admin", "action", new HashMap<String, Serializable>(), 0 );
+    assertEquals( 1, store.getRuns( "job1" ).size() );
+    assertNull( store.getRuns( "job1" ).get( 0 ).getCompletionDate() );
+
+    run.setOutputPath( "/home/admin/Job.*" );
+    store.complete( run, "SUCCEEDED", null );
+    Thread.sleep( 5 );
+    store.complete( store.start( "job1", "Job", "admin", "action", null, 0 ), "FAILED", "boom" );
+
+    JobHistoryStore reloaded = new JobHistoryStore( true, directory, 30 );
+    List<JobRun> runs = reloaded.getRuns( "job1" );
+    assertEquals( 2, runs.size() );
+    assertEquals( "FAILED", runs.get( 0 ).getStatus() );
+    assertEquals( "boom", runs.get( 0 ).getErrorSummary() );
+    assertEquals( "/home/admin/Job.*", runs.get( 1 ).getOutputPath() );
+  }
+
+  @Test
+  public void testFindRuns() throws Exception {
+    JobHistoryStore store = new JobHistoryStore( true, null, 0 );
+    for ( int i = 0; i < 5; i++ ) {
+      store.complete( store.start( "job" + ( i % 2 ), "Job", i < 3 ? "a" : "b", "action", null, 0 ), "SUCCEEDED",
+        null );
+      Thread.sleep( 5 );
+    }
+    Date middle = store.getRuns( "job0" ).get( 1 ).getStartDate();
+
+    assertEquals( 3, store.getRuns( "job0" ).size() );
+    assertEquals( 2, store.findRuns( null, "b", null, null, 0 ).size() );
+    assertEquals( 1, store.findRuns( "job0", "a", middle, null, 0 ).size() );
+    assertEquals( 1, store.findRuns( "job0", null, null, middle, 0 ).size() );
+
+    List<JobRun> latest = store.findRuns( null, null, null, null, 2 );
+    assertEquals( 2, latest.size() );
+    assertEquals( "b", latest.get( 0 ).getUserName() );
+    assertTrue( latest.get( 0 ).getStartDate().after( latest.get( 1 ).getStartDate() ) );
+  }
+
+  @Test
+  public void testExpiredRunsArePurged() throws Exception {
+    File directory = folder.newFolder();
+    JobRun old = new JobRun();
+    old.setId( "old" );
+    old.setJobId( "job1" );
+    old.setStartDate( new Date( 1000 ) );
+    old.setCompletionDate( new Date( 2000 ) );
+    File expired = new File( directory, "job-history-1970-01-01.log" );
+    FileUtils.writeStringToFile( expired, JobHistoryStore.format( old ) + "\n", StandardCharsets.UTF_8 );
+
+    JobHistoryStore store = new JobHistoryStore( true, directory, 1 );
+    assertTrue( store.getRuns( "job1" ).isEmpty() );
+    assertFalse( expired.exists() );
+
+    store.complete( store.start( "job1", "Job", "admin", "action", null, 0 ), "SUCCEEDED", null );
+    assertEquals( 1, store.getRuns( "job1" ).size() );
+    store.purge( System.currentTimeMillis() + TimeUnit.DAYS.toMillis( 2 ) );
+    assertTrue( store.getRuns( "job1" ).isEmpty() );
+    assertEquals( 0, directory.listFiles().length );
+  }
+
+  @Test
+  public void testOnlyPersistedParamsAreRecorded() throws Exception {
+    File directory = folder.newFolder();
+    JobHistoryStore store = new JobHistoryStore( true, directory, 30 );
+    Map<String, Serializable> params = new HashMap<>();
+    params.put( ActionUtil.QUARTZ_STREAMPROVIDER_INPUT_FILE, "/public/report.prpt" );
+    params.put( "password", "secret" );
+    store.complete( store.start( "job1", "Job", "admin", "action", params, 0 ), "SUCCEEDED", null );
+
+    Map<String, Serializable> recorded = new JobHistoryStore( true, directory, 30 ).getRuns( "job1" ).get( 0 )
+      .getJobParams();
+    assertEquals( "/public/report.prpt", recorded.get( ActionUtil.QUARTZ_STREAMPROVIDER_INPUT_FILE ) );
+    assertFalse( recorded.containsKey( "password" ) );
+
+    store.setPersistedParams( Collections.singletonList( "password" ) );
+    JobRun run = store.start( "job2", "Job", "admin", "action", params, 0 );
+    assertEquals( Collections.singletonMap( "password", "secret" ), run.getJobParams() );
+  }
+
+  @Test
+  public void testOldestRunsAreDroppedPastMaxRuns() throws Exception {
+    JobHistoryStore store = new JobHistoryStore( true, null, 0 );
+    store.setMaxRuns( 2 );
+    for ( int i = 0; i < 3; i++ ) {
+      store.complete( store.start( "job" + i, "Job", "admin", "action", null, 0 ), "SUCCEEDED", null );
+      Thread.sleep( 5 );
+    }
+    assertTrue( store.getRuns( "job0" ).isEmpty() );
+    assertEquals( 2, store.findRuns( null, "admin", null, null, 0 ).size() );
+    assertEquals( 2, store.getStatistics().get( "jobs" ) );
+  }
+
+  @Test
+  public void testCloseRecordsRunningRunsAsFailed() {
+    JobHistoryStore store = new JobHistoryStore( true, null, 0 );
+    JobRun run = store.start( "job1", "Job", "admin", "action", null, 0 );
+    store.close();
+
+    assertEquals( "FAILED", store.getRuns( "job1" ).get( 0 ).getStatus() );
+    assertNull( store.start( "job1", "Job", "admin", "action", null, 0 ) );
+    // a run completing after the shutdown is not recorded twice
+    store.complete( run, "SUCCEEDED", null );
+    assertEquals( 1, store.getRuns( "job1" ).size() );
+    assertEquals( "FAILED", store.getRuns( "job1" ).get( 0 ).getStatus() );
+  }
+
+  @Test
+  public void testFoundRunsAreCopies() {
+    JobHistoryStore store = new JobHistoryStore( true, null, 0 );
+    JobRun run = store.start( "job1", "Job", "admin", "action", null, 0 );
+    JobRun found = store.getRuns( "job1" ).get( 0 );
+    found.setStatus( "FAILED" );
+    found.getStartDate().setTime( 0 );
+    store.complete( run, "SUCCEEDED", null );
+
+    found = store.getRuns( "job1" ).get( 0 );
+    assertEquals( "SUCCEEDED", found.getStatus() );
+    assertEquals( run.getStartDate(), found.getStartDate() );
+    found.setStatus( "FAILED" );
+    assertEquals( "SUCCEEDED", store.getRuns( "job1" ).get( 0 ).getStatus() );
+  }
+
+  @Test
+  public void testDisabled() {
+    JobHistoryStore store = new JobHistoryStore( false, null, 30 );
+    assertNull( store.start( "job1", "Job", "admin", "action", null, 0 ) );
+    store.complete( null, "SUCCEEDED", null );
+    assertTrue( store.getRuns( "job1" ).isEmpty() );
+  }
+}
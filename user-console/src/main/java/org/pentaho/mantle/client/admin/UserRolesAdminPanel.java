@@ -27,6 +27,7 @@ import com.google.gwt.user.client.ui.Label;
 import com.google.gwt.user.client.ui.ListBox;
 import com.google.gwt.user.client.ui.PasswordTextBox;
 import com.google.gwt.user.client.ui.SimplePanel;
+import com.google.gwt.user.client.ui.TextBox;
 import com.google.gwt.user.client.ui.VerticalPanel;
 import com.google.gwt.user.client.ui.Widget;
 import org.pentaho.gwt.widgets.client.buttons.ThemeableImageButton;
@@ -41,6 +42,8 @@ public class UserRolesAdminPanel extends SimplePanel {
   protected ListBox rolesListBox;
   protected ListBox systemRolesListBox;
   protected ListBox usersListBox;
+  protected TextBox usersFilterTextBox;
+  protected Button moreUsersButton;
   protected ListBox selectedRolesListBox;
   protected ListBox selectedMembersListBox;
   protected ListBox availableMembersListBox;
@@ -130,6 +133,11 @@ public class UserRolesAdminPanel extends SimplePanel {
     deleteUserButton = new ThemeableImageButton( removeButtonStyles, null, Messages.getString( "delete" ) );
     labelAndButtonsPanel.add( deleteUserButton );
 
+    usersFilterTextBox = new TextBox();
+    usersFilterTextBox.getElement().setId( "users-filter" );
+    usersFilterTextBox.setWidth( "100%" );
+    availablePanel.add( usersFilterTextBox );
+
     usersListBox = new ListBoxTitle( true );
     usersListBox.addStyleName( "users-roles-list" );
     HorizontalScrollWrapper usersListBoxWrapper = new HorizontalScrollWrapper( usersListBox );
@@ -137,6 +145,11 @@ public class UserRolesAdminPanel extends SimplePanel {
     availablePanel.setCellHeight( usersListBoxWrapper, "100%" );
     usersListBox.setVisibleItemCount( 20 );
 
+    moreUsersButton = new Button( Messages.getString( "moreUsers" ) );
+    moreUsersButton.setStylePrimaryName( "pentaho-button" );
+    moreUsersButton.setVisible( false );
+    availablePanel.add( moreUsersButton );
+
     hSpacer = new SimplePanel();
     hSpacer.setWidth( "24px" );
     mainUsersPanel.add( hSpacer );
@@ -27,6 +27,8 @@ import com.google.gwt.event.dom.client.ChangeHandler;
 import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
 import com.google.gwt.event.dom.client.DomEvent;
+import com.google.gwt.event.dom.client.KeyUpEvent;
+import com.google.gwt.event.dom.client.KeyUpHandler;
 import com.google.gwt.http.client.Request;
 import com.google.gwt.http.client.RequestBuilder;
 import com.google.gwt.http.client.RequestCallback;
@@ -56,6 +58,15 @@ public class UserRolesAdminPanelController extends UserRolesAdminPanel implement
   private String delimiter = "\t";
   private static UserRolesAdminPanelController instance = new UserRolesAdminPanelController();
   private boolean usingPentahoSecurity;
+  // users are listed a page at a time, the filter box narrows the list down by name prefix and the more button
+  // appends the next page
+  private static final int USERS_PAGE_SIZE = 500;
+  private static final int USERS_FILTER_DELAY = 300;
+  private final Timer usersFilterTimer = new Timer() {
+    public void run() {
+      initializeAvailableUsers( null );
+    }
+  };
 
   public static UserRolesAdminPanelController getInstance() {
     return instance;
@@ -66,6 +77,8 @@ public class UserRolesAdminPanelController extends UserRolesAdminPanel implement
     super();
 
     usersListBox.addChangeHandler( new UsersListChangeListener() );
+    usersFilterTextBox.addKeyUpHandler( new UsersFilterKeyUpListener() );
+    moreUsersButton.addClickHandler( new MoreUsersListener() );
     rolesListBox.addChangeHandler( new RolesListChangeListener() );
     systemRolesListBox.addChangeHandler( new SystemRolesListChangeListener() );
     addRoleButton.addClickHandler( new AddRoleListener() );
@@ -294,7 +307,52 @@ public class UserRolesAdminPanelController extends UserRolesAdminPanel implement
   }
 
   private void initializeAvailableUsers( final String defaultValue ) {
-    initializeList( "users", defaultValue, "api/userroledao/users", usersListBox );
+    initializeList( "users", defaultValue, getUsersPageUrl( 0 ), usersListBox );
+  }
+
+  private String getUsersPageUrl( int offset ) {
+    String prefix = usersFilterTextBox.getText().trim();
+    return "api/userroledao/searchUsers?offset=" + offset + "&limit=" + USERS_PAGE_SIZE
+        + ( prefix.isEmpty() ? "" : "&prefix=" + encodeUri( prefix ) );
+  }
+
+  private void loadMoreUsers() {
+    final String url = GWT.getHostPageBaseURL() + getUsersPageUrl( usersListBox.getItemCount() );
+    RequestBuilder executableTypesRequestBuilder = new RequestBuilder( RequestBuilder.GET, url );
+    executableTypesRequestBuilder.setHeader( "If-Modified-Since", "01 Jan 1970 00:00:00 GMT" );
+    executableTypesRequestBuilder.setHeader( "accept", "application/xml" );
+    try {
+      executableTypesRequestBuilder.sendRequest( null, new RequestCallback() {
+
+        public void onError( Request request, Throwable exception ) {
+          displayErrorInMessageBox( Messages.getString( "Error" ), exception.getLocalizedMessage() );
+        }
+
+        public void onResponseReceived( Request request, Response response ) {
+          List<String> page = getSortedItems( "users", response );
+          List<String> users = new ArrayList<String>();
+          List<String> selected = new ArrayList<String>();
+          for ( int i = 0; i < usersListBox.getItemCount(); i++ ) {
+            users.add( usersListBox.getValue( i ) );
+            if ( usersListBox.isItemSelected( i ) ) {
+              selected.add( usersListBox.getValue( i ) );
+            }
+          }
+          users.addAll( page );
+          Collections.sort( users );
+
+          usersListBox.clear();
+          for ( String user : users ) {
+            usersListBox.addItem( user );
+            usersListBox.setItemSelected( usersListBox.getItemCount() - 1, selected.contains( user ) );
+          }
+          moreUsersButton.setVisible( page.size() >= USERS_PAGE_SIZE );
+          updateHelperDiv( HorizontalScrollWrapper.getListBoxWrapperUIId( usersListBox ) );
+        }
+      } );
+    } catch ( RequestException e ) {
+      displayErrorInMessageBox( Messages.getString( "Error" ), e.getLocalizedMessage() );
+    }
   }
 
   private void initializeList( final String type, final String defaultValue, String serviceUrl, final ListBox listBox ) {
@@ -326,6 +384,9 @@ public class UserRolesAdminPanelController extends UserRolesAdminPanel implement
             listBox.setSelectedIndex( 0 );
             DomEvent.fireNativeEvent( event, listBox );
           }
+          if ( listBox == usersListBox ) {
+            moreUsersButton.setVisible( listBox.getItemCount() >= USERS_PAGE_SIZE );
+          }
           updateHelperDiv( HorizontalScrollWrapper.getListBoxWrapperUIId( listBox ) );
         }
       } );
@@ -592,6 +653,19 @@ public class UserRolesAdminPanelController extends UserRolesAdminPanel implement
 
   // -- Event Listeners.
 
+  class UsersFilterKeyUpListener implements KeyUpHandler {
+    public void onKeyUp( KeyUpEvent evt ) {
+      usersFilterTimer.cancel();
+      usersFilterTimer.schedule( USERS_FILTER_DELAY );
+    }
+  }
+
+  class MoreUsersListener implements ClickHandler {
+    public void onClick( ClickEvent event ) {
+      loadMoreUsers();
+    }
+  }
+
   class UsersListChangeListener implements ChangeHandler {
     public void onChange( ChangeEvent evt ) {
       if ( hasMultiselection( usersListBox ) ) {
@@ -35,7 +35,9 @@ import com.google.gwt.i18n.client.DateTimeFormat;
 import com.google.gwt.i18n.client.DateTimeFormat.PredefinedFormat;
 import com.google.gwt.json.client.JSONArray;
 import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONParser;
 import com.google.gwt.json.client.JSONString;
+import com.google.gwt.json.client.JSONValue;
 import com.google.gwt.safehtml.shared.SafeHtml;
 import com.google.gwt.safehtml.shared.SafeHtmlBuilder;
 import com.google.gwt.user.cellview.client.AbstractCellTable;
@@ -117,6 +119,8 @@ public class SchedulesPanel extends SimplePanel {
     ICON_SMALL_STYLE, "icon-execute" ) );
   private ToolbarButton scheduleRemoveButton = new ToolbarButton( ImageUtil.getThemeableImage(
     "pentaho-deletebutton" ) );
+  private ToolbarButton historyButton = new ToolbarButton( ImageUtil.getThemeableImage(
+    ICON_SMALL_STYLE, "icon-history" ) );
   private ToolbarButton filterButton = new ToolbarButton( ImageUtil.getThemeableImage(
     ICON_SMALL_STYLE, "icon-filter-add" ) );
   private ToolbarButton filterRemoveButton = new ToolbarButton( ImageUtil.getThemeableImage(
@@ -271,6 +275,7 @@ public class SchedulesPanel extends SimplePanel {
     controlScheduleButton.setEnabled( false );
     scheduleRemoveButton.setEnabled( false );
     triggerNowButton.setEnabled( false );
+    historyButton.setEnabled( false );
     table.setPageStart( 0 );
 
     table.setKeyboardSelectedRow( 0, false );
@@ -697,11 +702,13 @@ public class SchedulesPanel extends SimplePanel {
           controlScheduleButton.setEnabled( isScheduler );
           scheduleRemoveButton.setEnabled( isScheduler );
           triggerNowButton.setEnabled( isScheduler );
+          historyButton.setEnabled( selectedJobs.size() == 1 );
         } else {
           editButton.setEnabled( false );
           controlScheduleButton.setEnabled( false );
           scheduleRemoveButton.setEnabled( false );
           triggerNowButton.setEnabled( false );
+          historyButton.setEnabled( false );
         }
       }
     } );
@@ -907,6 +914,21 @@ public class SchedulesPanel extends SimplePanel {
     editButton.setToolTip( Messages.getString( "editTooltip" ) );
     bar.add( editButton );
 
+    // Add history button
+    historyButton.setCommand( new Command() {
+      public void execute() {
+        Set<JsJob> selectedJobs = getSelectedJobs();
+
+        if ( selectedJobs.size() == 1 ) {
+          showJobHistory( selectedJobs.iterator().next() );
+        }
+      }
+    } );
+
+    historyButton.setEnabled( false );
+    historyButton.setToolTip( Messages.getString( "jobHistoryTooltip" ) );
+    bar.add( historyButton );
+
     // Add remove button
     scheduleRemoveButton.setCommand( new Command() {
       public void execute() {
@@ -1010,6 +1032,80 @@ public class SchedulesPanel extends SimplePanel {
     }
   }
 
+  private void showJobHistory( final JsJob job ) {
+    final String apiEndpoint = "api/scheduler/jobHistory?jobId=" + URL.encodeQueryString( job.getJobId() );
+    RequestBuilder historyRequestBuilder = createRequestBuilder( RequestBuilder.GET, apiEndpoint );
+    historyRequestBuilder.setHeader( HTTP_ACCEPT_HEADER, JSON_CONTENT_TYPE );
+
+    try {
+      historyRequestBuilder.sendRequest( null, new RequestCallback() {
+        public void onError( Request request, Throwable exception ) {
+          // showError(exception);
+        }
+
+        public void onResponseReceived( Request request, Response response ) {
+          final MessageDialogBox dialogBox;
+          if ( response.getStatusCode() == Response.SC_OK ) {
+            dialogBox = new MessageDialogBox( Messages.getString( "jobHistoryTitle", job.getJobName() ),
+              buildJobHistoryTable( response.getText() ), true, false, true );
+          } else {
+            String message = Messages.getString( "serverErrorColon" ) + " " + response.getStatusCode();
+            dialogBox = new MessageDialogBox( Messages.getString( "error" ), message, false, false, true );
+          }
+
+          dialogBox.center();
+        }
+      } );
+    } catch ( RequestException e ) {
+      // showError(e);
+    }
+  }
+
+  /**
+   * Renders the runs returned by api/scheduler/jobHistory, newest first, as an html table.
+   */
+  private String buildJobHistoryTable( final String json ) {
+    JSONArray runs = new JSONArray();
+    if ( !StringUtils.isEmpty( json ) ) {
+      JSONObject root = JSONParser.parseStrict( json ).isObject();
+      JSONValue value = root == null ? null : root.get( "jobRun" );
+      if ( value != null && value.isArray() != null ) {
+        runs = value.isArray();
+      } else if ( value != null && value.isObject() != null ) {
+        runs.set( 0, value );
+      }
+    }
+    if ( runs.size() == 0 ) {
+      return new SafeHtmlBuilder().appendEscaped( Messages.getString( "jobHistoryEmpty" ) ).toSafeHtml().asString();
+    }
+
+    final String[] fields = { "startDate", "completionDate", "status", "outputPath", "errorSummary", "workerNode" };
+    final String[] headers = { "jobHistoryStarted", "jobHistoryCompleted", "jobHistoryStatus", "jobHistoryOutput",
+      "jobHistoryError", "jobHistoryNode" };
+
+    SafeHtmlBuilder html = new SafeHtmlBuilder();
+    html.appendHtmlConstant( "<table class=\"job-history\"><tr>" );
+    for ( String header : headers ) {
+      html.appendHtmlConstant( "<th>" ).appendEscaped( Messages.getString( header ) ).appendHtmlConstant( "</th>" );
+    }
+    html.appendHtmlConstant( "</tr>" );
+    for ( int i = 0; i < runs.size(); i++ ) {
+      JSONObject run = runs.get( i ).isObject();
+      if ( run == null ) {
+        continue;
+      }
+      html.appendHtmlConstant( "<tr>" );
+      for ( String field : fields ) {
+        JSONString text = run.get( field ) == null ? null : run.get( field ).isString();
+        html.appendHtmlConstant( "<td>" ).appendEscaped( text == null ? BLANK_VALUE : text.stringValue() )
+          .appendHtmlConstant( "</td>" );
+      }
+      html.appendHtmlConstant( "</tr>" );
+    }
+    html.appendHtmlConstant( "</table>" );
+    return html.toSafeHtml().asString();
+  }
+
   private void triggerExecuteNow( final Set<JsJob> jobs ) {
     final Map<String, List<JsJob>> candidateJobs = new HashMap<String, List<JsJob>>( jobs.size() );
     for ( JsJob job : jobs ) {